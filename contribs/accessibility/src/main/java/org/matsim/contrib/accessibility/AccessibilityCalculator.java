@@ -20,13 +20,22 @@
 package org.matsim.contrib.accessibility;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.TransportMode;
@@ -39,6 +48,7 @@ import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.utils.collections.QuadTree;
 import org.matsim.facilities.ActivityFacilities;
 import org.matsim.facilities.ActivityFacilitiesImpl;
 import org.matsim.facilities.ActivityFacility;
@@ -52,11 +62,13 @@ public final class AccessibilityCalculator {
 	private final ActivityFacilitiesImpl measuringPoints;
 	private final Map<String, AccessibilityContributionCalculator> calculators = new LinkedHashMap<>();
 	// (test may depend on that this is a "Linked" Hash Map. kai, dec'16)
+	private final Map<String, AccessibilityContributionCalculatorFactory> calculatorFactories = new HashMap<>();
 	
 	private final PlanCalcScoreConfigGroup cnScoringGroup;
 	private final AccessibilityConfigGroup acg;
 	private final Network network;
 	private final double walkSpeed_m_h;
+	private final int numberOfThreads;
 
 	private final ArrayList<FacilityDataExchangeInterface> zoneDataExchangeListeners = new ArrayList<>();
 	
@@ -81,67 +93,93 @@ public final class AccessibilityCalculator {
 		}
 
 		this.walkSpeed_m_h = scenario.getConfig().plansCalcRoute().getTeleportedModeSpeeds().get(TransportMode.walk) * 3600.;
+		this.numberOfThreads = Math.max(1, scenario.getConfig().global().getNumberOfThreads());
 	}
 	
 	
-	public final void computeAccessibilities(Double departureTime, ActivityFacilities opportunities) {
-		AggregationObject[] aggregatedOpportunities = aggregateOpportunities(opportunities, network);
-
-		Map<String,Double> expSums = new HashMap<>();
-		for (String mode : calculators.keySet()) {
-			expSums.put(mode, 0.);
-		}
+	public final void computeAccessibilities(final Double departureTime, ActivityFacilities opportunities) {
+		final AggregationObject[] aggregatedOpportunities = aggregateOpportunities(opportunities, network);
+		final QuadTree<AggregationObject> opportunityQuadTree = Double.isInfinite(acg.getCutoffDistance()) ? null
+				: buildOpportunityQuadTree(aggregatedOpportunities);
 
 		// Condense measuring points (origins) that have the same nearest node on the network
 		Map<Id<Node>, ArrayList<ActivityFacility>> aggregatedOrigins = aggregateMeasurePointsWithSameNearestNode();
+		final List<Id<Node>> nodeIds = new ArrayList<>(aggregatedOrigins.keySet());
+		final List<List<ActivityFacility>> originsPerNode = new ArrayList<>();
+		for (Id<Node> nodeId : nodeIds) {
+			originsPerNode.add(aggregatedOrigins.get(nodeId));
+		}
 
-		LOG.info("Iterating over all aggregated measuring points...");
-		ProgressBar progressBar = new ProgressBar(aggregatedOrigins.size());
+		final String[] modes = calculators.keySet().toArray(new String[calculators.size()]);
 		
-		// Go through all nodes (keys) that have a measuring point (origin) assigned
-		for (Id<Node> nodeId : aggregatedOrigins.keySet()) {
-			progressBar.update();
-
-			Node fromNode = network.getNodes().get(nodeId);
+		// separate calculators for each thread are only possible if all of them can be created by a factory
+		int threads = calculatorFactories.keySet().containsAll(calculators.keySet()) ? numberOfThreads : 1;
+		final int threadCount = Math.max(1, Math.min(threads, nodeIds.size()));
 
-			for (AccessibilityContributionCalculator calculator : calculators.values()) {
-				Gbl.assertNotNull(calculator);
-				calculator.notifyNewOriginNode(fromNode, departureTime);
-			}
+		// [node][origin][mode]; the listeners are notified afterwards, in the original order
+		final double[][][] expSumsPerOrigin = new double[nodeIds.size()][][];
 
-			// Get list with measuring points that are assigned to "fromNode"
-			// Go through all measuring points assigned to current node
-			for (ActivityFacility origin : aggregatedOrigins.get(nodeId)) {
-				assert(origin.getCoord() != null);
+		LOG.info("Iterating over all aggregated measuring points with " + threadCount + " thread(s)...");
+		final ProgressBar progressBar = new ProgressBar(aggregatedOrigins.size());
 
-				for (String key : expSums.keySet()) { // Is it really necessary to reset here?
-					expSums.put(key, 0.);
-				}
-				
-				// Gbl.assertIf(aggregatedOpportunities.length > 0);
-				// yyyyyy a test fails when this line is made active; cannot say why an execution path where there are now opportunities can make sense for a test.  kai, mar'17
-				
-				// Go through all aggregated facilities (i.e. network nodes to which at least one facility is assigned)
-				for (final AggregationObject aggregatedFacility : aggregatedOpportunities) {
-					// Go through all calculators
-					for (String mode : calculators.keySet()) {
-						final double expVhk = calculators.get(mode).computeContributionOfOpportunity(origin, aggregatedFacility, departureTime);
-						expSums.put(mode, expSums.get(mode) + expVhk);
+		ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int t = 0; t < threadCount; t++) {
+			final int firstNode = t;
+			final AccessibilityContributionCalculator[] threadCalculators = new AccessibilityContributionCalculator[modes.length];
+			for (int m = 0; m < modes.length; m++) {
+				// the first thread uses the calculators that have been put into this object
+				threadCalculators[m] = t == 0 ? calculators.get(modes[m]) : calculatorFactories.get(modes[m]).createCalculator();
+				Gbl.assertNotNull(threadCalculators[m]);
+			}
+			
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (int n = firstNode; n < nodeIds.size(); n += threadCount) {
+						expSumsPerOrigin[n] = computeExpSums(network.getNodes().get(nodeIds.get(n)), originsPerNode.get(n),
+								threadCalculators, aggregatedOpportunities, opportunityQuadTree, departureTime);
+						synchronized (progressBar) {
+							progressBar.update();
+						}
 					}
+					return null;
 				}
-				// What does the aggregation of the starting locations save if we do the just ended loop for all starting
-				// points separately anyways? Answer: The trees need to be computed only once. (But one could save more.) kai, feb'14
+			});
+		}
 
+		try {
+			for (Future<Void> future : executorService.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			// call() throws no checked exceptions
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			throw (Error)cause;
+		} finally {
+			executorService.shutdown();
+		}
+		
+		for (int n = 0; n < nodeIds.size(); n++) {
+			for (int o = 0; o < originsPerNode.get(n).size(); o++) {
+				ActivityFacility origin = originsPerNode.get(n).get(o);
+				double[] expSums = expSumsPerOrigin[n][o];
+				
 				// aggregated value
 				Map<String, Double> accessibilities  = new LinkedHashMap<>();
-
-				for (String mode : calculators.keySet()) {
+				
+				for (int m = 0; m < modes.length; m++) {
 					if(!acg.isUsingRawSumsWithoutLn()){
 						// logitScaleParameter = same as brainExpBeta on 2-aug-12. kai
-						accessibilities.put(mode, (1/this.cnScoringGroup.getBrainExpBeta()) * Math.log(expSums.get(mode)));
+						accessibilities.put(modes[m], (1/this.cnScoringGroup.getBrainExpBeta()) * Math.log(expSums[m]));
 					} else {
 						// this was used by IVT within SustainCity.  Not sure if we should maintain this; they could, after all, just exp the log results. kai, may'15
-						accessibilities.put(mode, expSums.get(mode));
+						accessibilities.put(modes[m], expSums[m]);
 					}
 				}
 				
@@ -156,6 +194,57 @@ public final class AccessibilityCalculator {
 	}
 	
 	
+	/**
+	 * Computes the sums of the contributions of all (or, with a cut-off distance, of all nearby) opportunities for
+	 * all measuring points assigned to fromNode. The least-cost path trees are computed once for fromNode.
+	 * 
+	 * @return exp-sums per origin and mode
+	 */
+	private double[][] computeExpSums(Node fromNode, List<ActivityFacility> origins,
+			AccessibilityContributionCalculator[] threadCalculators, AggregationObject[] aggregatedOpportunities,
+			QuadTree<AggregationObject> opportunityQuadTree, Double departureTime) {
+		for (AccessibilityContributionCalculator calculator : threadCalculators) {
+			calculator.notifyNewOriginNode(fromNode, departureTime);
+		}
+		
+		double[][] expSums = new double[origins.size()][threadCalculators.length];
+
+		// Go through all measuring points assigned to fromNode
+		for (int o = 0; o < origins.size(); o++) {
+			ActivityFacility origin = origins.get(o);
+			assert(origin.getCoord() != null);
+			
+			// Gbl.assertIf(aggregatedOpportunities.length > 0);
+			// yyyyyy a test fails when this line is made active; cannot say why an execution path where there are now opportunities can make sense for a test.  kai, mar'17
+
+			Collection<AggregationObject> destinations = opportunityQuadTree == null ? Arrays.asList(aggregatedOpportunities)
+					: opportunityQuadTree.getDisk(origin.getCoord().getX(), origin.getCoord().getY(), acg.getCutoffDistance());
+
+			// Go through all aggregated facilities (i.e. network nodes to which at least one facility is assigned)
+			for (AggregationObject aggregatedFacility : destinations) {
+				// Go through all calculators
+				for (int m = 0; m < threadCalculators.length; m++) {
+					expSums[o][m] += threadCalculators[m].computeContributionOfOpportunity(origin, aggregatedFacility, departureTime);
+				}
+			}
+			// What does the aggregation of the starting locations save if we do the just ended loop for all starting
+			// points separately anyways? Answer: The trees need to be computed only once. (But one could save more.) kai, feb'14
+		}
+		return expSums;
+	}
+	
+	
+	private QuadTree<AggregationObject> buildOpportunityQuadTree(AggregationObject[] aggregatedOpportunities) {
+		double[] bounds = NetworkUtils.getBoundingBox(network.getNodes().values());
+		QuadTree<AggregationObject> quadTree = new QuadTree<>(bounds[0], bounds[1], bounds[2], bounds[3]);
+		for (AggregationObject aggregatedOpportunity : aggregatedOpportunities) {
+			Coord coord = aggregatedOpportunity.getNearestNode().getCoord();
+			quadTree.put(coord.getX(), coord.getY(), aggregatedOpportunity);
+		}
+		return quadTree;
+	}
+	
+	
 	/**
 	 * Aggregates disutilities Vjk to get from node j to all k that are attached to j and assign sum(Vjk) is to node j.
 	 * 
@@ -231,6 +320,17 @@ public final class AccessibilityCalculator {
 		LOG.info("Adding accessibility calculator for " + mode ) ;
 		Gbl.assertNotNull(calc);
 		this.calculators.put(mode , calc) ;
+		this.calculatorFactories.remove(mode);
+	}
+
+	/**
+	 * Unlike calculators put directly, calculators created by the factory allow for computing the accessibilities in
+	 * several threads (see the global numberOfThreads).
+	 */
+	public final void putAccessibilityContributionCalculator(String mode, AccessibilityContributionCalculatorFactory factory) {
+		Gbl.assertNotNull(factory);
+		putAccessibilityContributionCalculator(mode, factory.createCalculator());
+		this.calculatorFactories.put(mode, factory);
 	}
 
 	
@@ -43,9 +43,15 @@ public final class AccessibilityConfigGroup extends ReflectiveConfigGroup{
 	
 	private static final String USING_RAW_SUMS_WITHOUT_LN = "usingRawSumsWithoutLn";
 	private static final String ACCESSIBILITY_DESTINATION_SAMPLING_RATE = "accessibilityDestinationSamplingRate";
+	private static final String CUTOFF_DISTANCE = "cutoffDistance";
+	private static final String USING_MEMORY_MAPPED_GRIDS = "usingMemoryMappedGrids";
+	private static final String WRITING_GEO_TIFFS = "writingGeoTiffs";
 	// ===
 	private Double accessibilityDestinationSamplingRate;
 	private Boolean usingRawSumsWithoutLn = false ;
+	private double cutoffDistance = Double.POSITIVE_INFINITY;
+	private boolean usingMemoryMappedGrids = false;
+	private boolean writingGeoTiffs = false;
 
 	private double boundingBoxTop;
 	private double boundingBoxLeft;
@@ -105,6 +111,15 @@ public final class AccessibilityConfigGroup extends ReflectiveConfigGroup{
 		map.put(ACCESSIBILITY_DESTINATION_SAMPLING_RATE, "if only a sample of destinations should be used " +
 				"(reduces accuracy -- not recommended except when necessary for computational speed reasons)" ) ;
 		
+		map.put(CUTOFF_DISTANCE, "opportunities whose nearest network node is farther away (beeline) from the measuring point " +
+				"are ignored (speeds up large scenarios; Infinity = no cut-off)") ;
+		
+		map.put(USING_MEMORY_MAPPED_GRIDS, "if true, the spatial grids are kept in memory-mapped temporary files " +
+				"in the output directory instead of on the heap (for fine grids over large areas)") ;
+		
+		map.put(WRITING_GEO_TIFFS, "if true, the accessibility grid of each mode is additionally written as a tiled, " +
+				"compressed GeoTIFF (with the EPSG code of outputCRS, if given as 'EPSG:<code>')") ;
+		
 		map.put(USING_RAW_SUMS_WITHOUT_LN, "econometric accessibility usually returns the logsum. " +
 				"Set to true if you just want the sum (without the ln)") ;
 		
@@ -191,6 +206,33 @@ public final class AccessibilityConfigGroup extends ReflectiveConfigGroup{
 	public void setAccessibilityDestinationSamplingRate(Double sampleRate){
 		this.accessibilityDestinationSamplingRate = sampleRate;
 	}
+	@StringGetter(CUTOFF_DISTANCE)
+	public double getCutoffDistance() {
+		return this.cutoffDistance;
+	}
+	@StringSetter(CUTOFF_DISTANCE)
+	public void setCutoffDistance(double cutoffDistance) {
+		if (!(cutoffDistance > 0)) {
+			throw new IllegalArgumentException("Cut-off distance must be greater than zero.");
+		}
+		this.cutoffDistance = cutoffDistance;
+	}
+	@StringGetter(USING_MEMORY_MAPPED_GRIDS)
+	public boolean isUsingMemoryMappedGrids() {
+		return this.usingMemoryMappedGrids;
+	}
+	@StringSetter(USING_MEMORY_MAPPED_GRIDS)
+	public void setUsingMemoryMappedGrids(boolean value) {
+		this.usingMemoryMappedGrids = value;
+	}
+	@StringGetter(WRITING_GEO_TIFFS)
+	public boolean isWritingGeoTiffs() {
+		return this.writingGeoTiffs;
+	}
+	@StringSetter(WRITING_GEO_TIFFS)
+	public void setWritingGeoTiffs(boolean value) {
+		this.writingGeoTiffs = value;
+	}
     @StringGetter(USING_RAW_SUMS_WITHOUT_LN)
     public Boolean isUsingRawSumsWithoutLn() {
         return usingRawSumsWithoutLn;
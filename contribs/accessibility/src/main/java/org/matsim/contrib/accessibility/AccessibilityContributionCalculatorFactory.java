@@ -1,9 +1,9 @@
 /* *********************************************************************** *
- * project: org.matsim.*
+ * project: org.matsim.*                                                   *
  *                                                                         *
  * *********************************************************************** *
  *                                                                         *
- * copyright       : (C) 2015 by the members listed in the COPYING,        *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
  *                   LICENSE and WARRANTY file.                            *
  * email           : info at matsim dot org                                *
  *                                                                         *
@@ -17,21 +17,12 @@
  *                                                                         *
  * *********************************************************************** */
 
-package org.matsim.contrib.minibus.performance.raptor;
+package org.matsim.contrib.accessibility;
 
-import org.matsim.pt.transitSchedule.api.TransitRouteStop;
-
-/** 
- * 
- * @author aneumann
- *
+/**
+ * Creates independent {@link AccessibilityContributionCalculator}s for the same mode, so that the accessibilities can
+ * be computed by several threads, each with its own calculator (and least-cost path tree).
  */
-public class WrappedTransitRouteStop {
-	
-	final TransitRouteStop transitRouteStop;
-	
-	public WrappedTransitRouteStop(TransitRouteStop transitRouteStop) {
-		this.transitRouteStop = transitRouteStop;
-	}
-
+public interface AccessibilityContributionCalculatorFactory {
+	AccessibilityContributionCalculator createCalculator();
 }
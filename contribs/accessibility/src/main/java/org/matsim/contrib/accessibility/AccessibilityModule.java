@@ -137,26 +137,41 @@ public final class AccessibilityModule extends AbstractModule {
 				LOG.warn("boundingBox = " + boundingBox);
 				
 				AccessibilityCalculator accessibilityCalculator = new AccessibilityCalculator(scenario, measuringPoints);
-				for (Modes4Accessibility mode : acg.getIsComputingMode()) {
+				for (final Modes4Accessibility mode : acg.getIsComputingMode()) {
+					// calculators created by a factory can be used by several threads (one instance per thread)
+					AccessibilityContributionCalculatorFactory factory = null ;
 					AccessibilityContributionCalculator calculator = null ;
 					switch(mode) {
 					case bike:
-						calculator = new ConstantSpeedAccessibilityExpContributionCalculator(mode.name(), config, network);
+					case walk:
+						factory = new AccessibilityContributionCalculatorFactory() {
+							@Override
+							public AccessibilityContributionCalculator createCalculator() {
+								return new ConstantSpeedAccessibilityExpContributionCalculator(mode.name(), config, network);
+							}
+						};
 						break;
 					case car: {
 						final TravelTime travelTime = travelTimes.get(mode.name());
 						Gbl.assertNotNull(travelTime);
 						final TravelDisutilityFactory travelDisutilityFactory = travelDisutilityFactories.get(mode.name());
-						calculator = new NetworkModeAccessibilityExpContributionCalculator(travelTime, travelDisutilityFactory, scenario) ;
+						factory = new AccessibilityContributionCalculatorFactory() {
+							@Override
+							public AccessibilityContributionCalculator createCalculator() {
+								return new NetworkModeAccessibilityExpContributionCalculator(travelTime, travelDisutilityFactory, scenario) ;
+							}
+						};
 						break; }
 					case freespeed: {
 						final TravelDisutilityFactory travelDisutilityFactory = travelDisutilityFactories.get(TransportMode.car);
 						Gbl.assertNotNull(travelDisutilityFactory);
-						calculator = new NetworkModeAccessibilityExpContributionCalculator(new FreeSpeedTravelTime(), travelDisutilityFactory, scenario) ;
+						factory = new AccessibilityContributionCalculatorFactory() {
+							@Override
+							public AccessibilityContributionCalculator createCalculator() {
+								return new NetworkModeAccessibilityExpContributionCalculator(new FreeSpeedTravelTime(), travelDisutilityFactory, scenario) ;
+							}
+						};
 						break; }
-					case walk:
-						calculator = new ConstantSpeedAccessibilityExpContributionCalculator(mode.name(), config, network);
-						break;
 					case matrixBasedPt:
 						calculator = new LeastCostPathCalculatorAccessibilityContributionCalculator(
 								config.planCalcScore(),	ptMatrix.asPathCalculator(config.planCalcScore()));
@@ -167,7 +182,11 @@ public final class AccessibilityModule extends AbstractModule {
 //						TravelDisutility travelDisutility = this.travelDisutilityFactories.get(mode.toString()).createTravelDisutility(timeCalculator) ;
 						calculator = new TripRouterAccessibilityContributionCalculator(mode.toString(), tripRouter, config.planCalcScore());
 					}
-					accessibilityCalculator.putAccessibilityContributionCalculator(mode.name(), calculator);
+					if (factory != null) {
+						accessibilityCalculator.putAccessibilityContributionCalculator(mode.name(), factory);
+					} else {
+						accessibilityCalculator.putAccessibilityContributionCalculator(mode.name(), calculator);
+					}
 				}
 				
 				if (pushing2Geoserver == true) {
@@ -20,6 +20,7 @@
 package org.matsim.contrib.accessibility;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -30,6 +31,7 @@ import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.contrib.accessibility.gis.GridUtils;
 import org.matsim.contrib.accessibility.gis.SpatialGrid;
+import org.matsim.contrib.accessibility.gis.SpatialGridGeoTiffWriter;
 import org.matsim.contrib.accessibility.interfaces.FacilityDataExchangeInterface;
 import org.matsim.contrib.accessibility.interfaces.SpatialGridDataExchangeInterface;
 import org.matsim.contrib.accessibility.utils.AccessibilityUtils;
@@ -40,6 +42,7 @@ import org.matsim.core.controler.events.ShutdownEvent;
 import org.matsim.core.controler.listener.ShutdownListener;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.utils.collections.Tuple;
+import org.matsim.core.utils.io.UncheckedIOException;
 import org.matsim.facilities.ActivityFacilities;
 
 /**
@@ -117,7 +120,7 @@ public final class GridBasedAccessibilityShutdownListenerV3 implements ShutdownL
 		// one can also use FacilitiesUtils.createActivitiesFacilities(), put everything in there, and give that to this constructor. kai, feb'14
 
 		log.info("Initializing  ...");
-		spatialGridAggregator = new SpatialGridAggregator();
+		spatialGridAggregator = new SpatialGridAggregator(scenario.getConfig().global().getNumberOfThreads());
 		this.accessibilityCalculator.addFacilityDataExchangeListener(spatialGridAggregator);
 
 		if (ptMatrix != null) {
@@ -134,13 +137,13 @@ public final class GridBasedAccessibilityShutdownListenerV3 implements ShutdownL
 		log.info(".. done initializing CellBasedAccessibilityControlerListenerV3");
 		for (String mode : accessibilityCalculator.getModes() ) {
 //			log.warn("put accessibility grid for mode=" + mode );
-			spatialGridAggregator.getAccessibilityGrids().put(mode, new SpatialGrid(xMin, yMin, xMax, yMax, cellSize, Double.NaN));
+			spatialGridAggregator.getAccessibilityGrids().put(mode, createSpatialGrid(Double.NaN));
 		}
 		
 		// always put the free speed grid (yyyy may not be necessary in the long run)
 		log.warn("Spatial grid for freespeed added (again) to make sure it exists in any case."); // TODO try to get rid of this duplication
 		spatialGridAggregator.getAccessibilityGrids().put(Modes4Accessibility.freespeed.name(),
-				new SpatialGrid(xMin, yMin, xMax, yMax, cellSize, Double.NaN));
+				createSpatialGrid(Double.NaN));
 
 		lockedForAdditionalFacilityData  = true ;
 		for ( ActivityFacilities facilities : this.additionalFacilityData ) {
@@ -148,7 +151,7 @@ public final class GridBasedAccessibilityShutdownListenerV3 implements ShutdownL
 				throw new RuntimeException("this should not yet exist ...") ;
 			}
 			Tuple<SpatialGrid,SpatialGrid> spatialGrids = new Tuple<>(
-					new SpatialGrid(xMin, yMin, xMax, yMax, cellSize, 0.), new SpatialGrid(xMin, yMin, xMax, yMax, cellSize, 0.)) ;
+					createSpatialGrid(0.), createSpatialGrid(0.)) ;
 			this.additionalSpatialGrids.put( facilities.getName(), spatialGrids ) ;
 		}
 
@@ -192,6 +195,33 @@ public final class GridBasedAccessibilityShutdownListenerV3 implements ShutdownL
 				ee.printStackTrace(); 
 			}
 		}
+
+		if (acg.isUsingMemoryMappedGrids()) {
+			// delete the temporary files
+			for (SpatialGrid grid : spatialGridAggregator.getAccessibilityGrids().values()) {
+				grid.close();
+			}
+			for (Tuple<SpatialGrid, SpatialGrid> spatialGrids : additionalSpatialGrids.values()) {
+				spatialGrids.getFirst().close();
+				spatialGrids.getSecond().close();
+			}
+		}
+	}
+
+
+	private SpatialGrid createSpatialGrid(double initialValue) {
+		AccessibilityConfigGroup acg = ConfigUtils.addOrGetModule(scenario.getConfig(), AccessibilityConfigGroup.class);
+		if (!acg.isUsingMemoryMappedGrids()) {
+			return new SpatialGrid(xMin, yMin, xMax, yMax, cellSize, initialValue);
+		}
+		
+		File dir = new File(scenario.getConfig().controler().getOutputDirectory() + "/tmp");
+		dir.mkdirs();
+		try {
+			return new SpatialGrid(xMin, yMin, xMax, yMax, cellSize, initialValue, File.createTempFile("grid", ".bin", dir));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
 	}
 
 
@@ -253,6 +283,17 @@ public final class GridBasedAccessibilityShutdownListenerV3 implements ShutdownL
 		}
 		writer.close() ;
 
+		AccessibilityConfigGroup acg = ConfigUtils.addOrGetModule(scenario.getConfig(), AccessibilityConfigGroup.class);
+		if (acg.isWritingGeoTiffs()) {
+			String crs = acg.getOutputCrs();
+			int epsgCode = crs != null && crs.toUpperCase().startsWith("EPSG:") ? Integer.parseInt(crs.substring(5)) : 0;
+			SpatialGridGeoTiffWriter geoTiffWriter = new SpatialGridGeoTiffWriter(epsgCode);
+			for (String mode : accessibilityCalculator.getModes() ) {
+				geoTiffWriter.write(spatialGridAggregator.getAccessibilityGrids().get(mode),
+						adaptedOutputDirectory + "/" + mode + "_accessibility.tif");
+			}
+		}
+
 		log.info("Writing plotting data for other analysis done!");
 	}
 
@@ -1,26 +1,100 @@
 package org.matsim.contrib.accessibility;
 
+import org.matsim.api.core.v01.Coord;
 import org.matsim.contrib.accessibility.gis.SpatialGrid;
+import org.matsim.contrib.accessibility.gis.TiledRaster;
 import org.matsim.contrib.accessibility.interfaces.FacilityDataExchangeInterface;
 import org.matsim.facilities.ActivityFacility;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Collects the accessibilities of the measuring points and writes them into the grids in {@link #finish()}. The
+ * measuring points are notified in the order of their nearest nodes, so the grids are then filled tile by tile (see
+ * {@link TiledRaster#fill(TiledRaster.CellFunction, int)}) instead of in random order, which matters for
+ * memory-mapped grids.
+ */
 public class SpatialGridAggregator implements FacilityDataExchangeInterface {
 
 	private Map<String, SpatialGrid> accessibilityGrids = new HashMap<>() ;
 
+	private final int numberOfThreads;
+
+	private Coord[] coords = new Coord[16];
+	private final Map<String, double[]> values = new HashMap<>();
+	private int count = 0;
+
+	public SpatialGridAggregator() {
+		this(1);
+	}
+
+	public SpatialGridAggregator(int numberOfThreads) {
+		this.numberOfThreads = Math.max(1, numberOfThreads);
+	}
+
 	@Override
 	public void setFacilityAccessibilities(ActivityFacility origin, Double timeOfDay, Map<String, Double> accessibilities) {
+		if (count == coords.length) {
+			coords = Arrays.copyOf(coords, 2 * count);
+			for (Map.Entry<String, double[]> e : values.entrySet()) {
+				e.setValue(Arrays.copyOf(e.getValue(), 2 * count));
+			}
+		}
+		coords[count] = origin.getCoord();
 		for (Map.Entry<String, Double> modes4AccessibilityDoubleEntry : accessibilities.entrySet()) {
-			accessibilityGrids.get(modes4AccessibilityDoubleEntry.getKey()).setValue(modes4AccessibilityDoubleEntry.getValue(), origin.getCoord().getX(), origin.getCoord().getY());
+			double[] modeValues = values.get(modes4AccessibilityDoubleEntry.getKey());
+			if (modeValues == null) {
+				modeValues = new double[coords.length];
+				Arrays.fill(modeValues, Double.NaN);
+				values.put(modes4AccessibilityDoubleEntry.getKey(), modeValues);
+			}
+			modeValues[count] = modes4AccessibilityDoubleEntry.getValue();
 		}
+		count++;
 	}
 
 	@Override
 	public void finish() {
+		for (Map.Entry<String, double[]> e : values.entrySet()) {
+			SpatialGrid grid = accessibilityGrids.get(e.getKey());
+			fillGrid(grid, e.getValue());
+		}
+		coords = new Coord[16];
+		values.clear();
+		count = 0;
+	}
+
+	private void fillGrid(final SpatialGrid grid, final double[] modeValues) {
+		final TiledRaster raster = grid.getRaster();
+		final int cols = raster.getCols();
+
+		// key = cell * count + notification index; if several measuring points fall into the same cell, the one
+		// notified last is kept (as if the values were set one after another)
+		final long[] keys = new long[count];
+		int keyCount = 0;
+		for (int i = 0; i < count; i++) {
+			if (grid.isInBounds(coords[i]) && !Double.isNaN(modeValues[i])) {
+				long cell = (long)grid.getRow(coords[i].getY()) * cols + grid.getColumn(coords[i].getX());
+				keys[keyCount++] = cell * count + i;
+			}
+		}
+		Arrays.sort(keys, 0, keyCount);
+		final int sortedKeyCount = keyCount;
 
+		raster.fill(new TiledRaster.CellFunction() {
+			@Override
+			public double computeValue(int row, int col) {
+				long cell = (long)row * cols + col;
+				int idx = Arrays.binarySearch(keys, 0, sortedKeyCount, (cell + 1) * count);
+				int last = (idx >= 0 ? idx : -idx - 1) - 1;
+				if (last >= 0 && keys[last] / count == cell) {
+					return modeValues[(int)(keys[last] % count)];
+				}
+				return raster.get(row, col);// no measuring point in this cell
+			}
+		}, numberOfThreads);
 	}
 
 	public Map<String, SpatialGrid> getAccessibilityGrids() {
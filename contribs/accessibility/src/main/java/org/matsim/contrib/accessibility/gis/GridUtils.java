@@ -238,16 +238,16 @@ public final class GridUtils {
 			spatialGridCnt.addToValue(1., coord) ;
 		}
 		if ( spatialGridAv!=null ) {
-			double[][] cntMatrix = spatialGridCnt.getMatrix();
-			for ( int ii=0 ; ii<cntMatrix.length ; ii++ ) {
+			TiledRaster cntRaster = spatialGridCnt.getRaster();
+			for ( int ii=0 ; ii<cntRaster.getRows() ; ii++ ) {
 				//				log.warn("ii=" + ii );
-				for ( int jj=0 ; jj<cntMatrix[ii].length ; jj++ ) {
-					double cnt = cntMatrix[ii][jj];
+				for ( int jj=0 ; jj<cntRaster.getCols() ; jj++ ) {
+					double cnt = cntRaster.get(ii, jj);
 					if ( cnt > 0. ) {
 						//						log.warn("jj=" + jj );
-						double sum = spatialGridSum.getMatrix()[ii][jj];
-						spatialGridAv.getMatrix()[ii][jj] = sum/cnt ;
-						log.warn("sum=" + sum + "; cnt=" + cnt + "; av=" + spatialGridAv.getMatrix()[ii][jj] ) ;
+						double sum = spatialGridSum.getRaster().get(ii, jj);
+						spatialGridAv.getRaster().set(ii, jj, sum/cnt) ;
+						log.warn("sum=" + sum + "; cnt=" + cnt + "; av=" + spatialGridAv.getRaster().get(ii, jj) ) ;
 					}
 				}
 			}
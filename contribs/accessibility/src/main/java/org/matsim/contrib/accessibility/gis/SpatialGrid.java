@@ -24,6 +24,7 @@
 package org.matsim.contrib.accessibility.gis;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 
 import org.apache.log4j.Logger;
@@ -36,6 +37,8 @@ import com.vividsolutions.jts.geom.Point;
 /**
  * The spatial grid saves the data values of a study area in a matrix.
  * Intern the matrix is mirrored horizontal.
+ * The matrix is stored in a {@link TiledRaster}, optionally backed by a memory-mapped file for grids that do not fit
+ * into the heap.
  * The methods getValue and setValue compensate the mirroring process (so altogether the class works consistent).
  * In contrast to the methods above the method getMirroredValue(int row, int col) returns the intern mirrored value.
  * 
@@ -47,7 +50,7 @@ import com.vividsolutions.jts.geom.Point;
 public final class SpatialGrid{
 	private static final Logger LOG = Logger.getLogger(SpatialGrid.class);
 	
-	private double[][] matrix;
+	private final TiledRaster raster;
 	
 	private final double minX;
 	
@@ -76,6 +79,14 @@ public final class SpatialGrid{
 	 * @param initialValue TODO
 	 */
 	public SpatialGrid(double xmin, double ymin, double xmax, double ymax, double resolution, double initialValue) {
+		this(xmin, ymin, xmax, ymax, resolution, initialValue, null);
+	}
+	
+	/**
+	 * @param resolution cell size. E.g. (xmax-xmin)/resolution = number of cells in x direction
+	 * @param mappedFile file in which the values are kept (memory-mapped), or null for keeping them on the heap
+	 */
+	public SpatialGrid(double xmin, double ymin, double xmax, double ymax, double resolution, double initialValue, File mappedFile) {
 		minX = xmin;
 		minY = ymin;
 		maxX = xmax;
@@ -84,12 +95,7 @@ public final class SpatialGrid{
 		int numXBins = (int)Math.ceil((maxX - minX) / resolution) + 1;
 		int numYBins = (int)Math.ceil((maxY - minY) / resolution) + 1;
 		
-		matrix = new double[numYBins][numXBins];
-		
-		// init matrix
-		for(int x = 0; x < numXBins; x++)
-			for(int y = 0; y < numYBins; y++)
-				matrix[y][x] = initialValue ;
+		raster = new TiledRaster(numYBins, numXBins, initialValue, mappedFile);
 	}
 	
 	/**
@@ -129,11 +135,39 @@ public final class SpatialGrid{
 	}
 	
 	public int getNumRows() {
-		return matrix.length;
+		return raster.getRows();
 	}
 	
 	public int getNumCols(int row) {
-		return matrix[row].length;
+		return raster.getCols();
+	}
+	
+	/**
+	 * @return the values in the intern representation (mirrored), e.g. for filling the grid in parallel
+	 */
+	public TiledRaster getRaster() {
+		return raster;
+	}
+	
+	/**
+	 * Releases the values and deletes the memory-mapped file (if any). The grid must not be used afterwards.
+	 */
+	public void close() {
+		raster.close();
+	}
+	
+	/**
+	 * @return the x coordinate of the lower left corner of the cells in the given column
+	 */
+	public double getXCoord(int col) {
+		return minX + col * resolution;
+	}
+	
+	/**
+	 * @return the y coordinate of the lower left corner of the cells in the given (mirrored) row
+	 */
+	public double getYCoord(int row) {
+		return minY + (raster.getRows() - 1 - row) * resolution;
 	}
 
 	/**
@@ -169,7 +203,7 @@ public final class SpatialGrid{
 	 */
 	public double getValue(double x, double y){
 		if(isInBounds(x, y))
-			return matrix[getRow(y)][getColumn(x)];
+			return raster.get(getRow(y), getColumn(x));
 		
 		// log.warn("This point lies outside the boundary!!!");
 		// log.warn("Boundary: xmin:"+this.minX+", ymin:"+ this.minY+", xmax:"+this.maxX+", maxy:"+this.maxY);
@@ -215,7 +249,7 @@ public final class SpatialGrid{
 	 */
 	public boolean setValue(double value, double x, double y){
 		if (isInBounds(x, y)){
-			matrix[getRow(y)][getColumn(x)] = value;
+			raster.set(getRow(y), getColumn(x), value);
 			return true;
 		} else
 			return false;
@@ -223,10 +257,11 @@ public final class SpatialGrid{
 	
 	public boolean addToValue( double value, double x, double y ) {
 		if ( isInBounds(x,y)) {
-			if ( Double.isNaN(matrix[getRow(y)][getColumn(x)])) {
+			double oldValue = raster.get(getRow(y), getColumn(x));
+			if ( Double.isNaN(oldValue)) {
 				return setValue( value, x, y ) ;
 			} else {
-				matrix[getRow(y)][getColumn(x)] += value;
+				raster.set(getRow(y), getColumn(x), oldValue + value);
 				return true ;
 			}
 		} else {
@@ -252,9 +287,9 @@ public final class SpatialGrid{
 	 */
 	@Deprecated
 	private boolean setMirroredValue(int row, int col, double value) {
-		if(row < matrix.length) {
-			if(col < matrix[row].length) {
-				matrix[row][col] = value;
+		if(row < raster.getRows()) {
+			if(col < raster.getCols()) {
+				raster.set(row, col, value);
 				return true;
 			} else
 				return false;
@@ -269,7 +304,7 @@ public final class SpatialGrid{
 	 * @return the row number of the y coordinate 
 	 */
 	public int getRow(double yCoord) {
-		return matrix.length - 1 - (int)Math.floor((yCoord - minY) / resolution);
+		return raster.getRows() - 1 - (int)Math.floor((yCoord - minY) / resolution);
 	}
 	
 	/**
@@ -286,11 +321,21 @@ public final class SpatialGrid{
 	 * independent of the intern representation (mirrored) this method returns the initial data as a matrix (remirrored)
 	 * for example the value at (xmin, ymin) will be at the bottom left corner of the returned matrix
 	 * hence it fits with the coordinate system if you plot the matrix
+	 * <p>
 	 * 
 	 * @return the initial data as a matrix
+	 * @deprecated the returned matrix is a copy of all cells on the heap, and changing it does not change the grid;
+	 *             use {@link #getRaster()} or {@link #getValue(double, double)} instead
 	 */
+	@Deprecated
 	public double[][] getMatrix(){
 //		return flip(matrix);
+		double[][] matrix = new double[raster.getRows()][raster.getCols()];
+		for (int row = 0; row < matrix.length; row++) {
+			for (int col = 0; col < matrix[row].length; col++) {
+				matrix[row][col] = raster.get(row, col);
+			}
+		}
 		return matrix;
 	}
 	
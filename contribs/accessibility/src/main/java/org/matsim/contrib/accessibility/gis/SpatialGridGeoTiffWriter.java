@@ -0,0 +1,191 @@
+/* *********************************************************************** *
+ * project: org.matsim.*                                                   *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.accessibility.gis;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Writes a {@link SpatialGrid} as a tiled, deflate-compressed GeoTIFF with 32-bit float samples (NaN = no data), which
+ * can be opened directly by QGIS, GDAL etc. Unlike the text table written by {@link SpatialGridTableWriter}, the file
+ * is read by GIS tile by tile, so fine grids over large regions remain usable. The tiles are streamed from the
+ * {@link TiledRaster}, so the grid is never copied to the heap.
+ * <p>
+ * Only the georeference (origin and cell size) is stored; the coordinate reference system is added if an EPSG code is
+ * given. Classic TIFF is limited to 4 GB (compressed).
+ */
+public final class SpatialGridGeoTiffWriter {
+	private static final Logger log = Logger.getLogger(SpatialGridGeoTiffWriter.class);
+
+	private static final int TILE_SIZE = TiledRaster.TILE_SIZE;
+
+	private static final short SHORT = 3;
+	private static final short LONG = 4;
+	private static final short ASCII = 2;
+	private static final short DOUBLE = 12;
+
+	private final int epsgCode;
+
+	/**
+	 * @param epsgCode code of the projected coordinate reference system, or 0 if unknown
+	 */
+	public SpatialGridGeoTiffWriter(int epsgCode) {
+		this.epsgCode = epsgCode;
+	}
+
+	public void write(SpatialGrid grid, String fileName) {
+		log.info("Writing spatial grid as GeoTIFF " + fileName + " ...");
+		TiledRaster raster = grid.getRaster();
+		int tileCount = raster.getTileRows() * raster.getTileCols();
+		long[] tileOffsets = new long[tileCount];
+		long[] tileByteCounts = new long[tileCount];
+
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "rw")) {
+			file.setLength(0);
+			file.write(new byte[] { 'I', 'I', 42, 0, 0, 0, 0, 0 });// IFD offset is set at the end
+
+			double[] values = new double[TILE_SIZE * TILE_SIZE];
+			ByteBuffer tileBytes = ByteBuffer.allocate(TILE_SIZE * TILE_SIZE * 4).order(ByteOrder.LITTLE_ENDIAN);
+			byte[] compressed = new byte[tileBytes.capacity() + 1024];
+			Deflater deflater = new Deflater();
+			for (int t = 0; t < tileCount; t++) {
+				raster.getTile(t / raster.getTileCols(), t % raster.getTileCols(), values);
+				tileBytes.clear();
+				for (double value : values) {
+					tileBytes.putFloat((float)value);
+				}
+
+				deflater.reset();
+				deflater.setInput(tileBytes.array());
+				deflater.finish();
+				int length = 0;
+				while (!deflater.finished()) {
+					if (length == compressed.length) {
+						compressed = Arrays.copyOf(compressed, 2 * compressed.length);
+					}
+					length += deflater.deflate(compressed, length, compressed.length - length);
+				}
+
+				tileOffsets[t] = file.getFilePointer();
+				tileByteCounts[t] = length;
+				file.write(compressed, 0, length);
+			}
+			deflater.end();
+
+			if (file.getFilePointer() % 2 == 1) {
+				file.write(0);// the IFD must begin on a word boundary
+			}
+			long ifdOffset = file.getFilePointer();
+			if (ifdOffset + 16 * tileCount + 1024 > 0xFFFFFFFFL) {
+				throw new RuntimeException("GeoTIFF larger than 4 GB; use a coarser resolution or a smaller area");
+			}
+			file.write(createIfd(grid, ifdOffset, tileOffsets, tileByteCounts));
+			file.seek(4);
+			file.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt((int)ifdOffset).array());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		log.info("... done!");
+	}
+
+	private byte[] createIfd(SpatialGrid grid, long ifdOffset, long[] tileOffsets, long[] tileByteCounts) {
+		short[] geoKeys = epsgCode == 0 ? new short[] { 1, 1, 0, 2, //
+				1024, 0, 1, 1, // GTModelTypeGeoKey = projected
+				1025, 0, 1, 1 }// GTRasterTypeGeoKey = pixel is area
+				: new short[] { 1, 1, 0, 3, //
+						1024, 0, 1, 1, //
+						1025, 0, 1, 1, //
+						3072, 0, 1, (short)epsgCode };// ProjectedCSTypeGeoKey
+		byte[] noData = "nan\0".getBytes(StandardCharsets.US_ASCII);
+
+		// tag values that do not fit into the 4 bytes of an entry are stored after the IFD
+		int entryCount = 16;
+		long dataOffset = ifdOffset + 2 + 12 * entryCount + 4;
+		ByteBuffer data = ByteBuffer.allocate(8 * tileOffsets.length + 8 * 9 + 2 * geoKeys.length + noData.length)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		ByteBuffer ifd = ByteBuffer.allocate((int)(dataOffset - ifdOffset)).order(ByteOrder.LITTLE_ENDIAN);
+		ifd.putShort((short)entryCount);
+
+		// entries must be sorted by tag
+		putEntry(ifd, 256, LONG, 1, grid.getRaster().getCols());// image width
+		putEntry(ifd, 257, LONG, 1, grid.getRaster().getRows());// image length
+		putEntry(ifd, 258, SHORT, 1, 32);// bits per sample
+		putEntry(ifd, 259, SHORT, 1, 8);// compression = deflate
+		putEntry(ifd, 262, SHORT, 1, 1);// photometric interpretation = black is zero
+		putEntry(ifd, 277, SHORT, 1, 1);// samples per pixel
+		putEntry(ifd, 284, SHORT, 1, 1);// planar configuration = chunky
+		putEntry(ifd, 322, SHORT, 1, TILE_SIZE);// tile width
+		putEntry(ifd, 323, SHORT, 1, TILE_SIZE);// tile length
+
+		putEntry(ifd, 324, LONG, tileOffsets.length, tileOffsets.length == 1 ? tileOffsets[0] : dataOffset + data.position());
+		putLongs(data, tileOffsets);
+		putEntry(ifd, 325, LONG, tileByteCounts.length,
+				tileByteCounts.length == 1 ? tileByteCounts[0] : dataOffset + data.position());
+		putLongs(data, tileByteCounts);
+
+		putEntry(ifd, 339, SHORT, 1, 3);// sample format = IEEE floating point
+
+		// cell size and the upper left corner of the grid
+		putEntry(ifd, 33550, DOUBLE, 3, dataOffset + data.position());// model pixel scale
+		data.putDouble(grid.getResolution()).putDouble(grid.getResolution()).putDouble(0);
+		putEntry(ifd, 33922, DOUBLE, 6, dataOffset + data.position());// model tiepoint
+		data.putDouble(0).putDouble(0).putDouble(0);
+		data.putDouble(grid.getXCoord(0)).putDouble(grid.getYCoord(0) + grid.getResolution()).putDouble(0);
+
+		putEntry(ifd, 34735, SHORT, geoKeys.length, dataOffset + data.position());// geo key directory
+		for (short key : geoKeys) {
+			data.putShort(key);
+		}
+		putEntry(ifd, 42113, ASCII, noData.length, (noData[0] & 0xFF) | (noData[1] & 0xFF) << 8
+				| (noData[2] & 0xFF) << 16);// GDAL no data (fits into the entry)
+
+		ifd.putInt(0);// no next IFD
+
+		byte[] bytes = new byte[ifd.capacity() + data.position()];
+		System.arraycopy(ifd.array(), 0, bytes, 0, ifd.capacity());
+		System.arraycopy(data.array(), 0, bytes, ifd.capacity(), data.position());
+		return bytes;
+	}
+
+	private static void putEntry(ByteBuffer ifd, int tag, short type, int count, long value) {
+		ifd.putShort((short)tag).putShort(type).putInt(count);
+		if (type == SHORT && count == 1) {
+			ifd.putShort((short)value).putShort((short)0);
+		} else {
+			ifd.putInt((int)value);
+		}
+	}
+
+	private static void putLongs(ByteBuffer data, long[] values) {
+		if (values.length > 1) {
+			for (long value : values) {
+				data.putInt((int)value);
+			}
+		}
+	}
+}
@@ -0,0 +1,259 @@
+/* *********************************************************************** *
+ * project: org.matsim.*                                                   *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.accessibility.gis;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Raster of doubles split into square tiles of {@link #TILE_SIZE} x {@link #TILE_SIZE} cells. The tiles are kept
+ * either on the heap or in a memory-mapped file, so rasters larger than the heap are possible (only the touched
+ * pages are held in memory by the operating system). Only absolute get/put operations are used, so different
+ * tiles can be filled by different threads at the same time. The tiles in the last tile row and column hold only
+ * the cells inside the raster.
+ * <p>
+ * Row 0 is the top (northern) row, as in image files.
+ */
+public final class TiledRaster implements Closeable {
+	private static final Logger LOG = Logger.getLogger(TiledRaster.class);
+
+	public static final int TILE_SIZE = 256;
+	private static final long SEGMENT_BYTES = 1 << 30;// memory-mapped in segments of (at most) 1 GB
+
+	/**
+	 * Computes the value of a cell; used by {@link TiledRaster#fill(CellFunction, int)}.
+	 */
+	public interface CellFunction {
+		double computeValue(int row, int col);
+	}
+
+	private final int rows;
+	private final int cols;
+	private final int tileRows;
+	private final int tileCols;
+	private final DoubleBuffer[] tiles;
+	private final File mappedFile;
+
+	/**
+	 * @param mappedFile
+	 *            file to be memory-mapped (it is deleted by {@link #close()}, at the latest on exit), or null for
+	 *            keeping the tiles on the heap
+	 */
+	public TiledRaster(int rows, int cols, double initialValue, File mappedFile) {
+		this.rows = rows;
+		this.cols = cols;
+		this.mappedFile = mappedFile;
+		tileRows = (rows + TILE_SIZE - 1) / TILE_SIZE;
+		tileCols = (cols + TILE_SIZE - 1) / TILE_SIZE;
+		tiles = new DoubleBuffer[tileRows * tileCols];
+
+		if (mappedFile == null) {
+			for (int t = 0; t < tiles.length; t++) {
+				tiles[t] = DoubleBuffer.allocate(getTileCellCount(t));
+			}
+		} else {
+			map(mappedFile);
+		}
+
+		if (initialValue != 0.) {// mapped files and new arrays are zeroed
+			for (DoubleBuffer tile : tiles) {
+				for (int i = 0; i < tile.capacity(); i++) {
+					tile.put(i, initialValue);
+				}
+			}
+		}
+	}
+
+	private void map(File file) {
+		file.deleteOnExit();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			long fileBytes = 0;
+			for (int t = 0; t < tiles.length; t++) {
+				fileBytes += getTileCellCount(t) * 8L;
+			}
+			raf.setLength(fileBytes);
+
+			// the mappings remain valid after closing the channel
+			long segmentStart = 0;
+			int first = 0;
+			while (first < tiles.length) {
+				long segmentBytes = 0;
+				int end = first;
+				while (end < tiles.length && segmentBytes + getTileCellCount(end) * 8L <= SEGMENT_BYTES) {
+					segmentBytes += getTileCellCount(end++) * 8L;
+				}
+				ByteBuffer segment = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, segmentStart, segmentBytes);
+				int position = 0;
+				for (int t = first; t < end; t++) {
+					int tileBytes = getTileCellCount(t) * 8;
+					segment.limit(position + tileBytes).position(position);
+					tiles[t] = segment.slice().order(ByteOrder.nativeOrder()).asDoubleBuffer();
+					position += tileBytes;
+				}
+				segmentStart += segmentBytes;
+				first = end;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private int getTileCellCount(int tile) {
+		return getTileHeight(tile / tileCols) * getTileWidth(tile % tileCols);
+	}
+
+	private int getTileHeight(int tileRow) {
+		return Math.min(TILE_SIZE, rows - tileRow * TILE_SIZE);
+	}
+
+	private int getTileWidth(int tileCol) {
+		return Math.min(TILE_SIZE, cols - tileCol * TILE_SIZE);
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getCols() {
+		return cols;
+	}
+
+	public int getTileRows() {
+		return tileRows;
+	}
+
+	public int getTileCols() {
+		return tileCols;
+	}
+
+	public double get(int row, int col) {
+		return tiles[tileIndex(row, col)].get(cellIndex(row, col));
+	}
+
+	public void set(int row, int col, double value) {
+		tiles[tileIndex(row, col)].put(cellIndex(row, col), value);
+	}
+
+	/**
+	 * Releases the tiles and deletes the memory-mapped file (if any). The raster must not be used afterwards.
+	 */
+	@Override
+	public void close() {
+		Arrays.fill(tiles, null);
+		// on some systems, a file cannot be deleted while mapped; it is then deleted on exit
+		if (mappedFile != null && !mappedFile.delete() && mappedFile.exists()) {
+			LOG.warn("Could not delete " + mappedFile + " yet; it will be deleted on exit");
+		}
+	}
+
+	/**
+	 * Cells outside the raster (in the last tile row or column) are returned as NaN.
+	 * 
+	 * @return values of tile (tileRow, tileCol), row by row
+	 */
+	public double[] getTile(int tileRow, int tileCol, double[] values) {
+		DoubleBuffer tile = tiles[tileRow * tileCols + tileCol];
+		int height = getTileHeight(tileRow);
+		int width = getTileWidth(tileCol);
+		for (int r = 0; r < TILE_SIZE; r++) {
+			for (int c = 0; c < TILE_SIZE; c++) {
+				values[r * TILE_SIZE + c] = r < height && c < width ? tile.get(r * width + c) : Double.NaN;
+			}
+		}
+		return values;
+	}
+
+	private int tileIndex(int row, int col) {
+		if (row < 0 || row >= rows || col < 0 || col >= cols) {
+			throw new IndexOutOfBoundsException("(" + row + ", " + col + ") is outside " + rows + " x " + cols);
+		}
+		return (row / TILE_SIZE) * tileCols + col / TILE_SIZE;
+	}
+
+	private int cellIndex(int row, int col) {
+		return (row % TILE_SIZE) * getTileWidth(col / TILE_SIZE) + col % TILE_SIZE;
+	}
+
+	/**
+	 * Sets all cells to the values computed by the function. The tiles are distributed over the threads, so the
+	 * function must be thread-safe.
+	 */
+	public void fill(final CellFunction function, final int numberOfThreads) {
+		ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads);
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int t = 0; t < numberOfThreads; t++) {
+			final int firstTile = t;
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (int tile = firstTile; tile < tiles.length; tile += numberOfThreads) {
+						fillTile(function, tile / tileCols, tile % tileCols);
+					}
+					return null;
+				}
+			});
+		}
+
+		try {
+			for (Future<Void> future : executorService.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			// call() throws no checked exceptions
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			throw (Error)cause;
+		} finally {
+			executorService.shutdown();
+		}
+	}
+
+	private void fillTile(CellFunction function, int tileRow, int tileCol) {
+		DoubleBuffer tile = tiles[tileRow * tileCols + tileCol];
+		int maxRow = Math.min(rows, (tileRow + 1) * TILE_SIZE);
+		int maxCol = Math.min(cols, (tileCol + 1) * TILE_SIZE);
+		for (int row = tileRow * TILE_SIZE; row < maxRow; row++) {
+			for (int col = tileCol * TILE_SIZE; col < maxCol; col++) {
+				tile.put(cellIndex(row, col), function.computeValue(row, col));
+			}
+		}
+	}
+}
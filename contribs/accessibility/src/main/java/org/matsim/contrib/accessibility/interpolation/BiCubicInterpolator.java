@@ -40,7 +40,13 @@ class BiCubicInterpolator {
 		//create coordinate vectors for interpolation and a compatible array of values
 		double[] x_coords= coord(sg.getXmin(), sg.getXmax(), sg.getResolution());
 		double[] y_coords= coord(sg.getYmin(), sg.getYmax(), sg.getResolution());
-		double[][] mirroredValues= sg.getMatrix();
+		// (the apache interpolator needs the values as an array)
+		double[][] mirroredValues= new double[y_coords.length][x_coords.length];
+		for (int row = 0; row < y_coords.length; row++) {
+			for (int col = 0; col < x_coords.length; col++) {
+				mirroredValues[row][col] = sg.getRaster().get(row, col);
+			}
+		}
 		
 		BivariateRealGridInterpolator interpolator = new BicubicSplineInterpolator();
 		try {
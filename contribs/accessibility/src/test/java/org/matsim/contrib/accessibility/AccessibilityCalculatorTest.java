@@ -0,0 +1,190 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.accessibility;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.contrib.accessibility.gis.GridUtils;
+import org.matsim.contrib.accessibility.interfaces.FacilityDataExchangeInterface;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutilityFactory;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+import org.matsim.facilities.ActivityFacilitiesImpl;
+import org.matsim.facilities.ActivityFacility;
+
+/**
+ * Compares the accessibilities computed in several threads with the ones computed in a single thread, with and
+ * without a cut-off distance.
+ */
+public class AccessibilityCalculatorTest {
+	private static final int GRID_SIZE = 8;
+	private static final double SPACING = 300;
+
+	private Scenario scenario;
+	private ActivityFacilitiesImpl opportunities;
+
+	@Before
+	public void init() {
+		Random random = new Random(42);
+		Config config = ConfigUtils.createConfig();
+		ConfigUtils.addOrGetModule(config, AccessibilityConfigGroup.class);
+		scenario = ScenarioUtils.createScenario(config);
+
+		Network network = scenario.getNetwork();
+		Node[][] grid = new Node[GRID_SIZE][GRID_SIZE];
+		for (int x = 0; x < GRID_SIZE; x++) {
+			for (int y = 0; y < GRID_SIZE; y++) {
+				grid[x][y] = NetworkUtils.createAndAddNode(network, Id.createNodeId(x + "_" + y),
+						new Coord(x * SPACING, y * SPACING));
+			}
+		}
+		for (int x = 0; x < GRID_SIZE; x++) {
+			for (int y = 0; y < GRID_SIZE; y++) {
+				if (x + 1 < GRID_SIZE) {
+					addLinks(network, grid[x][y], grid[x + 1][y], random);
+				}
+				if (y + 1 < GRID_SIZE) {
+					addLinks(network, grid[x][y], grid[x][y + 1], random);
+				}
+			}
+		}
+
+		opportunities = new ActivityFacilitiesImpl("opportunities");
+		double extent = (GRID_SIZE - 1) * SPACING;
+		for (int i = 0; i < 100; i++) {
+			opportunities.createAndAddFacility(Id.create(i, ActivityFacility.class),
+					new Coord(random.nextDouble() * extent, random.nextDouble() * extent));
+		}
+	}
+
+	private static void addLinks(Network network, Node a, Node b, Random random) {
+		double length = SPACING * (1 + random.nextDouble());
+		double freespeed = 5 + random.nextInt(10);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(a.getId() + "-" + b.getId()), a, b, length, freespeed,
+				1000, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(b.getId() + "-" + a.getId()), b, a, length, freespeed,
+				1000, 1);
+	}
+
+	@Test
+	public void testMultiThreadedEqualsSingleThreaded() {
+		Map<Id<ActivityFacility>, Map<String, Double>> singleThreaded = computeAccessibilities(1);
+		Map<Id<ActivityFacility>, Map<String, Double>> multiThreaded = computeAccessibilities(4);
+		assertAccessibilitiesEqual(singleThreaded, multiThreaded);
+	}
+
+	@Test
+	public void testCutoffDistance() {
+		Map<Id<ActivityFacility>, Map<String, Double>> withoutCutoff = computeAccessibilities(1);
+
+		// all opportunities within the cut-off distance
+		setCutoffDistance(10 * GRID_SIZE * SPACING);
+		assertAccessibilitiesEqual(withoutCutoff, computeAccessibilities(1));
+		assertAccessibilitiesEqual(withoutCutoff, computeAccessibilities(4));
+
+		// only the nearby opportunities contribute
+		setCutoffDistance(2 * SPACING);
+		Map<Id<ActivityFacility>, Map<String, Double>> singleThreaded = computeAccessibilities(1);
+		Map<Id<ActivityFacility>, Map<String, Double>> multiThreaded = computeAccessibilities(4);
+		assertAccessibilitiesEqual(singleThreaded, multiThreaded);
+
+		boolean anyLower = false;
+		for (Id<ActivityFacility> id : withoutCutoff.keySet()) {
+			for (String mode : withoutCutoff.get(id).keySet()) {
+				double full = withoutCutoff.get(id).get(mode);
+				double cut = singleThreaded.get(id).get(mode);
+				Assert.assertTrue(cut <= full);
+				anyLower |= cut < full;
+			}
+		}
+		Assert.assertTrue(anyLower);
+	}
+
+	private void setCutoffDistance(double cutoffDistance) {
+		ConfigUtils.addOrGetModule(scenario.getConfig(), AccessibilityConfigGroup.class)
+				.setCutoffDistance(cutoffDistance);
+	}
+
+	private Map<Id<ActivityFacility>, Map<String, Double>> computeAccessibilities(int numberOfThreads) {
+		scenario.getConfig().global().setNumberOfThreads(numberOfThreads);
+		ActivityFacilitiesImpl measuringPoints = GridUtils.createGridLayerByGridSizeByBoundingBoxV2(-50, -50,
+				(GRID_SIZE - 1) * SPACING + 50, (GRID_SIZE - 1) * SPACING + 50, 150);
+		AccessibilityCalculator calculator = new AccessibilityCalculator(scenario, measuringPoints);
+		calculator.putAccessibilityContributionCalculator(TransportMode.car,
+				new AccessibilityContributionCalculatorFactory() {
+					@Override
+					public AccessibilityContributionCalculator createCalculator() {
+						return new NetworkModeAccessibilityExpContributionCalculator(new FreeSpeedTravelTime(),
+								new OnlyTimeDependentTravelDisutilityFactory(), scenario);
+					}
+				});
+		calculator.putAccessibilityContributionCalculator(TransportMode.walk,
+				new AccessibilityContributionCalculatorFactory() {
+					@Override
+					public AccessibilityContributionCalculator createCalculator() {
+						return new ConstantSpeedAccessibilityExpContributionCalculator(TransportMode.walk,
+								scenario.getConfig(), scenario.getNetwork());
+					}
+				});
+
+		final Map<Id<ActivityFacility>, Map<String, Double>> accessibilities = new HashMap<>();
+		calculator.addFacilityDataExchangeListener(new FacilityDataExchangeInterface() {
+			@Override
+			public void setFacilityAccessibilities(ActivityFacility measurePoint, Double timeOfDay,
+					Map<String, Double> values) {
+				Assert.assertNull(accessibilities.put(measurePoint.getId(), values));
+			}
+
+			@Override
+			public void finish() {
+			}
+		});
+		calculator.computeAccessibilities(8. * 3600, opportunities);
+
+		Assert.assertEquals(measuringPoints.getFacilities().size(), accessibilities.size());
+		return accessibilities;
+	}
+
+	private static void assertAccessibilitiesEqual(Map<Id<ActivityFacility>, Map<String, Double>> expected,
+			Map<Id<ActivityFacility>, Map<String, Double>> actual) {
+		Assert.assertEquals(expected.keySet(), actual.keySet());
+		for (Id<ActivityFacility> id : expected.keySet()) {
+			Assert.assertEquals(expected.get(id).keySet(), actual.get(id).keySet());
+			for (String mode : expected.get(id).keySet()) {
+				double value = expected.get(id).get(mode);
+				Assert.assertEquals(id + " " + mode, value, actual.get(id).get(mode), Math.abs(value) * 1e-12);
+			}
+		}
+	}
+}
@@ -1,9 +1,12 @@
 package org.matsim.contrib.accessibility.grid;
 
+import java.io.File;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.contrib.accessibility.gis.SpatialGrid;
+import org.matsim.contrib.accessibility.gis.TiledRaster;
 import org.matsim.contrib.matrixbasedptrouter.utils.CreateTestNetwork;
 import org.matsim.contrib.matrixbasedptrouter.utils.BoundingBox;
 import org.matsim.testcases.MatsimTestCase;
@@ -33,5 +36,42 @@ public class SpatialGridTest extends MatsimTestCase{
 		int cols = testGrid.getNumCols(0);
 		double numOfExpectedCols = ((nbb.getXMax() - nbb.getXMin()) / cellSize) + 1;
 		Assert.assertTrue(cols == numOfExpectedCols);
-	}	
+	}
+	
+	@Test
+	public void testMemoryMappedSpatialGrid() {
+		// several tiles, the last ones only partly used
+		SpatialGrid heapGrid = new SpatialGrid(0, 0, 3000, 2000, cellSize, Double.NaN);
+		File mappedFile = new File(getOutputDirectory() + "grid.bin");
+		SpatialGrid mappedGrid = new SpatialGrid(0, 0, 3000, 2000, cellSize, Double.NaN, mappedFile);
+		// only the cells inside the grid are stored
+		Assert.assertEquals(8L * mappedGrid.getNumRows() * mappedGrid.getNumCols(0), mappedFile.length());
+		
+		TiledRaster.CellFunction function = new TiledRaster.CellFunction() {
+			@Override
+			public double computeValue(int row, int col) {
+				return row * 1000. + col;
+			}
+		};
+		mappedGrid.getRaster().fill(function, 4);
+		
+		for (double y = 0; y <= 2000; y += cellSize) {
+			for (double x = 0; x <= 3000; x += cellSize) {
+				heapGrid.setValue(function.computeValue(heapGrid.getRow(y), heapGrid.getColumn(x)), x, y);
+			}
+		}
+		heapGrid.addToValue(0.5, 1234, 567);
+		mappedGrid.addToValue(0.5, 1234, 567);
+		
+		for (double y = 0; y <= 2000; y += cellSize) {
+			for (double x = 0; x <= 3000; x += cellSize) {
+				Assert.assertEquals(heapGrid.getValue(x, y), mappedGrid.getValue(x, y), 0.);
+			}
+		}
+		Assert.assertEquals(mappedGrid.getRaster().get(mappedGrid.getRow(567), mappedGrid.getColumn(1234)), 
+				mappedGrid.getRow(567) * 1000. + mappedGrid.getColumn(1234) + 0.5, 0.);
+		
+		mappedGrid.close();
+		Assert.assertFalse(mappedFile.exists());
+	}
 }
@@ -47,6 +47,8 @@ public class DrtAnalysisControlerListener implements IterationEndsListener {
 	@Inject
 	DynModePassengerStats drtPassengerStats;
 	@Inject
+	DrtTimeBinStats timeBinStats;
+	@Inject
 	MatsimServices matsimServices;
 	@Inject
 	Network network;
@@ -96,6 +98,8 @@ public class DrtAnalysisControlerListener implements IterationEndsListener {
 				matsimServices.getControlerIO().getIterationFilename(event.getIteration(), "drt_detours"));
 		DynModeTripsAnalyser.analyseWaitTimes(
 				matsimServices.getControlerIO().getIterationFilename(event.getIteration(), "waitStats"), trips, 1800);
+		timeBinStats.write(
+				matsimServices.getControlerIO().getIterationFilename(event.getIteration(), "drt_time_bin_stats.txt"));
 	}
 
 	/**
@@ -0,0 +1,63 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.analysis;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.contrib.drt.vrpagent.DrtActionCreator;
+import org.matsim.contrib.dvrp.run.DvrpConfigGroup;
+import org.matsim.contrib.dvrp.util.StreamingFleetStats;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.network.io.MatsimNetworkReader;
+
+import com.google.inject.Inject;
+
+/**
+ * DRT fleet statistics in 15-minute time bins, computed from events in a single pass (see
+ * {@link StreamingFleetStats}). Can be also run offline, with the network and events files as input.
+ */
+public class DrtTimeBinStats extends StreamingFleetStats {
+	private static final int MAX_OCCUPANCY = 8;
+	private static final int TIME_BIN_SIZE = 900;
+
+	@Inject
+	public DrtTimeBinStats(Network network, EventsManager events, Config config) {
+		this(network, ((DvrpConfigGroup)config.getModules().get(DvrpConfigGroup.GROUP_NAME)).getMode());
+		events.addHandler(this);
+	}
+
+	public DrtTimeBinStats(Network network, String mode) {
+		super(network, mode, DrtActionCreator.DRT_STAY_NAME, MAX_OCCUPANCY, TIME_BIN_SIZE);
+	}
+
+	/**
+	 * @param args
+	 *            networkFile eventsFile outputFile mode
+	 */
+	public static void main(String[] args) {
+		Network network = NetworkUtils.createNetwork();
+		new MatsimNetworkReader(network).readFile(args[0]);
+
+		DrtTimeBinStats stats = new DrtTimeBinStats(network, args[3]);
+		stats.readEventsFile(args[1]);
+		stats.write(args[2]);
+	}
+}
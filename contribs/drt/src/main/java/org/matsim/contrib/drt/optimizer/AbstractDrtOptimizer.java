@@ -19,14 +19,15 @@
 
 package org.matsim.contrib.drt.optimizer;
 
-import java.util.Collection;
+import java.util.*;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.contrib.drt.data.DrtRequest;
 import org.matsim.contrib.drt.schedule.DrtTask;
+import org.matsim.contrib.drt.schedule.DrtTask.DrtTaskType;
 import org.matsim.contrib.dvrp.data.*;
-import org.matsim.contrib.dvrp.schedule.Task;
+import org.matsim.contrib.dvrp.schedule.*;
 import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
 
 /**
@@ -35,26 +36,50 @@ import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
 public abstract class AbstractDrtOptimizer implements DrtOptimizer {
 	private final DrtOptimizerContext optimContext;
 	private final Collection<DrtRequest> unplannedRequests;
+	private final int reoptimizationTimeStep;
 
 	private boolean requiresReoptimization = false;
 
+	// vehicles that are not waiting at the end of their schedules; the timelines of the other vehicles cannot deviate
+	// from the current time (their current task is the final stay task), so they need no update at decision epochs
+	private final Set<Vehicle> busyVehicles = new LinkedHashSet<>();
+
 	public AbstractDrtOptimizer(DrtOptimizerContext optimContext, Collection<DrtRequest> unplannedRequests) {
+		this(optimContext, unplannedRequests, 1);
+	}
+
+	/**
+	 * @param reoptimizationTimeStep
+	 *            requests submitted within this time window are scheduled together at the beginning of the next one
+	 */
+	public AbstractDrtOptimizer(DrtOptimizerContext optimContext, Collection<DrtRequest> unplannedRequests,
+			int reoptimizationTimeStep) {
+		if (reoptimizationTimeStep < 1) {
+			throw new IllegalArgumentException("reoptimizationTimeStep must be positive: " + reoptimizationTimeStep);
+		}
 		this.optimContext = optimContext;
 		this.unplannedRequests = unplannedRequests;
+		this.reoptimizationTimeStep = reoptimizationTimeStep;
 	}
 
 	@Override
 	public void notifyMobsimBeforeSimStep(@SuppressWarnings("rawtypes") MobsimBeforeSimStepEvent e) {
-		if (requiresReoptimization) {
-			for (Vehicle v : optimContext.fleet.getVehicles().values()) {
+		if (requiresReoptimization && isNewDecisionEpoch(e, reoptimizationTimeStep)) {
+			// reset before scheduling, so that scheduleUnplannedRequests() may request another reoptimization
+			requiresReoptimization = false;
+
+			for (Vehicle v : busyVehicles) {
 				optimContext.scheduler.updateTimeline(v);
 			}
 
 			scheduleUnplannedRequests();
-			requiresReoptimization = false;
 		}
 	}
 
+	protected boolean isNewDecisionEpoch(@SuppressWarnings("rawtypes") MobsimBeforeSimStepEvent e, int epochLength) {
+		return e.getSimulationTime() % epochLength == 0;
+	}
+
 	protected abstract void scheduleUnplannedRequests();
 
 	@Override
@@ -75,12 +100,23 @@ public abstract class AbstractDrtOptimizer implements DrtOptimizer {
 		optimContext.scheduler.updateBeforeNextTask(vehicle);
 
 		Task newCurrentTask = vehicle.getSchedule().nextTask();
+		if (newCurrentTask == null || isFinalStay(vehicle, (DrtTask)newCurrentTask)) {
+			busyVehicles.remove(vehicle);
+		} else {
+			busyVehicles.add(vehicle);
+		}
 
 		if (!requiresReoptimization && newCurrentTask != null) {// schedule != COMPLETED
 			requiresReoptimization = doReoptimizeAfterNextTask((DrtTask)newCurrentTask);
 		}
 	}
 
+	// a vehicle that gets a new request while waiting at the end of its schedule becomes busy when the stay task ends
+	// (the stay is ended at the time of insertion; any delay is taken into account by updateBeforeNextTask())
+	private static boolean isFinalStay(Vehicle vehicle, DrtTask task) {
+		return task.getDrtTaskType() == DrtTaskType.STAY && Schedules.getLastTask(vehicle.getSchedule()) == task;
+	}
+
 	protected boolean doReoptimizeAfterNextTask(DrtTask newCurrentTask) {
 		return false;
 	}
@@ -100,4 +136,8 @@ public abstract class AbstractDrtOptimizer implements DrtOptimizer {
 	protected DrtOptimizerContext getOptimContext() {
 		return optimContext;
 	}
+
+	protected void setRequiresReoptimization(boolean requiresReoptimization) {
+		this.requiresReoptimization = requiresReoptimization;
+	}
 }
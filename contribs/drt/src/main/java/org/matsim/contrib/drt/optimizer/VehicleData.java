@@ -21,33 +21,43 @@ package org.matsim.contrib.drt.optimizer;
 
 import java.util.*;
 
+import org.matsim.api.core.v01.Id;
 import org.matsim.contrib.drt.data.DrtRequest;
 import org.matsim.contrib.drt.schedule.*;
 import org.matsim.contrib.drt.schedule.DrtTask.DrtTaskType;
 import org.matsim.contrib.dvrp.data.Vehicle;
-import org.matsim.contrib.dvrp.schedule.Schedule;
+import org.matsim.contrib.dvrp.schedule.*;
 import org.matsim.contrib.dvrp.schedule.Schedule.ScheduleStatus;
 import org.matsim.contrib.dvrp.tracker.OnlineDriveTaskTracker;
 import org.matsim.contrib.dvrp.util.LinkTimePair;
 
 /**
+ * Task times are copied when an entry is created, so an entry is a snapshot of the vehicle's schedule that can be
+ * read by other threads while the simulation modifies the schedule.
+ *
  * @author michalm
  */
 public class VehicleData {
 	public static class Entry {
 		public final Vehicle vehicle;
 		public final LinkTimePair start;
+		public final boolean ongoingStopTask;
+		public final double lastTaskBeginTime;
 		public int startOccupancy;
 		public final List<Stop> stops = new ArrayList<>();
 
-		public Entry(Vehicle vehicle, LinkTimePair start) {
+		public Entry(Vehicle vehicle, LinkTimePair start, boolean ongoingStopTask, double lastTaskBeginTime) {
 			this.vehicle = vehicle;
 			this.start = start;
+			this.ongoingStopTask = ongoingStopTask;
+			this.lastTaskBeginTime = lastTaskBeginTime;
 		}
 	}
 
 	public static class Stop {
 		public final DrtStopTask task;
+		public final double beginTime;
+		public final double endTime;
 		public final double maxArrivalTime;// relating to max pass drive time (for dropoff requests)
 		public final double maxDepartureTime;// relating to pass max wait time (for pickup requests)
 		public final int occupancyChange;// diff in pickups and dropoffs
@@ -55,6 +65,8 @@ public class VehicleData {
 
 		public Stop(DrtStopTask task) {
 			this.task = task;
+			beginTime = task.getBeginTime();
+			endTime = task.getEndTime();
 			maxArrivalTime = calcMaxArrivalTime();
 			maxDepartureTime = calcMaxDepartureTime();
 			occupancyChange = task.getPickupRequests().size() - task.getDropoffRequests().size();
@@ -85,6 +97,7 @@ public class VehicleData {
 	}
 
 	private final List<Entry> entries = new ArrayList<>();
+	private final Map<Id<Vehicle>, Integer> entryIndices = new HashMap<>();
 	private final double currTime;
 
 	public VehicleData(DrtOptimizerContext optimContext, Iterable<? extends Vehicle> vehicles) {
@@ -93,16 +106,25 @@ public class VehicleData {
 		for (Vehicle v : vehicles) {
 			Entry e = createVehicleData(v);
 			if (e != null) {
+				entryIndices.put(v.getId(), entries.size());
 				entries.add(e);
 			}
 		}
 	}
 
 	public void updateEntry(Entry vEntry) {
-		int idx = entries.indexOf(vEntry);// TODO inefficient! ==> use map instead of list for storing entries...
+		int idx = entryIndices.get(vEntry.vehicle.getId());
 		entries.set(idx, createVehicleData(vEntry.vehicle));
 	}
 
+	/**
+	 * @return the current entry of the vehicle, or null if the vehicle is not available (e.g. out of service)
+	 */
+	public Entry getEntry(Vehicle vehicle) {
+		Integer idx = entryIndices.get(vehicle.getId());
+		return idx == null ? null : entries.get(idx);
+	}
+
 	private Entry createVehicleData(Vehicle vehicle) {
 		Schedule schedule = vehicle.getSchedule();
 		ScheduleStatus status = schedule.getStatus();
@@ -146,7 +168,10 @@ public class VehicleData {
 			nextTaskIdx = 0;
 		}
 
-		Entry data = new Entry(vehicle, start);
+		boolean ongoingStopTask = status == ScheduleStatus.STARTED
+				&& currentTask.getDrtTaskType() == DrtTaskType.STOP;
+		double lastTaskBeginTime = Schedules.getLastTask(schedule).getBeginTime();
+		Entry data = new Entry(vehicle, start, ongoingStopTask, lastTaskBeginTime);
 		for (int i = nextTaskIdx; i < tasks.size(); i++) {
 			DrtTask task = tasks.get(i);
 			if (task.getDrtTaskType() == DrtTaskType.STOP) {
@@ -0,0 +1,59 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.optimizer.insertion;
+
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.util.distance.DistanceUtils;
+
+/**
+ * Straight-line distance divided by the max speed. It is a lower bound as long as link lengths are not shorter than
+ * the straight-line distances between their nodes and no vehicle is faster than maxSpeed.
+ */
+public class BeelineTravelTimeLowerBound implements TravelTimeLowerBound {
+	public static double calcMaxFreespeed(Network network) {
+		double maxFreespeed = 0;
+		for (Link l : network.getLinks().values()) {
+			maxFreespeed = Math.max(maxFreespeed, l.getFreespeed());
+		}
+		return maxFreespeed;
+	}
+
+	private final double maxSpeed;
+
+	/**
+	 * @param maxSpeed
+	 *            [m/s]; Double.POSITIVE_INFINITY makes all bounds equal to 0
+	 */
+	public BeelineTravelTimeLowerBound(double maxSpeed) {
+		if (!(maxSpeed > 0)) {
+			throw new IllegalArgumentException("maxSpeed must be positive: " + maxSpeed);
+		}
+		this.maxSpeed = maxSpeed;
+	}
+
+	@Override
+	public double calcTravelTimeLowerBound(Link fromLink, Link toLink) {
+		if (fromLink == toLink) {
+			return 0;
+		}
+		// the path leads from the end of fromLink to the beginning of toLink
+		return DistanceUtils.calculateDistance(fromLink.getToNode(), toLink.getFromNode()) / maxSpeed;
+	}
+}
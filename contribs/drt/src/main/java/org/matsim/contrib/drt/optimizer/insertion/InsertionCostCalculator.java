@@ -23,9 +23,6 @@ import org.matsim.contrib.drt.data.DrtRequest;
 import org.matsim.contrib.drt.optimizer.VehicleData;
 import org.matsim.contrib.drt.optimizer.VehicleData.Stop;
 import org.matsim.contrib.drt.optimizer.insertion.SingleVehicleInsertionProblem.Insertion;
-import org.matsim.contrib.drt.schedule.*;
-import org.matsim.contrib.drt.schedule.DrtTask.DrtTaskType;
-import org.matsim.contrib.dvrp.schedule.Schedules;
 
 /**
  * @author michalm
@@ -61,8 +58,7 @@ public class InsertionCostCalculator {
 
 	private double calculatePickupDetourTimeLoss(DrtRequest drtRequest, VehicleData.Entry vEntry, Insertion insertion) {
 		// 'no detour' is also possible now for pickupIdx==0 if the currentTask is STOP
-		boolean ongoingStopTask = insertion.pickupIdx == 0
-				&& ((DrtTask)vEntry.vehicle.getSchedule().getCurrentTask()).getDrtTaskType() == DrtTaskType.STOP;
+		boolean ongoingStopTask = insertion.pickupIdx == 0 && vEntry.ongoingStopTask;
 
 		if ((ongoingStopTask && drtRequest.getFromLink() == vEntry.start.link) //
 				|| (insertion.pickupIdx > 0 //
@@ -109,8 +105,8 @@ public class InsertionCostCalculator {
 		}
 
 		double replacedDriveStartTime = (insertionIdx == 0) ? vEntry.start.time //
-				: vEntry.stops.get(insertionIdx - 1).task.getEndTime();
-		double replacedDriveEndTime = vEntry.stops.get(insertionIdx).task.getBeginTime();
+				: vEntry.stops.get(insertionIdx - 1).endTime;
+		double replacedDriveEndTime = vEntry.stops.get(insertionIdx).beginTime;
 		return replacedDriveEndTime - replacedDriveStartTime;
 	}
 
@@ -120,8 +116,8 @@ public class InsertionCostCalculator {
 		for (int s = insertion.pickupIdx; s < insertion.dropoffIdx; s++) {
 			Stop stop = vEntry.stops.get(s);
 			// all stops after pickup are delayed by pickupDetourTimeLoss
-			if (stop.task.getBeginTime() + pickupDetourTimeLoss > stop.maxArrivalTime //
-					|| stop.task.getEndTime() + pickupDetourTimeLoss > stop.maxDepartureTime) {
+			if (stop.beginTime + pickupDetourTimeLoss > stop.maxArrivalTime //
+					|| stop.endTime + pickupDetourTimeLoss > stop.maxDepartureTime) {
 				return false;
 			}
 		}
@@ -130,15 +126,15 @@ public class InsertionCostCalculator {
 		for (int s = insertion.dropoffIdx; s < vEntry.stops.size(); s++) {
 			Stop stop = vEntry.stops.get(s);
 			// all stops after dropoff are delayed by totalTimeLoss
-			if (stop.task.getBeginTime() + totalTimeLoss > stop.maxArrivalTime //
-					|| stop.task.getEndTime() + totalTimeLoss > stop.maxDepartureTime) {
+			if (stop.beginTime + totalTimeLoss > stop.maxArrivalTime //
+					|| stop.endTime + totalTimeLoss > stop.maxDepartureTime) {
 				return false;
 			}
 		}
 
 		// reject solutions when maxWaitTime for the new request is violated
 		double driveToPickupStartTime = (insertion.pickupIdx == 0) ? vEntry.start.time //
-				: vEntry.stops.get(insertion.pickupIdx - 1).task.getEndTime();
+				: vEntry.stops.get(insertion.pickupIdx - 1).endTime;
 
 		double pickupEndTime = driveToPickupStartTime + insertion.pathToPickup.path.travelTime
 				+ insertion.pathToPickup.firstAndLastLinkTT + stopDuration;
@@ -150,7 +146,7 @@ public class InsertionCostCalculator {
 		// reject solutions when latestArrivalTime for the new request is violated
 		double dropoffStartTime = insertion.pickupIdx == insertion.dropoffIdx
 				? pickupEndTime + insertion.pathFromPickup.path.travelTime + insertion.pathFromPickup.firstAndLastLinkTT
-				: vEntry.stops.get(insertion.dropoffIdx - 1).task.getEndTime() + insertion.pathToDropoff.path.travelTime
+				: vEntry.stops.get(insertion.dropoffIdx - 1).endTime + insertion.pathToDropoff.path.travelTime
 						+ insertion.pathToDropoff.firstAndLastLinkTT;
 		
 		if (dropoffStartTime > drtRequest.getLatestArrivalTime()) {
@@ -158,8 +154,7 @@ public class InsertionCostCalculator {
 		}
 
 		// vehicle's time window cannot be violated
-		DrtStayTask lastTask = (DrtStayTask)Schedules.getLastTask(vEntry.vehicle.getSchedule());
-		double timeSlack = vEntry.vehicle.getServiceEndTime() - lastTask.getBeginTime();
+		double timeSlack = vEntry.vehicle.getServiceEndTime() - vEntry.lastTaskBeginTime;
 		if (timeSlack < totalTimeLoss) {
 			return false;
 		}
@@ -20,10 +20,12 @@
 package org.matsim.contrib.drt.optimizer.insertion;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.apache.log4j.Logger;
 import org.matsim.contrib.drt.data.DrtRequest;
 import org.matsim.contrib.drt.optimizer.*;
+import org.matsim.contrib.drt.optimizer.VehicleData.Entry;
 import org.matsim.contrib.drt.optimizer.insertion.SingleVehicleInsertionProblem.BestInsertion;
 import org.matsim.contrib.drt.run.DrtConfigGroup;
 import org.matsim.contrib.dvrp.data.Requests;
@@ -35,14 +37,26 @@ import org.matsim.core.router.util.*;
 import org.matsim.core.utils.misc.Time;
 
 /**
+ * In the asynchronous mode ({@link DrtConfigGroup#isAsyncInsertionSearch()}), the insertion search for the requests
+ * collected in one time window runs in the background on a snapshot of the vehicle schedules, while the simulation
+ * proceeds. At the beginning of the next window, each request is inserted into the vehicle found in the background,
+ * after re-evaluating the insertion against the current schedule of that vehicle. Only if that vehicle cannot serve
+ * the request anymore, the whole fleet is searched again. Since the results are applied at a fixed time step and the
+ * search reads only the snapshot, the outcome does not depend on thread timing.
+ *
  * @author michalm
  */
 public class InsertionDrtOptimizer extends AbstractDrtOptimizer implements MobsimBeforeCleanupListener {
 	private final ParallelMultiVehicleInsertionProblem insertionProblem;
 	private final boolean printWarnings;
-	
+
+	private final ExecutorService asyncSearchExecutor;// null in the synchronous mode
+	private List<DrtRequest> pendingRequests;
+	private Future<List<BestInsertion>> pendingSearch;
+
 	public InsertionDrtOptimizer(DrtOptimizerContext optimContext, DrtConfigGroup drtCfg) {
-		super(optimContext, new TreeSet<DrtRequest>(Requests.ABSOLUTE_COMPARATOR));
+		super(optimContext, new TreeSet<DrtRequest>(Requests.ABSOLUTE_COMPARATOR),
+				drtCfg.getReoptimizationTimeStep());
 
 		// TODO bug: cannot cast ImaginaryNode to RoutingNetworkNode
 		// PreProcessDijkstra preProcessDijkstra = new PreProcessDijkstra();
@@ -55,6 +69,11 @@ public class InsertionDrtOptimizer extends AbstractDrtOptimizer implements Mobsi
 		RoutingNetwork inverseRoutingNetwork = new InverseArrayRoutingNetworkFactory(preProcessDijkstra)
 				.createRoutingNetwork(optimContext.network);
 
+		double filteringSpeed = Double.isNaN(drtCfg.getInsertionFilteringBeelineSpeed())
+				? BeelineTravelTimeLowerBound.calcMaxFreespeed(optimContext.network)
+				: drtCfg.getInsertionFilteringBeelineSpeed();
+		TravelTimeLowerBound lowerBound = new BeelineTravelTimeLowerBound(filteringSpeed);
+
 		SingleVehicleInsertionProblem[] singleVehicleInsertionProblems = new SingleVehicleInsertionProblem[drtCfg
 				.getNumberOfThreads()];
 		for (int i = 0; i < singleVehicleInsertionProblems.length; i++) {
@@ -64,19 +83,37 @@ public class InsertionDrtOptimizer extends AbstractDrtOptimizer implements Mobsi
 					optimContext.travelDisutility, optimContext.travelTime, preProcessDijkstra, fastRouterFactory,
 					true);
 			singleVehicleInsertionProblems[i] = new SingleVehicleInsertionProblem(router, backwardRouter,
-					optimContext.scheduler.getParams().stopDuration, drtCfg.getMaxWaitTime());
+					optimContext.scheduler.getParams().stopDuration, drtCfg.getMaxWaitTime(), lowerBound);
 		}
 
 		insertionProblem = new ParallelMultiVehicleInsertionProblem(singleVehicleInsertionProblems);
+		asyncSearchExecutor = drtCfg.isAsyncInsertionSearch() ? Executors.newSingleThreadExecutor() : null;
 	}
 
 	@Override
 	public void notifyMobsimBeforeCleanup(@SuppressWarnings("rawtypes") MobsimBeforeCleanupEvent e) {
+		if (pendingSearch != null) {
+			getResults(pendingSearch);// requests submitted in the last time window remain unserved
+			pendingSearch = null;
+			pendingRequests = null;
+		}
+		if (asyncSearchExecutor != null) {
+			asyncSearchExecutor.shutdown();
+		}
 		insertionProblem.shutdown();
 	}
 
 	@Override
 	protected void scheduleUnplannedRequests() {
+		if (asyncSearchExecutor == null) {
+			scheduleUnplannedRequestsNow();
+		} else {
+			schedulePendingRequests();
+			startAsyncSearch();
+		}
+	}
+
+	private void scheduleUnplannedRequestsNow() {
 		if (getUnplannedRequests().isEmpty()) {
 			return;
 		}
@@ -86,16 +123,81 @@ public class InsertionDrtOptimizer extends AbstractDrtOptimizer implements Mobsi
 		Iterator<DrtRequest> reqIter = getUnplannedRequests().iterator();
 		while (reqIter.hasNext()) {
 			DrtRequest req = reqIter.next();
-			BestInsertion best = insertionProblem.findBestInsertion(req, vData);
-			if (best == null) {
-				if (printWarnings){
-					Logger.getLogger(getClass()).warn("No vehicle found for drt request from passenger \t"+req.getPassenger().getId()+"\tat\t"+Time.writeTime(req.getSubmissionTime() ));
+			scheduleRequest(req, insertionProblem.findBestInsertion(req, vData), vData);
+			reqIter.remove();
+		}
+	}
+
+	private void schedulePendingRequests() {
+		if (pendingSearch == null) {
+			return;
+		}
+
+		List<BestInsertion> preselectedInsertions = getResults(pendingSearch);
+		VehicleData vData = new VehicleData(getOptimContext(), getOptimContext().fleet.getVehicles().values());
+
+		for (int i = 0; i < pendingRequests.size(); i++) {
+			DrtRequest req = pendingRequests.get(i);
+			BestInsertion preselected = preselectedInsertions.get(i);
+			BestInsertion best = null;
+			if (preselected != null) {
+				// the vehicle has moved on (and may have got other requests) since the snapshot was taken
+				Entry vEntry = vData.getEntry(preselected.vehicleEntry.vehicle);
+				if (vEntry != null) {
+					best = insertionProblem.findBestInsertion(req, vEntry);
+				}
+				if (best == null) {
+					best = insertionProblem.findBestInsertion(req, vData);
 				}
-			} else {
-				getOptimContext().scheduler.insertRequest(best.vehicleEntry, req, best.insertion);
-				vData.updateEntry(best.vehicleEntry);
 			}
-			reqIter.remove();
+			scheduleRequest(req, best, vData);
+		}
+
+		pendingSearch = null;
+		pendingRequests = null;
+	}
+
+	private void startAsyncSearch() {
+		if (getUnplannedRequests().isEmpty()) {
+			return;
+		}
+
+		final VehicleData snapshot = new VehicleData(getOptimContext(),
+				getOptimContext().fleet.getVehicles().values());
+		final List<DrtRequest> requests = new ArrayList<>(getUnplannedRequests());
+		getUnplannedRequests().clear();
+
+		pendingRequests = requests;
+		pendingSearch = asyncSearchExecutor.submit(new Callable<List<BestInsertion>>() {
+			public List<BestInsertion> call() {
+				List<BestInsertion> insertions = new ArrayList<>(requests.size());
+				for (DrtRequest req : requests) {
+					insertions.add(insertionProblem.findBestInsertion(req, snapshot));
+				}
+				return insertions;
+			}
+		});
+
+		// the results are applied at the beginning of the next time window
+		setRequiresReoptimization(true);
+	}
+
+	private void scheduleRequest(DrtRequest req, BestInsertion best, VehicleData vData) {
+		if (best == null) {
+			if (printWarnings){
+				Logger.getLogger(getClass()).warn("No vehicle found for drt request from passenger \t"+req.getPassenger().getId()+"\tat\t"+Time.writeTime(req.getSubmissionTime() ));
+			}
+		} else {
+			getOptimContext().scheduler.insertRequest(best.vehicleEntry, req, best.insertion);
+			vData.updateEntry(best.vehicleEntry);
+		}
+	}
+
+	private static List<BestInsertion> getResults(Future<List<BestInsertion>> search) {
+		try {
+			return search.get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
 		}
 	}
 }
@@ -21,42 +21,145 @@ package org.matsim.contrib.drt.optimizer.insertion;
 
 import java.util.*;
 
+import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.drt.data.DrtRequest;
 import org.matsim.contrib.drt.optimizer.DrtOptimizerContext;
 import org.matsim.contrib.drt.run.DrtConfigGroup;
 import org.matsim.contrib.drt.schedule.*;
 import org.matsim.contrib.drt.schedule.DrtTask.DrtTaskType;
-import org.matsim.contrib.dvrp.data.Vehicle;
+import org.matsim.contrib.dvrp.data.*;
+import org.matsim.contrib.dvrp.optimizer.rebalancing.ZonalRebalancer;
+import org.matsim.contrib.dvrp.optimizer.rebalancing.ZonalRebalancer.Relocation;
 import org.matsim.contrib.dvrp.path.*;
+import org.matsim.contrib.dvrp.router.*;
 import org.matsim.contrib.dvrp.schedule.Schedule;
 import org.matsim.contrib.dvrp.schedule.Schedule.ScheduleStatus;
-import org.matsim.contrib.util.distance.DistanceUtils;
-import org.matsim.core.router.*;
-import org.matsim.core.router.util.*;
+import org.matsim.contrib.dvrp.util.TimeDiscretizer;
+import org.matsim.contrib.zone.SpatialGridRegistry;
+import org.matsim.core.mobsim.framework.events.*;
 
 /**
+ * If {@link DrtConfigGroup#getRebalancingInterval()} is positive, idle vehicles are also periodically moved between
+ * depots; each depot serves the requests starting nearest to it (see {@link ZonalRebalancer}).
+ * <p>
+ * Paths to depots are searched with {@link DijkstraWithDijkstraTreeCache}: one tree from the current vehicle position
+ * gives the travel costs to all depots, and the trees computed from the depots are reused for relocations between
+ * them.
+ *
  * @author michalm
  */
 public class InsertionDrtOptimizerWithDepots extends InsertionDrtOptimizer {
-	private final Set<Link> startLinks = new HashSet<>();
-	private final FastAStarEuclidean router;
+	// usually there are only a few depots, so large cells are fine
+	private static final double START_LINK_GRID_CELL_SIZE = 2000;
+
+	private final SpatialGridRegistry<Link> startLinks;
+	private final DijkstraWithDijkstraTreeCache router;
+
+	private final ZonalRebalancer rebalancer;// null if no rebalancing
+	private final List<Link> depots;
+	private final Map<Link, Integer> depotIndices = new IdentityHashMap<>();
 
 	public InsertionDrtOptimizerWithDepots(DrtOptimizerContext optimContext, DrtConfigGroup drtCfg) {
 		super(optimContext, drtCfg);
 
+		startLinks = new SpatialGridRegistry<>(optimContext.network, START_LINK_GRID_CELL_SIZE);
 		for (Vehicle v : optimContext.fleet.getVehicles().values()) {
-			startLinks.add(v.getStartLink());
+			if (!startLinks.contains(v.getStartLink())) {
+				startLinks.add(v.getStartLink(), v.getStartLink().getCoord());
+			}
+		}
+
+		router = new DijkstraWithDijkstraTreeCache(optimContext.network, optimContext.travelDisutility,
+				optimContext.travelTime, TimeDiscretizer.OPEN_ENDED_15_MIN);
+
+		depots = new ArrayList<>(startLinks.getItems());
+		List<Coord> depotCoords = new ArrayList<>();
+		for (Link depot : depots) {
+			depotIndices.put(depot, depotCoords.size());
+			depotCoords.add(depot.getCoord());
+		}
+		rebalancer = drtCfg.getRebalancingInterval() > 0
+				? new ZonalRebalancer(depotCoords, drtCfg.getRebalancingInterval()) : null;
+	}
+
+	@Override
+	public void requestSubmitted(Request request) {
+		super.requestSubmitted(request);
+
+		if (rebalancer != null) {
+			DrtRequest req = (DrtRequest)request;
+			rebalancer.requestSubmitted(findNearestDepotIdx(req.getFromLink()), findNearestDepotIdx(req.getToLink()),
+					getOptimContext().timer.getTimeOfDay());
+		}
+	}
+
+	private int findNearestDepotIdx(Link link) {
+		return depotIndices.get(startLinks.findNearest(link.getCoord(), 1).get(0));
+	}
+
+	@Override
+	public void notifyMobsimBeforeSimStep(@SuppressWarnings("rawtypes") MobsimBeforeSimStepEvent e) {
+		super.notifyMobsimBeforeSimStep(e);
+
+		if (rebalancer != null) {
+			// requests are served first, only the remaining idle vehicles are relocated
+			if (rebalancer.hasPendingRelocations()) {
+				relocateIdleVehicles(rebalancer.getRelocations(), e.getSimulationTime());
+			}
+
+			if (rebalancer.isRebalancingTime(e.getSimulationTime())) {
+				List<List<Vehicle>> idleVehicles = findIdleVehiclesAtDepots();
+				int[] idleVehicleCounts = new int[depots.size()];
+				for (int i = 0; i < idleVehicleCounts.length; i++) {
+					idleVehicleCounts[i] = idleVehicles.get(i).size();
+				}
+				rebalancer.startRebalancing(e.getSimulationTime(), idleVehicleCounts);
+			}
 		}
+	}
+
+	@Override
+	public void notifyMobsimBeforeCleanup(@SuppressWarnings("rawtypes") MobsimBeforeCleanupEvent e) {
+		super.notifyMobsimBeforeCleanup(e);
+		if (rebalancer != null) {
+			rebalancer.shutdown();
+		}
+	}
 
-		PreProcessEuclidean preProcessEuclidean = new PreProcessEuclidean(optimContext.travelDisutility);
-		preProcessEuclidean.run(optimContext.network);
+	private List<List<Vehicle>> findIdleVehiclesAtDepots() {
+		List<List<Vehicle>> idleVehicles = new ArrayList<>();
+		for (int i = 0; i < depots.size(); i++) {
+			idleVehicles.add(new ArrayList<Vehicle>());
+		}
 
-		FastRouterDelegateFactory fastRouterFactory = new ArrayFastRouterDelegateFactory();
-		RoutingNetwork routingNetwork = new ArrayRoutingNetworkFactory(preProcessEuclidean)
-				.createRoutingNetwork(optimContext.network);
+		for (Vehicle v : getOptimContext().fleet.getVehicles().values()) {
+			if (getOptimContext().scheduler.isIdle(v)) {
+				Integer depotIdx = depotIndices.get(((DrtStayTask)v.getSchedule().getCurrentTask()).getLink());
+				if (depotIdx != null) {
+					idleVehicles.get(depotIdx).add(v);
+				}
+			}
+		}
+		return idleVehicles;
+	}
 
-		router = new FastAStarEuclidean(routingNetwork, preProcessEuclidean, optimContext.travelDisutility,
-				optimContext.travelTime, 2., fastRouterFactory);
+	private void relocateIdleVehicles(List<Relocation> relocations, double now) {
+		// some vehicles have been dispatched since the rebalancing started
+		List<List<Vehicle>> idleVehicles = findIdleVehiclesAtDepots();
+
+		for (Relocation r : relocations) {
+			Link fromLink = depots.get(r.fromZone);
+			Link toLink = depots.get(r.toZone);
+			Iterator<Vehicle> vehIter = idleVehicles.get(r.fromZone).iterator();
+			for (int i = 0; i < r.vehicleCount && vehIter.hasNext(); i++) {
+				Vehicle vehicle = vehIter.next();
+				vehIter.remove();
+				VrpPathWithTravelData path = VrpPaths.calcAndCreatePath(fromLink, toLink, now, router,
+						getOptimContext().travelTime);
+				getOptimContext().scheduler.relocateEmptyVehicle(vehicle, path);
+			}
+		}
 	}
 
 	@Override
@@ -80,7 +183,7 @@ public class InsertionDrtOptimizerWithDepots extends InsertionDrtOptimizer {
 					&& ((DrtTask)schedule.getTasks().get(previousTaskIdx)).getDrtTaskType() == DrtTaskType.STOP) {
 
 				Link currentLink = ((DrtStayTask)currentTask).getLink();
-				Link bestStartLink = findBestStartLink(currentLink);
+				Link bestStartLink = findBestStartLink(currentLink, currentTask.getBeginTime());
 				if (bestStartLink != null) {
 					VrpPathWithTravelData path = VrpPaths.calcAndCreatePath(currentLink, bestStartLink,
 							currentTask.getBeginTime(), router, getOptimContext().travelTime);
@@ -90,21 +193,23 @@ public class InsertionDrtOptimizerWithDepots extends InsertionDrtOptimizer {
 		}
 	}
 
-	// TODO a simple straight-line search (for the time being)... MultiNodeDijkstra should be the ultimate solution
-	private Link findBestStartLink(Link fromLink) {
+	// the same tree is then used by VrpPaths.calcAndCreatePath() for the path to the selected depot
+	private Link findBestStartLink(Link fromLink, double departureTime) {
 		if (startLinks.contains(fromLink)) {
 			return null;// stay where it is
 		}
+
+		// see VrpPaths.calcAndCreatePath(): 1 second to move over the node
+		CompactDijkstraTree tree = router.getTree(fromLink.getToNode(), departureTime + 1);
 		Link bestLink = null;
-		double bestDistance = Double.MAX_VALUE;
-		for (Link l : startLinks) {
-			double currentDistance = DistanceUtils.calculateSquaredDistance(fromLink.getCoord(), l.getCoord());
-			if (currentDistance < bestDistance) {
-				bestDistance = currentDistance;
-				bestLink = l;
+		double minCost = Double.POSITIVE_INFINITY;
+		for (Link depot : depots) {
+			double cost = tree.getCost(depot.getFromNode());
+			if (cost < minCost) {// NaN (unreachable depot) is skipped
+				bestLink = depot;
+				minCost = cost;
 			}
 		}
-
 		return bestLink;
 	}
 }
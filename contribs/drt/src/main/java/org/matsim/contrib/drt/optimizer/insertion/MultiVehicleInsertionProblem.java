@@ -19,10 +19,12 @@
 
 package org.matsim.contrib.drt.optimizer.insertion;
 
+import java.util.List;
+
 import org.matsim.contrib.drt.data.DrtRequest;
 import org.matsim.contrib.drt.optimizer.VehicleData;
 import org.matsim.contrib.drt.optimizer.VehicleData.Entry;
-import org.matsim.contrib.drt.optimizer.insertion.SingleVehicleInsertionProblem.BestInsertion;
+import org.matsim.contrib.drt.optimizer.insertion.SingleVehicleInsertionProblem.*;
 
 /**
  * @author michalm
@@ -38,12 +40,18 @@ public class MultiVehicleInsertionProblem {
 		return findBestInsertion(drtRequest, vData.getEntries());
 	}
 
-	// TODO run Dijkstra once for all vehicles instead of running it separately for each one
+	// vehicles are pruned with lower bounds first; then Dijkstra is run once for all remaining vehicles
 	public BestInsertion findBestInsertion(DrtRequest drtRequest, Iterable<Entry> vEntries) {
+		List<Entry> filteredEntries = insertionProblem.filterVehicles(drtRequest, vEntries);
+		if (filteredEntries.isEmpty()) {
+			return null;
+		}
+
+		DetourData detourData = insertionProblem.calcDetourData(drtRequest, filteredEntries);
 		double minCost = Double.MAX_VALUE;
 		BestInsertion fleetBestInsertion = null;
-		for (Entry vEntry : vEntries) {
-			BestInsertion bestInsertion = insertionProblem.findBestInsertion(drtRequest, vEntry);
+		for (Entry vEntry : filteredEntries) {
+			BestInsertion bestInsertion = insertionProblem.findBestInsertion(drtRequest, vEntry, detourData);
 			if (bestInsertion.cost < minCost) {
 				fleetBestInsertion = bestInsertion;
 				minCost = bestInsertion.cost;
@@ -64,6 +64,13 @@ public class ParallelMultiVehicleInsertionProblem {
 		return findBestInsertion(submitTasks(drtRequest));
 	}
 
+	/**
+	 * Evaluates only the given vehicle; runs on the calling thread, so must not overlap with other searches.
+	 */
+	public BestInsertion findBestInsertion(DrtRequest drtRequest, Entry vEntry) {
+		return taskGroups[0].multiInsertionProblem.findBestInsertion(drtRequest, Collections.singletonList(vEntry));
+	}
+
 	private void divideTasksIntoGroups(VehicleData vData) {
 		Iterator<Entry> vEntryIter = vData.getEntries().iterator();
 		int div = vData.getSize() / threads;
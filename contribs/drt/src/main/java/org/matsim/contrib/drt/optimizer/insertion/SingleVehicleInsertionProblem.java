@@ -69,10 +69,24 @@ public class SingleVehicleInsertionProblem {
 		}
 	}
 
+	/**
+	 * Paths between the pickup/dropoff links of one request and the start/stop links of many vehicles. Since the
+	 * departure times of all searches depend only on the request, one search per direction is enough for all vehicles.
+	 */
+	public static class DetourData {
+		private final Map<Link, PathData> pathsToPickup = new HashMap<>();
+		private final Map<Link, PathData> pathsFromPickup = new HashMap<>();
+		private final Map<Link, PathData> pathsToDropoff = new HashMap<>();
+		private final Map<Link, PathData> pathsFromDropoff = new HashMap<>();
+		private PathData pickupToDropoffPath;
+	}
+
 	private final OneToManyPathSearch forwardPathSearch;
 	private final OneToManyPathSearch backwardPathSearch;
 	private final double stopDuration;
+	private final double maxWaitTime;
 	private final InsertionCostCalculator costCalculator;
+	private final TravelTimeLowerBound lowerBound;// null ==> no pruning
 
 	///
 
@@ -86,67 +100,160 @@ public class SingleVehicleInsertionProblem {
 	private PathData[] pathsFromDropoff;
 
 	// TODO filter out duplicated insertion when pickup/dropoff is at one of existing stops
-	// filter out stops located too far away (e.g. straight-line distance); with the exception for the last stop???
 	// filter out pickups at stops with outgoingOccupancy equal to the vehicle capacity
 	// filter out dropoffs at stops with incomingOccupancy equal to the vehicle capacity
 	// (but still we need to check the capacity constraints on all drives between the pickup and dropoff)
-	//
-	// TODO maxWaitTime
-	// filter out stops which are visited too late
-	//
-	// private boolean[] considerPickupInsertion;
-	// private boolean[] considerDropoffInsertion;
 
 	public SingleVehicleInsertionProblem(MultiNodePathCalculator router, BackwardMultiNodePathCalculator backwardRouter,
 			double stopDuration, double maxWaitTime) {
+		this(router, backwardRouter, stopDuration, maxWaitTime, null);
+	}
+
+	/**
+	 * @param lowerBound
+	 *            used for skipping vehicles and insertions that violate the maxWaitTime or latestArrivalTime
+	 *            constraints even when travelling at the lower-bound travel times; null switches off the pruning
+	 */
+	public SingleVehicleInsertionProblem(MultiNodePathCalculator router, BackwardMultiNodePathCalculator backwardRouter,
+			double stopDuration, double maxWaitTime, TravelTimeLowerBound lowerBound) {
 		forwardPathSearch = OneToManyPathSearch.createForwardSearch(router);
 		backwardPathSearch = OneToManyPathSearch.createBackwardSearch(backwardRouter);
 
 		this.stopDuration = stopDuration;
+		this.maxWaitTime = maxWaitTime;
+		this.lowerBound = lowerBound;
 		costCalculator = new InsertionCostCalculator(stopDuration, maxWaitTime);
 	}
 
 	public BestInsertion findBestInsertion(DrtRequest drtRequest, VehicleData.Entry vEntry) {
-		initPathData(drtRequest, vEntry);
+		return findBestInsertion(drtRequest, vEntry,
+				calcDetourData(drtRequest, Collections.singletonList(vEntry)));
+	}
+
+	/**
+	 * @param detourData
+	 *            must be calculated (by {@link #calcDetourData(DrtRequest, Collection)}) for a set of vehicles
+	 *            containing vEntry
+	 */
+	public BestInsertion findBestInsertion(DrtRequest drtRequest, VehicleData.Entry vEntry, DetourData detourData) {
+		initPathData(vEntry, detourData);
 		findPickupDropoffInsertions(drtRequest, vEntry);
 		return selectBestInsertion(costCalculator, drtRequest, vEntry);
 	}
 
-	private void initPathData(DrtRequest drtRequest, VehicleData.Entry vEntry) {
-		stopCount = vEntry.stops.size();
+	/**
+	 * Only vehicles with at least one pickup insertion that may satisfy the maxWaitTime constraint are returned.
+	 */
+	public List<VehicleData.Entry> filterVehicles(DrtRequest drtRequest, Iterable<VehicleData.Entry> vEntries) {
+		List<VehicleData.Entry> filteredEntries = new ArrayList<>();
+		for (VehicleData.Entry vEntry : vEntries) {
+			for (int i = 0; i <= vEntry.stops.size(); i++) {
+				int occupancy = (i == 0) ? vEntry.startOccupancy : vEntry.stops.get(i - 1).outputOccupancy;
+				if (occupancy < vEntry.vehicle.getCapacity() && isPickupCandidate(drtRequest, vEntry, i)) {
+					filteredEntries.add(vEntry);
+					break;
+				}
+			}
+		}
+		return filteredEntries;
+	}
 
-		ArrayList<Link> links = new ArrayList<>(stopCount + 1);
-		links.add(null);// special link
-		for (int i = 0; i < stopCount; i++) {
-			links.add(vEntry.stops.get(i).task.getLink());
+	/**
+	 * Runs the four one-to-many searches (to/from pickup, to/from dropoff) once for all the given vehicles.
+	 */
+	public DetourData calcDetourData(DrtRequest drtRequest, Collection<VehicleData.Entry> vEntries) {
+		Set<Link> linkSet = new LinkedHashSet<>();
+		linkSet.add(drtRequest.getToLink());
+		for (VehicleData.Entry vEntry : vEntries) {
+			linkSet.add(vEntry.start.link);
+			for (VehicleData.Stop stop : vEntry.stops) {
+				linkSet.add(stop.task.getLink());
+			}
 		}
+		List<Link> links = new ArrayList<>(linkSet);
+		DetourData detourData = new DetourData();
 
 		double minPickupTime = drtRequest.getEarliestStartTime();// == now (for immediate requests); over-optimistic
 
-		// calc backward dijkstra from pickup to ends of all stop + start
-		// TODO exclude inserting pickup after fully occupied stops
-		links.set(0, vEntry.start.link);
-		pathsToPickup = backwardPathSearch.calcPaths(drtRequest.getFromLink(), links, minPickupTime);
+		// calc backward dijkstra from pickup to ends of all stops + starts
+		putPaths(detourData.pathsToPickup, links,
+				backwardPathSearch.calcPaths(drtRequest.getFromLink(), links, minPickupTime));
 
 		// calc forward dijkstra from pickup to beginnings of all stops + dropoff
-		// TODO exclude inserting before fully occupied stops (unless the new request's dropoff is located there)
-		links.set(0, drtRequest.getToLink());
-		pathsFromPickup = forwardPathSearch.calcPaths(drtRequest.getFromLink(), links, minPickupTime);
+		putPaths(detourData.pathsFromPickup, links,
+				forwardPathSearch.calcPaths(drtRequest.getFromLink(), links, minPickupTime));
 
-		PathData pickupToDropoffPath = pathsFromPickup[0];// only if no other passengers on board (optimistic)
+		// only if no other passengers on board (optimistic)
+		PathData pickupToDropoffPath = detourData.pickupToDropoffPath = detourData.pathsFromPickup
+				.get(drtRequest.getToLink());
 		double minTravelTime = pickupToDropoffPath.path.travelTime + pickupToDropoffPath.firstAndLastLinkTT;
 		double minDropoffTime = minPickupTime + minTravelTime + stopDuration; // uses (over-)optimistic components
 
 		// calc backward dijkstra from dropoff to ends of all stops
-		// TODO exclude inserting dropoff after fully occupied stops (unless the new request's dropoff is located there)
-		links.set(0, drtRequest.getFromLink());
-		// TODO change the above line into the following one (after nulls are supported by OneToManyPathSearch)
-		// links.set(0, null);
-		pathsToDropoff = backwardPathSearch.calcPaths(drtRequest.getToLink(), links, minDropoffTime);
+		putPaths(detourData.pathsToDropoff, links,
+				backwardPathSearch.calcPaths(drtRequest.getToLink(), links, minDropoffTime));
 
 		// calc forward dijkstra from dropoff to beginnings of all stops
-		// TODO exclude inserting dropoff before fully occupied stops
-		pathsFromDropoff = forwardPathSearch.calcPaths(drtRequest.getToLink(), links, minDropoffTime);
+		putPaths(detourData.pathsFromDropoff, links,
+				forwardPathSearch.calcPaths(drtRequest.getToLink(), links, minDropoffTime));
+
+		return detourData;
+	}
+
+	private static void putPaths(Map<Link, PathData> pathMap, List<Link> links, PathData[] paths) {
+		for (int i = 0; i < paths.length; i++) {
+			pathMap.put(links.get(i), paths[i]);
+		}
+	}
+
+	private void initPathData(VehicleData.Entry vEntry, DetourData detourData) {
+		stopCount = vEntry.stops.size();
+		pathsToPickup = new PathData[stopCount + 1];
+		pathsFromPickup = new PathData[stopCount + 1];
+		pathsToDropoff = new PathData[stopCount + 1];
+		pathsFromDropoff = new PathData[stopCount + 1];
+
+		pathsToPickup[0] = detourData.pathsToPickup.get(vEntry.start.link);
+		pathsFromPickup[0] = detourData.pickupToDropoffPath;
+		// pathsToDropoff[0] and pathsFromDropoff[0] are never used
+		for (int i = 1; i <= stopCount; i++) {
+			Link link = vEntry.stops.get(i - 1).task.getLink();
+			pathsToPickup[i] = detourData.pathsToPickup.get(link);
+			pathsFromPickup[i] = detourData.pathsFromPickup.get(link);
+			pathsToDropoff[i] = detourData.pathsToDropoff.get(link);
+			pathsFromDropoff[i] = detourData.pathsFromDropoff.get(link);
+		}
+	}
+
+	private double calcDepartureTime(VehicleData.Entry vEntry, int nodeIdx) {
+		return nodeIdx == 0 ? vEntry.start.time : vEntry.stops.get(nodeIdx - 1).endTime;
+	}
+
+	private Link getLink(VehicleData.Entry vEntry, int nodeIdx) {
+		return nodeIdx == 0 ? vEntry.start.link : vEntry.stops.get(nodeIdx - 1).task.getLink();
+	}
+
+	// the earliest possible end of the pickup if inserted after node i (see InsertionCostCalculator)
+	private double calcPickupEndTimeLowerBound(DrtRequest drtRequest, VehicleData.Entry vEntry, int i) {
+		return calcDepartureTime(vEntry, i)
+				+ lowerBound.calcTravelTimeLowerBound(getLink(vEntry, i), drtRequest.getFromLink()) + stopDuration;
+	}
+
+	private boolean isPickupCandidate(DrtRequest drtRequest, VehicleData.Entry vEntry, int i) {
+		return lowerBound == null || calcPickupEndTimeLowerBound(drtRequest, vEntry, i) <= drtRequest
+				.getEarliestStartTime() + maxWaitTime;
+	}
+
+	private boolean isDropoffCandidate(DrtRequest drtRequest, VehicleData.Entry vEntry, int i, int j) {
+		if (lowerBound == null) {
+			return true;
+		}
+		double dropoffStartTimeLowerBound = i == j ? // PICKUP->DROPOFF ?
+				calcPickupEndTimeLowerBound(drtRequest, vEntry, i)
+						+ lowerBound.calcTravelTimeLowerBound(drtRequest.getFromLink(), drtRequest.getToLink())
+				: vEntry.stops.get(j - 1).endTime
+						+ lowerBound.calcTravelTimeLowerBound(getLink(vEntry, j), drtRequest.getToLink());
+		return dropoffStartTimeLowerBound <= drtRequest.getLatestArrivalTime();
 	}
 
 	private void findPickupDropoffInsertions(DrtRequest drtRequest, VehicleData.Entry vEntry) {
@@ -166,6 +273,9 @@ public class SingleVehicleInsertionProblem {
 			if (pathsToPickup[i] == null) {
 				continue;// skip fully loaded arcs
 			}
+			if (!isPickupCandidate(drtRequest, vEntry, i)) {
+				continue;// maxWaitTime cannot be satisfied
+			}
 
 			if (i < stopCount && // has next stop
 					drtRequest.getFromLink() == vEntry.stops.get(i).task.getLink()) {// next stop is at the same link
@@ -201,6 +311,10 @@ public class SingleVehicleInsertionProblem {
 				continue;
 			}
 
+			if (!isDropoffCandidate(drtRequest, vEntry, i, j)) {
+				continue;// latestArrivalTime cannot be satisfied
+			}
+
 			addInsertion(drtRequest, vEntry, i, j);
 		}
 	}
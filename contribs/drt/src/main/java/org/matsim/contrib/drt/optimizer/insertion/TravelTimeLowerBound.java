@@ -0,0 +1,33 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.optimizer.insertion;
+
+import org.matsim.api.core.v01.network.Link;
+
+/**
+ * Cheap estimate of the travel time between two links that never exceeds the travel time of the shortest path. Used
+ * for discarding vehicles and insertions before running any path search.
+ */
+public interface TravelTimeLowerBound {
+	/**
+	 * @return lower bound of the travel time from the end of fromLink to the end of toLink
+	 */
+	double calcTravelTimeLowerBound(Link fromLink, Link toLink);
+}
@@ -52,6 +52,10 @@ public class DrtConfigGroup extends ReflectiveConfigGroup {
 	private static final String PLOT_VEH_STATS = "writeDetailedVehicleStats";
 	private static final String PRINT_WARNINGS = "plotDetailedWarnings";
 	private static final String NUMBER_OF_THREADS = "numberOfThreads";
+	private static final String INSERTION_FILTERING_BEELINE_SPEED = "insertionFilteringBeelineSpeed";
+	private static final String REOPTIMIZATION_TIME_STEP = "reoptimizationTimeStep";
+	private static final String ASYNC_INSERTION_SEARCH = "asyncInsertionSearch";
+	private static final String REBALANCING_INTERVAL = "rebalancingInterval";
 
 	private double stopDuration = Double.NaN;// seconds
 	private double maxWaitTime = Double.NaN;// seconds
@@ -79,6 +83,10 @@ public class DrtConfigGroup extends ReflectiveConfigGroup {
 	private boolean plotDetailedVehicleStats = false;
 	private boolean printDetailedWarnings = false;
 	private int numberOfThreads = Runtime.getRuntime().availableProcessors();
+	private double insertionFilteringBeelineSpeed = Double.NaN;// [m/s]
+	private int reoptimizationTimeStep = 1;// [s]
+	private boolean asyncInsertionSearch = false;
+	private int rebalancingInterval = 0;// [s]
 
 	public enum OperationalScheme {
 		stationbased, door2door
@@ -124,6 +132,23 @@ public class DrtConfigGroup extends ReflectiveConfigGroup {
 		map.put(NUMBER_OF_THREADS,
 				"Number of threads used for parallel evaluation of request insertion into existing schedules. "
 						+ "If unset, the number of threads is equal to the number of logical cores available to JVM.");
+		map.put(INSERTION_FILTERING_BEELINE_SPEED,
+				"Upper bound of the beeline speed of DRT vehicles, [m/s]. Used for skipping vehicles and insertions "
+						+ "that cannot satisfy the maxWaitTime and maxTravelTime constraints before running "
+						+ "any path search. If unset, the max freespeed of all network links is used. "
+						+ "Set it to Infinity to switch off the filtering.");
+		map.put(REOPTIMIZATION_TIME_STEP,
+				"Requests submitted within this time window [s] are collected and scheduled together at the "
+						+ "beginning of the next window. The default value is 1, i.e. requests are scheduled "
+						+ "in the next time step.");
+		map.put(ASYNC_INSERTION_SEARCH,
+				"If true, the insertion search runs in the background while the simulation proceeds "
+						+ "and its results are applied at the beginning of the next reoptimizationTimeStep window "
+						+ "(i.e. requests are scheduled one window later). False by default.");
+		map.put(REBALANCING_INTERVAL,
+				"Used only with depots (vehicles' start links). Every rebalancingInterval seconds, idle vehicles "
+						+ "are moved between depots according to the demand observed in the last interval. "
+						+ "The default value is 0, i.e. no rebalancing.");
 		map.put(PRINT_WARNINGS, "Prints detailed warnings for DRT customers that cannot be served or routed. Default is false.");
 		return map;
 	}
@@ -287,6 +312,46 @@ public class DrtConfigGroup extends ReflectiveConfigGroup {
 		this.numberOfThreads = numberOfThreads;
 	}
 
+	@StringGetter(INSERTION_FILTERING_BEELINE_SPEED)
+	public double getInsertionFilteringBeelineSpeed() {
+		return insertionFilteringBeelineSpeed;
+	}
+
+	@StringSetter(INSERTION_FILTERING_BEELINE_SPEED)
+	public void setInsertionFilteringBeelineSpeed(double insertionFilteringBeelineSpeed) {
+		this.insertionFilteringBeelineSpeed = insertionFilteringBeelineSpeed;
+	}
+
+	@StringGetter(REOPTIMIZATION_TIME_STEP)
+	public int getReoptimizationTimeStep() {
+		return reoptimizationTimeStep;
+	}
+
+	@StringSetter(REOPTIMIZATION_TIME_STEP)
+	public void setReoptimizationTimeStep(int reoptimizationTimeStep) {
+		this.reoptimizationTimeStep = reoptimizationTimeStep;
+	}
+
+	@StringGetter(ASYNC_INSERTION_SEARCH)
+	public boolean isAsyncInsertionSearch() {
+		return asyncInsertionSearch;
+	}
+
+	@StringSetter(ASYNC_INSERTION_SEARCH)
+	public void setAsyncInsertionSearch(boolean asyncInsertionSearch) {
+		this.asyncInsertionSearch = asyncInsertionSearch;
+	}
+
+	@StringGetter(REBALANCING_INTERVAL)
+	public int getRebalancingInterval() {
+		return rebalancingInterval;
+	}
+
+	@StringSetter(REBALANCING_INTERVAL)
+	public void setRebalancingInterval(int rebalancingInterval) {
+		this.rebalancingInterval = rebalancingInterval;
+	}
+
 	@StringGetter(PRINT_WARNINGS)
 	public boolean isPrintDetailedWarnings() {
 		return printDetailedWarnings;
@@ -0,0 +1,86 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.analysis;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.events.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.drt.vrpagent.DrtActionCreator;
+import org.matsim.contrib.dvrp.vrpagent.VrpAgentLogic;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class DrtTimeBinStatsTest {
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testOccupancyAboveMax() throws IOException {
+		Network network = NetworkUtils.createNetwork();
+		Node a = NetworkUtils.createAndAddNode(network, Id.createNodeId("a"), new Coord(0, 0));
+		Node b = NetworkUtils.createAndAddNode(network, Id.createNodeId("b"), new Coord(1000, 0));
+		Id<Link> linkId = NetworkUtils.createAndAddLink(network, Id.createLinkId("ab"), a, b, 1000, 10, 1000, 1)
+				.getId();
+
+		DrtTimeBinStats stats = new DrtTimeBinStats(network, "drt");
+		Id<Person> driver = Id.createPersonId("drt_1");
+		Id<Vehicle> vehicle = Id.createVehicleId("drt_1");
+		stats.handleEvent(new ActivityEndEvent(0, driver, linkId, null, VrpAgentLogic.BEFORE_SCHEDULE_ACTIVITY_TYPE));
+		stats.handleEvent(new ActivityStartEvent(0, driver, linkId, null, DrtActionCreator.DRT_STAY_NAME));
+		stats.handleEvent(new ActivityEndEvent(450, driver, linkId, null, DrtActionCreator.DRT_STAY_NAME));
+
+		// 9 passengers board at once, counted as the max. occupancy (8)
+		for (int i = 0; i < 9; i++) {
+			Id<Person> passenger = Id.createPersonId("p" + i);
+			stats.handleEvent(new PersonDepartureEvent(450, passenger, linkId, "drt"));
+			stats.handleEvent(new PersonEntersVehicleEvent(450, passenger, vehicle));
+		}
+		stats.handleEvent(new ActivityStartEvent(900, driver, linkId, null,
+				VrpAgentLogic.AFTER_SCHEDULE_ACTIVITY_TYPE));
+
+		String file = utils.getOutputDirectory() + "drt_stats.txt";
+		stats.write(file);
+
+		List<String[]> lines = new ArrayList<>();
+		try (BufferedReader reader = IOUtils.getBufferedReader(file)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line.split("\t", -1));
+			}
+		}
+
+		String[] header = lines.get(0);
+		assertEquals("8_pax", header[10]);
+		String[] bin0 = lines.get(1);
+		assertEquals("0.50", bin0[1]);// idle 0-450
+		assertEquals("0.50", bin0[10]);// 8+ passengers 450-900
+		assertEquals("9", bin0[14]);// rides
+		assertEquals("0", bin0[16]);// wait_p50 (no waiting)
+	}
+}
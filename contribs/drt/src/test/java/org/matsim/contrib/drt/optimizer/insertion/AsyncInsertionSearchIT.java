@@ -0,0 +1,92 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.optimizer.insertion;
+
+import java.util.*;
+
+import org.junit.*;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.handler.PersonEntersVehicleEventHandler;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.drt.run.*;
+import org.matsim.contrib.dvrp.run.DvrpConfigGroup;
+import org.matsim.core.config.*;
+import org.matsim.core.controler.*;
+import org.matsim.core.controler.OutputDirectoryHierarchy.OverwriteFileSetting;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vis.otfvis.OTFVisConfigGroup;
+
+/**
+ * The asynchronous insertion search runs one time window behind the synchronous one; with a short window (1 s) this
+ * must not change which vehicle serves which passenger.
+ */
+public class AsyncInsertionSearchIT {
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testAsyncAndSyncAssignmentsAreEqual() {
+		Map<Id<Person>, Id<Vehicle>> syncAssignments = runDrtExample(false);
+		Map<Id<Person>, Id<Vehicle>> asyncAssignments = runDrtExample(true);
+
+		Assert.assertFalse(syncAssignments.isEmpty());
+		Assert.assertEquals(syncAssignments, asyncAssignments);
+	}
+
+	private Map<Id<Person>, Id<Vehicle>> runDrtExample(boolean async) {
+		String configFile = "./src/main/resources/drt_example/drtconfig.xml";
+		Config config = ConfigUtils.loadConfig(configFile, new DrtConfigGroup(), new DvrpConfigGroup(),
+				new OTFVisConfigGroup());
+		config.controler().setOverwriteFileSetting(OverwriteFileSetting.deleteDirectoryIfExists);
+		config.controler().setOutputDirectory(utils.getOutputDirectory() + (async ? "async" : "sync"));
+		config.controler().setLastIteration(0);
+		DrtConfigGroup drtCfg = DrtConfigGroup.get(config);
+		drtCfg.setReoptimizationTimeStep(1);
+		drtCfg.setAsyncInsertionSearch(async);
+		config.addConfigConsistencyChecker(new DrtConfigConsistencyChecker());
+		config.checkConsistency();
+
+		final Map<Id<Person>, Id<Vehicle>> assignments = new TreeMap<>();
+		Controler controler = DrtControlerCreator.createControler(config, false);
+		controler.addOverridingModule(new AbstractModule() {
+			@Override
+			public void install() {
+				addEventHandlerBinding().toInstance(new PersonEntersVehicleEventHandler() {
+					@Override
+					public void handleEvent(PersonEntersVehicleEvent event) {
+						// drivers of the DRT vehicles enter them as well; they have the same ids as the vehicles
+						if (!event.getPersonId().toString().equals(event.getVehicleId().toString())) {
+							assignments.put(event.getPersonId(), event.getVehicleId());
+						}
+					}
+
+					@Override
+					public void reset(int iteration) {
+						assignments.clear();
+					}
+				});
+			}
+		});
+		controler.run();
+		return assignments;
+	}
+}
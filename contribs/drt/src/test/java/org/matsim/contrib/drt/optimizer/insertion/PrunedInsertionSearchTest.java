@@ -0,0 +1,225 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.optimizer.insertion;
+
+import java.util.*;
+
+import org.junit.*;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.drt.data.DrtRequest;
+import org.matsim.contrib.drt.optimizer.VehicleData;
+import org.matsim.contrib.drt.optimizer.insertion.SingleVehicleInsertionProblem.BestInsertion;
+import org.matsim.contrib.drt.schedule.DrtStopTask;
+import org.matsim.contrib.dvrp.data.*;
+import org.matsim.contrib.dvrp.router.TimeAsTravelDisutility;
+import org.matsim.contrib.dvrp.util.LinkTimePair;
+import org.matsim.contrib.locationchoice.router.*;
+import org.matsim.contrib.util.distance.DistanceUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.*;
+import org.matsim.core.router.util.*;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+
+/**
+ * Checks that skipping vehicles and insertions with {@link BeelineTravelTimeLowerBound} does not change the best
+ * insertion found by the exhaustive search.
+ */
+public class PrunedInsertionSearchTest {
+	private static final double STOP_DURATION = 60;
+	private static final double MAX_WAIT_TIME = 300;
+	private static final double NOW = 8 * 3600;
+
+	private final Random random = new Random(4711);
+	private Network network;
+	private List<Link> links;
+	private TravelTime travelTime;
+	private TravelDisutility travelDisutility;
+	private double maxFreespeed;
+
+	@Before
+	public void init() {
+		network = createGridNetwork(10, 500);
+		links = new ArrayList<>(network.getLinks().values());
+		travelTime = new FreeSpeedTravelTime();
+		travelDisutility = new TimeAsTravelDisutility(travelTime);
+		maxFreespeed = BeelineTravelTimeLowerBound.calcMaxFreespeed(network);
+	}
+
+	@Test
+	public void testPrunedSearchFindsExhaustiveBestInsertion() {
+		List<VehicleData.Entry> vEntries = new ArrayList<>();
+		for (int v = 0; v < 30; v++) {
+			vEntries.add(createVehicleEntry(v));
+		}
+
+		SingleVehicleInsertionProblem exhaustiveProblem = createInsertionProblem(null);
+		SingleVehicleInsertionProblem prunedSingleProblem = createInsertionProblem(
+				new BeelineTravelTimeLowerBound(maxFreespeed));
+		MultiVehicleInsertionProblem prunedProblem = new MultiVehicleInsertionProblem(prunedSingleProblem);
+
+		int feasibleCount = 0;
+		int filteredVehicleCount = 0;
+		for (int r = 0; r < 200; r++) {
+			DrtRequest drtRequest = createRequest("r" + r);
+
+			BestInsertion exhaustiveBest = null;
+			for (VehicleData.Entry vEntry : vEntries) {
+				BestInsertion best = exhaustiveProblem.findBestInsertion(drtRequest, vEntry);
+				if (exhaustiveBest == null || best.cost < exhaustiveBest.cost) {
+					exhaustiveBest = best;
+				}
+			}
+			BestInsertion prunedBest = prunedProblem.findBestInsertion(drtRequest, vEntries);
+			filteredVehicleCount += prunedSingleProblem.filterVehicles(drtRequest, vEntries).size();
+
+			if (exhaustiveBest.cost == Double.MAX_VALUE) {
+				Assert.assertTrue("request " + r, prunedBest == null || prunedBest.cost == Double.MAX_VALUE);
+				continue;
+			}
+
+			feasibleCount++;
+			Assert.assertNotNull("request " + r, prunedBest);
+			Assert.assertEquals("request " + r, exhaustiveBest.cost, prunedBest.cost, 1e-6);
+			Assert.assertSame("request " + r, exhaustiveBest.vehicleEntry, prunedBest.vehicleEntry);
+			Assert.assertEquals("request " + r, exhaustiveBest.insertion.pickupIdx, prunedBest.insertion.pickupIdx);
+			Assert.assertEquals("request " + r, exhaustiveBest.insertion.dropoffIdx,
+					prunedBest.insertion.dropoffIdx);
+		}
+
+		// make sure the instance is neither trivially feasible nor trivially infeasible
+		Assert.assertTrue("feasible: " + feasibleCount, feasibleCount > 20);
+		Assert.assertTrue("feasible: " + feasibleCount, feasibleCount < 200);
+		// ... and that the pruning is actually exercised
+		Assert.assertTrue("filtered: " + filteredVehicleCount, filteredVehicleCount < 200 * vEntries.size());
+	}
+
+	private SingleVehicleInsertionProblem createInsertionProblem(TravelTimeLowerBound lowerBound) {
+		RoutingNetwork routingNetwork = new ArrayRoutingNetworkFactory(null).createRoutingNetwork(network);
+		RoutingNetwork inverseRoutingNetwork = new InverseArrayRoutingNetworkFactory(null)
+				.createRoutingNetwork(network);
+		FastRouterDelegateFactory fastRouterFactory = new ArrayFastRouterDelegateFactory();
+		FastMultiNodeDijkstra router = new FastMultiNodeDijkstra(routingNetwork, travelDisutility, travelTime, null,
+				fastRouterFactory, true);
+		BackwardFastMultiNodeDijkstra backwardRouter = new BackwardFastMultiNodeDijkstra(inverseRoutingNetwork,
+				travelDisutility, travelTime, null, fastRouterFactory, true);
+		return new SingleVehicleInsertionProblem(router, backwardRouter, STOP_DURATION, MAX_WAIT_TIME, lowerBound);
+	}
+
+	private Network createGridNetwork(int size, double spacing) {
+		Network network = NetworkUtils.createNetwork();
+		Node[][] nodes = new Node[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				Coord coord = new Coord(x * spacing + random.nextDouble() * 50, y * spacing + random.nextDouble() * 50);
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.createNodeId(x + "_" + y), coord);
+			}
+		}
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (x + 1 < size) {
+					addLinks(network, nodes[x][y], nodes[x + 1][y]);
+				}
+				if (y + 1 < size) {
+					addLinks(network, nodes[x][y], nodes[x][y + 1]);
+				}
+			}
+		}
+		return network;
+	}
+
+	private void addLinks(Network network, Node a, Node b) {
+		double length = DistanceUtils.calculateDistance(a, b) * (1 + random.nextDouble() * 0.3);
+		double freespeed = random.nextBoolean() ? 50 / 3.6 : 30 / 3.6;
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(a.getId() + "-" + b.getId()), a, b, length, freespeed,
+				1000, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(b.getId() + "-" + a.getId()), b, a, length, freespeed,
+				1000, 1);
+	}
+
+	private Link randomLink() {
+		return links.get(random.nextInt(links.size()));
+	}
+
+	private double estimateTravelTime(Link fromLink, Link toLink) {
+		return DistanceUtils.calculateDistance(fromLink.getToNode(), toLink.getFromNode()) * 1.5 / (40 / 3.6);
+	}
+
+	private DrtRequest createRequest(String id) {
+		Link fromLink = randomLink();
+		Link toLink = randomLink();
+		double latestArrivalTime = NOW + MAX_WAIT_TIME + 1.5 * estimateTravelTime(fromLink, toLink) + 120;
+		return new DrtRequest(Id.create(id, Request.class), null, fromLink, toLink, NOW, NOW + MAX_WAIT_TIME,
+				latestArrivalTime, NOW);
+	}
+
+	// the vehicle has 0-4 planned stops, served by up to 4 (== capacity) requests, some of them already on board
+	private VehicleData.Entry createVehicleEntry(int idx) {
+		Link startLink = randomLink();
+		Vehicle vehicle = new VehicleImpl(Id.create("v" + idx, Vehicle.class), startLink, 4, 0, 30 * 3600);
+		VehicleData.Entry vEntry = new VehicleData.Entry(vehicle, new LinkTimePair(startLink, NOW), false, NOW);
+
+		int stopCount = random.nextInt(5);
+		List<DrtStopTask> stopTasks = new ArrayList<>();
+		Link prevLink = startLink;
+		double time = NOW;
+		for (int s = 0; s < stopCount; s++) {
+			Link link = randomLink();
+			time += estimateTravelTime(prevLink, link) + random.nextDouble() * 120;
+			stopTasks.add(new DrtStopTask(time, time + STOP_DURATION, link));
+			time += STOP_DURATION;
+			prevLink = link;
+		}
+
+		if (stopCount > 0) {
+			int requestCount = random.nextInt(5);
+			for (int r = 0; r < requestCount; r++) {
+				int pickupIdx = random.nextInt(stopCount + 1) - 1;// -1 ==> already on board
+				if (pickupIdx == stopCount - 1) {
+					pickupIdx--;
+				}
+				int dropoffIdx = pickupIdx + 1 + random.nextInt(stopCount - pickupIdx - 1);
+				DrtStopTask dropoffTask = stopTasks.get(dropoffIdx);
+				double latestStartTime = pickupIdx < 0 ? NOW
+						: stopTasks.get(pickupIdx).getEndTime() + random.nextDouble() * 300;
+				double latestArrivalTime = dropoffTask.getBeginTime() + random.nextDouble() * 600;
+				DrtRequest request = new DrtRequest(Id.create("v" + idx + "_r" + r, Request.class), null,
+						pickupIdx < 0 ? startLink : stopTasks.get(pickupIdx).getLink(), dropoffTask.getLink(), 0,
+						latestStartTime, latestArrivalTime, 0);
+				if (pickupIdx >= 0) {
+					stopTasks.get(pickupIdx).addPickupRequest(request);
+				}
+				dropoffTask.addDropoffRequest(request);
+			}
+		}
+
+		for (DrtStopTask task : stopTasks) {
+			vEntry.stops.add(new VehicleData.Stop(task));
+		}
+		int outputOccupancy = 0;
+		for (int i = vEntry.stops.size() - 1; i >= 0; i--) {
+			VehicleData.Stop s = vEntry.stops.get(i);
+			s.outputOccupancy = outputOccupancy;
+			outputOccupancy -= s.occupancyChange;
+		}
+		vEntry.startOccupancy = outputOccupancy;
+		return vEntry;
+	}
+}
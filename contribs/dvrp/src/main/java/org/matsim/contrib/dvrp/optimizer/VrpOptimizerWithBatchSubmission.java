@@ -3,7 +3,7 @@
  *                                                                         *
  * *********************************************************************** *
  *                                                                         *
- * copyright       : (C) 2015 by the members listed in the COPYING,        *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
  *                   LICENSE and WARRANTY file.                            *
  * email           : info at matsim dot org                                *
  *                                                                         *
@@ -17,25 +17,18 @@
  *                                                                         *
  * *********************************************************************** */
 
-package org.matsim.contrib.minibus.performance.raptor;
+package org.matsim.contrib.dvrp.optimizer;
 
-import org.matsim.api.core.v01.Id;
-import org.matsim.pt.transitSchedule.api.TransitRoute;
+import java.util.Collection;
 
-final class TransferEntryPointer extends TransferEntry{
-
-	final WrappedTransitRouteStop transferDestination;
-	final Id<TransitRoute> routeId;
-
-	public TransferEntryPointer(int indexOfRouteStop, double transferTime, WrappedTransitRouteStop transferDestination, Id<TransitRoute> routeId) {
-		super(indexOfRouteStop, transferTime);
-		this.transferDestination = transferDestination;
-		this.routeId = routeId;
-	}
-	
-	@Override
-	public String toString() {
-		return super.toString() + " target id " + transferDestination;
-	}
+import org.matsim.contrib.dvrp.data.Request;
 
+/**
+ * Optimizer that accepts many requests at once, e.g. all trips prebooked before the simulation starts.
+ */
+public interface VrpOptimizerWithBatchSubmission extends VrpOptimizer {
+	/**
+	 * Equivalent to calling {@link #requestSubmitted(Request)} for each request (in the iteration order).
+	 */
+	void requestsSubmitted(Collection<? extends Request> requests);
 }
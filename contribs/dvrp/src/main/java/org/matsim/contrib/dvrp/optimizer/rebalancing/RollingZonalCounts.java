@@ -0,0 +1,91 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.optimizer.rebalancing;
+
+import java.util.Arrays;
+
+/**
+ * Counts events (e.g. submitted requests) per zone within a sliding time window. The window is divided into time bins
+ * kept in a ring buffer, so both counting and reading take constant time per zone, regardless of the number of events.
+ * <p>
+ * Events must be added in a non-decreasing time order. Not thread-safe.
+ */
+public class RollingZonalCounts {
+	private final int zoneCount;
+	private final double binSize;
+	private final int binCount;
+	private final int[][] counts;// [bin][zone]
+	private final int[] totals;// sums over all bins
+
+	private long currentBin = -1;
+
+	/**
+	 * The window covers {@code binCount * binSize} seconds.
+	 */
+	public RollingZonalCounts(int zoneCount, double binSize, int binCount) {
+		this.zoneCount = zoneCount;
+		this.binSize = binSize;
+		this.binCount = binCount;
+		counts = new int[binCount][zoneCount];
+		totals = new int[zoneCount];
+	}
+
+	public void increment(int zone, double time) {
+		advance(time);
+		counts[(int)(currentBin % binCount)][zone]++;
+		totals[zone]++;
+	}
+
+	/**
+	 * @return counts within the window ending at {@code time}
+	 */
+	public int[] getCounts(double time) {
+		advance(time);
+		return totals.clone();
+	}
+
+	public int getZoneCount() {
+		return zoneCount;
+	}
+
+	private void advance(double time) {
+		long bin = (long)(time / binSize);
+		if (bin <= currentBin) {
+			return;
+		}
+
+		if (currentBin < 0 || bin - currentBin >= binCount) {
+			for (int[] c : counts) {
+				Arrays.fill(c, 0);
+			}
+			Arrays.fill(totals, 0);
+		} else {
+			// drop the bins that leave the window
+			for (long b = currentBin + 1; b <= bin; b++) {
+				int[] c = counts[(int)(b % binCount)];
+				for (int z = 0; z < zoneCount; z++) {
+					totals[z] -= c[z];
+				}
+				Arrays.fill(c, 0);
+			}
+		}
+		currentBin = bin;
+	}
+}
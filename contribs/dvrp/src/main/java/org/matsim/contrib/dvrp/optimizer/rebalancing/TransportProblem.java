@@ -0,0 +1,203 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.optimizer.rebalancing;
+
+import java.util.Arrays;
+
+/**
+ * Transportation problem: units (e.g. vehicles) are sent from supply nodes to demand nodes at minimum total cost. If
+ * the total supply and demand differ, only the smaller of them is transported.
+ * <p>
+ * Solved as a min-cost flow problem with the successive shortest path algorithm. Node potentials keep the reduced arc
+ * costs non-negative, so each path is found with a dense Dijkstra search. The problem graph is complete bipartite, so
+ * the arcs are not stored explicitly.
+ */
+public class TransportProblem {
+	private final int supplyCount;
+	private final int demandCount;
+	private final int[] supplies;
+	private final int[] demands;
+	private final double[][] costs;
+
+	// nodes: source, supply nodes, demand nodes, sink
+	private final int nodeCount;
+	private final int source;
+	private final int sink;
+
+	private final int[] sourceFlows;
+	private final int[] sinkFlows;
+	private final int[][] flows;
+
+	private final double[] potentials;
+	private final double[] distances;
+	private final int[] prevNodes;
+	private final boolean[] visited;
+
+	/**
+	 * @param supplies
+	 *            units available at each supply node
+	 * @param demands
+	 *            units required at each demand node
+	 * @param costs
+	 *            non-negative cost of sending one unit from supply node i to demand node j, costs[i][j]
+	 */
+	public TransportProblem(int[] supplies, int[] demands, double[][] costs) {
+		this.supplyCount = supplies.length;
+		this.demandCount = demands.length;
+		this.supplies = supplies;
+		this.demands = demands;
+		this.costs = costs;
+
+		nodeCount = supplyCount + demandCount + 2;
+		source = 0;
+		sink = nodeCount - 1;
+
+		sourceFlows = new int[supplyCount];
+		sinkFlows = new int[demandCount];
+		flows = new int[supplyCount][demandCount];
+
+		potentials = new double[nodeCount];
+		distances = new double[nodeCount];
+		prevNodes = new int[nodeCount];
+		visited = new boolean[nodeCount];
+	}
+
+	/**
+	 * @return number of units sent from supply node i to demand node j, flows[i][j]
+	 */
+	public int[][] solve() {
+		while (findShortestPath()) {
+			augment();
+			updatePotentials();
+		}
+		return flows;
+	}
+
+	private int supplyNode(int i) {
+		return 1 + i;
+	}
+
+	private int demandNode(int j) {
+		return 1 + supplyCount + j;
+	}
+
+	private boolean isSupplyNode(int v) {
+		return v > source && v <= supplyCount;
+	}
+
+	private boolean findShortestPath() {
+		Arrays.fill(distances, Double.POSITIVE_INFINITY);
+		Arrays.fill(prevNodes, -1);
+		Arrays.fill(visited, false);
+		distances[source] = 0;
+
+		while (true) {
+			int u = -1;
+			for (int v = 0; v < nodeCount; v++) {
+				if (!visited[v] && distances[v] < Double.POSITIVE_INFINITY && (u == -1 || distances[v] < distances[u])) {
+					u = v;
+				}
+			}
+
+			if (u == -1) {
+				return false;// sink not reachable
+			}
+			if (u == sink) {
+				return true;
+			}
+			visited[u] = true;
+
+			if (u == source) {
+				for (int i = 0; i < supplyCount; i++) {
+					if (sourceFlows[i] < supplies[i]) {
+						relax(u, supplyNode(i), 0);
+					}
+				}
+			} else if (isSupplyNode(u)) {
+				int i = u - 1;
+				for (int j = 0; j < demandCount; j++) {
+					relax(u, demandNode(j), costs[i][j]);
+				}
+			} else {
+				int j = u - 1 - supplyCount;
+				for (int i = 0; i < supplyCount; i++) {
+					if (flows[i][j] > 0) {
+						relax(u, supplyNode(i), -costs[i][j]);// residual (backward) arc
+					}
+				}
+				if (sinkFlows[j] < demands[j]) {
+					relax(u, sink, 0);
+				}
+			}
+		}
+	}
+
+	private void relax(int u, int v, double cost) {
+		if (visited[v]) {
+			return;
+		}
+
+		// reduced costs are non-negative (up to rounding errors)
+		double reducedCost = Math.max(cost + potentials[u] - potentials[v], 0);
+		double distance = distances[u] + reducedCost;
+		if (distance < distances[v]) {
+			distances[v] = distance;
+			prevNodes[v] = u;
+		}
+	}
+
+	private void augment() {
+		// bottleneck capacity
+		int delta = Integer.MAX_VALUE;
+		for (int v = sink; v != source; v = prevNodes[v]) {
+			int u = prevNodes[v];
+			if (u == source) {
+				int i = v - 1;
+				delta = Math.min(delta, supplies[i] - sourceFlows[i]);
+			} else if (v == sink) {
+				int j = u - 1 - supplyCount;
+				delta = Math.min(delta, demands[j] - sinkFlows[j]);
+			} else if (isSupplyNode(v)) {// backward arc
+				delta = Math.min(delta, flows[v - 1][u - 1 - supplyCount]);
+			}
+		}
+
+		for (int v = sink; v != source; v = prevNodes[v]) {
+			int u = prevNodes[v];
+			if (u == source) {
+				sourceFlows[v - 1] += delta;
+			} else if (v == sink) {
+				sinkFlows[u - 1 - supplyCount] += delta;
+			} else if (isSupplyNode(v)) {
+				flows[v - 1][u - 1 - supplyCount] -= delta;
+			} else {
+				flows[u - 1][v - 1 - supplyCount] += delta;
+			}
+		}
+	}
+
+	private void updatePotentials() {
+		// nodes not settled before reaching the sink are at least as far as the sink
+		double sinkDistance = distances[sink];
+		for (int v = 0; v < nodeCount; v++) {
+			potentials[v] += Math.min(distances[v], sinkDistance);
+		}
+	}
+}
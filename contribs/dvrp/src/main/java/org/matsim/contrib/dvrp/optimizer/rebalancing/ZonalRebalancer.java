@@ -0,0 +1,218 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.optimizer.rebalancing;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.contrib.util.distance.DistanceUtils;
+
+import com.google.common.primitives.Ints;
+
+/**
+ * Moves idle vehicles between zones according to the forecast demand. The number of requests starting (demand) and
+ * ending (future supply) in each zone is counted over the last rebalancing interval and serves as the forecast for the
+ * next one. Every {@code rebalancingInterval} seconds, idle vehicles in zones with a surplus are sent to zones with a
+ * deficit, at the minimum total cost, see {@link TransportProblem}. By default, the cost is the straight-line distance
+ * between the zone centroids; a {@link RelocationCostCalculator} may provide e.g. network travel times instead.
+ * Vehicles are not relocated between zones with an infinite or undefined (NaN) cost.
+ * <p>
+ * The optimizer passes the idle vehicle counts to {@link #startRebalancing(double, int[])}, and the transport problem
+ * is then solved on a background thread while the simulation proceeds. The relocations are collected in the next time
+ * step with {@link #getRelocations()} and dispatched in one batch. Since the results are always applied one time step
+ * later, they do not depend on thread timing. Vehicles that are not idle anymore at that time should be skipped.
+ * <p>
+ * All methods must be called from the optimizer (mobsim) thread.
+ */
+public class ZonalRebalancer {
+	public static class Relocation {
+		public final int fromZone;
+		public final int toZone;
+		public final int vehicleCount;
+
+		public Relocation(int fromZone, int toZone, int vehicleCount) {
+			this.fromZone = fromZone;
+			this.toZone = toZone;
+			this.vehicleCount = vehicleCount;
+		}
+	}
+
+	/**
+	 * Cost of moving one vehicle between zones (given by their indices). Called on the background thread.
+	 */
+	public interface RelocationCostCalculator {
+		double calcCost(int fromZone, int toZone, double time);
+	}
+
+	public static RelocationCostCalculator createBeelineDistanceCalculator(List<Coord> zoneCoords) {
+		final List<Coord> coords = new ArrayList<>(zoneCoords);
+		return new RelocationCostCalculator() {
+			@Override
+			public double calcCost(int fromZone, int toZone, double time) {
+				return DistanceUtils.calculateDistance(coords.get(fromZone), coords.get(toZone));
+			}
+		};
+	}
+
+	private static final int BINS_PER_INTERVAL = 10;
+
+	// replaces infinite/NaN costs in the transport problem; such relocations are dropped afterwards
+	private static final double PROHIBITIVE_COST = 1e12;
+
+	private final RelocationCostCalculator costCalculator;
+	private final int rebalancingInterval;
+	private final RollingZonalCounts departureCounts;
+	private final RollingZonalCounts arrivalCounts;
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "ZonalRebalancer");
+			thread.setDaemon(true);// does not block JVM shutdown if shutdown() is not called
+			return thread;
+		}
+	});
+	private Future<List<Relocation>> pendingRelocations;
+
+	/**
+	 * @param zoneCoords
+	 *            zone centroids; zones are referred to by their indices in this list
+	 * @param rebalancingInterval
+	 *            in seconds
+	 */
+	public ZonalRebalancer(List<Coord> zoneCoords, int rebalancingInterval) {
+		this(zoneCoords.size(), rebalancingInterval, createBeelineDistanceCalculator(zoneCoords));
+	}
+
+	/**
+	 * @param zoneCount
+	 *            zones are referred to by their indices (0 to zoneCount-1)
+	 * @param rebalancingInterval
+	 *            in seconds
+	 */
+	public ZonalRebalancer(int zoneCount, int rebalancingInterval, RelocationCostCalculator costCalculator) {
+		this.costCalculator = costCalculator;
+		this.rebalancingInterval = rebalancingInterval;
+
+		double binSize = (double)rebalancingInterval / BINS_PER_INTERVAL;
+		departureCounts = new RollingZonalCounts(zoneCount, binSize, BINS_PER_INTERVAL);
+		arrivalCounts = new RollingZonalCounts(zoneCount, binSize, BINS_PER_INTERVAL);
+	}
+
+	/**
+	 * @param fromZone
+	 *            index of the origin zone, or -1 if outside the zones
+	 * @param toZone
+	 *            index of the destination zone, or -1 if outside the zones
+	 */
+	public void requestSubmitted(int fromZone, int toZone, double time) {
+		if (fromZone >= 0) {
+			departureCounts.increment(fromZone, time);
+		}
+		if (toZone >= 0) {
+			arrivalCounts.increment(toZone, time);
+		}
+	}
+
+	public boolean isRebalancingTime(double time) {
+		return time % rebalancingInterval == 0;
+	}
+
+	/**
+	 * @param idleVehicleCounts
+	 *            number of idle vehicles in each zone
+	 */
+	public void startRebalancing(final double time, final int[] idleVehicleCounts) {
+		if (pendingRelocations != null) {
+			throw new IllegalStateException("Relocations from the previous rebalancing have not been collected");
+		}
+
+		final int[] departures = departureCounts.getCounts(time);
+		final int[] arrivals = arrivalCounts.getCounts(time);
+		pendingRelocations = executor.submit(new Callable<List<Relocation>>() {
+			public List<Relocation> call() {
+				return calcRelocations(time, idleVehicleCounts, departures, arrivals);
+			}
+		});
+	}
+
+	public boolean hasPendingRelocations() {
+		return pendingRelocations != null;
+	}
+
+	/**
+	 * Waits (if necessary) for the background computation to finish.
+	 */
+	public List<Relocation> getRelocations() {
+		try {
+			return pendingRelocations.get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		} finally {
+			pendingRelocations = null;
+		}
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private List<Relocation> calcRelocations(double time, int[] idleVehicleCounts, int[] departures, int[] arrivals) {
+		List<Integer> surplusZones = new ArrayList<>();
+		List<Integer> surpluses = new ArrayList<>();
+		List<Integer> deficitZones = new ArrayList<>();
+		List<Integer> deficits = new ArrayList<>();
+
+		for (int z = 0; z < idleVehicleCounts.length; z++) {
+			int balance = idleVehicleCounts[z] + arrivals[z] - departures[z];
+			if (balance > 0 && idleVehicleCounts[z] > 0) {
+				surplusZones.add(z);
+				surpluses.add(Math.min(balance, idleVehicleCounts[z]));// only idle vehicles can be moved
+			} else if (balance < 0) {
+				deficitZones.add(z);
+				deficits.add(-balance);
+			}
+		}
+
+		if (surplusZones.isEmpty() || deficitZones.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		double[][] costs = new double[surplusZones.size()][deficitZones.size()];
+		for (int i = 0; i < costs.length; i++) {
+			for (int j = 0; j < costs[i].length; j++) {
+				double cost = costCalculator.calcCost(surplusZones.get(i), deficitZones.get(j), time);
+				costs[i][j] = cost < Double.POSITIVE_INFINITY ? cost : PROHIBITIVE_COST;// false also for NaN
+			}
+		}
+
+		int[][] flows = new TransportProblem(Ints.toArray(surpluses), Ints.toArray(deficits), costs).solve();
+
+		List<Relocation> relocations = new ArrayList<>();
+		for (int i = 0; i < flows.length; i++) {
+			for (int j = 0; j < flows[i].length; j++) {
+				if (flows[i][j] > 0 && costs[i][j] < PROHIBITIVE_COST) {
+					relocations.add(new Relocation(surplusZones.get(i), deficitZones.get(j), flows[i][j]));
+				}
+			}
+		}
+		return relocations;
+	}
+}
@@ -19,11 +19,12 @@
 
 package org.matsim.contrib.dvrp.passenger;
 
-import java.util.Collection;
+import java.util.*;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.population.*;
+import org.matsim.contrib.dvrp.passenger.PassengerEngine.Prebooking;
 import org.matsim.core.mobsim.framework.*;
 import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
 import org.matsim.core.mobsim.framework.listeners.MobsimInitializedListener;
@@ -33,6 +34,8 @@ import org.matsim.core.mobsim.qsim.QSim;
  * This does, if I see it correctly, prebook a trip for every passenger already at the beginning of the simulation. For
  * taxis, I would think that it is only useful as a benchmark. It may be realistic for certain types of courier services
  * (where all requests are known before the day starts). kai, jul'14
+ * <p>
+ * The trips are prebooked in one batch, in the order of agents.
  */
 public class BeforeSimulationTripPrebooker implements MobsimInitializedListener {
 	private final PassengerEngine passengerEngine;
@@ -49,6 +52,7 @@ public class BeforeSimulationTripPrebooker implements MobsimInitializedListener
 	public void notifyMobsimInitialized(@SuppressWarnings("rawtypes") MobsimInitializedEvent e) {
 		Collection<MobsimAgent> agents = ((QSim)e.getQueueSimulation()).getAgents().values();
 		String mode = passengerEngine.getMode();
+		List<Prebooking> prebookings = new ArrayList<>();
 
 		for (MobsimAgent mobsimAgent : agents) {
 			if (mobsimAgent instanceof PlanAgent) {
@@ -62,12 +66,14 @@ public class BeforeSimulationTripPrebooker implements MobsimInitializedListener
 							Id<Link> fromLinkId = leg.getRoute().getStartLinkId();
 							Id<Link> toLinkId = leg.getRoute().getEndLinkId();
 							double departureTime = leg.getDepartureTime();
-							passengerEngine.prebookTrip(0, (MobsimPassengerAgent)mobsimAgent, fromLinkId, toLinkId,
-									departureTime);
+							prebookings.add(new Prebooking((MobsimPassengerAgent)mobsimAgent, fromLinkId, toLinkId,
+									departureTime));
 						}
 					}
 				}
 			}
 		}
+
+		passengerEngine.prebookTrips(0, prebookings);
 	}
 }
@@ -19,13 +19,13 @@
 
 package org.matsim.contrib.dvrp.passenger;
 
-import java.util.Map;
+import java.util.*;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.*;
 import org.matsim.api.core.v01.network.*;
 import org.matsim.contrib.dvrp.data.Request;
-import org.matsim.contrib.dvrp.optimizer.VrpOptimizer;
+import org.matsim.contrib.dvrp.optimizer.*;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.mobsim.framework.*;
 import org.matsim.core.mobsim.framework.MobsimAgent.State;
@@ -33,6 +33,21 @@ import org.matsim.core.mobsim.qsim.InternalInterface;
 import org.matsim.core.mobsim.qsim.interfaces.*;
 
 public class PassengerEngine implements MobsimEngine, DepartureHandler {
+	public static class Prebooking {
+		public final MobsimPassengerAgent passenger;
+		public final Id<Link> fromLinkId;
+		public final Id<Link> toLinkId;
+		public final double departureTime;
+
+		public Prebooking(MobsimPassengerAgent passenger, Id<Link> fromLinkId, Id<Link> toLinkId,
+				double departureTime) {
+			this.passenger = passenger;
+			this.fromLinkId = fromLinkId;
+			this.toLinkId = toLinkId;
+			this.departureTime = departureTime;
+		}
+	}
+
 	private final String mode;
 
 	private EventsManager eventsManager;
@@ -96,6 +111,39 @@ public class PassengerEngine implements MobsimEngine, DepartureHandler {
 		return !request.isRejected();
 	}
 
+	/**
+	 * Batch version of {@link #prebookTrip(double, MobsimPassengerAgent, Id, Id, double)}. If the optimizer
+	 * implements {@link VrpOptimizerWithBatchSubmission}, all requests are submitted in one call.
+	 *
+	 * @return number of accepted (not rejected) prebookings
+	 */
+	public int prebookTrips(double now, List<Prebooking> prebookings) {
+		List<PassengerRequest> requests = new ArrayList<>(prebookings.size());
+		for (Prebooking p : prebookings) {
+			if (p.departureTime <= now) {
+				throw new IllegalStateException("This is not a call ahead");
+			}
+			requests.add(createRequest(p.passenger, p.fromLinkId, p.toLinkId, p.departureTime, now));
+		}
+
+		if (optimizer instanceof VrpOptimizerWithBatchSubmission) {
+			((VrpOptimizerWithBatchSubmission)optimizer).requestsSubmitted(requests);
+		} else {
+			for (PassengerRequest request : requests) {
+				optimizer.requestSubmitted(request);
+			}
+		}
+
+		int acceptedCount = 0;
+		for (PassengerRequest request : requests) {
+			if (!request.isRejected()) {
+				advanceRequestStorage.storeAdvanceRequest(request);
+				acceptedCount++;
+			}
+		}
+		return acceptedCount;
+	}
+
 	@Override
 	public boolean handleDeparture(double now, MobsimAgent agent, Id<Link> fromLinkId) {
 		if (!agent.getMode().equals(mode)) {
@@ -23,6 +23,7 @@ import java.util.*;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.dvrp.passenger.PassengerEngine.Prebooking;
 import org.matsim.core.mobsim.framework.MobsimPassengerAgent;
 import org.matsim.core.mobsim.framework.events.*;
 import org.matsim.core.mobsim.framework.listeners.*;
@@ -82,14 +83,19 @@ public class TripPrebookingManager implements MobsimInitializedListener, MobsimB
 	}
 
 	/**
-	 * Goes through the prebookingQueue and submits all prebooking requests which are due "now"
+	 * Goes through the prebookingQueue and submits all prebooking requests which are due "now" (in one batch)
 	 * 
 	 * @param now
 	 */
 	private void prebookTrips(double now) {
-		while (prebookingQueue.peek().submissionTime <= now) {
+		List<Prebooking> prebookings = new ArrayList<>();
+		while (!prebookingQueue.isEmpty() && prebookingQueue.peek().submissionTime <= now) {
 			PrebookingEntry pe = prebookingQueue.poll();
-			passengerEngine.prebookTrip(now, pe.passenger, pe.fromLinkId, pe.toLinkId, pe.departureTime);
+			prebookings.add(new Prebooking(pe.passenger, pe.fromLinkId, pe.toLinkId, pe.departureTime));
+		}
+
+		if (!prebookings.isEmpty()) {
+			passengerEngine.prebookTrips(now, prebookings);
 		}
 	}
 }
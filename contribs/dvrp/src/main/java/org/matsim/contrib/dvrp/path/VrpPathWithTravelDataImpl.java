@@ -19,20 +19,30 @@
 
 package org.matsim.contrib.dvrp.path;
 
-import java.util.Iterator;
+import java.util.*;
 
 import org.matsim.api.core.v01.network.Link;
 
-import com.google.common.collect.Iterators;
-
+/**
+ * The path is a range (offset, linkCount) of the link and link travel time arrays. The arrays may be shared with other
+ * paths, e.g. paths created by {@link VrpPaths#createPathPrefix(VrpPathWithTravelDataImpl, int)} reference the arrays
+ * of the path they were cut from instead of copying them.
+ */
 public class VrpPathWithTravelDataImpl implements VrpPathWithTravelData {
 	private final double departureTime;
 	private final double travelTime;
 	private final Link[] links;
 	private final double[] linkTTs;
+	private final int offset;
+	private final int linkCount;
 
 	public VrpPathWithTravelDataImpl(double departureTime, double travelTime, Link[] links, double[] linkTTs) {
-		if (links.length == 0 || links.length != linkTTs.length) {
+		this(departureTime, travelTime, links, linkTTs, 0, links.length);
+	}
+
+	public VrpPathWithTravelDataImpl(double departureTime, double travelTime, Link[] links, double[] linkTTs,
+			int offset, int linkCount) {
+		if (links.length != linkTTs.length || linkCount <= 0 || offset < 0 || offset + linkCount > links.length) {
 			throw new IllegalArgumentException();
 		}
 
@@ -40,6 +50,15 @@ public class VrpPathWithTravelDataImpl implements VrpPathWithTravelData {
 		this.travelTime = travelTime;
 		this.links = links;
 		this.linkTTs = linkTTs;
+		this.offset = offset;
+		this.linkCount = linkCount;
+	}
+
+	VrpPathWithTravelDataImpl createPrefix(double prefixTravelTime, int prefixLinkCount) {
+		if (prefixLinkCount > linkCount) {
+			throw new IllegalArgumentException();
+		}
+		return new VrpPathWithTravelDataImpl(departureTime, prefixTravelTime, links, linkTTs, offset, prefixLinkCount);
 	}
 
 	@Override
@@ -59,36 +78,43 @@ public class VrpPathWithTravelDataImpl implements VrpPathWithTravelData {
 
 	@Override
 	public int getLinkCount() {
-		return links.length;
+		return linkCount;
 	}
 
 	@Override
 	public Link getLink(int idx) {
-		return links[idx];
+		return links[arrayIdx(idx)];
 	}
 
 	@Override
 	public Link getFromLink() {
-		return links[0];
+		return links[offset];
 	}
 
 	@Override
 	public Link getToLink() {
-		return links[links.length - 1];
+		return links[offset + linkCount - 1];
 	}
 
 	@Override
 	public double getLinkTravelTime(int idx) {
-		return linkTTs[idx];
+		return linkTTs[arrayIdx(idx)];
 	}
 
 	@Override
 	public void setLinkTravelTime(int idx, double linkTT) {
-		linkTTs[idx] = linkTT;
+		linkTTs[arrayIdx(idx)] = linkTT;
+	}
+
+	private int arrayIdx(int idx) {
+		if (idx < 0 || idx >= linkCount) {
+			throw new ArrayIndexOutOfBoundsException(idx);
+		}
+		return offset + idx;
 	}
 
 	@Override
 	public Iterator<Link> iterator() {
-		return Iterators.forArray(links);
+		return Arrays.asList(links).subList(offset, offset + linkCount).iterator();
 	}
 }
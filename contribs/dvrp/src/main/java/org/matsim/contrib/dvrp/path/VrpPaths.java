@@ -93,6 +93,18 @@ public class VrpPaths {
 		return new VrpPathWithTravelDataImpl(departureTime, totalTT, links, linkTTs);
 	}
 
+	/**
+	 * Creates the part of {@code path} that ends on the link at {@code linkCount - 1} (e.g. where a stop is inserted on
+	 * the way). The returned path shares the link and travel time arrays with {@code path}.
+	 */
+	public static VrpPathWithTravelData createPathPrefix(VrpPathWithTravelDataImpl path, int linkCount) {
+		double travelTime = 0;
+		for (int i = 0; i < linkCount; i++) {
+			travelTime += path.getLinkTravelTime(i);
+		}
+		return path.createPrefix(travelTime, linkCount);
+	}
+
 	public static final double FIRST_LINK_TT = 1;
 
 	public static double getLastLinkTT(Link lastLink, double time) {
@@ -0,0 +1,146 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.router;
+
+import java.util.*;
+
+import org.matsim.api.core.v01.network.*;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+
+/**
+ * Immutable copy of a computed {@link DijkstraTree}, with arrival times, costs and previous links stored in primitive
+ * arrays indexed by {@link NetworkIndex}. Unlike DijkstraTree, it can be read by many threads at the same time.
+ */
+public class CompactDijkstraTree {
+	/**
+	 * Assigns consecutive indices to nodes and links; shared by all trees computed for one network.
+	 */
+	public static class NetworkIndex {
+		private final Node[] nodes;
+		private final Link[] links;
+		private final Map<Node, Integer> nodeIndices = new IdentityHashMap<>();
+		private final Map<Link, Integer> linkIndices = new IdentityHashMap<>();
+
+		public NetworkIndex(Network network) {
+			nodes = network.getNodes().values().toArray(new Node[network.getNodes().size()]);
+			links = network.getLinks().values().toArray(new Link[network.getLinks().size()]);
+			for (int i = 0; i < nodes.length; i++) {
+				nodeIndices.put(nodes[i], i);
+			}
+			for (int i = 0; i < links.length; i++) {
+				linkIndices.put(links[i], i);
+			}
+		}
+
+		public int getNodeCount() {
+			return nodes.length;
+		}
+
+		public int getNodeIndex(Node node) {
+			return nodeIndices.get(node);
+		}
+	}
+
+	private static final int NO_LINK = -1;
+
+	private final NetworkIndex index;
+	private final Node fromNode;
+	private final double startTime;
+	private final double[] times;
+	private final double[] costs;
+	private final int[] prevLinks;
+
+	public CompactDijkstraTree(NetworkIndex index, DijkstraTree tree, Node fromNode, double startTime) {
+		this.index = index;
+		this.fromNode = fromNode;
+		this.startTime = startTime;
+
+		int nodeCount = index.nodes.length;
+		times = new double[nodeCount];
+		costs = new double[nodeCount];
+		prevLinks = new int[nodeCount];
+		for (int i = 0; i < nodeCount; i++) {
+			Node node = index.nodes[i];
+			if (tree.isReached(node)) {
+				times[i] = tree.getTime(node);
+				costs[i] = tree.getCost(node);
+				Link prevLink = tree.getPrevLink(node);
+				prevLinks[i] = prevLink == null ? NO_LINK : index.linkIndices.get(prevLink);
+			} else {
+				times[i] = Double.NaN;
+				costs[i] = Double.NaN;
+				prevLinks[i] = NO_LINK;
+			}
+		}
+	}
+
+	/**
+	 * Same as {@link DijkstraWithThinPath}, the returned path contains only links.
+	 *
+	 * @return the least cost path, or null if toNode cannot be reached
+	 */
+	public Path getLeastCostPath(Node toNode) {
+		int toIdx = index.getNodeIndex(toNode);
+		if (Double.isNaN(times[toIdx])) {
+			return null;
+		}
+
+		ArrayList<Link> links = new ArrayList<>();
+		for (int linkIdx = prevLinks[toIdx]; linkIdx != NO_LINK && index.nodes[toIdx] != fromNode;) {
+			Link link = index.links[linkIdx];
+			links.add(link);
+			toIdx = index.getNodeIndex(link.getFromNode());
+			linkIdx = prevLinks[toIdx];
+		}
+		Collections.reverse(links);
+
+		int finalIdx = index.getNodeIndex(toNode);
+		return new Path(null, links, times[finalIdx] - startTime, costs[finalIdx]);
+	}
+
+	/**
+	 * @return arrival time at toNode, or NaN if toNode cannot be reached
+	 */
+	public double getTime(Node toNode) {
+		return times[index.getNodeIndex(toNode)];
+	}
+
+	/**
+	 * @return travel cost to toNode, or NaN if toNode cannot be reached
+	 */
+	public double getCost(Node toNode) {
+		return costs[index.getNodeIndex(toNode)];
+	}
+
+	public Node getFromNode() {
+		return fromNode;
+	}
+
+	public double getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * @return approximate memory occupied by this tree
+	 */
+	public long getSizeInBytes() {
+		return 64 + (long)times.length * (8 + 8 + 4);
+	}
+}
@@ -26,37 +26,84 @@ import org.matsim.contrib.dvrp.util.TimeDiscretizer;
 import org.matsim.core.router.util.LeastCostPathCalculator;
 import org.matsim.vehicles.Vehicle;
 
-import com.google.common.collect.*;
+import com.google.common.cache.*;
 
+/**
+ * Caches paths (per time bin) in a bounded cache with least-recently-used eviction. Lookups are thread-safe, but the
+ * wrapped calculator is called concurrently only if it is thread-safe itself (which is usually not the case).
+ */
 public class DefaultLeastCostPathCalculatorWithCache implements LeastCostPathCalculatorWithCache {
+	public static final long DEFAULT_MAX_CACHE_SIZE = 100_000;
+
+	private static class PathKey {
+		private final int timeIdx;
+		private final Id<Node> fromNodeId;
+		private final Id<Node> toNodeId;
+
+		private PathKey(int timeIdx, Id<Node> fromNodeId, Id<Node> toNodeId) {
+			this.timeIdx = timeIdx;
+			this.fromNodeId = fromNodeId;
+			this.toNodeId = toNodeId;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof PathKey)) {
+				return false;
+			}
+			PathKey other = (PathKey)obj;
+			return timeIdx == other.timeIdx && fromNodeId.equals(other.fromNodeId) && toNodeId.equals(other.toNodeId);
+		}
+
+		@Override
+		public int hashCode() {
+			return (31 * timeIdx + fromNodeId.hashCode()) * 31 + toNodeId.hashCode();
+		}
+	}
+
 	private final LeastCostPathCalculator calculator;
 	private final TimeDiscretizer timeDiscretizer;
-	private final Table<Id<Node>, Id<Node>, Path>[] pathCache;
+	private final Cache<PathKey, Path> pathCache;
 
-	private CacheStats cacheStats = new CacheStats();
+	private final CacheStats cacheStats = new CacheStats();
 
-	@SuppressWarnings("unchecked")
 	public DefaultLeastCostPathCalculatorWithCache(LeastCostPathCalculator calculator,
 			TimeDiscretizer timeDiscretizer) {
+		this(calculator, timeDiscretizer, DEFAULT_MAX_CACHE_SIZE);
+	}
+
+	/**
+	 * @param maxCacheSize
+	 *            max number of cached paths
+	 */
+	public DefaultLeastCostPathCalculatorWithCache(LeastCostPathCalculator calculator,
+			TimeDiscretizer timeDiscretizer, long maxCacheSize) {
 		this.calculator = calculator;
 		this.timeDiscretizer = timeDiscretizer;
 
-		pathCache = new Table[timeDiscretizer.getIntervalCount()];
-		for (int i = 0; i < pathCache.length; i++) {
-			pathCache[i] = HashBasedTable.create();
-		}
+		pathCache = CacheBuilder.newBuilder()//
+				.maximumSize(maxCacheSize)//
+				.removalListener(new RemovalListener<PathKey, Path>() {
+					@Override
+					public void onRemoval(RemovalNotification<PathKey, Path> notification) {
+						if (notification.wasEvicted()) {
+							cacheStats.incEvictions();
+						}
+					}
+				})//
+				.build();
 	}
 
 	@Override
 	public Path calcLeastCostPath(Node fromNode, Node toNode, double startTime, Person person, Vehicle vehicle) {
-		Table<Id<Node>, Id<Node>, Path> spCacheSlice = pathCache[timeDiscretizer.getIdx(startTime)];
-		Path path = spCacheSlice.get(fromNode.getId(), toNode.getId());
+		PathKey key = new PathKey(timeDiscretizer.getIdx(startTime), fromNode.getId(), toNode.getId());
+		Path path = pathCache.getIfPresent(key);
 
 		if (path == null) {
 			cacheStats.incMisses();
 			path = calculator.calcLeastCostPath(fromNode, toNode, timeDiscretizer.discretize(startTime), person,
 					vehicle);
-			spCacheSlice.put(fromNode.getId(), toNode.getId(), path);
+			pathCache.put(key, path);
 		} else {
 			cacheStats.incHits();
 		}
@@ -72,4 +72,12 @@ public class DijkstraTree extends DijkstraWithThinPath {
 	public double getCost(Node toNode) {
 		return getData(toNode).getCost();
 	}
+
+	public Link getPrevLink(Node toNode) {
+		return getData(toNode).getPrevLink();
+	}
+
+	public boolean isReached(Node toNode) {
+		return getData(toNode).isVisited(getIterationId());
+	}
 }
@@ -19,60 +19,118 @@
 
 package org.matsim.contrib.dvrp.router;
 
-import java.util.Map;
+import java.util.concurrent.*;
 
-import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.*;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.contrib.dvrp.util.TimeDiscretizer;
 import org.matsim.core.router.util.*;
 import org.matsim.vehicles.Vehicle;
 
-import com.google.common.collect.Maps;
+import com.google.common.cache.*;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
+/**
+ * Caches complete Dijkstra trees (one per from-node and time bin) in a bounded cache with least-recently-used
+ * eviction. Trees are stored as {@link CompactDijkstraTree}s and weighted by their size. The cache is lock-striped
+ * and trees are computed with one {@link DijkstraTree} per thread, so a single instance can be shared by all
+ * optimizer threads, provided the travel time and disutility are thread-safe.
+ */
 public class DijkstraWithDijkstraTreeCache implements LeastCostPathCalculatorWithCache {
-	private final Network network;
-	private final TravelDisutility costFunction;
-	private final TravelTime timeFunction;
+	public static final long DEFAULT_MAX_CACHE_SIZE_IN_BYTES = 256L * 1024 * 1024;
+
+	private final CompactDijkstraTree.NetworkIndex networkIndex;
 	private final TimeDiscretizer timeDiscretizer;
-	private final Map<Id<Node>, DijkstraTree>[] treeCache;
+	private final Cache<Long, CompactDijkstraTree> treeCache;
+	private final ThreadLocal<DijkstraTree> dijkstraTrees;
 
-	private CacheStats cacheStats = new CacheStats();
+	private final CacheStats cacheStats = new CacheStats();
 
-	@SuppressWarnings("unchecked")
 	public DijkstraWithDijkstraTreeCache(Network network, TravelDisutility costFunction, final TravelTime timeFunction,
 			TimeDiscretizer timeDiscretizer) {
-		this.network = network;
-		this.costFunction = costFunction;
-		this.timeFunction = timeFunction;
+		this(network, costFunction, timeFunction, timeDiscretizer, DEFAULT_MAX_CACHE_SIZE_IN_BYTES,
+				Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param maxCacheSizeInBytes
+	 *            approximate upper bound of memory occupied by the cached trees
+	 * @param concurrencyLevel
+	 *            expected number of threads using the cache at the same time (number of lock stripes)
+	 */
+	public DijkstraWithDijkstraTreeCache(final Network network, final TravelDisutility costFunction,
+			final TravelTime timeFunction, TimeDiscretizer timeDiscretizer, long maxCacheSizeInBytes,
+			int concurrencyLevel) {
 		this.timeDiscretizer = timeDiscretizer;
+		networkIndex = new CompactDijkstraTree.NetworkIndex(network);
 
-		treeCache = new Map[timeDiscretizer.getIntervalCount()];
-		for (int i = 0; i < treeCache.length; i++) {
-			treeCache[i] = Maps.newHashMap();
-		}
+		treeCache = CacheBuilder.newBuilder()//
+				.maximumWeight(maxCacheSizeInBytes)//
+				.weigher(new Weigher<Long, CompactDijkstraTree>() {
+					@Override
+					public int weigh(Long key, CompactDijkstraTree tree) {
+						return (int)Math.min(Integer.MAX_VALUE, tree.getSizeInBytes());
+					}
+				})//
+				.concurrencyLevel(concurrencyLevel)//
+				.removalListener(new RemovalListener<Long, CompactDijkstraTree>() {
+					@Override
+					public void onRemoval(RemovalNotification<Long, CompactDijkstraTree> notification) {
+						if (notification.wasEvicted()) {
+							cacheStats.incEvictions();
+						}
+					}
+				})//
+				.build();
+
+		dijkstraTrees = new ThreadLocal<DijkstraTree>() {
+			@Override
+			protected DijkstraTree initialValue() {
+				return new DijkstraTree(network, costFunction, timeFunction);
+			}
+		};
 	}
 
 	@Override
 	public Path calcLeastCostPath(Node fromNode, Node toNode, double startTime, Person person, Vehicle vehicle) {
-		return getTree(fromNode, startTime).calcLeastCostPath(fromNode, toNode, timeDiscretizer.discretize(startTime),
-				person, vehicle);
+		if (person != null || vehicle != null) {
+			throw new IllegalArgumentException();
+		}
+		return getTree(fromNode, startTime).getLeastCostPath(toNode);
 	}
 
-	public DijkstraTree getTree(Node fromNode, double startTime) {
-		Map<Id<Node>, DijkstraTree> treeCacheSlice = treeCache[timeDiscretizer.getIdx(startTime)];
-		DijkstraTree tree = treeCacheSlice.get(fromNode.getId());
+	public CompactDijkstraTree getTree(final Node fromNode, double startTime) {
+		final int timeIdx = timeDiscretizer.getIdx(startTime);
+		final int discretizedTime = timeDiscretizer.discretize(startTime);
+		long key = (long)timeIdx * networkIndex.getNodeCount() + networkIndex.getNodeIndex(fromNode);
 
-		if (tree == null) {
-			cacheStats.incMisses();
-			tree = new DijkstraTree(network, costFunction, timeFunction);
-			tree.calcLeastCostPathTree(fromNode, timeDiscretizer.discretize(startTime));
-			treeCacheSlice.put(fromNode.getId(), tree);
-		} else {
+		CompactDijkstraTree tree = treeCache.getIfPresent(key);
+		if (tree != null) {
 			cacheStats.incHits();
+			return tree;
+		}
+
+		try {
+			// concurrent requests for the same tree wait for a single computation
+			return treeCache.get(key, new Callable<CompactDijkstraTree>() {
+				@Override
+				public CompactDijkstraTree call() {
+					cacheStats.incMisses();
+					DijkstraTree dijkstraTree = dijkstraTrees.get();
+					dijkstraTree.calcLeastCostPathTree(fromNode, discretizedTime);
+					return new CompactDijkstraTree(networkIndex, dijkstraTree, fromNode, discretizedTime);
+				}
+			});
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			throw new RuntimeException(e.getCause());
 		}
+	}
 
-		return tree;
+	/**
+	 * @return number of cached trees
+	 */
+	public long getCacheSize() {
+		return treeCache.size();
 	}
 
 	@Override
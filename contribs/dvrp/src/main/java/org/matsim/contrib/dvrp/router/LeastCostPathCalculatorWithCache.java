@@ -19,27 +19,41 @@
 
 package org.matsim.contrib.dvrp.router;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.matsim.core.router.util.LeastCostPathCalculator;
 
 public interface LeastCostPathCalculatorWithCache extends LeastCostPathCalculator {
+	/**
+	 * Thread-safe counters of cache hits, misses and evictions.
+	 */
 	class CacheStats {
-		private int hits = 0;
-		private int misses = 0;
+		private final AtomicInteger hits = new AtomicInteger();
+		private final AtomicInteger misses = new AtomicInteger();
+		private final AtomicInteger evictions = new AtomicInteger();
 
 		public void incHits() {
-			hits++;
+			hits.incrementAndGet();
 		}
 
 		public void incMisses() {
-			misses++;
+			misses.incrementAndGet();
+		}
+
+		public void incEvictions() {
+			evictions.incrementAndGet();
 		}
 
 		public int getHits() {
-			return hits;
+			return hits.get();
 		}
 
 		public int getMisses() {
-			return misses;
+			return misses.get();
+		}
+
+		public int getEvictions() {
+			return evictions.get();
 		}
 	}
 
@@ -26,12 +26,13 @@ import org.matsim.contrib.dvrp.tracker.TaskTracker;
  */
 public abstract class AbstractTask implements Task {
 	// ==== BEGIN: fields managed by ScheduleImpl
+	ScheduleImpl schedule;// while set, the begin/end times are kept in the schedule's arrays
 	int taskIdx;
 	TaskStatus status;
 	// ==== END: fields managed by ScheduleImpl
 
-	private double beginTime;
-	private double endTime;
+	private double beginTime;// used only outside a schedule
+	private double endTime;// used only outside a schedule
 
 	private TaskTracker taskTracker;
 
@@ -56,12 +57,12 @@ public abstract class AbstractTask implements Task {
 
 	@Override
 	public final double getBeginTime() {
-		return beginTime;
+		return schedule == null ? beginTime : schedule.beginTimes[taskIdx];
 	}
 
 	@Override
 	public final double getEndTime() {
-		return endTime;
+		return schedule == null ? endTime : schedule.endTimes[taskIdx];
 	}
 
 	@Override
@@ -70,7 +71,11 @@ public abstract class AbstractTask implements Task {
 			throw new IllegalStateException("It is too late to change the beginTime");
 		}
 
-		this.beginTime = beginTime;
+		if (schedule == null) {
+			this.beginTime = beginTime;
+		} else {
+			schedule.beginTimes[taskIdx] = beginTime;
+		}
 	}
 
 	@Override
@@ -79,7 +84,17 @@ public abstract class AbstractTask implements Task {
 			throw new IllegalStateException("It is too late to change the endTime");
 		}
 
-		this.endTime = endTime;
+		if (schedule == null) {
+			this.endTime = endTime;
+		} else {
+			schedule.endTimes[taskIdx] = endTime;
+		}
+	}
+
+	void detachFromSchedule() {
+		beginTime = getBeginTime();
+		endTime = getEndTime();
+		schedule = null;
 	}
 
 	@Override
@@ -105,6 +120,6 @@ public abstract class AbstractTask implements Task {
 	}
 
 	protected String commonToString() {
-		return " [" + beginTime + " : " + endTime + "]";
+		return " [" + getBeginTime() + " : " + getEndTime() + "]";
 	}
 }
\ No newline at end of file
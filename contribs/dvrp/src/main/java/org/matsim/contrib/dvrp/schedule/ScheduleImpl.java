@@ -27,13 +27,42 @@ import org.matsim.contrib.dvrp.data.Vehicle;
 import org.matsim.contrib.dvrp.schedule.Task.TaskStatus;
 
 /**
+ * Tasks and their begin/end times are kept in parallel arrays that grow on demand. While a task belongs to the
+ * schedule, {@link AbstractTask} reads and writes its times in these arrays, so shifting the timeline touches only
+ * primitive arrays. Tasks (e.g. stops inserted into a DRT schedule) are inserted and removed in place, by shifting the
+ * subsequent entries, and {@link #getTasks()} returns a read-only view of the task array.
+ *
  * @author michalm
  */
 public class ScheduleImpl implements Schedule {
+	private static final int INITIAL_CAPACITY = 8;
+
+	private class TaskListView extends AbstractList<AbstractTask> implements RandomAccess {
+		@Override
+		public AbstractTask get(int index) {
+			if (index < 0 || index >= taskCount) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + taskCount);
+			}
+			return tasks[index];
+		}
+
+		@Override
+		public int size() {
+			return taskCount;
+		}
+
+		private void structurallyModified() {
+			modCount++;// fail-fast iterators
+		}
+	}
+
 	private final Vehicle vehicle;
 
-	private final List<AbstractTask> tasks = new ArrayList<>();
-	private final List<? extends Task> unmodifiableTasks = (List<? extends Task>)Collections.unmodifiableList(tasks);
+	private AbstractTask[] tasks = new AbstractTask[INITIAL_CAPACITY];
+	double[] beginTimes = new double[INITIAL_CAPACITY];// accessed by AbstractTask
+	double[] endTimes = new double[INITIAL_CAPACITY];// accessed by AbstractTask
+	private int taskCount = 0;
+	private final TaskListView unmodifiableTasks = new TaskListView();
 
 	private ScheduleStatus status = ScheduleStatus.UNPLANNED;
 	private AbstractTask currentTask = null;
@@ -49,11 +78,11 @@ public class ScheduleImpl implements Schedule {
 
 	@Override
 	public int getTaskCount() {
-		return tasks.size();
+		return taskCount;
 	}
 
 	public void addTask(Task task) {
-		addTask(tasks.size(), task);
+		addTask(taskCount, task);
 	}
 
 	public void addTask(int taskIdx, Task task) {
@@ -63,14 +92,31 @@ public class ScheduleImpl implements Schedule {
 			status = ScheduleStatus.PLANNED;
 		}
 
+		if (taskCount == tasks.length) {
+			int capacity = 2 * tasks.length;
+			tasks = Arrays.copyOf(tasks, capacity);
+			beginTimes = Arrays.copyOf(beginTimes, capacity);
+			endTimes = Arrays.copyOf(endTimes, capacity);
+		}
+
+		int shiftedCount = taskCount - taskIdx;
+		System.arraycopy(tasks, taskIdx, tasks, taskIdx + 1, shiftedCount);
+		System.arraycopy(beginTimes, taskIdx, beginTimes, taskIdx + 1, shiftedCount);
+		System.arraycopy(endTimes, taskIdx, endTimes, taskIdx + 1, shiftedCount);
+		taskCount++;
+		unmodifiableTasks.structurallyModified();
+
 		AbstractTask t = (AbstractTask)task;
-		tasks.add(taskIdx, t);
+		tasks[taskIdx] = t;
+		beginTimes[taskIdx] = t.getBeginTime();
+		endTimes[taskIdx] = t.getEndTime();
+		t.schedule = this;
 		t.taskIdx = taskIdx;
 		t.status = TaskStatus.PLANNED;
 
 		// update idx of the existing tasks
-		for (int i = taskIdx + 1; i < tasks.size(); i++) {
-			tasks.get(i).taskIdx = i;
+		for (int i = taskIdx + 1; i < taskCount; i++) {
+			tasks[i].taskIdx = i;
 		}
 	}
 
@@ -84,7 +130,6 @@ public class ScheduleImpl implements Schedule {
 		double endTime = task.getEndTime();
 		Link beginLink = Tasks.getBeginLink(task);
 		Link endLink = Tasks.getEndLink(task);
-		int taskCount = tasks.size();
 
 		if (taskIdx < 0 || taskIdx > taskCount) {
 			throw new IllegalArgumentException();
@@ -95,9 +140,9 @@ public class ScheduleImpl implements Schedule {
 		}
 
 		if (taskIdx > 0) {
-			Task previousTask = tasks.get(taskIdx - 1);
+			Task previousTask = tasks[taskIdx - 1];
 
-			if (previousTask.getEndTime() != beginTime) {
+			if (endTimes[taskIdx - 1] != beginTime) {
 				throw new IllegalArgumentException();
 			}
 
@@ -113,7 +158,7 @@ public class ScheduleImpl implements Schedule {
 		}
 
 //		if (taskIdx < taskCount) {
-//			Task nextTask = tasks.get(taskIdx);// currently at taskIdx, but soon at taskIdx+1
+//			Task nextTask = tasks[taskIdx];// currently at taskIdx, but soon at taskIdx+1
 //
 //			if (nextTask.getBeginTime() != endTime) {
 //				throw new IllegalArgumentException();
@@ -127,7 +172,7 @@ public class ScheduleImpl implements Schedule {
 
 	@Override
 	public void removeLastTask() {
-		removeTaskImpl(tasks.size() - 1);
+		removeTaskImpl(taskCount - 1);
 	}
 
 	@Override
@@ -139,19 +184,27 @@ public class ScheduleImpl implements Schedule {
 		failIfUnplanned();
 		failIfCompleted();
 
-		AbstractTask task = tasks.get(taskIdx);
+		AbstractTask task = tasks[taskIdx];
 
 		if (task.getStatus() != TaskStatus.PLANNED) {
 			throw new IllegalStateException();
 		}
 
-		tasks.remove(taskIdx);
+		task.detachFromSchedule();
+
+		int shiftedCount = taskCount - taskIdx - 1;
+		System.arraycopy(tasks, taskIdx + 1, tasks, taskIdx, shiftedCount);
+		System.arraycopy(beginTimes, taskIdx + 1, beginTimes, taskIdx, shiftedCount);
+		System.arraycopy(endTimes, taskIdx + 1, endTimes, taskIdx, shiftedCount);
+		taskCount--;
+		tasks[taskCount] = null;
+		unmodifiableTasks.structurallyModified();
 
-		for (int i = taskIdx; i < tasks.size(); i++) {
-			tasks.get(i).taskIdx = i;
+		for (int i = taskIdx; i < taskCount; i++) {
+			tasks[i].taskIdx = i;
 		}
 
-		if (tasks.size() == 0) {
+		if (taskCount == 0) {
 			status = ScheduleStatus.UNPLANNED;
 		}
 	}
@@ -184,11 +237,11 @@ public class ScheduleImpl implements Schedule {
 			nextIdx = currentTask.taskIdx + 1;
 		}
 
-		if (nextIdx == tasks.size()) {
+		if (nextIdx == taskCount) {
 			currentTask = null;
 			status = ScheduleStatus.COMPLETED;
 		} else {
-			currentTask = tasks.get(nextIdx);
+			currentTask = tasks[nextIdx];
 			currentTask.status = TaskStatus.STARTED;
 		}
 	}
@@ -201,13 +254,13 @@ public class ScheduleImpl implements Schedule {
 	@Override
 	public double getBeginTime() {
 		failIfUnplanned();
-		return tasks.get(0).getBeginTime();
+		return beginTimes[0];
 	}
 
 	@Override
 	public double getEndTime() {
 		failIfUnplanned();
-		return tasks.get(tasks.size() - 1).getEndTime();
+		return endTimes[taskCount - 1];
 	}
 
 	@Override
@@ -19,7 +19,7 @@
 
 package org.matsim.contrib.dvrp.schedule;
 
-import org.matsim.contrib.dvrp.data.Vehicle;
+import org.matsim.contrib.dvrp.data.*;
 
 import com.google.common.base.Predicate;
 
@@ -34,4 +34,23 @@ public class ScheduleInquiries {
 			}
 		};
 	}
+
+	/**
+	 * Same as {@code Iterables.size(Iterables.filter(vehicles, createIsIdle(scheduleInquiry)))}, but without creating
+	 * the predicate and the iterators. Callers that count repeatedly should keep the array (see
+	 * {@link #toVehicleArray(Fleet)}).
+	 */
+	public static int countIdle(ScheduleInquiry scheduleInquiry, Vehicle[] vehicles) {
+		int count = 0;
+		for (int i = 0; i < vehicles.length; i++) {
+			if (scheduleInquiry.isIdle(vehicles[i])) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public static Vehicle[] toVehicleArray(Fleet fleet) {
+		return fleet.getVehicles().values().toArray(new Vehicle[fleet.getVehicles().size()]);
+	}
 }
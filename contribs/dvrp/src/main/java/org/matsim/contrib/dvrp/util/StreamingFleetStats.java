@@ -0,0 +1,309 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.util;
+
+import java.util.*;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.*;
+import org.matsim.api.core.v01.events.handler.*;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.dvrp.util.TimeDiscretizer.Type;
+import org.matsim.contrib.dvrp.vrpagent.VrpAgentLogic;
+import org.matsim.contrib.util.*;
+import org.matsim.contrib.util.histogram.UniformHistogram;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.*;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Single-pass fleet statistics aggregated over time bins: vehicle time by occupancy (idle, empty, 1, 2, ... passengers),
+ * empty/occupied distance and passenger wait times. Only the current state of each vehicle and each waiting passenger
+ * is kept, so unlike collecting whole trips or per-second vehicle histories, the memory needed does not grow with the
+ * simulated time. Wait time quantiles are estimated from histograms with {@link #WAIT_TIME_RESOLUTION} resolution.
+ * <p>
+ * Works both online (added to the events manager of the QSim) and offline (see {@link #readEventsFile(String)}).
+ */
+public class StreamingFleetStats implements ActivityStartEventHandler, ActivityEndEventHandler,
+		PersonEntersVehicleEventHandler, PersonLeavesVehicleEventHandler, LinkEnterEventHandler,
+		PersonDepartureEventHandler {
+	public static final double WAIT_TIME_RESOLUTION = 10;// [s]
+	private static final int WAIT_TIME_BIN_COUNT = 360;// up to 1 hour
+
+	private static final int IDLE = 0;
+	private static final int EMPTY = 1;// occupancy + 1 for other categories
+
+	private static class VehicleState {
+		private int occupancy;
+		private boolean idle;
+		private double lastTime;
+
+		private VehicleState(double time) {
+			lastTime = time;
+		}
+	}
+
+	private final Network network;
+	private final String mode;
+	private final String stayActivityType;
+	private final int maxOccupancy;
+	private final TimeDiscretizer timeDiscretizer;
+	private final int binCount;
+
+	private final Map<Id<Vehicle>, VehicleState> vehicles = new HashMap<>();
+	private final Map<Id<Person>, Double> departureTimes = new HashMap<>();
+	private double lastEventTime;
+
+	private final double[][] vehicleTimes;// [bin][category]
+	private final double[] emptyDistances;
+	private final double[] occupiedDistances;
+	private final double[] passengerDistances;
+	private final double[] waitTimeSums;
+	private final double[] waitTimeMaxs;
+	private final UniformHistogram[] waitTimeHistograms;// by departure time bin; created on demand
+
+	/**
+	 * @param mode
+	 *            passenger leg mode
+	 * @param stayActivityType
+	 *            activity type of the vehicle STAY task (idle vehicles)
+	 * @param maxOccupancy
+	 *            higher occupancies are counted as maxOccupancy
+	 * @param timeBinSize
+	 *            in seconds; the last bin (starting at 30:00:00) is open-ended
+	 */
+	public StreamingFleetStats(Network network, String mode, String stayActivityType, int maxOccupancy,
+			int timeBinSize) {
+		this.network = network;
+		this.mode = mode;
+		this.stayActivityType = stayActivityType;
+		this.maxOccupancy = maxOccupancy;
+
+		timeDiscretizer = new TimeDiscretizer(30 * 3600, timeBinSize, Type.OPEN_ENDED);
+		binCount = timeDiscretizer.getIntervalCount();
+		vehicleTimes = new double[binCount][maxOccupancy + 2];
+		emptyDistances = new double[binCount];
+		occupiedDistances = new double[binCount];
+		passengerDistances = new double[binCount];
+		waitTimeSums = new double[binCount];
+		waitTimeMaxs = new double[binCount];
+		waitTimeHistograms = new UniformHistogram[binCount];
+	}
+
+	@Override
+	public void reset(int iteration) {
+		vehicles.clear();
+		departureTimes.clear();
+		lastEventTime = 0;
+
+		for (double[] t : vehicleTimes) {
+			Arrays.fill(t, 0);
+		}
+		Arrays.fill(emptyDistances, 0);
+		Arrays.fill(occupiedDistances, 0);
+		Arrays.fill(passengerDistances, 0);
+		Arrays.fill(waitTimeSums, 0);
+		Arrays.fill(waitTimeMaxs, 0);
+		Arrays.fill(waitTimeHistograms, null);
+	}
+
+	@Override
+	public void handleEvent(ActivityEndEvent event) {
+		lastEventTime = event.getTime();
+		if (event.getActType().equals(VrpAgentLogic.BEFORE_SCHEDULE_ACTIVITY_TYPE)) {
+			vehicles.put(Id.createVehicleId(event.getPersonId()), new VehicleState(event.getTime()));
+		} else if (event.getActType().equals(stayActivityType)) {
+			VehicleState state = updateVehicleTime(Id.createVehicleId(event.getPersonId()), event.getTime());
+			if (state != null) {
+				state.idle = false;
+			}
+		}
+	}
+
+	@Override
+	public void handleEvent(ActivityStartEvent event) {
+		lastEventTime = event.getTime();
+		if (event.getActType().equals(VrpAgentLogic.AFTER_SCHEDULE_ACTIVITY_TYPE)) {
+			Id<Vehicle> vehicleId = Id.createVehicleId(event.getPersonId());
+			updateVehicleTime(vehicleId, event.getTime());
+			vehicles.remove(vehicleId);
+		} else if (event.getActType().equals(stayActivityType)) {
+			VehicleState state = updateVehicleTime(Id.createVehicleId(event.getPersonId()), event.getTime());
+			if (state != null) {
+				state.idle = true;
+			}
+		}
+	}
+
+	@Override
+	public void handleEvent(PersonDepartureEvent event) {
+		lastEventTime = event.getTime();
+		if (event.getLegMode().equals(mode)) {
+			departureTimes.put(event.getPersonId(), event.getTime());
+		}
+	}
+
+	@Override
+	public void handleEvent(PersonEntersVehicleEvent event) {
+		lastEventTime = event.getTime();
+		if (isDriver(event.getPersonId(), event.getVehicleId())) {
+			return;
+		}
+
+		Double departureTime = departureTimes.remove(event.getPersonId());
+		if (departureTime != null) {
+			addWaitTime(departureTime, event.getTime() - departureTime);
+		}
+
+		VehicleState state = updateVehicleTime(event.getVehicleId(), event.getTime());
+		if (state != null) {
+			state.occupancy++;
+		}
+	}
+
+	@Override
+	public void handleEvent(PersonLeavesVehicleEvent event) {
+		lastEventTime = event.getTime();
+		if (isDriver(event.getPersonId(), event.getVehicleId())) {
+			return;
+		}
+
+		VehicleState state = updateVehicleTime(event.getVehicleId(), event.getTime());
+		if (state != null) {
+			state.occupancy--;
+		}
+	}
+
+	@Override
+	public void handleEvent(LinkEnterEvent event) {
+		lastEventTime = event.getTime();
+		VehicleState state = vehicles.get(event.getVehicleId());
+		if (state != null) {
+			int idx = timeDiscretizer.getIdx(event.getTime());
+			double length = network.getLinks().get(event.getLinkId()).getLength();
+			if (state.occupancy == 0) {
+				emptyDistances[idx] += length;
+			} else {
+				occupiedDistances[idx] += length;
+				passengerDistances[idx] += length * state.occupancy;
+			}
+		}
+	}
+
+	// vehicles are driven by agents with the same id
+	private static boolean isDriver(Id<Person> personId, Id<Vehicle> vehicleId) {
+		return personId.toString().equals(vehicleId.toString());
+	}
+
+	private void addWaitTime(double departureTime, double waitTime) {
+		int idx = timeDiscretizer.getIdx(departureTime);
+		if (waitTimeHistograms[idx] == null) {
+			waitTimeHistograms[idx] = new UniformHistogram(WAIT_TIME_RESOLUTION, WAIT_TIME_BIN_COUNT);
+		}
+		waitTimeHistograms[idx].addValue(waitTime);
+		waitTimeSums[idx] += waitTime;
+		waitTimeMaxs[idx] = Math.max(waitTimeMaxs[idx], waitTime);
+	}
+
+	/**
+	 * Adds the time since the last state change to the current category of the vehicle.
+	 * 
+	 * @return state of the vehicle, or null if not a fleet vehicle
+	 */
+	private VehicleState updateVehicleTime(Id<Vehicle> vehicleId, double time) {
+		VehicleState state = vehicles.get(vehicleId);
+		if (state == null) {
+			return null;
+		}
+
+		int category = state.idle ? IDLE : EMPTY + Math.min(state.occupancy, maxOccupancy);
+		double from = state.lastTime;
+		while (from < time) {
+			int idx = timeDiscretizer.getIdx(from);
+			double to = idx == binCount - 1 ? time
+					: Math.min(time, (idx + 1) * timeDiscretizer.getTimeInterval());
+			vehicleTimes[idx][category] += to - from;
+			from = to;
+		}
+
+		state.lastTime = time;
+		return state;
+	}
+
+	/**
+	 * Counts the time of vehicles still operating up to the last event.
+	 */
+	private void updateAllVehicleTimes() {
+		for (Id<Vehicle> vehicleId : vehicles.keySet()) {
+			updateVehicleTime(vehicleId, lastEventTime);
+		}
+	}
+
+	/**
+	 * Writes one line per time bin (till the last event); vehicle counts are averaged over each bin.
+	 */
+	public void write(String file) {
+		updateAllVehicleTimes();
+
+		CSVLineBuilder header = new CSVLineBuilder().addAll("time", "idle", "empty");
+		for (int i = 1; i <= maxOccupancy; i++) {
+			header.add(i + "_pax");
+		}
+		header.addAll("emptyDistance", "occupiedDistance", "passengerDistance", //
+				"rides", "wait_avg", "wait_p50", "wait_p95", "wait_max");
+
+		double binSize = timeDiscretizer.getTimeInterval();
+		try (CompactCSVWriter writer = new CompactCSVWriter(IOUtils.getBufferedWriter(file))) {
+			writer.writeNext(header);
+			for (int i = 0; i <= timeDiscretizer.getIdx(lastEventTime); i++) {
+				CSVLineBuilder line = new CSVLineBuilder().add((int)(i * binSize) + "");
+				for (double t : vehicleTimes[i]) {
+					line.addf("%.2f", t / binSize);
+				}
+				line.addf("%.0f", emptyDistances[i]).addf("%.0f", occupiedDistances[i])
+						.addf("%.0f", passengerDistances[i]);
+
+				UniformHistogram waitTimes = waitTimeHistograms[i];
+				long rides = waitTimes == null ? 0 : waitTimes.getTotalCount();
+				line.add(rides + "");
+				if (rides > 0) {
+					line.addf("%.1f", waitTimeSums[i] / rides)
+							.addf("%.0f", Math.min(waitTimes.getQuantileUpperBound(0.5), waitTimeMaxs[i]))
+							.addf("%.0f", Math.min(waitTimes.getQuantileUpperBound(0.95), waitTimeMaxs[i]))
+							.addf("%.0f", waitTimeMaxs[i]);
+				} else {
+					line.addEmpty().addEmpty().addEmpty().addEmpty();
+				}
+				writer.writeNext(line);
+			}
+		}
+	}
+
+	/**
+	 * Processes the events file in a single pass.
+	 */
+	public void readEventsFile(String eventsFile) {
+		EventsManager events = EventsUtils.createEventsManager();
+		events.addHandler(this);
+		new MatsimEventsReader(events).readFile(eventsFile);
+	}
+}
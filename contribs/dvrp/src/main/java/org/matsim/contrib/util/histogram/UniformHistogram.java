@@ -47,4 +47,26 @@ public class UniformHistogram extends AbstractHistogram<Double> {
 	public Double getBin(int idx) {
 		return idx * binSize;
 	}
+
+	/**
+	 * The error is at most binSize, since only the bin counts are stored.
+	 * 
+	 * @return upper bound of the bin containing the q-quantile (0 < q <= 1), infinity for the last (open-ended) bin, or
+	 *         NaN if there are no values
+	 */
+	public double getQuantileUpperBound(double q) {
+		if (totalCount == 0) {
+			return Double.NaN;
+		}
+
+		long rank = (long)Math.ceil(q * totalCount);
+		long count = 0;
+		for (int i = 0; i < counts.length - 1; i++) {
+			count += counts[i];
+			if (count >= rank) {
+				return (i + 1) * binSize;
+			}
+		}
+		return Double.POSITIVE_INFINITY;
+	}
 }
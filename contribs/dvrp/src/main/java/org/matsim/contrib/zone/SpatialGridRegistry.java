@@ -0,0 +1,275 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.zone;
+
+import java.util.*;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.util.distance.DistanceUtils;
+
+import com.google.common.collect.*;
+
+/**
+ * Registry of located items (e.g. idle vehicles, open requests, depots) indexed by a uniform square grid. Adding,
+ * removing and moving an item take constant time. Nearest items are found by visiting grid cells in rings around the
+ * query location, so only the neighbourhood is scanned.
+ * <p>
+ * Coordinates outside the grid bounds are assigned to the border cells. The registry is not thread-safe and must not
+ * be modified while iterating.
+ */
+public class SpatialGridRegistry<T> {
+	private static class Entry<T> {
+		private final T item;
+		private Coord coord;
+		private int cell;
+		private int idxInCell;
+
+		private Entry(T item) {
+			this.item = item;
+		}
+	}
+
+	private static class Candidate<T> implements Comparable<Candidate<T>> {
+		private final T item;
+		private final double distance;
+
+		private Candidate(T item, double distance) {
+			this.item = item;
+			this.distance = distance;
+		}
+
+		@Override
+		public int compareTo(Candidate<T> o) {
+			return Double.compare(distance, o.distance);
+		}
+	}
+
+	private final double minX;
+	private final double minY;
+	private final double cellSize;
+	private final int cols;
+	private final int rows;
+
+	private final List<List<Entry<T>>> cells;
+	private final Map<T, Entry<T>> entries = new LinkedHashMap<>();
+
+	/**
+	 * The grid covers all nodes of the network.
+	 */
+	public SpatialGridRegistry(Network network, double cellSize) {
+		this(calcBounds(network), cellSize);
+	}
+
+	private SpatialGridRegistry(double[] bounds, double cellSize) {
+		this(bounds[0], bounds[1], bounds[2], bounds[3], cellSize);
+	}
+
+	public SpatialGridRegistry(double minX, double minY, double maxX, double maxY, double cellSize) {
+		this.minX = minX;
+		this.minY = minY;
+		this.cellSize = cellSize;
+		cols = Math.max(1, (int)Math.ceil((maxX - minX) / cellSize));
+		rows = Math.max(1, (int)Math.ceil((maxY - minY) / cellSize));
+
+		cells = new ArrayList<>(rows * cols);
+		for (int i = 0; i < rows * cols; i++) {
+			cells.add(null);// created on demand
+		}
+	}
+
+	private static double[] calcBounds(Network network) {
+		double[] bounds = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+				Double.NEGATIVE_INFINITY };
+		for (Node n : network.getNodes().values()) {
+			bounds[0] = Math.min(bounds[0], n.getCoord().getX());
+			bounds[1] = Math.min(bounds[1], n.getCoord().getY());
+			bounds[2] = Math.max(bounds[2], n.getCoord().getX());
+			bounds[3] = Math.max(bounds[3], n.getCoord().getY());
+		}
+		return bounds;
+	}
+
+	public void add(T item, Coord coord) {
+		if (entries.containsKey(item)) {
+			throw new IllegalStateException(item + " is already in the registry");
+		}
+
+		Entry<T> entry = new Entry<>(item);
+		entries.put(item, entry);
+		addToCell(entry, coord);
+	}
+
+	public void remove(T item) {
+		Entry<T> entry = entries.remove(item);
+		if (entry == null) {
+			throw new IllegalStateException(item + " is not in the registry");
+		}
+
+		removeFromCell(entry);
+	}
+
+	public void move(T item, Coord coord) {
+		Entry<T> entry = entries.get(item);
+		if (entry == null) {
+			throw new IllegalStateException(item + " is not in the registry");
+		}
+
+		if (getCell(coord) == entry.cell) {
+			entry.coord = coord;
+		} else {
+			removeFromCell(entry);
+			addToCell(entry, coord);
+		}
+	}
+
+	private void addToCell(Entry<T> entry, Coord coord) {
+		entry.coord = coord;
+		entry.cell = getCell(coord);
+
+		List<Entry<T>> cell = cells.get(entry.cell);
+		if (cell == null) {
+			cell = new ArrayList<>();
+			cells.set(entry.cell, cell);
+		}
+
+		entry.idxInCell = cell.size();
+		cell.add(entry);
+	}
+
+	private void removeFromCell(Entry<T> entry) {
+		// move the last entry to the freed position
+		List<Entry<T>> cell = cells.get(entry.cell);
+		Entry<T> last = cell.remove(cell.size() - 1);
+		if (last != entry) {
+			last.idxInCell = entry.idxInCell;
+			cell.set(entry.idxInCell, last);
+		}
+	}
+
+	private int getCell(Coord coord) {
+		return getRow(coord) * cols + getCol(coord);
+	}
+
+	private int getCol(Coord coord) {
+		return Math.max(0, Math.min(cols - 1, (int)Math.floor((coord.getX() - minX) / cellSize)));
+	}
+
+	private int getRow(Coord coord) {
+		return Math.max(0, Math.min(rows - 1, (int)Math.floor((coord.getY() - minY) / cellSize)));
+	}
+
+	public boolean contains(T item) {
+		return entries.containsKey(item);
+	}
+
+	public Coord getCoord(T item) {
+		Entry<T> entry = entries.get(item);
+		return entry == null ? null : entry.coord;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return all items, in the order of adding
+	 */
+	public Collection<T> getItems() {
+		return Collections.unmodifiableSet(entries.keySet());
+	}
+
+	/**
+	 * @return (at most) {@code count} items nearest to {@code coord}, sorted by straight-line distance
+	 */
+	public List<T> findNearest(Coord coord, int count) {
+		return Lists.newArrayList(Iterables.limit(iterateByDistance(coord), count));
+	}
+
+	/**
+	 * Items are visited in the order of increasing straight-line distance from {@code coord} (i.e. of increasing
+	 * beeline travel time at any constant speed). The grid cells are scanned lazily, ring after ring, only as far as
+	 * needed to return the next item.
+	 */
+	public Iterable<T> iterateByDistance(final Coord coord) {
+		return new Iterable<T>() {
+			@Override
+			public Iterator<T> iterator() {
+				return new DistanceOrderIterator(coord);
+			}
+		};
+	}
+
+	private class DistanceOrderIterator extends AbstractIterator<T> {
+		private final Coord coord;
+		private final int col;
+		private final int row;
+		private final int maxRing;
+		private final PriorityQueue<Candidate<T>> candidates = new PriorityQueue<>();
+		private int ring = -1;
+
+		private DistanceOrderIterator(Coord coord) {
+			this.coord = coord;
+			col = getCol(coord);
+			row = getRow(coord);
+			maxRing = Math.max(Math.max(col, cols - 1 - col), Math.max(row, rows - 1 - row));
+		}
+
+		@Override
+		protected T computeNext() {
+			// items in the rings not yet visited are farther than (ring * cellSize)
+			while (ring < maxRing && (candidates.isEmpty() || candidates.peek().distance > ring * cellSize)) {
+				ring++;
+				visitRing();
+			}
+
+			return candidates.isEmpty() ? endOfData() : candidates.poll().item;
+		}
+
+		private void visitRing() {
+			if (ring == 0) {
+				visitCell(row, col);
+				return;
+			}
+
+			for (int c = col - ring; c <= col + ring; c++) {
+				visitCell(row - ring, c);
+				visitCell(row + ring, c);
+			}
+			for (int r = row - ring + 1; r <= row + ring - 1; r++) {
+				visitCell(r, col - ring);
+				visitCell(r, col + ring);
+			}
+		}
+
+		private void visitCell(int r, int c) {
+			if (r < 0 || r >= rows || c < 0 || c >= cols) {
+				return;
+			}
+
+			List<Entry<T>> cell = cells.get(r * cols + c);
+			if (cell != null) {
+				for (Entry<T> e : cell) {
+					candidates.add(new Candidate<>(e.item, DistanceUtils.calculateDistance(coord, e.coord)));
+				}
+			}
+		}
+	}
+}
@@ -42,6 +42,6 @@ public class ZonalSystemImpl implements ZonalSystem {
 
 	@Override
 	public Zone getZone(Node node) {
-		return nodeToZoneMap.get(node);
+		return nodeToZoneMap.get(node.getId());
 	}
 }
@@ -0,0 +1,75 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.zone.skims;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Square matrix of floats kept outside the java heap, either in a direct buffer or in a memory-mapped file. Only
+ * absolute get/put operations are used, so different cells can be written by different threads at the same time.
+ */
+public class FloatMatrix {
+	private final int size;
+	private final FloatBuffer buffer;
+
+	/**
+	 * @param size
+	 *            number of rows (and columns)
+	 * @param mappedFile
+	 *            file to be memory-mapped (it is deleted on exit), or null for a direct buffer
+	 */
+	public FloatMatrix(int size, File mappedFile) {
+		long bytes = (long)size * size * 4;
+		if (bytes > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Matrix too large: " + size + "x" + size);
+		}
+
+		this.size = size;
+		ByteBuffer byteBuffer = mappedFile == null ? ByteBuffer.allocateDirect((int)bytes) : map(mappedFile, bytes);
+		buffer = byteBuffer.order(ByteOrder.nativeOrder()).asFloatBuffer();
+	}
+
+	private static ByteBuffer map(File file, long bytes) {
+		file.deleteOnExit();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(bytes);
+			// the mapping remains valid after closing the channel
+			return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public float get(int row, int col) {
+		return buffer.get(row * size + col);
+	}
+
+	public void set(int row, int col, float value) {
+		buffer.put(row * size + col, value);
+	}
+}
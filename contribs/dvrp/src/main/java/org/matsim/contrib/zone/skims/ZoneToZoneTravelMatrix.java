@@ -0,0 +1,413 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.zone.skims;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.util.distance.DistanceUtils;
+import org.matsim.contrib.zone.*;
+import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.listener.IterationEndsListener;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.trafficmonitoring.TimeBinUtils;
+
+/**
+ * Zone-to-zone travel times and distances for a number of departure time bins. Each zone is represented by the network
+ * node closest to its centroid; the distances are the lengths of the fastest paths. The matrices are computed by
+ * time-dependent one-to-all searches run in parallel for different origin zones, and are kept in {@link FloatMatrix}es
+ * outside the java heap. Lookups take constant time, so the matrices can be used as travel time estimates (heuristics)
+ * in optimisation.
+ * <p>
+ * The matrices are updated in place after each iteration (if registered as a controler listener), so they follow
+ * the changes of {@code travelTime} (e.g. {@link org.matsim.contrib.dvrp.trafficmonitoring.VrpTravelTimeEstimator}).
+ * Only the rows (origin zone and departure time bin) that depend on the time bins in which the link travel times have
+ * changed are recomputed. A row depends on the time bins from its departure up to the latest arrival at any of the
+ * zones. Changes are detected by comparing fingerprints of the link travel times sampled
+ * {@value #SAMPLES_PER_TIME_BIN} times within each time bin, so {@code travelTime} should not change at a finer
+ * resolution than that.
+ */
+public class ZoneToZoneTravelMatrix implements IterationEndsListener {
+	private static final Logger log = Logger.getLogger(ZoneToZoneTravelMatrix.class);
+
+	private static final int SAMPLES_PER_TIME_BIN = 4;
+
+	private final ZonalSystem zonalSystem;
+	private final TravelTime travelTime;
+	private final int timeBinSize;
+	private final int timeBinCount;
+	private final int numberOfThreads;
+
+	private final Map<Id<Zone>, Integer> zoneIndices = new HashMap<>();
+	private final int[] zoneNodes;// representative node of each zone (-1 if the zone contains no nodes)
+
+	// network in the compressed sparse row format; outgoing links of node i are [outLinkStarts[i], outLinkStarts[i+1])
+	private final Map<Node, Integer> nodeIndices = new IdentityHashMap<>();
+	private final int[] outLinkStarts;
+	private final Link[] outLinks;
+	private final int[] outLinkToNodes;
+
+	private final FloatMatrix[] travelTimeMatrices;// one per time bin
+	private final FloatMatrix[] distanceMatrices;// one per time bin
+
+	private final long[] travelTimeHashes;// fingerprints of the link travel times in each time bin
+	private final int[] lastTimeBins;// [fromZone * timeBinCount + timeBin] the last time bin the row depends on
+
+	/**
+	 * @param mappingDirectory
+	 *            directory for the memory-mapped matrix files, or null for keeping the matrices in direct buffers
+	 */
+	public ZoneToZoneTravelMatrix(Network network, ZonalSystem zonalSystem, TravelTime travelTime, int timeBinSize,
+			int maxTime, int numberOfThreads, File mappingDirectory) {
+		this.zonalSystem = zonalSystem;
+		this.travelTime = travelTime;
+		this.timeBinSize = timeBinSize;
+		this.timeBinCount = TimeBinUtils.getTimeBinCount(maxTime, timeBinSize);
+		this.numberOfThreads = numberOfThreads;
+
+		Node[] nodes = network.getNodes().values().toArray(new Node[network.getNodes().size()]);
+		for (int i = 0; i < nodes.length; i++) {
+			nodeIndices.put(nodes[i], i);
+		}
+
+		outLinkStarts = new int[nodes.length + 1];
+		outLinks = new Link[network.getLinks().size()];
+		outLinkToNodes = new int[outLinks.length];
+		int linkIdx = 0;
+		for (int i = 0; i < nodes.length; i++) {
+			outLinkStarts[i] = linkIdx;
+			for (Link link : nodes[i].getOutLinks().values()) {
+				outLinks[linkIdx] = link;
+				outLinkToNodes[linkIdx] = nodeIndices.get(link.getToNode());
+				linkIdx++;
+			}
+		}
+		outLinkStarts[nodes.length] = linkIdx;
+
+		Zone[] zones = zonalSystem.getZones().values().toArray(new Zone[zonalSystem.getZones().size()]);
+		for (int z = 0; z < zones.length; z++) {
+			zoneIndices.put(zones[z].getId(), z);
+		}
+		zoneNodes = findZoneNodes(nodes, zones);
+
+		travelTimeMatrices = new FloatMatrix[timeBinCount];
+		distanceMatrices = new FloatMatrix[timeBinCount];
+		for (int b = 0; b < timeBinCount; b++) {
+			travelTimeMatrices[b] = new FloatMatrix(zones.length, mappedFile(mappingDirectory, "travel_time", b));
+			distanceMatrices[b] = new FloatMatrix(zones.length, mappedFile(mappingDirectory, "distance", b));
+		}
+
+		travelTimeHashes = calcTravelTimeHashes();
+		lastTimeBins = new int[zones.length * timeBinCount];
+		// all zeros: every row depends on a changed time bin, so all rows are computed
+		computeRows(new int[timeBinCount]);
+		log.info("Zone-to-zone matrices computed: " + zones.length + " zones, " + timeBinCount + " time bins");
+	}
+
+	private static File mappedFile(File mappingDirectory, String name, int timeBin) {
+		return mappingDirectory == null ? null : new File(mappingDirectory, name + "_" + timeBin + ".bin");
+	}
+
+	private int[] findZoneNodes(Node[] nodes, Zone[] zones) {
+		int[] zoneNodes = new int[zones.length];
+		double[] minDistances = new double[zones.length];
+		Arrays.fill(zoneNodes, -1);
+		Arrays.fill(minDistances, Double.POSITIVE_INFINITY);
+
+		for (int i = 0; i < nodes.length; i++) {
+			Zone zone = zonalSystem.getZone(nodes[i]);
+			if (zone == null) {
+				continue;
+			}
+
+			int z = zoneIndices.get(zone.getId());
+			double distance = DistanceUtils.calculateSquaredDistance(nodes[i].getCoord(), zone.getCoord());
+			if (distance < minDistances[z]) {
+				minDistances[z] = distance;
+				zoneNodes[z] = i;
+			}
+		}
+		return zoneNodes;
+	}
+
+	@Override
+	public void notifyIterationEnds(IterationEndsEvent event) {
+		update();
+	}
+
+	/**
+	 * Recomputes the rows affected by the changes of travelTime since the previous update.
+	 * 
+	 * @return number of recomputed rows
+	 */
+	public int update() {
+		long[] hashes = calcTravelTimeHashes();
+		int[] firstChangedBins = new int[timeBinCount];// the first changed time bin at or after each time bin
+		int firstChangedBin = Integer.MAX_VALUE;
+		for (int b = timeBinCount - 1; b >= 0; b--) {
+			if (hashes[b] != travelTimeHashes[b]) {
+				firstChangedBin = b;
+			}
+			firstChangedBins[b] = firstChangedBin;
+		}
+		System.arraycopy(hashes, 0, travelTimeHashes, 0, timeBinCount);
+
+		int rowCount = firstChangedBins[0] == Integer.MAX_VALUE ? 0 : computeRows(firstChangedBins);
+		log.info("Zone-to-zone matrices updated: " + rowCount + " of " + zoneNodes.length * timeBinCount
+				+ " rows recomputed");
+		return rowCount;
+	}
+
+	private long[] calcTravelTimeHashes() {
+		long[] hashes = new long[timeBinCount];
+		for (int b = 0; b < timeBinCount; b++) {
+			long hash = 0;
+			for (int s = 0; s < SAMPLES_PER_TIME_BIN; s++) {
+				double time = b * timeBinSize + (double)s * timeBinSize / SAMPLES_PER_TIME_BIN;
+				for (Link link : outLinks) {
+					hash = 31 * hash + Double.doubleToLongBits(travelTime.getLinkTravelTime(link, time, null, null));
+				}
+			}
+			hashes[b] = hash;
+		}
+		return hashes;
+	}
+
+	// computes the rows that depend on any of the changed time bins
+	private int computeRows(final int[] firstChangedBins) {
+		final AtomicInteger rowCount = new AtomicInteger();
+		ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads);
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int t = 0; t < numberOfThreads; t++) {
+			final int firstOrigin = t;
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					OneToAllSearch search = new OneToAllSearch(outLinkStarts.length - 1);
+					for (int z = firstOrigin; z < zoneNodes.length; z += numberOfThreads) {
+						for (int b = 0; b < timeBinCount; b++) {
+							if (firstChangedBins[b] <= lastTimeBins[z * timeBinCount + b]) {
+								computeRow(search, z, b);
+								rowCount.incrementAndGet();
+							}
+						}
+					}
+					return null;
+				}
+			});
+		}
+
+		try {
+			for (Future<Void> future : executorService.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		} finally {
+			executorService.shutdown();
+		}
+		return rowCount.get();
+	}
+
+	private void computeRow(OneToAllSearch search, int fromZone, int timeBin) {
+		FloatMatrix ttMatrix = travelTimeMatrices[timeBin];
+		FloatMatrix distMatrix = distanceMatrices[timeBin];
+
+		if (zoneNodes[fromZone] == -1) {
+			for (int z = 0; z < zoneNodes.length; z++) {
+				ttMatrix.set(fromZone, z, Float.NaN);
+				distMatrix.set(fromZone, z, Float.NaN);
+			}
+			lastTimeBins[fromZone * timeBinCount + timeBin] = timeBin;
+			return;
+		}
+
+		double departureTime = timeBin * timeBinSize;
+		search.run(zoneNodes[fromZone], departureTime);
+
+		// the paths to the zones traverse links only before the latest arrival; whether a node is reachable does not
+		// depend on travelTime
+		double maxArrivalTime = departureTime;
+
+		for (int z = 0; z < zoneNodes.length; z++) {
+			int toNode = zoneNodes[z];
+			if (toNode == -1) {
+				ttMatrix.set(fromZone, z, Float.NaN);
+				distMatrix.set(fromZone, z, Float.NaN);
+			} else if (!search.isReached(toNode)) {
+				ttMatrix.set(fromZone, z, Float.POSITIVE_INFINITY);
+				distMatrix.set(fromZone, z, Float.POSITIVE_INFINITY);
+			} else {
+				ttMatrix.set(fromZone, z, (float)(search.arrivalTimes[toNode] - departureTime));
+				distMatrix.set(fromZone, z, (float)search.distances[toNode]);
+				maxArrivalTime = Math.max(maxArrivalTime, search.arrivalTimes[toNode]);
+			}
+		}
+		lastTimeBins[fromZone * timeBinCount + timeBin] = getTimeBin(maxArrivalTime);
+	}
+
+	/**
+	 * @return travel time between the representative nodes of the zones, POSITIVE_INFINITY if unreachable, NaN if
+	 *         any of the zones contains no network nodes
+	 */
+	public double getTravelTime(Zone fromZone, Zone toZone, double departureTime) {
+		return travelTimeMatrices[getTimeBin(departureTime)].get(getZoneIdx(fromZone), getZoneIdx(toZone));
+	}
+
+	/**
+	 * @return length of the fastest path between the representative nodes of the zones, POSITIVE_INFINITY if
+	 *         unreachable, NaN if any of the zones contains no network nodes
+	 */
+	public double getDistance(Zone fromZone, Zone toZone, double departureTime) {
+		return distanceMatrices[getTimeBin(departureTime)].get(getZoneIdx(fromZone), getZoneIdx(toZone));
+	}
+
+	/**
+	 * Zone-to-zone approximation of the node-to-node travel time.
+	 * 
+	 * @return as {@link #getTravelTime(Zone, Zone, double)}, or NaN if any of the nodes lies outside the zones
+	 */
+	public double getTravelTime(Node fromNode, Node toNode, double departureTime) {
+		Zone fromZone = zonalSystem.getZone(fromNode);
+		Zone toZone = zonalSystem.getZone(toNode);
+		return fromZone == null || toZone == null ? Double.NaN : getTravelTime(fromZone, toZone, departureTime);
+	}
+
+	private int getTimeBin(double time) {
+		return TimeBinUtils.getTimeBinIndex(time, timeBinSize, timeBinCount);
+	}
+
+	private int getZoneIdx(Zone zone) {
+		return zoneIndices.get(zone.getId());
+	}
+
+	/**
+	 * Time-dependent Dijkstra over the CSR network; the arrays are reused between runs and invalidated by bumping the
+	 * run counter instead of being cleared.
+	 */
+	private class OneToAllSearch {
+		private final double[] arrivalTimes;
+		private final double[] distances;
+		private final int[] reachedInRun;
+		private final boolean[] settled;
+		private int run = 0;
+
+		// binary min-heap of (key, node) pairs; a node may be stored many times, stale entries are skipped on polling
+		private int[] heapNodes = new int[64];
+		private double[] heapKeys = new double[64];
+		private int heapSize;
+
+		private OneToAllSearch(int nodeCount) {
+			arrivalTimes = new double[nodeCount];
+			distances = new double[nodeCount];
+			reachedInRun = new int[nodeCount];
+			settled = new boolean[nodeCount];
+		}
+
+		private boolean isReached(int node) {
+			return reachedInRun[node] == run;
+		}
+
+		private void run(int fromNode, double departureTime) {
+			run++;
+			heapSize = 0;
+			reach(fromNode, departureTime, 0);
+
+			while (heapSize > 0) {
+				double time = heapKeys[0];
+				int node = poll();
+				if (settled[node] || time > arrivalTimes[node]) {
+					continue;// stale entry
+				}
+				settled[node] = true;
+
+				for (int l = outLinkStarts[node]; l < outLinkStarts[node + 1]; l++) {
+					int toNode = outLinkToNodes[l];
+					Link link = outLinks[l];
+					double arrivalTime = time + travelTime.getLinkTravelTime(link, time, null, null);
+					if (!isReached(toNode) || arrivalTime < arrivalTimes[toNode]) {
+						reach(toNode, arrivalTime, distances[node] + link.getLength());
+					}
+				}
+			}
+		}
+
+		private void reach(int node, double arrivalTime, double distance) {
+			if (!isReached(node)) {
+				reachedInRun[node] = run;
+				settled[node] = false;
+			}
+			arrivalTimes[node] = arrivalTime;
+			distances[node] = distance;
+			offer(node, arrivalTime);
+		}
+
+		private void offer(int node, double key) {
+			if (heapSize == heapNodes.length) {
+				heapNodes = Arrays.copyOf(heapNodes, 2 * heapSize);
+				heapKeys = Arrays.copyOf(heapKeys, 2 * heapSize);
+			}
+
+			int i = heapSize++;
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (heapKeys[parent] <= key) {
+					break;
+				}
+				heapNodes[i] = heapNodes[parent];
+				heapKeys[i] = heapKeys[parent];
+				i = parent;
+			}
+			heapNodes[i] = node;
+			heapKeys[i] = key;
+		}
+
+		private int poll() {
+			int top = heapNodes[0];
+			int lastNode = heapNodes[--heapSize];
+			double lastKey = heapKeys[heapSize];
+
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= heapSize) {
+					break;
+				}
+				if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+					child++;
+				}
+				if (lastKey <= heapKeys[child]) {
+					break;
+				}
+				heapNodes[i] = heapNodes[child];
+				heapKeys[i] = heapKeys[child];
+				i = child;
+			}
+			heapNodes[i] = lastNode;
+			heapKeys[i] = lastKey;
+			return top;
+		}
+	}
+}
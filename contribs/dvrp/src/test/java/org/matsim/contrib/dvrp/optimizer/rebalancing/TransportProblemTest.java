@@ -0,0 +1,144 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.optimizer.rebalancing;
+
+import java.util.Random;
+
+import org.junit.*;
+
+public class TransportProblemTest {
+	@Test
+	public void testBalanced() {
+		// the greedy choice (0->0) is not optimal: 1 + 10 vs. 2 + 2
+		assertOptimal(new int[] { 1, 1 }, new int[] { 1, 1 }, new double[][] { { 1, 2 }, { 2, 10 } }, 4);
+
+		// 20 x 1 (0->2) + 30 x 4 (1->1) + 10 x 5 (2->0) + 5 x 6 (2->1) + 10 x 8 (2->2)
+		assertOptimal(new int[] { 20, 30, 25 }, new int[] { 10, 35, 30 },
+				new double[][] { { 2, 3, 1 }, { 5, 4, 8 }, { 5, 6, 8 } }, 300);
+	}
+
+	@Test
+	public void testSupplyExceedsDemand() {
+		// each demand node gets 2 units, the 7th unit is not transported
+		assertOptimal(new int[] { 7 }, new int[] { 2, 2, 2 }, new double[][] { { 1, 2, 3 } }, 12);
+		// only the cheaper supply node is used
+		assertOptimal(new int[] { 3, 3 }, new int[] { 2 }, new double[][] { { 5 }, { 1 } }, 2);
+	}
+
+	@Test
+	public void testDemandExceedsSupply() {
+		// the single unit goes to the cheaper demand node
+		assertOptimal(new int[] { 1 }, new int[] { 4, 4 }, new double[][] { { 3, 2 } }, 2);
+		assertOptimal(new int[] { 2, 1 }, new int[] { 2, 2 }, new double[][] { { 1, 4 }, { 1, 9 } }, 6);
+	}
+
+	@Test
+	public void testZeroSupplyOrDemand() {
+		assertOptimal(new int[] { 0, 0 }, new int[] { 3 }, new double[][] { { 1 }, { 2 } }, 0);
+		assertOptimal(new int[] { 3 }, new int[] { 0, 2 }, new double[][] { { 0, 7 } }, 14);
+	}
+
+	@Test
+	public void testRandomInstancesAgainstBruteForce() {
+		Random random = new Random(11);
+		for (int k = 0; k < 30; k++) {
+			int[] supplies = randomCounts(random, 1 + random.nextInt(3));
+			int[] demands = randomCounts(random, 1 + random.nextInt(3));
+			double[][] costs = new double[supplies.length][demands.length];
+			for (int i = 0; i < supplies.length; i++) {
+				for (int j = 0; j < demands.length; j++) {
+					costs[i][j] = random.nextInt(10) + (random.nextBoolean() ? 0.5 : 0);
+				}
+			}
+			assertOptimal(supplies, demands, costs, bruteForce(supplies, demands, costs));
+		}
+	}
+
+	private static int[] randomCounts(Random random, int length) {
+		int[] counts = new int[length];
+		for (int i = 0; i < length; i++) {
+			counts[i] = random.nextInt(4);
+		}
+		return counts;
+	}
+
+	private static void assertOptimal(int[] supplies, int[] demands, double[][] costs, double expectedCost) {
+		int[][] flows = new TransportProblem(supplies, demands, costs).solve();
+
+		int total = 0;
+		double cost = 0;
+		for (int i = 0; i < supplies.length; i++) {
+			int rowSum = 0;
+			for (int j = 0; j < demands.length; j++) {
+				Assert.assertTrue(flows[i][j] >= 0);
+				rowSum += flows[i][j];
+				cost += flows[i][j] * costs[i][j];
+			}
+			Assert.assertTrue(rowSum <= supplies[i]);
+			total += rowSum;
+		}
+		for (int j = 0; j < demands.length; j++) {
+			int colSum = 0;
+			for (int i = 0; i < supplies.length; i++) {
+				colSum += flows[i][j];
+			}
+			Assert.assertTrue(colSum <= demands[j]);
+		}
+
+		// the smaller of the total supply and demand is transported
+		Assert.assertEquals(Math.min(sum(supplies), sum(demands)), total);
+		Assert.assertEquals(expectedCost, cost, 1e-9);
+	}
+
+	private static int sum(int[] values) {
+		int sum = 0;
+		for (int v : values) {
+			sum += v;
+		}
+		return sum;
+	}
+
+	// minimum cost of transporting min(total supply, total demand) units, found by enumerating all flows
+	private static double bruteForce(int[] supplies, int[] demands, double[][] costs) {
+		int total = Math.min(sum(supplies), sum(demands));
+		return bruteForce(supplies.clone(), demands.clone(), costs, 0, total);
+	}
+
+	private static double bruteForce(int[] supplies, int[] demands, double[][] costs, int cell, int remaining) {
+		if (remaining == 0) {
+			return 0;
+		}
+		if (cell == supplies.length * demands.length) {
+			return Double.POSITIVE_INFINITY;
+		}
+
+		int i = cell / demands.length;
+		int j = cell % demands.length;
+		double best = Double.POSITIVE_INFINITY;
+		for (int f = Math.min(Math.min(supplies[i], demands[j]), remaining); f >= 0; f--) {
+			supplies[i] -= f;
+			demands[j] -= f;
+			best = Math.min(best, f * costs[i][j] + bruteForce(supplies, demands, costs, cell + 1, remaining - f));
+			supplies[i] += f;
+			demands[j] += f;
+		}
+		return best;
+	}
+}
@@ -0,0 +1,111 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.optimizer.rebalancing;
+
+import java.util.*;
+
+import org.junit.*;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.contrib.dvrp.optimizer.rebalancing.ZonalRebalancer.*;
+
+public class ZonalRebalancerTest {
+	private static final int INTERVAL = 900;
+
+	// zones 0, 1 and 2 lie on a line, 1 km apart
+	private final List<Coord> zoneCoords = Arrays.asList(new Coord(0, 0), new Coord(1000, 0), new Coord(2000, 0));
+
+	private ZonalRebalancer rebalancer;
+
+	@After
+	public void shutdown() {
+		rebalancer.shutdown();
+	}
+
+	@Test
+	public void testRebalancingToDeficitZone() {
+		rebalancer = new ZonalRebalancer(zoneCoords, INTERVAL);
+		Assert.assertTrue(rebalancer.isRebalancingTime(INTERVAL));
+		Assert.assertFalse(rebalancer.isRebalancingTime(INTERVAL + 1));
+
+		submitRequests(2, -1, 3);// 3 departures from zone 2
+		submitRequests(-1, 0, 1);// 1 arrival in zone 0 (outside origin)
+
+		// balances: zone 0: 2 + 1 = 3, zone 1: 2, zone 2: -3
+		Assert.assertFalse(rebalancer.hasPendingRelocations());
+		rebalancer.startRebalancing(INTERVAL, new int[] { 2, 2, 0 });
+		Assert.assertTrue(rebalancer.hasPendingRelocations());
+
+		// the nearer zone 1 sends both idle vehicles, zone 0 the third one
+		Map<String, Integer> relocations = toMap(rebalancer.getRelocations());
+		Assert.assertFalse(rebalancer.hasPendingRelocations());
+		Assert.assertEquals(2, relocations.size());
+		Assert.assertEquals(2, (int)relocations.get("1->2"));
+		Assert.assertEquals(1, (int)relocations.get("0->2"));
+	}
+
+	@Test
+	public void testNoRelocationsAfterDemandLeavesWindow() {
+		rebalancer = new ZonalRebalancer(zoneCoords, INTERVAL);
+		submitRequests(2, -1, 3);
+
+		rebalancer.startRebalancing(3 * INTERVAL, new int[] { 2, 2, 0 });
+		Assert.assertTrue(rebalancer.getRelocations().isEmpty());
+	}
+
+	@Test
+	public void testCostCalculator() {
+		final double[][] costs = { { 0, 1, 1 }, { 1, 0, Double.POSITIVE_INFINITY }, { 1, 1, 0 } };
+		rebalancer = new ZonalRebalancer(3, INTERVAL, new RelocationCostCalculator() {
+			@Override
+			public double calcCost(int fromZone, int toZone, double time) {
+				Assert.assertEquals(INTERVAL, time, 0);
+				return costs[fromZone][toZone];
+			}
+		});
+		submitRequests(2, -1, 3);
+
+		// zone 1 cannot reach zone 2, so only the 2 idle vehicles from zone 0 are relocated
+		rebalancer.startRebalancing(INTERVAL, new int[] { 2, 2, 0 });
+		Map<String, Integer> relocations = toMap(rebalancer.getRelocations());
+		Assert.assertEquals(1, relocations.size());
+		Assert.assertEquals(2, (int)relocations.get("0->2"));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testRelocationsMustBeCollected() {
+		rebalancer = new ZonalRebalancer(zoneCoords, INTERVAL);
+		rebalancer.startRebalancing(INTERVAL, new int[] { 1, 0, 0 });
+		rebalancer.startRebalancing(2 * INTERVAL, new int[] { 1, 0, 0 });
+	}
+
+	private void submitRequests(int fromZone, int toZone, int count) {
+		for (int i = 0; i < count; i++) {
+			rebalancer.requestSubmitted(fromZone, toZone, 100 + i * 100);
+		}
+	}
+
+	private static Map<String, Integer> toMap(List<Relocation> relocations) {
+		Map<String, Integer> map = new HashMap<>();
+		for (Relocation r : relocations) {
+			Assert.assertNull(map.put(r.fromZone + "->" + r.toZone, r.vehicleCount));
+		}
+		return map;
+	}
+}
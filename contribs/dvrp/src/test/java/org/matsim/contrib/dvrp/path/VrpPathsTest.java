@@ -0,0 +1,90 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.path;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.core.network.NetworkUtils;
+
+public class VrpPathsTest {
+	@Test
+	public void testPathPrefixSharesArrays() {
+		Network network = NetworkUtils.createNetwork();
+		Node[] nodes = new Node[5];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = NetworkUtils.createAndAddNode(network, Id.createNodeId(i), new Coord(100 * i, 0));
+		}
+		Link[] links = new Link[4];
+		for (int i = 0; i < links.length; i++) {
+			links[i] = NetworkUtils.createAndAddLink(network, Id.createLinkId(i), nodes[i], nodes[i + 1], 100, 10,
+					1000, 1);
+		}
+		double[] linkTTs = { 1, 10, 20, 30 };
+		VrpPathWithTravelDataImpl path = new VrpPathWithTravelDataImpl(100, 61, links, linkTTs);
+
+		VrpPathWithTravelData prefix = VrpPaths.createPathPrefix(path, 3);
+		assertEquals(3, prefix.getLinkCount());
+		assertSame(links[0], prefix.getFromLink());
+		assertSame(links[2], prefix.getToLink());
+		assertEquals(100, prefix.getDepartureTime(), 0);
+		assertEquals(31, prefix.getTravelTime(), 0);
+		assertEquals(Arrays.asList(links[0], links[1], links[2]), toList(prefix));
+
+		// travel time updates are visible in both paths
+		prefix.setLinkTravelTime(1, 12);
+		assertEquals(12, path.getLinkTravelTime(1), 0);
+
+		try {
+			prefix.getLink(3);
+			fail();
+		} catch (ArrayIndexOutOfBoundsException e) {
+		}
+	}
+
+	@Test
+	public void testPathOverArrayRange() {
+		Network network = NetworkUtils.createNetwork();
+		Node a = NetworkUtils.createAndAddNode(network, Id.createNodeId("a"), new Coord(0, 0));
+		Node b = NetworkUtils.createAndAddNode(network, Id.createNodeId("b"), new Coord(100, 0));
+		Link ab = NetworkUtils.createAndAddLink(network, Id.createLinkId("ab"), a, b, 100, 10, 1000, 1);
+		Link ba = NetworkUtils.createAndAddLink(network, Id.createLinkId("ba"), b, a, 100, 10, 1000, 1);
+
+		Link[] links = { ab, ba, ab };
+		VrpPathWithTravelData path = new VrpPathWithTravelDataImpl(0, 11, links, new double[] { 1, 2, 3 }, 1, 2);
+		assertEquals(2, path.getLinkCount());
+		assertSame(ba, path.getFromLink());
+		assertSame(ab, path.getToLink());
+		assertEquals(2, path.getLinkTravelTime(0), 0);
+		assertEquals(Arrays.asList(ba, ab), toList(path));
+	}
+
+	private static List<Link> toList(VrpPath path) {
+		List<Link> list = new ArrayList<>();
+		for (Link link : path) {
+			list.add(link);
+		}
+		return list;
+	}
+}
@@ -0,0 +1,150 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.router;
+
+import java.util.*;
+
+import org.junit.*;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.dvrp.util.TimeDiscretizer;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.Dijkstra;
+import org.matsim.core.router.util.*;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.vehicles.Vehicle;
+
+public class DijkstraWithDijkstraTreeCacheTest {
+	private static final TimeDiscretizer TIME_DISCRETIZER = TimeDiscretizer.OPEN_ENDED_15_MIN;
+
+	private Network network;
+	private List<Node> nodes;
+	private Node isolatedNode;
+	private TravelTime travelTime;
+	private TravelDisutility travelDisutility;
+
+	@Before
+	public void init() {
+		Random random = new Random(123);
+		network = NetworkUtils.createNetwork();
+		int size = 6;
+		Node[][] grid = new Node[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				grid[x][y] = NetworkUtils.createAndAddNode(network, Id.createNodeId(x + "_" + y),
+						new Coord(x * 300, y * 300));
+			}
+		}
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (x + 1 < size) {
+					addLinks(grid[x][y], grid[x + 1][y], random);
+				}
+				if (y + 1 < size) {
+					addLinks(grid[x][y], grid[x][y + 1], random);
+				}
+			}
+		}
+		nodes = new ArrayList<>(network.getNodes().values());
+		isolatedNode = NetworkUtils.createAndAddNode(network, Id.createNodeId("isolated"), new Coord(-1000, -1000));
+
+		// time-dependent, so that paths differ between time bins
+		travelTime = new TravelTime() {
+			@Override
+			public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
+				double factor = 1 + (((link.getId().hashCode() & Integer.MAX_VALUE) + (int)(time / 900)) % 4) * 0.5;
+				return factor * link.getLength() / link.getFreespeed();
+			}
+		};
+		travelDisutility = new TimeAsTravelDisutility(travelTime);
+	}
+
+	private void addLinks(Node a, Node b, Random random) {
+		double length = 300 * (1 + random.nextDouble());
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(a.getId() + "-" + b.getId()), a, b, length, 15, 1000,
+				1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(b.getId() + "-" + a.getId()), b, a, length, 15, 1000,
+				1);
+	}
+
+	@Test
+	public void testPathsEqualDijkstraPaths() {
+		DijkstraWithDijkstraTreeCache cachedRouter = new DijkstraWithDijkstraTreeCache(network, travelDisutility,
+				travelTime, TIME_DISCRETIZER);
+
+		double[] startTimes = { 0, 7 * 3600 + 100, 7 * 3600 + 899, 8 * 3600 + 450 };
+		for (int round = 0; round < 2; round++) {// round 0: cache misses, round 1: cache hits
+			assertPathsEqual(cachedRouter, startTimes);
+		}
+
+		int treeCount = nodes.size() * 3;// 7:00:00-7:14:59 is one time bin
+		Assert.assertEquals(treeCount, cachedRouter.getCacheStats().getMisses());
+		Assert.assertEquals(treeCount, cachedRouter.getCacheSize());
+		Assert.assertTrue(cachedRouter.getCacheStats().getHits() > 0);
+	}
+
+	@Test
+	public void testPathsEqualDijkstraPathsAfterEviction() {
+		// room for only a few trees; most requests recompute an evicted tree
+		long treeSize = new CompactDijkstraTree(new CompactDijkstraTree.NetworkIndex(network),
+				calcDijkstraTree(nodes.get(0), 0), nodes.get(0), 0).getSizeInBytes();
+		DijkstraWithDijkstraTreeCache cachedRouter = new DijkstraWithDijkstraTreeCache(network, travelDisutility,
+				travelTime, TIME_DISCRETIZER, 3 * treeSize, 1);
+
+		double[] startTimes = { 3600, 5 * 3600 };
+		for (int round = 0; round < 2; round++) {
+			assertPathsEqual(cachedRouter, startTimes);
+		}
+
+		Assert.assertTrue(cachedRouter.getCacheSize() <= 3);
+		Assert.assertTrue(cachedRouter.getCacheStats().getEvictions() > 0);
+		Assert.assertTrue(cachedRouter.getCacheStats().getMisses() > nodes.size() * startTimes.length);
+	}
+
+	private DijkstraTree calcDijkstraTree(Node fromNode, double startTime) {
+		DijkstraTree tree = new DijkstraTree(network, travelDisutility, travelTime);
+		tree.calcLeastCostPathTree(fromNode, startTime);
+		return tree;
+	}
+
+	private void assertPathsEqual(DijkstraWithDijkstraTreeCache cachedRouter, double[] startTimes) {
+		Dijkstra dijkstra = new Dijkstra(network, travelDisutility, travelTime);
+		for (double startTime : startTimes) {
+			// the cached tree is computed for the beginning of the time bin
+			double binStartTime = TIME_DISCRETIZER.discretize(startTime);
+			for (Node fromNode : nodes) {
+				for (Node toNode : nodes) {
+					if (fromNode == toNode) {
+						continue;
+					}
+
+					Path expected = dijkstra.calcLeastCostPath(fromNode, toNode, binStartTime, null, null);
+					Path actual = cachedRouter.calcLeastCostPath(fromNode, toNode, startTime, null, null);
+					Assert.assertEquals(expected.links, actual.links);
+					Assert.assertEquals(expected.travelTime, actual.travelTime, 1e-6);
+					Assert.assertEquals(expected.travelCost, actual.travelCost, 1e-6);
+				}
+
+				Assert.assertNull(cachedRouter.calcLeastCostPath(fromNode, isolatedNode, startTime, null, null));
+			}
+		}
+	}
+}
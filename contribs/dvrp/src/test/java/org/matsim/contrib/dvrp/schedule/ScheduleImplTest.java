@@ -0,0 +1,313 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.schedule;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.dvrp.data.*;
+import org.matsim.contrib.dvrp.schedule.Schedule.ScheduleStatus;
+import org.matsim.contrib.dvrp.schedule.Task.TaskStatus;
+import org.matsim.core.network.NetworkUtils;
+
+public class ScheduleImplTest {
+	private Link link;
+	private Link otherLink;
+	private Schedule schedule;
+
+	@Before
+	public void init() {
+		Network network = NetworkUtils.createNetwork();
+		Node a = NetworkUtils.createAndAddNode(network, Id.createNodeId("a"), new Coord(0, 0));
+		Node b = NetworkUtils.createAndAddNode(network, Id.createNodeId("b"), new Coord(100, 0));
+		link = NetworkUtils.createAndAddLink(network, Id.createLinkId("ab"), a, b, 100, 10, 1000, 1);
+		otherLink = NetworkUtils.createAndAddLink(network, Id.createLinkId("ba"), b, a, 100, 10, 1000, 1);
+
+		Vehicle vehicle = new VehicleImpl(Id.create("v", Vehicle.class), link, 1, 0, 100);
+		schedule = vehicle.getSchedule();
+	}
+
+	@Test
+	public void testTaskIndicesAfterAddingAndRemoving() {
+		assertEquals(ScheduleStatus.UNPLANNED, schedule.getStatus());
+
+		Task t0 = addStay(0, 10);
+		Task t2 = addStay(10, 30);
+		assertEquals(ScheduleStatus.PLANNED, schedule.getStatus());
+
+		Task t1 = new StayTaskImpl(10, 20, link);
+		schedule.addTask(1, t1);// in the middle
+		assertTasks(t0, t1, t2);
+
+		Task t3 = addStay(30, 40);
+		assertTasks(t0, t1, t2, t3);
+
+		schedule.removeTask(t1);
+		assertTasks(t0, t2, t3);
+
+		schedule.removeLastTask();
+		assertTasks(t0, t2);
+
+		schedule.removeTask(t0);
+		assertTasks(t2);
+
+		schedule.removeTask(t2);
+		assertTasks();
+		assertEquals(ScheduleStatus.UNPLANNED, schedule.getStatus());
+	}
+
+	@Test
+	public void testTimeline() {
+		addStay(0, 10);
+		addStay(10, 10);// zero-length tasks are allowed
+		addStay(10, 25);
+
+		assertEquals(0, schedule.getBeginTime(), 0);
+		assertEquals(25, schedule.getEndTime(), 0);
+		List<? extends Task> tasks = schedule.getTasks();
+		for (int i = 1; i < tasks.size(); i++) {
+			assertEquals(tasks.get(i - 1).getEndTime(), tasks.get(i).getBeginTime(), 0);
+		}
+
+		// gap between the tasks
+		assertAddingFails(new StayTaskImpl(26, 30, link));
+		// overlapping tasks
+		assertAddingFails(new StayTaskImpl(20, 30, link));
+		// the previous task ends at a different link
+		assertAddingFails(new StayTaskImpl(25, 30, otherLink));
+		// beginTime > endTime
+		try {
+			new StayTaskImpl(30, 25, link);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+
+		assertEquals(3, schedule.getTaskCount());
+	}
+
+	@Test
+	public void testFirstTaskStartsAtVehicleStartLink() {
+		assertAddingFails(new StayTaskImpl(0, 10, otherLink));
+		assertEquals(ScheduleStatus.UNPLANNED, schedule.getStatus());
+	}
+
+	@Test
+	public void testExecution() {
+		Task t0 = addStay(0, 10);
+		Task t1 = addStay(10, 20);
+		Task t2 = addStay(20, 30);
+
+		assertSame(t0, schedule.nextTask());
+		assertEquals(ScheduleStatus.STARTED, schedule.getStatus());
+		assertEquals(TaskStatus.STARTED, t0.getStatus());
+		assertEquals(TaskStatus.PLANNED, t1.getStatus());
+
+		assertSame(t1, schedule.nextTask());
+		assertEquals(TaskStatus.PERFORMED, t0.getStatus());
+		assertSame(t1, schedule.getCurrentTask());
+
+		// the performed and the current tasks can be neither removed nor preceded by new tasks
+		try {
+			schedule.removeTask(t1);
+			fail();
+		} catch (IllegalStateException e) {
+		}
+		try {
+			schedule.addTask(1, new StayTaskImpl(10, 20, link));
+			fail();
+		} catch (IllegalStateException e) {
+		}
+
+		// but the following ones can be changed
+		Task t2a = new StayTaskImpl(20, 25, link);
+		schedule.addTask(2, t2a);
+		assertTasks(t0, t1, t2a, t2);
+		schedule.removeTask(t2a);
+		assertTasks(t0, t1, t2);
+
+		assertSame(t2, schedule.nextTask());
+		assertNull(schedule.nextTask());
+		assertEquals(ScheduleStatus.COMPLETED, schedule.getStatus());
+		assertEquals(TaskStatus.PERFORMED, t2.getStatus());
+
+		try {
+			schedule.getCurrentTask();
+			fail();
+		} catch (IllegalStateException e) {
+		}
+	}
+
+	@Test
+	public void testTimesOfRemovedTask() {
+		addStay(0, 10);
+		Task t1 = addStay(10, 20);
+		t1.setEndTime(15);
+		assertEquals(15, schedule.getEndTime(), 0);
+
+		schedule.removeTask(t1);
+		assertEquals(10, t1.getBeginTime(), 0);
+		assertEquals(15, t1.getEndTime(), 0);
+		assertEquals(10, schedule.getEndTime(), 0);
+
+		// the removed task does not write into the schedule any more
+		t1.setEndTime(30);
+		assertEquals(30, t1.getEndTime(), 0);
+		assertEquals(10, schedule.getEndTime(), 0);
+	}
+
+	/**
+	 * Runs random insertions, removals, timeline shifts and task switches (with the schedule growing over its initial
+	 * capacity), and compares the schedule with the same operations applied to an ArrayList. The timeline is not always
+	 * shifted, so that the stored times of the shifted tasks are checked, too.
+	 */
+	@Test
+	public void testEquivalenceWithList() {
+		Random random = new Random(1234);
+		List<Task> expectedTasks = new ArrayList<>();
+		List<double[]> expectedTimes = new ArrayList<>();// {beginTime, endTime}
+		int currentIdx = -1;
+
+		Task first = addStay(0, 10);
+		expectedTasks.add(first);
+		expectedTimes.add(new double[] { 0, 10 });
+
+		for (int step = 0; step < 2000; step++) {
+			int firstModifiableIdx = currentIdx + 1;
+			int op = random.nextInt(10);
+
+			if (op < 4 || expectedTasks.size() < 3) { // insert a stop and shift the following tasks
+				int idx = firstModifiableIdx + random.nextInt(expectedTasks.size() - firstModifiableIdx + 1);
+				if (idx == 0) {
+					continue;// the vehicle start time is fixed
+				}
+				double beginTime = expectedTimes.get(idx - 1)[1];
+				double duration = 1 + random.nextInt(10);
+				if (random.nextBoolean()) {// otherwise the following tasks overlap with the new one
+					shiftTimes(expectedTasks, expectedTimes, idx, duration);
+				}
+
+				Task task = new StayTaskImpl(beginTime, beginTime + duration, link);
+				schedule.addTask(idx, task);
+				expectedTasks.add(idx, task);
+				expectedTimes.add(idx, new double[] { beginTime, beginTime + duration });
+			} else if (op < 7) { // remove a task and shift the following tasks back
+				if (firstModifiableIdx == 0 || firstModifiableIdx >= expectedTasks.size()) {
+					continue;
+				}
+				int idx = firstModifiableIdx + random.nextInt(expectedTasks.size() - firstModifiableIdx);
+				Task task = expectedTasks.get(idx);
+				double[] times = expectedTimes.get(idx);
+
+				schedule.removeTask(task);
+				expectedTasks.remove(idx);
+				expectedTimes.remove(idx);
+				if (random.nextBoolean()) {// otherwise there is a gap in the timeline
+					shiftTimes(expectedTasks, expectedTimes, idx, times[0] - times[1]);
+				}
+
+				assertEquals(times[0], task.getBeginTime(), 0);
+				assertEquals(times[1], task.getEndTime(), 0);
+			} else if (op < 9) { // prolong the last task
+				int idx = expectedTasks.size() - 1;
+				double endTime = expectedTimes.get(idx)[1] + random.nextInt(5);
+				expectedTasks.get(idx).setEndTime(endTime);
+				expectedTimes.get(idx)[1] = endTime;
+			} else if (currentIdx < expectedTasks.size() - 5) {
+				Task task = schedule.nextTask();
+				currentIdx++;
+				assertSame(expectedTasks.get(currentIdx), task);
+			}
+
+			assertSchedule(expectedTasks, expectedTimes, currentIdx);
+		}
+	}
+
+	private void shiftTimes(List<Task> expectedTasks, List<double[]> expectedTimes, int fromIdx, double shift) {
+		for (int i = fromIdx; i < expectedTasks.size(); i++) {
+			double[] times = expectedTimes.get(i);
+			times[0] += shift;
+			times[1] += shift;
+			Task task = expectedTasks.get(i);
+			task.setBeginTime(times[0]);
+			task.setEndTime(times[1]);
+		}
+	}
+
+	private void assertSchedule(List<Task> expectedTasks, List<double[]> expectedTimes, int currentIdx) {
+		assertTasks(expectedTasks.toArray(new Task[expectedTasks.size()]));
+		for (int i = 0; i < expectedTasks.size(); i++) {
+			Task task = schedule.getTasks().get(i);
+			assertEquals(expectedTimes.get(i)[0], task.getBeginTime(), 0);
+			assertEquals(expectedTimes.get(i)[1], task.getEndTime(), 0);
+			TaskStatus expectedStatus = i < currentIdx ? TaskStatus.PERFORMED
+					: i == currentIdx ? TaskStatus.STARTED : TaskStatus.PLANNED;
+			assertEquals(expectedStatus, task.getStatus());
+		}
+		assertEquals(expectedTimes.get(0)[0], schedule.getBeginTime(), 0);
+		assertEquals(expectedTimes.get(expectedTimes.size() - 1)[1], schedule.getEndTime(), 0);
+	}
+
+	@Test(expected = ConcurrentModificationException.class)
+	public void testTaskListIteratorFailsAfterModification() {
+		addStay(0, 10);
+		addStay(10, 20);
+		for (Task task : schedule.getTasks()) {
+			schedule.addTask(new StayTaskImpl(20, 30, link));
+		}
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testTaskListIsReadOnly() {
+		addStay(0, 10);
+		@SuppressWarnings("unchecked")
+		List<Task> tasks = (List<Task>)schedule.getTasks();
+		tasks.remove(0);
+	}
+
+	private Task addStay(double beginTime, double endTime) {
+		Task task = new StayTaskImpl(beginTime, endTime, link);
+		schedule.addTask(task);
+		return task;
+	}
+
+	private void assertAddingFails(Task task) {
+		int taskCount = schedule.getTaskCount();
+		try {
+			schedule.addTask(task);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		assertEquals(taskCount, schedule.getTaskCount());
+	}
+
+	private void assertTasks(Task... expectedTasks) {
+		List<? extends Task> tasks = schedule.getTasks();
+		assertEquals(expectedTasks.length, schedule.getTaskCount());
+		assertEquals(expectedTasks.length, tasks.size());
+		for (int i = 0; i < expectedTasks.length; i++) {
+			assertSame(expectedTasks[i], tasks.get(i));
+			assertEquals(i, tasks.get(i).getTaskIdx());
+		}
+	}
+}
@@ -0,0 +1,178 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.util;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.events.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.dvrp.vrpagent.VrpAgentLogic;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+/**
+ * Feeds a hand-made event sequence (one vehicle serving 5 passengers, one vehicle idle till the end, and events of
+ * other agents) to {@link StreamingFleetStats} with 100-second time bins and max. occupancy 2, and checks the written
+ * statistics.
+ */
+public class StreamingFleetStatsTest {
+	private static final String MODE = "dvrp_mode";
+	private static final String STAY = "Stay";
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	private final Id<Link> l1 = Id.createLinkId("l1");
+	private final Id<Link> l2 = Id.createLinkId("l2");
+
+	private StreamingFleetStats stats;
+
+	@Before
+	public void init() {
+		Network network = NetworkUtils.createNetwork();
+		Node a = NetworkUtils.createAndAddNode(network, Id.createNodeId("a"), new Coord(0, 0));
+		Node b = NetworkUtils.createAndAddNode(network, Id.createNodeId("b"), new Coord(100, 0));
+		Node c = NetworkUtils.createAndAddNode(network, Id.createNodeId("c"), new Coord(300, 0));
+		NetworkUtils.createAndAddLink(network, l1, a, b, 100, 10, 1000, 1);
+		NetworkUtils.createAndAddLink(network, l2, b, c, 200, 10, 1000, 1);
+
+		stats = new StreamingFleetStats(network, MODE, STAY, 2, 100);
+	}
+
+	@Test
+	public void testTimeBinStats() throws IOException {
+		// v1 and v2 start idle, v2 stays idle till the last event
+		activityEnd(0, "v1", VrpAgentLogic.BEFORE_SCHEDULE_ACTIVITY_TYPE);
+		activityStart(0, "v1", STAY);
+		activityEnd(0, "v2", VrpAgentLogic.BEFORE_SCHEDULE_ACTIVITY_TYPE);
+		activityStart(0, "v2", STAY);
+
+		// v1 picks up p1 (waiting 110 s)
+		departure(20, "p1", MODE);
+		activityEnd(50, "v1", STAY);
+		linkEnter(50, "v1", l1);
+		enter(130, "p1", "v1");
+
+		// not a fleet vehicle, not a fleet passenger
+		departure(135, "car_driver", "car");
+		enter(135, "car_driver", "car_driver");
+		linkEnter(135, "car_driver", l2);
+
+		// p2 (waiting 10 s)
+		departure(140, "p2", MODE);
+		enter(150, "p2", "v1");
+		linkEnter(160, "v1", l2);
+
+		// p3, p4 and p5 (waiting 70, 60 and 10 s); the occupancy of 5 is counted as 2
+		departure(200, "p3", MODE);
+		departure(210, "p4", MODE);
+		departure(260, "p5", MODE);
+		enter(270, "p3", "v1");
+		enter(270, "p4", "v1");
+		enter(270, "p5", "v1");
+
+		for (String p : new String[] { "p1", "p2", "p3", "p4", "p5" }) {
+			stats.handleEvent(new PersonLeavesVehicleEvent(290, Id.createPersonId(p), Id.createVehicleId("v1")));
+		}
+		activityStart(290, "v1", STAY);
+		activityEnd(350, "v1", STAY);
+		activityStart(350, "v1", VrpAgentLogic.AFTER_SCHEDULE_ACTIVITY_TYPE);
+
+		List<String[]> lines = writeAndRead();
+		assertArrayEquals(new String[] { "time", "idle", "empty", "1_pax", "2_pax", "emptyDistance",
+				"occupiedDistance", "passengerDistance", "rides", "wait_avg", "wait_p50", "wait_p95", "wait_max" },
+				lines.get(0));
+		assertEquals(5, lines.size());// bins 0-3 (till the last event at 350)
+
+		// idle: v1 0-50, v2 0-100; empty: v1 50-100; wait: 110 s
+		assertArrayEquals(new String[] { "0", "1.50", "0.50", "0.00", "0.00", "100", "0", "0", "1", "110.0", "110",
+				"110", "110" }, lines.get(1));
+
+		// idle: v2; empty: 100-130; 1 pax: 130-150, 2 pax: 150-200; 2 passengers over l2; wait: 10 s
+		assertArrayEquals(new String[] { "100", "1.00", "0.30", "0.20", "0.50", "0", "200", "400", "1", "10.0", "10",
+				"10", "10" }, lines.get(2));
+
+		// idle: v2, v1 290-300; 2+ pax: 200-290; waits: 70, 60, 10 s (p50 is the upper bound of the 60-70 s bin)
+		assertArrayEquals(new String[] { "200", "1.10", "0.00", "0.00", "0.90", "0", "0", "0", "3", "46.7", "70",
+				"70", "70" }, lines.get(3));
+
+		// idle: v1 300-350, v2 300-350 (still operating at the last event)
+		assertArrayEquals(new String[] { "300", "1.00", "0.00", "0.00", "0.00", "0", "0", "0", "0", "", "", "", "" },
+				lines.get(4));
+	}
+
+	@Test
+	public void testReset() throws IOException {
+		activityEnd(0, "v1", VrpAgentLogic.BEFORE_SCHEDULE_ACTIVITY_TYPE);
+		departure(10, "p1", MODE);
+		enter(20, "p1", "v1");
+		activityStart(50, "v1", VrpAgentLogic.AFTER_SCHEDULE_ACTIVITY_TYPE);
+
+		stats.reset(1);
+		activityEnd(0, "v2", VrpAgentLogic.BEFORE_SCHEDULE_ACTIVITY_TYPE);
+		activityStart(50, "v2", VrpAgentLogic.AFTER_SCHEDULE_ACTIVITY_TYPE);
+
+		List<String[]> lines = writeAndRead();
+		assertEquals(2, lines.size());
+		assertArrayEquals(new String[] { "0", "0.00", "0.50", "0.00", "0.00", "0", "0", "0", "0", "", "", "", "" },
+				lines.get(1));
+	}
+
+	private List<String[]> writeAndRead() throws IOException {
+		String file = utils.getOutputDirectory() + "stats.txt";
+		stats.write(file);
+
+		List<String[]> lines = new ArrayList<>();
+		try (BufferedReader reader = IOUtils.getBufferedReader(file)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line.split("\t", -1));
+			}
+		}
+		return lines;
+	}
+
+	private void activityStart(double time, String personId, String actType) {
+		stats.handleEvent(new ActivityStartEvent(time, Id.createPersonId(personId), l1, null, actType));
+	}
+
+	private void activityEnd(double time, String personId, String actType) {
+		stats.handleEvent(new ActivityEndEvent(time, Id.createPersonId(personId), l1, null, actType));
+	}
+
+	private void departure(double time, String personId, String mode) {
+		stats.handleEvent(new PersonDepartureEvent(time, Id.createPersonId(personId), l1, mode));
+	}
+
+	private void enter(double time, String personId, String vehicleId) {
+		stats.handleEvent(new PersonEntersVehicleEvent(time, Id.createPersonId(personId),
+				Id.createVehicleId(vehicleId)));
+	}
+
+	private void linkEnter(double time, String vehicleId, Id<Link> linkId) {
+		stats.handleEvent(new LinkEnterEvent(time, Id.createVehicleId(vehicleId), linkId));
+	}
+}
@@ -0,0 +1,69 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.util.histogram;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class UniformHistogramTest {
+	@Test
+	public void testEmptyHistogram() {
+		UniformHistogram histogram = new UniformHistogram(10, 5);
+		assertTrue(Double.isNaN(histogram.getQuantileUpperBound(0.5)));
+		assertTrue(Double.isNaN(histogram.getQuantileUpperBound(1)));
+	}
+
+	@Test
+	public void testBinEdges() {
+		// bins: [0,10) [10,20) [20,30) [30,40) [40,inf)
+		UniformHistogram histogram = UniformHistogram.create(10, 5, new double[] { 0, 9.99, 10, 20, 29.99 });
+		assertCounts(histogram, 2, 1, 2, 0, 0);
+
+		assertEquals(10, histogram.getQuantileUpperBound(0.2), 0);// 1st value
+		assertEquals(10, histogram.getQuantileUpperBound(0.4), 0);// 2nd value
+		assertEquals(20, histogram.getQuantileUpperBound(0.41), 0);// 3rd value
+		assertEquals(20, histogram.getQuantileUpperBound(0.6), 0);
+		assertEquals(30, histogram.getQuantileUpperBound(0.8), 0);
+		assertEquals(30, histogram.getQuantileUpperBound(1), 0);
+	}
+
+	@Test
+	public void testOverflowValues() {
+		// values beyond the range go to the last (open-ended) bin
+		UniformHistogram histogram = UniformHistogram.create(10, 3, new double[] { 5, 15, 25, 1000, 1e9 });
+		assertCounts(histogram, 1, 1, 3);
+
+		assertEquals(10, histogram.getQuantileUpperBound(0.2), 0);
+		assertEquals(20, histogram.getQuantileUpperBound(0.4), 0);
+		assertEquals(Double.POSITIVE_INFINITY, histogram.getQuantileUpperBound(0.6), 0);
+		assertEquals(Double.POSITIVE_INFINITY, histogram.getQuantileUpperBound(1), 0);
+	}
+
+	private static void assertCounts(UniformHistogram histogram, long... expectedCounts) {
+		assertEquals(expectedCounts.length, histogram.getBinCount());
+		long totalCount = 0;
+		for (int i = 0; i < expectedCounts.length; i++) {
+			assertEquals(expectedCounts[i], histogram.getCount(i));
+			totalCount += expectedCounts[i];
+		}
+		assertEquals(totalCount, histogram.getTotalCount());
+	}
+}
@@ -0,0 +1,229 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.zone.skims;
+
+import java.util.*;
+
+import org.junit.*;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.dvrp.router.TimeAsTravelDisutility;
+import org.matsim.contrib.zone.*;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.Dijkstra;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+public class ZoneToZoneTravelMatrixTest {
+	private static final int GRID_SIZE = 9;
+	private static final int BLOCK_SIZE = 3;// 3x3 nodes per zone
+	private static final double SPACING = 300;
+	private static final int TIME_BIN_SIZE = 3600;
+	private static final int MAX_TIME = 6 * 3600;
+	private static final int TIME_BIN_COUNT = MAX_TIME / TIME_BIN_SIZE + 1;
+
+	private Network network;
+	private Node[][] grid;
+	private Node isolatedNode;
+	private Node nodeOutsideZones;
+	private final Map<Id<Zone>, Zone> zones = new LinkedHashMap<>();
+	private final Map<Node, Zone> nodeToZone = new HashMap<>();
+	private ZonalSystem zonalSystem;
+	private Zone isolatedZone;
+	private Zone emptyZone;
+
+	// per link and hour; modified by the tests
+	private final Map<Id<Link>, double[]> speedFactors = new HashMap<>();
+	private TravelTime travelTime;
+
+	@Before
+	public void init() {
+		Random random = new Random(2017);
+		network = NetworkUtils.createNetwork();
+		grid = new Node[GRID_SIZE][GRID_SIZE];
+		for (int x = 0; x < GRID_SIZE; x++) {
+			for (int y = 0; y < GRID_SIZE; y++) {
+				grid[x][y] = NetworkUtils.createAndAddNode(network, Id.createNodeId(x + "_" + y),
+						new Coord(x * SPACING, y * SPACING));
+			}
+		}
+		for (int x = 0; x < GRID_SIZE; x++) {
+			for (int y = 0; y < GRID_SIZE; y++) {
+				if (x + 1 < GRID_SIZE) {
+					addLinks(grid[x][y], grid[x + 1][y], random);
+				}
+				if (y + 1 < GRID_SIZE) {
+					addLinks(grid[x][y], grid[x][y + 1], random);
+				}
+			}
+		}
+		isolatedNode = NetworkUtils.createAndAddNode(network, Id.createNodeId("isolated"), new Coord(-5000, 0));
+		nodeOutsideZones = NetworkUtils.createAndAddNode(network, Id.createNodeId("outside"), new Coord(0, -300));
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("outside"), nodeOutsideZones, grid[0][0], 300, 10,
+				1000, 1);
+
+		// the centre node of each block is the zone centroid (and so its representative node)
+		for (int zx = 0; zx < GRID_SIZE / BLOCK_SIZE; zx++) {
+			for (int zy = 0; zy < GRID_SIZE / BLOCK_SIZE; zy++) {
+				Node centre = grid[zx * BLOCK_SIZE + 1][zy * BLOCK_SIZE + 1];
+				Zone zone = addZone(zx + "_" + zy, centre.getCoord());
+				for (int x = zx * BLOCK_SIZE; x < (zx + 1) * BLOCK_SIZE; x++) {
+					for (int y = zy * BLOCK_SIZE; y < (zy + 1) * BLOCK_SIZE; y++) {
+						nodeToZone.put(grid[x][y], zone);
+					}
+				}
+			}
+		}
+		isolatedZone = addZone("isolated", isolatedNode.getCoord());
+		nodeToZone.put(isolatedNode, isolatedZone);
+		emptyZone = addZone("empty", new Coord(10000, 10000));
+
+		zonalSystem = new ZonalSystem() {
+			@Override
+			public Map<Id<Zone>, Zone> getZones() {
+				return zones;
+			}
+
+			@Override
+			public Zone getZone(Node node) {
+				return nodeToZone.get(node);
+			}
+		};
+
+		travelTime = new TravelTime() {
+			@Override
+			public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
+				double[] factors = speedFactors.get(link.getId());
+				double factor = factors == null ? 1 : factors[Math.min((int)(time / 3600), factors.length - 1)];
+				return factor * link.getLength() / link.getFreespeed();
+			}
+		};
+	}
+
+	private void addLinks(Node a, Node b, Random random) {
+		for (Link link : new Link[] {
+				NetworkUtils.createAndAddLink(network, Id.createLinkId(a.getId() + "-" + b.getId()), a, b, SPACING,
+						10, 1000, 1),
+				NetworkUtils.createAndAddLink(network, Id.createLinkId(b.getId() + "-" + a.getId()), b, a, SPACING,
+						10, 1000, 1) }) {
+			double[] factors = new double[TIME_BIN_COUNT];
+			for (int h = 0; h < factors.length; h++) {
+				factors[h] = 1 + random.nextDouble() * 2;
+			}
+			speedFactors.put(link.getId(), factors);
+		}
+	}
+
+	private Zone addZone(String id, Coord coord) {
+		Zone zone = new Zone(Id.create(id, Zone.class), "test", coord);
+		zones.put(zone.getId(), zone);
+		return zone;
+	}
+
+	@Test
+	public void testTravelTimesEqualDijkstra() {
+		ZoneToZoneTravelMatrix matrix = createMatrix(2);
+		Dijkstra dijkstra = new Dijkstra(network, new TimeAsTravelDisutility(travelTime), travelTime);
+
+		for (int b = 0; b < TIME_BIN_COUNT; b++) {
+			double departureTime = b * TIME_BIN_SIZE;
+			for (Zone fromZone : zones.values()) {
+				for (Zone toZone : zones.values()) {
+					double tt = matrix.getTravelTime(fromZone, toZone, departureTime + 1800);// same time bin
+					double distance = matrix.getDistance(fromZone, toZone, departureTime);
+
+					if (fromZone == emptyZone || toZone == emptyZone) {
+						Assert.assertTrue(Double.isNaN(tt));
+						Assert.assertTrue(Double.isNaN(distance));
+					} else if ((fromZone == isolatedZone) != (toZone == isolatedZone)) {
+						Assert.assertEquals(Double.POSITIVE_INFINITY, tt, 0);
+						Assert.assertEquals(Double.POSITIVE_INFINITY, distance, 0);
+					} else {
+						Path path = dijkstra.calcLeastCostPath(getZoneNode(fromZone), getZoneNode(toZone),
+								departureTime, null, null);
+						double pathLength = 0;
+						for (Link link : path.links) {
+							pathLength += link.getLength();
+						}
+						Assert.assertEquals(path.travelTime, tt, 1e-2);
+						Assert.assertEquals(pathLength, distance, 1e-2);
+					}
+				}
+			}
+		}
+
+		// approximated by the zone-to-zone values
+		Node fromNode = grid[0][0];
+		Node toNode = grid[GRID_SIZE - 1][GRID_SIZE - 1];
+		Assert.assertEquals(matrix.getTravelTime(nodeToZone.get(fromNode), nodeToZone.get(toNode), 7200),
+				matrix.getTravelTime(fromNode, toNode, 7200), 0);
+		Assert.assertTrue(Double.isNaN(matrix.getTravelTime(nodeOutsideZones, toNode, 7200)));
+		Assert.assertTrue(Double.isNaN(matrix.getTravelTime(fromNode, nodeOutsideZones, 7200)));
+	}
+
+	@Test
+	public void testUpdateRecomputesOnlyAffectedRows() {
+		ZoneToZoneTravelMatrix matrix = createMatrix(3);
+		Assert.assertEquals(0, matrix.update());// nothing has changed
+
+		// slow down all links in the last but one hour; only the trips overlapping this hour are affected
+		int changedBin = TIME_BIN_COUNT - 2;
+		for (double[] factors : speedFactors.values()) {
+			factors[changedBin] *= 1.5;
+		}
+		int rowCount = matrix.update();
+		Assert.assertTrue("recomputed: " + rowCount, rowCount > 0);
+		Assert.assertTrue("recomputed: " + rowCount, rowCount < zones.size() * TIME_BIN_COUNT / 2);
+		assertMatricesEqual(createMatrix(1), matrix);
+
+		// travel times changed in the first hour affect (at least) the trips departing in this hour
+		for (double[] factors : speedFactors.values()) {
+			factors[0] *= 0.8;
+		}
+		Assert.assertTrue(matrix.update() >= zones.size() - 1);// except for the empty zone
+		assertMatricesEqual(createMatrix(1), matrix);
+		Assert.assertEquals(0, matrix.update());
+	}
+
+	private ZoneToZoneTravelMatrix createMatrix(int numberOfThreads) {
+		return new ZoneToZoneTravelMatrix(network, zonalSystem, travelTime, TIME_BIN_SIZE, MAX_TIME, numberOfThreads,
+				null);
+	}
+
+	private Node getZoneNode(Zone zone) {
+		return zone == isolatedZone ? isolatedNode : NetworkUtils.getNearestNode(network, zone.getCoord());
+	}
+
+	private void assertMatricesEqual(ZoneToZoneTravelMatrix expected, ZoneToZoneTravelMatrix actual) {
+		for (int b = 0; b < TIME_BIN_COUNT; b++) {
+			double time = b * TIME_BIN_SIZE;
+			for (Zone fromZone : zones.values()) {
+				for (Zone toZone : zones.values()) {
+					Assert.assertEquals(expected.getTravelTime(fromZone, toZone, time),
+							actual.getTravelTime(fromZone, toZone, time), 0);
+					Assert.assertEquals(expected.getDistance(fromZone, toZone, time),
+							actual.getDistance(fromZone, toZone, time), 0);
+				}
+			}
+		}
+	}
+}
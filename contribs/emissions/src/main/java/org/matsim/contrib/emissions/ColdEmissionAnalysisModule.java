@@ -31,6 +31,7 @@ import org.matsim.contrib.emissions.events.ColdEmissionEvent;
 import org.matsim.contrib.emissions.types.*;
 import org.matsim.contrib.emissions.utils.EmissionSpecificationMarker;
 import org.matsim.contrib.emissions.utils.EmissionsConfigGroup;
+import org.matsim.contrib.emissions.utils.LinkEmissionAggregator;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.utils.collections.Tuple;
@@ -38,6 +39,10 @@ import org.matsim.vehicles.Vehicle;
 
 
 /**
+ * The HBEFA tables are compiled into {@link HbefaColdEmissionFactorTable}s by the
+ * {@link ColdEmissionAnalysisModuleParameter} (once, shared by all modules created with it), and the vehicle
+ * information is parsed once per vehicle description.
+ * <p>
  * 2 categories for distance driven AFTER coldstart:
  * <ul>
  * <li> 0 - 1 km </li>
@@ -67,10 +72,13 @@ import org.matsim.vehicles.Vehicle;
 public class ColdEmissionAnalysisModule {
 	private static final Logger logger = Logger.getLogger(ColdEmissionAnalysisModule.class);
 	
-	private final Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> avgHbefaColdTable;
-	private final Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> detailedHbefaColdTable;
+	private final HbefaColdEmissionFactorTable avgHbefaColdTable;
+	private final HbefaColdEmissionFactorTable detailedHbefaColdTable;
+
+	private final Map<String, VehicleInformation> vehicleInformationCache = new HashMap<>();
 	
 	private final EventsManager eventsManager;
+	private final LinkEmissionAggregator emissionAggregator;
 	private final Double emissionEfficiencyFactor;
 	private final EmissionsConfigGroup ecg;
 	
@@ -79,28 +87,64 @@ public class ColdEmissionAnalysisModule {
 	private static final int maxWarnCnt = 3;
 	private int vehInfoWarnMotorCylceCnt = 0;
 
+	/**
+	 * Vehicle category and attributes parsed from a vehicle description, with the vehicle's indices in both tables.
+	 */
+	private static class VehicleInformation {
+		private final HbefaVehicleCategory hbefaVehicleCategory;
+		private final HbefaVehicleAttributes hbefaVehicleAttributes;
+		private int avgTableIdx = -1;
+		private int detailedTableIdx = -1;
+
+		private VehicleInformation(Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple) {
+			this.hbefaVehicleCategory = vehicleInformationTuple.getFirst();
+			this.hbefaVehicleAttributes = vehicleInformationTuple.getSecond();
+		}
+	}
+
 	public static class ColdEmissionAnalysisModuleParameter {
 		public final Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> avgHbefaColdTable;
 		public final Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> detailedHbefaColdTable;
 		private final EmissionsConfigGroup ecg;
 
+		// compiled once; read-only, so shared by all modules created with this parameter object (e.g. in several threads)
+		private final HbefaColdEmissionFactorTable compiledAvgHbefaColdTable;
+		private final HbefaColdEmissionFactorTable compiledDetailedHbefaColdTable;
+
 		public ColdEmissionAnalysisModuleParameter(
 				Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> avgHbefaColdTable,
 				Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> detailedHbefaColdTable, EmissionsConfigGroup emissionsConfigGroup) {
 			this.avgHbefaColdTable = avgHbefaColdTable;
 			this.detailedHbefaColdTable = detailedHbefaColdTable;
 			this.ecg = emissionsConfigGroup;
+			this.compiledAvgHbefaColdTable = avgHbefaColdTable == null ? null
+					: new HbefaColdEmissionFactorTable(avgHbefaColdTable);
+			this.compiledDetailedHbefaColdTable = detailedHbefaColdTable == null ? null
+					: new HbefaColdEmissionFactorTable(detailedHbefaColdTable);
 		}
 	}
 
 	public ColdEmissionAnalysisModule(
 			ColdEmissionAnalysisModuleParameter parameterObject,
 			EventsManager emissionEventsManager, Double emissionEfficiencyFactor) {
+		this(parameterObject, emissionEventsManager, null, emissionEfficiencyFactor);
+	}
+
+	/**
+	 * @param emissionEventsManager
+	 *            receives cold emission events; may be null if emissions are only aggregated
+	 * @param emissionAggregator
+	 *            sums up the emissions per link and time bin; may be null
+	 */
+	public ColdEmissionAnalysisModule(
+			ColdEmissionAnalysisModuleParameter parameterObject,
+			EventsManager emissionEventsManager, LinkEmissionAggregator emissionAggregator, Double emissionEfficiencyFactor) {
 
-		this.avgHbefaColdTable = parameterObject.avgHbefaColdTable;
-		this.detailedHbefaColdTable = parameterObject.detailedHbefaColdTable;
+		this.avgHbefaColdTable = parameterObject.compiledAvgHbefaColdTable;
+		this.detailedHbefaColdTable = parameterObject.compiledDetailedHbefaColdTable;
 		this.ecg = parameterObject.ecg;
 		this.eventsManager = emissionEventsManager;
+		this.emissionAggregator = emissionAggregator;
 		this.emissionEfficiencyFactor = emissionEfficiencyFactor;
 	}
 
@@ -132,48 +176,69 @@ public class ColdEmissionAnalysisModule {
 
 		String vehicleDescription = vehicle.getType().getDescription();
 
-		Map<ColdPollutant, Double> coldEmissions = new HashMap<>();
 		if(vehicle.getType().getDescription() == null){
 			throw new RuntimeException("Vehicle type description for vehicle " + vehicle + "is missing. " +
 					"Please make sure that requirements for emission vehicles in "
 					+ EmissionsConfigGroup.GROUP_NAME + " config group are met. Aborting...");
 		}
-		Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple = convertVehicleDescription2VehicleInformationTuple(vehicleDescription);
-		if (vehicleInformationTuple.getFirst() == null){
+		VehicleInformation vehicleInformation = vehicleInformationCache.get(vehicleDescription);
+		if (vehicleInformation == null) {
+			vehicleInformation = new VehicleInformation(convertVehicleDescription2VehicleInformationTuple(vehicleDescription));
+			indexVehicleInformation(vehicleInformation);
+			vehicleInformationCache.put(vehicleDescription, vehicleInformation);
+		}
+		if (vehicleInformation.hbefaVehicleCategory == null){
 			throw new RuntimeException("Vehicle category for vehicle " + vehicle + " is not valid. " +
 					"Please make sure that requirements for emission vehicles in " + 
 					EmissionsConfigGroup.GROUP_NAME + " config group are met. Aborting...");
 		}
 
-		coldEmissions = getColdPollutantDoubleMap(vehicle.getId(), parkingDuration, vehicleInformationTuple, distance_km);
+		double[] coldEmissions = getColdPollutantValues(vehicle.getId(), parkingDuration, vehicleInformation, distance_km);
 
 		// a basic apporach to introduce emission reduced cars:
 		if(emissionEfficiencyFactor != null){
-			coldEmissions = rescaleColdEmissions(coldEmissions);
+			rescaleColdEmissions(coldEmissions);
+		}
+		if (this.eventsManager != null) {
+			Event coldEmissionEvent = ColdEmissionEvent.createWithValues(eventTime, coldEmissionEventLinkId, vehicle.getId(), coldEmissions);
+			this.eventsManager.processEvent(coldEmissionEvent);
+		}
+		if (this.emissionAggregator != null) {
+			this.emissionAggregator.addColdEmissions(coldEmissionEventLinkId, eventTime, coldEmissions);
 		}
-		Event coldEmissionEvent = new ColdEmissionEvent(eventTime, coldEmissionEventLinkId, vehicle.getId(), coldEmissions);
-		this.eventsManager.processEvent(coldEmissionEvent);
 	}
 
-	private Map<ColdPollutant, Double> rescaleColdEmissions(Map<ColdPollutant, Double> coldEmissions) {
-		Map<ColdPollutant, Double> rescaledColdEmissions = new HashMap<>();
-		
-		for(ColdPollutant wp : coldEmissions.keySet()){
-			Double orgValue = coldEmissions.get(wp);
-			Double rescaledValue = emissionEfficiencyFactor * orgValue;
-			rescaledColdEmissions.put(wp, rescaledValue);
+	private void rescaleColdEmissions(double[] coldEmissions) {
+		for (int i = 0; i < coldEmissions.length; i++) {
+			coldEmissions[i] *= emissionEfficiencyFactor;
 		}
-		return rescaledColdEmissions;
 	}
 
-    private Map<ColdPollutant, Double> getColdPollutantDoubleMap(Id<Vehicle> vehicleId, double parkingDuration, Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple, int distance_km) {
-        final Map<ColdPollutant, Double> coldEmissionsOfEvent = new HashMap<>();
+	private void indexVehicleInformation(VehicleInformation vehicleInformation) {
+		// HGV are looked up as passenger cars, there are no cold emission factors for ZEV and motorcycles
+		if (vehicleInformation.hbefaVehicleCategory != HbefaVehicleCategory.PASSENGER_CAR
+				&& vehicleInformation.hbefaVehicleCategory != HbefaVehicleCategory.HEAVY_GOODS_VEHICLE) {
+			return;
+		}
 
-        HbefaColdEmissionFactorKey key = new HbefaColdEmissionFactorKey();
+		if (this.detailedHbefaColdTable != null) { // check if detailed emission factors file is set in config
+			vehicleInformation.detailedTableIdx = this.detailedHbefaColdTable
+					.getVehicleIndex(HbefaVehicleCategory.PASSENGER_CAR, vehicleInformation.hbefaVehicleAttributes);
+			if (this.avgHbefaColdTable != null) {
+				// the fleet average values are looked up with the same key
+				vehicleInformation.avgTableIdx = this.avgHbefaColdTable
+						.getVehicleIndex(HbefaVehicleCategory.PASSENGER_CAR, vehicleInformation.hbefaVehicleAttributes);
+			}
+		} else if (this.avgHbefaColdTable != null) {
+			vehicleInformation.avgTableIdx = this.avgHbefaColdTable.getVehicleIndex(HbefaVehicleCategory.PASSENGER_CAR,
+					new HbefaVehicleAttributes());
+		}
+	}
 
-        if(vehicleInformationTuple.getFirst().equals(HbefaVehicleCategory.HEAVY_GOODS_VEHICLE)){
-            key.setHbefaVehicleCategory(HbefaVehicleCategory.HEAVY_GOODS_VEHICLE);
-            key.setHbefaVehicleCategory(HbefaVehicleCategory.PASSENGER_CAR);
+    private double[] getColdPollutantValues(Id<Vehicle> vehicleId, double parkingDuration, VehicleInformation vehicleInformation, int distance_km) {
+        final double[] coldEmissionsOfEvent = new double[ColdPollutant.values().length];
+
+        if(vehicleInformation.hbefaVehicleCategory.equals(HbefaVehicleCategory.HEAVY_GOODS_VEHICLE)){
             if(vehInfoWarnHDVCnt < maxWarnCnt) {
                 vehInfoWarnHDVCnt++;
                 logger.warn("HBEFA 3.1 does not provide cold start emission factors for " +
@@ -181,12 +246,9 @@ public class ColdEmissionAnalysisModule {
                         ". Setting vehicle category to " + HbefaVehicleCategory.PASSENGER_CAR + "...");
                 if(vehInfoWarnHDVCnt == maxWarnCnt) logger.warn(Gbl.FUTURE_SUPPRESSED);
             }
-        } else if(vehicleInformationTuple.getFirst().equals(HbefaVehicleCategory.ZERO_EMISSION_VEHICLE)) {
-			for (ColdPollutant cp : ColdPollutant.values()){
-				coldEmissionsOfEvent.put( cp, 0.0 );
-			}
+        } else if(vehicleInformation.hbefaVehicleCategory.equals(HbefaVehicleCategory.ZERO_EMISSION_VEHICLE)) {
 			return coldEmissionsOfEvent;
-		} else if (vehicleInformationTuple.getFirst().equals(HbefaVehicleCategory.MOTORCYCLE)) {
+		} else if (vehicleInformation.hbefaVehicleCategory.equals(HbefaVehicleCategory.MOTORCYCLE)) {
 			if(vehInfoWarnMotorCylceCnt == 0) {
 				vehInfoWarnMotorCylceCnt++;
 				logger.warn("HBEFA 3.1 does not provide cold start emission factors for " +
@@ -194,62 +256,59 @@ public class ColdEmissionAnalysisModule {
 						". Setting cold emissions to zero.");
 				logger.warn(Gbl.ONLYONCE + "\t" + Gbl.FUTURE_SUPPRESSED);
 			}
-			for (ColdPollutant cp : ColdPollutant.values()){
-				coldEmissionsOfEvent.put( cp, 0.0 );
-			}
 			return coldEmissionsOfEvent;
-		} else {
-            key.setHbefaVehicleCategory(HbefaVehicleCategory.PASSENGER_CAR);
-        }
+		}
 
         int parkingDuration_h = Math.max(1, (int) (parkingDuration / 3600));
         if (parkingDuration_h >= 12) parkingDuration_h = 13;
 
-        key.setHbefaParkingTime(parkingDuration_h);
-
         for (ColdPollutant coldPollutant : ColdPollutant.values()) {
             double generatedEmissions;
             if (distance_km == 1) {
-               generatedEmissions = getTableEmissions(vehicleId, vehicleInformationTuple, 1, key, coldPollutant);
+               generatedEmissions = getTableEmissions(vehicleId, vehicleInformation, parkingDuration_h, 1, coldPollutant);
             } else {
-               generatedEmissions = getTableEmissions(vehicleId, vehicleInformationTuple, 2, key, coldPollutant) - getTableEmissions(vehicleId, vehicleInformationTuple, 1, key, coldPollutant);
+               generatedEmissions = getTableEmissions(vehicleId, vehicleInformation, parkingDuration_h, 2, coldPollutant) - getTableEmissions(vehicleId, vehicleInformation, parkingDuration_h, 1, coldPollutant);
             }
-            coldEmissionsOfEvent.put(coldPollutant, generatedEmissions);
+            coldEmissionsOfEvent[coldPollutant.ordinal()] = generatedEmissions;
         }
         return coldEmissionsOfEvent;
     }
 
-    private double getTableEmissions(Id<Vehicle> vehicleId, Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple, int distance_km, HbefaColdEmissionFactorKey key, ColdPollutant coldPollutant) {
-        key.setHbefaDistance(distance_km);
+    private double getTableEmissions(Id<Vehicle> vehicleId, VehicleInformation vehicleInformation, int parkingDuration_h, int distance_km, ColdPollutant coldPollutant) {
         double generatedEmissions;
 
-        key.setHbefaComponent(coldPollutant);
-
         if(this.detailedHbefaColdTable != null){ // check if detailed emission factors file is set in config
-            HbefaVehicleAttributes hbefaVehicleAttributes = new HbefaVehicleAttributes();
-            hbefaVehicleAttributes.setHbefaTechnology(vehicleInformationTuple.getSecond().getHbefaTechnology());
-            hbefaVehicleAttributes.setHbefaSizeClass(vehicleInformationTuple.getSecond().getHbefaSizeClass());
-            hbefaVehicleAttributes.setHbefaEmConcept(vehicleInformationTuple.getSecond().getHbefaEmConcept());
-            key.setHbefaVehicleAttributes(hbefaVehicleAttributes);
-
-            if(this.detailedHbefaColdTable.containsKey(key)){
-                generatedEmissions = this.detailedHbefaColdTable.get(key).getColdEmissionFactor();
+            int detailedOffset = this.detailedHbefaColdTable.getOffset(vehicleInformation.detailedTableIdx, parkingDuration_h, distance_km);
+
+            if(this.detailedHbefaColdTable.contains(detailedOffset, coldPollutant)){
+                generatedEmissions = this.detailedHbefaColdTable.getColdEmissionFactor(detailedOffset, coldPollutant);
             } else {
-                generatedEmissions = this.avgHbefaColdTable.get(key).getColdEmissionFactor();
+                generatedEmissions = getAvgTableEmissions(vehicleInformation, parkingDuration_h, distance_km, coldPollutant);
 
                 if(vehAttributesNotSpecifiedCnt < maxWarnCnt) {
                     vehAttributesNotSpecifiedCnt++;
                     logger.warn("Detailed vehicle attributes are not specified correctly for vehicle " + vehicleId + ": " +
-                            "`" + vehicleInformationTuple.getSecond() + "'. Using fleet average values instead.");
+                            "`" + vehicleInformation.hbefaVehicleAttributes + "'. Using fleet average values instead.");
                     if(vehAttributesNotSpecifiedCnt == maxWarnCnt) logger.warn(Gbl.FUTURE_SUPPRESSED);
                 }
             }
         } else {
-            generatedEmissions = this.avgHbefaColdTable.get(key).getColdEmissionFactor();
+            generatedEmissions = getAvgTableEmissions(vehicleInformation, parkingDuration_h, distance_km, coldPollutant);
         }
         return generatedEmissions;
     }
 
+    private double getAvgTableEmissions(VehicleInformation vehicleInformation, int parkingDuration_h, int distance_km, ColdPollutant coldPollutant) {
+        int avgOffset = this.avgHbefaColdTable == null ? -1
+                : this.avgHbefaColdTable.getOffset(vehicleInformation.avgTableIdx, parkingDuration_h, distance_km);
+        if (avgOffset == -1 || !this.avgHbefaColdTable.contains(avgOffset, coldPollutant)) {
+            throw new RuntimeException("No average cold emission factor for " + coldPollutant + ", "
+                    + vehicleInformation.hbefaVehicleCategory + " (" + vehicleInformation.hbefaVehicleAttributes
+                    + "), parking time " + parkingDuration_h + " h and distance " + distance_km + " km. Aborting...");
+        }
+        return this.avgHbefaColdTable.getColdEmissionFactor(avgOffset, coldPollutant);
+    }
+
     private Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> convertVehicleDescription2VehicleInformationTuple(String vehicleDescription) {
 		Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple;
 		HbefaVehicleCategory hbefaVehicleCategory = null;
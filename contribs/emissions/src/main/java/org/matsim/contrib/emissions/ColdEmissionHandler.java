@@ -34,6 +34,7 @@ import org.matsim.api.core.v01.events.handler.VehicleLeavesTrafficEventHandler;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.contrib.emissions.ColdEmissionAnalysisModule.ColdEmissionAnalysisModuleParameter;
+import org.matsim.contrib.emissions.utils.LinkEmissionAggregator;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.vehicles.Vehicle;
@@ -64,10 +65,24 @@ public class ColdEmissionHandler implements LinkLeaveEventHandler, VehicleLeaves
             Network network,
             ColdEmissionAnalysisModuleParameter parameterObject2,
             EventsManager emissionEventsManager, Double emissionEfficiencyFactor) {
+        this(vehicles, network, parameterObject2, emissionEventsManager, null, emissionEfficiencyFactor);
+    }
+
+    /**
+     * @param emissionEventsManager
+     *            receives cold emission events; may be null if emissions are only aggregated
+     * @param emissionAggregator
+     *            sums up the emissions per link and time bin; may be null
+     */
+    public ColdEmissionHandler(
+            Vehicles vehicles,
+            Network network,
+            ColdEmissionAnalysisModuleParameter parameterObject2,
+            EventsManager emissionEventsManager, LinkEmissionAggregator emissionAggregator, Double emissionEfficiencyFactor) {
 
         this.vehicles = vehicles;
         this.network = network;
-        this.coldEmissionAnalysisModule = new ColdEmissionAnalysisModule(parameterObject2, emissionEventsManager, emissionEfficiencyFactor);
+        this.coldEmissionAnalysisModule = new ColdEmissionAnalysisModule(parameterObject2, emissionEventsManager, emissionAggregator, emissionEfficiencyFactor);
     }
 
     @Override
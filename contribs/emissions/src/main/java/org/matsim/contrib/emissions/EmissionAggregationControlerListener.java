@@ -0,0 +1,57 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EmissionAggregationControlerListener.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.emissions;
+
+import org.matsim.contrib.emissions.utils.EmissionGrid;
+import org.matsim.contrib.emissions.utils.LinkEmissionAggregator;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.events.AfterMobsimEvent;
+import org.matsim.core.controler.listener.AfterMobsimListener;
+
+import com.google.inject.Inject;
+
+/**
+ * Writes the aggregated emissions of each iteration (if emissions are aggregated, see
+ * {@link org.matsim.contrib.emissions.utils.EmissionsConfigGroup#isAggregatingEmissions()}). Added automatically by
+ * {@link EmissionModule} if it is created by the injector, so it must not be bound additionally.
+ */
+public class EmissionAggregationControlerListener implements AfterMobsimListener {
+	private final EmissionModule emissionModule;
+	private final OutputDirectoryHierarchy controlerIO;
+
+	@Inject
+	public EmissionAggregationControlerListener(EmissionModule emissionModule, OutputDirectoryHierarchy controlerIO) {
+		this.emissionModule = emissionModule;
+		this.controlerIO = controlerIO;
+	}
+
+	@Override
+	public void notifyAfterMobsim(AfterMobsimEvent event) {
+		LinkEmissionAggregator aggregator = emissionModule.finishEmissionAggregation();
+		aggregator.writeLinkEmissions(controlerIO.getIterationFilename(event.getIteration(), "linkEmissions.txt.gz"));
+
+		EmissionGrid grid = emissionModule.getEmissionGrid();
+		if (grid != null) {
+			grid.writeGridEmissions(aggregator,
+					controlerIO.getIterationFilename(event.getIteration(), "gridEmissions.txt.gz"));
+		}
+	}
+}
@@ -22,7 +22,9 @@ package org.matsim.contrib.emissions;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import com.google.inject.Inject;
 import org.apache.log4j.Logger;
@@ -31,9 +33,13 @@ import org.matsim.api.core.v01.network.Network;
 import org.matsim.contrib.emissions.ColdEmissionAnalysisModule.ColdEmissionAnalysisModuleParameter;
 import org.matsim.contrib.emissions.WarmEmissionAnalysisModule.WarmEmissionAnalysisModuleParameter;
 import org.matsim.contrib.emissions.types.*;
+import org.matsim.contrib.emissions.utils.EmissionGrid;
 import org.matsim.contrib.emissions.utils.EmissionsConfigGroup;
+import org.matsim.contrib.emissions.utils.LinkEmissionAggregator;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.groups.QSimConfigGroup;
+import org.matsim.core.controler.ControlerListenerManager;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
 import org.matsim.core.events.EventsUtils;
 import org.matsim.core.utils.io.IOUtils;
 import org.matsim.vehicles.VehicleType;
@@ -41,6 +47,12 @@ import org.matsim.vehicles.Vehicles;
 
 
 /**
+ * If emissions are aggregated (see {@link EmissionsConfigGroup#isAggregatingEmissions()}), they are summed up per link
+ * and time bin by a {@link ParallelEmissionHandler} and <b>no emission events are thrown</b>, i.e. handlers added to
+ * {@link #getEmissionEventsManager()} do not receive any emission events and none are written to the events file. The
+ * aggregated emissions are obtained from {@link #finishEmissionAggregation()}; when running in a controler, the
+ * {@link EmissionAggregationControlerListener} writing them after each mobsim is added automatically.
+ * 
  * @author benjamin
  *
  */
@@ -51,6 +63,11 @@ public class EmissionModule {
 	private WarmEmissionHandler warmEmissionHandler;
 	private ColdEmissionHandler coldEmissionHandler;
 
+	// used instead of the two handlers above if emissions are aggregated
+	private ParallelEmissionHandler parallelEmissionHandler;
+	private WarmEmissionAnalysisModule warmEmissionAnalysisModule;
+	private EmissionGrid emissionGrid;
+
 	private final EventsManager eventsManager;
 	private final EmissionsConfigGroup ecg;
 
@@ -79,7 +96,14 @@ public class EmissionModule {
 
 		this.ecg = (EmissionsConfigGroup) scenario.getConfig().getModules().get(EmissionsConfigGroup.GROUP_NAME);
 
-		if ( !ecg.isWritingEmissionsEvents() ) {
+		if ( ecg.isAggregatingEmissions() ) {
+			logger.info("Emissions are aggregated per link and time bin; no emission events are thrown.");
+			if ( ecg.isWritingEmissionsEvents() ) {
+				logger.warn("Emission events are not written to the events file because emissions are aggregated (see "
+						+ EmissionsConfigGroup.GROUP_NAME + " config group).");
+			}
+			this.eventsManager = eventsManager;
+		} else if ( !ecg.isWritingEmissionsEvents() ) {
 			logger.warn("Emission events are excluded from events file. A new events manager is created.");
 			this.eventsManager = EventsUtils.createEventsManager();
 		} else {
@@ -90,10 +114,23 @@ public class EmissionModule {
 		createEmissionHandler();
 
 		// add event handlers here and restrict the access outside the emission Module.  Amit Apr'17.
-		this.eventsManager.addHandler(warmEmissionHandler);
-		this.eventsManager.addHandler(coldEmissionHandler);
+		if (parallelEmissionHandler != null) {
+			this.eventsManager.addHandler(parallelEmissionHandler);
+		} else {
+			this.eventsManager.addHandler(warmEmissionHandler);
+			this.eventsManager.addHandler(coldEmissionHandler);
+		}
 	}
 	
+	// called by the injector if the module is used in a controler
+	@Inject(optional = true)
+	void addEmissionAggregationListener(ControlerListenerManager controlerListenerManager,
+			OutputDirectoryHierarchy controlerIO) {
+		if (parallelEmissionHandler != null) {
+			controlerListenerManager.addControlerListener(new EmissionAggregationControlerListener(this, controlerIO));
+		}
+	}
+
 	private void createLookupTables() {
 		logger.info("entering createLookupTables");
 		
@@ -158,8 +195,21 @@ public class EmissionModule {
 		WarmEmissionAnalysisModuleParameter parameterObject = new WarmEmissionAnalysisModuleParameter(roadTypeMapping, avgHbefaWarmTable, detailedHbefaWarmTable, ecg );
 		ColdEmissionAnalysisModuleParameter parameterObject2 = new ColdEmissionAnalysisModuleParameter(avgHbefaColdTable, detailedHbefaColdTable, ecg);
 		
-		warmEmissionHandler = new WarmEmissionHandler(vehicles,	network, parameterObject, eventsManager, ecg.getEmissionEfficiencyFactor());
-		coldEmissionHandler = new ColdEmissionHandler(vehicles, network, parameterObject2, eventsManager, ecg.getEmissionEfficiencyFactor());
+		if (ecg.isAggregatingEmissions()) {
+			int numberOfThreads = Math.max(1, scenario.getConfig().global().getNumberOfThreads());
+			logger.info("Emissions are calculated by " + numberOfThreads + " threads.");
+			parallelEmissionHandler = new ParallelEmissionHandler(vehicles, network, parameterObject, parameterObject2,
+					ecg.getEmissionEfficiencyFactor(), ecg.getEmissionAggregationTimeBinSize(), numberOfThreads);
+			// not used by the handlers; only for calculating emissions elsewhere, e.g. in travel disutilities
+			warmEmissionAnalysisModule = new WarmEmissionAnalysisModule(parameterObject, eventsManager, ecg.getEmissionEfficiencyFactor());
+
+			if (ecg.getEmissionGridCellSize() > 0) {
+				emissionGrid = new EmissionGrid(network, ecg.getEmissionGridCellSize());
+			}
+		} else {
+			warmEmissionHandler = new WarmEmissionHandler(vehicles,	network, parameterObject, eventsManager, ecg.getEmissionEfficiencyFactor());
+			coldEmissionHandler = new ColdEmissionHandler(vehicles, network, parameterObject2, eventsManager, ecg.getEmissionEfficiencyFactor());
+		}
 		logger.info("leaving createEmissionHandler");
 	}
 
@@ -408,9 +458,29 @@ public class EmissionModule {
 	}
 
 	public WarmEmissionAnalysisModule getWarmEmissionAnalysisModule() {
-		return this. warmEmissionHandler.getWarmEmissionAnalysisModule();
+		return this.warmEmissionHandler == null ? this.warmEmissionAnalysisModule : this. warmEmissionHandler.getWarmEmissionAnalysisModule();
+	}
+
+	/**
+	 * Must be called after the last event of the iteration (only if emissions are aggregated).
+	 *
+	 * @return emissions summed up per link and time bin
+	 */
+	public LinkEmissionAggregator finishEmissionAggregation() {
+		if (parallelEmissionHandler == null) {
+			throw new IllegalStateException("Emissions are not aggregated; see " + EmissionsConfigGroup.GROUP_NAME + " config group.");
+		}
+		return parallelEmissionHandler.finish();
+	}
+
+	/**
+	 * @return null if emissions are not aggregated or the grid cell size is not set
+	 */
+	public EmissionGrid getEmissionGrid() {
+		return emissionGrid;
 	}
 
+	// no emission events are thrown if emissions are aggregated
 	// probably, this is useful; e.g., emission events are not written and a few handlers must be attached to events manager
 	// for the analysis purpose. Need a test. Amit Apr'17
 	public EventsManager getEmissionEventsManager() {
@@ -418,10 +488,35 @@ public class EmissionModule {
 	}
 
 	public void writeEmissionInformation() {
-		logger.info("Warm emissions were not calculated for " + warmEmissionHandler.getLinkLeaveWarnCnt() + " of " +
-				warmEmissionHandler.getLinkLeaveCnt() + " link leave events (no corresponding link enter event).");
+		// in case of aggregation, the counters are summed up over all handlers
+		List<WarmEmissionHandler> handlers = parallelEmissionHandler == null ?
+				Collections.singletonList(warmEmissionHandler) : parallelEmissionHandler.getWarmEmissionHandlers();
+		int linkLeaveWarnCnt = 0;
+		int linkLeaveCnt = 0;
+		int freeFlowOccurences = 0;
+		int stopGoOccurences = 0;
+		int fractionOccurences = 0;
+		int warmEmissionEventCounter = 0;
+		double freeFlowKmCounter = 0;
+		double stopGoKmCounter = 0;
+		double kmCounter = 0;
+		for (WarmEmissionHandler handler : handlers) {
+			linkLeaveWarnCnt += handler.getLinkLeaveWarnCnt();
+			linkLeaveCnt += handler.getLinkLeaveCnt();
+
+			WarmEmissionAnalysisModule wam = handler.getWarmEmissionAnalysisModule();
+			freeFlowOccurences += wam.getFreeFlowOccurences();
+			stopGoOccurences += wam.getStopGoOccurences();
+			fractionOccurences += wam.getFractionOccurences();
+			warmEmissionEventCounter += wam.getWarmEmissionEventCounter();
+			freeFlowKmCounter += wam.getFreeFlowKmCounter();
+			stopGoKmCounter += wam.getStopGoKmCounter();
+			kmCounter += wam.getKmCounter();
+		}
+
+		logger.info("Warm emissions were not calculated for " + linkLeaveWarnCnt + " of " +
+				linkLeaveCnt + " link leave events (no corresponding link enter event).");
 		
-		WarmEmissionAnalysisModule wam = warmEmissionHandler.getWarmEmissionAnalysisModule();
 //		ColdEmissionAnalysisModule cam = coldEmissionHandler.getColdEmissionAnalysisModule();
 		
 //		logger.info("Average speed was calculated to 0.0 or a negative value for " + wam.getAverageSpeedNegativeCnt() + " of " + 
@@ -429,17 +524,17 @@ public class EmissionModule {
 //		logger.info("Average speed was calculated greater than free flow speed for " + wam.getAverageSpeedTooHighCnt() + " of " +
 //				wam.getWarmEmissionEventCounter() + " warm emission events.");
 		
-		logger.info("Emission calculation based on `Free flow only' occured for " + wam.getFreeFlowOccurences() + " of " +
-				wam.getWarmEmissionEventCounter() + " warm emission events.");
-		logger.info("Emission calculation based on `Stop&Go only' occured for " + wam.getStopGoOccurences() + " of " +
-				wam.getWarmEmissionEventCounter() + " warm emission events.");
-		logger.info("Emission calculation based on `Fractions' occured for " + wam.getFractionOccurences() + " of " +
-				wam.getWarmEmissionEventCounter() + " warm emission events.");
+		logger.info("Emission calculation based on `Free flow only' occured for " + freeFlowOccurences + " of " +
+				warmEmissionEventCounter + " warm emission events.");
+		logger.info("Emission calculation based on `Stop&Go only' occured for " + stopGoOccurences + " of " +
+				warmEmissionEventCounter + " warm emission events.");
+		logger.info("Emission calculation based on `Fractions' occured for " + fractionOccurences + " of " +
+				warmEmissionEventCounter + " warm emission events.");
 		
-		logger.info("Free flow occured on " + wam.getFreeFlowKmCounter() + " km of total " + 
-				wam.getKmCounter() + " km, where emissions were calculated.");
-		logger.info("Stop&Go occured on " + wam.getStopGoKmCounter() + " km of total " +
-				wam.getKmCounter() + " km, where emissions were calculated.");
+		logger.info("Free flow occured on " + freeFlowKmCounter + " km of total " + 
+				kmCounter + " km, where emissions were calculated.");
+		logger.info("Stop&Go occured on " + stopGoKmCounter + " km of total " +
+				kmCounter + " km, where emissions were calculated.");
 		
 //		logger.info("Detailed vehicle attributes for warm emission calculation were not specified correctly for "
 //				+ wam.getVehAttributesNotSpecified().size() + " of "
@@ -448,6 +543,10 @@ public class EmissionModule {
 //				+ cam.getVehAttributesNotSpecified().size() + " of "
 //				+ cam.getVehicleIdSet().size() + " vehicles.");
 		
-		logger.info("Emission calculation terminated. Emission events can be found in regular events file.");
+		if (parallelEmissionHandler != null) {
+			logger.info("Emission calculation terminated. Emissions were aggregated per link and time bin.");
+		} else {
+			logger.info("Emission calculation terminated. Emission events can be found in regular events file.");
+		}
 	}
 }
\ No newline at end of file
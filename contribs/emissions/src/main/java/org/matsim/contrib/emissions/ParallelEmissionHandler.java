@@ -0,0 +1,293 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelEmissionHandler.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.emissions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleEntersTrafficEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleLeavesTrafficEventHandler;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.contrib.emissions.ColdEmissionAnalysisModule.ColdEmissionAnalysisModuleParameter;
+import org.matsim.contrib.emissions.WarmEmissionAnalysisModule.WarmEmissionAnalysisModuleParameter;
+import org.matsim.contrib.emissions.utils.LinkEmissionAggregator;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.Vehicles;
+
+/**
+ * Calculates warm and cold emissions in several threads. Vehicles are partitioned among the workers (by the hash code
+ * of the vehicle id), so all events of a vehicle are handled, in their original order, by the same worker. Each worker
+ * has its own {@link WarmEmissionHandler} and {@link ColdEmissionHandler}, which add the emissions to the worker's
+ * {@link LinkEmissionAggregator} instead of throwing emission events.
+ * <p>
+ * Events are passed on to the workers in batches. The worker threads are started with the first event and stopped by
+ * {@link #finish()} (which then returns the sum of the workers' aggregators) or by {@link #reset(int)}. They are daemon
+ * threads, so an unfinished handler (e.g. after an exception in the mobsim) does not prevent the JVM from exiting.
+ * Each worker keeps its own aggregator, so the memory needed for the aggregation grows with the number of threads. The
+ * HBEFA tables are shared by all workers (see {@link WarmEmissionAnalysisModuleParameter} and
+ * {@link ColdEmissionAnalysisModuleParameter}).
+ */
+public class ParallelEmissionHandler implements LinkEnterEventHandler, LinkLeaveEventHandler,
+		VehicleEntersTrafficEventHandler, VehicleLeavesTrafficEventHandler {
+	private static final int BATCH_SIZE = 1000;
+	private static final int QUEUE_CAPACITY = 100;// batches per worker
+	private static final Object STOP = new Object();
+
+	private static class Worker implements Runnable {
+		private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+		private final WarmEmissionHandler warmEmissionHandler;
+		private final ColdEmissionHandler coldEmissionHandler;
+		private final LinkEmissionAggregator emissionAggregator;
+
+		private List<Event> batch = new ArrayList<>(BATCH_SIZE);// accessed only by the events thread
+		private volatile RuntimeException exception;
+
+		private Worker(WarmEmissionHandler warmEmissionHandler, ColdEmissionHandler coldEmissionHandler,
+				LinkEmissionAggregator emissionAggregator) {
+			this.warmEmissionHandler = warmEmissionHandler;
+			this.coldEmissionHandler = coldEmissionHandler;
+			this.emissionAggregator = emissionAggregator;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					Object item = queue.take();
+					if (item == STOP) {
+						return;
+					} else if (item instanceof CountDownLatch) {
+						((CountDownLatch)item).countDown();
+					} else if (exception == null) {
+						@SuppressWarnings("unchecked")
+						List<Event> events = (List<Event>)item;
+						handleEvents(events);
+					}
+				}
+			} catch (InterruptedException e) {
+				// the handler is not used any more
+			}
+		}
+
+		private void handleEvents(List<Event> events) {
+			try {
+				for (Event event : events) {
+					if (event instanceof LinkEnterEvent) {
+						warmEmissionHandler.handleEvent((LinkEnterEvent)event);
+					} else if (event instanceof LinkLeaveEvent) {
+						warmEmissionHandler.handleEvent((LinkLeaveEvent)event);
+						coldEmissionHandler.handleEvent((LinkLeaveEvent)event);
+					} else if (event instanceof VehicleEntersTrafficEvent) {
+						warmEmissionHandler.handleEvent((VehicleEntersTrafficEvent)event);
+						coldEmissionHandler.handleEvent((VehicleEntersTrafficEvent)event);
+					} else if (event instanceof VehicleLeavesTrafficEvent) {
+						warmEmissionHandler.handleEvent((VehicleLeavesTrafficEvent)event);
+						coldEmissionHandler.handleEvent((VehicleLeavesTrafficEvent)event);
+					}
+				}
+			} catch (RuntimeException e) {
+				exception = e;// re-thrown by the events thread
+			}
+		}
+	}
+
+	private final LinkEmissionAggregator emptyAggregator;
+	private final Worker[] workers;
+	private Thread[] threads;// null if the workers are not running
+
+	public ParallelEmissionHandler(Vehicles vehicles, Network network,
+			WarmEmissionAnalysisModuleParameter warmParameterObject,
+			ColdEmissionAnalysisModuleParameter coldParameterObject, Double emissionEfficiencyFactor,
+			double timeBinSize, int numberOfThreads) {
+		emptyAggregator = new LinkEmissionAggregator(network, timeBinSize);
+		workers = new Worker[numberOfThreads];
+		for (int i = 0; i < numberOfThreads; i++) {
+			LinkEmissionAggregator emissionAggregator = emptyAggregator.createEmptyCopy();
+			workers[i] = new Worker(
+					new WarmEmissionHandler(vehicles, network, warmParameterObject, null, emissionAggregator,
+							emissionEfficiencyFactor),
+					new ColdEmissionHandler(vehicles, network, coldParameterObject, null, emissionAggregator,
+							emissionEfficiencyFactor),
+					emissionAggregator);
+		}
+	}
+
+	private void startWorkers() {
+		threads = new Thread[workers.length];
+		for (int i = 0; i < workers.length; i++) {
+			threads[i] = new Thread(workers[i], "emissions-" + i);
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+	}
+
+	private void stopWorkers() {
+		try {
+			awaitWorkers();
+		} finally {
+			for (Worker worker : workers) {
+				put(worker, STOP);
+			}
+			try {
+				for (Thread thread : threads) {
+					thread.join();
+				}
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			threads = null;
+		}
+	}
+
+	@Override
+	public void handleEvent(LinkEnterEvent event) {
+		addEvent(event.getVehicleId(), event);
+	}
+
+	@Override
+	public void handleEvent(LinkLeaveEvent event) {
+		addEvent(event.getVehicleId(), event);
+	}
+
+	@Override
+	public void handleEvent(VehicleEntersTrafficEvent event) {
+		addEvent(event.getVehicleId(), event);
+	}
+
+	@Override
+	public void handleEvent(VehicleLeavesTrafficEvent event) {
+		addEvent(event.getVehicleId(), event);
+	}
+
+	private void addEvent(Id<Vehicle> vehicleId, Event event) {
+		if (threads == null) {
+			startWorkers();
+		}
+		Worker worker = workers[(vehicleId.hashCode() & Integer.MAX_VALUE) % workers.length];
+		worker.batch.add(event);
+		if (worker.batch.size() == BATCH_SIZE) {
+			checkException(worker);
+			submitBatch(worker);
+		}
+	}
+
+	private void submitBatch(Worker worker) {
+		put(worker, worker.batch);
+		worker.batch = new ArrayList<>(BATCH_SIZE);
+	}
+
+	private void put(Worker worker, Object item) {
+		try {
+			worker.queue.put(item);
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void checkException(Worker worker) {
+		if (worker.exception != null) {
+			throw new RuntimeException("Emission calculation failed", worker.exception);
+		}
+	}
+
+	/**
+	 * Waits until all events passed so far have been handled.
+	 */
+	private void awaitWorkers() {
+		if (threads == null) {
+			return;
+		}
+
+		CountDownLatch latch = new CountDownLatch(workers.length);
+		for (Worker worker : workers) {
+			if (!worker.batch.isEmpty()) {
+				submitBatch(worker);
+			}
+			put(worker, latch);
+		}
+
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+
+		for (Worker worker : workers) {
+			checkException(worker);
+		}
+	}
+
+	/**
+	 * Must be called after the last event (e.g. after the mobsim). Stops the worker threads; they are started again by
+	 * the next event.
+	 * 
+	 * @return emissions of all vehicles, summed up per link and time bin
+	 */
+	public LinkEmissionAggregator finish() {
+		if (threads != null) {
+			stopWorkers();
+		}
+
+		LinkEmissionAggregator result = emptyAggregator.createEmptyCopy();
+		for (Worker worker : workers) {
+			result.add(worker.emissionAggregator);
+		}
+		return result;
+	}
+
+	@Override
+	public void reset(int iteration) {
+		if (threads != null) {
+			stopWorkers();
+		}
+
+		for (Worker worker : workers) {
+			worker.batch.clear();
+			worker.exception = null;
+			worker.warmEmissionHandler.reset(iteration);
+			worker.coldEmissionHandler.reset(iteration);
+			worker.emissionAggregator.reset();
+		}
+	}
+
+	/**
+	 * @return the workers' handlers; their counters are complete after {@link #finish()}
+	 */
+	public List<WarmEmissionHandler> getWarmEmissionHandlers() {
+		List<WarmEmissionHandler> handlers = new ArrayList<>();
+		for (Worker worker : workers) {
+			handlers.add(worker.warmEmissionHandler);
+		}
+		return Collections.unmodifiableList(handlers);
+	}
+}
@@ -21,6 +21,7 @@
  * *********************************************************************** */
 package org.matsim.contrib.emissions;
 
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -34,9 +35,11 @@ import org.matsim.contrib.emissions.types.HbefaVehicleAttributes;
 import org.matsim.contrib.emissions.types.HbefaVehicleCategory;
 import org.matsim.contrib.emissions.types.HbefaWarmEmissionFactor;
 import org.matsim.contrib.emissions.types.HbefaWarmEmissionFactorKey;
+import org.matsim.contrib.emissions.types.HbefaWarmEmissionFactorTable;
 import org.matsim.contrib.emissions.types.WarmPollutant;
 import org.matsim.contrib.emissions.utils.EmissionSpecificationMarker;
 import org.matsim.contrib.emissions.utils.EmissionsConfigGroup;
+import org.matsim.contrib.emissions.utils.LinkEmissionAggregator;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.utils.collections.Tuple;
@@ -44,6 +47,10 @@ import org.matsim.vehicles.Vehicle;
 
 
 /**
+ * The HBEFA tables are compiled into {@link HbefaWarmEmissionFactorTable}s by the
+ * {@link WarmEmissionAnalysisModuleParameter} (once, shared by all modules created with it), and the vehicle
+ * information is parsed once per vehicle description; see {@link #checkVehicleInfoAndCalculateWarmEmissionValues}.
+ * 
  * @author benjamin
  *
  */
@@ -52,10 +59,13 @@ public class WarmEmissionAnalysisModule {
 
 	private final Map<Integer, String> roadTypeMapping;
 
-	private final Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> avgHbefaWarmTable;
-	private final Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> detailedHbefaWarmTable;
+	private final HbefaWarmEmissionFactorTable avgHbefaWarmTable;
+	private final HbefaWarmEmissionFactorTable detailedHbefaWarmTable;
+
+	private final Map<String, VehicleInformation> vehicleInformationCache = new HashMap<>();
 
 	private final EventsManager eventsManager;
+	private final LinkEmissionAggregator emissionAggregator;
 	private final Double emissionEfficiencyFactor;
 	private final EmissionsConfigGroup ecg;
 
@@ -74,6 +84,21 @@ public class WarmEmissionAnalysisModule {
 	private double freeFlowKmCounter = 0.0;
 	private double stopGoKmCounter = 0.0;
 
+	/**
+	 * Vehicle category and attributes parsed from a vehicle description, with the vehicle's indices in both tables.
+	 */
+	private static class VehicleInformation {
+		private final HbefaVehicleCategory hbefaVehicleCategory;
+		private final HbefaVehicleAttributes hbefaVehicleAttributes;
+		private int avgTableIdx = -1;
+		private int detailedTableIdx = -1;
+
+		private VehicleInformation(Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple) {
+			this.hbefaVehicleCategory = vehicleInformationTuple.getFirst();
+			this.hbefaVehicleAttributes = vehicleInformationTuple.getSecond();
+		}
+	}
+
 
 	public static class WarmEmissionAnalysisModuleParameter {
 
@@ -82,6 +107,10 @@ public class WarmEmissionAnalysisModule {
 		public final Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> detailedHbefaWarmTable;
 		private final EmissionsConfigGroup ecg;
 
+		// compiled once; read-only, so shared by all modules created with this parameter object (e.g. in several threads)
+		private final HbefaWarmEmissionFactorTable compiledAvgHbefaWarmTable;
+		private final HbefaWarmEmissionFactorTable compiledDetailedHbefaWarmTable;
+
 		public WarmEmissionAnalysisModuleParameter(
 				Map<Integer, String> roadTypeMapping,
 				Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> avgHbefaWarmTable,
@@ -99,25 +128,42 @@ public class WarmEmissionAnalysisModule {
 				 logger.error("Neither average nor detailed table vor Hbefa warm emissions set. Aborting...");
 				 System.exit(0);
 			}
+			this.compiledAvgHbefaWarmTable = avgHbefaWarmTable == null ? null
+					: new HbefaWarmEmissionFactorTable(avgHbefaWarmTable);
+			this.compiledDetailedHbefaWarmTable = detailedHbefaWarmTable == null ? null
+					: new HbefaWarmEmissionFactorTable(detailedHbefaWarmTable);
 		}
 	}
 
 	public WarmEmissionAnalysisModule(
 			WarmEmissionAnalysisModuleParameter parameterObject,
 			EventsManager emissionEventsManager, Double emissionEfficiencyFactor) {
+		this(parameterObject, emissionEventsManager, null, emissionEfficiencyFactor);
+	}
+
+	/**
+	 * @param emissionEventsManager
+	 *            receives warm emission events; may be null if emissions are only aggregated
+	 * @param emissionAggregator
+	 *            sums up the emissions per link and time bin; may be null
+	 */
+	public WarmEmissionAnalysisModule(
+			WarmEmissionAnalysisModuleParameter parameterObject,
+			EventsManager emissionEventsManager, LinkEmissionAggregator emissionAggregator, Double emissionEfficiencyFactor) {
 		
 		if(parameterObject == null){
 			logger.error("No warm emission analysis module parameter set. Aborting...");
 			System.exit(0);
 		}
-		if(emissionEventsManager == null){
+		if(emissionEventsManager == null && emissionAggregator == null){
 			logger.error("Event manager not set. Please check the configuration of your scenario. Aborting..." );
 			System.exit(0);
 		}
 		this.roadTypeMapping = parameterObject.roadTypeMapping;
-		this.avgHbefaWarmTable = parameterObject.avgHbefaWarmTable;
-		this.detailedHbefaWarmTable = parameterObject.detailedHbefaWarmTable;
+		this.avgHbefaWarmTable = parameterObject.compiledAvgHbefaWarmTable;
+		this.detailedHbefaWarmTable = parameterObject.compiledDetailedHbefaWarmTable;
 		this.eventsManager = emissionEventsManager;
+		this.emissionAggregator = emissionAggregator;
 		this.emissionEfficiencyFactor = emissionEfficiencyFactor;
 		this.ecg = parameterObject.ecg;
 	}
@@ -137,8 +183,31 @@ public class WarmEmissionAnalysisModule {
 	}
 
 	public void throwWarmEmissionEvent(double leaveTime, Id<Link> linkId, Id<Vehicle> vehicleId, Map<WarmPollutant, Double> warmEmissions){
-		Event warmEmissionEvent = new WarmEmissionEvent(leaveTime, linkId, vehicleId, warmEmissions);
-		this.eventsManager.processEvent(warmEmissionEvent);
+		if (this.eventsManager != null) {
+			Event warmEmissionEvent = new WarmEmissionEvent(leaveTime, linkId, vehicleId, warmEmissions);
+			this.eventsManager.processEvent(warmEmissionEvent);
+		}
+		if (this.emissionAggregator != null) {
+			double[] warmEmissionValues = new double[WarmPollutant.values().length];
+			for (Map.Entry<WarmPollutant, Double> e : warmEmissions.entrySet()) {
+				warmEmissionValues[e.getKey().ordinal()] = e.getValue();
+			}
+			this.emissionAggregator.addWarmEmissions(linkId, leaveTime, warmEmissionValues);
+		}
+	}
+
+	/**
+	 * @param warmEmissions
+	 *            emissions indexed by {@link WarmPollutant#ordinal()}; the array is passed on to the event
+	 */
+	public void throwWarmEmissionEvent(double leaveTime, Id<Link> linkId, Id<Vehicle> vehicleId, double[] warmEmissions){
+		if (this.eventsManager != null) {
+			Event warmEmissionEvent = WarmEmissionEvent.createWithValues(leaveTime, linkId, vehicleId, warmEmissions);
+			this.eventsManager.processEvent(warmEmissionEvent);
+		}
+		if (this.emissionAggregator != null) {
+			this.emissionAggregator.addWarmEmissions(linkId, leaveTime, warmEmissions);
+		}
 	}
 
 	public Map<WarmPollutant, Double> checkVehicleInfoAndCalculateWarmEmissions(
@@ -147,6 +216,27 @@ public class WarmEmissionAnalysisModule {
 			double freeVelocity,
 			double linkLength,
 			double travelTime) {
+		double[] warmEmissionValues = checkVehicleInfoAndCalculateWarmEmissionValues(vehicle, roadType, freeVelocity,
+				linkLength, travelTime);
+
+		Map<WarmPollutant, Double> warmEmissions = new EnumMap<>(WarmPollutant.class);
+		for (WarmPollutant warmPollutant : WarmPollutant.values()) {
+			warmEmissions.put(warmPollutant, warmEmissionValues[warmPollutant.ordinal()]);
+		}
+		return warmEmissions;
+	}
+
+	/**
+	 * Same as {@link #checkVehicleInfoAndCalculateWarmEmissions}, but without boxing.
+	 * 
+	 * @return emissions indexed by {@link WarmPollutant#ordinal()}; a new array on each call
+	 */
+	public double[] checkVehicleInfoAndCalculateWarmEmissionValues(
+			Vehicle vehicle,
+			int roadType,
+			double freeVelocity,
+			double linkLength,
+			double travelTime) {
 
 		if(this.ecg.isUsingVehicleTypeIdAsVehicleDescription() ) {
 			if(vehicle.getType().getDescription()==null) { // emission specification is in vehicle type id
@@ -161,7 +251,6 @@ public class WarmEmissionAnalysisModule {
 			}
 		}
 
-		Map<WarmPollutant, Double> warmEmissions = new HashMap<>();
 		if(vehicle == null ||
 				(vehicle.getType() == null && vehicle.getType().getDescription() == null) // if both are null together; no vehicle type information.
 				) {
@@ -172,76 +261,94 @@ public class WarmEmissionAnalysisModule {
 
 		String vehicleDescription = vehicle.getType().getDescription();
 
-		Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple = convertVehicleTypeId2VehicleInformationTuple(vehicleDescription);
-		if (vehicleInformationTuple.getFirst() == null){
+		VehicleInformation vehicleInformation = vehicleInformationCache.get(vehicleDescription);
+		if (vehicleInformation == null) {
+			vehicleInformation = new VehicleInformation(convertVehicleTypeId2VehicleInformationTuple(vehicleDescription));
+			indexVehicleInformation(vehicleInformation);
+			vehicleInformationCache.put(vehicleDescription, vehicleInformation);
+		}
+		if (vehicleInformation.hbefaVehicleCategory == null){
 			throw new RuntimeException("Vehicle category for vehicle " + vehicle + " is not valid. " +
 					"Please make sure that requirements for emission vehicles in " + 
 					EmissionsConfigGroup.GROUP_NAME + " config group are met. Aborting...");
 		}
 
-		warmEmissions = calculateWarmEmissions(vehicle.getId(), travelTime, roadType, freeVelocity, linkLength, vehicleInformationTuple);
+		double[] warmEmissions = calculateWarmEmissions(vehicle.getId(), travelTime, roadType, freeVelocity, linkLength, vehicleInformation);
 
 		// a basic apporach to introduce emission reduced cars:
 		if(emissionEfficiencyFactor != null){
-			warmEmissions = rescaleWarmEmissions(warmEmissions);
+			rescaleWarmEmissions(warmEmissions);
 		}
 		return warmEmissions;
 	}
 	
-	private Map<WarmPollutant, Double> rescaleWarmEmissions(Map<WarmPollutant, Double> warmEmissions) {
-		Map<WarmPollutant, Double> rescaledWarmEmissions = new HashMap<>();
-		
-		for(WarmPollutant wp : warmEmissions.keySet()){
-			Double orgValue = warmEmissions.get(wp);
-			Double rescaledValue = emissionEfficiencyFactor * orgValue;
-			rescaledWarmEmissions.put(wp, rescaledValue);
+	private void rescaleWarmEmissions(double[] warmEmissions) {
+		for (int i = 0; i < warmEmissions.length; i++) {
+			warmEmissions[i] *= emissionEfficiencyFactor;
+		}
+	}
+
+	private void indexVehicleInformation(VehicleInformation vehicleInformation) {
+		HbefaVehicleCategory category = getTableVehicleCategory(vehicleInformation.hbefaVehicleCategory);
+		if (category == null) {
+			return;
+		}
+
+		if (this.detailedHbefaWarmTable != null) { // check if detailed emission factors file is set in config
+			vehicleInformation.detailedTableIdx = this.detailedHbefaWarmTable.getVehicleIndex(category,
+					vehicleInformation.hbefaVehicleAttributes);
+			if (this.avgHbefaWarmTable != null) {
+				// the fleet average values are looked up with the same key
+				vehicleInformation.avgTableIdx = this.avgHbefaWarmTable.getVehicleIndex(category,
+						vehicleInformation.hbefaVehicleAttributes);
+			}
+		} else if (this.avgHbefaWarmTable != null) {
+			vehicleInformation.avgTableIdx = this.avgHbefaWarmTable.getVehicleIndex(category,
+					new HbefaVehicleAttributes());
+		}
+	}
+
+	private HbefaVehicleCategory getTableVehicleCategory(HbefaVehicleCategory vehicleCategory) {
+		if (vehicleCategory == null || vehicleCategory == HbefaVehicleCategory.ZERO_EMISSION_VEHICLE) {
+			return null;
+		} else if (vehicleCategory == HbefaVehicleCategory.HEAVY_GOODS_VEHICLE
+				|| vehicleCategory == HbefaVehicleCategory.MOTORCYCLE) {
+			return vehicleCategory;
+		} else {
+			return HbefaVehicleCategory.PASSENGER_CAR;
 		}
-		return rescaledWarmEmissions;
 	}
 
-	private Map<WarmPollutant, Double> calculateWarmEmissions(
+	private double[] calculateWarmEmissions(
 			Id<Vehicle> vehicleId,
 			double travelTime,
 			int roadType,
 			double freeVelocity,
 			double linkLength,
-			Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple) {
+			VehicleInformation vehicleInformation) {
+
+		double[] warmEmissionsOfEvent = new double[WarmPollutant.values().length];
 
-		Map<WarmPollutant, Double> warmEmissionsOfEvent = new HashMap<>();
+		if(vehicleInformation.hbefaVehicleCategory == HbefaVehicleCategory.ZERO_EMISSION_VEHICLE) {
+			return warmEmissionsOfEvent;
+		}
 
 		String hbefaRoadTypeName = this.roadTypeMapping.get(roadType);
 
-		HbefaWarmEmissionFactorKey keyFreeFlow = new HbefaWarmEmissionFactorKey();
-		HbefaWarmEmissionFactorKey keyStopAndGo = new HbefaWarmEmissionFactorKey();
-
-		if(vehicleInformationTuple.getFirst().equals(HbefaVehicleCategory.HEAVY_GOODS_VEHICLE)){
-			keyFreeFlow.setHbefaVehicleCategory(HbefaVehicleCategory.HEAVY_GOODS_VEHICLE);
-			keyStopAndGo.setHbefaVehicleCategory(HbefaVehicleCategory.HEAVY_GOODS_VEHICLE);
-		} else if (vehicleInformationTuple.getFirst().equals(HbefaVehicleCategory.MOTORCYCLE)) {
-			keyFreeFlow.setHbefaVehicleCategory(HbefaVehicleCategory.MOTORCYCLE);
-			keyStopAndGo.setHbefaVehicleCategory(HbefaVehicleCategory.MOTORCYCLE);
-		} else if(vehicleInformationTuple.getFirst().equals(HbefaVehicleCategory.ZERO_EMISSION_VEHICLE)) {
-			for (WarmPollutant warmPollutant : WarmPollutant.values()) {
-				warmEmissionsOfEvent.put( warmPollutant, 0.0 );
-			}
-			return warmEmissionsOfEvent;
-		} else {
-			keyFreeFlow.setHbefaVehicleCategory(HbefaVehicleCategory.PASSENGER_CAR);
-			keyStopAndGo.setHbefaVehicleCategory(HbefaVehicleCategory.PASSENGER_CAR);
+		int avgFreeFlowOffset = -1;
+		int avgStopAndGoOffset = -1;
+		if(this.avgHbefaWarmTable != null){
+			int roadCategoryIdx = this.avgHbefaWarmTable.getRoadCategoryIndex(hbefaRoadTypeName);
+			avgFreeFlowOffset = this.avgHbefaWarmTable.getOffset(vehicleInformation.avgTableIdx, roadCategoryIdx, HbefaTrafficSituation.FREEFLOW);
+			avgStopAndGoOffset = this.avgHbefaWarmTable.getOffset(vehicleInformation.avgTableIdx, roadCategoryIdx, HbefaTrafficSituation.STOPANDGO);
 		}
 
-		keyFreeFlow.setHbefaRoadCategory(hbefaRoadTypeName);
-		keyStopAndGo.setHbefaRoadCategory(hbefaRoadTypeName);
-		keyFreeFlow.setHbefaTrafficSituation(HbefaTrafficSituation.FREEFLOW);
-		keyStopAndGo.setHbefaTrafficSituation(HbefaTrafficSituation.STOPANDGO);
-
-		if(this.detailedHbefaWarmTable != null){ // check if detailed emission factors file is set in config
-			HbefaVehicleAttributes hbefaVehicleAttributes = new HbefaVehicleAttributes();
-			hbefaVehicleAttributes.setHbefaTechnology(vehicleInformationTuple.getSecond().getHbefaTechnology());
-			hbefaVehicleAttributes.setHbefaSizeClass(vehicleInformationTuple.getSecond().getHbefaSizeClass());
-			hbefaVehicleAttributes.setHbefaEmConcept(vehicleInformationTuple.getSecond().getHbefaEmConcept());
-			keyFreeFlow.setHbefaVehicleAttributes(hbefaVehicleAttributes);
-			keyStopAndGo.setHbefaVehicleAttributes(hbefaVehicleAttributes);
+		int detailedFreeFlowOffset = -1;
+		int detailedStopAndGoOffset = -1;
+		if(this.detailedHbefaWarmTable != null){
+			int roadCategoryIdx = this.detailedHbefaWarmTable.getRoadCategoryIndex(hbefaRoadTypeName);
+			detailedFreeFlowOffset = this.detailedHbefaWarmTable.getOffset(vehicleInformation.detailedTableIdx, roadCategoryIdx, HbefaTrafficSituation.FREEFLOW);
+			detailedStopAndGoOffset = this.detailedHbefaWarmTable.getOffset(vehicleInformation.detailedTableIdx, roadCategoryIdx, HbefaTrafficSituation.STOPANDGO);
 		}
 		
 		double linkLength_km = linkLength / 1000;
@@ -257,36 +364,35 @@ public class WarmEmissionAnalysisModule {
 		for (WarmPollutant warmPollutant : WarmPollutant.values()) {
 			double generatedEmissions;
 
-			keyFreeFlow.setHbefaComponent(warmPollutant);
-			keyStopAndGo.setHbefaComponent(warmPollutant);
-			
 			if(this.detailedHbefaWarmTable != null){
-				if(this.detailedHbefaWarmTable.get(keyFreeFlow) != null && this.detailedHbefaWarmTable.get(keyStopAndGo) != null){
-					stopGoSpeedFromTable_kmh = this.detailedHbefaWarmTable.get(keyStopAndGo).getSpeed();
-					efFreeFlow_gpkm = this.detailedHbefaWarmTable.get(keyFreeFlow).getWarmEmissionFactor();
-					efStopGo_gpkm = this.detailedHbefaWarmTable.get(keyStopAndGo).getWarmEmissionFactor();
-					freeFlowSpeedFromTable_kmh = this.detailedHbefaWarmTable.get(keyFreeFlow).getSpeed();
+				if(this.detailedHbefaWarmTable.contains(detailedFreeFlowOffset, warmPollutant) && this.detailedHbefaWarmTable.contains(detailedStopAndGoOffset, warmPollutant)){
+					stopGoSpeedFromTable_kmh = this.detailedHbefaWarmTable.getSpeed(detailedStopAndGoOffset, warmPollutant);
+					efFreeFlow_gpkm = this.detailedHbefaWarmTable.getWarmEmissionFactor(detailedFreeFlowOffset, warmPollutant);
+					efStopGo_gpkm = this.detailedHbefaWarmTable.getWarmEmissionFactor(detailedStopAndGoOffset, warmPollutant);
+					freeFlowSpeedFromTable_kmh = this.detailedHbefaWarmTable.getSpeed(detailedFreeFlowOffset, warmPollutant);
 
 				} else {
 					vehAttributesNotSpecifiedCnt++;
-					stopGoSpeedFromTable_kmh = this.avgHbefaWarmTable.get(keyStopAndGo).getSpeed();
-					efFreeFlow_gpkm = this.avgHbefaWarmTable.get(keyFreeFlow).getWarmEmissionFactor();
-					efStopGo_gpkm = this.avgHbefaWarmTable.get(keyStopAndGo).getWarmEmissionFactor();
-					freeFlowSpeedFromTable_kmh = this.avgHbefaWarmTable.get(keyFreeFlow).getSpeed();
+					checkAvgTableEntries(avgFreeFlowOffset, avgStopAndGoOffset, warmPollutant, vehicleInformation, hbefaRoadTypeName);
+					stopGoSpeedFromTable_kmh = this.avgHbefaWarmTable.getSpeed(avgStopAndGoOffset, warmPollutant);
+					efFreeFlow_gpkm = this.avgHbefaWarmTable.getWarmEmissionFactor(avgFreeFlowOffset, warmPollutant);
+					efStopGo_gpkm = this.avgHbefaWarmTable.getWarmEmissionFactor(avgStopAndGoOffset, warmPollutant);
+					freeFlowSpeedFromTable_kmh = this.avgHbefaWarmTable.getSpeed(avgFreeFlowOffset, warmPollutant);
 
                     int maxWarnCnt = 3;
                     if(vehAttributesNotSpecifiedCnt <= maxWarnCnt) {
 						logger.warn("Detailed vehicle attributes are not specified correctly for vehicle " + vehicleId + ": " + 
-								"`" + vehicleInformationTuple.getSecond() + "'. Using fleet average values instead.");
+								"`" + vehicleInformation.hbefaVehicleAttributes + "'. Using fleet average values instead.");
 						if(vehAttributesNotSpecifiedCnt == maxWarnCnt) logger.warn(Gbl.FUTURE_SUPPRESSED);
 					}
 //					vehAttributesNotSpecified.add(personId);
 				}
 			} else {
-				stopGoSpeedFromTable_kmh = this.avgHbefaWarmTable.get(keyStopAndGo).getSpeed();
-				efFreeFlow_gpkm = this.avgHbefaWarmTable.get(keyFreeFlow).getWarmEmissionFactor();
-				efStopGo_gpkm = this.avgHbefaWarmTable.get(keyStopAndGo).getWarmEmissionFactor();
-				freeFlowSpeedFromTable_kmh = this.avgHbefaWarmTable.get(keyFreeFlow).getSpeed();
+				checkAvgTableEntries(avgFreeFlowOffset, avgStopAndGoOffset, warmPollutant, vehicleInformation, hbefaRoadTypeName);
+				stopGoSpeedFromTable_kmh = this.avgHbefaWarmTable.getSpeed(avgStopAndGoOffset, warmPollutant);
+				efFreeFlow_gpkm = this.avgHbefaWarmTable.getWarmEmissionFactor(avgFreeFlowOffset, warmPollutant);
+				efStopGo_gpkm = this.avgHbefaWarmTable.getWarmEmissionFactor(avgStopAndGoOffset, warmPollutant);
+				freeFlowSpeedFromTable_kmh = this.avgHbefaWarmTable.getSpeed(avgFreeFlowOffset, warmPollutant);
 //				vehAttributesNotSpecified.add(personId);
 			}
 			
@@ -322,13 +428,23 @@ public class WarmEmissionAnalysisModule {
 				freeFlowKmCounter = freeFlowKmCounter + distanceFreeFlow_km;
 			}
 			kmCounter = kmCounter + linkLength_km;
-			warmEmissionsOfEvent.put(warmPollutant, generatedEmissions);
+			warmEmissionsOfEvent[warmPollutant.ordinal()] = generatedEmissions;
 		}
 		emissionEventCounter++;
 //		vehicleIdSet.add(personId);
 		return warmEmissionsOfEvent;
 	}
 
+	private void checkAvgTableEntries(int avgFreeFlowOffset, int avgStopAndGoOffset, WarmPollutant warmPollutant,
+			VehicleInformation vehicleInformation, String hbefaRoadTypeName) {
+		if (this.avgHbefaWarmTable == null || !this.avgHbefaWarmTable.contains(avgFreeFlowOffset, warmPollutant)
+				|| !this.avgHbefaWarmTable.contains(avgStopAndGoOffset, warmPollutant)) {
+			throw new RuntimeException("No average warm emission factors for " + warmPollutant + ", "
+					+ vehicleInformation.hbefaVehicleCategory + " (" + vehicleInformation.hbefaVehicleAttributes
+					+ ") and road category " + hbefaRoadTypeName + ". Aborting...");
+		}
+	}
+
 	private Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> convertVehicleTypeId2VehicleInformationTuple(String vehicleDescription) {
 		Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple;
 		HbefaVehicleCategory hbefaVehicleCategory = null;
@@ -35,8 +35,8 @@ import org.matsim.api.core.v01.events.handler.VehicleLeavesTrafficEventHandler;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.contrib.emissions.WarmEmissionAnalysisModule.WarmEmissionAnalysisModuleParameter;
-import org.matsim.contrib.emissions.types.WarmPollutant;
 import org.matsim.contrib.emissions.utils.EmissionsConfigGroup;
+import org.matsim.contrib.emissions.utils.LinkEmissionAggregator;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.network.NetworkUtils;
@@ -71,10 +71,24 @@ public class WarmEmissionHandler implements LinkEnterEventHandler, LinkLeaveEven
 			final Network network,
 			WarmEmissionAnalysisModuleParameter parameterObject,
 			EventsManager emissionEventsManager, Double emissionEfficiencyFactor) {
+		this(emissionVehicles, network, parameterObject, emissionEventsManager, null, emissionEfficiencyFactor);
+	}
+
+	/**
+	 * @param emissionEventsManager
+	 *            receives warm emission events; may be null if emissions are only aggregated
+	 * @param emissionAggregator
+	 *            sums up the emissions per link and time bin; may be null
+	 */
+	public WarmEmissionHandler(
+			Vehicles emissionVehicles,
+			final Network network,
+			WarmEmissionAnalysisModuleParameter parameterObject,
+			EventsManager emissionEventsManager, LinkEmissionAggregator emissionAggregator, Double emissionEfficiencyFactor) {
 
 		this.emissionVehicles = emissionVehicles;
 		this.network = network;
-		this.warmEmissionAnalysisModule = new WarmEmissionAnalysisModule(parameterObject, emissionEventsManager, emissionEfficiencyFactor);
+		this.warmEmissionAnalysisModule = new WarmEmissionAnalysisModule(parameterObject, emissionEventsManager, emissionAggregator, emissionEfficiencyFactor);
 	}
 
 	@Override
@@ -187,7 +201,7 @@ public class WarmEmissionHandler implements LinkEnterEventHandler, LinkLeaveEven
 			}
 			Vehicle vehicle = this.emissionVehicles.getVehicles().get(vehicleId);
 
-			Map<WarmPollutant, Double> warmEmissions = warmEmissionAnalysisModule.checkVehicleInfoAndCalculateWarmEmissions(
+			double[] warmEmissions = warmEmissionAnalysisModule.checkVehicleInfoAndCalculateWarmEmissionValues(
 					vehicle,
 					roadType,
 					freeVelocity,
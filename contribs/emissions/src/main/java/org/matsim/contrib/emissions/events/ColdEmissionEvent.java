@@ -25,6 +25,7 @@ import org.matsim.api.core.v01.network.Link;
 import org.matsim.contrib.emissions.types.ColdPollutant;
 import org.matsim.vehicles.Vehicle;
 
+import java.util.EnumMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -39,13 +40,29 @@ public class ColdEmissionEvent extends Event {
     public final static String ATTRIBUTE_VEHICLE_ID = "vehicleId";
     private final Id<Link> linkId;
 	private final Id<Vehicle> vehicleId;
-	private final Map<ColdPollutant, Double> coldEmissions;
+	private Map<ColdPollutant, Double> coldEmissions;
+	private final double[] coldEmissionValues;
 	
 	public ColdEmissionEvent(double time, Id<Link> linkId, Id<Vehicle> vehicleId, Map<ColdPollutant, Double> coldEmissions) {
+		this(time, linkId, vehicleId, coldEmissions, null);
+	}
+
+	private ColdEmissionEvent(double time, Id<Link> linkId, Id<Vehicle> vehicleId, Map<ColdPollutant, Double> coldEmissions,
+			double[] coldEmissionValues) {
         super(time);
         this.linkId = linkId;
 		this.vehicleId = vehicleId;
 		this.coldEmissions = coldEmissions;
+		this.coldEmissionValues = coldEmissionValues;
+	}
+
+	/**
+	 * @param coldEmissions
+	 *            emissions indexed by {@link ColdPollutant#ordinal()}; the array is not copied
+	 */
+	public static ColdEmissionEvent createWithValues(double time, Id<Link> linkId, Id<Vehicle> vehicleId,
+			double[] coldEmissions) {
+		return new ColdEmissionEvent(time, linkId, vehicleId, null, coldEmissions);
 	}
 
 	public Id<Link> getLinkId() {
@@ -56,15 +73,41 @@ public class ColdEmissionEvent extends Event {
 		return vehicleId;
 	}
 	
+	/**
+	 * For events created from an array, the map is created on the first call.
+	 */
 	public Map<ColdPollutant, Double> getColdEmissions() {
+		if (coldEmissions == null && coldEmissionValues != null) {
+			Map<ColdPollutant, Double> map = new EnumMap<>(ColdPollutant.class);
+			for (ColdPollutant pollutant : ColdPollutant.values()) {
+				map.put(pollutant, coldEmissionValues[pollutant.ordinal()]);
+			}
+			coldEmissions = map;
+		}
 		return coldEmissions;
 	}
 
+	/**
+	 * Reads a single value without creating the map (if the event was created from an array).
+	 */
+	public double getColdEmission(ColdPollutant pollutant) {
+		if (coldEmissionValues != null) {
+			return coldEmissionValues[pollutant.ordinal()];
+		}
+		return coldEmissions.get(pollutant);
+	}
+
 	@Override
 	public Map<String, String> getAttributes(){
 		Map<String, String> attributes = super.getAttributes();
 		attributes.put(ATTRIBUTE_LINK_ID, this.linkId.toString());
 		attributes.put(ATTRIBUTE_VEHICLE_ID, this.vehicleId.toString());
+		if (coldEmissionValues != null) {
+			for (ColdPollutant pollutant : ColdPollutant.values()) {
+				attributes.put(pollutant.toString(), Double.toString(coldEmissionValues[pollutant.ordinal()]));
+			}
+			return attributes;
+		}
 		for(Entry<ColdPollutant, Double> entry : coldEmissions.entrySet()){
 			ColdPollutant pollutant = entry.getKey();
 			Double value = entry.getValue();
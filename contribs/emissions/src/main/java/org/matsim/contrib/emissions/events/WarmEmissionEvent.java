@@ -25,6 +25,7 @@ import org.matsim.api.core.v01.network.Link;
 import org.matsim.contrib.emissions.types.WarmPollutant;
 import org.matsim.vehicles.Vehicle;
 
+import java.util.EnumMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -39,13 +40,29 @@ public class WarmEmissionEvent extends Event {
     public final static String ATTRIBUTE_VEHICLE_ID = "vehicleId";
     private final Id<Link> linkId;
 	private final Id<Vehicle> vehicleId;
-	private final Map<WarmPollutant, Double> warmEmissions;
+	private Map<WarmPollutant, Double> warmEmissions;
+	private final double[] warmEmissionValues;
 	
 	public WarmEmissionEvent(double time, Id<Link> linkId, Id<Vehicle> vehicleId, Map<WarmPollutant, Double> warmEmissions) {
+		this(time, linkId, vehicleId, warmEmissions, null);
+	}
+
+	private WarmEmissionEvent(double time, Id<Link> linkId, Id<Vehicle> vehicleId, Map<WarmPollutant, Double> warmEmissions,
+			double[] warmEmissionValues) {
         super(time);
         this.linkId = linkId;
 		this.vehicleId = vehicleId;
 		this.warmEmissions = warmEmissions;
+		this.warmEmissionValues = warmEmissionValues;
+	}
+
+	/**
+	 * @param warmEmissions
+	 *            emissions indexed by {@link WarmPollutant#ordinal()}; the array is not copied
+	 */
+	public static WarmEmissionEvent createWithValues(double time, Id<Link> linkId, Id<Vehicle> vehicleId,
+			double[] warmEmissions) {
+		return new WarmEmissionEvent(time, linkId, vehicleId, null, warmEmissions);
 	}
 
 	public Id<Link> getLinkId() {
@@ -56,15 +73,41 @@ public class WarmEmissionEvent extends Event {
 		return vehicleId;
 	}
 	
+	/**
+	 * For events created from an array, the map is created on the first call.
+	 */
 	public Map<WarmPollutant, Double> getWarmEmissions() {
+		if (warmEmissions == null && warmEmissionValues != null) {
+			Map<WarmPollutant, Double> map = new EnumMap<>(WarmPollutant.class);
+			for (WarmPollutant pollutant : WarmPollutant.values()) {
+				map.put(pollutant, warmEmissionValues[pollutant.ordinal()]);
+			}
+			warmEmissions = map;
+		}
 		return warmEmissions;
 	}
 
+	/**
+	 * Reads a single value without creating the map (if the event was created from an array).
+	 */
+	public double getWarmEmission(WarmPollutant pollutant) {
+		if (warmEmissionValues != null) {
+			return warmEmissionValues[pollutant.ordinal()];
+		}
+		return warmEmissions.get(pollutant);
+	}
+
 	@Override
 	public Map<String, String> getAttributes(){
 		Map<String, String> attributes = super.getAttributes();
 		attributes.put(ATTRIBUTE_LINK_ID, this.linkId.toString());
 		attributes.put(ATTRIBUTE_VEHICLE_ID, this.vehicleId.toString());
+		if (warmEmissionValues != null) {
+			for (WarmPollutant pollutant : WarmPollutant.values()) {
+				attributes.put(pollutant.toString(), Double.toString(warmEmissionValues[pollutant.ordinal()]));
+			}
+			return attributes;
+		}
 		for(Entry<WarmPollutant, Double> entry : warmEmissions.entrySet()){
 			WarmPollutant pollutant = entry.getKey();
 			Double value = entry.getValue();
@@ -0,0 +1,123 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * HbefaColdEmissionFactorTable.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.emissions.types;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Cold emission factors of one HBEFA table (average or detailed) compiled into a flat array. Vehicles (i.e. vehicle
+ * category and attributes) are translated into indices once, e.g. per vehicle type; afterwards, reading a factor does
+ * not create any key objects nor compute any hash codes.
+ * <p>
+ * The array is laid out by vehicle, parking time [h], distance [km] and pollutant (in this order). Missing entries
+ * are stored as NaN.
+ */
+public class HbefaColdEmissionFactorTable {
+	private static final int POLLUTANTS = ColdPollutant.values().length;
+
+	private final Map<HbefaVehicleCategory, Map<HbefaVehicleAttributes, Integer>> vehicleIndices = new EnumMap<>(
+			HbefaVehicleCategory.class);
+	private final int maxParkingTime;
+	private final int maxDistance;
+
+	private final double[] factors;
+
+	public HbefaColdEmissionFactorTable(Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> table) {
+		int vehicleCount = 0;
+		int maxParkingTime = 0;
+		int maxDistance = 0;
+		for (HbefaColdEmissionFactorKey key : table.keySet()) {
+			if (!isComplete(key)) {
+				continue;// e.g. a component that is not a cold pollutant
+			}
+
+			Map<HbefaVehicleAttributes, Integer> attributesIndices = vehicleIndices.get(key.getHbefaVehicleCategory());
+			if (attributesIndices == null) {
+				attributesIndices = new HashMap<>();
+				vehicleIndices.put(key.getHbefaVehicleCategory(), attributesIndices);
+			}
+			if (!attributesIndices.containsKey(key.getHbefaVehicleAttributes())) {
+				attributesIndices.put(key.getHbefaVehicleAttributes(), vehicleCount++);
+			}
+			maxParkingTime = Math.max(maxParkingTime, key.getHbefaParkingTime());
+			maxDistance = Math.max(maxDistance, key.getHbefaDistance());
+		}
+		this.maxParkingTime = maxParkingTime;
+		this.maxDistance = maxDistance;
+
+		factors = new double[vehicleCount * (maxParkingTime + 1) * (maxDistance + 1) * POLLUTANTS];
+		Arrays.fill(factors, Double.NaN);
+
+		for (Entry<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> e : table.entrySet()) {
+			HbefaColdEmissionFactorKey key = e.getKey();
+			if (!isComplete(key)) {
+				continue;
+			}
+
+			int offset = getOffset(getVehicleIndex(key.getHbefaVehicleCategory(), key.getHbefaVehicleAttributes()),
+					key.getHbefaParkingTime(), key.getHbefaDistance());
+			factors[offset + key.getHbefaComponent().ordinal()] = e.getValue().getColdEmissionFactor();
+		}
+	}
+
+	private static boolean isComplete(HbefaColdEmissionFactorKey key) {
+		return key.getHbefaVehicleCategory() != null && key.getHbefaComponent() != null
+				&& key.getHbefaParkingTime() != null && key.getHbefaParkingTime() >= 0
+				&& key.getHbefaDistance() != null && key.getHbefaDistance() >= 0
+				&& key.getHbefaVehicleAttributes() != null;
+	}
+
+	/**
+	 * @return index of the vehicle, or -1 if the table contains no factors for this category and attributes
+	 */
+	public int getVehicleIndex(HbefaVehicleCategory vehicleCategory, HbefaVehicleAttributes vehicleAttributes) {
+		Map<HbefaVehicleAttributes, Integer> attributesIndices = vehicleIndices.get(vehicleCategory);
+		Integer idx = attributesIndices == null ? null : attributesIndices.get(vehicleAttributes);
+		return idx == null ? -1 : idx;
+	}
+
+	/**
+	 * @return position of the factors of all pollutants for the given vehicle, parking time and distance, or -1 if the
+	 *         vehicle is unknown (i.e. its index is -1) or the parking time or distance is out of the table's range
+	 */
+	public int getOffset(int vehicleIdx, int parkingTime_h, int distance_km) {
+		if (vehicleIdx == -1 || parkingTime_h < 0 || parkingTime_h > maxParkingTime || distance_km < 0
+				|| distance_km > maxDistance) {
+			return -1;
+		}
+		return ((vehicleIdx * (maxParkingTime + 1) + parkingTime_h) * (maxDistance + 1) + distance_km) * POLLUTANTS;
+	}
+
+	public boolean contains(int offset, ColdPollutant coldPollutant) {
+		return offset != -1 && !Double.isNaN(factors[offset + coldPollutant.ordinal()]);
+	}
+
+	/**
+	 * @return emission factor, or NaN if there is no entry
+	 */
+	public double getColdEmissionFactor(int offset, ColdPollutant coldPollutant) {
+		return offset == -1 ? Double.NaN : factors[offset + coldPollutant.ordinal()];
+	}
+}
@@ -0,0 +1,142 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * HbefaWarmEmissionFactorTable.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.emissions.types;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Warm emission factors and speeds of one HBEFA table (average or detailed) compiled into flat arrays. Vehicles (i.e.
+ * vehicle category and attributes) and road categories are translated into indices once, e.g. per vehicle type or
+ * per road type; afterwards, reading a factor does not create any key objects nor compute any hash codes.
+ * <p>
+ * The arrays are laid out by vehicle, road category, traffic situation and pollutant (in this order). Missing entries
+ * are stored as NaN.
+ */
+public class HbefaWarmEmissionFactorTable {
+	private static final int TRAFFIC_SITUATIONS = HbefaTrafficSituation.values().length;
+	private static final int POLLUTANTS = WarmPollutant.values().length;
+
+	private final Map<HbefaVehicleCategory, Map<HbefaVehicleAttributes, Integer>> vehicleIndices = new EnumMap<>(
+			HbefaVehicleCategory.class);
+	private final Map<String, Integer> roadCategoryIndices = new HashMap<>();
+	private final int roadCategoryCount;
+
+	private final double[] speeds;
+	private final double[] factors;
+
+	public HbefaWarmEmissionFactorTable(Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> table) {
+		int vehicleCount = 0;
+		for (HbefaWarmEmissionFactorKey key : table.keySet()) {
+			if (!isComplete(key)) {
+				continue;// e.g. a component that is not a warm pollutant
+			}
+
+			Map<HbefaVehicleAttributes, Integer> attributesIndices = vehicleIndices.get(key.getHbefaVehicleCategory());
+			if (attributesIndices == null) {
+				attributesIndices = new HashMap<>();
+				vehicleIndices.put(key.getHbefaVehicleCategory(), attributesIndices);
+			}
+			if (!attributesIndices.containsKey(key.getHbefaVehicleAttributes())) {
+				attributesIndices.put(key.getHbefaVehicleAttributes(), vehicleCount++);
+			}
+			if (!roadCategoryIndices.containsKey(key.getHbefaRoadCategory())) {
+				roadCategoryIndices.put(key.getHbefaRoadCategory(), roadCategoryIndices.size());
+			}
+		}
+		roadCategoryCount = roadCategoryIndices.size();
+
+		int size = vehicleCount * roadCategoryCount * TRAFFIC_SITUATIONS * POLLUTANTS;
+		speeds = new double[size];
+		factors = new double[size];
+		Arrays.fill(speeds, Double.NaN);
+		Arrays.fill(factors, Double.NaN);
+
+		for (Entry<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> e : table.entrySet()) {
+			HbefaWarmEmissionFactorKey key = e.getKey();
+			if (!isComplete(key)) {
+				continue;
+			}
+
+			int offset = getOffset(getVehicleIndex(key.getHbefaVehicleCategory(), key.getHbefaVehicleAttributes()),
+					getRoadCategoryIndex(key.getHbefaRoadCategory()), key.getHbefaTrafficSituation());
+			int idx = offset + key.getHbefaComponent().ordinal();
+			speeds[idx] = e.getValue().getSpeed();
+			factors[idx] = e.getValue().getWarmEmissionFactor();
+		}
+	}
+
+	private static boolean isComplete(HbefaWarmEmissionFactorKey key) {
+		return key.getHbefaVehicleCategory() != null && key.getHbefaComponent() != null
+				&& key.getHbefaRoadCategory() != null && key.getHbefaTrafficSituation() != null
+				&& key.getHbefaVehicleAttributes() != null;
+	}
+
+	/**
+	 * @return index of the vehicle, or -1 if the table contains no factors for this category and attributes
+	 */
+	public int getVehicleIndex(HbefaVehicleCategory vehicleCategory, HbefaVehicleAttributes vehicleAttributes) {
+		Map<HbefaVehicleAttributes, Integer> attributesIndices = vehicleIndices.get(vehicleCategory);
+		Integer idx = attributesIndices == null ? null : attributesIndices.get(vehicleAttributes);
+		return idx == null ? -1 : idx;
+	}
+
+	/**
+	 * @return index of the road category, or -1 if the table contains no factors for this road category
+	 */
+	public int getRoadCategoryIndex(String roadCategory) {
+		Integer idx = roadCategoryIndices.get(roadCategory);
+		return idx == null ? -1 : idx;
+	}
+
+	/**
+	 * @return position of the factors of all pollutants for the given vehicle, road category and traffic situation,
+	 *         or -1 if the vehicle or the road category is unknown (i.e. its index is -1)
+	 */
+	public int getOffset(int vehicleIdx, int roadCategoryIdx, HbefaTrafficSituation trafficSituation) {
+		if (vehicleIdx == -1 || roadCategoryIdx == -1) {
+			return -1;
+		}
+		return ((vehicleIdx * roadCategoryCount + roadCategoryIdx) * TRAFFIC_SITUATIONS + trafficSituation.ordinal())
+				* POLLUTANTS;
+	}
+
+	public boolean contains(int offset, WarmPollutant warmPollutant) {
+		return offset != -1 && !Double.isNaN(factors[offset + warmPollutant.ordinal()]);
+	}
+
+	/**
+	 * @return average speed [km/h], or NaN if there is no entry
+	 */
+	public double getSpeed(int offset, WarmPollutant warmPollutant) {
+		return offset == -1 ? Double.NaN : speeds[offset + warmPollutant.ordinal()];
+	}
+
+	/**
+	 * @return emission factor [g/km], or NaN if there is no entry
+	 */
+	public double getWarmEmissionFactor(int offset, WarmPollutant warmPollutant) {
+		return offset == -1 ? Double.NaN : factors[offset + warmPollutant.ordinal()];
+	}
+}
@@ -0,0 +1,128 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EmissionGrid.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.emissions.utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Raster of square cells covering the network. The emissions of a link (see {@link LinkEmissionAggregator}) are
+ * assigned to the cell that contains the link's coordinate (i.e. its middle).
+ */
+public class EmissionGrid {
+	private final Network network;
+	private final double minX;
+	private final double minY;
+	private final double cellSize;
+	private final int cols;
+	private final int rows;
+
+	public EmissionGrid(Network network, double cellSize) {
+		if (!(cellSize > 0)) {
+			throw new IllegalArgumentException("cellSize must be positive: " + cellSize);
+		}
+
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (Node n : network.getNodes().values()) {
+			minX = Math.min(minX, n.getCoord().getX());
+			minY = Math.min(minY, n.getCoord().getY());
+			maxX = Math.max(maxX, n.getCoord().getX());
+			maxY = Math.max(maxY, n.getCoord().getY());
+		}
+
+		this.network = network;
+		this.minX = minX;
+		this.minY = minY;
+		this.cellSize = cellSize;
+		cols = Math.max(1, (int)Math.ceil((maxX - minX) / cellSize));
+		rows = Math.max(1, (int)Math.ceil((maxY - minY) / cellSize));
+	}
+
+	public int getCell(Coord coord) {
+		int col = Math.max(0, Math.min(cols - 1, (int)Math.floor((coord.getX() - minX) / cellSize)));
+		int row = Math.max(0, Math.min(rows - 1, (int)Math.floor((coord.getY() - minY) / cellSize)));
+		return row * cols + col;
+	}
+
+	/**
+	 * @return emissions per cell, laid out as in {@link LinkEmissionAggregator} (null for cells without emissions)
+	 */
+	public double[][] aggregate(LinkEmissionAggregator aggregator) {
+		double[][] cellEmissions = new double[rows * cols][];
+		List<Id<Link>> linkIds = aggregator.getLinkIds();
+		for (int i = 0; i < linkIds.size(); i++) {
+			double[] linkEmissions = aggregator.getLinkEmissions(i);
+			if (linkEmissions == null) {
+				continue;
+			}
+
+			int cell = getCell(network.getLinks().get(linkIds.get(i)).getCoord());
+			double[] emissions = cellEmissions[cell];
+			if (emissions == null) {
+				emissions = cellEmissions[cell] = new double[linkEmissions.length];
+			} else if (emissions.length < linkEmissions.length) {
+				emissions = cellEmissions[cell] = Arrays.copyOf(emissions, linkEmissions.length);
+			}
+			for (int j = 0; j < linkEmissions.length; j++) {
+				emissions[j] += linkEmissions[j];
+			}
+		}
+		return cellEmissions;
+	}
+
+	/**
+	 * Writes one line (with the coordinates of the cell centre) per cell and time bin with non-zero emissions.
+	 */
+	public void writeGridEmissions(LinkEmissionAggregator aggregator, String file) {
+		double[][] cellEmissions = aggregate(aggregator);
+		try (BufferedWriter bw = IOUtils.getBufferedWriter(file)) {
+			bw.write("x\ty\ttimeBinStart");
+			for (String pollutant : LinkEmissionAggregator.getPollutants()) {
+				bw.write("\t" + pollutant + "[g]");
+			}
+			bw.newLine();
+
+			for (int cell = 0; cell < cellEmissions.length; cell++) {
+				if (cellEmissions[cell] != null) {
+					double x = minX + (cell % cols + 0.5) * cellSize;
+					double y = minY + (cell / cols + 0.5) * cellSize;
+					LinkEmissionAggregator.writeTimeBins(bw, x + "\t" + y, cellEmissions[cell],
+							aggregator.getTimeBinSize());
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
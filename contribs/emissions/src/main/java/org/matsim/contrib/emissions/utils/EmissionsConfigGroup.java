@@ -62,6 +62,15 @@ extends ReflectiveConfigGroup
 	private static final String CONSIDERING_CO2_COSTS = "consideringCO2Costs";
 	private boolean consideringCO2Costs = false;
 
+	private static final String AGGREGATING_EMISSIONS = "isAggregatingEmissions";
+	private boolean isAggregatingEmissions = false;
+
+	private static final String EMISSION_AGGREGATION_TIME_BIN_SIZE = "emissionAggregationTimeBinSize";
+	private double emissionAggregationTimeBinSize = 3600.;
+
+	private static final String EMISSION_GRID_CELL_SIZE = "emissionGridCellSize";
+	private double emissionGridCellSize = 0.;
+
 	static final String EMISSION_ROADTYPE_MAPPING_FILE_CMT = "REQUIRED: mapping from input road types to HBEFA 3.1 road type strings";
 	static final String EMISSION_FACTORS_WARM_FILE_AVERAGE_CMT = "REQUIRED: file with HBEFA 3.1 fleet average warm emission factors";
 	static final String EMISSION_FACTORS_COLD_FILE_AVERAGE_CMT = "REQUIRED: file with HBEFA 3.1 fleet average cold emission factors";
@@ -87,6 +96,16 @@ extends ReflectiveConfigGroup
 
 	static final String CONSIDERING_CO2_COSTS_CMT = "if true, only flat emissions will be considered irrespective of pricing either flat air pollution or exposure of air pollution.";
 
+	static final String AGGREGATING_EMISSIONS_CMT = "if true, emissions are calculated in parallel (vehicles are partitioned among global.numberOfThreads threads) " +
+			"and summed up per link and time bin instead of throwing emission events (no emission events are thrown or written, " +
+			"irrespective of " + WRITING_EMISSIONS_EVENTS + "). " +
+			"The sums are written to the iteration directories by the EmissionAggregationControlerListener (linkEmissions.txt.gz).";
+
+	static final String EMISSION_AGGREGATION_TIME_BIN_SIZE_CMT = "time bin size [s] for aggregating emissions; only used if " + AGGREGATING_EMISSIONS + " is true.";
+
+	static final String EMISSION_GRID_CELL_SIZE_CMT = "if positive, aggregated emissions are additionally summed up per square grid cell of this size [m] " +
+			"(gridEmissions.txt.gz); only used if " + AGGREGATING_EMISSIONS + " is true.";
+
 	@Override
 	public Map<String, String> getComments() {
 		Map<String,String> map = super.getComments();
@@ -114,6 +133,12 @@ extends ReflectiveConfigGroup
 
 		map.put(CONSIDERING_CO2_COSTS, CONSIDERING_CO2_COSTS_CMT);
 
+		map.put(AGGREGATING_EMISSIONS, AGGREGATING_EMISSIONS_CMT);
+
+		map.put(EMISSION_AGGREGATION_TIME_BIN_SIZE, EMISSION_AGGREGATION_TIME_BIN_SIZE_CMT);
+
+		map.put(EMISSION_GRID_CELL_SIZE, EMISSION_GRID_CELL_SIZE_CMT);
+
 		return map;
 	}
 
@@ -272,4 +297,37 @@ extends ReflectiveConfigGroup
 	public void setConsideringCO2Costs(boolean consideringCO2Costs) {
 		this.consideringCO2Costs = consideringCO2Costs;
 	}
+	@StringGetter(AGGREGATING_EMISSIONS)
+	public boolean isAggregatingEmissions() {
+		return isAggregatingEmissions;
+	}
+	/**
+	 * @param aggregatingEmissions -- {@value #AGGREGATING_EMISSIONS_CMT}
+	 */
+	@StringSetter(AGGREGATING_EMISSIONS)
+	public void setAggregatingEmissions(boolean aggregatingEmissions) {
+		this.isAggregatingEmissions = aggregatingEmissions;
+	}
+	@StringGetter(EMISSION_AGGREGATION_TIME_BIN_SIZE)
+	public double getEmissionAggregationTimeBinSize() {
+		return emissionAggregationTimeBinSize;
+	}
+	/**
+	 * @param emissionAggregationTimeBinSize -- {@value #EMISSION_AGGREGATION_TIME_BIN_SIZE_CMT}
+	 */
+	@StringSetter(EMISSION_AGGREGATION_TIME_BIN_SIZE)
+	public void setEmissionAggregationTimeBinSize(double emissionAggregationTimeBinSize) {
+		this.emissionAggregationTimeBinSize = emissionAggregationTimeBinSize;
+	}
+	@StringGetter(EMISSION_GRID_CELL_SIZE)
+	public double getEmissionGridCellSize() {
+		return emissionGridCellSize;
+	}
+	/**
+	 * @param emissionGridCellSize -- {@value #EMISSION_GRID_CELL_SIZE_CMT}
+	 */
+	@StringSetter(EMISSION_GRID_CELL_SIZE)
+	public void setEmissionGridCellSize(double emissionGridCellSize) {
+		this.emissionGridCellSize = emissionGridCellSize;
+	}
 }
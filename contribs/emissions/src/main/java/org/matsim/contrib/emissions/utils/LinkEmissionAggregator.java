@@ -0,0 +1,278 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LinkEmissionAggregator.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.emissions.utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.contrib.emissions.types.ColdPollutant;
+import org.matsim.contrib.emissions.types.WarmPollutant;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Sums up emissions per link, time bin and pollutant in primitive arrays. Warm and cold emissions of the same
+ * pollutant are added up (as in {@link EmissionUtils#sumUpEmissions}). The array of a link is created with the first
+ * emission on that link and grows with the time bins used.
+ * <p>
+ * Not thread-safe; each thread should use its own copy (see {@link #createEmptyCopy()}), and the copies are summed up
+ * with {@link #add(LinkEmissionAggregator)} afterwards.
+ */
+public class LinkEmissionAggregator {
+	private static final List<String> POLLUTANTS;
+	private static final int[] WARM_POLLUTANT_INDICES;// by WarmPollutant.ordinal()
+	private static final int[] COLD_POLLUTANT_INDICES;// by ColdPollutant.ordinal()
+
+	static {
+		SortedSet<String> pollutants = new TreeSet<>();
+		for (WarmPollutant wp : WarmPollutant.values()) {
+			pollutants.add(wp.toString());
+		}
+		for (ColdPollutant cp : ColdPollutant.values()) {
+			pollutants.add(cp.toString());
+		}
+		POLLUTANTS = Collections.unmodifiableList(Arrays.asList(pollutants.toArray(new String[pollutants.size()])));
+
+		WARM_POLLUTANT_INDICES = new int[WarmPollutant.values().length];
+		for (WarmPollutant wp : WarmPollutant.values()) {
+			WARM_POLLUTANT_INDICES[wp.ordinal()] = POLLUTANTS.indexOf(wp.toString());
+		}
+		COLD_POLLUTANT_INDICES = new int[ColdPollutant.values().length];
+		for (ColdPollutant cp : ColdPollutant.values()) {
+			COLD_POLLUTANT_INDICES[cp.ordinal()] = POLLUTANTS.indexOf(cp.toString());
+		}
+	}
+
+	private static final int POLLUTANT_COUNT = POLLUTANTS.size();
+
+	private final List<Id<Link>> linkIds;
+	private final Map<Id<Link>, Integer> linkIndices;
+	private final double timeBinSize;
+
+	// emissions of link i are stored at emissions[i][timeBin * POLLUTANT_COUNT + pollutantIdx]
+	private final double[][] emissions;
+
+	public LinkEmissionAggregator(Network network, double timeBinSize) {
+		this(createLinkIds(network), timeBinSize);
+	}
+
+	private LinkEmissionAggregator(List<Id<Link>> linkIds, double timeBinSize) {
+		this(linkIds, createLinkIndices(linkIds), timeBinSize);
+	}
+
+	private LinkEmissionAggregator(List<Id<Link>> linkIds, Map<Id<Link>, Integer> linkIndices, double timeBinSize) {
+		if (!(timeBinSize > 0)) {
+			throw new IllegalArgumentException("timeBinSize must be positive: " + timeBinSize);
+		}
+
+		this.linkIds = linkIds;
+		this.linkIndices = linkIndices;
+		this.timeBinSize = timeBinSize;
+		emissions = new double[linkIds.size()][];
+	}
+
+	private static List<Id<Link>> createLinkIds(Network network) {
+		return Collections.unmodifiableList(new ArrayList<>(network.getLinks().keySet()));
+	}
+
+	private static Map<Id<Link>, Integer> createLinkIndices(List<Id<Link>> linkIds) {
+		Map<Id<Link>, Integer> linkIndices = new HashMap<>();
+		for (int i = 0; i < linkIds.size(); i++) {
+			linkIndices.put(linkIds.get(i), i);
+		}
+		return linkIndices;
+	}
+
+	/**
+	 * @return an empty aggregator for the same links and time bins (the link index is shared)
+	 */
+	public LinkEmissionAggregator createEmptyCopy() {
+		return new LinkEmissionAggregator(linkIds, linkIndices, timeBinSize);
+	}
+
+	/**
+	 * @return names of the pollutants (warm and cold), sorted alphabetically
+	 */
+	public static List<String> getPollutants() {
+		return POLLUTANTS;
+	}
+
+	/**
+	 * @param warmEmissions
+	 *            emissions indexed by {@link WarmPollutant#ordinal()}
+	 */
+	public void addWarmEmissions(Id<Link> linkId, double time, double[] warmEmissions) {
+		double[] linkEmissions = getLinkEmissions(linkId, time);
+		int offset = getTimeBin(time) * POLLUTANT_COUNT;
+		for (int i = 0; i < warmEmissions.length; i++) {
+			linkEmissions[offset + WARM_POLLUTANT_INDICES[i]] += warmEmissions[i];
+		}
+	}
+
+	/**
+	 * @param coldEmissions
+	 *            emissions indexed by {@link ColdPollutant#ordinal()}
+	 */
+	public void addColdEmissions(Id<Link> linkId, double time, double[] coldEmissions) {
+		double[] linkEmissions = getLinkEmissions(linkId, time);
+		int offset = getTimeBin(time) * POLLUTANT_COUNT;
+		for (int i = 0; i < coldEmissions.length; i++) {
+			linkEmissions[offset + COLD_POLLUTANT_INDICES[i]] += coldEmissions[i];
+		}
+	}
+
+	private double[] getLinkEmissions(Id<Link> linkId, double time) {
+		Integer linkIdx = linkIndices.get(linkId);
+		if (linkIdx == null) {
+			throw new IllegalArgumentException("Link " + linkId + " is not in the network");
+		}
+
+		int requiredLength = (getTimeBin(time) + 1) * POLLUTANT_COUNT;
+		double[] linkEmissions = emissions[linkIdx];
+		if (linkEmissions == null) {
+			linkEmissions = emissions[linkIdx] = new double[requiredLength];
+		} else if (linkEmissions.length < requiredLength) {
+			linkEmissions = emissions[linkIdx] = Arrays.copyOf(linkEmissions, requiredLength);
+		}
+		return linkEmissions;
+	}
+
+	public int getTimeBin(double time) {
+		return Math.max(0, (int)(time / timeBinSize));
+	}
+
+	public double getTimeBinSize() {
+		return timeBinSize;
+	}
+
+	/**
+	 * @return the sum of all emissions of the pollutant on the link in the time bin [g]
+	 */
+	public double getEmission(Id<Link> linkId, int timeBin, String pollutant) {
+		Integer linkIdx = linkIndices.get(linkId);
+		int pollutantIdx = POLLUTANTS.indexOf(pollutant);
+		if (linkIdx == null || pollutantIdx == -1) {
+			return 0;
+		}
+
+		double[] linkEmissions = emissions[linkIdx];
+		int idx = timeBin * POLLUTANT_COUNT + pollutantIdx;
+		return linkEmissions == null || idx >= linkEmissions.length ? 0 : linkEmissions[idx];
+	}
+
+	List<Id<Link>> getLinkIds() {
+		return linkIds;
+	}
+
+	/**
+	 * @return emissions of the i-th link (see {@link #getLinkIds()}), or null if there are none
+	 */
+	double[] getLinkEmissions(int linkIdx) {
+		return emissions[linkIdx];
+	}
+
+	/**
+	 * Adds up the emissions of another aggregator created for the same links and time bins.
+	 */
+	public void add(LinkEmissionAggregator other) {
+		if (other.linkIds != linkIds || other.timeBinSize != timeBinSize) {
+			throw new IllegalArgumentException("Aggregators must be created with createEmptyCopy()");
+		}
+
+		for (int i = 0; i < emissions.length; i++) {
+			double[] otherEmissions = other.emissions[i];
+			if (otherEmissions == null) {
+				continue;
+			}
+
+			double[] linkEmissions = emissions[i];
+			if (linkEmissions == null) {
+				linkEmissions = emissions[i] = new double[otherEmissions.length];
+			} else if (linkEmissions.length < otherEmissions.length) {
+				linkEmissions = emissions[i] = Arrays.copyOf(linkEmissions, otherEmissions.length);
+			}
+			for (int j = 0; j < otherEmissions.length; j++) {
+				linkEmissions[j] += otherEmissions[j];
+			}
+		}
+	}
+
+	public void reset() {
+		Arrays.fill(emissions, null);
+	}
+
+	/**
+	 * Writes one line per link and time bin with non-zero emissions.
+	 */
+	public void writeLinkEmissions(String file) {
+		try (BufferedWriter bw = IOUtils.getBufferedWriter(file)) {
+			bw.write("linkId\ttimeBinStart");
+			for (String pollutant : POLLUTANTS) {
+				bw.write("\t" + pollutant + "[g]");
+			}
+			bw.newLine();
+
+			for (int i = 0; i < emissions.length; i++) {
+				double[] linkEmissions = emissions[i];
+				if (linkEmissions != null) {
+					writeTimeBins(bw, linkIds.get(i).toString(), linkEmissions, timeBinSize);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	static void writeTimeBins(BufferedWriter bw, String prefix, double[] values, double timeBinSize)
+			throws IOException {
+		for (int offset = 0; offset < values.length; offset += POLLUTANT_COUNT) {
+			if (isZero(values, offset)) {
+				continue;
+			}
+
+			bw.write(prefix + "\t" + (offset / POLLUTANT_COUNT) * timeBinSize);
+			for (int p = 0; p < POLLUTANT_COUNT; p++) {
+				bw.write("\t" + values[offset + p]);
+			}
+			bw.newLine();
+		}
+	}
+
+	private static boolean isZero(double[] values, int offset) {
+		for (int p = 0; p < POLLUTANT_COUNT; p++) {
+			if (values[offset + p] != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,232 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EmissionAggregationTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.emissions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.emissions.events.ColdEmissionEvent;
+import org.matsim.contrib.emissions.events.ColdEmissionEventHandler;
+import org.matsim.contrib.emissions.events.WarmEmissionEvent;
+import org.matsim.contrib.emissions.events.WarmEmissionEventHandler;
+import org.matsim.contrib.emissions.types.ColdPollutant;
+import org.matsim.contrib.emissions.types.WarmPollutant;
+import org.matsim.contrib.emissions.utils.EmissionsConfigGroup;
+import org.matsim.contrib.emissions.utils.LinkEmissionAggregator;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Compares the emissions aggregated by {@link ParallelEmissionHandler} with the sums of the emission events thrown if
+ * emissions are not aggregated.
+ */
+public class EmissionAggregationTest {
+	private static final String CONFIG_FILE = "./test/input/org/matsim/contrib/emissions/config_v2.xml";
+	private static final double TIME_BIN_SIZE = 900;
+
+	private Scenario scenario;
+	private List<Event> events;
+
+	@Before
+	public void init() {
+		Config config = ConfigUtils.loadConfig(CONFIG_FILE, new EmissionsConfigGroup());
+		EmissionsConfigGroup ecg = (EmissionsConfigGroup)config.getModules().get(EmissionsConfigGroup.GROUP_NAME);
+		ecg.setEmissionAggregationTimeBinSize(TIME_BIN_SIZE);
+		config.global().setNumberOfThreads(3);
+		scenario = ScenarioUtils.loadScenario(config);
+		events = createEvents(new Random(4711));
+	}
+
+	@Test
+	public void testAggregatedEmissionsEqualEmissionEvents() {
+		LinkEmissionAggregator expected = sumUpEmissionEvents();
+
+		EmissionsConfigGroup ecg = (EmissionsConfigGroup)scenario.getConfig().getModules()
+				.get(EmissionsConfigGroup.GROUP_NAME);
+		ecg.setAggregatingEmissions(true);
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		final int[] emissionEventCount = { 0 };
+		eventsManager.addHandler(new WarmEmissionEventHandler() {
+			@Override
+			public void handleEvent(WarmEmissionEvent event) {
+				emissionEventCount[0]++;
+			}
+
+			@Override
+			public void reset(int iteration) {
+			}
+		});
+		EmissionModule emissionModule = new EmissionModule(scenario, eventsManager);
+
+		// first iteration
+		processEvents(eventsManager);
+		assertEmissionsEqual(expected, emissionModule.finishEmissionAggregation());
+		Assert.assertEquals(0, emissionEventCount[0]);
+		assertNoWorkerThreads();
+
+		// second iteration: the handlers and aggregators are reset, the workers are started again
+		eventsManager.resetHandlers(1);
+		processEvents(eventsManager);
+		assertEmissionsEqual(expected, emissionModule.finishEmissionAggregation());
+		assertNoWorkerThreads();
+	}
+
+	private LinkEmissionAggregator sumUpEmissionEvents() {
+		EmissionModule emissionModule = new EmissionModule(scenario, EventsUtils.createEventsManager());
+
+		final LinkEmissionAggregator sums = new LinkEmissionAggregator(scenario.getNetwork(), TIME_BIN_SIZE);
+		final int[] emissionEventCounts = { 0, 0 };
+		emissionModule.getEmissionEventsManager().addHandler(new WarmEmissionEventHandler() {
+			@Override
+			public void handleEvent(WarmEmissionEvent event) {
+				double[] emissions = new double[WarmPollutant.values().length];
+				for (Map.Entry<WarmPollutant, Double> e : event.getWarmEmissions().entrySet()) {
+					emissions[e.getKey().ordinal()] = e.getValue();
+				}
+				sums.addWarmEmissions(event.getLinkId(), event.getTime(), emissions);
+				emissionEventCounts[0]++;
+			}
+
+			@Override
+			public void reset(int iteration) {
+			}
+		});
+		emissionModule.getEmissionEventsManager().addHandler(new ColdEmissionEventHandler() {
+			@Override
+			public void handleEvent(ColdEmissionEvent event) {
+				double[] emissions = new double[ColdPollutant.values().length];
+				for (Map.Entry<ColdPollutant, Double> e : event.getColdEmissions().entrySet()) {
+					emissions[e.getKey().ordinal()] = e.getValue();
+				}
+				sums.addColdEmissions(event.getLinkId(), event.getTime(), emissions);
+				emissionEventCounts[1]++;
+			}
+
+			@Override
+			public void reset(int iteration) {
+			}
+		});
+
+		processEvents(emissionModule.getEmissionEventsManager());
+
+		// make sure both warm and cold emissions are compared
+		Assert.assertTrue(emissionEventCounts[0] > 0);
+		Assert.assertTrue(emissionEventCounts[1] > 0);
+		return sums;
+	}
+
+	private void processEvents(EventsManager eventsManager) {
+		eventsManager.initProcessing();
+		for (Event event : events) {
+			eventsManager.processEvent(event);
+		}
+		eventsManager.finishProcessing();
+	}
+
+	private void assertEmissionsEqual(LinkEmissionAggregator expected, LinkEmissionAggregator actual) {
+		int binCount = (int)(30 * 3600 / TIME_BIN_SIZE);
+		int nonZeroCount = 0;
+		for (Id<Link> linkId : scenario.getNetwork().getLinks().keySet()) {
+			for (int bin = 0; bin < binCount; bin++) {
+				for (String pollutant : LinkEmissionAggregator.getPollutants()) {
+					double expectedEmission = expected.getEmission(linkId, bin, pollutant);
+					Assert.assertEquals(linkId + " " + bin + " " + pollutant, expectedEmission,
+							actual.getEmission(linkId, bin, pollutant), Math.abs(expectedEmission) * 1e-12);
+					if (expectedEmission != 0) {
+						nonZeroCount++;
+					}
+				}
+			}
+		}
+		Assert.assertTrue(nonZeroCount > 0);
+	}
+
+	private void assertNoWorkerThreads() {
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			Assert.assertFalse(thread.getName(), thread.isAlive() && thread.getName().startsWith("emissions-"));
+		}
+	}
+
+	// two car trips per vehicle (the second one after parking for some hours) along random paths
+	private List<Event> createEvents(Random random) {
+		List<Event> events = new ArrayList<>();
+		List<Link> links = new ArrayList<>(scenario.getNetwork().getLinks().values());
+		for (Id<Vehicle> vehicleId : scenario.getVehicles().getVehicles().keySet()) {
+			Id<Person> personId = Id.createPersonId(vehicleId);
+			Link link = links.get(random.nextInt(links.size()));
+			double time = 6 * 3600 + random.nextInt(3600);
+			for (int trip = 0; trip < 2; trip++) {
+				Link departureLink = link;
+				events.add(new VehicleEntersTrafficEvent(time, personId, link.getId(), vehicleId, TransportMode.car,
+						1.0));
+				int linkCount = 5 + random.nextInt(15);
+				for (int i = 0; i < linkCount; i++) {
+					time++;
+					events.add(new LinkLeaveEvent(time, vehicleId, link.getId()));
+					List<Link> outLinks = new ArrayList<>(link.getToNode().getOutLinks().values());
+					// WarmEmissionHandler does not expect the departure link to be entered again during the trip
+					outLinks.remove(departureLink);
+					if (outLinks.isEmpty()) {
+						time--;
+						events.remove(events.size() - 1);
+						break;
+					}
+					link = outLinks.get(random.nextInt(outLinks.size()));
+					events.add(new LinkEnterEvent(time, vehicleId, link.getId()));
+					// between free flow and stop&go
+					time += Math.ceil(link.getLength() / link.getFreespeed() * (1 + 3 * random.nextDouble()));
+				}
+				events.add(new VehicleLeavesTrafficEvent(time, personId, link.getId(), vehicleId, TransportMode.car,
+						1.0));
+				time += 3600 * (1 + random.nextInt(10));
+			}
+		}
+
+		Collections.sort(events, new Comparator<Event>() {
+			@Override
+			public int compare(Event e1, Event e2) {
+				return Double.compare(e1.getTime(), e2.getTime());// stable, so the order of a vehicle's events is kept
+			}
+		});
+		return events;
+	}
+}
@@ -75,6 +75,36 @@ public class TestWarmEmissionEventImpl {
 		Assert.assertEquals("the SO2 value of this warm emission event was "+ Double.parseDouble(weg.get("SO2"))+ "but should have been "+ so, Double.parseDouble(weg.get("SO2")), so, MatsimTestUtils.EPSILON);
 	}
 
+	@Test
+	public final void testCreateWithValues(){
+		//an event created from an array should behave like one created from the equivalent map
+		Map<WarmPollutant, Double> warmEmissionsMap = new HashMap<>();
+		setWarmEmissions(warmEmissionsMap);
+		double[] warmEmissionValues = new double[WarmPollutant.values().length];
+		for (WarmPollutant wp : WarmPollutant.values()) {
+			warmEmissionValues[wp.ordinal()] = warmEmissionsMap.get(wp);
+		}
+
+		WarmEmissionEvent fromMap = new WarmEmissionEvent(0.0, linkId, vehicleId, warmEmissionsMap);
+		WarmEmissionEvent fromValues = WarmEmissionEvent.createWithValues(0.0, linkId, vehicleId, warmEmissionValues);
+
+		for (WarmPollutant wp : WarmPollutant.values()) {
+			Assert.assertEquals(warmEmissionsMap.get(wp), fromValues.getWarmEmission(wp), MatsimTestUtils.EPSILON);
+			Assert.assertEquals(fromMap.getWarmEmission(wp), fromValues.getWarmEmission(wp), MatsimTestUtils.EPSILON);
+			Assert.assertEquals(warmEmissionsMap.get(wp), fromValues.getWarmEmissions().get(wp), MatsimTestUtils.EPSILON);
+		}
+		Assert.assertEquals(WarmPollutant.values().length, fromValues.getWarmEmissions().size());
+		Assert.assertSame("the map should be created only once", fromValues.getWarmEmissions(), fromValues.getWarmEmissions());
+
+		Map<String, String> attributesFromMap = fromMap.getAttributes();
+		Map<String, String> attributesFromValues = fromValues.getAttributes();
+		Assert.assertEquals(attributesFromMap.keySet(), attributesFromValues.keySet());
+		for (WarmPollutant wp : WarmPollutant.values()) {
+			Assert.assertEquals(Double.parseDouble(attributesFromMap.get(wp.toString())),
+					Double.parseDouble(attributesFromValues.get(wp.toString())), MatsimTestUtils.EPSILON);
+		}
+	}
+
 	private void setWarmEmissions(Map<WarmPollutant, Double> warmEmissionsMap) {
 		warmEmissionsMap.put(WarmPollutant.CO, co);
 		warmEmissionsMap.put(WarmPollutant.CO2_TOTAL, c2);
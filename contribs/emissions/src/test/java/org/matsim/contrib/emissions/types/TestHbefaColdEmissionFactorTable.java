@@ -0,0 +1,174 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TestHbefaColdEmissionFactorTable.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.emissions.types;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/*
+ * test for org.matsim.contrib.emissions.types.HbefaColdEmissionFactorTable
+ * 1 every lookup in the compiled table gives the same result as the lookup in the map it was compiled from,
+ *   including parking times and distances out of the table's range
+ * 2 unknown vehicles
+ * 3 choosing between the detailed and the average table gives the same factors as with the maps
+ */
+public class TestHbefaColdEmissionFactorTable {
+
+	private static final HbefaVehicleCategory[] VEHICLE_CATEGORIES = { HbefaVehicleCategory.PASSENGER_CAR,
+			HbefaVehicleCategory.HEAVY_GOODS_VEHICLE };
+	private static final int MAX_PARKING_TIME = 12;
+	private static final int MAX_DISTANCE = 2;
+
+	private final List<HbefaVehicleAttributes> vehicleAttributes = new ArrayList<>();
+
+	private void setUp() {
+		vehicleAttributes.add(new HbefaVehicleAttributes());
+		vehicleAttributes.add(TestHbefaWarmEmissionFactorTable.createAttributes("PC petrol <1,4L", "<1,4L", "PC-P-Euro-4"));
+		vehicleAttributes.add(TestHbefaWarmEmissionFactorTable.createAttributes("PC diesel", ">=2L", "PC-D-Euro-3"));
+	}
+
+	@Test
+	public final void testCompiledTableMatchesMap() {
+		setUp();
+		Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> map = createTable(new Random(4711), 0.7);
+		HbefaColdEmissionFactorTable table = new HbefaColdEmissionFactorTable(map);
+
+		for (HbefaVehicleCategory category : VEHICLE_CATEGORIES) {
+			for (HbefaVehicleAttributes attributes : vehicleAttributes) {
+				int vehicleIdx = table.getVehicleIndex(category, attributes);
+				for (int parkingTime = -1; parkingTime <= MAX_PARKING_TIME + 1; parkingTime++) {
+					for (int distance = -1; distance <= MAX_DISTANCE + 1; distance++) {
+						int offset = table.getOffset(vehicleIdx, parkingTime, distance);
+						for (ColdPollutant pollutant : ColdPollutant.values()) {
+							HbefaColdEmissionFactor expected = map.get(
+									createKey(category, attributes, parkingTime, distance, pollutant));
+							String message = category + " " + attributes + " " + parkingTime + "h " + distance + "km "
+									+ pollutant;
+							Assert.assertEquals(message, expected != null, table.contains(offset, pollutant));
+							if (expected == null) {
+								Assert.assertTrue(message, Double.isNaN(table.getColdEmissionFactor(offset, pollutant)));
+							} else {
+								Assert.assertEquals(message, expected.getColdEmissionFactor(),
+										table.getColdEmissionFactor(offset, pollutant), 0.);
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public final void testUnknownVehicle() {
+		setUp();
+		HbefaColdEmissionFactorTable table = new HbefaColdEmissionFactorTable(createTable(new Random(4711), 1.));
+
+		Assert.assertEquals(-1, table.getVehicleIndex(HbefaVehicleCategory.MOTORCYCLE, new HbefaVehicleAttributes()));
+		Assert.assertEquals(-1, table.getVehicleIndex(HbefaVehicleCategory.PASSENGER_CAR,
+				TestHbefaWarmEmissionFactorTable.createAttributes("unknown technology", "unknown concept",
+						"unknown size class")));
+		Assert.assertEquals(-1, table.getOffset(-1, 0, 0));
+		Assert.assertFalse(table.contains(-1, ColdPollutant.CO));
+		Assert.assertTrue(Double.isNaN(table.getColdEmissionFactor(-1, ColdPollutant.CO)));
+	}
+
+	@Test
+	public final void testFallbackToAverageTable() {
+		// same rule as in the ColdEmissionAnalysisModule: the detailed factor is used if there is an entry, otherwise
+		// the average factor of the same key
+		setUp();
+		Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> avgMap = createTable(new Random(1), 1.);
+		Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> detailedMap = createTable(new Random(2), 0.6);
+		HbefaColdEmissionFactorTable avgTable = new HbefaColdEmissionFactorTable(avgMap);
+		HbefaColdEmissionFactorTable detailedTable = new HbefaColdEmissionFactorTable(detailedMap);
+
+		int detailedLookups = 0;
+		int avgLookups = 0;
+		for (HbefaVehicleCategory category : VEHICLE_CATEGORIES) {
+			for (HbefaVehicleAttributes attributes : vehicleAttributes) {
+				int detailedVehicleIdx = detailedTable.getVehicleIndex(category, attributes);
+				int avgVehicleIdx = avgTable.getVehicleIndex(category, attributes);
+				for (int parkingTime = 0; parkingTime <= MAX_PARKING_TIME; parkingTime++) {
+					for (int distance = 0; distance <= MAX_DISTANCE; distance++) {
+						int detailedOffset = detailedTable.getOffset(detailedVehicleIdx, parkingTime, distance);
+						int avgOffset = avgTable.getOffset(avgVehicleIdx, parkingTime, distance);
+						for (ColdPollutant pollutant : ColdPollutant.values()) {
+							HbefaColdEmissionFactorKey key = createKey(category, attributes, parkingTime, distance,
+									pollutant);
+
+							HbefaColdEmissionFactor expected;
+							if (detailedMap.containsKey(key)) {
+								expected = detailedMap.get(key);
+								detailedLookups++;
+							} else {
+								expected = avgMap.get(key);
+								avgLookups++;
+							}
+							double factor = detailedTable.contains(detailedOffset, pollutant)
+									? detailedTable.getColdEmissionFactor(detailedOffset, pollutant)
+									: avgTable.getColdEmissionFactor(avgOffset, pollutant);
+							Assert.assertEquals(key.toString(), expected.getColdEmissionFactor(), factor, 0.);
+						}
+					}
+				}
+			}
+		}
+		Assert.assertTrue("no lookup in the detailed table", detailedLookups > 0);
+		Assert.assertTrue("no fallback to the average table", avgLookups > 0);
+	}
+
+	private Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> createTable(Random random, double share) {
+		Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> table = new HashMap<>();
+		for (HbefaVehicleCategory category : VEHICLE_CATEGORIES) {
+			for (HbefaVehicleAttributes attributes : vehicleAttributes) {
+				for (int parkingTime = 0; parkingTime <= MAX_PARKING_TIME; parkingTime++) {
+					for (int distance = 0; distance <= MAX_DISTANCE; distance++) {
+						for (ColdPollutant pollutant : ColdPollutant.values()) {
+							if (random.nextDouble() < share) {
+								HbefaColdEmissionFactor factor = new HbefaColdEmissionFactor();
+								factor.setColdEmissionFactor(random.nextDouble());
+								table.put(createKey(category, attributes, parkingTime, distance, pollutant), factor);
+							}
+						}
+					}
+				}
+			}
+		}
+		return table;
+	}
+
+	private static HbefaColdEmissionFactorKey createKey(HbefaVehicleCategory category,
+			HbefaVehicleAttributes attributes, int parkingTime, int distance, ColdPollutant pollutant) {
+		HbefaColdEmissionFactorKey key = new HbefaColdEmissionFactorKey();
+		key.setHbefaVehicleCategory(category);
+		key.setHbefaVehicleAttributes(attributes);
+		key.setHbefaParkingTime(parkingTime);
+		key.setHbefaDistance(distance);
+		key.setHbefaComponent(pollutant);
+		return key;
+	}
+}
@@ -0,0 +1,206 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TestHbefaWarmEmissionFactorTable.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.emissions.types;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/*
+ * test for org.matsim.contrib.emissions.types.HbefaWarmEmissionFactorTable
+ * 1 every lookup in the compiled table gives the same result as the lookup in the map it was compiled from
+ * 2 unknown vehicles and road categories
+ * 3 choosing between the detailed and the average table gives the same factors as with the maps
+ */
+public class TestHbefaWarmEmissionFactorTable {
+
+	private static final HbefaVehicleCategory[] VEHICLE_CATEGORIES = { HbefaVehicleCategory.PASSENGER_CAR,
+			HbefaVehicleCategory.HEAVY_GOODS_VEHICLE };
+	private static final String[] ROAD_CATEGORIES = { "URB/Local/50", "RUR/MW/100", "URB/Trunk-City/70" };
+
+	private final List<HbefaVehicleAttributes> vehicleAttributes = new ArrayList<>();
+
+	private void setUp() {
+		vehicleAttributes.add(new HbefaVehicleAttributes());
+		vehicleAttributes.add(createAttributes("PC petrol <1,4L", "<1,4L", "PC-P-Euro-4"));
+		vehicleAttributes.add(createAttributes("PC diesel", ">=2L", "PC-D-Euro-3"));
+	}
+
+	@Test
+	public final void testCompiledTableMatchesMap() {
+		setUp();
+		Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> map = createTable(new Random(4711), 0.7);
+		HbefaWarmEmissionFactorTable table = new HbefaWarmEmissionFactorTable(map);
+
+		for (HbefaVehicleCategory category : VEHICLE_CATEGORIES) {
+			for (HbefaVehicleAttributes attributes : vehicleAttributes) {
+				int vehicleIdx = table.getVehicleIndex(category, attributes);
+				for (String roadCategory : ROAD_CATEGORIES) {
+					int roadCategoryIdx = table.getRoadCategoryIndex(roadCategory);
+					for (HbefaTrafficSituation trafficSituation : HbefaTrafficSituation.values()) {
+						int offset = table.getOffset(vehicleIdx, roadCategoryIdx, trafficSituation);
+						for (WarmPollutant pollutant : WarmPollutant.values()) {
+							HbefaWarmEmissionFactor expected = map.get(
+									createKey(category, attributes, roadCategory, trafficSituation, pollutant));
+							String message = category + " " + attributes + " " + roadCategory + " "
+									+ trafficSituation + " " + pollutant;
+							Assert.assertEquals(message, expected != null, table.contains(offset, pollutant));
+							if (expected == null) {
+								Assert.assertTrue(message, Double.isNaN(table.getWarmEmissionFactor(offset, pollutant)));
+								Assert.assertTrue(message, Double.isNaN(table.getSpeed(offset, pollutant)));
+							} else {
+								Assert.assertEquals(message, expected.getWarmEmissionFactor(),
+										table.getWarmEmissionFactor(offset, pollutant), 0.);
+								Assert.assertEquals(message, expected.getSpeed(), table.getSpeed(offset, pollutant), 0.);
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public final void testUnknownVehicleAndRoadCategory() {
+		setUp();
+		HbefaWarmEmissionFactorTable table = new HbefaWarmEmissionFactorTable(createTable(new Random(4711), 1.));
+
+		Assert.assertEquals(-1, table.getVehicleIndex(HbefaVehicleCategory.MOTORCYCLE, new HbefaVehicleAttributes()));
+		Assert.assertEquals(-1, table.getVehicleIndex(HbefaVehicleCategory.PASSENGER_CAR,
+				createAttributes("unknown technology", "unknown concept", "unknown size class")));
+		Assert.assertEquals(-1, table.getRoadCategoryIndex("unknown road category"));
+
+		int vehicleIdx = table.getVehicleIndex(HbefaVehicleCategory.PASSENGER_CAR, new HbefaVehicleAttributes());
+		int roadCategoryIdx = table.getRoadCategoryIndex(ROAD_CATEGORIES[0]);
+		Assert.assertEquals(-1, table.getOffset(-1, roadCategoryIdx, HbefaTrafficSituation.FREEFLOW));
+		Assert.assertEquals(-1, table.getOffset(vehicleIdx, -1, HbefaTrafficSituation.FREEFLOW));
+		Assert.assertFalse(table.contains(-1, WarmPollutant.CO));
+		Assert.assertTrue(Double.isNaN(table.getWarmEmissionFactor(-1, WarmPollutant.CO)));
+		Assert.assertTrue(Double.isNaN(table.getSpeed(-1, WarmPollutant.CO)));
+	}
+
+	@Test
+	public final void testFallbackToAverageTable() {
+		// same rule as in the WarmEmissionAnalysisModule: the detailed factors are used if there are entries for free
+		// flow and stop&go, otherwise the average factors of the same key
+		setUp();
+		Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> avgMap = createTable(new Random(1), 1.);
+		Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> detailedMap = createTable(new Random(2), 0.6);
+		HbefaWarmEmissionFactorTable avgTable = new HbefaWarmEmissionFactorTable(avgMap);
+		HbefaWarmEmissionFactorTable detailedTable = new HbefaWarmEmissionFactorTable(detailedMap);
+
+		int detailedLookups = 0;
+		int avgLookups = 0;
+		for (HbefaVehicleCategory category : VEHICLE_CATEGORIES) {
+			for (HbefaVehicleAttributes attributes : vehicleAttributes) {
+				for (String roadCategory : ROAD_CATEGORIES) {
+					int detailedFf = detailedTable.getOffset(detailedTable.getVehicleIndex(category, attributes),
+							detailedTable.getRoadCategoryIndex(roadCategory), HbefaTrafficSituation.FREEFLOW);
+					int detailedSg = detailedTable.getOffset(detailedTable.getVehicleIndex(category, attributes),
+							detailedTable.getRoadCategoryIndex(roadCategory), HbefaTrafficSituation.STOPANDGO);
+					int avgFf = avgTable.getOffset(avgTable.getVehicleIndex(category, attributes),
+							avgTable.getRoadCategoryIndex(roadCategory), HbefaTrafficSituation.FREEFLOW);
+					int avgSg = avgTable.getOffset(avgTable.getVehicleIndex(category, attributes),
+							avgTable.getRoadCategoryIndex(roadCategory), HbefaTrafficSituation.STOPANDGO);
+
+					for (WarmPollutant pollutant : WarmPollutant.values()) {
+						HbefaWarmEmissionFactorKey ffKey = createKey(category, attributes, roadCategory,
+								HbefaTrafficSituation.FREEFLOW, pollutant);
+						HbefaWarmEmissionFactorKey sgKey = createKey(category, attributes, roadCategory,
+								HbefaTrafficSituation.STOPANDGO, pollutant);
+
+						HbefaWarmEmissionFactor expectedFf;
+						HbefaWarmEmissionFactor expectedSg;
+						double ff;
+						double sg;
+						if (detailedMap.containsKey(ffKey) && detailedMap.containsKey(sgKey)) {
+							expectedFf = detailedMap.get(ffKey);
+							expectedSg = detailedMap.get(sgKey);
+							detailedLookups++;
+						} else {
+							expectedFf = avgMap.get(ffKey);
+							expectedSg = avgMap.get(sgKey);
+							avgLookups++;
+						}
+						if (detailedTable.contains(detailedFf, pollutant) && detailedTable.contains(detailedSg, pollutant)) {
+							ff = detailedTable.getWarmEmissionFactor(detailedFf, pollutant);
+							sg = detailedTable.getWarmEmissionFactor(detailedSg, pollutant);
+						} else {
+							ff = avgTable.getWarmEmissionFactor(avgFf, pollutant);
+							sg = avgTable.getWarmEmissionFactor(avgSg, pollutant);
+						}
+						Assert.assertEquals(ffKey.toString(), expectedFf.getWarmEmissionFactor(), ff, 0.);
+						Assert.assertEquals(sgKey.toString(), expectedSg.getWarmEmissionFactor(), sg, 0.);
+					}
+				}
+			}
+		}
+		Assert.assertTrue("no lookup in the detailed table", detailedLookups > 0);
+		Assert.assertTrue("no fallback to the average table", avgLookups > 0);
+	}
+
+	private Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> createTable(Random random, double share) {
+		Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> table = new HashMap<>();
+		for (HbefaVehicleCategory category : VEHICLE_CATEGORIES) {
+			for (HbefaVehicleAttributes attributes : vehicleAttributes) {
+				for (String roadCategory : ROAD_CATEGORIES) {
+					for (HbefaTrafficSituation trafficSituation : HbefaTrafficSituation.values()) {
+						for (WarmPollutant pollutant : WarmPollutant.values()) {
+							if (random.nextDouble() < share) {
+								HbefaWarmEmissionFactor factor = new HbefaWarmEmissionFactor();
+								factor.setSpeed(10. + 100. * random.nextDouble());
+								factor.setWarmEmissionFactor(random.nextDouble());
+								table.put(createKey(category, attributes, roadCategory, trafficSituation, pollutant),
+										factor);
+							}
+						}
+					}
+				}
+			}
+		}
+		return table;
+	}
+
+	private static HbefaWarmEmissionFactorKey createKey(HbefaVehicleCategory category,
+			HbefaVehicleAttributes attributes, String roadCategory, HbefaTrafficSituation trafficSituation,
+			WarmPollutant pollutant) {
+		HbefaWarmEmissionFactorKey key = new HbefaWarmEmissionFactorKey();
+		key.setHbefaVehicleCategory(category);
+		key.setHbefaVehicleAttributes(attributes);
+		key.setHbefaRoadCategory(roadCategory);
+		key.setHbefaTrafficSituation(trafficSituation);
+		key.setHbefaComponent(pollutant);
+		return key;
+	}
+
+	static HbefaVehicleAttributes createAttributes(String technology, String sizeClass, String emConcept) {
+		HbefaVehicleAttributes attributes = new HbefaVehicleAttributes();
+		attributes.setHbefaTechnology(technology);
+		attributes.setHbefaSizeClass(sizeClass);
+		attributes.setHbefaEmConcept(emConcept);
+		return attributes;
+	}
+}
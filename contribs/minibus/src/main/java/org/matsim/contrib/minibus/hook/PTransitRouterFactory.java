@@ -83,8 +83,12 @@ class PTransitRouterFactory implements Provider<TransitRouter>, StartupListener,
 			// this could also hold updated prices
 			this.raptorDisutility = new RaptorDisutility(this.transitRouterConfig, this.costPerBoarding, this.costPerMeterTraveled);
 			
-			this.transitRouterQuadTree = new TransitRouterQuadTree(this.raptorDisutility);
-			this.transitRouterQuadTree.initializeFromSchedule(this.schedule, this.transitRouterConfig.getBeelineWalkConnectionDistance());
+			if (this.transitRouterQuadTree == null) {
+				// transfer times depend on the router config only, so the search data can be kept between iterations
+				this.transitRouterQuadTree = new TransitRouterQuadTree(this.raptorDisutility);
+			}
+			// only processes the lines changed by the operators since the last iteration
+			this.transitRouterQuadTree.updateFromSchedule(this.schedule, this.transitRouterConfig.getBeelineWalkConnectionDistance());
 		}
 	}
 
@@ -116,6 +116,29 @@ public class Raptor implements TransitRouter {
 		return convertPathToLegList(departureTime, p, fromFacility.getCoord(), toFacility.getCoord(), person);
 	}
 
+	/**
+	 * In contrast to {@link #calcRoute(Facility, Facility, double, Person)}, a direct walk is not considered.
+	 * 
+	 * @return all routes found that are pareto optimal with respect to arrival time, number of transfers and fare
+	 */
+	public List<RaptorRoute> calcParetoRoutes(final Facility<?> fromFacility, final Facility<?> toFacility, final double departureTime, final Person person) {
+		Map<TransitStopFacility, InitialNode> fromStops = this.locateWrappedNearestTransitStops(person, fromFacility.getCoord(), departureTime);
+		Map<TransitStopFacility, InitialNode> toStops = this.locateWrappedNearestTransitStops(person, toFacility.getCoord(), departureTime);
+		return this.raptorWalker.calcParetoSet(fromStops, toStops, departureTime);
+	}
+
+	/**
+	 * Range query over all departures between departureTime and departureTime + windowLength, e.g. to evaluate all departures of a
+	 * new paratransit line at once. A direct walk is not considered.
+	 * 
+	 * @return all routes found that are pareto optimal with respect to departure time, arrival time, number of transfers and fare
+	 */
+	public List<RaptorRoute> calcParetoRoutes(final Facility<?> fromFacility, final Facility<?> toFacility, final double departureTime, final double windowLength, final Person person) {
+		Map<TransitStopFacility, InitialNode> fromStops = this.locateWrappedNearestTransitStops(person, fromFacility.getCoord(), departureTime);
+		Map<TransitStopFacility, InitialNode> toStops = this.locateWrappedNearestTransitStops(person, toFacility.getCoord(), departureTime);
+		return this.raptorWalker.calcParetoSet(fromStops, toStops, departureTime, windowLength);
+	}
+
 	private List<Leg> createDirectWalkLegList(Person person, Coord fromCoord, Coord toCoord) {
 		List<Leg> legs = new ArrayList<>();
 		Leg leg = PopulationUtils.createLeg(TransportMode.transit_walk);
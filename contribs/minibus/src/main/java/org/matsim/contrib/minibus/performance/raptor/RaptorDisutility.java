@@ -56,13 +56,16 @@ public class RaptorDisutility {
 		cost += - inVehicleTravelTime * this.config.getMarginalUtilityOfTravelTimePt_utl_s();
 		cost += - inVehicleBeelineDistance * this.config.getMarginalUtilityOfTravelDistancePt_utl_m();
 		
-		// fare
-		cost += this.costPerBoarding;
-		cost += inVehicleBeelineDistance * this.costPerMeterTraveled;
+		cost += this.getFare(routeSegment);
 		
 		return cost;
 	}
 	
+	protected double getFare(final RouteSegment routeSegment) {
+		double inVehicleBeelineDistance = CoordUtils.calcEuclideanDistance(routeSegment.fromStop.getCoord(), routeSegment.toStop.getCoord());
+		return this.costPerBoarding + inVehicleBeelineDistance * this.costPerMeterTraveled;
+	}
+	
 	/**
 	 * cost of a single transfer. Fare is included in {@link RaptorDisutility.getInVehicleTravelDisutility}
 	 */
@@ -30,11 +30,24 @@ public class RaptorRoute {
 
 	private final double cost;
 	private final List<RouteSegment> route;
+	
+	// criteria of the pareto set
+	private final double departureTime;
+	private final double arrivalTime;
+	private final int numberOfTransfers;
+	private final double fare;
 
 	public RaptorRoute(double cost, List<RouteSegment> leastCostRoute) {
+		this(cost, leastCostRoute, Double.NaN, Double.NaN, -1, Double.NaN);
+	}
+
+	public RaptorRoute(double cost, List<RouteSegment> route, double departureTime, double arrivalTime, int numberOfTransfers, double fare) {
 		this.cost = cost;
-		this.route = leastCostRoute;
-		
+		this.route = route;
+		this.departureTime = departureTime;
+		this.arrivalTime = arrivalTime;
+		this.numberOfTransfers = numberOfTransfers;
+		this.fare = fare;
 	}
 
 	public double getTravelCost() {
@@ -45,6 +58,36 @@ public class RaptorRoute {
 		return this.route;
 	}
 
+	/**
+	 * @return departure time at the start location (including the access walk)
+	 */
+	public double getDepartureTime() {
+		return this.departureTime;
+	}
+
+	/**
+	 * @return arrival time at the target location (including the egress walk)
+	 */
+	public double getArrivalTime() {
+		return this.arrivalTime;
+	}
+
+	public int getNumberOfTransfers() {
+		return this.numberOfTransfers;
+	}
+
+	public double getFare() {
+		return this.fare;
+	}
+	
+	/**
+	 * @return true if this route is at least as good as the other one with respect to all criteria of the pareto set 
+	 */
+	boolean isAtLeastAsGoodAs(RaptorRoute other) {
+		return this.departureTime >= other.departureTime && this.arrivalTime <= other.arrivalTime && 
+				this.numberOfTransfers <= other.numberOfTransfers && this.fare <= other.fare;
+	}
+
 	@Override
 	public String toString() {
 		return "Cost: " + this.cost + " via " + this.route;
@@ -25,6 +25,7 @@ import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 
 
 /**
+ * Read-only once created, so that all {@link RaptorWalker}s can share it.
  * 
  * @author aneumann
  *
@@ -19,10 +19,17 @@
 
 package org.matsim.contrib.minibus.performance.raptor;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeSet;
 
 import org.apache.log4j.Logger;
 import org.matsim.pt.router.MultiNodeDijkstra.InitialNode;
@@ -68,6 +75,14 @@ import org.matsim.pt.transitSchedule.api.TransitStopFacility;
  *
  * The algorithm returns null if no route is found after the given number of max transfers.
  * Once a route is found the algorithm runs for an additional number of rounds specified by the number of grace transfers.
+ * <br><br>
+ * Alternatively, the routes found in all rounds can be returned as a pareto set with respect to arrival time, number of transfers and fare.
+ * Range queries run the search for each departure from the start stops within a time window, latest first, and return the pareto set
+ * including the departure time. Note that the labels are kept per stop and not per round, i.e. the number of transfers is not a
+ * full criterion of the search itself.<br>
+ * <br>
+ * The search state is allocated once and reused by all searches of a walker. Instead of clearing the arrays, each search stamps its
+ * labels with a new generation. A walker is not thread-safe, but several walkers can share the same {@linkplain RaptorSearchData}.
  *  
  * 
  * @author aneumann
@@ -85,14 +100,27 @@ public class RaptorWalker {
 
 	private final SourcePointer initialSourcePointer;
 	
+	// labels are only valid if stamped with the current generation
+	private int generation = 0;
+	
+	private final int[] generationOfRouteStop;
 	private final double[] earliestArrivalTimeAtRouteStop;
 	private final SourcePointer[] sourcePointerRouteStop;
 
+	private final int[] generationOfTransitStop;
 	private final double[] earliestArrivalTimeAtTransitStop;
 	private final SourcePointer[] sourcePointerTransitStops;
 
-	private final boolean[] routeStopsToCheck;
-	private final boolean[] transferTransitStopsToCheck;
+	// stops marked in the current round, the stamps prevent marking a stop twice
+	private final int[] routeStopsToCheck;
+	private final int[] stampOfRouteStopsToCheck;
+	private int numberOfRouteStopsToCheck = 0;
+	private int routeStopsToCheckStamp = 1;
+	
+	private final int[] transferTransitStopsToCheck;
+	private final int[] stampOfTransferTransitStopsToCheck;
+	private int numberOfTransferTransitStopsToCheck = 0;
+	private int transferTransitStopsToCheckStamp = 1;
 
 	public RaptorWalker(RaptorSearchData raptorSearchData, RaptorDisutility raptorDisutility, int maxTransfers, int graceTransfers) {
 		this.raptorDisutility = raptorDisutility;
@@ -102,33 +130,64 @@ public class RaptorWalker {
 		
 		this.initialSourcePointer = new SourcePointer(Double.POSITIVE_INFINITY, -1, null, false);
 		
+		this.generationOfRouteStop = new int[this.raptorSearchData.routeStops.length];
 		this.earliestArrivalTimeAtRouteStop = new double[this.raptorSearchData.routeStops.length];
 		this.sourcePointerRouteStop = new SourcePointer[this.raptorSearchData.routeStops.length];
 		
+		this.generationOfTransitStop = new int[this.raptorSearchData.stops.length];
 		this.earliestArrivalTimeAtTransitStop = new double[this.raptorSearchData.stops.length];
 		this.sourcePointerTransitStops = new SourcePointer[this.raptorSearchData.stops.length];
 		
-		this.routeStopsToCheck = new boolean[this.raptorSearchData.routeStops.length];
-		this.transferTransitStopsToCheck = new boolean[this.raptorSearchData.stops.length];
+		this.routeStopsToCheck = new int[this.raptorSearchData.routeStops.length];
+		this.stampOfRouteStopsToCheck = new int[this.raptorSearchData.routeStops.length];
+		this.transferTransitStopsToCheck = new int[this.raptorSearchData.stops.length];
+		this.stampOfTransferTransitStopsToCheck = new int[this.raptorSearchData.stops.length];
 	}
 
 	public RaptorRoute calcLeastCostPath(Map<TransitStopFacility, InitialNode> fromTransitStops, Map<TransitStopFacility, InitialNode> toTransitStops) {
+		return this.search(fromTransitStops, toTransitStops, Double.NaN, null);
+	}
+
+	/**
+	 * The initial times of the start and target stops are expected to be the departure time plus the access and egress time, respectively.
+	 * 
+	 * @return all routes found that are pareto optimal with respect to arrival time, number of transfers and fare
+	 */
+	public List<RaptorRoute> calcParetoSet(Map<TransitStopFacility, InitialNode> fromTransitStops, Map<TransitStopFacility, InitialNode> toTransitStops, double departureTime) {
+		List<RaptorRoute> candidates = new ArrayList<>();
+		this.search(fromTransitStops, toTransitStops, departureTime, candidates);
+		return getParetoSet(candidates);
+	}
+
+	/**
+	 * Range query. Searches once for each departure from one of the start stops within the time window, starting with the latest one.
+	 * The initial times of the start and target stops are expected to be the departure time plus the access and egress time, respectively.
+	 * 
+	 * @return all routes found that are pareto optimal with respect to departure time (the later the better), arrival time, number of transfers and fare
+	 */
+	public List<RaptorRoute> calcParetoSet(Map<TransitStopFacility, InitialNode> fromTransitStops, Map<TransitStopFacility, InitialNode> toTransitStops, double departureTime, double windowLength) {
+		List<RaptorRoute> candidates = new ArrayList<>();
+		
+		for (Double timeShift : this.getTimeShiftsOfDepartures(fromTransitStops, windowLength).descendingSet()) {
+			this.search(shift(fromTransitStops, timeShift), shift(toTransitStops, timeShift), departureTime + timeShift, candidates);
+		}
+		
+		return getParetoSet(candidates);
+	}
+
+	private RaptorRoute search(Map<TransitStopFacility, InitialNode> fromTransitStops, Map<TransitStopFacility, InitialNode> toTransitStops, double departureTime, List<RaptorRoute> candidates) {
 		
 		RaptorRoute bestRoute = null;
 
-		// init
-		Arrays.fill(this.earliestArrivalTimeAtRouteStop, Double.POSITIVE_INFINITY);
-		Arrays.fill(this.sourcePointerRouteStop, this.initialSourcePointer);
-		Arrays.fill(this.earliestArrivalTimeAtTransitStop, Double.POSITIVE_INFINITY);
-		Arrays.fill(this.sourcePointerTransitStops, this.initialSourcePointer);
-		Arrays.fill(this.routeStopsToCheck, false);
-		Arrays.fill(this.transferTransitStopsToCheck, false);
+		// init - the labels of previous searches become invalid with the new generation
+		this.startNewGeneration();
+		this.clearRouteStopsToCheck();
 
 		// init first stops
 		for (TransitStopFacility fromTransitStop : fromTransitStops.keySet()) {
 			// (these are all the transit stops initialized by the Multi-Node router)
 
-			double departureTime = fromTransitStops.get(fromTransitStop).initialTime;
+			double departureTimeAtStop = fromTransitStops.get(fromTransitStop).initialTime;
 			// (get dp time from node (since they vary by multi-node))
 
 			int indexOfFromTransitStop = this.getIndexForTransitStop(fromTransitStop);
@@ -143,11 +202,10 @@ public class RaptorWalker {
 				RouteStopEntry transferRouteStopEntry = this.raptorSearchData.routeStops[transferEntry.indexOfRouteStop];
 				if (indexOfFromTransitStop == transferRouteStopEntry.indexOfStopFacility) {
 					// this is a route stop of the transit stop facility
-					SourcePointer source = new SourcePointer(departureTime, transferEntry.indexOfRouteStop, null, false);
-					sourcePointerRouteStop[transferEntry.indexOfRouteStop] = source;
-					earliestArrivalTimeAtRouteStop[transferEntry.indexOfRouteStop] = departureTime;
-					earliestArrivalTimeAtTransitStop[indexOfFromTransitStop] = departureTime;
-					routeStopsToCheck[transferEntry.indexOfRouteStop] = true;
+					SourcePointer source = new SourcePointer(departureTimeAtStop, transferEntry.indexOfRouteStop, null, false);
+					this.setRouteStopLabel(transferEntry.indexOfRouteStop, departureTimeAtStop, source);
+					this.setEarliestArrivalTimeAtTransitStop(indexOfFromTransitStop, departureTimeAtStop);
+					this.markRouteStop(transferEntry.indexOfRouteStop);
 				}
 			}
 		}
@@ -156,11 +214,11 @@ public class RaptorWalker {
 
 		// MAIN LOOP:
 		for (int nTransfers = 0; nTransfers <= this.maxTransfers; nTransfers++) {
-			Arrays.fill(transferTransitStopsToCheck, false);
+			this.clearTransferTransitStopsToCheck();
 
 			this.checkRouteStops();
 
-			RaptorRoute bestRouteOfThisRound = this.getBestRouteFoundSoFar(fromTransitStops, toTransitStops, sourcePointerTransitStops);
+			RaptorRoute bestRouteOfThisRound = this.getBestRouteFoundSoFar(fromTransitStops, toTransitStops, departureTime, candidates);
 			if (bestRouteOfThisRound != null) {
 				if (bestRoute == null) {
 					// this is the first route found
@@ -174,8 +232,9 @@ public class RaptorWalker {
 			}
 
 
-			if (bestRoute != null) {
+			if (bestRoute != null && candidates == null) {
 				// one route found - check how many additional runs are allowed
+				// (the pareto set is collected from all rounds)
 				if (graceTransfersLeft == 0) {
 					// no more transfers left - abort and return best route found so far
 					return bestRoute;
@@ -183,7 +242,7 @@ public class RaptorWalker {
 				graceTransfersLeft--;
 			}
 
-			Arrays.fill(routeStopsToCheck, false);
+			this.clearRouteStopsToCheck();
 			// we have now explored every place without additional transfers
 
 			// increase the transfers and proceed
@@ -195,6 +254,11 @@ public class RaptorWalker {
 
 				this.checkTransferTransitStops();
 			}
+			
+			if (this.numberOfRouteStopsToCheck == 0) {
+				// nothing can be improved in the following rounds
+				break;
+			}
 		}
 
 		return bestRoute;
@@ -205,63 +269,59 @@ public class RaptorWalker {
 		boolean atLeastOneRouteStopImproved = false;
 		int indexOfLastRouteProcessed = -1;
 
-		// process all start stops
-		for (int indexOfStartRouteStop = 0; indexOfStartRouteStop < routeStopsToCheck.length; indexOfStartRouteStop++) {
-			// I think that these are all route stops, and the "check" refers to the boolean
+		// process all start stops in the order of their indices, i.e. the stops of a route one after the other
+		Arrays.sort(this.routeStopsToCheck, 0, this.numberOfRouteStopsToCheck);
+		for (int i = 0; i < this.numberOfRouteStopsToCheck; i++) {
+			int indexOfStartRouteStop = this.routeStopsToCheck[i];
 
-			if (routeStopsToCheck[indexOfStartRouteStop] == true) {
-				RouteStopEntry startStop = this.raptorSearchData.routeStops[indexOfStartRouteStop];
-				RouteEntry routeToCheck = this.raptorSearchData.routes[startStop.indexOfRoute];
-				
-				// TODO do not proceed if this stop's best arrival time has just got updated in this round
-				// updates at this part of the round can only occur by parsing the same route but from one of the upstream stops
-				// thus all following downstream stops were already updated as well and have all a better arrival time as possibly this stop's departure would yield
-				if (indexOfLastRouteProcessed == startStop.indexOfRoute && atLeastOneRouteStopImproved) {
-					// we process the same route again
-					// since route stops have increasing indices we only need to process all downstream stops again if the last try could not improve the arrival times
-
-					// do nothing and proceed
-				} else {
-					// this is a different route - process all stops
-					indexOfLastRouteProcessed = startStop.indexOfRoute;
-					atLeastOneRouteStopImproved = false;
-
-					double earliestArrivalTimeAtStartRouteStop = sourcePointerRouteStop[indexOfStartRouteStop].earliestArrivalTime;
-					int indexOfRouteStopWithinRouteSequence = routeToCheck.numberOfRouteStops - startStop.numberOfRemainingStopsInThisRoute - 1;
-					int indexOfEarliestDepartureTime = this.getIndexOfEarliestDepartureTime(earliestArrivalTimeAtStartRouteStop, routeToCheck, indexOfRouteStopWithinRouteSequence);
-
-					if(indexOfEarliestDepartureTime > -1) {
-						// we have found a valid departure time - process all upcoming stops of the route
-						for (int indexOfRouteStopToCheck = indexOfStartRouteStop + 1; indexOfRouteStopToCheck < indexOfStartRouteStop + startStop.numberOfRemainingStopsInThisRoute + 1; indexOfRouteStopToCheck++) {
-
-							// we go now one stop further
-							indexOfEarliestDepartureTime += routeToCheck.numberOfDepartures;
-							RouteStopEntry routeStopToCheck =  this.raptorSearchData.routeStops[indexOfRouteStopToCheck];
-
-							double arrivalTimeAtTheFollowingRouteStop = this.raptorSearchData.arrivalTimes[indexOfEarliestDepartureTime];
-
-							if (arrivalTimeAtTheFollowingRouteStop < earliestArrivalTimeAtRouteStop[routeStopToCheck.indexOfRouteStop]) {
-								// this really is better than anything before - set arrival and source and mark the stop to be checked for transfers
-								atLeastOneRouteStopImproved = true;
-
-								SourcePointer source = new SourcePointer(arrivalTimeAtTheFollowingRouteStop, routeStopToCheck.indexOfRouteStop, sourcePointerRouteStop[indexOfStartRouteStop], false);
-								sourcePointerRouteStop[routeStopToCheck.indexOfRouteStop] = source;
-								earliestArrivalTimeAtRouteStop[routeStopToCheck.indexOfRouteStop] = arrivalTimeAtTheFollowingRouteStop;
-
-								// is it also a earlier arrival time at the transit stop
-								if (arrivalTimeAtTheFollowingRouteStop < earliestArrivalTimeAtTransitStop[routeStopToCheck.indexOfStopFacility]) {
-									earliestArrivalTimeAtTransitStop[routeStopToCheck.indexOfStopFacility] = arrivalTimeAtTheFollowingRouteStop;
-									sourcePointerTransitStops[routeStopToCheck.indexOfStopFacility] = source;
-									transferTransitStopsToCheck[routeStopToCheck.indexOfStopFacility] = true;
-								}
+			RouteStopEntry startStop = this.raptorSearchData.routeStops[indexOfStartRouteStop];
+			RouteEntry routeToCheck = this.raptorSearchData.routes[startStop.indexOfRoute];
+
+			// TODO do not proceed if this stop's best arrival time has just got updated in this round
+			// updates at this part of the round can only occur by parsing the same route but from one of the upstream stops
+			// thus all following downstream stops were already updated as well and have all a better arrival time as possibly this stop's departure would yield
+			if (indexOfLastRouteProcessed == startStop.indexOfRoute && atLeastOneRouteStopImproved) {
+				// we process the same route again
+				// since route stops have increasing indices we only need to process all downstream stops again if the last try could not improve the arrival times
+
+				// do nothing and proceed
+			} else {
+				// this is a different route - process all stops
+				indexOfLastRouteProcessed = startStop.indexOfRoute;
+				atLeastOneRouteStopImproved = false;
+
+				double earliestArrivalTimeAtStartRouteStop = this.getSourcePointerAtRouteStop(indexOfStartRouteStop).earliestArrivalTime;
+				int indexOfRouteStopWithinRouteSequence = routeToCheck.numberOfRouteStops - startStop.numberOfRemainingStopsInThisRoute - 1;
+				int indexOfEarliestDepartureTime = this.getIndexOfEarliestDepartureTime(earliestArrivalTimeAtStartRouteStop, routeToCheck, indexOfRouteStopWithinRouteSequence);
+
+				if(indexOfEarliestDepartureTime > -1) {
+					// we have found a valid departure time - process all upcoming stops of the route
+					for (int indexOfRouteStopToCheck = indexOfStartRouteStop + 1; indexOfRouteStopToCheck < indexOfStartRouteStop + startStop.numberOfRemainingStopsInThisRoute + 1; indexOfRouteStopToCheck++) {
+
+						// we go now one stop further
+						indexOfEarliestDepartureTime += routeToCheck.numberOfDepartures;
+						RouteStopEntry routeStopToCheck =  this.raptorSearchData.routeStops[indexOfRouteStopToCheck];
+
+						double arrivalTimeAtTheFollowingRouteStop = this.raptorSearchData.arrivalTimes[indexOfEarliestDepartureTime];
+
+						if (arrivalTimeAtTheFollowingRouteStop < this.getEarliestArrivalTimeAtRouteStop(routeStopToCheck.indexOfRouteStop)) {
+							// this really is better than anything before - set arrival and source and mark the stop to be checked for transfers
+							atLeastOneRouteStopImproved = true;
+
+							SourcePointer source = new SourcePointer(arrivalTimeAtTheFollowingRouteStop, routeStopToCheck.indexOfRouteStop, this.getSourcePointerAtRouteStop(indexOfStartRouteStop), false);
+							this.setRouteStopLabel(routeStopToCheck.indexOfRouteStop, arrivalTimeAtTheFollowingRouteStop, source);
+
+							// is it also a earlier arrival time at the transit stop
+							if (arrivalTimeAtTheFollowingRouteStop < this.getEarliestArrivalTimeAtTransitStop(routeStopToCheck.indexOfStopFacility)) {
+								this.setTransitStopLabel(routeStopToCheck.indexOfStopFacility, arrivalTimeAtTheFollowingRouteStop, source);
+								this.markTransferTransitStop(routeStopToCheck.indexOfStopFacility);
 							}
 						}
-					} else {
-						// there is no further departure
-						// TODO search for the earliest departure and add 24h
 					}
+				} else {
+					// there is no further departure
+					// TODO search for the earliest departure and add 24h
 				}
-
 			}
 
 		}
@@ -270,51 +330,51 @@ public class RaptorWalker {
 	private void checkTransferTransitStops() {
 
 		// check all transfer stops
-		for (int indexOfTransitStopToCheck = 0; indexOfTransitStopToCheck < transferTransitStopsToCheck.length; indexOfTransitStopToCheck++) {
-			if (transferTransitStopsToCheck[indexOfTransitStopToCheck]) {
-				TransitStopEntry transitStopEntry = this.raptorSearchData.stops[indexOfTransitStopToCheck];
-
-				for (int indexOfTransferToCheck = transitStopEntry.indexOfFirstTransfer; indexOfTransferToCheck < transitStopEntry.indexOfFirstTransfer + transitStopEntry.numberOfTransfers; indexOfTransferToCheck++) {
-					// process all transfers of the stop
-
-					TransferEntry transferDestination = this.raptorSearchData.transfers[indexOfTransferToCheck];
-					int indexOfTransferRouteStop = transferDestination.indexOfRouteStop;
-					double arrivalTimeAtTheTransferTargetRouteStop = earliestArrivalTimeAtTransitStop[indexOfTransitStopToCheck] + transferDestination.transferTime;
-
-					if (arrivalTimeAtTheTransferTargetRouteStop < earliestArrivalTimeAtRouteStop[indexOfTransferRouteStop]) {
-						// this really is better than anything before - set arrival and source and mark the stop to be checked in the next iteration
-						SourcePointer source = new SourcePointer(arrivalTimeAtTheTransferTargetRouteStop, indexOfTransferRouteStop, sourcePointerTransitStops[indexOfTransitStopToCheck], true);
-						sourcePointerRouteStop[indexOfTransferRouteStop] = source;
-						earliestArrivalTimeAtRouteStop[indexOfTransferRouteStop] = arrivalTimeAtTheTransferTargetRouteStop;
-						routeStopsToCheck[indexOfTransferRouteStop] = true;
-
-						int indexOfTargetTransitStop = this.raptorSearchData.routeStops[indexOfTransferRouteStop].indexOfStopFacility;
-						if (arrivalTimeAtTheTransferTargetRouteStop < earliestArrivalTimeAtTransitStop[indexOfTargetTransitStop]) {
-							// this is also the best arrival time for the transit facility of the route stop
-							earliestArrivalTimeAtTransitStop[indexOfTargetTransitStop] = arrivalTimeAtTheTransferTargetRouteStop;
-							sourcePointerTransitStops[indexOfTargetTransitStop] = source;
-						}
+		Arrays.sort(this.transferTransitStopsToCheck, 0, this.numberOfTransferTransitStopsToCheck);
+		for (int i = 0; i < this.numberOfTransferTransitStopsToCheck; i++) {
+			int indexOfTransitStopToCheck = this.transferTransitStopsToCheck[i];
+			TransitStopEntry transitStopEntry = this.raptorSearchData.stops[indexOfTransitStopToCheck];
+
+			for (int indexOfTransferToCheck = transitStopEntry.indexOfFirstTransfer; indexOfTransferToCheck < transitStopEntry.indexOfFirstTransfer + transitStopEntry.numberOfTransfers; indexOfTransferToCheck++) {
+				// process all transfers of the stop
+
+				TransferEntry transferDestination = this.raptorSearchData.transfers[indexOfTransferToCheck];
+				int indexOfTransferRouteStop = transferDestination.indexOfRouteStop;
+				double arrivalTimeAtTheTransferTargetRouteStop = this.getEarliestArrivalTimeAtTransitStop(indexOfTransitStopToCheck) + transferDestination.transferTime;
+
+				if (arrivalTimeAtTheTransferTargetRouteStop < this.getEarliestArrivalTimeAtRouteStop(indexOfTransferRouteStop)) {
+					// this really is better than anything before - set arrival and source and mark the stop to be checked in the next iteration
+					SourcePointer source = new SourcePointer(arrivalTimeAtTheTransferTargetRouteStop, indexOfTransferRouteStop, this.getSourcePointerAtTransitStop(indexOfTransitStopToCheck), true);
+					this.setRouteStopLabel(indexOfTransferRouteStop, arrivalTimeAtTheTransferTargetRouteStop, source);
+					this.markRouteStop(indexOfTransferRouteStop);
+
+					int indexOfTargetTransitStop = this.raptorSearchData.routeStops[indexOfTransferRouteStop].indexOfStopFacility;
+					if (arrivalTimeAtTheTransferTargetRouteStop < this.getEarliestArrivalTimeAtTransitStop(indexOfTargetTransitStop)) {
+						// this is also the best arrival time for the transit facility of the route stop
+						this.setTransitStopLabel(indexOfTargetTransitStop, arrivalTimeAtTheTransferTargetRouteStop, source);
 					}
 				}
-
 			}
 
 		}
 	}
 	
-	private RaptorRoute getBestRouteFoundSoFar(Map<TransitStopFacility, InitialNode> fromTransitStops, Map<TransitStopFacility, InitialNode> toTransitStops, SourcePointer[] sourcePointerTransitStops) {
+	private RaptorRoute getBestRouteFoundSoFar(Map<TransitStopFacility, InitialNode> fromTransitStops, Map<TransitStopFacility, InitialNode> toTransitStops, double departureTime, List<RaptorRoute> candidates) {
 		// get routes for all n of transfers and return them
 		List<List<RouteSegment>> routesFound = new LinkedList<List<RouteSegment>>();
 		for (TransitStopFacility toTransitStop : toTransitStops.keySet()) {
 			int indexOfToTransitStop = this.getIndexForTransitStop(toTransitStop);
 					
-			SourcePointer source = sourcePointerTransitStops[indexOfToTransitStop];
+			SourcePointer source = this.getSourcePointerAtTransitStop(indexOfToTransitStop);
 			if (source.source != null) {
 				// something found - backtrace
 				List<RouteSegment> route = this.returnBacktracedRouteFromSourcePointer(source);
 				if (!route.isEmpty()) {
 					// there is a route with this number of transfers to that stop
 					routesFound.add(route);
+					if (candidates != null) {
+						candidates.add(this.createParetoCandidate(route, source, toTransitStop, fromTransitStops, toTransitStops, departureTime));
+					}
 				}
 			}
 		}
@@ -327,6 +387,170 @@ public class RaptorWalker {
 		}
 	}
 	
+	private RaptorRoute createParetoCandidate(List<RouteSegment> route, SourcePointer source, TransitStopFacility toTransitStop, Map<TransitStopFacility, InitialNode> fromTransitStops, Map<TransitStopFacility, InitialNode> toTransitStops, double departureTime) {
+		int numberOfPtSegments = 0;
+		double fare = 0.0;
+		for (RouteSegment routeSegment : route) {
+			if (routeSegment.routeTaken != null) {
+				numberOfPtSegments++;
+				fare += this.raptorDisutility.getFare(routeSegment);
+			}
+		}
+		
+		double egressTime = toTransitStops.get(toTransitStop).initialTime - departureTime;
+		double cost = this.scoreRoute(route, fromTransitStops, toTransitStops);
+		return new RaptorRoute(cost, route, departureTime, source.earliestArrivalTime + egressTime, Math.max(0, numberOfPtSegments - 1), fare);
+	}
+	
+	private static List<RaptorRoute> getParetoSet(List<RaptorRoute> candidates) {
+		List<RaptorRoute> paretoSet = new ArrayList<>();
+		
+		for (RaptorRoute candidate : candidates) {
+			boolean dominated = false;
+			Iterator<RaptorRoute> it = paretoSet.iterator();
+			while (it.hasNext()) {
+				RaptorRoute route = it.next();
+				if (route.isAtLeastAsGoodAs(candidate)) {
+					// this also drops duplicates, e.g. found again in a later round
+					dominated = true;
+					break;
+				}
+				if (candidate.isAtLeastAsGoodAs(route)) {
+					it.remove();
+				}
+			}
+			if (!dominated) {
+				paretoSet.add(candidate);
+			}
+		}
+		
+		// latest departure first
+		Collections.sort(paretoSet, new Comparator<RaptorRoute>() {
+			@Override
+			public int compare(RaptorRoute o1, RaptorRoute o2) {
+				int result = Double.compare(o2.getDepartureTime(), o1.getDepartureTime());
+				return result != 0 ? result : Double.compare(o1.getArrivalTime(), o2.getArrivalTime());
+			}
+		});
+		return paretoSet;
+	}
+
+	/**
+	 * @return the time between the initial time of the start stops and all departures from them within the window
+	 */
+	private TreeSet<Double> getTimeShiftsOfDepartures(Map<TransitStopFacility, InitialNode> fromTransitStops, double windowLength) {
+		TreeSet<Double> timeShifts = new TreeSet<>();
+		
+		for (Entry<TransitStopFacility, InitialNode> fromTransitStop : fromTransitStops.entrySet()) {
+			double earliestDepartureTime = fromTransitStop.getValue().initialTime;
+			int indexOfFromTransitStop = this.getIndexForTransitStop(fromTransitStop.getKey());
+			TransitStopEntry transitStopEntry = this.raptorSearchData.stops[indexOfFromTransitStop];
+			
+			for (int indexOfTransfer = transitStopEntry.indexOfFirstTransfer; indexOfTransfer < transitStopEntry.indexOfFirstTransfer + transitStopEntry.numberOfTransfers; indexOfTransfer++) {
+				RouteStopEntry routeStopEntry = this.raptorSearchData.routeStops[this.raptorSearchData.transfers[indexOfTransfer].indexOfRouteStop];
+				if (routeStopEntry.indexOfStopFacility != indexOfFromTransitStop) {
+					// same as in the search - start from route stops of this stop facility only
+					continue;
+				}
+				
+				RouteEntry routeEntry = this.raptorSearchData.routes[routeStopEntry.indexOfRoute];
+				int indexOfRouteStopWithinRouteSequence = routeEntry.numberOfRouteStops - routeStopEntry.numberOfRemainingStopsInThisRoute - 1;
+				int fromIndex = routeEntry.indexOfFirstDeparture + routeEntry.numberOfDepartures * indexOfRouteStopWithinRouteSequence;
+				
+				for (int indexOfDeparture = fromIndex; indexOfDeparture < fromIndex + routeEntry.numberOfDepartures; indexOfDeparture++) {
+					double timeShift = this.raptorSearchData.departureTimes[indexOfDeparture] - earliestDepartureTime;
+					if (timeShift >= 0.0 && timeShift <= windowLength) {
+						timeShifts.add(timeShift);
+					}
+				}
+			}
+		}
+		
+		return timeShifts;
+	}
+	
+	private static Map<TransitStopFacility, InitialNode> shift(Map<TransitStopFacility, InitialNode> transitStops, double timeShift) {
+		Map<TransitStopFacility, InitialNode> shiftedTransitStops = new LinkedHashMap<>();
+		for (Entry<TransitStopFacility, InitialNode> transitStop : transitStops.entrySet()) {
+			shiftedTransitStops.put(transitStop.getKey(), new InitialNode(transitStop.getValue().initialCost, transitStop.getValue().initialTime + timeShift));
+		}
+		return shiftedTransitStops;
+	}
+	
+	private void startNewGeneration() {
+		if (this.generation == Integer.MAX_VALUE) {
+			Arrays.fill(this.generationOfRouteStop, 0);
+			Arrays.fill(this.generationOfTransitStop, 0);
+			this.generation = 0;
+		}
+		this.generation++;
+	}
+	
+	private double getEarliestArrivalTimeAtRouteStop(int indexOfRouteStop) {
+		return this.generationOfRouteStop[indexOfRouteStop] == this.generation ? this.earliestArrivalTimeAtRouteStop[indexOfRouteStop] : Double.POSITIVE_INFINITY;
+	}
+	
+	private SourcePointer getSourcePointerAtRouteStop(int indexOfRouteStop) {
+		return this.generationOfRouteStop[indexOfRouteStop] == this.generation ? this.sourcePointerRouteStop[indexOfRouteStop] : this.initialSourcePointer;
+	}
+	
+	private void setRouteStopLabel(int indexOfRouteStop, double earliestArrivalTime, SourcePointer source) {
+		this.generationOfRouteStop[indexOfRouteStop] = this.generation;
+		this.earliestArrivalTimeAtRouteStop[indexOfRouteStop] = earliestArrivalTime;
+		this.sourcePointerRouteStop[indexOfRouteStop] = source;
+	}
+	
+	private double getEarliestArrivalTimeAtTransitStop(int indexOfTransitStop) {
+		return this.generationOfTransitStop[indexOfTransitStop] == this.generation ? this.earliestArrivalTimeAtTransitStop[indexOfTransitStop] : Double.POSITIVE_INFINITY;
+	}
+	
+	private SourcePointer getSourcePointerAtTransitStop(int indexOfTransitStop) {
+		return this.generationOfTransitStop[indexOfTransitStop] == this.generation ? this.sourcePointerTransitStops[indexOfTransitStop] : this.initialSourcePointer;
+	}
+	
+	private void setTransitStopLabel(int indexOfTransitStop, double earliestArrivalTime, SourcePointer source) {
+		this.generationOfTransitStop[indexOfTransitStop] = this.generation;
+		this.earliestArrivalTimeAtTransitStop[indexOfTransitStop] = earliestArrivalTime;
+		this.sourcePointerTransitStops[indexOfTransitStop] = source;
+	}
+	
+	private void setEarliestArrivalTimeAtTransitStop(int indexOfTransitStop, double earliestArrivalTime) {
+		// keeps the source pointer
+		this.setTransitStopLabel(indexOfTransitStop, earliestArrivalTime, this.getSourcePointerAtTransitStop(indexOfTransitStop));
+	}
+	
+	private void markRouteStop(int indexOfRouteStop) {
+		if (this.stampOfRouteStopsToCheck[indexOfRouteStop] != this.routeStopsToCheckStamp) {
+			this.stampOfRouteStopsToCheck[indexOfRouteStop] = this.routeStopsToCheckStamp;
+			this.routeStopsToCheck[this.numberOfRouteStopsToCheck++] = indexOfRouteStop;
+		}
+	}
+	
+	private void clearRouteStopsToCheck() {
+		this.numberOfRouteStopsToCheck = 0;
+		if (this.routeStopsToCheckStamp == Integer.MAX_VALUE) {
+			Arrays.fill(this.stampOfRouteStopsToCheck, 0);
+			this.routeStopsToCheckStamp = 0;
+		}
+		this.routeStopsToCheckStamp++;
+	}
+	
+	private void markTransferTransitStop(int indexOfTransitStop) {
+		if (this.stampOfTransferTransitStopsToCheck[indexOfTransitStop] != this.transferTransitStopsToCheckStamp) {
+			this.stampOfTransferTransitStopsToCheck[indexOfTransitStop] = this.transferTransitStopsToCheckStamp;
+			this.transferTransitStopsToCheck[this.numberOfTransferTransitStopsToCheck++] = indexOfTransitStop;
+		}
+	}
+	
+	private void clearTransferTransitStopsToCheck() {
+		this.numberOfTransferTransitStopsToCheck = 0;
+		if (this.transferTransitStopsToCheckStamp == Integer.MAX_VALUE) {
+			Arrays.fill(this.stampOfTransferTransitStopsToCheck, 0);
+			this.transferTransitStopsToCheckStamp = 0;
+		}
+		this.transferTransitStopsToCheckStamp++;
+	}
+	
 //	private int getIndexOfEarliestDepartureTime(double earliestArrivalTimeAtStartRouteStop, RouteEntry routeToCheck, int indexOfRouteStopWithinRouteSequence){
 //
 //		int indexOfDepartureToCheck = routeToCheck.indexOfFirstDeparture + indexOfRouteStopWithinRouteSequence;
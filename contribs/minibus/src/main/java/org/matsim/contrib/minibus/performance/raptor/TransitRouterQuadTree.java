@@ -24,11 +24,18 @@ import java.util.*;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Coord;
-import org.matsim.api.core.v01.Id;
 import org.matsim.core.utils.collections.QuadTree;
 import org.matsim.pt.transitSchedule.api.*;
 
 /**
+ * Holds the arrays searched by the {@link RaptorWalker}. The arrays can either be built from scratch or be updated
+ * incrementally after the transit schedule has changed, e.g. after the minibus operators added and dropped their
+ * lines. Unchanged routes keep their indices. Changed and removed routes are replaced by tombstones (routes without
+ * departures) and new routes are appended. As soon as too many route stops belong to tombstones, the arrays are
+ * compacted by building them from scratch again.
+ * <p>
+ * Each update creates new arrays, so the {@link RaptorSearchData} handed out before remains unchanged and can be
+ * shared (read-only) by routers running in parallel.
  * 
  * @author aneumann
  */
@@ -36,6 +43,9 @@ public final class TransitRouterQuadTree {
 
 	private final static Logger log = Logger.getLogger(TransitRouterQuadTree.class);
 
+	// compact if more than this share of route stops belongs to removed routes
+	private final static double MAX_SHARE_OF_REMOVED_ROUTE_STOPS = 0.5;
+
 	private final RaptorDisutility raptorDisutility;
 	
 	private QuadTree<TransitStopFacility> quadTree;
@@ -57,12 +67,24 @@ public final class TransitRouterQuadTree {
 	// Each block holds the potential transfers for each stop.
 	private TransferEntry[] transfers;
 	
-	// All stops serving at least one route with links to their transfers (transfers) and routes served (stopRoutes).
-//	private TransitRouteStop[] stops;
-	
 	// All stops serving at least one route with links to their transfers (transfers) and routes served (stopRoutes).
 	private TransitStopEntry[] transitStops;
 	
+	// the following is kept between updates
+	private double maxBeelineWalkConnectionDistance;
+	private RaptorSearchData searchData;
+	
+	private final Map<String, Integer> routeHash2Index = new HashMap<>();
+	private final List<TransitStopFacility> transitStopsInRightOrder = new ArrayList<>();
+	private final List<List<TransferEntry>> transfersPerStop = new ArrayList<>();
+	private int[] numberOfActiveRouteStopsPerStop;
+	
+	// route stops of removed routes (tombstones)
+	private BitSet removedRouteStops;
+	private int numberOfRemovedRouteStops;
+	
+	// indices of the active route stops
+	private QuadTree<Integer> routeStopQuadTree;
 
 	public TransitRouterQuadTree(RaptorDisutility raptorDisutility) {
 		this.raptorDisutility = raptorDisutility;
@@ -76,10 +98,16 @@ public final class TransitRouterQuadTree {
 		return this.quadTree.getClosest(coord.getX(), coord.getY());
 	}
 	
+	/**
+	 * @return the search data of the last update, it is not modified by later updates
+	 */
 	public RaptorSearchData getSearchData(){
-		return new RaptorSearchData(this.arrivalTimes, this.departureTimes, this.routes, this.routeStops, this.transfers, this.transitStops, this.transitStopFacility2Index);
+		return this.searchData;
 	}
 
+	/**
+	 * Builds all arrays from scratch.
+	 */
 	public void initializeFromSchedule(final TransitSchedule transitSchedule, final double maxBeelineWalkConnectionDistance) {
 		
 		this.fillArrays(transitSchedule, maxBeelineWalkConnectionDistance);
@@ -90,237 +118,368 @@ public final class TransitRouterQuadTree {
 		log.info(" # transfer links:  " + this.transfers.length);
 	}
 
-	private void fillArrays(TransitSchedule transitSchedule, double maxBeelineWalkConnectionDistance) {
-		
-		// arrays that need to be converted in the end
-		ArrayList<Double> departureTimesList = new ArrayList<Double>();
-		ArrayList<Double> arrivalTimesList = new ArrayList<Double>();
-		ArrayList<RouteEntry> routesList = new ArrayList<RouteEntry>();
-		ArrayList<RouteStopEntry> routeStopList = new ArrayList<RouteStopEntry>();
-		ArrayList<TransferEntry> transfersList = new ArrayList<TransferEntry>();
-		ArrayList<TransitStopEntry> stopsList = new ArrayList<TransitStopEntry>();
+	/**
+	 * Updates the arrays to the current state of the transit schedule. Only routes that were added or changed since the
+	 * last update are processed (including the transfers to and from their stops). Falls back to
+	 * {@link #initializeFromSchedule(TransitSchedule, double)} if there was no update before, if a stop lies outside
+	 * the area known so far, or if the arrays need to be compacted.
+	 */
+	public void updateFromSchedule(final TransitSchedule transitSchedule, final double maxBeelineWalkConnectionDistance) {
+		if (this.searchData == null || maxBeelineWalkConnectionDistance != this.maxBeelineWalkConnectionDistance) {
+			this.initializeFromSchedule(transitSchedule, maxBeelineWalkConnectionDistance);
+			return;
+		}
 		
-		// temporary storage
-		Map<WrappedTransitRouteStop, Id<TransitRoute>> routeStop2routeId = new HashMap<WrappedTransitRouteStop, Id<TransitRoute>>();
-		Map<TransitStopFacility, Set<Id<TransitRoute>>> transitStopFacilities2RouteIdsServed = new HashMap<TransitStopFacility, Set<Id<TransitRoute>>>();
-		ArrayList<TransitStopFacility> transitStopsInRightOrder = new ArrayList<TransitStopFacility>();
-		HashMap<String, WrappedTransitRouteStop> hash2routeStop = new HashMap<String, WrappedTransitRouteStop>();
+		Set<Integer> indicesOfRoutesToRemove = new TreeSet<>(this.routeHash2Index.values());
+		List<TransitLine> linesOfRoutesToAdd = new ArrayList<>();
+		List<TransitRoute> routesToAdd = new ArrayList<>();
+		int numberOfRouteStopsToRemove = 0;
+		int numberOfRouteStopsToAdd = 0;
 		
 		for (TransitLine line : transitSchedule.getTransitLines().values()) {
 			for (TransitRoute route : line.getRoutes().values()) {
-				int position = 0;
-				for (TransitRouteStop routeStop : route.getStops()) {
-					
-					String routeStopHash = this.getHash(line, route, routeStop, position);
-					WrappedTransitRouteStop wrappedRouteStop = new WrappedTransitRouteStop(routeStop);
-					hash2routeStop.put(routeStopHash, wrappedRouteStop);
-					
-					position++;
-					
-					routeStop2routeId.put(wrappedRouteStop, route.getId());
-					
-					if (transitStopFacilities2RouteIdsServed.get(routeStop.getStopFacility()) == null) {
-						transitStopFacilities2RouteIdsServed.put(routeStop.getStopFacility(), new TreeSet<Id<TransitRoute>>());
+				Integer indexOfRoute = this.routeHash2Index.get(getHash(line, route));
+				if (indexOfRoute != null && this.isUnchanged(this.routes[indexOfRoute], line, route)) {
+					indicesOfRoutesToRemove.remove(indexOfRoute);
+				} else {
+					for (TransitRouteStop routeStop : route.getStops()) {
+						if (!this.isWithinBounds(routeStop.getStopFacility().getCoord())) {
+							log.info("Stop " + routeStop.getStopFacility().getId() + " is outside the area known so far. Rebuilding the transit router network.");
+							this.initializeFromSchedule(transitSchedule, maxBeelineWalkConnectionDistance);
+							return;
+						}
 					}
-					transitStopFacilities2RouteIdsServed.get(routeStop.getStopFacility()).add(route.getId());
+					linesOfRoutesToAdd.add(line);
+					routesToAdd.add(route);
+					numberOfRouteStopsToAdd += route.getStops().size();
 				}
 			}
 		}
 		
-		this.quadTree = this.createTransitStopFacilityQuadTree(transitStopFacilities2RouteIdsServed.keySet());
-		Map<TransitStopFacility, HashMap<WrappedTransitRouteStop, TransferEntryPointer>> stop2TransitRouteStop2Transfers = this.createTransfers(transitStopFacilities2RouteIdsServed, routeStop2routeId, maxBeelineWalkConnectionDistance);
-		stop2TransitRouteStop2Transfers = filterTransfers(transitSchedule, stop2TransitRouteStop2Transfers, routeStop2routeId);
-
-		for (TransitStopFacility transitStopFacility : stop2TransitRouteStop2Transfers.keySet()) {
-			this.transitStopFacility2Index.put(transitStopFacility, transitStopsInRightOrder.size());
-			transitStopsInRightOrder.add(transitStopFacility);
+		for (Integer indexOfRoute : indicesOfRoutesToRemove) {
+			numberOfRouteStopsToRemove += this.routes[indexOfRoute].numberOfRouteStops;
+		}
+		
+		int numberOfRouteStops = this.routeStops.length + numberOfRouteStopsToAdd;
+		if (this.numberOfRemovedRouteStops + numberOfRouteStopsToRemove > MAX_SHARE_OF_REMOVED_ROUTE_STOPS * numberOfRouteStops) {
+			log.info("Too many routes removed. Compacting the transit router network.");
+			this.initializeFromSchedule(transitSchedule, maxBeelineWalkConnectionDistance);
+			return;
 		}
 		
-		Map<WrappedTransitRouteStop, Integer> routeStopEntry2Index = new HashMap<>();
+		this.removeRoutes(indicesOfRoutesToRemove);
+		this.addRoutes(linesOfRoutesToAdd, routesToAdd);
+		this.createTransferArrays();
+		
+		log.info("transit router network updated: " + indicesOfRoutesToRemove.size() + " routes removed, " + routesToAdd.size() + " routes added, " + 
+				this.numberOfRemovedRouteStops + " of " + this.routeStops.length + " route stops belong to removed routes.");
+	}
+
+	private void fillArrays(TransitSchedule transitSchedule, double maxBeelineWalkConnectionDistance) {
+		this.maxBeelineWalkConnectionDistance = maxBeelineWalkConnectionDistance;
+		
+		this.transitStopFacility2Index = new HashMap<>();
+		this.routeHash2Index.clear();
+		this.transitStopsInRightOrder.clear();
+		this.transfersPerStop.clear();
+		this.numberOfActiveRouteStopsPerStop = new int[0];
+		this.removedRouteStops = new BitSet();
+		this.numberOfRemovedRouteStops = 0;
+		
+		this.arrivalTimes = new double[0];
+		this.departureTimes = new double[0];
+		this.routes = new RouteEntry[0];
+		this.routeStops = new RouteStopEntry[0];
+		
+		List<TransitLine> lines = new ArrayList<>();
+		List<TransitRoute> routesToAdd = new ArrayList<>();
+		Set<TransitStopFacility> transitStopFacilitiesForBounds = new HashSet<>();
 		
 		for (TransitLine line : transitSchedule.getTransitLines().values()) {
 			for (TransitRoute route : line.getRoutes().values()) {
-				
-				// fill departures
-				final int indexOfFirstDeparture = departureTimesList.size();
-				final int numberOfDepartures = route.getDepartures().size();
-				double[] departureTimes = new double[numberOfDepartures];
-
-				int i = 0;
-				for (Departure dep : route.getDepartures().values()) {
-					departureTimes[i++] = dep.getDepartureTime();
+				lines.add(line);
+				routesToAdd.add(route);
+				for (TransitRouteStop routeStop : route.getStops()) {
+					transitStopFacilitiesForBounds.add(routeStop.getStopFacility());
 				}
-				Arrays.sort(departureTimes);
+			}
+		}
+		
+		// stops not served yet are included in the bounds, so that lines added later on usually fit in
+		transitStopFacilitiesForBounds.addAll(transitSchedule.getFacilities().values());
+		this.createQuadTrees(transitStopFacilitiesForBounds);
+		this.addRoutes(lines, routesToAdd);
+		
+		int transfersAdded = 0;
+		for (List<TransferEntry> transfersFromThis : this.transfersPerStop) {
+			transfersAdded += transfersFromThis.size();
+		}
+		log.info("Added " + transfersAdded + " transfers (from each transit stop facility to each other transit route stop within " + maxBeelineWalkConnectionDistance + "m beeline distance.");
+		
+		this.createTransferArrays();
+	}
 
-				for (TransitRouteStop stop : route.getStops()) {
-					for (int j = 0; j < departureTimes.length; j++) {
-						if (stop.getArrivalOffset() == Double.NEGATIVE_INFINITY) {
-							// There should always be a valid number set OR the field should not be present - it's optional
-							// Take the departure offset as fallback
-							arrivalTimesList.add(departureTimes[j] + stop.getDepartureOffset());
-						} else {
-						arrivalTimesList.add(departureTimes[j] + stop.getArrivalOffset());
-						}
-						
-						departureTimesList.add(departureTimes[j] + stop.getDepartureOffset());
-					}
+	private boolean isUnchanged(RouteEntry routeEntry, TransitLine line, TransitRoute route) {
+		if (!routeEntry.lineId.equals(line.getId()) || !routeEntry.routeId.equals(route.getId())) {
+			return false;
+		}
+		if (routeEntry.numberOfRouteStops != route.getStops().size() || routeEntry.numberOfDepartures != route.getDepartures().size()) {
+			return false;
+		}
+		
+		int indexOfRouteStop = routeEntry.indexOfFirstStop;
+		for (TransitRouteStop routeStop : route.getStops()) {
+			Integer indexOfStop = this.transitStopFacility2Index.get(routeStop.getStopFacility());
+			if (indexOfStop == null || indexOfStop.intValue() != this.routeStops[indexOfRouteStop].indexOfStopFacility) {
+				return false;
+			}
+			indexOfRouteStop++;
+		}
+		
+		double[] departureTimes = getSortedDepartureTimes(route);
+		int indexOfTime = routeEntry.indexOfFirstDeparture;
+		for (TransitRouteStop stop : route.getStops()) {
+			for (int j = 0; j < departureTimes.length; j++) {
+				if (this.arrivalTimes[indexOfTime] != departureTimes[j] + getArrivalOffset(stop) || this.departureTimes[indexOfTime] != departureTimes[j] + stop.getDepartureOffset()) {
+					return false;
 				}
-				// So the arrivalTimesList contains | stop1ar1 stop1ar2 ... stop1arLast stop2ar1 stop2ar2 stop2arLast ... |,
-				// and this in addition flattened for all routes.
-				// It seems that it can reconstruct everything from "indexOfFirstDeparture", "numberOfDepartures", "numberOfRouteSteps".
-				
-				final int indexOfFirstStop = routeStopList.size();
-				final int numberOfRouteStops = route.getStops().size();
-				
-				final int indexOfRoute = routesList.size();
-				
-				// fill route
-				RouteEntry routeEntry = new RouteEntry(line.getId(), route.getId(), indexOfFirstDeparture, numberOfDepartures, indexOfFirstStop, numberOfRouteStops);
-				routesList.add(routeEntry);
+				indexOfTime++;
+			}
+		}
+		return true;
+	}
+
+	private void removeRoutes(Set<Integer> indicesOfRoutesToRemove) {
+		// do not modify the arrays of the current search data
+		this.routes = this.routes.clone();
+		
+		for (Integer indexOfRoute : indicesOfRoutesToRemove) {
+			RouteEntry routeEntry = this.routes[indexOfRoute];
+			this.routeHash2Index.remove(getHash(routeEntry));
+			
+			// a route without departures is never boarded
+			this.routes[indexOfRoute] = new RouteEntry(routeEntry.lineId, routeEntry.routeId, routeEntry.indexOfFirstDeparture, 0, routeEntry.indexOfFirstStop, routeEntry.numberOfRouteStops);
+			
+			for (int indexOfRouteStop = routeEntry.indexOfFirstStop; indexOfRouteStop < routeEntry.indexOfFirstStop + routeEntry.numberOfRouteStops; indexOfRouteStop++) {
+				int indexOfStop = this.routeStops[indexOfRouteStop].indexOfStopFacility;
+				TransitStopFacility transitStopFacility = this.transitStopsInRightOrder.get(indexOfStop);
 				
+				this.removedRouteStops.set(indexOfRouteStop);
+				this.numberOfRemovedRouteStops++;
+				this.routeStopQuadTree.remove(transitStopFacility.getCoord().getX(), transitStopFacility.getCoord().getY(), indexOfRouteStop);
 				
-				// fill route stops
-				int placeOfCurrentStop = 0;
-				for (TransitRouteStop routeStop : route.getStops()) {
-					String routeStopHash = getHash(line, route, routeStop, placeOfCurrentStop);
-					WrappedTransitRouteStop wrappedRouteStop = hash2routeStop.get(routeStopHash);
-					
-					placeOfCurrentStop++;
-
-					final int indexOfRouteStop = routeStopList.size();
-					final int numberOfRemainingStopsInThisRoute = route.getStops().size() - placeOfCurrentStop;
-					
-					routeStopList.add(new RouteStopEntry(indexOfRoute, this.transitStopFacility2Index.get(routeStop.getStopFacility()).intValue(), indexOfRouteStop, numberOfRemainingStopsInThisRoute));
-					routeStopEntry2Index.put(wrappedRouteStop, indexOfRouteStop);
+				this.numberOfActiveRouteStopsPerStop[indexOfStop]--;
+				if (this.numberOfActiveRouteStopsPerStop[indexOfStop] == 0) {
+					// the stop is not served anymore
+					this.quadTree.remove(transitStopFacility.getCoord().getX(), transitStopFacility.getCoord().getY(), transitStopFacility);
+					this.transfersPerStop.get(indexOfStop).clear();
 				}
-				
-
 			}
 		}
+	}
+
+	private void addRoutes(List<TransitLine> lines, List<TransitRoute> routesToAdd) {
+		int numberOfTimesToAdd = 0;
+		int numberOfRouteStopsToAdd = 0;
+		for (TransitRoute route : routesToAdd) {
+			numberOfTimesToAdd += route.getStops().size() * route.getDepartures().size();
+			numberOfRouteStopsToAdd += route.getStops().size();
+		}
 		
-		// complete stops and their transfers
-		for (TransitStopFacility transitStopFacility : transitStopsInRightOrder) {
-			int indexOfFirstTransfer = transfersList.size();
-			int numberOfTransfers = 0;
+		// new routes are appended, the indices of the existing ones remain stable
+		int indexOfTime = this.arrivalTimes.length;
+		int indexOfRouteStop = this.routeStops.length;
+		int indexOfRoute = this.routes.length;
+		
+		this.arrivalTimes = Arrays.copyOf(this.arrivalTimes, indexOfTime + numberOfTimesToAdd);
+		this.departureTimes = Arrays.copyOf(this.departureTimes, indexOfTime + numberOfTimesToAdd);
+		this.routeStops = Arrays.copyOf(this.routeStops, indexOfRouteStop + numberOfRouteStopsToAdd);
+		this.routes = Arrays.copyOf(this.routes, indexOfRoute + routesToAdd.size());
+		
+		Set<Integer> stopsServedForTheFirstTime = new LinkedHashSet<>();
+		List<Integer> routeStopsAdded = new ArrayList<>(numberOfRouteStopsToAdd);
+		
+		for (int i = 0; i < routesToAdd.size(); i++) {
+			TransitLine line = lines.get(i);
+			TransitRoute route = routesToAdd.get(i);
 			
-			for (TransferEntryPointer transferEntryPointer : stop2TransitRouteStop2Transfers.get(transitStopFacility).values()) {
-				int indexOfRouteStop = routeStopEntry2Index.get(transferEntryPointer.transferDestination).intValue();
-				transfersList.add(new TransferEntry(indexOfRouteStop, transferEntryPointer.transferTime));
-				numberOfTransfers++;
+			// fill departures
+			final int indexOfFirstDeparture = indexOfTime;
+			double[] departureTimes = getSortedDepartureTimes(route);
+			
+			for (TransitRouteStop stop : route.getStops()) {
+				for (int j = 0; j < departureTimes.length; j++) {
+					this.arrivalTimes[indexOfTime] = departureTimes[j] + getArrivalOffset(stop);
+					this.departureTimes[indexOfTime] = departureTimes[j] + stop.getDepartureOffset();
+					indexOfTime++;
+				}
+			}
+			// So the arrivalTimes contain | stop1ar1 stop1ar2 ... stop1arLast stop2ar1 stop2ar2 stop2arLast ... |,
+			// and this in addition flattened for all routes.
+			// It seems that it can reconstruct everything from "indexOfFirstDeparture", "numberOfDepartures", "numberOfRouteSteps".
+			
+			// fill route
+			this.routes[indexOfRoute] = new RouteEntry(line.getId(), route.getId(), indexOfFirstDeparture, departureTimes.length, indexOfRouteStop, route.getStops().size());
+			this.routeHash2Index.put(getHash(line, route), indexOfRoute);
+			
+			// fill route stops
+			int placeOfCurrentStop = 0;
+			for (TransitRouteStop routeStop : route.getStops()) {
+				TransitStopFacility transitStopFacility = routeStop.getStopFacility();
+				int indexOfStop = this.getOrCreateIndexOfStop(transitStopFacility);
+				
+				placeOfCurrentStop++;
+				final int numberOfRemainingStopsInThisRoute = route.getStops().size() - placeOfCurrentStop;
+				
+				this.routeStops[indexOfRouteStop] = new RouteStopEntry(indexOfRoute, indexOfStop, indexOfRouteStop, numberOfRemainingStopsInThisRoute);
+				this.routeStopQuadTree.put(transitStopFacility.getCoord().getX(), transitStopFacility.getCoord().getY(), indexOfRouteStop);
+				routeStopsAdded.add(indexOfRouteStop);
+				
+				if (this.numberOfActiveRouteStopsPerStop[indexOfStop] == 0) {
+					this.quadTree.put(transitStopFacility.getCoord().getX(), transitStopFacility.getCoord().getY(), transitStopFacility);
+					stopsServedForTheFirstTime.add(indexOfStop);
+				}
+				this.numberOfActiveRouteStopsPerStop[indexOfStop]++;
+				
+				indexOfRouteStop++;
 			}
 			
-			stopsList.add(new TransitStopEntry(transitStopFacility, numberOfTransfers, indexOfFirstTransfer));
+			indexOfRoute++;
 		}
 		
-		// create the final arrays
-		this.arrivalTimes = getPrimitiveArrayFromList(arrivalTimesList);
-		
-		this.departureTimes = getPrimitiveArrayFromList(departureTimesList);
-
-		this.routes = new RouteEntry[routesList.size()];
-		routesList.toArray(this.routes);
-		
-		this.routeStops = new RouteStopEntry[routeStopList.size()];
-		routeStopList.toArray(this.routeStops);
-		
-		this.transfers = new TransferEntry[transfersList.size()];
-		transfersList.toArray(this.transfers);
+		this.addTransfers(stopsServedForTheFirstTime, routeStopsAdded);
+	}
 
-		this.transitStops = new TransitStopEntry[stopsList.size()];
-		stopsList.toArray(this.transitStops);
+	private int getOrCreateIndexOfStop(TransitStopFacility transitStopFacility) {
+		Integer indexOfStop = this.transitStopFacility2Index.get(transitStopFacility);
+		if (indexOfStop == null) {
+			indexOfStop = this.transitStopsInRightOrder.size();
+			this.transitStopFacility2Index.put(transitStopFacility, indexOfStop);
+			this.transitStopsInRightOrder.add(transitStopFacility);
+			this.transfersPerStop.add(new ArrayList<TransferEntry>());
+			if (this.numberOfActiveRouteStopsPerStop.length <= indexOfStop) {
+				this.numberOfActiveRouteStopsPerStop = Arrays.copyOf(this.numberOfActiveRouteStopsPerStop, 2 * indexOfStop + 1);
+			}
+		}
+		return indexOfStop;
 	}
 
-	private Map<TransitStopFacility, HashMap<WrappedTransitRouteStop, TransferEntryPointer>> createTransfers(Map<TransitStopFacility, Set<Id<TransitRoute>>> transitStopFacilities2RouteIdsServed, Map<WrappedTransitRouteStop, Id<TransitRoute>> routeStop2routeId, double maxBeelineWalkConnectionDistance) {
-		Map<TransitStopFacility, HashMap<WrappedTransitRouteStop, TransferEntryPointer>> stop2TransitRouteStop2Transfers = new HashMap<>();
-		
-		QuadTree<WrappedTransitRouteStop> transitRouteStopQuadTree = this.createTransitRouteStopQuadTree(routeStop2routeId.keySet());
-		
+	private void addTransfers(Set<Integer> stopsServedForTheFirstTime, List<Integer> routeStopsAdded) {
 		// create transfers for all transit route stops if they're located less than beelineWalkConnectionDistance from each other
-		for (TransitStopFacility sourceStop : transitStopFacilities2RouteIdsServed.keySet()) {
-			// (just goes through all stops)
-
-			HashMap<WrappedTransitRouteStop, TransferEntryPointer> transfersFromThis = new HashMap<WrappedTransitRouteStop, TransferEntryPointer>();
+		for (Integer indexOfStop : stopsServedForTheFirstTime) {
+			// from stops served for the first time to all route stops
+			Coord fromCoord = this.transitStopsInRightOrder.get(indexOfStop).getCoord();
+			List<TransferEntry> transfersFromThis = this.transfersPerStop.get(indexOfStop);
+			transfersFromThis.clear();
 			
-			for (WrappedTransitRouteStop destinationStop : transitRouteStopQuadTree.getDisk(sourceStop.getCoord().getX(), sourceStop.getCoord().getY(), maxBeelineWalkConnectionDistance)) {
-				// (goes through all stops within walkConnectionDistance)
-
-				double transferTime = this.raptorDisutility.getTransferTime(sourceStop.getCoord(), destinationStop.transitRouteStop.getStopFacility().getCoord());
-				transfersFromThis.put(destinationStop, new TransferEntryPointer(-1, transferTime, destinationStop, routeStop2routeId.get(destinationStop)));
-				// (memorize: (1) which stop the walk goes to; (2) route id associated with that stop (presumably one stop per route even at same location)
+			for (Integer indexOfRouteStop : this.routeStopQuadTree.getDisk(fromCoord.getX(), fromCoord.getY(), this.maxBeelineWalkConnectionDistance)) {
+				Coord toCoord = this.transitStopsInRightOrder.get(this.routeStops[indexOfRouteStop].indexOfStopFacility).getCoord();
+				transfersFromThis.add(new TransferEntry(indexOfRouteStop, this.raptorDisutility.getTransferTime(fromCoord, toCoord)));
 			}
-			
-			stop2TransitRouteStop2Transfers.put(sourceStop, transfersFromThis);
 		}
 		
-		int transfersAdded = 0;
-		for (HashMap<WrappedTransitRouteStop, TransferEntryPointer> routeStop2Transfers : stop2TransitRouteStop2Transfers.values()) {
-			transfersAdded += routeStop2Transfers.size();
+		if (stopsServedForTheFirstTime.size() == this.quadTree.size()) {
+			// all transfers found already, e.g. when building from scratch
+			return;
 		}
-		log.info("Added " + transfersAdded + " transfers (from each transit stop facility to each other transit route stop within " + maxBeelineWalkConnectionDistance + "m beeline distance.");
 		
-		return stop2TransitRouteStop2Transfers;
+		for (Integer indexOfRouteStop : routeStopsAdded) {
+			// from all other stops to the route stops added
+			Coord toCoord = this.transitStopsInRightOrder.get(this.routeStops[indexOfRouteStop].indexOfStopFacility).getCoord();
+			
+			for (TransitStopFacility fromStop : this.quadTree.getDisk(toCoord.getX(), toCoord.getY(), this.maxBeelineWalkConnectionDistance)) {
+				int indexOfStop = this.transitStopFacility2Index.get(fromStop);
+				if (!stopsServedForTheFirstTime.contains(indexOfStop)) {
+					this.transfersPerStop.get(indexOfStop).add(new TransferEntry(indexOfRouteStop, this.raptorDisutility.getTransferTime(fromStop.getCoord(), toCoord)));
+				}
+			}
+		}
 	}
 
-	private Map<TransitStopFacility, HashMap<WrappedTransitRouteStop, TransferEntryPointer>> filterTransfers(TransitSchedule transitSchedule, Map<TransitStopFacility, HashMap<WrappedTransitRouteStop, TransferEntryPointer>> stop2TransitRouteStop2Transfers, Map<WrappedTransitRouteStop, Id<TransitRoute>> routeStop2routeId) {
-		Map<TransitStopFacility, Set<Id<TransitRoute>>> transitStopFacilities2RouteIdsThatCanBeTransferedTo = new HashMap<TransitStopFacility, Set<Id<TransitRoute>>>();
+	/**
+	 * Transfers from stops served by the same routes as their neighbours are not needed. Instead of deleting these
+	 * transfers, they are only skipped when creating the arrays, so that they are available again if the neighbours
+	 * change.
+	 * 
+	 * @return stops whose transfers are skipped
+	 */
+	private boolean[] filterTransfers() {
+		List<Set<Integer>> routesThatCanBeTransferedTo = new ArrayList<>(this.transfersPerStop.size());
 		
-		for (TransitStopFacility transitStopFacility : stop2TransitRouteStop2Transfers.keySet()) {
-			for (WrappedTransitRouteStop routeStopEntry : stop2TransitRouteStop2Transfers.get(transitStopFacility).keySet()) {
-				if (transitStopFacilities2RouteIdsThatCanBeTransferedTo.get(transitStopFacility) == null) {
-					transitStopFacilities2RouteIdsThatCanBeTransferedTo.put(transitStopFacility, new TreeSet<Id<TransitRoute>>());
+		for (List<TransferEntry> transfersFromThis : this.transfersPerStop) {
+			Set<Integer> indicesOfRoutes = new HashSet<>();
+			Iterator<TransferEntry> it = transfersFromThis.iterator();
+			while (it.hasNext()) {
+				TransferEntry transferEntry = it.next();
+				if (this.removedRouteStops.get(transferEntry.indexOfRouteStop)) {
+					// drop transfers to removed routes for good
+					it.remove();
+				} else {
+					indicesOfRoutes.add(this.routeStops[transferEntry.indexOfRouteStop].indexOfRoute);
 				}
-				transitStopFacilities2RouteIdsThatCanBeTransferedTo.get(transitStopFacility).add(routeStop2routeId.get(routeStopEntry));
 			}
+			routesThatCanBeTransferedTo.add(indicesOfRoutes);
 		}
 		
-		for (TransitLine line : transitSchedule.getTransitLines().values()) {
-			for (TransitRoute route : line.getRoutes().values()) {
-				Set<Id<TransitRoute>> secondLastRouteIdsServed = null;
-				Set<Id<TransitRoute>> lastRouteIdsServed = null;
-				Set<Id<TransitRoute>> currentRouteIdsServed = null;
-				
-				TransitStopFacility lastTransitStopFacility = null;
+		boolean[] stopsWithoutTransfers = new boolean[this.transfersPerStop.size()];
+		
+		for (RouteEntry route : this.routes) {
+			if (this.removedRouteStops.get(route.indexOfFirstStop)) {
+				continue;
+			}
+			
+			Set<Integer> secondLastRoutesServed = null;
+			Set<Integer> lastRoutesServed = null;
+			Set<Integer> currentRoutesServed = null;
+			
+			int lastIndexOfStop = -1;
+			
+			for (int indexOfRouteStop = route.indexOfFirstStop; indexOfRouteStop < route.indexOfFirstStop + route.numberOfRouteStops; indexOfRouteStop++) {
+				int indexOfStop = this.routeStops[indexOfRouteStop].indexOfStopFacility;
+				currentRoutesServed = routesThatCanBeTransferedTo.get(indexOfStop);
 				
-				for (TransitRouteStop stop : route.getStops()) {
-					currentRouteIdsServed = transitStopFacilities2RouteIdsThatCanBeTransferedTo.get(stop.getStopFacility());
-	
-					if (secondLastRouteIdsServed != null) {
-						// we now have three stops that can be compared
-						// remove all transfers from the last (the middle stop) if all three stops serve at least the same routes as well
-						
-						boolean atLeastOneStopDoesNotServeAllRoutes = false;
-						for (Id<TransitRoute> routeId : lastRouteIdsServed) {
-							// check for all routes served by the middle stop if those are also served by its predecessor and the following stop
-							if (!secondLastRouteIdsServed.contains(routeId) || !currentRouteIdsServed.contains(routeId)) {
-								// one of those two stops does not serve the route
-								atLeastOneStopDoesNotServeAllRoutes = true;
-								break;
-							}
-						}
-						if (!atLeastOneStopDoesNotServeAllRoutes) {
-							// ok, all stops serve the routes
-							// remove all transfers for this stop
-							stop2TransitRouteStop2Transfers.put(lastTransitStopFacility, new HashMap<WrappedTransitRouteStop, TransferEntryPointer>());
-						}
+				if (secondLastRoutesServed != null) {
+					// we now have three stops that can be compared
+					// remove all transfers from the last (the middle stop) if all three stops serve at least the same routes as well
+					if (secondLastRoutesServed.containsAll(lastRoutesServed) && currentRoutesServed.containsAll(lastRoutesServed)) {
+						// ok, all stops serve the routes
+						// remove all transfers for this stop
+						stopsWithoutTransfers[lastIndexOfStop] = true;
 					}
-					secondLastRouteIdsServed = lastRouteIdsServed;
-					lastRouteIdsServed = currentRouteIdsServed;
-					lastTransitStopFacility = stop.getStopFacility();
 				}
+				secondLastRoutesServed = lastRoutesServed;
+				lastRoutesServed = currentRoutesServed;
+				lastIndexOfStop = indexOfStop;
 			}
 		}
 		
-		// count again
-		int transfersAdded = 0;
-		for (HashMap<WrappedTransitRouteStop, TransferEntryPointer> routeStop2Transfers : stop2TransitRouteStop2Transfers.values()) {
-			transfersAdded += routeStop2Transfers.size();
+		return stopsWithoutTransfers;
+	}
+
+	private void createTransferArrays() {
+		boolean[] stopsWithoutTransfers = this.filterTransfers();
+		
+		// complete stops and their transfers
+		List<TransferEntry> transfersList = new ArrayList<>();
+		this.transitStops = new TransitStopEntry[this.transitStopsInRightOrder.size()];
+		
+		for (int indexOfStop = 0; indexOfStop < this.transitStops.length; indexOfStop++) {
+			int indexOfFirstTransfer = transfersList.size();
+			if (!stopsWithoutTransfers[indexOfStop]) {
+				transfersList.addAll(this.transfersPerStop.get(indexOfStop));
+			}
+			this.transitStops[indexOfStop] = new TransitStopEntry(this.transitStopsInRightOrder.get(indexOfStop), transfersList.size() - indexOfFirstTransfer, indexOfFirstTransfer);
 		}
-		log.info(transfersAdded + " transfers remain after filtering.");
-	
-		return stop2TransitRouteStop2Transfers;
+		
+		this.transfers = new TransferEntry[transfersList.size()];
+		transfersList.toArray(this.transfers);
+		log.info(this.transfers.length + " transfers remain after filtering.");
+		
+		this.searchData = new RaptorSearchData(this.arrivalTimes, this.departureTimes, this.routes, this.routeStops, this.transfers, this.transitStops, 
+				Collections.unmodifiableMap(new HashMap<>(this.transitStopFacility2Index)));
 	}
-	
-	private QuadTree<TransitStopFacility> createTransitStopFacilityQuadTree(Set<TransitStopFacility> stops) {
+
+	private void createQuadTrees(Set<TransitStopFacility> stops) {
 		double minX = Double.POSITIVE_INFINITY;
 		double minY = Double.POSITIVE_INFINITY;
 		double maxX = Double.NEGATIVE_INFINITY;
@@ -342,56 +501,40 @@ public final class TransitRouterQuadTree {
 			}
 		}
 	
-		QuadTree<TransitStopFacility> quadTree = new QuadTree<TransitStopFacility>(minX, minY, maxX, maxY);
-		for (TransitStopFacility stop : stops) {
-			Coord c = stop.getCoord();
-			quadTree.put(c.getX(), c.getY(), stop);
-		}
-		
-		return quadTree;
+		// both are filled while adding the routes
+		this.quadTree = new QuadTree<TransitStopFacility>(minX, minY, maxX, maxY);
+		this.routeStopQuadTree = new QuadTree<Integer>(minX, minY, maxX, maxY);
 	}
 
-	private QuadTree<WrappedTransitRouteStop> createTransitRouteStopQuadTree(Set<WrappedTransitRouteStop> routeStops) {
-		double minX = Double.POSITIVE_INFINITY;
-		double minY = Double.POSITIVE_INFINITY;
-		double maxX = Double.NEGATIVE_INFINITY;
-		double maxY = Double.NEGATIVE_INFINITY;
+	private boolean isWithinBounds(Coord c) {
+		return c.getX() >= this.quadTree.getMinEasting() && c.getX() <= this.quadTree.getMaxEasting() && 
+				c.getY() >= this.quadTree.getMinNorthing() && c.getY() <= this.quadTree.getMaxNorthing();
+	}
 	
-		for (WrappedTransitRouteStop stop : routeStops) {
-			Coord c = stop.transitRouteStop.getStopFacility().getCoord();
-			if (c.getX() < minX) {
-				minX = c.getX();
-			}
-			if (c.getY() < minY) {
-				minY = c.getY();
-			}
-			if (c.getX() > maxX) {
-				maxX = c.getX();
-			}
-			if (c.getY() > maxY) {
-				maxY = c.getY();
-			}
+	private static double[] getSortedDepartureTimes(TransitRoute route) {
+		double[] departureTimes = new double[route.getDepartures().size()];
+		int i = 0;
+		for (Departure dep : route.getDepartures().values()) {
+			departureTimes[i++] = dep.getDepartureTime();
 		}
+		Arrays.sort(departureTimes);
+		return departureTimes;
+	}
 	
-		QuadTree<WrappedTransitRouteStop> quadTree = new QuadTree<WrappedTransitRouteStop>(minX, minY, maxX, maxY);
-		for (WrappedTransitRouteStop stop : routeStops) {
-			Coord c = stop.transitRouteStop.getStopFacility().getCoord();
-			quadTree.put(c.getX(), c.getY(), stop);
+	private static double getArrivalOffset(TransitRouteStop stop) {
+		if (stop.getArrivalOffset() == Double.NEGATIVE_INFINITY) {
+			// There should always be a valid number set OR the field should not be present - it's optional
+			// Take the departure offset as fallback
+			return stop.getDepartureOffset();
 		}
-		
-		return quadTree;
+		return stop.getArrivalOffset();
 	}
 	
-	private static double[] getPrimitiveArrayFromList(List<Double> list) {
-	    double[] array = new double[list.size()];
-	    int i = 0;
-	    for (Double entry : list) {
-	        array[i++] = entry.doubleValue();
-	    }
-	    return array;
+	private static String getHash(TransitLine transitLine, TransitRoute transitRoute){
+		return transitLine.getId().toString() + "-" + transitRoute.getId().toString();
 	}
 	
-	private static String getHash(TransitLine transitLine, TransitRoute transitRoute, TransitRouteStop transitRouteStop, int position){
-		return transitLine.getId().toString() + "-" + transitRoute.getId().toString() + "-" + transitRouteStop.getStopFacility().getId().toString() + "-" + position;
+	private static String getHash(RouteEntry routeEntry){
+		return routeEntry.lineId.toString() + "-" + routeEntry.routeId.toString();
 	}
 }
@@ -0,0 +1,79 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.minibus.performance.raptor;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.contrib.minibus.PConfigGroup;
+import org.matsim.contrib.minibus.routeProvider.PScenarioHelper;
+import org.matsim.contrib.minibus.schedule.CreateStopsForAllCarLinks;
+import org.matsim.core.config.Config;
+import org.matsim.pt.router.TransitRouterConfig;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class RaptorTest {
+	
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+	
+	@Test
+	public final void testParetoSetForDepartureWindow() {
+		
+		Scenario scenario = PScenarioHelper.createTestNetwork();
+		Config config = scenario.getConfig();
+		PConfigGroup pC = new PConfigGroup();
+		
+		TransitSchedule tS = CreateStopsForAllCarLinks.createStopsForAllCarLinks(scenario.getNetwork(), pC);
+		tS.addTransitLine(TransitRouterQuadTreeTest.createTransitLine(tS, pC, "line1", new String[] {"1424", "2434", "3444", "4434"}, 7.0 * 3600.0));
+		
+		TransitRouterConfig trConfig = new TransitRouterConfig(config.planCalcScore(), config.plansCalcRoute(), config.transitRouter(), config.vspExperimental());
+		RaptorDisutility raptorDisutility = new RaptorDisutility(trConfig, pC.getEarningsPerBoardingPassenger(), pC.getEarningsPerKilometerAndPassenger());
+		TransitRouterQuadTree quadTree = new TransitRouterQuadTree(raptorDisutility);
+		quadTree.initializeFromSchedule(tS, trConfig.getBeelineWalkConnectionDistance());
+		Raptor raptor = new Raptor(quadTree, raptorDisutility, trConfig);
+		
+		TransitStopFacility fromStop = tS.getFacilities().get(Id.create(pC.getPIdentifier() + "1424", TransitStopFacility.class));
+		TransitStopFacility toStop = tS.getFacilities().get(Id.create(pC.getPIdentifier() + "4434", TransitStopFacility.class));
+		
+		List<RaptorRoute> paretoSet = raptor.calcParetoRoutes(fromStop, toStop, 7.0 * 3600.0, null);
+		Assert.assertEquals("Only one route for a single departure time", 1, paretoSet.size());
+		Assert.assertEquals("Direct connection", 0, paretoSet.get(0).getNumberOfTransfers());
+		
+		// departures every 10 minutes
+		List<RaptorRoute> rangeParetoSet = raptor.calcParetoRoutes(fromStop, toStop, 7.0 * 3600.0, 3600.0 - 1.0, null);
+		Assert.assertTrue("At least one route per departure within the window", rangeParetoSet.size() >= 6);
+		for (int i = 0; i < rangeParetoSet.size(); i++) {
+			RaptorRoute route = rangeParetoSet.get(i);
+			Assert.assertTrue("Departure within the window", route.getDepartureTime() >= 7.0 * 3600.0 && route.getDepartureTime() < 8.0 * 3600.0);
+			if (i > 0) {
+				Assert.assertTrue("Latest departure first", route.getDepartureTime() < rangeParetoSet.get(i - 1).getDepartureTime());
+			}
+			for (RaptorRoute otherRoute : rangeParetoSet) {
+				Assert.assertTrue("Routes must not dominate each other", route == otherRoute || !otherRoute.isAtLeastAsGoodAs(route));
+			}
+		}
+	}
+}
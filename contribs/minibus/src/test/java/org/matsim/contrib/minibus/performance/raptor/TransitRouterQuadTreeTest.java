@@ -0,0 +1,141 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.minibus.performance.raptor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.contrib.minibus.PConfigGroup;
+import org.matsim.contrib.minibus.routeProvider.PScenarioHelper;
+import org.matsim.contrib.minibus.schedule.CreateStopsForAllCarLinks;
+import org.matsim.core.config.Config;
+import org.matsim.pt.router.TransitRouterConfig;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class TransitRouterQuadTreeTest {
+	
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+	
+	@Test
+	public final void testUpdateFromSchedule() {
+		
+		Scenario scenario = PScenarioHelper.createTestNetwork();
+		Config config = scenario.getConfig();
+		PConfigGroup pC = new PConfigGroup();
+		
+		TransitSchedule tS = CreateStopsForAllCarLinks.createStopsForAllCarLinks(scenario.getNetwork(), pC);
+		
+		TransitRouterConfig trConfig = new TransitRouterConfig(config.planCalcScore(), config.plansCalcRoute(), config.transitRouter(), config.vspExperimental());
+		RaptorDisutility raptorDisutility = new RaptorDisutility(trConfig, pC.getEarningsPerBoardingPassenger(), pC.getEarningsPerKilometerAndPassenger());
+		double distance = trConfig.getBeelineWalkConnectionDistance();
+		
+		TransitRouterQuadTree quadTree = new TransitRouterQuadTree(raptorDisutility);
+		
+		TransitLine line1 = createTransitLine(tS, pC, "line1", new String[] {"1424", "2434", "3444", "4434"}, 7.0 * 3600.0);
+		tS.addTransitLine(line1);
+		quadTree.updateFromSchedule(tS, distance);
+		RaptorSearchData firstSearchData = quadTree.getSearchData();
+		int numberOfRoutes = firstSearchData.routes.length;
+		
+		// add a line
+		tS.addTransitLine(createTransitLine(tS, pC, "line2", new String[] {"2111", "2122", "2223", "2333"}, 7.0 * 3600.0));
+		quadTree.updateFromSchedule(tS, distance);
+		
+		Assert.assertEquals("Search data handed out before must not change", numberOfRoutes, firstSearchData.routes.length);
+		Assert.assertTrue("Routes of the new line must be appended", quadTree.getSearchData().routes.length > numberOfRoutes);
+		for (int i = 0; i < numberOfRoutes; i++) {
+			Assert.assertSame("Unchanged routes keep their index", firstSearchData.routes[i], quadTree.getSearchData().routes[i]);
+		}
+		assertSameRoutes(tS, quadTree, raptorDisutility, trConfig);
+		
+		// the operator of line1 shifts its service, the line is created again
+		tS.removeTransitLine(line1);
+		tS.addTransitLine(createTransitLine(tS, pC, "line1", new String[] {"1424", "2434", "3444", "4434"}, 7.5 * 3600.0));
+		quadTree.updateFromSchedule(tS, distance);
+		assertSameRoutes(tS, quadTree, raptorDisutility, trConfig);
+		
+		// drop line1
+		tS.removeTransitLine(tS.getTransitLines().get(Id.create("line1", TransitLine.class)));
+		quadTree.updateFromSchedule(tS, distance);
+		assertSameRoutes(tS, quadTree, raptorDisutility, trConfig);
+	}
+	
+	static TransitLine createTransitLine(TransitSchedule tS, PConfigGroup pC, String lineId, String[] linkIds, double startTime) {
+		TransitScheduleFactory factory = tS.getFactory();
+		
+		List<TransitRouteStop> stops = new ArrayList<>();
+		double offset = 0.0;
+		for (String linkId : linkIds) {
+			TransitStopFacility stop = tS.getFacilities().get(Id.create(pC.getPIdentifier() + linkId, TransitStopFacility.class));
+			stops.add(factory.createTransitRouteStop(stop, offset, offset + 30.0));
+			offset += 180.0;
+		}
+		
+		TransitLine line = factory.createTransitLine(Id.create(lineId, TransitLine.class));
+		TransitRoute route = factory.createTransitRoute(Id.create(lineId + "-route1", TransitRoute.class), null, stops, pC.getMode());
+		for (int i = 0; i < 12; i++) {
+			route.addDeparture(factory.createDeparture(Id.create(i, Departure.class), startTime + i * 600.0));
+		}
+		line.addRoute(route);
+		return line;
+	}
+	
+	/**
+	 * Compares the routes found after incremental updates with the ones found after building from scratch.
+	 */
+	private static void assertSameRoutes(TransitSchedule tS, TransitRouterQuadTree updatedQuadTree, RaptorDisutility raptorDisutility, TransitRouterConfig trConfig) {
+		TransitRouterQuadTree newQuadTree = new TransitRouterQuadTree(raptorDisutility);
+		newQuadTree.initializeFromSchedule(tS, trConfig.getBeelineWalkConnectionDistance());
+		
+		Raptor updatedRaptor = new Raptor(updatedQuadTree, raptorDisutility, trConfig);
+		Raptor newRaptor = new Raptor(newQuadTree, raptorDisutility, trConfig);
+		
+		for (TransitStopFacility fromStop : tS.getFacilities().values()) {
+			for (TransitStopFacility toStop : tS.getFacilities().values()) {
+				List<Leg> updatedLegs = updatedRaptor.calcRoute(fromStop, toStop, 7.5 * 3600.0, null);
+				List<Leg> newLegs = newRaptor.calcRoute(fromStop, toStop, 7.5 * 3600.0, null);
+				
+				if (newLegs == null) {
+					Assert.assertNull("No route expected from " + fromStop.getId() + " to " + toStop.getId(), updatedLegs);
+					continue;
+				}
+				Assert.assertNotNull("Route expected from " + fromStop.getId() + " to " + toStop.getId(), updatedLegs);
+				Assert.assertEquals("Number of legs from " + fromStop.getId() + " to " + toStop.getId(), newLegs.size(), updatedLegs.size());
+				for (int i = 0; i < newLegs.size(); i++) {
+					Assert.assertEquals("Mode of leg " + i, newLegs.get(i).getMode(), updatedLegs.get(i).getMode());
+					Assert.assertEquals("Travel time of leg " + i, newLegs.get(i).getTravelTime(), updatedLegs.get(i).getTravelTime(), MatsimTestUtils.EPSILON);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.noise;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.noise.data.NoiseContext;
+import org.matsim.contrib.noise.data.NoiseLink;
+import org.matsim.contrib.noise.data.NoiseReceiverPoint;
+import org.matsim.contrib.noise.data.ReceiverPointLinkMatrix;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Compact alternative to the per-hour csv files written by {@link NoiseWriter}. All time bins of one iteration are
+ * appended to two compressed binary files (see {@link DataOutputStream}):
+ * <ul>
+ * <li>receiverPoints.bin.gz: number of receiver points, then id, x and y of each receiver point; then, for each time
+ * bin, the time bin end time (double) followed by immission, affected agent units and damage costs (floats) of each
+ * receiver point</li>
+ * <li>links.bin.gz: number of links, then the id of each link; then, for each time bin, the time bin end time (double)
+ * followed by emission, damage costs, average damage costs per car and per hgv, marginal damage costs per car and per
+ * hgv (floats) of each link</li>
+ * </ul>
+ * Receiver points and links are written in the order given by the {@link ReceiverPointLinkMatrix}.
+ */
+public class NoiseBinaryWriter {
+	private static final Logger log = Logger.getLogger(NoiseBinaryWriter.class);
+
+	private final NoiseContext noiseContext;
+	private final DataOutputStream receiverPointStream;
+	private final DataOutputStream linkStream;
+	
+	public NoiseBinaryWriter(NoiseContext noiseContext, String outputPath) {
+		this.noiseContext = noiseContext;
+		
+		File dir = new File(outputPath);
+		dir.mkdirs();
+		
+		this.receiverPointStream = new DataOutputStream(IOUtils.getOutputStream(outputPath + "receiverPoints.bin.gz"));
+		this.linkStream = new DataOutputStream(IOUtils.getOutputStream(outputPath + "links.bin.gz"));
+		
+		ReceiverPointLinkMatrix matrix = noiseContext.getReceiverPointLinkMatrix();
+		try {
+			receiverPointStream.writeInt(matrix.getReceiverPointCount());
+			for (int row = 0; row < matrix.getReceiverPointCount(); row++) {
+				NoiseReceiverPoint rp = matrix.getReceiverPoint(row);
+				receiverPointStream.writeUTF(rp.getId().toString());
+				receiverPointStream.writeDouble(rp.getCoord().getX());
+				receiverPointStream.writeDouble(rp.getCoord().getY());
+			}
+			
+			linkStream.writeInt(matrix.getLinkCount());
+			for (int idx = 0; idx < matrix.getLinkCount(); idx++) {
+				linkStream.writeUTF(matrix.getLink(idx).getId().toString());
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		
+		log.info("Writing binary noise output to " + outputPath);
+	}
+
+	/**
+	 * Appends the values of the current time bin.
+	 */
+	public void writeCurrentTimeBin() {
+		ReceiverPointLinkMatrix matrix = noiseContext.getReceiverPointLinkMatrix();
+		double timeBinEndTime = noiseContext.getCurrentTimeBinEndTime();
+		
+		try {
+			receiverPointStream.writeDouble(timeBinEndTime);
+			for (int row = 0; row < matrix.getReceiverPointCount(); row++) {
+				NoiseReceiverPoint rp = matrix.getReceiverPoint(row);
+				receiverPointStream.writeFloat((float) rp.getFinalImmission());
+				receiverPointStream.writeFloat((float) rp.getAffectedAgentUnits());
+				receiverPointStream.writeFloat((float) rp.getDamageCosts());
+			}
+			
+			linkStream.writeDouble(timeBinEndTime);
+			for (int idx = 0; idx < matrix.getLinkCount(); idx++) {
+				Link link = matrix.getLink(idx);
+				NoiseLink noiseLink = noiseContext.getNoiseLinks().get(link.getId());
+				if (noiseLink == null) {
+					for (int i = 0; i < 6; i++) {
+						linkStream.writeFloat(0.f);
+					}
+				} else {
+					linkStream.writeFloat((float) noiseLink.getEmission());
+					linkStream.writeFloat((float) noiseLink.getDamageCost());
+					linkStream.writeFloat((float) noiseLink.getAverageDamageCostPerCar());
+					linkStream.writeFloat((float) noiseLink.getAverageDamageCostPerHgv());
+					linkStream.writeFloat((float) noiseLink.getMarginalDamageCostPerCar());
+					linkStream.writeFloat((float) noiseLink.getMarginalDamageCostPerHgv());
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	public void close() {
+		try {
+			try {
+				receiverPointStream.close();
+			} finally {
+				linkStream.close();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -108,6 +108,7 @@ public class NoiseCalculationOnline implements BeforeMobsimListener, AfterMobsim
 		NoiseWriter.writeReceiverPoints(noiseContext, event.getServices().getConfig().controler().getOutputDirectory() + "/receiverPoints/", false);
 			
 		this.timeTracker = new NoiseTimeTracker(noiseContext, event.getServices().getEvents(), event.getServices().getConfig().controler().getOutputDirectory() + "/ITERS/");
+		this.timeTracker.setCollectNoiseEvents(false);// the noise events are passed to the events manager
 		event.getServices().getEvents().addHandler(this.timeTracker);
 	
 		if (this.noiseContext.getNoiseParams().isUseActualSpeedLevel()) {
@@ -132,10 +133,9 @@ public class NoiseCalculationOnline implements BeforeMobsimListener, AfterMobsim
 		log.info("Resetting noise immissions, activity information and damages...");
 
 		this.noiseContext.getNoiseLinks().clear();
-		this.noiseContext.getTimeInterval2linkId2noiseLinks().clear();
+		this.noiseContext.getLinkDamageCosts().clear();
 		
 		for (NoiseReceiverPoint rp : this.noiseContext.getReceiverPoints().values()) {
-			rp.getLinkId2IsolatedImmission().clear();
 			rp.setFinalImmission(0.);
 			rp.setDamageCosts(0.);
 			rp.setDamageCostsPerAffectedAgentUnit(0.);
@@ -80,6 +80,7 @@ public class NoiseConfigGroup extends ReflectiveConfigGroup {
 	private double relevantRadius = 500.;
 	private String tunnelLinkIdFile = null;
 	private int writeOutputIteration = 10;
+	private boolean useBinaryOutputFormat = false;
 	private boolean useActualSpeedLevel = true;
 	private boolean allowForSpeedsOutsideTheValidRange = false;
 	
@@ -131,6 +132,7 @@ public class NoiseConfigGroup extends ReflectiveConfigGroup {
 		comments.put("tunnelLinkIDs", "Specifies the tunnel link IDs. Will be ignored in case a the tunnel link IDs are provided as file (see parameter 'tunnelLinkIdFile')." ) ;
 
 		comments.put("writeOutputIteration", "Specifies how often the noise-specific output is written out." ) ;
+		comments.put("useBinaryOutputFormat", "Set to 'true' if the noise-specific output should be written to two compressed binary files per iteration instead of several csv files per time bin. Otherwise set to 'false'." ) ;
 		comments.put("useActualSpeedLevel", "Set to 'true' if the actual speed level should be used to compute noise levels. Set to 'false' if the freespeed level should be used to compute noise levels." ) ;
 		comments.put("allowForSpeedsOutsideTheValidRange", "Set to 'true' if speed levels below 30 km/h or above 80 km/h (HGV) / 130 km/h (car) should be used to compute noise levels. Set to 'false' if speed levels outside of the valid range should not be used to compute noise levels (recommended)." ) ;
 		
@@ -508,6 +510,17 @@ public class NoiseConfigGroup extends ReflectiveConfigGroup {
 		this.writeOutputIteration = writeOutputIteration;
 	}
 
+	@StringGetter( "useBinaryOutputFormat" )
+	public boolean isUseBinaryOutputFormat() {
+		return useBinaryOutputFormat;
+	}
+
+	@StringSetter( "useBinaryOutputFormat" )
+	public void setUseBinaryOutputFormat(boolean useBinaryOutputFormat) {
+		log.info("Writing the output in the binary format: " + useBinaryOutputFormat);
+		this.useBinaryOutputFormat = useBinaryOutputFormat;
+	}
+
 	@StringSetter( "tunnelLinkIdFile" )
 	public void setTunnelLinkIdFile(String tunnelLinkIdFile) {
 		log.info("setting file which contains the tunnel link Ids to " + tunnelLinkIdFile + ".");
@@ -0,0 +1,140 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.noise.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+
+/**
+ * Average and marginal damage costs per vehicle for each link and time bin, e.g. for computing the expected noise tolls
+ * in the next iteration. Only these four values are kept per link and time bin, and only for the links with non-zero
+ * costs (usually a small share of the network); they are stored in primitive arrays sorted by link index.
+ */
+public class NoiseLinkDamageCosts {
+	
+	private static final int AVERAGE_CAR = 0;
+	private static final int AVERAGE_HGV = 1;
+	private static final int MARGINAL_CAR = 2;
+	private static final int MARGINAL_HGV = 3;
+	private static final int VALUE_COUNT = 4;
+	
+	private static class TimeBin {
+		private final int[] links;// sorted link indices
+		private final double[] values;// VALUE_COUNT values per link
+
+		private TimeBin(int[] links, double[] values) {
+			this.links = links;
+			this.values = values;
+		}
+	}
+	
+	private final double timeBinSize;
+	private final Map<Id<Link>, Integer> linkIndices = new HashMap<>();
+	private final List<Id<Link>> linkIds = new ArrayList<>();
+	private final List<TimeBin> timeBins = new ArrayList<>();// null if the time bin has not been stored
+
+	public NoiseLinkDamageCosts(Network network, double timeBinSize) {
+		this.timeBinSize = timeBinSize;
+		for (Id<Link> linkId : network.getLinks().keySet()) {
+			linkIndices.put(linkId, linkIndices.size());
+			linkIds.add(linkId);
+		}
+	}
+	
+	private int getTimeBin(double timeBinEndTime) {
+		return (int) (timeBinEndTime / timeBinSize) - 1;
+	}
+
+	/**
+	 * Stores the costs of the links of the time bin ending at timeBinEndTime.
+	 */
+	public void store(double timeBinEndTime, Map<Id<Link>, NoiseLink> noiseLinks) {
+		int timeBin = getTimeBin(timeBinEndTime);
+		while (timeBins.size() <= timeBin) {
+			timeBins.add(null);
+		}
+		
+		// links with non-zero costs only
+		int[] links = new int[noiseLinks.size()];
+		int linkCount = 0;
+		for (NoiseLink noiseLink : noiseLinks.values()) {
+			Integer index = linkIndices.get(noiseLink.getId());
+			if (index != null && (noiseLink.getAverageDamageCostPerCar() != 0. || noiseLink.getAverageDamageCostPerHgv() != 0.
+					|| noiseLink.getMarginalDamageCostPerCar() != 0. || noiseLink.getMarginalDamageCostPerHgv() != 0.)) {
+				links[linkCount++] = index;
+			}
+		}
+		links = Arrays.copyOf(links, linkCount);
+		Arrays.sort(links);
+		
+		double[] values = new double[VALUE_COUNT * linkCount];
+		for (int i = 0; i < linkCount; i++) {
+			NoiseLink noiseLink = noiseLinks.get(linkIds.get(links[i]));
+			values[VALUE_COUNT * i + AVERAGE_CAR] = noiseLink.getAverageDamageCostPerCar();
+			values[VALUE_COUNT * i + AVERAGE_HGV] = noiseLink.getAverageDamageCostPerHgv();
+			values[VALUE_COUNT * i + MARGINAL_CAR] = noiseLink.getMarginalDamageCostPerCar();
+			values[VALUE_COUNT * i + MARGINAL_HGV] = noiseLink.getMarginalDamageCostPerHgv();
+		}
+		timeBins.set(timeBin, new TimeBin(links, values));
+	}
+	
+	private double get(Id<Link> linkId, double timeBinEndTime, int value) {
+		int timeBin = getTimeBin(timeBinEndTime);
+		Integer index = linkIndices.get(linkId);
+		if (timeBin < 0 || timeBin >= timeBins.size() || timeBins.get(timeBin) == null || index == null) {
+			return 0.;
+		}
+		
+		TimeBin bin = timeBins.get(timeBin);
+		int i = Arrays.binarySearch(bin.links, index);
+		return i < 0 ? 0. : bin.values[VALUE_COUNT * i + value];
+	}
+	
+	/**
+	 * @return 0 if nothing has been stored for the link and time bin
+	 */
+	public double getAverageDamageCostPerCar(Id<Link> linkId, double timeBinEndTime) {
+		return get(linkId, timeBinEndTime, AVERAGE_CAR);
+	}
+
+	public double getAverageDamageCostPerHgv(Id<Link> linkId, double timeBinEndTime) {
+		return get(linkId, timeBinEndTime, AVERAGE_HGV);
+	}
+
+	public double getMarginalDamageCostPerCar(Id<Link> linkId, double timeBinEndTime) {
+		return get(linkId, timeBinEndTime, MARGINAL_CAR);
+	}
+
+	public double getMarginalDamageCostPerHgv(Id<Link> linkId, double timeBinEndTime) {
+		return get(linkId, timeBinEndTime, MARGINAL_HGV);
+	}
+	
+	public void clear() {
+		timeBins.clear();
+	}
+}
@@ -46,14 +46,13 @@ public class NoiseReceiverPoint extends ReceiverPoint {
 
 	private Map<Id<Person>, ArrayList<PersonActivityInfo>> personId2actInfos = new HashMap<Id<Person>, ArrayList<PersonActivityInfo>>();
 	
-	// initialization
-	private Map<Id<Link>, Double> linkId2distanceCorrection = new HashMap<Id<Link>, Double>();
-	private Map<Id<Link>, Double> linkId2angleCorrection = new HashMap<Id<Link>, Double>();
+	// initialization (the correction terms are stored in the matrix; the maps are created from it on first request)
+	private ReceiverPointLinkMatrix linkMatrix;
+	private int linkMatrixRow;
+	private Map<Id<Link>, Double> linkId2distanceCorrection;
+	private Map<Id<Link>, Double> linkId2angleCorrection;
 			
-	// time-specific information
-	private Map<Id<Link>, Double> linkId2IsolatedImmission = new HashMap<Id<Link>, Double>();
-	private Map<Id<Link>, Double> linkId2IsolatedImmissionPlusOneCar = new HashMap<Id<Link>, Double>();
-	private Map<Id<Link>, Double> linkId2IsolatedImmissionPlusOneHGV = new HashMap<Id<Link>, Double>(); 
+	// time-specific information (the isolated immissions per link are kept by the NoiseTimeTracker)
 	private double finalImmission = 0.;
 	private double affectedAgentUnits = 0.;
 	private double damageCosts;
@@ -67,7 +66,15 @@ public class NoiseReceiverPoint extends ReceiverPoint {
 		this.personId2actInfos = personId2actInfos;
 	}
 	
+	void setLinkMatrixRow(ReceiverPointLinkMatrix linkMatrix, int row) {
+		this.linkMatrix = linkMatrix;
+		this.linkMatrixRow = row;
+	}
+
 	public Map<Id<Link>, Double> getLinkId2distanceCorrection() {
+		if (linkId2distanceCorrection == null) {
+			linkId2distanceCorrection = linkMatrix == null ? new HashMap<Id<Link>, Double>() : linkMatrix.getDistanceCorrections(linkMatrixRow);
+		}
 		return linkId2distanceCorrection;
 	}
 
@@ -77,6 +84,9 @@ public class NoiseReceiverPoint extends ReceiverPoint {
 	}
 
 	public Map<Id<Link>, Double> getLinkId2angleCorrection() {
+		if (linkId2angleCorrection == null) {
+			linkId2angleCorrection = linkMatrix == null ? new HashMap<Id<Link>, Double>() : linkMatrix.getAngleCorrections(linkMatrixRow);
+		}
 		return linkId2angleCorrection;
 	}
 
@@ -84,14 +94,6 @@ public class NoiseReceiverPoint extends ReceiverPoint {
 		this.linkId2angleCorrection = linkId2angleCorrection;
 	}
 
-	public Map<Id<Link>, Double> getLinkId2IsolatedImmission() {
-		return linkId2IsolatedImmission;
-	}
-
-	public void setLinkId2IsolatedImmission(Map<Id<Link>, Double> linkId2IsolatedImmission) {
-		this.linkId2IsolatedImmission = linkId2IsolatedImmission;
-	}
-
 	public double getFinalImmission() {
 		return finalImmission;
 	}
@@ -125,34 +127,12 @@ public class NoiseReceiverPoint extends ReceiverPoint {
 		this.affectedAgentUnits = affectedAgentsUnits;
 	}
 
-	public Map<Id<Link>, Double> getLinkId2IsolatedImmissionPlusOneCar() {
-		return linkId2IsolatedImmissionPlusOneCar;
-	}
-
-	public void setLinkId2IsolatedImmissionPlusOneCar(
-			Map<Id<Link>, Double> linkId2IsolatedImmissionPlusOneCar) {
-		this.linkId2IsolatedImmissionPlusOneCar = linkId2IsolatedImmissionPlusOneCar;
-	}
-
-	public Map<Id<Link>, Double> getLinkId2IsolatedImmissionPlusOneHGV() {
-		return linkId2IsolatedImmissionPlusOneHGV;
-	}
-
-	public void setLinkId2IsolatedImmissionPlusOneHGV(
-			Map<Id<Link>, Double> linkId2IsolatedImmissionPlusOneHGV) {
-		this.linkId2IsolatedImmissionPlusOneHGV = linkId2IsolatedImmissionPlusOneHGV;
-	}
-
 	@Override
 	public String toString() {
 		return "NoiseReceiverPoint [personId2actInfos=" + personId2actInfos
-				+ ", linkId2distanceCorrection=" + linkId2distanceCorrection
-				+ ", linkId2angleCorrection=" + linkId2angleCorrection
-				+ ", linkId2IsolatedImmission=" + linkId2IsolatedImmission
-				+ ", linkId2IsolatedImmissionPlusOneCar="
-				+ linkId2IsolatedImmissionPlusOneCar
-				+ ", linkId2IsolatedImmissionPlusOneHGV="
-				+ linkId2IsolatedImmissionPlusOneHGV + ", finalImmission="
+				+ ", linkId2distanceCorrection=" + getLinkId2distanceCorrection()
+				+ ", linkId2angleCorrection=" + getLinkId2angleCorrection()
+				+ ", finalImmission="
 				+ finalImmission + ", affectedAgentUnits=" + affectedAgentUnits
 				+ ", damageCosts=" + damageCosts + ", damageCostsPerAffectedAgentUnit="
 				+ damageCostsPerAffectedAgentUnit + "]";
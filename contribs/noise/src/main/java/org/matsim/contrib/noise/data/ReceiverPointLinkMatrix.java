@@ -0,0 +1,543 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.noise.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.contrib.noise.handler.NoiseEquations;
+
+/**
+ * Sparse matrix (compressed rows) of the links relevant for each receiver point, i.e. the links within the relevant
+ * radius, together with the distance and angle correction terms. Rows are receiver points, columns are links, both
+ * referred to by their index.
+ * <p>
+ * The links are found with a uniform grid (cell size = relevant radius) in which each link is registered in all cells
+ * it crosses, so only the 3x3 cells around a receiver point are scanned. The rows are computed in parallel.
+ */
+public class ReceiverPointLinkMatrix {
+	
+	private static final Logger log = Logger.getLogger(ReceiverPointLinkMatrix.class);
+	
+	/**
+	 * Processes the rows [fromRow, toRow); different blocks are processed by different threads.
+	 */
+	public interface RowBlockHandler {
+		void handleRows(int fromRow, int toRow);
+	}
+
+	private static class Entries {
+		private int[] links = new int[16];
+		private double[] distanceCorrections = new double[16];
+		private double[] angleCorrections = new double[16];
+		private int size = 0;
+
+		private void add(int link, double distanceCorrection, double angleCorrection) {
+			if (size == links.length) {
+				links = Arrays.copyOf(links, 2 * size);
+				distanceCorrections = Arrays.copyOf(distanceCorrections, 2 * size);
+				angleCorrections = Arrays.copyOf(angleCorrections, 2 * size);
+			}
+			links[size] = link;
+			distanceCorrections[size] = distanceCorrection;
+			angleCorrections[size] = angleCorrection;
+			size++;
+		}
+	}
+
+	private final NoiseReceiverPoint[] receiverPoints;
+	private final Link[] links;
+	private final Map<Id<Link>, Integer> linkIndices = new HashMap<>();
+	private final double relevantRadius;
+	private final int numberOfThreads;
+	private ExecutorService executorService;// created on first use, reused for all time bins
+
+	// spatial index of the links
+	private double minX;
+	private double minY;
+	private int cols;
+	private int rows;
+	private int[] cellStarts;
+	private int[] cellLinks;
+
+	// entries of row r are at [rowStarts[r], rowStarts[r + 1])
+	private final int[] rowStarts;
+	private final int[] columns;
+	private final double[] distanceCorrections;
+	private final double[] angleCorrections;
+
+	public ReceiverPointLinkMatrix(Network network, List<NoiseReceiverPoint> receiverPoints, double relevantRadius,
+			int numberOfThreads) {
+		this.receiverPoints = receiverPoints.toArray(new NoiseReceiverPoint[receiverPoints.size()]);
+		this.links = network.getLinks().values().toArray(new Link[network.getLinks().size()]);
+		for (int i = 0; i < links.length; i++) {
+			linkIndices.put(links[i].getId(), i);
+		}
+		this.relevantRadius = relevantRadius;
+		this.numberOfThreads = Math.max(1, numberOfThreads);
+
+		createLinkGrid();
+
+		final Entries[] blockEntries = new Entries[this.receiverPoints.length];// set at the first row of each block
+		final int[] rowSizes = new int[this.receiverPoints.length];
+		processInParallel(new RowBlockHandler() {
+			@Override
+			public void handleRows(int fromRow, int toRow) {
+				Entries entries = new Entries();
+				int[] visited = new int[links.length];// the row (+1) for which a link was last visited
+				for (int r = fromRow; r < toRow; r++) {
+					int sizeBefore = entries.size;
+					addRow(entries, visited, r);
+					rowSizes[r] = entries.size - sizeBefore;
+				}
+				blockEntries[fromRow] = entries;
+			}
+		});
+
+		// concatenate the blocks (in the order of rows)
+		rowStarts = new int[this.receiverPoints.length + 1];
+		for (int r = 0; r < this.receiverPoints.length; r++) {
+			rowStarts[r + 1] = rowStarts[r] + rowSizes[r];
+		}
+		int entryCount = rowStarts[this.receiverPoints.length];
+		columns = new int[entryCount];
+		distanceCorrections = new double[entryCount];
+		angleCorrections = new double[entryCount];
+		for (int r = 0; r < this.receiverPoints.length; r++) {
+			Entries entries = blockEntries[r];
+			if (entries != null) {
+				System.arraycopy(entries.links, 0, columns, rowStarts[r], entries.size);
+				System.arraycopy(entries.distanceCorrections, 0, distanceCorrections, rowStarts[r], entries.size);
+				System.arraycopy(entries.angleCorrections, 0, angleCorrections, rowStarts[r], entries.size);
+			}
+		}
+
+		for (int r = 0; r < this.receiverPoints.length; r++) {
+			this.receiverPoints[r].setLinkMatrixRow(this, r);
+		}
+
+		log.info("Relevant links computed for " + this.receiverPoints.length + " receiver points: " + entryCount
+				+ " receiver point-link pairs.");
+	}
+
+	private void createLinkGrid() {
+		minX = Double.POSITIVE_INFINITY;
+		minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (Link link : links) {
+			for (Coord coord : new Coord[] { link.getFromNode().getCoord(), link.getToNode().getCoord() }) {
+				minX = Math.min(minX, coord.getX());
+				minY = Math.min(minY, coord.getY());
+				maxX = Math.max(maxX, coord.getX());
+				maxY = Math.max(maxY, coord.getY());
+			}
+		}
+		cols = links.length == 0 ? 1 : (int)((maxX - minX) / relevantRadius) + 1;
+		rows = links.length == 0 ? 1 : (int)((maxY - minY) / relevantRadius) + 1;
+
+		// two passes: count the links per cell, then fill the cells
+		cellStarts = new int[cols * rows + 1];
+		for (int pass = 0; pass < 2; pass++) {
+			int[] fill = pass == 0 ? null : Arrays.copyOf(cellStarts, cols * rows);
+			for (int l = 0; l < links.length; l++) {
+				Coord from = links[l].getFromNode().getCoord();
+				Coord to = links[l].getToNode().getCoord();
+				int minCol = getCol(Math.min(from.getX(), to.getX()));
+				int maxCol = getCol(Math.max(from.getX(), to.getX()));
+				int minRow = getRow(Math.min(from.getY(), to.getY()));
+				int maxRow = getRow(Math.max(from.getY(), to.getY()));
+
+				for (int r = minRow; r <= maxRow; r++) {
+					for (int c = minCol; c <= maxCol; c++) {
+						if (crossesCell(from, to, r, c)) {
+							if (pass == 0) {
+								cellStarts[r * cols + c + 1]++;
+							} else {
+								cellLinks[fill[r * cols + c]++] = l;
+							}
+						}
+					}
+				}
+			}
+
+			if (pass == 0) {
+				for (int i = 0; i < cols * rows; i++) {
+					cellStarts[i + 1] += cellStarts[i];
+				}
+				cellLinks = new int[cellStarts[cols * rows]];
+			}
+		}
+	}
+
+	/**
+	 * The bounding boxes of the link and the cell are known to overlap, so the link crosses the cell unless all cell
+	 * corners are on the same side of the link.
+	 */
+	private boolean crossesCell(Coord from, Coord to, int row, int col) {
+		double dx = to.getX() - from.getX();
+		double dy = to.getY() - from.getY();
+		double x0 = minX + col * relevantRadius;
+		double y0 = minY + row * relevantRadius;
+
+		int positive = 0;
+		int negative = 0;
+		for (int corner = 0; corner < 4; corner++) {
+			double x = x0 + (corner % 2) * relevantRadius;
+			double y = y0 + (corner / 2) * relevantRadius;
+			double cross = dx * (y - from.getY()) - dy * (x - from.getX());
+			if (cross > 0) {
+				positive++;
+			} else if (cross < 0) {
+				negative++;
+			}
+		}
+		return positive < 4 && negative < 4;
+	}
+
+	private int getCol(double x) {
+		return Math.max(0, Math.min(cols - 1, (int)((x - minX) / relevantRadius)));
+	}
+
+	private int getRow(double y) {
+		return Math.max(0, Math.min(rows - 1, (int)((y - minY) / relevantRadius)));
+	}
+
+	private void addRow(Entries entries, int[] visited, int row) {
+		NoiseReceiverPoint rp = receiverPoints[row];
+		Coord coord = rp.getCoord();
+		int col = getCol(coord.getX());
+		int gridRow = getRow(coord.getY());
+
+		// a link within the relevant radius crosses one of the neighbouring cells
+		for (int r = Math.max(0, gridRow - 1); r <= Math.min(rows - 1, gridRow + 1); r++) {
+			for (int c = Math.max(0, col - 1); c <= Math.min(cols - 1, col + 1); c++) {
+				for (int i = cellStarts[r * cols + c]; i < cellStarts[r * cols + c + 1]; i++) {
+					int l = cellLinks[i];
+					if (visited[l] == row + 1) {
+						continue;
+					}
+					visited[l] = row + 1;
+
+					double distance = calculateDistance(coord, links[l]);
+					if (distance < relevantRadius) {
+						if (distance == 0) {
+							double minimumDistance = 5.;
+							distance = minimumDistance;
+							log.warn("Distance between " + links[l].getId() + " and " + rp.getId() + " is 0. The calculation of the correction term Ds requires a distance > 0. Therefore, setting the distance to a minimum value of " + minimumDistance + ".");
+						}
+						entries.add(l, NoiseEquations.calculateDistanceCorrection(distance),
+								calculateAngleImmissionCorrection(coord, links[l]));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Splits the rows into blocks, one per thread, and waits until all blocks are processed. The threads are kept for
+	 * the lifetime of the matrix (they are daemon threads, so they do not prevent the JVM from exiting).
+	 */
+	public void processInParallel(final RowBlockHandler handler) {
+		int rowCount = receiverPoints.length;
+		if (numberOfThreads == 1 || rowCount < 2) {
+			handler.handleRows(0, rowCount);
+			return;
+		}
+
+		if (executorService == null) {
+			executorService = Executors.newFixedThreadPool(numberOfThreads, new ThreadFactory() {
+				private int threadCount = 0;
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "noise-" + threadCount++);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+
+		int blockSize = (rowCount + numberOfThreads - 1) / numberOfThreads;
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int from = 0; from < rowCount; from += blockSize) {
+			final int fromRow = from;
+			final int toRow = Math.min(rowCount, from + blockSize);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					handler.handleRows(fromRow, toRow);
+					return null;
+				}
+			});
+		}
+
+		try {
+			for (Future<Void> future : executorService.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Isolated immission of each entry in rows [fromRow, toRow), i.e. the link emission plus the correction terms (0 if
+	 * the link emission is 0 or the immission would be negative).
+	 * 
+	 * @param linkEmissions
+	 *            emission of each link (by link index)
+	 * @param immissions
+	 *            result (by entry index)
+	 */
+	public void calculateImmissions(double[] linkEmissions, double[] immissions, int fromRow, int toRow) {
+		for (int e = rowStarts[fromRow]; e < rowStarts[toRow]; e++) {
+			double emission = linkEmissions[columns[e]];
+			double immission = 0.;
+			if (emission != 0.) {
+				immission = emission + distanceCorrections[e] + angleCorrections[e];
+				if (immission < 0.) {
+					immission = 0.;
+				}
+			}
+			immissions[e] = immission;
+		}
+	}
+
+	public int getReceiverPointCount() {
+		return receiverPoints.length;
+	}
+
+	public NoiseReceiverPoint getReceiverPoint(int row) {
+		return receiverPoints[row];
+	}
+
+	public int getLinkCount() {
+		return links.length;
+	}
+
+	public Link getLink(int index) {
+		return links[index];
+	}
+
+	/**
+	 * @return the index of the link, or -1 if the link is not in the network
+	 */
+	public int getLinkIndex(Id<Link> linkId) {
+		Integer index = linkIndices.get(linkId);
+		return index == null ? -1 : index;
+	}
+
+	public int getEntryCount() {
+		return columns.length;
+	}
+
+	public int getRowStart(int row) {
+		return rowStarts[row];
+	}
+
+	public int getRowEnd(int row) {
+		return rowStarts[row + 1];
+	}
+
+	/**
+	 * @return the link index of the entry
+	 */
+	public int getColumn(int entry) {
+		return columns[entry];
+	}
+
+	public double getDistanceCorrection(int entry) {
+		return distanceCorrections[entry];
+	}
+
+	public double getAngleCorrection(int entry) {
+		return angleCorrections[entry];
+	}
+
+	Map<Id<Link>, Double> getDistanceCorrections(int row) {
+		return toMap(row, distanceCorrections);
+	}
+
+	Map<Id<Link>, Double> getAngleCorrections(int row) {
+		return toMap(row, angleCorrections);
+	}
+
+	private Map<Id<Link>, Double> toMap(int row, double[] values) {
+		Map<Id<Link>, Double> map = new HashMap<>();
+		for (int e = rowStarts[row]; e < rowStarts[row + 1]; e++) {
+			map.put(links[columns[e]].getId(), values[e]);
+		}
+		return Collections.unmodifiableMap(map);
+	}
+
+	static double calculateDistance(Coord receiverPointCoord, Link link) {
+		
+		double pointCoordX = receiverPointCoord.getX();
+		double pointCoordY = receiverPointCoord.getY();
+		
+		double fromCoordX = link.getFromNode().getCoord().getX();
+		double fromCoordY = link.getFromNode().getCoord().getY();
+		double toCoordX = link.getToNode().getCoord().getX();
+		double toCoordY = link.getToNode().getCoord().getY();
+	
+		double lotPointX = 0.;
+		double lotPointY = 0.;
+	
+		double vectorX = toCoordX - fromCoordX;
+		if (vectorX == 0.) {
+			vectorX = 0.00000001;
+			// dividing by zero is not possible
+		}
+		
+		double vectorY = toCoordY - fromCoordY;
+		double vector = vectorY/vectorX;
+		if (vector == 0.) {
+			vector = 0.00000001;
+			// dividing by zero is not possible
+		}
+	
+		double vector2 = (-1) * (1/vector);
+		double yAbschnitt = fromCoordY - (fromCoordX * vector);
+		double yAbschnittOriginal = fromCoordY - (fromCoordX * vector);
+	
+		double yAbschnitt2 = pointCoordY - (pointCoordX * vector2);
+	
+		double xValue = 0.;
+		double yValue = 0.;
+	
+		if (yAbschnitt<yAbschnitt2) {
+			yAbschnitt2 = yAbschnitt2 - yAbschnitt;
+			yAbschnitt = 0;
+			xValue = yAbschnitt2 / (vector - vector2);
+			yValue = yAbschnittOriginal + (xValue*vector);
+		} else if(yAbschnitt2<yAbschnitt) {
+			yAbschnitt = yAbschnitt - yAbschnitt2;
+			yAbschnitt2 = 0;
+			xValue = yAbschnitt / (vector2 - vector);
+			yValue = yAbschnittOriginal + (xValue*vector);
+		}
+	
+		lotPointX = xValue;
+		lotPointY = yValue;
+		double distance = 0.;
+		
+		if(((xValue>fromCoordX)&&(xValue<toCoordX))||((xValue>toCoordX)&&(xValue<fromCoordX))||((yValue>fromCoordY)&&(yValue<toCoordY))||((yValue>toCoordY)&&(yValue<fromCoordY))) {
+			// no edge solution
+			distance = Math.sqrt((Math.pow(lotPointX-pointCoordX, 2))+(Math.pow(lotPointY-pointCoordY, 2)));
+		} else {
+			// edge solution (Randloesung)
+			double distanceToFromNode = Math.sqrt((Math.pow(fromCoordX-pointCoordX, 2))+(Math.pow(fromCoordY-pointCoordY, 2)));
+			double distanceToToNode = Math.sqrt((Math.pow(toCoordX-pointCoordX, 2))+(Math.pow(toCoordY-pointCoordY, 2)));
+			if (distanceToFromNode > distanceToToNode) {
+				distance = distanceToToNode;
+			} else {
+				distance = distanceToFromNode;
+			}
+		}
+		return distance;
+	}
+	
+	static double calculateAngleImmissionCorrection(Coord receiverPointCoord, Link link) {
+
+		double angle = 0;
+		
+		double pointCoordX = receiverPointCoord.getX();
+		double pointCoordY = receiverPointCoord.getY();
+		
+		double fromCoordX = link.getFromNode().getCoord().getX();
+		double fromCoordY = link.getFromNode().getCoord().getY();
+		double toCoordX = link.getToNode().getCoord().getX();
+		double toCoordY = link.getToNode().getCoord().getY();
+
+		if (pointCoordX == fromCoordX && pointCoordY == fromCoordY) {
+			// receiver point is situated on the link (fromNode)
+			// assume a maximum angle immission correction for this case
+			angle = 0;
+			
+		} else if (pointCoordX == toCoordX && pointCoordY == toCoordY) {
+			// receiver point is situated on the link (toNode)
+			// assume a zero angle immission correction for this case
+			angle = 180;		
+			
+		} else {
+			// all other cases
+			double sc = (fromCoordX - pointCoordX) * (toCoordX - pointCoordX) + (fromCoordY - pointCoordY) * (toCoordY - pointCoordY);
+			double cosAngle = sc / (
+					Math.sqrt(
+							Math.pow(fromCoordX - pointCoordX, 2) + Math.pow(fromCoordY - pointCoordY, 2)
+							)
+							*
+					Math.sqrt(
+							Math.pow(toCoordX - pointCoordX, 2) + Math.pow(toCoordY - pointCoordY, 2)
+							)
+					);
+			angle = Math.toDegrees(Math.acos(cosAngle));
+
+			if (sc > 0) {
+				// spitzer winkel
+						
+				if (angle > 90) {
+					angle = 180 - angle;
+				}
+				
+			} else if (sc < 0) {
+				// stumpfer winkel
+				
+				if (angle < 90) {
+					angle = 180 - angle;
+				}
+				
+			} else {
+				angle = 0.;
+			}
+		}
+			
+		// since zero is not defined
+		if (angle == 0.) {
+			// zero degrees is not defined
+			angle = 0.0000000001;
+		}
+
+		double immissionCorrection = NoiseEquations.calculateAngleCorrection(angle);
+		return immissionCorrection;
+	}
+}
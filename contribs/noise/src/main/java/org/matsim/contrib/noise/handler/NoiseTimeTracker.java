@@ -38,13 +38,14 @@ import org.matsim.api.core.v01.events.handler.PersonEntersVehicleEventHandler;
 import org.matsim.api.core.v01.events.handler.TransitDriverStartsEventHandler;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.noise.NoiseBinaryWriter;
 import org.matsim.contrib.noise.NoiseWriter;
 import org.matsim.contrib.noise.data.NoiseAllocationApproach;
 import org.matsim.contrib.noise.data.NoiseContext;
 import org.matsim.contrib.noise.data.NoiseLink;
 import org.matsim.contrib.noise.data.NoiseReceiverPoint;
 import org.matsim.contrib.noise.data.PersonActivityInfo;
-import org.matsim.contrib.noise.data.ReceiverPoint;
+import org.matsim.contrib.noise.data.ReceiverPointLinkMatrix;
 import org.matsim.contrib.noise.events.NoiseEventAffected;
 import org.matsim.contrib.noise.events.NoiseEventCaused;
 import org.matsim.core.api.experimental.events.EventsManager;
@@ -79,6 +80,12 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 	private double totalAffectedNoiseCost = 0.;
 	
 	private boolean useCompression = false ;
+	private NoiseBinaryWriter binaryWriter;// opened with the first time bin of an iteration with output
+	
+	// emissions by link index and isolated immissions by matrix entry (without / plus one car / plus one HGV);
+	// the immissions are valid for the current time bin only
+	private double[][] linkEmissions;
+	private double[][] isolatedImmissions;
 	
 	public NoiseTimeTracker(NoiseContext noiseContext, EventsManager events, String outputDirectory) {
 		this.noiseContext = noiseContext;
@@ -134,6 +141,7 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 		log.info("Setting the output directory to " + outputDirectory);
 		
 		this.iteration = iteration;
+		closeBinaryWriter();
 		
 		this.totalCausedNoiseCost = 0.;
 		this.totalAffectedNoiseCost = 0.;
@@ -141,12 +149,11 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 		this.noiseEventsAffected.clear();
 		
 		this.noiseContext.getNoiseLinks().clear();
-		this.noiseContext.getTimeInterval2linkId2noiseLinks().clear();
+		this.noiseContext.getLinkDamageCosts().clear();
 		this.noiseContext.getLinkId2vehicleId2lastEnterTime().clear();
 		this.noiseContext.setCurrentTimeBinEndTime(this.noiseContext.getNoiseParams().getTimeBinSizeNoiseComputation());
 		
 		for (NoiseReceiverPoint rp : this.noiseContext.getReceiverPoints().values()) {
-			rp.getLinkId2IsolatedImmission().clear();
 			rp.setFinalImmission(0.);
 			rp.setAffectedAgentUnits(0.);
 			rp.getPersonId2actInfos().clear();
@@ -161,7 +168,6 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 		this.noiseContext.getNoiseLinks().clear();
 		
 		for (NoiseReceiverPoint rp : this.noiseContext.getReceiverPoints().values()) {
-			rp.getLinkId2IsolatedImmission().clear();
 			rp.setFinalImmission(0.);
 			rp.setAffectedAgentUnits(0.);
 			rp.setDamageCosts(0.);
@@ -211,18 +217,18 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 		
 		if (printLog) log.info("Calculating noise emissions...");
 		calculateNoiseEmission();
-		if (writeOutput()) NoiseWriter.writeNoiseEmissionStatsPerHour(this.noiseContext, outputDirectory, useCompression);
+		if (writeCsvOutput()) NoiseWriter.writeNoiseEmissionStatsPerHour(this.noiseContext, outputDirectory, useCompression);
 		if (printLog) log.info("Calculating noise emissions... Done.");
 		
 		if (printLog) log.info("Calculating noise immissions...");
 		calculateNoiseImmission();
-		if (writeOutput()) NoiseWriter.writeNoiseImmissionStatsPerHour(noiseContext, outputDirectory);
+		if (writeCsvOutput()) NoiseWriter.writeNoiseImmissionStatsPerHour(noiseContext, outputDirectory);
 		if (printLog) log.info("Calculating noise immissions... Done.");
 	
 		if (this.noiseContext.getNoiseParams().isComputePopulationUnits()) {
 			if (printLog) log.info("Calculating the number of affected agent units...");
 			calculateAffectedAgentUnits();
-			if (writeOutput()) NoiseWriter.writePersonActivityInfoPerHour(noiseContext, outputDirectory);
+			if (writeCsvOutput()) NoiseWriter.writePersonActivityInfoPerHour(noiseContext, outputDirectory);
 			if (printLog) log.info("Calculating the number of affected agent units... Done.");
 		}
 	
@@ -231,9 +237,26 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 			calculateNoiseDamageCosts();
 			if (printLog) log.info("Calculating noise damage costs... Done.");
 		}
-			
+		
+		if (writeOutput() && this.noiseContext.getNoiseParams().isUseBinaryOutputFormat()) {
+			if (this.binaryWriter == null) {
+				this.binaryWriter = new NoiseBinaryWriter(noiseContext, outputDirectory);
+			}
+			this.binaryWriter.writeCurrentTimeBin();
+		}
+	}
+	
+	private void closeBinaryWriter() {
+		if (this.binaryWriter != null) {
+			this.binaryWriter.close();
+			this.binaryWriter = null;
+		}
 	}
 		
+	private boolean writeCsvOutput() {
+		return writeOutput() && !this.noiseContext.getNoiseParams().isUseBinaryOutputFormat();
+	}
+	
 	private boolean writeOutput() {
 		if (this.noiseContext.getNoiseParams().getWriteOutputIteration() == 0) {
 			return false;
@@ -328,7 +351,7 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 		
 		if (printLog) log.info("Calculating noise damage costs for each receiver point...");
 		calculateDamagePerReceiverPoint();
-		if (writeOutput()) NoiseWriter.writeDamageInfoPerHour(noiseContext, outputDirectory);
+		if (writeCsvOutput()) NoiseWriter.writeDamageInfoPerHour(noiseContext, outputDirectory);
 		if (printLog) log.info("Calculating noise damage costs for each receiver point... Done.");
 
 		if (this.noiseContext.getNoiseParams().isThrowNoiseEventsAffected()) {
@@ -380,12 +403,12 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 		
 		if (printLog) log.info("Allocating the total damage cost (per receiver point) to the relevant links...");
 		calculateCostSharesPerLinkPerTimeInterval();
-		if (writeOutput()) NoiseWriter.writeLinkDamageInfoPerHour(noiseContext, outputDirectory);
+		if (writeCsvOutput()) NoiseWriter.writeLinkDamageInfoPerHour(noiseContext, outputDirectory);
 		if (printLog) log.info("Allocating the total damage cost (per receiver point) to the relevant links... Done.");
 		if (printLog) log.info("Allocating the damage cost per link to the vehicle categories and vehicles...");
 		calculateCostsPerVehiclePerLinkPerTimeInterval();
-		if (writeOutput()) NoiseWriter.writeLinkAvgCarDamageInfoPerHour(noiseContext, outputDirectory);
-		if (writeOutput()) NoiseWriter.writeLinkAvgHgvDamageInfoPerHour(noiseContext, outputDirectory);
+		if (writeCsvOutput()) NoiseWriter.writeLinkAvgCarDamageInfoPerHour(noiseContext, outputDirectory);
+		if (writeCsvOutput()) NoiseWriter.writeLinkAvgHgvDamageInfoPerHour(noiseContext, outputDirectory);
 		if (printLog) log.info("Allocating the damage cost per link to the vehicle categories and vehicles... Done.");
 	}
 
@@ -394,39 +417,27 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 	 */
 	private void calculateCostSharesPerLinkPerTimeInterval() {
 		
-		Map<Id<ReceiverPoint>, Map<Id<Link>, Double>> rpId2linkId2costShare = new HashMap<Id<ReceiverPoint>, Map<Id<Link>,Double>>();
-
-		for (NoiseReceiverPoint rp : this.noiseContext.getReceiverPoints().values()) {
-										
-			Map<Id<Link>,Double> linkId2costShare = new HashMap<Id<Link>, Double>();
-							
+		ReceiverPointLinkMatrix matrix = this.noiseContext.getReceiverPointLinkMatrix();
+		
+		// summing up the link-based costs (the isolated immissions are stored by matrix entry)
+		for (int r = 0; r < matrix.getReceiverPointCount(); r++) {
+			NoiseReceiverPoint rp = matrix.getReceiverPoint(r);
+			
 			if (rp.getDamageCosts() != 0.) {
-				for (Id<Link> linkId : rp.getLinkId2IsolatedImmission().keySet()) {
-										
-					double noiseImmission = rp.getLinkId2IsolatedImmission().get(linkId);
+				for (int e = matrix.getRowStart(r); e < matrix.getRowEnd(r); e++) {
+					
+					double noiseImmission = this.isolatedImmissions[0][e];
 					double costs = 0.;
-						
+					
 					if (!(noiseImmission == 0.)) {
 						double costShare = NoiseEquations.calculateShareOfResultingNoiseImmission(noiseImmission, rp.getFinalImmission());
 						costs = costShare * rp.getDamageCosts();	
 					}
-					linkId2costShare.put(linkId, costs);
-				}
-			}
-			
-			rpId2linkId2costShare.put(rp.getId(), linkId2costShare);
-		}
-		
-		// summing up the link-based costs
-		for (NoiseReceiverPoint rp : this.noiseContext.getReceiverPoints().values()) {
-
-			if (rp.getDamageCosts() != 0.) {
-				
-				for (Id<Link> linkId : this.noiseContext.getReceiverPoints().get(rp.getId()).getLinkId2distanceCorrection().keySet()) {
-					if (this.noiseContext.getNoiseLinks().get(linkId) != null) {
-						double sum = this.noiseContext.getNoiseLinks().get(linkId).getDamageCost() + rpId2linkId2costShare.get(rp.getId()).get(linkId);
-						this.noiseContext.getNoiseLinks().get(linkId).setDamageCost(sum);
-					}		
+					
+					NoiseLink noiseLink = this.noiseContext.getNoiseLinks().get(matrix.getLink(matrix.getColumn(e)).getId());
+					if (noiseLink != null) {
+						noiseLink.setDamageCost(noiseLink.getDamageCost() + costs);
+					}
 				}
 			}
 		}
@@ -517,8 +528,8 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 		
 		if (printLog) log.info("Computing the marginal damage cost for each link and receiver point...");
 		calculateMarginalDamageCost();
-		if (writeOutput()) NoiseWriter.writeLinkMarginalCarDamageInfoPerHour(noiseContext, outputDirectory);
-		if (writeOutput()) NoiseWriter.writeLinkMarginalHgvDamageInfoPerHour(noiseContext, outputDirectory);
+		if (writeCsvOutput()) NoiseWriter.writeLinkMarginalCarDamageInfoPerHour(noiseContext, outputDirectory);
+		if (writeCsvOutput()) NoiseWriter.writeLinkMarginalHgvDamageInfoPerHour(noiseContext, outputDirectory);
 		if (printLog) log.info("Computing the marginal damage cost for each link and receiver point... Done.");
 	}
 	
@@ -526,13 +537,17 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 	 * Noise allocation approach: MarginalCost
 	 */
 	private void calculateMarginalDamageCost() {
-		for (NoiseReceiverPoint rp : this.noiseContext.getReceiverPoints().values()) {
+		ReceiverPointLinkMatrix matrix = this.noiseContext.getReceiverPointLinkMatrix();
+		
+		for (int r = 0; r < matrix.getReceiverPointCount(); r++) {
+			NoiseReceiverPoint rp = matrix.getReceiverPoint(r);
 
 			if (rp.getAffectedAgentUnits() != 0.) {
-				for (Id<Link> thisLink : rp.getLinkId2IsolatedImmission().keySet()) {
+				for (int e = matrix.getRowStart(r); e < matrix.getRowEnd(r); e++) {
+					Id<Link> thisLink = matrix.getLink(matrix.getColumn(e)).getId();
 										
-					double noiseImmissionPlusOneCarThisLink = NoiseEquations.calculateResultingNoiseImmissionPlusOneVehicle(rp.getFinalImmission(), rp.getLinkId2IsolatedImmission().get(thisLink), rp.getLinkId2IsolatedImmissionPlusOneCar().get(thisLink));
-					double noiseImmissionPlusOneHGVThisLink = NoiseEquations.calculateResultingNoiseImmissionPlusOneVehicle(rp.getFinalImmission(), rp.getLinkId2IsolatedImmission().get(thisLink), rp.getLinkId2IsolatedImmissionPlusOneHGV().get(thisLink));
+					double noiseImmissionPlusOneCarThisLink = NoiseEquations.calculateResultingNoiseImmissionPlusOneVehicle(rp.getFinalImmission(), this.isolatedImmissions[0][e], this.isolatedImmissions[1][e]);
+					double noiseImmissionPlusOneHGVThisLink = NoiseEquations.calculateResultingNoiseImmissionPlusOneVehicle(rp.getFinalImmission(), this.isolatedImmissions[0][e], this.isolatedImmissions[2][e]);
 					
 					double damageCostsPlusOneCarThisLink = NoiseEquations.calculateDamageCosts(noiseImmissionPlusOneCarThisLink, rp.getAffectedAgentUnits(), this.noiseContext.getCurrentTimeBinEndTime(), this.noiseContext.getNoiseParams().getAnnualCostRate(), this.noiseContext.getNoiseParams().getTimeBinSizeNoiseComputation());
 					double marginalDamageCostCarThisLink = (damageCostsPlusOneCarThisLink - rp.getDamageCosts()) / this.noiseContext.getNoiseParams().getScaleFactor();
@@ -661,80 +676,58 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 	 */
 	private void calculateNoiseImmission() {
 		
-		for (NoiseReceiverPoint rp : this.noiseContext.getReceiverPoints().values()) {
-					
-			Map<Id<Link>, Double> linkId2isolatedImmission = new HashMap<Id<Link>, Double>();
-			Map<Id<Link>, Double> linkId2isolatedImmissionPlusOneCar = new HashMap<Id<Link>, Double>();
-			Map<Id<Link>, Double> linkId2isolatedImmissionPlusOneHGV = new HashMap<Id<Link>, Double>();
-			
-			for(Id<Link> linkId : rp.getLinkId2distanceCorrection().keySet()) {
-				if (this.noiseContext.getNoiseParams().getTunnelLinkIDsSet().contains(linkId)) {
-					linkId2isolatedImmission.put(linkId, 0.);
-					linkId2isolatedImmissionPlusOneCar.put(linkId, 0.);
-					linkId2isolatedImmissionPlusOneHGV.put(linkId, 0.);
-								 			
-			 	} else {
+		final ReceiverPointLinkMatrix matrix = this.noiseContext.getReceiverPointLinkMatrix();
+		
+		if (this.isolatedImmissions == null) {
+			this.linkEmissions = new double[3][matrix.getLinkCount()];
+			this.isolatedImmissions = new double[3][matrix.getEntryCount()];
+		}
+		
+		// emissions by link index; tunnel links do not cause any immissions
+		for (int l = 0; l < matrix.getLinkCount(); l++) {
+			Id<Link> linkId = matrix.getLink(l).getId();
+			NoiseLink noiseLink = this.noiseContext.getNoiseLinks().get(linkId);
+			if (noiseLink == null || this.noiseContext.getNoiseParams().getTunnelLinkIDsSet().contains(linkId)) {
+				this.linkEmissions[0][l] = 0.;
+				this.linkEmissions[1][l] = 0.;
+				this.linkEmissions[2][l] = 0.;
+			} else {
+				this.linkEmissions[0][l] = noiseLink.getEmission();
+				this.linkEmissions[1][l] = noiseLink.getEmissionPlusOneCar();
+				this.linkEmissions[2][l] = noiseLink.getEmissionPlusOneHGV();
+			}
+		}
+		
+		matrix.processInParallel(new ReceiverPointLinkMatrix.RowBlockHandler() {
+			@Override
+			public void handleRows(int fromRow, int toRow) {
+				for (int i = 0; i < 3; i++) {
+					matrix.calculateImmissions(linkEmissions[i], isolatedImmissions[i], fromRow, toRow);
+				}
 				
-			 		double noiseImmission = 0.;
-			 		double noiseImmissionPlusOneCar = 0.;
-			 		double noiseImmissionPlusOneHGV = 0.;
-		 		
-			 		if (this.noiseContext.getNoiseLinks().get(linkId) != null) {
-						if (!(this.noiseContext.getNoiseLinks().get(linkId).getEmission() == 0.)) {
-							noiseImmission = this.noiseContext.getNoiseLinks().get(linkId).getEmission()
-									+ this.noiseContext.getReceiverPoints().get(rp.getId()).getLinkId2distanceCorrection().get(linkId)
-									+ this.noiseContext.getReceiverPoints().get(rp.getId()).getLinkId2angleCorrection().get(linkId)
-									;
-							
-							if (noiseImmission < 0.) {
-								noiseImmission = 0.;
-							}
-						}
-						
-						if (!(this.noiseContext.getNoiseLinks().get(linkId).getEmissionPlusOneCar() == 0.)) {
-							noiseImmissionPlusOneCar = this.noiseContext.getNoiseLinks().get(linkId).getEmissionPlusOneCar()
-									+ this.noiseContext.getReceiverPoints().get(rp.getId()).getLinkId2distanceCorrection().get(linkId)
-									+ this.noiseContext.getReceiverPoints().get(rp.getId()).getLinkId2angleCorrection().get(linkId)
-									;
-							
-							if (noiseImmissionPlusOneCar < 0.) {
-								noiseImmissionPlusOneCar = 0.;
-							}
-						}
-						
-						if (!(this.noiseContext.getNoiseLinks().get(linkId).getEmissionPlusOneHGV() == 0.)) {
-							noiseImmissionPlusOneHGV = this.noiseContext.getNoiseLinks().get(linkId).getEmissionPlusOneHGV()
-									+ this.noiseContext.getReceiverPoints().get(rp.getId()).getLinkId2distanceCorrection().get(linkId)
-									+ this.noiseContext.getReceiverPoints().get(rp.getId()).getLinkId2angleCorrection().get(linkId)
-									;
-							
-							if (noiseImmissionPlusOneHGV < 0.) {
-								noiseImmissionPlusOneHGV = 0.;
-							}
-						}
-
-					}
-			 		
-			 		if (noiseImmissionPlusOneCar < noiseImmission || noiseImmissionPlusOneHGV < noiseImmission) {
-						throw new RuntimeException("noise immission: " + noiseImmission + " - noise immission plus one car: " + noiseImmissionPlusOneCar + " - noise immission plus one hgv: " + noiseImmissionPlusOneHGV + ". This should not happen. Aborting..."); 
-					}
-			 		
-					linkId2isolatedImmission.put(linkId, noiseImmission);
-					linkId2isolatedImmissionPlusOneCar.put(linkId, noiseImmissionPlusOneCar);
-					linkId2isolatedImmissionPlusOneHGV.put(linkId, noiseImmissionPlusOneHGV);
-			 	}
+				for (int r = fromRow; r < toRow; r++) {
+					setImmissions(matrix, r);
+				}
 			}
+		});
+	}
+	
+	private void setImmissions(ReceiverPointLinkMatrix matrix, int row) {
+		
+		int rowStart = matrix.getRowStart(row);
+		int rowEnd = matrix.getRowEnd(row);
+		for (int e = rowStart; e < rowEnd; e++) {
+			double noiseImmission = this.isolatedImmissions[0][e];
+			double noiseImmissionPlusOneCar = this.isolatedImmissions[1][e];
+			double noiseImmissionPlusOneHGV = this.isolatedImmissions[2][e];
 			
-			double finalNoiseImmission = 0.;
-			if (!linkId2isolatedImmission.isEmpty()) {
-				finalNoiseImmission = NoiseEquations.calculateResultingNoiseImmission(linkId2isolatedImmission.values());
+			if (noiseImmissionPlusOneCar < noiseImmission || noiseImmissionPlusOneHGV < noiseImmission) {
+				throw new RuntimeException("noise immission: " + noiseImmission + " - noise immission plus one car: " + noiseImmissionPlusOneCar + " - noise immission plus one hgv: " + noiseImmissionPlusOneHGV + ". This should not happen. Aborting..."); 
 			}
-			
-			rp.setFinalImmission(finalNoiseImmission);
-			rp.setLinkId2IsolatedImmission(linkId2isolatedImmission);
-			rp.setLinkId2IsolatedImmissionPlusOneCar(linkId2isolatedImmissionPlusOneCar);
-			rp.setLinkId2IsolatedImmissionPlusOneHGV(linkId2isolatedImmissionPlusOneHGV);
 		}
+		
+		double finalNoiseImmission = NoiseEquations.calculateResultingNoiseImmission(this.isolatedImmissions[0], rowStart, rowEnd);
+		matrix.getReceiverPoint(row).setFinalImmission(finalNoiseImmission);
 	}
 	
 	/*
@@ -885,6 +878,7 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 		while (this.noiseContext.getCurrentTimeBinEndTime() <= 30 * 3600.) {
 			processTimeBin();			
 		}
+		closeBinaryWriter();
 	}
 
 	public List<NoiseEventCaused> getNoiseEventsCaused() {
@@ -903,6 +897,14 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 		return totalAffectedNoiseCost;
 	}
 
+	/**
+	 * If set to false, the thrown noise events are not kept in memory (see {@link #getNoiseEventsCaused()} and
+	 * {@link #getNoiseEventsAffected()}).
+	 */
+	public final void setCollectNoiseEvents(boolean collectNoiseEvents) {
+		this.collectNoiseEvents = collectNoiseEvents;
+	}
+
 	public final boolean isUseCompression() {
 		return this.useCompression;
 	}
@@ -24,6 +24,7 @@ import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.contrib.noise.data.NoiseAllocationApproach;
 import org.matsim.contrib.noise.data.NoiseContext;
+import org.matsim.contrib.noise.data.NoiseLinkDamageCosts;
 import org.matsim.core.router.util.TravelDisutility;
 import org.matsim.vehicles.Vehicle;
 
@@ -78,45 +79,40 @@ public class NoiseTollTimeDistanceTravelDisutility implements TravelDisutility {
 		double linkExpectedToll = 0.;
 		double timeIntervalEndTime = ((int) (time / this.noiseContext.getNoiseParams().getTimeBinSizeNoiseComputation()) + 1) * this.noiseContext.getNoiseParams().getTimeBinSizeNoiseComputation();
 		
-		if (this.noiseContext.getTimeInterval2linkId2noiseLinks().get(timeIntervalEndTime) == null ||
-				this.noiseContext.getTimeInterval2linkId2noiseLinks().get(timeIntervalEndTime).get(linkId) == null) {
-				// expected toll on that link should be zero
-			
-		} else {
-			
-			boolean isHGV = false;
-			for (String hgvPrefix : this.noiseContext.getNoiseParams().getHgvIdPrefixesArray()) {
-				if (personId.toString().startsWith(hgvPrefix)) {
-					isHGV = true;
-					break;
-				}
+		// zero if there is no information for that link and time bin
+		NoiseLinkDamageCosts linkDamageCosts = this.noiseContext.getLinkDamageCosts();
+		
+		boolean isHGV = false;
+		for (String hgvPrefix : this.noiseContext.getNoiseParams().getHgvIdPrefixesArray()) {
+			if (personId.toString().startsWith(hgvPrefix)) {
+				isHGV = true;
+				break;
+			}
+		}
+		
+		if (isHGV) {
+		
+			if (this.noiseContext.getNoiseParams().getNoiseAllocationApproach() == NoiseAllocationApproach.AverageCost) {	
+				linkExpectedToll = linkDamageCosts.getAverageDamageCostPerHgv(linkId, timeIntervalEndTime);
+				
+			} else if (this.noiseContext.getNoiseParams().getNoiseAllocationApproach() == NoiseAllocationApproach.MarginalCost) {
+				linkExpectedToll = linkDamageCosts.getMarginalDamageCostPerHgv(linkId, timeIntervalEndTime);
+				
+			} else {
+				throw new RuntimeException("Unknown noise allocation approach. Aborting...");
 			}
 			
-			if (isHGV) {
+		} else {
 			
-				if (this.noiseContext.getNoiseParams().getNoiseAllocationApproach() == NoiseAllocationApproach.AverageCost) {	
-					linkExpectedToll = this.noiseContext.getTimeInterval2linkId2noiseLinks().get(timeIntervalEndTime).get(linkId).getAverageDamageCostPerHgv();
-					
-				} else if (this.noiseContext.getNoiseParams().getNoiseAllocationApproach() == NoiseAllocationApproach.MarginalCost) {
-					linkExpectedToll = this.noiseContext.getTimeInterval2linkId2noiseLinks().get(timeIntervalEndTime).get(linkId).getMarginalDamageCostPerHgv();
-					
-				} else {
-					throw new RuntimeException("Unknown noise allocation approach. Aborting...");
-				}
+			if (this.noiseContext.getNoiseParams().getNoiseAllocationApproach() == NoiseAllocationApproach.AverageCost) {	
+				linkExpectedToll = linkDamageCosts.getAverageDamageCostPerCar(linkId, timeIntervalEndTime);
 				
-			} else {
+			} else if (this.noiseContext.getNoiseParams().getNoiseAllocationApproach() == NoiseAllocationApproach.MarginalCost) {
+				linkExpectedToll = linkDamageCosts.getMarginalDamageCostPerCar(linkId, timeIntervalEndTime);
 				
-				if (this.noiseContext.getNoiseParams().getNoiseAllocationApproach() == NoiseAllocationApproach.AverageCost) {	
-					linkExpectedToll = this.noiseContext.getTimeInterval2linkId2noiseLinks().get(timeIntervalEndTime).get(linkId).getAverageDamageCostPerCar();
-					
-				} else if (this.noiseContext.getNoiseParams().getNoiseAllocationApproach() == NoiseAllocationApproach.MarginalCost) {
-					linkExpectedToll = this.noiseContext.getTimeInterval2linkId2noiseLinks().get(timeIntervalEndTime).get(linkId).getMarginalDamageCostPerCar();
-					
-				} else {
-					throw new RuntimeException("Unknown noise allocation approach. Aborting...");
-				}
+			} else {
+				throw new RuntimeException("Unknown noise allocation approach. Aborting...");
 			}
-
 		}
 						
 		double linkExpectedTollDisutility = this.noiseContext.getNoiseParams().getNoiseTollFactor() * this.marginalUtilityOfMoney * linkExpectedToll;			
@@ -0,0 +1,138 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.noise;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.noise.data.NoiseContext;
+import org.matsim.contrib.noise.data.NoiseLink;
+import org.matsim.contrib.noise.data.NoiseReceiverPoint;
+import org.matsim.contrib.noise.data.ReceiverPointLinkMatrix;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+/**
+ * Writes a few time bins with {@link NoiseBinaryWriter} and reads them back according to the documented format.
+ */
+public class NoiseBinaryWriterTest {
+	@Rule
+	public MatsimTestUtils testUtils = new MatsimTestUtils();
+
+	private final Random random = new Random(4711);
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		String configFile = testUtils.getPackageInputDirectory() + "NoiseTest/config1.xml";
+		Scenario scenario = ScenarioUtils.loadScenario(ConfigUtils.loadConfig(configFile, new NoiseConfigGroup()));
+		((NoiseConfigGroup)scenario.getConfig().getModule("noise")).setReceiverPointGap(250.);
+		NoiseContext noiseContext = new NoiseContext(scenario);
+		ReceiverPointLinkMatrix matrix = noiseContext.getReceiverPointLinkMatrix();
+
+		String outputDirectory = testUtils.getOutputDirectory();
+		NoiseBinaryWriter writer = new NoiseBinaryWriter(noiseContext, outputDirectory);
+		int timeBinCount = 3;
+		float[][][] rpValues = new float[timeBinCount][matrix.getReceiverPointCount()][];
+		float[][][] linkValues = new float[timeBinCount][matrix.getLinkCount()][];
+		for (int bin = 0; bin < timeBinCount; bin++) {
+			noiseContext.setCurrentTimeBinEndTime((bin + 1) * 3600.);
+			setRandomValues(noiseContext, rpValues[bin], linkValues[bin]);
+			writer.writeCurrentTimeBin();
+		}
+		writer.close();
+
+		try (DataInputStream in = new DataInputStream(
+				IOUtils.getInputStream(outputDirectory + "receiverPoints.bin.gz"))) {
+			Assert.assertEquals(matrix.getReceiverPointCount(), in.readInt());
+			for (int row = 0; row < matrix.getReceiverPointCount(); row++) {
+				NoiseReceiverPoint rp = matrix.getReceiverPoint(row);
+				Assert.assertEquals(rp.getId().toString(), in.readUTF());
+				Assert.assertEquals(rp.getCoord().getX(), in.readDouble(), 0.);
+				Assert.assertEquals(rp.getCoord().getY(), in.readDouble(), 0.);
+			}
+			for (int bin = 0; bin < timeBinCount; bin++) {
+				Assert.assertEquals((bin + 1) * 3600., in.readDouble(), 0.);
+				for (int row = 0; row < matrix.getReceiverPointCount(); row++) {
+					for (float value : rpValues[bin][row]) {
+						Assert.assertEquals(value, in.readFloat(), 0.f);
+					}
+				}
+			}
+			Assert.assertEquals(-1, in.read());
+		}
+
+		try (DataInputStream in = new DataInputStream(IOUtils.getInputStream(outputDirectory + "links.bin.gz"))) {
+			Assert.assertEquals(matrix.getLinkCount(), in.readInt());
+			for (int idx = 0; idx < matrix.getLinkCount(); idx++) {
+				Assert.assertEquals(matrix.getLink(idx).getId().toString(), in.readUTF());
+			}
+			for (int bin = 0; bin < timeBinCount; bin++) {
+				Assert.assertEquals((bin + 1) * 3600., in.readDouble(), 0.);
+				for (int idx = 0; idx < matrix.getLinkCount(); idx++) {
+					for (float value : linkValues[bin][idx]) {
+						Assert.assertEquals(value, in.readFloat(), 0.f);
+					}
+				}
+			}
+			Assert.assertEquals(-1, in.read());
+		}
+	}
+
+	// links without a NoiseLink are written with zeros
+	private void setRandomValues(NoiseContext noiseContext, float[][] rpValues, float[][] linkValues) {
+		ReceiverPointLinkMatrix matrix = noiseContext.getReceiverPointLinkMatrix();
+		for (int row = 0; row < matrix.getReceiverPointCount(); row++) {
+			NoiseReceiverPoint rp = matrix.getReceiverPoint(row);
+			rp.setFinalImmission(random.nextDouble() * 80);
+			rp.setAffectedAgentUnits(random.nextDouble());
+			rp.setDamageCosts(random.nextDouble());
+			rpValues[row] = new float[] { (float)rp.getFinalImmission(), (float)rp.getAffectedAgentUnits(),
+					(float)rp.getDamageCosts() };
+		}
+
+		noiseContext.getNoiseLinks().clear();
+		for (int idx = 0; idx < matrix.getLinkCount(); idx++) {
+			Link link = matrix.getLink(idx);
+			if (random.nextBoolean()) {
+				linkValues[idx] = new float[6];
+				continue;
+			}
+			NoiseLink noiseLink = new NoiseLink(link.getId());
+			noiseLink.setEmission(random.nextDouble() * 80);
+			noiseLink.setDamageCost(random.nextDouble());
+			noiseLink.setAverageDamageCostPerCar(random.nextDouble());
+			noiseLink.setAverageDamageCostPerHgv(random.nextDouble());
+			noiseLink.setMarginalDamageCostPerCar(random.nextDouble());
+			noiseLink.setMarginalDamageCostPerHgv(random.nextDouble());
+			noiseContext.getNoiseLinks().put(link.getId(), noiseLink);
+			linkValues[idx] = new float[] { (float)noiseLink.getEmission(), (float)noiseLink.getDamageCost(),
+					(float)noiseLink.getAverageDamageCostPerCar(), (float)noiseLink.getAverageDamageCostPerHgv(),
+					(float)noiseLink.getMarginalDamageCostPerCar(), (float)noiseLink.getMarginalDamageCostPerHgv() };
+		}
+	}
+}
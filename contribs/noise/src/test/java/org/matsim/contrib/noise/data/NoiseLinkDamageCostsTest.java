@@ -0,0 +1,117 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.noise.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+
+public class NoiseLinkDamageCostsTest {
+	private static final double TIME_BIN_SIZE = 3600;
+
+	private final Random random = new Random(42);
+
+	@Test
+	public void testStoredCostsPerLinkAndTimeBin() {
+		Network network = NetworkUtils.createNetwork();
+		Node a = NetworkUtils.createAndAddNode(network, Id.createNodeId("a"), new Coord(0, 0));
+		Node b = NetworkUtils.createAndAddNode(network, Id.createNodeId("b"), new Coord(100, 0));
+		for (int i = 0; i < 50; i++) {
+			NetworkUtils.createAndAddLink(network, Id.createLinkId(i), a, b, 100, 10, 1000, 1);
+		}
+		List<Id<Link>> linkIds = new ArrayList<>(network.getLinks().keySet());
+
+		NoiseLinkDamageCosts damageCosts = new NoiseLinkDamageCosts(network, TIME_BIN_SIZE);
+		List<Map<Id<Link>, NoiseLink>> storedBins = new ArrayList<>();
+		for (int bin = 0; bin < 5; bin++) {
+			// bin 2 is skipped, e.g. no events in this time bin
+			Map<Id<Link>, NoiseLink> noiseLinks = bin == 2 ? null : createNoiseLinks(linkIds);
+			storedBins.add(noiseLinks);
+			if (noiseLinks != null) {
+				damageCosts.store((bin + 1) * TIME_BIN_SIZE, noiseLinks);
+			}
+		}
+
+		for (int bin = 0; bin < storedBins.size(); bin++) {
+			double timeBinEndTime = (bin + 1) * TIME_BIN_SIZE;
+			for (Id<Link> linkId : linkIds) {
+				NoiseLink noiseLink = storedBins.get(bin) == null ? null : storedBins.get(bin).get(linkId);
+				if (noiseLink == null) {
+					assertCosts(damageCosts, linkId, timeBinEndTime, 0., 0., 0., 0.);
+				} else {
+					assertCosts(damageCosts, linkId, timeBinEndTime, noiseLink.getAverageDamageCostPerCar(),
+							noiseLink.getAverageDamageCostPerHgv(), noiseLink.getMarginalDamageCostPerCar(),
+							noiseLink.getMarginalDamageCostPerHgv());
+				}
+			}
+		}
+
+		// time bins not stored and links not in the network
+		assertCosts(damageCosts, linkIds.get(0), 0., 0., 0., 0., 0.);
+		assertCosts(damageCosts, linkIds.get(0), 10 * TIME_BIN_SIZE, 0., 0., 0., 0.);
+		assertCosts(damageCosts, Id.createLinkId("unknown"), TIME_BIN_SIZE, 0., 0., 0., 0.);
+
+		damageCosts.clear();
+		for (Id<Link> linkId : linkIds) {
+			assertCosts(damageCosts, linkId, TIME_BIN_SIZE, 0., 0., 0., 0.);
+		}
+	}
+
+	// about half of the links without costs; some with only one of the four costs
+	private Map<Id<Link>, NoiseLink> createNoiseLinks(List<Id<Link>> linkIds) {
+		Map<Id<Link>, NoiseLink> noiseLinks = new HashMap<>();
+		for (Id<Link> linkId : linkIds) {
+			NoiseLink noiseLink = new NoiseLink(linkId);
+			switch (random.nextInt(4)) {
+				case 0:
+					noiseLink.setAverageDamageCostPerCar(random.nextDouble());
+					noiseLink.setAverageDamageCostPerHgv(random.nextDouble());
+					noiseLink.setMarginalDamageCostPerCar(random.nextDouble());
+					noiseLink.setMarginalDamageCostPerHgv(random.nextDouble());
+					break;
+				case 1:
+					noiseLink.setMarginalDamageCostPerHgv(random.nextDouble());
+					break;
+				default:// no costs
+			}
+			noiseLinks.put(linkId, noiseLink);
+		}
+		return noiseLinks;
+	}
+
+	private void assertCosts(NoiseLinkDamageCosts damageCosts, Id<Link> linkId, double timeBinEndTime,
+			double averageCar, double averageHgv, double marginalCar, double marginalHgv) {
+		Assert.assertEquals(averageCar, damageCosts.getAverageDamageCostPerCar(linkId, timeBinEndTime), 0.);
+		Assert.assertEquals(averageHgv, damageCosts.getAverageDamageCostPerHgv(linkId, timeBinEndTime), 0.);
+		Assert.assertEquals(marginalCar, damageCosts.getMarginalDamageCostPerCar(linkId, timeBinEndTime), 0.);
+		Assert.assertEquals(marginalHgv, damageCosts.getMarginalDamageCostPerHgv(linkId, timeBinEndTime), 0.);
+	}
+}
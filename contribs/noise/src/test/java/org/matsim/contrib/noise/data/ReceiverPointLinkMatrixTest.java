@@ -0,0 +1,189 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.noise.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.contrib.noise.handler.NoiseEquations;
+import org.matsim.core.network.NetworkUtils;
+
+/**
+ * Compares the immissions computed with {@link ReceiverPointLinkMatrix} with the previous, map-based computation (all
+ * links within the relevant radius, the corrections and isolated immissions stored per receiver point and link).
+ */
+public class ReceiverPointLinkMatrixTest {
+	private static final double RELEVANT_RADIUS = 500;
+
+	private final Random random = new Random(1234);
+	private Network network;
+	private List<NoiseReceiverPoint> receiverPoints;
+
+	@Before
+	public void init() {
+		network = NetworkUtils.createNetwork();
+		List<Node> nodes = new ArrayList<>();
+		for (int i = 0; i < 60; i++) {
+			nodes.add(NetworkUtils.createAndAddNode(network, Id.createNodeId(i),
+					new Coord(random.nextDouble() * 3000, random.nextDouble() * 2000)));
+		}
+		// short and long links (crossing several grid cells)
+		for (int i = 0; i < 150; i++) {
+			Node from = nodes.get(random.nextInt(nodes.size()));
+			Node to = nodes.get(random.nextInt(nodes.size()));
+			if (from != to) {
+				NetworkUtils.createAndAddLink(network, Id.createLinkId(i), from, to, 100, 10, 1000, 1);
+			}
+		}
+
+		receiverPoints = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			receiverPoints.add(new NoiseReceiverPoint(Id.create(i, ReceiverPoint.class),
+					new Coord(random.nextDouble() * 3400 - 200, random.nextDouble() * 2400 - 200)));
+		}
+		// a receiver point on a node
+		receiverPoints.add(new NoiseReceiverPoint(Id.create("onNode", ReceiverPoint.class), nodes.get(0).getCoord()));
+	}
+
+	@Test
+	public void testRelevantLinksAndCorrections() {
+		ReceiverPointLinkMatrix matrix = new ReceiverPointLinkMatrix(network, receiverPoints, RELEVANT_RADIUS, 1);
+
+		int entryCount = 0;
+		for (int r = 0; r < matrix.getReceiverPointCount(); r++) {
+			NoiseReceiverPoint rp = matrix.getReceiverPoint(r);
+			Map<Id<Link>, Double> distanceCorrections = new HashMap<>();
+			Map<Id<Link>, Double> angleCorrections = new HashMap<>();
+			calculateCorrections(rp.getCoord(), distanceCorrections, angleCorrections);
+
+			Assert.assertEquals(distanceCorrections, rp.getLinkId2distanceCorrection());
+			Assert.assertEquals(angleCorrections, rp.getLinkId2angleCorrection());
+			// the maps are created once
+			Assert.assertSame(rp.getLinkId2distanceCorrection(), rp.getLinkId2distanceCorrection());
+			entryCount += distanceCorrections.size();
+		}
+		Assert.assertEquals(entryCount, matrix.getEntryCount());
+		Assert.assertTrue(entryCount > receiverPoints.size());
+	}
+
+	@Test
+	public void testImmissionsEqualMapBasedImmissions() {
+		ReceiverPointLinkMatrix matrix = new ReceiverPointLinkMatrix(network, receiverPoints, RELEVANT_RADIUS, 1);
+		List<NoiseReceiverPoint> otherReceiverPoints = new ArrayList<>();
+		for (NoiseReceiverPoint rp : receiverPoints) {
+			otherReceiverPoints.add(new NoiseReceiverPoint(rp.getId(), rp.getCoord()));
+		}
+		ReceiverPointLinkMatrix parallelMatrix = new ReceiverPointLinkMatrix(network, otherReceiverPoints,
+				RELEVANT_RADIUS, 3);
+
+		// several time bins; some links without emissions
+		for (int bin = 0; bin < 3; bin++) {
+			final double[] linkEmissions = new double[matrix.getLinkCount()];
+			Map<Id<Link>, Double> linkId2emission = new HashMap<>();
+			for (int l = 0; l < linkEmissions.length; l++) {
+				linkEmissions[l] = random.nextInt(4) == 0 ? 0. : 40 + random.nextDouble() * 40;
+				linkId2emission.put(matrix.getLink(l).getId(), linkEmissions[l]);
+			}
+
+			double[] immissions = calculateFinalImmissions(matrix, linkEmissions);
+			double[] parallelImmissions = calculateFinalImmissions(parallelMatrix, linkEmissions);
+
+			int nonZeroCount = 0;
+			for (int r = 0; r < matrix.getReceiverPointCount(); r++) {
+				NoiseReceiverPoint rp = matrix.getReceiverPoint(r);
+				double expected = calculateMapBasedImmission(rp, linkId2emission);
+				Assert.assertEquals(rp.getId().toString(), expected, immissions[r], 1e-10);
+				Assert.assertEquals(rp.getId().toString(), immissions[r], parallelImmissions[r], 0.);
+				if (expected > 0) {
+					nonZeroCount++;
+				}
+			}
+			Assert.assertTrue(nonZeroCount > receiverPoints.size() / 2);
+		}
+	}
+
+	private double[] calculateFinalImmissions(final ReceiverPointLinkMatrix matrix, final double[] linkEmissions) {
+		final double[] isolatedImmissions = new double[matrix.getEntryCount()];
+		final double[] finalImmissions = new double[matrix.getReceiverPointCount()];
+		matrix.processInParallel(new ReceiverPointLinkMatrix.RowBlockHandler() {
+			@Override
+			public void handleRows(int fromRow, int toRow) {
+				matrix.calculateImmissions(linkEmissions, isolatedImmissions, fromRow, toRow);
+				for (int r = fromRow; r < toRow; r++) {
+					finalImmissions[r] = NoiseEquations.calculateResultingNoiseImmission(isolatedImmissions,
+							matrix.getRowStart(r), matrix.getRowEnd(r));
+				}
+			}
+		});
+		return finalImmissions;
+	}
+
+	// the previous computation (NoiseContext and NoiseTimeTracker) with the corrections and immissions per link id
+	private double calculateMapBasedImmission(NoiseReceiverPoint rp, Map<Id<Link>, Double> linkId2emission) {
+		Map<Id<Link>, Double> distanceCorrections = new HashMap<>();
+		Map<Id<Link>, Double> angleCorrections = new HashMap<>();
+		calculateCorrections(rp.getCoord(), distanceCorrections, angleCorrections);
+
+		Map<Id<Link>, Double> linkId2isolatedImmission = new HashMap<>();
+		for (Id<Link> linkId : distanceCorrections.keySet()) {
+			double noiseImmission = 0.;
+			if (linkId2emission.get(linkId) != 0.) {
+				noiseImmission = linkId2emission.get(linkId) + distanceCorrections.get(linkId)
+						+ angleCorrections.get(linkId);
+				if (noiseImmission < 0.) {
+					noiseImmission = 0.;
+				}
+			}
+			linkId2isolatedImmission.put(linkId, noiseImmission);
+		}
+
+		if (linkId2isolatedImmission.isEmpty()) {
+			return 0.;
+		}
+		return NoiseEquations.calculateResultingNoiseImmission(linkId2isolatedImmission.values());
+	}
+
+	// all links within the relevant radius (brute force)
+	private void calculateCorrections(Coord coord, Map<Id<Link>, Double> distanceCorrections,
+			Map<Id<Link>, Double> angleCorrections) {
+		for (Link link : network.getLinks().values()) {
+			double distance = ReceiverPointLinkMatrix.calculateDistance(coord, link);
+			if (distance < RELEVANT_RADIUS) {
+				if (distance == 0) {
+					distance = 5.;
+				}
+				distanceCorrections.put(link.getId(), NoiseEquations.calculateDistanceCorrection(distance));
+				angleCorrections.put(link.getId(), ReceiverPointLinkMatrix.calculateAngleImmissionCorrection(coord, link));
+			}
+		}
+	}
+}
@@ -40,6 +40,7 @@ import org.matsim.contrib.pseudosimulation.distributed.listeners.controler.Genom
 import org.matsim.contrib.pseudosimulation.distributed.listeners.events.transit.TransitPerformance;
 import org.matsim.contrib.pseudosimulation.distributed.listeners.events.transit.TransitPerformanceRecorder;
 import org.matsim.contrib.pseudosimulation.mobsim.PSimFactory;
+import org.matsim.contrib.pseudosimulation.mobsim.PSimScoring;
 import org.matsim.contrib.pseudosimulation.mobsim.SwitchingMobsimProvider;
 import org.matsim.contrib.pseudosimulation.replanning.DistributedPlanStrategyTranslationAndRegistration;
 import org.matsim.contrib.pseudosimulation.replanning.PlanCatcher;
@@ -86,6 +87,7 @@ public class RunPSim {
     private boolean IntelligentRouters;
     private boolean TrackGenome;
     private boolean QuickReplanning;
+    private boolean EventFreePSim;
     private int IterationsPerCycle = -1;
     private boolean FullTransitPerformanceTransmission;
     private WaitTimeCalculatorSerializable waitTimeCalculator;
@@ -119,6 +121,8 @@ public class RunPSim {
         options.addOption("q", "quickReplanning", false, "Quick replanning: each replanning strategy operates at 1/(number of PSim iters),  " +
                 "effectively producing the same number of new plans per QSim iteration as a normal MATSim run," +
                 "but having a multinomial distribution");
+        options.addOption("e", "eventFreePSim", false, "Event-free PSim: plans executed by PSim are scored directly, " +
+                "without generating events (only if no other event handler needs PSim events, e.g. road pricing)");
 //        CommandLineParser parser = new BasicParser();
         CommandLineParser parser = new GnuParser();
         CommandLine commandLine = null;
@@ -185,6 +189,12 @@ public class RunPSim {
         } else {
             Diversity = false;
         }
+        if (commandLine.hasOption("e")) {
+            EventFreePSim = true;
+            initialLogString.append("Event-free PSim: PSim plans are scored directly, no events are generated\n");
+        } else {
+            EventFreePSim = false;
+        }
         //--------------------------------------------------------------------------------------------------------------
         if (IterationsPerCycle > 0)
             initPSim();
@@ -307,6 +317,11 @@ public class RunPSim {
             }
         });
         matsimControler.addControlerListener(new QSimScoreWriter(this.matsimControler));
+        if (EventFreePSim) {
+            PSimScoring pSimScoring = new PSimScoring(config.planCalcScore());
+            matsimControler.addControlerListener(pSimScoring);
+            mobSimSwitcher.getpSimFactory().setPlanHandler(pSimScoring);
+        }
 
         this.carTravelTimeCalculator = new PSimTravelTimeCalculator(matsimControler.getScenario().getNetwork(),
                 config.travelTimeCalculator(), (int) (config.qsim().getEndTime() - config.qsim().getStartTime()), mobSimSwitcher);
@@ -63,6 +63,18 @@ public class DistributedSimConfigGroup extends ReflectiveConfigGroup {
      */
     static final String PARALLEL_SIMULATION = "slavesRunInParallelToMaster";
     private boolean slavesRunInParallelToMaster = true;
+    /**
+     * Number of socket connections between the master and each slave. Persons and plans are split over all of them
+     * and encoded/decoded in parallel; 1 means that everything goes over the control connection.
+     */
+    static final String CONNECTIONS_PER_SLAVE = "connectionsPerSlave";
+    private int connectionsPerSlave = 2;
+    /**
+     * If true, slaves score the plans executed by PSim directly, without generating events. Only for setups where
+     * no other event handler needs the PSim events (e.g. road pricing). Read from the slave's own config.
+     */
+    static final String EVENT_FREE_PSIM = "eventFreePSim";
+    private boolean eventFreePSim = false;
 
     public DistributedSimConfigGroup() {
         super(GROUP_NAME);
@@ -147,4 +159,20 @@ public class DistributedSimConfigGroup extends ReflectiveConfigGroup {
     public void setSlavesRunInParallelToMaster(boolean slavesRunInParallelToMaster) {
         this.slavesRunInParallelToMaster = slavesRunInParallelToMaster;
     }
+    @StringGetter(CONNECTIONS_PER_SLAVE)
+    public int getConnectionsPerSlave() {
+        return connectionsPerSlave;
+    }
+    @StringSetter(CONNECTIONS_PER_SLAVE)
+    public void setConnectionsPerSlave(int connectionsPerSlave) {
+        this.connectionsPerSlave = connectionsPerSlave;
+    }
+    @StringGetter(EVENT_FREE_PSIM)
+    public boolean isEventFreePSim() {
+        return eventFreePSim;
+    }
+    @StringSetter(EVENT_FREE_PSIM)
+    public void setEventFreePSim(boolean eventFreePSim) {
+        this.eventFreePSim = eventFreePSim;
+    }
 }
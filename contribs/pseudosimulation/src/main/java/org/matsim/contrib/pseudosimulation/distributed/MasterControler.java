@@ -2,8 +2,7 @@ package org.matsim.contrib.pseudosimulation.distributed;
 
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.ArrayList;
@@ -26,6 +25,9 @@ import org.matsim.api.core.v01.population.Plan;
 import org.matsim.contrib.eventsBasedPTRouter.stopStopTimes.StopStopTimeCalculatorSerializable;
 import org.matsim.contrib.eventsBasedPTRouter.waitTimes.WaitTimeCalculatorSerializable;
 import org.matsim.contrib.pseudosimulation.distributed.instrumentation.scorestats.SlaveScoreStats;
+import org.matsim.contrib.pseudosimulation.distributed.io.CompactDataInput;
+import org.matsim.contrib.pseudosimulation.distributed.io.CompactDataOutput;
+import org.matsim.contrib.pseudosimulation.distributed.io.ParallelConnections;
 import org.matsim.contrib.pseudosimulation.distributed.listeners.controler.GenomeAnalysis;
 import org.matsim.contrib.pseudosimulation.distributed.listeners.controler.SlaveScoreWriter;
 import org.matsim.contrib.pseudosimulation.distributed.listeners.events.transit.TransitPerformanceRecorder;
@@ -59,6 +61,7 @@ public class MasterControler implements AfterMobsimListener, ShutdownListener, S
     private  final double masterBorrowingRate;
     private  final boolean TrackGenome = false; // todo genome tracking
     private  final boolean intelligentRouters;
+    private  final int connectionsPerSlave;
 
     private int innovationEndsAtIter = -1;
     private int slaveNumberOfPlans=3;
@@ -114,6 +117,7 @@ public class MasterControler implements AfterMobsimListener, ShutdownListener, S
         SelectedSimulationMode = distributedSimConfigGroup.isSlavesRunInParallelToMaster() ? SimulationMode.PARALLEL : SimulationMode.SERIAL;
         slaveIterationsPerMasterIteration = distributedSimConfigGroup.getSlaveIterationsPerMasterIteration();
         fullTransitPerformanceTransmission = distributedSimConfigGroup.isFullTransitPerformanceTransmission();
+        connectionsPerSlave = Math.max(1, distributedSimConfigGroup.getConnectionsPerSlave());
 
         slaveHandlerTreeMap = new TreeMap<>();
         slaveScoreStats = new SlaveScoreStats(this.config);
@@ -734,8 +738,12 @@ public class MasterControler implements AfterMobsimListener, ShutdownListener, S
     private class SlaveHandler implements Runnable {
         final Logger slaveLogger = Logger.getLogger(this.getClass());
         final Map<String, Plan> plans = new HashMap<>();
-        ObjectInputStream reader;
-        ObjectOutputStream writer;
+        // the selected plans last received from the slave, updated by the changes sent in each transmission
+        final Map<String, PlanSerializable> receivedPlans = new HashMap<>();
+        final ParallelConnections connections;
+        CompactDataInput reader;
+        CompactDataOutput writer;
+        SerializableLinkTravelTimes lastSentTravelTimes;
         double totalIterationTime;
         List<PersonSerializable> slavePersonPool;
         int targetPopulationSize = 0;
@@ -752,20 +760,33 @@ public class MasterControler implements AfterMobsimListener, ShutdownListener, S
         public SlaveHandler(Socket socket, int i) throws IOException {
             super();
             myNumber = i;
-            this.writer = new ObjectOutputStream(socket.getOutputStream());
-            this.reader = new ObjectInputStream(socket.getInputStream());
+            this.connections = new ParallelConnections(socket);
+            this.writer = connections.getControlOutput();
+            this.reader = connections.getControlInput();
         }
 
-        public void transmitPlans() throws IOException, ClassNotFoundException {
+        public void transmitPlans() throws IOException {
             plans.clear();
             slaveLogger.warn("Waiting to receive plans from slave number " + myNumber);
             int slaveIteration = reader.readInt();
             int timesIteration = reader.readInt();
             slaveLogger.warn(String.format("Plan signature: M%03dP%03dT%03d ", currentIteration + 1, slaveIteration, timesIteration));
             slaveLogger.warn("(M = iteration for execution on master,P = PSim iteration when plan came from on slave, T = travel time iteration from master used to generate plan on slave)");
-            Map<String, PlanSerializable> serialPlans = (Map<String, PlanSerializable>) reader.readObject();
-            slaveLogger.warn("RECEIVED " + serialPlans.size() + " plans from slave number " + myNumber);
-            for (Entry<String, PlanSerializable> entry : serialPlans.entrySet()) {
+            List<PlanSerializable> changedPlans = connections.receive(PlanSerializable.READER);
+            for (PlanSerializable planSerializable : changedPlans) {
+                receivedPlans.put(planSerializable.getPersonId(), planSerializable);
+            }
+            int numberOfRescoredPlans = reader.readVarInt();
+            for (int i = 0; i < numberOfRescoredPlans; i++) {
+                String personId = reader.readId();
+                PlanSerializable receivedPlan = receivedPlans.get(personId);
+                if (receivedPlan == null)
+                    throw new StreamCorruptedException("Slave number " + myNumber + " sent a score update for person "
+                            + personId + ", but no plan of this person has been received from this slave before");
+                receivedPlan.setScore(reader.readNullableDouble());
+            }
+            slaveLogger.warn("RECEIVED " + changedPlans.size() + " changed and " + numberOfRescoredPlans + " rescored plans from slave number " + myNumber);
+            for (Entry<String, PlanSerializable> entry : receivedPlans.entrySet()) {
                 plans.put(entry.getKey(), entry.getValue().getPlan(matsimControler.getScenario().getPopulation()));
             }
             this.currentPopulationSize = plans.size();
@@ -780,37 +801,39 @@ public class MasterControler implements AfterMobsimListener, ShutdownListener, S
         public void transmitTravelTimes() throws IOException {
             slaveLogger.warn("About to send travel times to slave number " + myNumber);
             writer.writeInt(currentIteration);
-            writer.writeObject(linkTravelTimes);
+            linkTravelTimes.write(writer, lastSentTravelTimes);
+            lastSentTravelTimes = linkTravelTimes;
             if (config.transit().isUseTransit()) {
-                writer.writeObject(stopStopTimeCalculator.getStopStopTimes());
-                writer.writeObject(waitTimeCalculator.getWaitTimes());
+                writer.writeSerializedObject(stopStopTimeCalculator.getStopStopTimes());
+                writer.writeSerializedObject(waitTimeCalculator.getWaitTimes());
                 if (fullTransitPerformanceTransmission)
-                    writer.writeObject(transitPerformanceRecorder.getTransitPerformance());
+                    writer.writeSerializedObject(transitPerformanceRecorder.getTransitPerformance());
             }
             writer.flush();
             slaveLogger.warn("SENT travel times to slave number " + myNumber);
         }
 
-        public void poolPersons() throws IOException, ClassNotFoundException {
+        public void poolPersons() throws IOException {
             slaveLogger.warn("Trying to receive persons from slave " + myNumber);
             slaveLogger.warn("Currently has " + currentPopulationSize + " persons, target is " + targetPopulationSize);
             slavePersonPool = new ArrayList<>();
             writer.writeInt(currentPopulationSize - targetPopulationSize);
             writer.flush();
-            slavePersonPool = (List<PersonSerializable>) reader.readObject();
+            slavePersonPool = connections.receive(PersonSerializable.READER);
+            for (PersonSerializable person : slavePersonPool) {
+                receivedPlans.remove(person.id);
+            }
         }
 
         public void distributePersons() throws IOException, InterruptedException {
             slaveLogger.warn("Distributing persons to slave" + myNumber);
             writer.writeInt(currentIteration);
-            writer.writeObject(getPersonsFromPool(currentPopulationSize - targetPopulationSize));
-            writer.flush();
+            connections.send(getPersonsFromPool(currentPopulationSize - targetPopulationSize), PersonSerializable.WRITER);
         }
 
         public void transmitInitialPlans() throws IOException {
             writer.writeInt(currentIteration);
-            writer.writeObject(slavePersonPool);
-            writer.flush();
+            connections.send(slavePersonPool, PersonSerializable.WRITER);
             this.currentPopulationSize = slavePersonPool.size();
         }
 
@@ -818,14 +841,14 @@ public class MasterControler implements AfterMobsimListener, ShutdownListener, S
         public void run() {
             try {
                 slaveLogger.warn("SlaveHandler " + myNumber + " entering comms mode: " + communicationsMode.toString());
-                writer.writeObject(communicationsMode);
+                writer.writeByte(communicationsMode.ordinal());
                 writer.flush();
                 switch (communicationsMode) {
                     case TRANSMIT_TRAVEL_TIMES:
                         transmitTravelTimes();
                         reader.readBoolean();
                         communicationsMode = CommunicationsMode.CONTINUE;
-                        writer.writeObject(communicationsMode);
+                        writer.writeByte(communicationsMode.ordinal());
                         writer.flush();
                         break;
                     case POOL_PERSONS:
@@ -835,7 +858,6 @@ public class MasterControler implements AfterMobsimListener, ShutdownListener, S
                         distributePersons();
                         break;
                     case TRANSMIT_PLANS_TO_MASTER:
-                        writer.reset();
                         transmitPlans();
                         slaveIsOKForNextIter();
                         break;
@@ -849,14 +871,14 @@ public class MasterControler implements AfterMobsimListener, ShutdownListener, S
                         transmitInitialPlans();
                         reader.readBoolean();
                         communicationsMode = CommunicationsMode.CONTINUE;
-                        writer.writeObject(communicationsMode);
+                        writer.writeByte(communicationsMode.ordinal());
                         writer.flush();
                         break;
                     case DIE:
                         return;
                 }
                 reader.readBoolean();
-            } catch (IOException | InterruptedException | IndexOutOfBoundsException | ClassNotFoundException e) {
+            } catch (IOException | InterruptedException | IndexOutOfBoundsException e) {
                 e.printStackTrace();
                 somethingWentWrong = true;
                 numThreads.decrementAndGet();
@@ -866,8 +888,8 @@ public class MasterControler implements AfterMobsimListener, ShutdownListener, S
             slaveLogger.warn("SlaveHandler " + myNumber + " leaving comms mode: " + communicationsMode.toString());
         }
 
-        private void transmitScores() throws IOException, ClassNotFoundException {
-            slaveScoreStats.insertEntry(currentIteration, currentPopulationSize, scenario.getPopulation().getPersons().size(), (double[]) reader.readObject());
+        private void transmitScores() throws IOException {
+            slaveScoreStats.insertEntry(currentIteration, currentPopulationSize, scenario.getPopulation().getPersons().size(), reader.readDoubles());
         }
 
 
@@ -980,6 +1002,7 @@ public class MasterControler implements AfterMobsimListener, ShutdownListener, S
         slaveHandler.sendBoolean(TrackGenome);
         slaveHandler.sendBoolean(intelligentRouters);
         slaveHandler.sendBoolean(false); //for diversity generation;
+        slaveHandler.connections.acceptDataConnections(connectionsPerSlave - 1);
         slaveHandler.readMemoryStats();
         slaveHandler.readNumberOfThreadsOnSlave();
     }
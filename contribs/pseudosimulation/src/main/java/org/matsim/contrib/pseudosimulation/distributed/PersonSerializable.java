@@ -1,7 +1,7 @@
 
 package org.matsim.contrib.pseudosimulation.distributed;
 
-import java.io.Serializable;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.TreeSet;
@@ -9,10 +9,26 @@ import java.util.TreeSet;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Plan;
+import org.matsim.contrib.pseudosimulation.distributed.io.CompactDataInput;
+import org.matsim.contrib.pseudosimulation.distributed.io.CompactDataOutput;
+import org.matsim.contrib.pseudosimulation.distributed.io.ParallelConnections;
 import org.matsim.core.population.PersonUtils;
 import org.matsim.core.population.PopulationUtils;
 
-public class PersonSerializable implements Serializable {
+public class PersonSerializable {
+    public static final ParallelConnections.RecordWriter<PersonSerializable> WRITER = new ParallelConnections.RecordWriter<PersonSerializable>() {
+        @Override
+        public void write(PersonSerializable person, CompactDataOutput out) throws IOException {
+            person.write(out);
+        }
+    };
+    public static final ParallelConnections.RecordReader<PersonSerializable> READER = new ParallelConnections.RecordReader<PersonSerializable>() {
+        @Override
+        public PersonSerializable read(CompactDataInput in) throws IOException {
+            return new PersonSerializable(in);
+        }
+    };
+
     protected List<PlanSerializable> plans = new ArrayList<>(5);
 
     public PersonSerializable(Person p) {
@@ -27,6 +43,24 @@ public class PersonSerializable implements Serializable {
         }
     }
 
+    PersonSerializable(CompactDataInput in) throws IOException {
+        this.id = in.readId();
+        int numberOfPlans = in.readVarInt();
+        int selectedPlanIndex = in.readVarInt() - 1;
+        for (int i = 0; i < numberOfPlans; i++)
+            plans.add(new PlanSerializable(in));
+        if (selectedPlanIndex >= 0)
+            this.selectedPlan = plans.get(selectedPlanIndex);
+    }
+
+    void write(CompactDataOutput out) throws IOException {
+        out.writeId(id);
+        out.writeVarInt(plans.size());
+        out.writeVarInt(plans.indexOf(selectedPlan) + 1);
+        for (PlanSerializable plan : plans)
+            plan.write(out);
+    }
+
     protected String id;
 
     PlanSerializable selectedPlan = null;
@@ -1,6 +1,6 @@
 package org.matsim.contrib.pseudosimulation.distributed;
 
-import java.io.Serializable;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -15,8 +15,12 @@ import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.PlanElement;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.api.core.v01.population.Route;
+import org.matsim.contrib.pseudosimulation.distributed.io.CompactDataInput;
+import org.matsim.contrib.pseudosimulation.distributed.io.CompactDataOutput;
+import org.matsim.contrib.pseudosimulation.distributed.io.ParallelConnections;
 import org.matsim.contrib.pseudosimulation.distributed.plans.PlanGenome;
 import org.matsim.contrib.pseudosimulation.distributed.scoring.PlanScoreComponent;
+import org.matsim.contrib.pseudosimulation.distributed.scoring.ScoreComponentType;
 import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.routes.GenericRouteImpl;
 import org.matsim.core.population.routes.LinkNetworkRouteImpl;
@@ -25,8 +29,28 @@ import org.matsim.facilities.ActivityFacility;
 import org.matsim.pt.routes.ExperimentalTransitRouteFactory;
 import org.matsim.vehicles.Vehicle;
 
-class PlanSerializable implements Serializable {
+/**
+ * Copy of a plan for transmission between master and slaves, see {@link #write(CompactDataOutput)}.
+ */
+class PlanSerializable {
     public static boolean isUseTransit = false;
+    private static final byte ACTIVITY = 0;
+    private static final byte LEG = 1;
+    private static final byte NO_ROUTE = 0;
+    private static final byte NETWORK_ROUTE = 1;
+    private static final byte GENERIC_ROUTE = 2;
+    static final ParallelConnections.RecordWriter<PlanSerializable> WRITER = new ParallelConnections.RecordWriter<PlanSerializable>() {
+        @Override
+        public void write(PlanSerializable plan, CompactDataOutput out) throws IOException {
+            plan.write(out);
+        }
+    };
+    static final ParallelConnections.RecordReader<PlanSerializable> READER = new ParallelConnections.RecordReader<PlanSerializable>() {
+        @Override
+        public PlanSerializable read(CompactDataInput in) throws IOException {
+            return new PlanSerializable(in);
+        }
+    };
 
     public void setScoreComponents(ArrayList<PlanScoreComponent> scoreComponents) {
         this.scoreComponents = scoreComponents;
@@ -35,7 +59,7 @@ class PlanSerializable implements Serializable {
     ArrayList<PlanScoreComponent> scoreComponents = new ArrayList<>();
     private final ArrayList<PlanElementSerializable> planElements;
     private final String personId;
-    private final Double score;
+    private Double score;
     private final String type;
     double pSimScore;
     private String genome = "";
@@ -59,10 +83,66 @@ class PlanSerializable implements Serializable {
         }
     }
 
+    PlanSerializable(CompactDataInput in) throws IOException {
+        personId = in.readId();
+        score = in.readNullableDouble();
+        type = in.readId();
+        pSimScore = in.readDouble();
+        genome = in.readString();
+        int numberOfScoreComponents = in.readVarInt();
+        for (int i = 0; i < numberOfScoreComponents; i++) {
+            ScoreComponentType componentType = ScoreComponentType.values()[in.readByte()];
+            double componentScore = in.readDouble();
+            scoreComponents.add(new PlanScoreComponent(componentType, componentScore, in.readId()));
+        }
+        int numberOfElements = in.readVarInt();
+        planElements = new ArrayList<>(numberOfElements);
+        for (int i = 0; i < numberOfElements; i++)
+            if (in.readByte() == ACTIVITY)
+                planElements.add(new ActivitySerializable(in));
+            else
+                planElements.add(new LegSerializable(in));
+    }
+
+    /**
+     * Ids, types and modes are dictionary-encoded, so a route costs about one or two bytes per link.
+     */
+    void write(CompactDataOutput out) throws IOException {
+        out.writeId(personId);
+        out.writeNullableDouble(score);
+        out.writeId(type);
+        out.writeDouble(pSimScore);
+        out.writeString(genome);
+        out.writeVarInt(scoreComponents == null ? 0 : scoreComponents.size());
+        if (scoreComponents != null)
+            for (PlanScoreComponent component : scoreComponents) {
+                out.writeByte(component.getType().ordinal());
+                out.writeDouble(component.getScore());
+                out.writeId(component.getDescription());
+            }
+        out.writeVarInt(planElements.size());
+        for (PlanElementSerializable planElement : planElements) {
+            out.writeByte(planElement instanceof ActivitySerializable ? ACTIVITY : LEG);
+            planElement.write(out);
+        }
+    }
+
     public Double getScore() {
         return score;
     }
 
+    public String getPersonId() {
+        return personId;
+    }
+
+    /**
+     * Used when only the score of an already transmitted plan has changed.
+     */
+    void setScore(Double score) {
+        this.score = score;
+        this.pSimScore = score == null ? 0 : score;
+    }
+
     public Plan getPlan(Population population) {
         PlanGenome plan = new PlanGenome(population.getPersons().get(Id.createPersonId(personId)));
         plan.setGenome(genome);
@@ -93,12 +173,14 @@ class PlanSerializable implements Serializable {
         return plan;
     }
 
-    private interface PlanElementSerializable extends Serializable {
-
+    private interface PlanElementSerializable {
+        void write(CompactDataOutput out) throws IOException;
     }
 
-    interface RouteSerializable extends Serializable {
+    interface RouteSerializable {
         Route getRoute(String mode);
+
+        void write(CompactDataOutput out) throws IOException;
     }
 
     class ActivitySerializable implements PlanElementSerializable {
@@ -111,7 +193,7 @@ class PlanSerializable implements Serializable {
         private final String type;
 
         public ActivitySerializable(Activity act) {
-            coord = new CoordSerializable(act.getCoord());
+            coord = act.getCoord() == null ? null : new CoordSerializable(act.getCoord());
             endTime = act.getEndTime();
             facIdString = act.getFacilityId() == null ? null : act.getFacilityId().toString();
             linkIdString = act.getLinkId() == null ? null : act.getLinkId().toString();
@@ -120,8 +202,31 @@ class PlanSerializable implements Serializable {
             type = act.getType();
         }
 
+        ActivitySerializable(CompactDataInput in) throws IOException {
+            coord = in.readBoolean() ? new CoordSerializable(in) : null;
+            endTime = in.readDouble();
+            facIdString = in.readId();
+            linkIdString = in.readId();
+            maximumDuration = in.readDouble();
+            startTime = in.readDouble();
+            type = in.readId();
+        }
+
+        @Override
+        public void write(CompactDataOutput out) throws IOException {
+            out.writeBoolean(coord != null);
+            if (coord != null)
+                coord.write(out);
+            out.writeDouble(endTime);
+            out.writeId(facIdString);
+            out.writeId(linkIdString);
+            out.writeDouble(maximumDuration);
+            out.writeDouble(startTime);
+            out.writeId(type);
+        }
+
         public Activity getActivity() {
-            Activity activity = PopulationUtils.createActivityFromCoordAndLinkId(type, coord.getCoord(), linkIdString == null ? null : Id.createLinkId(linkIdString));
+            Activity activity = PopulationUtils.createActivityFromCoordAndLinkId(type, coord == null ? null : coord.getCoord(), linkIdString == null ? null : Id.createLinkId(linkIdString));
             activity.setEndTime(endTime);
             activity.setFacilityId(facIdString == null ? null : Id.create(facIdString, ActivityFacility.class));
             activity.setMaximumDuration(maximumDuration);
@@ -152,6 +257,33 @@ class PlanSerializable implements Serializable {
 
         }
 
+        LegSerializable(CompactDataInput in) throws IOException {
+            departureTime = in.readDouble();
+            mode = in.readId();
+            travelTime = in.readDouble();
+            switch (in.readByte()) {
+                case NETWORK_ROUTE:
+                    route = new NetworkRouteSerializable(in);
+                    break;
+                case GENERIC_ROUTE:
+                    route = new GenericRouteSerializable(in);
+                    break;
+            }
+        }
+
+        @Override
+        public void write(CompactDataOutput out) throws IOException {
+            out.writeDouble(departureTime);
+            out.writeId(mode);
+            out.writeDouble(travelTime);
+            if (route == null)
+                out.writeByte(NO_ROUTE);
+            else {
+                out.writeByte(route instanceof NetworkRouteSerializable ? NETWORK_ROUTE : GENERIC_ROUTE);
+                route.write(out);
+            }
+        }
+
         public Leg getLeg() {
             Leg leg = PopulationUtils.createLeg(mode);
             leg.setDepartureTime(departureTime);
@@ -161,7 +293,7 @@ class PlanSerializable implements Serializable {
         }
     }
 
-    class CoordSerializable implements Serializable {
+    class CoordSerializable {
         private final double x;
         private final double y;
 
@@ -170,6 +302,16 @@ class PlanSerializable implements Serializable {
             y = coord.getY();
         }
 
+        CoordSerializable(CompactDataInput in) throws IOException {
+            x = in.readDouble();
+            y = in.readDouble();
+        }
+
+        void write(CompactDataOutput out) throws IOException {
+            out.writeDouble(x);
+            out.writeDouble(y);
+        }
+
         public Coord getCoord() {
             return new Coord(x, y);
 
@@ -199,6 +341,32 @@ class PlanSerializable implements Serializable {
                 linkIdStrings.add(linkid.toString());
         }
 
+        NetworkRouteSerializable(CompactDataInput in) throws IOException {
+            distance = in.readDouble();
+            endLinkIdString = in.readId();
+            startLinkIdString = in.readId();
+            travelCost = in.readDouble();
+            travelTime = in.readDouble();
+            vehicleIdString = in.readId();
+            int numberOfLinks = in.readVarInt();
+            linkIdStrings = new ArrayList<>(numberOfLinks);
+            for (int i = 0; i < numberOfLinks; i++)
+                linkIdStrings.add(in.readId());
+        }
+
+        @Override
+        public void write(CompactDataOutput out) throws IOException {
+            out.writeDouble(distance);
+            out.writeId(endLinkIdString);
+            out.writeId(startLinkIdString);
+            out.writeDouble(travelCost);
+            out.writeDouble(travelTime);
+            out.writeId(vehicleIdString);
+            out.writeVarInt(linkIdStrings.size());
+            for (String linkId : linkIdStrings)
+                out.writeId(linkId);
+        }
+
         @Override
         public Route getRoute(String mode) {
             Id<Link> startLinkId = Id.createLinkId(startLinkIdString);
@@ -233,6 +401,23 @@ class PlanSerializable implements Serializable {
             travelTime = route.getTravelTime();
         }
 
+        GenericRouteSerializable(CompactDataInput in) throws IOException {
+            distance = in.readDouble();
+            endLinkIdString = in.readId();
+            routeDescription = in.readString();
+            startLinkIdString = in.readId();
+            travelTime = in.readDouble();
+        }
+
+        @Override
+        public void write(CompactDataOutput out) throws IOException {
+            out.writeDouble(distance);
+            out.writeId(endLinkIdString);
+            out.writeString(routeDescription);
+            out.writeId(startLinkIdString);
+            out.writeDouble(travelTime);
+        }
+
         @Override
         public Route getRoute(String mode) {
             Route route;
@@ -1,6 +1,7 @@
 package org.matsim.contrib.pseudosimulation.distributed;
 
-import java.io.Serializable;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -8,12 +9,18 @@ import java.util.Map;
 
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.pseudosimulation.distributed.io.CompactDataInput;
+import org.matsim.contrib.pseudosimulation.distributed.io.CompactDataOutput;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.vehicles.Vehicle;
 
-public class SerializableLinkTravelTimes implements Serializable, TravelTime {
+/**
+ * Immutable snapshot of link travel times, transmitted from master to slaves as difference to the previous snapshot.
+ */
+public class SerializableLinkTravelTimes implements TravelTime {
 
 	private final double[][] times;
+	private final String[] linkIds;
 	private final Map<String, Integer> indices = new HashMap<>();
 	private final int travelTimeBinSize;
 
@@ -23,16 +30,26 @@ public class SerializableLinkTravelTimes implements Serializable, TravelTime {
 		this.travelTimeBinSize = traveltimeBinSize;
 		endTime = endTime <= 0 ? 86400 : endTime;
 		times = new double[links.size()][(int) (endTime / traveltimeBinSize)];
+		linkIds = new String[links.size()];
 		Iterator<? extends Link> iterator = links.iterator();
 		for (int i = 0; i < times.length; i++) {
 			Link link = iterator.next();
-			indices.put(link.getId().toString(), i);
+			linkIds[i] = link.getId().toString();
+			indices.put(linkIds[i], i);
 			for (int j = 0; j < times[i].length; j++)
 				times[i][j] = linkTravelTimes.getLinkTravelTime(link,
 						traveltimeBinSize * j, null, null);
 		}
 	}
 
+	private SerializableLinkTravelTimes(int travelTimeBinSize, String[] linkIds, double[][] times) {
+		this.travelTimeBinSize = travelTimeBinSize;
+		this.linkIds = linkIds;
+		this.times = times;
+		for (int i = 0; i < linkIds.length; i++)
+			indices.put(linkIds[i], i);
+	}
+
 	@Override
 	public double getLinkTravelTime(Link link, double time, Person person,
 			Vehicle vehicle) {
@@ -46,4 +63,90 @@ public class SerializableLinkTravelTimes implements Serializable, TravelTime {
 		return time;
 	}
 
+	double[][] getTimes() {
+		return times;
+	}
+
+	private boolean hasSameLayout(SerializableLinkTravelTimes other) {
+		return other.travelTimeBinSize == travelTimeBinSize && other.times.length == times.length
+				&& (times.length == 0 || other.times[0].length == times[0].length)
+				&& Arrays.equals(other.linkIds, linkIds);
+	}
+
+	/**
+	 * @param previous
+	 *            the table sent before over the same connection, or null. If it has the same links and bins, only
+	 *            the changed bins of each link are written, otherwise the complete table including the link ids.
+	 */
+	public void write(CompactDataOutput out, SerializableLinkTravelTimes previous) throws IOException {
+		boolean isDelta = previous != null && hasSameLayout(previous);
+		out.writeBoolean(isDelta);
+		if (!isDelta) {
+			out.writeInt(travelTimeBinSize);
+			out.writeVarInt(linkIds.length);
+			out.writeVarInt(times.length == 0 ? 0 : times[0].length);
+			for (int i = 0; i < linkIds.length; i++) {
+				out.writeId(linkIds[i]);
+				for (double time : times[i])
+					out.writeDouble(time);
+			}
+			return;
+		}
+
+		for (int i = 0; i < times.length; i++) {
+			double[] row = times[i];
+			double[] previousRow = previous.times[i];
+			int changedBins = 0;
+			for (int j = 0; j < row.length; j++)
+				if (Double.doubleToLongBits(row[j]) != Double.doubleToLongBits(previousRow[j]))
+					changedBins++;
+			out.writeVarInt(changedBins);
+			// changed bins as (gap to the previous changed bin, new value)
+			int lastBin = -1;
+			for (int j = 0; j < row.length && changedBins > 0; j++)
+				if (Double.doubleToLongBits(row[j]) != Double.doubleToLongBits(previousRow[j])) {
+					out.writeVarInt(j - lastBin - 1);
+					out.writeDouble(row[j]);
+					lastBin = j;
+					changedBins--;
+				}
+		}
+	}
+
+	/**
+	 * @param previous
+	 *            the table read before from the same connection; rows without changes are shared with it
+	 */
+	public static SerializableLinkTravelTimes read(CompactDataInput in, SerializableLinkTravelTimes previous)
+			throws IOException {
+		boolean isDelta = in.readBoolean();
+		if (!isDelta) {
+			int travelTimeBinSize = in.readInt();
+			String[] linkIds = new String[in.readVarInt()];
+			double[][] times = new double[linkIds.length][in.readVarInt()];
+			for (int i = 0; i < linkIds.length; i++) {
+				linkIds[i] = in.readId();
+				for (int j = 0; j < times[i].length; j++)
+					times[i][j] = in.readDouble();
+			}
+			return new SerializableLinkTravelTimes(travelTimeBinSize, linkIds, times);
+		}
+
+		double[][] times = new double[previous.times.length][];
+		for (int i = 0; i < times.length; i++) {
+			int changedBins = in.readVarInt();
+			if (changedBins == 0) {
+				times[i] = previous.times[i];
+				continue;
+			}
+			times[i] = previous.times[i].clone();
+			int bin = -1;
+			for (int k = 0; k < changedBins; k++) {
+				bin += in.readVarInt() + 1;
+				times[i][bin] = in.readDouble();
+			}
+		}
+		return new SerializableLinkTravelTimes(previous.travelTimeBinSize, previous.linkIds, times);
+	}
+
 }
@@ -15,8 +15,12 @@ import org.matsim.contrib.eventsBasedPTRouter.stopStopTimes.StopStopTimeCalculat
 import org.matsim.contrib.eventsBasedPTRouter.waitTimes.WaitTime;
 import org.matsim.contrib.eventsBasedPTRouter.waitTimes.WaitTimeCalculatorSerializable;
 import org.matsim.contrib.pseudosimulation.distributed.instrumentation.scorestats.SlaveScoreStatsCalculator;
+import org.matsim.contrib.pseudosimulation.distributed.io.CompactDataInput;
+import org.matsim.contrib.pseudosimulation.distributed.io.CompactDataOutput;
+import org.matsim.contrib.pseudosimulation.distributed.io.ParallelConnections;
 import org.matsim.contrib.pseudosimulation.distributed.listeners.events.transit.TransitPerformance;
 import org.matsim.contrib.pseudosimulation.mobsim.PSimFactory;
+import org.matsim.contrib.pseudosimulation.mobsim.PSimScoring;
 import org.matsim.contrib.pseudosimulation.mobsim.SwitchingMobsimProvider;
 import org.matsim.contrib.pseudosimulation.replanning.DistributedPlanStrategyTranslationAndRegistration;
 import org.matsim.contrib.pseudosimulation.replanning.PlanCatcher;
@@ -39,8 +43,6 @@ import org.matsim.pt.router.TransitRouter;
 import org.matsim.vehicles.Vehicle;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.ConnectException;
 import java.net.Socket;
 import java.util.*;
@@ -67,10 +69,15 @@ public class SlaveControler implements IterationStartsListener, StartupListener,
     private double totalIterationTime;
     private Controler matsimControler;
     private TravelTime linkTravelTimes;
+    private SerializableLinkTravelTimes receivedTravelTimes;
     private WaitTime waitTimes;
     private StopStopTime stopStopTimes;
-    private ObjectInputStream reader;
-    private ObjectOutputStream writer;
+    private ParallelConnections connections;
+    private CompactDataInput reader;
+    private CompactDataOutput writer;
+    // selected plans (and their scores) as last transmitted to the master; only changes are sent
+    private final Map<Id<Person>, Plan> transmittedPlans = new HashMap<>();
+    private final Map<Id<Person>, Double> transmittedScores = new HashMap<>();
     private PSimFactory pSimFactory;
     private List<Long> iterationTimes = new ArrayList<>();
     private long lastIterationStartTime;
@@ -179,8 +186,9 @@ public class SlaveControler implements IterationStartsListener, StartupListener,
                 Thread.sleep(1000);
             }
         }
-        this.reader = new ObjectInputStream(socket.getInputStream());
-        this.writer = new ObjectOutputStream(socket.getOutputStream());
+        this.connections = new ParallelConnections(socket);
+        this.reader = connections.getControlInput();
+        this.writer = connections.getControlOutput();
 
         int myNumber = reader.readInt();
         slaveLogger = Logger.getLogger(("SLAVE_" + myNumber));
@@ -196,6 +204,7 @@ public class SlaveControler implements IterationStartsListener, StartupListener,
         boolean trackGenome = reader.readBoolean();
         IntelligentRouters = reader.readBoolean();
         boolean diversityGeneratingPlanSelection = reader.readBoolean();
+        connections.connectDataConnections(hostname);
 
         if (initialRouting) slaveLogger.warn("Performing initial routing.");
 
@@ -249,6 +258,11 @@ public class SlaveControler implements IterationStartsListener, StartupListener,
                 bindMobsim().toProvider(pSimFactory);
             }
         });
+        if (distributedSimConfigGroup.isEventFreePSim()) {
+            PSimScoring pSimScoring = new PSimScoring(config.planCalcScore());
+            matsimControler.addControlerListener(pSimScoring);
+            pSimFactory.setPlanHandler(pSimScoring);
+        }
 
         if (config.transit().isUseTransit()) {
 
@@ -407,23 +421,42 @@ public class SlaveControler implements IterationStartsListener, StartupListener,
             personsToSend.add(new PersonSerializable(matsimControler.getScenario().getPopulation().getPersons().get(personId)));
             personIdsToRemove.add(personId);
         }
-        for (Id<Person> personId : personIdsToRemove)
+        for (Id<Person> personId : personIdsToRemove) {
             matsimControler.getScenario().getPopulation().getPersons().remove(personId);
+            transmittedPlans.remove(personId);
+            transmittedScores.remove(personId);
+        }
         return personsToSend;
     }
 
-    public void transmitPlans() throws IOException, ClassNotFoundException {
-        Map<String, PlanSerializable> tempPlansCopyForSending = new HashMap<>();
+    /**
+     * Sends the selected plans that differ from the ones transmitted before, and only the score where just that
+     * has changed (replanning always works on a copy of the plan).
+     */
+    public void transmitPlans() throws IOException {
+        List<PlanSerializable> changedPlans = new ArrayList<>();
+        List<Person> rescoredPersons = new ArrayList<>();
         for (Person person : matsimControler.getScenario().getPopulation().getPersons().values()) {
-            PlanSerializable planSerializable = new PlanSerializable(person.getSelectedPlan());
-            planSerializable.pSimScore = planSerializable.getScore() == null ? 0 : planSerializable.getScore();
-            tempPlansCopyForSending.put(person.getId().toString(), planSerializable);
+            Plan plan = person.getSelectedPlan();
+            if (plan != transmittedPlans.get(person.getId())) {
+                PlanSerializable planSerializable = new PlanSerializable(plan);
+                planSerializable.pSimScore = planSerializable.getScore() == null ? 0 : planSerializable.getScore();
+                changedPlans.add(planSerializable);
+            } else if (!Objects.equals(plan.getScore(), transmittedScores.get(person.getId()))) {
+                rescoredPersons.add(person);
+            }
+            transmittedPlans.put(person.getId(), plan);
+            transmittedScores.put(person.getId(), plan.getScore());
         }
-        Map<String, PlanSerializable> plansCopyForSending = tempPlansCopyForSending;
-        slaveLogger.warn("Sending " + plansCopyForSending.size() + " plans...");
+        slaveLogger.warn("Sending " + changedPlans.size() + " changed and " + rescoredPersons.size() + " rescored plans...");
         writer.writeInt(currentIteration);
         writer.writeInt(masterCurrentIteration);
-        writer.writeObject(plansCopyForSending);
+        connections.send(changedPlans, PlanSerializable.WRITER);
+        writer.writeVarInt(rescoredPersons.size());
+        for (Person person : rescoredPersons) {
+            writer.writeId(person.getId().toString());
+            writer.writeNullableDouble(person.getSelectedPlan().getScore());
+        }
         slaveLogger.warn("Sending completed.");
 
     }
@@ -431,12 +464,13 @@ public class SlaveControler implements IterationStartsListener, StartupListener,
     public void transmitTravelTimes() throws IOException, ClassNotFoundException {
         slaveLogger.warn("RECEIVING travel times...");
         masterCurrentIteration = reader.readInt();
-        linkTravelTimes = (SerializableLinkTravelTimes) reader.readObject();
+        receivedTravelTimes = SerializableLinkTravelTimes.read(reader, receivedTravelTimes);
+        linkTravelTimes = receivedTravelTimes;
         if (config.transit().isUseTransit()) {
-            stopStopTimes = (StopStopTime) reader.readObject();
-            waitTimes = (WaitTime) reader.readObject();
+            stopStopTimes = (StopStopTime) reader.readSerializedObject();
+            waitTimes = (WaitTime) reader.readSerializedObject();
             if (fullTransitPerformanceTransmission) {
-                Object o = reader.readObject();
+                Object o = reader.readSerializedObject();
                 transitPerformance = (TransitPerformance) o;
             }
         }
@@ -485,9 +519,9 @@ public class SlaveControler implements IterationStartsListener, StartupListener,
         }
     }
 
-    public void distributePersons() throws IOException, ClassNotFoundException {
+    public void distributePersons() throws IOException {
         int masterCurrentIteration = reader.readInt();
-        List<PersonSerializable> personSerializables = (List<PersonSerializable>) reader.readObject();
+        List<PersonSerializable> personSerializables = connections.receive(PersonSerializable.READER);
         addPersons(personSerializables);
         iterationTimes = new ArrayList<>();
         executedPlanCount = 0;
@@ -502,7 +536,7 @@ public class SlaveControler implements IterationStartsListener, StartupListener,
         if (diff > 0) {
             personsToSend = getPersonsToSend(diff);
         }
-        writer.writeObject(personsToSend);
+        connections.send(personsToSend, PersonSerializable.WRITER);
         slaveLogger.warn("Sent " + personsToSend.size() + " pax to master");
     }
 
@@ -511,7 +545,7 @@ public class SlaveControler implements IterationStartsListener, StartupListener,
         slaveLogger.warn("Initializing communications...");
         try {
             while (!communicationsMode.equals(CommunicationsMode.CONTINUE)) {
-                communicationsMode = (CommunicationsMode) reader.readObject();
+                communicationsMode = CommunicationsMode.values()[reader.readByte()];
                 switch (communicationsMode) {
                     case TRANSMIT_SCENARIO:
                         distributePersons();
@@ -550,7 +584,6 @@ public class SlaveControler implements IterationStartsListener, StartupListener,
                 writer.writeBoolean(true);
                 writer.flush();
             }
-            writer.reset();
         } catch (ClassNotFoundException | IOException | InterruptedException e) {
             e.printStackTrace();
             slaveLogger.error("Something went wrong. Exiting.");
@@ -561,7 +594,7 @@ public class SlaveControler implements IterationStartsListener, StartupListener,
     }
 
     private void transmitScores() throws IOException {
-        writer.writeObject(new SlaveScoreStatsCalculator().calculateScoreStats(scenario.getPopulation()));
+        writer.writeDoubles(new SlaveScoreStatsCalculator().calculateScoreStats(scenario.getPopulation()));
     }
 
     private void slaveIsOKForNextIter() throws IOException {
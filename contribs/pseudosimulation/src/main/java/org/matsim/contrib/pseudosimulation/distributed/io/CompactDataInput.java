@@ -0,0 +1,69 @@
+package org.matsim.contrib.pseudosimulation.distributed.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counterpart of {@link CompactDataOutput}; keeps the same id dictionary as the writing side.
+ */
+public class CompactDataInput extends DataInputStream {
+    private final List<String> dictionary = new ArrayList<>();
+
+    public CompactDataInput(InputStream in) {
+        super(in);
+    }
+
+    public int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new StreamCorruptedException("Malformed variable-length int");
+    }
+
+    public String readId() throws IOException {
+        int code = readVarInt();
+        switch (code) {
+            case CompactDataOutput.NULL_ID:
+                return null;
+            case CompactDataOutput.NEW_ID:
+                String id = readUTF();
+                dictionary.add(id);
+                return id;
+            default:
+                return dictionary.get(code - CompactDataOutput.FIRST_INDEX);
+        }
+    }
+
+    public String readString() throws IOException {
+        return readBoolean() ? readUTF() : null;
+    }
+
+    public Double readNullableDouble() throws IOException {
+        return readBoolean() ? readDouble() : null;
+    }
+
+    public double[] readDoubles() throws IOException {
+        double[] values = new double[readVarInt()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = readDouble();
+        return values;
+    }
+
+    public Object readSerializedObject() throws IOException, ClassNotFoundException {
+        byte[] bytes = new byte[readInt()];
+        readFully(bytes);
+        try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return objectIn.readObject();
+        }
+    }
+}
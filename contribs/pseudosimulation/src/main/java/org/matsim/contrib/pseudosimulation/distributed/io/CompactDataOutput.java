@@ -0,0 +1,87 @@
+package org.matsim.contrib.pseudosimulation.distributed.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary output for the master/slave communication. On top of {@link DataOutputStream} it writes
+ * variable-length ints and dictionary-encoded ids: the first occurrence of an id string is written in full,
+ * every later one as its index. The dictionary lives as long as the stream, so ids (person, link, activity type,
+ * mode...) are transmitted only once per connection. Must be read by a {@link CompactDataInput}.
+ */
+public class CompactDataOutput extends DataOutputStream {
+    static final int NULL_ID = 0;
+    static final int NEW_ID = 1;
+    static final int FIRST_INDEX = 2;
+
+    private final Map<String, Integer> dictionary = new HashMap<>();
+
+    public CompactDataOutput(OutputStream out) {
+        super(out);
+    }
+
+    /**
+     * Unsigned LEB128, i.e. one byte for values below 128. Negative values take five bytes.
+     */
+    public void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        write(value);
+    }
+
+    public void writeId(String id) throws IOException {
+        if (id == null) {
+            writeVarInt(NULL_ID);
+            return;
+        }
+        Integer index = dictionary.get(id);
+        if (index == null) {
+            dictionary.put(id, dictionary.size());
+            writeVarInt(NEW_ID);
+            writeUTF(id);
+        } else {
+            writeVarInt(FIRST_INDEX + index);
+        }
+    }
+
+    /**
+     * For strings that rarely repeat (route descriptions, genomes), so they are not put into the dictionary.
+     */
+    public void writeString(String s) throws IOException {
+        writeBoolean(s != null);
+        if (s != null)
+            writeUTF(s);
+    }
+
+    public void writeNullableDouble(Double d) throws IOException {
+        writeBoolean(d != null);
+        if (d != null)
+            writeDouble(d);
+    }
+
+    public void writeDoubles(double[] values) throws IOException {
+        writeVarInt(values.length);
+        for (double value : values)
+            writeDouble(value);
+    }
+
+    /**
+     * Fallback for objects without a binary encoding: java-serialized into a length-prefixed block.
+     */
+    public void writeSerializedObject(Serializable object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+            objectOut.writeObject(object);
+        }
+        writeInt(bytes.size());
+        bytes.writeTo(this);
+    }
+}
@@ -0,0 +1,199 @@
+package org.matsim.contrib.pseudosimulation.distributed.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A control connection between master and slave plus optional data connections. Control messages use only the
+ * control connection (index 0). Bulk transfers (persons, plans) are split over all connections and encoded/decoded
+ * by one thread per connection. Records are streamed, so the receiver decodes while the sender is still encoding.
+ * <p>
+ * Each connection has its own {@link CompactDataOutput}/{@link CompactDataInput} pair, thus its own id dictionary.
+ */
+public class ParallelConnections implements Closeable {
+    public interface RecordWriter<T> {
+        void write(T record, CompactDataOutput out) throws IOException;
+    }
+
+    public interface RecordReader<T> {
+        T read(CompactDataInput in) throws IOException;
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final List<Socket> sockets = new ArrayList<>();
+    private final List<CompactDataOutput> outputs = new ArrayList<>();
+    private final List<CompactDataInput> inputs = new ArrayList<>();
+    private ExecutorService executor;
+
+    public ParallelConnections(Socket controlSocket) throws IOException {
+        add(controlSocket);
+    }
+
+    private void add(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        sockets.add(socket);
+        outputs.add(new CompactDataOutput(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE)));
+        inputs.add(new CompactDataInput(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE)));
+    }
+
+    public CompactDataOutput getControlOutput() {
+        return outputs.get(0);
+    }
+
+    public CompactDataInput getControlInput() {
+        return inputs.get(0);
+    }
+
+    public int size() {
+        return sockets.size();
+    }
+
+    /**
+     * Master side. Tells the other side how many data connections to open and on which (ephemeral) port, then
+     * waits for all of them. Has to be matched by {@link #connectDataConnections(String)}.
+     */
+    public void acceptDataConnections(int count) throws IOException {
+        CompactDataOutput out = getControlOutput();
+        out.writeInt(count);
+        if (count <= 0) {
+            out.flush();
+            return;
+        }
+        Socket[] dataSockets = new Socket[count];
+        try (ServerSocket server = new ServerSocket(0)) {
+            out.writeInt(server.getLocalPort());
+            out.flush();
+            for (int i = 0; i < count; i++) {
+                Socket socket = server.accept();
+                // the other side announces the index, so the order of accepting does not matter
+                dataSockets[new CompactDataInput(socket.getInputStream()).readInt()] = socket;
+            }
+        }
+        for (Socket socket : dataSockets)
+            add(socket);
+    }
+
+    /**
+     * Slave side of {@link #acceptDataConnections(int)}.
+     */
+    public void connectDataConnections(String host) throws IOException {
+        CompactDataInput in = getControlInput();
+        int count = in.readInt();
+        if (count <= 0)
+            return;
+        int port = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Socket socket = new Socket(host, port);
+            CompactDataOutput out = new CompactDataOutput(socket.getOutputStream());
+            out.writeInt(i);
+            out.flush();
+            add(socket);
+        }
+    }
+
+    /**
+     * Splits the records into contiguous chunks, one per connection, and writes them in parallel. Each chunk is
+     * preceded by its size and flushed at the end.
+     */
+    public <T> void send(final List<T> records, final RecordWriter<T> writer) throws IOException {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < size(); i++) {
+            final List<T> chunk = records.subList((int) ((long) i * records.size() / size()),
+                    (int) ((long) (i + 1) * records.size() / size()));
+            final CompactDataOutput out = outputs.get(i);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    out.writeVarInt(chunk.size());
+                    for (T record : chunk)
+                        writer.write(record, out);
+                    out.flush();
+                    return null;
+                }
+            });
+        }
+        runAll(tasks);
+    }
+
+    /**
+     * Reads what {@link #send(List, RecordWriter)} has written on the other side, preserving the order of records.
+     */
+    public <T> List<T> receive(final RecordReader<T> reader) throws IOException {
+        final List<List<T>> chunks = new ArrayList<>();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < size(); i++) {
+            final List<T> chunk = new ArrayList<>();
+            chunks.add(chunk);
+            final CompactDataInput in = inputs.get(i);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    int count = in.readVarInt();
+                    for (int j = 0; j < count; j++)
+                        chunk.add(reader.read(in));
+                    return null;
+                }
+            });
+        }
+        runAll(tasks);
+
+        List<T> records = new ArrayList<>();
+        for (List<T> chunk : chunks)
+            records.addAll(chunk);
+        return records;
+    }
+
+    private void runAll(List<Callable<Void>> tasks) throws IOException {
+        try {
+            if (tasks.size() == 1) {
+                tasks.get(0).call();
+                return;
+            }
+            for (Future<Void> future : getExecutor().invokeAll(tasks))
+                future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(size(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "transfer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (executor != null)
+            executor.shutdown();
+        for (Socket socket : sockets)
+            socket.close();
+    }
+}
@@ -8,7 +8,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CountDownLatch;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Coord;
@@ -32,10 +32,13 @@ import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
 import org.matsim.core.config.groups.PlansCalcRouteConfigGroup;
 import org.matsim.core.mobsim.framework.Mobsim;
 import org.matsim.core.mobsim.qsim.pt.TransitVehicle;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.GenericRouteImpl;
 import org.matsim.core.population.routes.NetworkRoute;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.core.utils.collections.Tuple;
 import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.core.utils.misc.Time;
 import org.matsim.pt.PtConstants;
 import org.matsim.pt.routes.ExperimentalTransitRoute;
 import org.matsim.pt.transitSchedule.TransitRouteImpl;
@@ -57,6 +60,9 @@ import org.matsim.withinday.replanning.identifiers.filter.TransportModeFilterFac
  * @author fouriep, sergioo
  *         <p></p>
  *         Extended for transit simulation.
+ *         <p></p>
+ *         With a {@link PSimPlanHandler}, no events are sent to the events manager; the executed activities and legs
+ *         and the person events of each plan are passed to the handler instead.
  */
 public class PSim implements Mobsim {
 
@@ -71,7 +77,7 @@ public class PSim implements Mobsim {
     private final double beelineDistanceFactor;
     private TransitPerformance transitPerformance;
     private boolean isUseTransit;
-    AtomicInteger numThreads;
+    private PSimPlanHandler planHandler;
 
     private final double walkSpeed;
 
@@ -113,6 +119,15 @@ public class PSim implements Mobsim {
 
     }
 
+    /**
+     * Event-free mode: instead of generating events for the events manager, the executed plans are passed to the
+     * handler. Only for runs where nothing but scoring relies on the events of PSim iterations (e.g. no road pricing).
+     * The travel time calculators of PSim ignore PSim events anyway.
+     */
+    public void setPlanHandler(PSimPlanHandler planHandler) {
+        this.planHandler = planHandler;
+    }
+
     @Override
     public void run() {
 
@@ -124,24 +139,28 @@ public class PSim implements Mobsim {
          * split collection in approx even segments
 		 */
         int n = Math.min(plans.size(), threads.length);
+        if (n == 0)
+            return;
         List<Plan>[] segments = CollectionUtils.split(plans, n);
 		/*
 		 * submit tasks
 		 */
-        numThreads = new AtomicInteger(threads.length);
+        CountDownLatch latch = new CountDownLatch(segments.length);
         for (int i = 0; i < segments.length; i++) {
-            threads[i].init(segments[i], network, eventManager);
+            threads[i].init(segments[i], network, eventManager, latch);
             new Thread(threads[i]).start();
         }
 		/*
 		 * wait for threads
 		 */
-        while (numThreads.get() > 0) {
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        for (int i = 0; i < segments.length; i++) {
+            if (threads[i].failure != null)
+                throw new RuntimeException("PSim thread failed", threads[i].failure);
         }
     }
 
@@ -153,17 +172,38 @@ public class PSim implements Mobsim {
 
         private Network network;
 
-        public void init(Collection<Plan> plans, Network network, EventsManager eventManager) {
+        private CountDownLatch latch;
+
+        private volatile RuntimeException failure;
+
+        public void init(Collection<Plan> plans, Network network, EventsManager eventManager, CountDownLatch latch) {
             this.threadPlans = plans;
             this.network = network;
             this.eventManager = eventManager;
+            this.latch = latch;
+            this.failure = null;
         }
 
         @Override
         public void run() {
+            try {
+                simulatePlans();
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                latch.countDown();
+            }
+        }
+
+        private void simulatePlans() {
             PLANS:
             for (Plan plan : threadPlans) {
-                Queue<Event> eventQueue = new LinkedList<>();
+                Queue<Event> eventQueue = new LinkedList<Event>();
+                // event-free: link events are left out, they are not passed to scoring functions anyway
+                Queue<Event> linkEventQueue = planHandler == null ? eventQueue : null;
+                PSimPlanHandler.PlanExecution execution = planHandler == null ? null : planHandler.startPlan(plan);
+                boolean stuck = false;
+                Activity startedActivity = null;
                 Id personId = plan.getPerson().getId();
                 List<PlanElement> elements = plan.getPlanElements();
 
@@ -171,6 +211,7 @@ public class PSim implements Mobsim {
                 LEGS:
                 for (int idx = 0; idx < elements.size(); idx += 2) {
                     Activity act = (Activity) elements.get(idx);
+                    double actStartTime = Time.UNDEFINED_TIME;
 					/*
 					 * Make sure that the activity does not end before the
 					 * previous activity.
@@ -186,14 +227,15 @@ public class PSim implements Mobsim {
                         Leg prevLeg = (Leg) elements.get(idx - 1);
                         Activity prevAct = (Activity) elements.get(idx - 2);
                         double travelTime = 0.0;
+                        Route executedRoute = prevLeg.getRoute();
                         if (prevLeg.getMode().equals(TransportMode.car)) {
                             try {
-                                eventQueue.add(new PersonEntersVehicleEvent(prevEndTime, personId, personId));
-                                eventQueue.add(new VehicleEntersTrafficEvent(prevEndTime,personId, prevLeg.getRoute().getStartLinkId(),personId, TransportMode.car,1.0));
                                 NetworkRoute croute = (NetworkRoute) prevLeg.getRoute();
+                                eventQueue.add(new PersonEntersVehicleEvent(prevEndTime, personId, personId));
+                                eventQueue.add(new VehicleEntersTrafficEvent(prevEndTime, personId, croute.getStartLinkId(), personId, TransportMode.car, 1.0));
 
-                                travelTime = calcRouteTravelTime(croute, prevEndTime, carLinkTravelTimes, network, eventQueue, personId);
-                                eventQueue.add(new VehicleLeavesTrafficEvent(prevEndTime + travelTime,personId, prevLeg.getRoute().getEndLinkId(),personId, TransportMode.car,1.0));
+                                travelTime = calcRouteTravelTime(croute, prevEndTime, carLinkTravelTimes, network, linkEventQueue, personId);
+                                eventQueue.add(new VehicleLeavesTrafficEvent(prevEndTime + travelTime, personId, croute.getEndLinkId(), personId, TransportMode.car, 1.0));
                                 eventQueue.add(new PersonLeavesVehicleEvent(prevEndTime + travelTime, personId, personId));
                             } catch (NullPointerException ne) {
                                 Logger.getLogger(this.getClass()).error("No route for car leg. Continuing with next leg");
@@ -203,6 +245,11 @@ public class PSim implements Mobsim {
                             TransitWalkTimeAndDistance tnd = new TransitWalkTimeAndDistance(act.getCoord(), prevAct.getCoord());
                             travelTime = tnd.time;
                             eventQueue.add(new TeleportationArrivalEvent(prevEndTime + tnd.time, personId, tnd.distance));
+                            if (execution != null) {
+                                executedRoute = new GenericRouteImpl(prevAct.getLinkId(), act.getLinkId());
+                                executedRoute.setDistance(tnd.distance);
+                                executedRoute.setTravelTime(tnd.time);
+                            }
                         } else if (prevLeg.getMode().equals(TransportMode.pt)) {
                             if (isUseTransit) {
                                 ExperimentalTransitRoute route = (ExperimentalTransitRoute) prevLeg.getRoute();
@@ -249,6 +296,7 @@ public class PSim implements Mobsim {
                         if (Double.isInfinite(actEndTime)) {
                             if(transitPerformance!=null){
                                 //this guy is stuck, will be caught in events handling outside the loop
+                                stuck = true;
                                 break;
                             }else
                                 throw new RuntimeException("I think this is discuraged.");
@@ -260,6 +308,14 @@ public class PSim implements Mobsim {
                         eventQueue.add(arrivalEvent);
                         ActivityStartEvent startEvent = new ActivityStartEvent(arrivalTime, personId, act.getLinkId(), act.getFacilityId(), act.getType());
                         eventQueue.add(startEvent);
+                        if (execution != null) {
+                            if (arrivalTime > endTime) {
+                                stuck = true;
+                                break;
+                            }
+                            execution.handleLeg(createExecutedLeg(prevLeg.getMode(), prevEndTime, travelTime, executedRoute));
+                        }
+                        actStartTime = arrivalTime;
                     }
 
                     if (idx < elements.size() - 1) {
@@ -273,10 +329,36 @@ public class PSim implements Mobsim {
                         PersonDepartureEvent departureEvent = new PersonDepartureEvent(actEndTime, personId, act.getLinkId(), nextLeg.getMode());
 
                         eventQueue.add(departureEvent);
+                        if (execution != null) {
+                            if (actEndTime > endTime) {
+                                // like an activity that has been started, but not ended by the end of the events
+                                if (idx > 0)
+                                    startedActivity = createExecutedActivity(act, actStartTime, Time.UNDEFINED_TIME);
+                                stuck = true;
+                                break;
+                            }
+                            execution.handleActivity(createExecutedActivity(act, actStartTime, actEndTime));
+                        }
+                    } else if (execution != null && idx > 0) {
+                        execution.handleActivity(createExecutedActivity(act, actStartTime, Time.UNDEFINED_TIME));
                     }
 
                     prevEndTime = actEndTime;
                 }
+                if (execution != null) {
+                    for (Event event : eventQueue) {
+                        if (event.getTime() > endTime)
+                            break;
+                        execution.handleEvent(event);
+                    }
+                    if (stuck) {
+                        execution.agentStuck(endTime);
+                        if (startedActivity != null)
+                            execution.handleActivity(startedActivity);
+                    }
+                    execution.finish();
+                    continue;
+                }
                 for (Event event : eventQueue) {
                     if (event.getTime() > endTime) {
                         eventManager.processEvent(new PersonStuckEvent(endTime, personId, null, null));
@@ -285,8 +367,23 @@ public class PSim implements Mobsim {
                     eventManager.processEvent(event);
                 }
             }
+        }
+
+        private Activity createExecutedActivity(Activity plannedActivity, double startTime, double endTime) {
+            Activity activity = PopulationUtils.createActivityFromLinkId(plannedActivity.getType(), plannedActivity.getLinkId());
+            activity.setFacilityId(plannedActivity.getFacilityId());
+            activity.setCoord(plannedActivity.getCoord());
+            activity.setStartTime(startTime);
+            activity.setEndTime(endTime);
+            return activity;
+        }
 
-            numThreads.decrementAndGet();
+        private Leg createExecutedLeg(String mode, double departureTime, double travelTime, Route route) {
+            Leg leg = PopulationUtils.createLeg(mode);
+            leg.setDepartureTime(departureTime);
+            leg.setTravelTime(travelTime);
+            leg.setRoute(route);
+            return leg;
         }
 
         private double findTransitTravelTime(ExperimentalTransitRoute route, double prevEndTime) {
@@ -342,9 +439,9 @@ public class PSim implements Mobsim {
             if (route.getStartLinkId() != route.getEndLinkId()) {
                 Id<Link> startLink = route.getStartLinkId();
                 double linkEnterTime = startTime;
-                LinkEnterEvent linkEnterEvent = null;
-                LinkLeaveEvent linkLeaveEvent = new LinkLeaveEvent(++linkEnterTime, agentId, startLink);
-                eventQueue.add(linkLeaveEvent);
+                ++linkEnterTime;
+                if (eventQueue != null)
+                    eventQueue.add(new LinkLeaveEvent(linkEnterTime, agentId, startLink));
                 double linkLeaveTime = linkEnterTime;
                 List<Id<Link>> routeLinkIds = route.getLinkIds();
                 for (Id<Link> routeLinkId : routeLinkIds) {
@@ -352,20 +449,20 @@ public class PSim implements Mobsim {
                         int mmm = 0;
                     }
                     linkEnterTime = linkLeaveTime;
-                    linkEnterEvent = new LinkEnterEvent(linkEnterTime, agentId, routeLinkId);
-                    eventQueue.add(linkEnterEvent);
+                    if (eventQueue != null)
+                        eventQueue.add(new LinkEnterEvent(linkEnterTime, agentId, routeLinkId));
 
                     double linkTime = travelTime.getLinkTravelTime(network.getLinks().get(routeLinkId), linkEnterTime, null, null);
                     tt += Math.max(linkTime, 1.0);
 
                     linkLeaveTime = Math.max(linkEnterTime + 1, linkEnterTime + linkTime);
-                    linkLeaveEvent = new LinkLeaveEvent(linkLeaveTime, agentId, routeLinkId);
-                    eventQueue.add(linkLeaveEvent);
+                    if (eventQueue != null)
+                        eventQueue.add(new LinkLeaveEvent(linkLeaveTime, agentId, routeLinkId));
                 }
                 tt = linkLeaveTime - startTime;
             }
-            LinkEnterEvent linkEnterEvent = new LinkEnterEvent(startTime + tt, agentId, route.getEndLinkId());
-            eventQueue.add(linkEnterEvent);
+            if (eventQueue != null)
+                eventQueue.add(new LinkEnterEvent(startTime + tt, agentId, route.getEndLinkId()));
             return tt + travelTime.getLinkTravelTime(network.getLinks().get(route.getEndLinkId()), tt + startTime, null, null);
         }
 
@@ -27,6 +27,7 @@ public class PSimFactory implements Provider<Mobsim>, MobsimFactory {
     private WaitTime waitTime;
     private StopStopTime stopStopTime;
     private TransitPerformance transitPerformance;
+    private PSimPlanHandler planHandler;
     private final Scenario scenario;
     private final EventsManager eventsManager;
 
@@ -41,12 +42,15 @@ public class PSimFactory implements Provider<Mobsim>, MobsimFactory {
 //			eventsManager.resetHandlers(iteration++);
 //		else
 //			iteration++;
+        PSim pSim;
         if (waitTime != null) {
-            return new PSim(scenario, eventsManager, plans, travelTime, waitTime, stopStopTime, transitPerformance);
+            pSim = new PSim(scenario, eventsManager, plans, travelTime, waitTime, stopStopTime, transitPerformance);
 
         } else {
-            return new PSim(scenario, eventsManager, plans, travelTime);
+            pSim = new PSim(scenario, eventsManager, plans, travelTime);
         }
+        pSim.setPlanHandler(planHandler);
+        return pSim;
     }
 
     public void setPlans(Collection<Plan> plans) {
@@ -69,6 +73,13 @@ public class PSimFactory implements Provider<Mobsim>, MobsimFactory {
         this.transitPerformance = transitPerformance;
     }
 
+    /**
+     * @see PSim#setPlanHandler(PSimPlanHandler)
+     */
+    public void setPlanHandler(PSimPlanHandler planHandler) {
+        this.planHandler = planHandler;
+    }
+
     public void setTimes(TravelTime travelTime, WaitTime waitTime, StopStopTime stopStopTime) {
         this.travelTime = travelTime;
         this.waitTime = waitTime;
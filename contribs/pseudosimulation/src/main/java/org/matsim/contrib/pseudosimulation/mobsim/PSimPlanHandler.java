@@ -0,0 +1,41 @@
+package org.matsim.contrib.pseudosimulation.mobsim;
+
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Plan;
+
+/**
+ * Receives the plans executed by {@link PSim} directly instead of as events, see
+ * {@link PSim#setPlanHandler(PSimPlanHandler)}. {@link #startPlan(Plan)} is called concurrently by the PSim threads,
+ * each returned {@link PlanExecution} only by the thread that executes the plan.
+ */
+public interface PSimPlanHandler {
+
+    PlanExecution startPlan(Plan plan);
+
+    /**
+     * The activities and legs as executed, in chronological order, i.e. with the times at which events would have
+     * been generated. The first activity has no start time, the last one no end time.
+     */
+    interface PlanExecution {
+        void handleActivity(Activity activity);
+
+        void handleLeg(Leg leg);
+
+        /**
+         * The person events (i.e. without link events) that would have been sent to the events manager up to the end
+         * of the simulation, in chronological order, after the activities and legs. Scoring functions use them e.g.
+         * for the waiting time of pt legs.
+         */
+        void handleEvent(Event event);
+
+        /**
+         * Called instead of the remaining activities and legs if the plan does not finish before the end of the
+         * simulation. An activity started, but not ended before, follows afterwards without end time.
+         */
+        void agentStuck(double time);
+
+        void finish();
+    }
+}
@@ -0,0 +1,114 @@
+package org.matsim.contrib.pseudosimulation.mobsim;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.controler.events.BeforeMobsimEvent;
+import org.matsim.core.controler.events.ScoringEvent;
+import org.matsim.core.controler.listener.BeforeMobsimListener;
+import org.matsim.core.controler.listener.ScoringListener;
+import org.matsim.core.scoring.ScoringFunction;
+import org.matsim.core.scoring.ScoringFunctionFactory;
+
+/**
+ * Scores the plans executed by an event-free {@link PSim}: activities and legs go directly into one scoring function
+ * per plan, inside the PSim threads. Has to be added as controler listener and set as plan handler of the
+ * {@link PSimFactory}.
+ * <p></p>
+ * The regular scoring sees no events for these plans, so its result is overwritten here afterwards (non-core scoring
+ * listeners are called after the core ones). The new score is averaged with the score before the mobsim using the
+ * learning rate; score MSA is not supported.
+ * <p></p>
+ * The scores are the same as those of the regular scoring if PSim generated events: the scoring functions get the
+ * same activities, legs and person events.
+ */
+public class PSimScoring implements PSimPlanHandler, BeforeMobsimListener, ScoringListener {
+    private static class PlanScore {
+        private final Double scoreBeforeMobsim;
+        private final double executedScore;
+
+        private PlanScore(Double scoreBeforeMobsim, double executedScore) {
+            this.scoreBeforeMobsim = scoreBeforeMobsim;
+            this.executedScore = executedScore;
+        }
+    }
+
+    private final double learningRate;
+    private final Map<Plan, PlanScore> executedPlans = new ConcurrentHashMap<>();
+    private ScoringFunctionFactory scoringFunctionFactory;
+
+    public PSimScoring(PlanCalcScoreConfigGroup planCalcScoreConfigGroup) {
+        if (planCalcScoreConfigGroup.getFractionOfIterationsToStartScoreMSA() != null)
+            throw new RuntimeException("Event-free PSim scoring does not support score MSA, but "
+                    + "fractionOfIterationsToStartScoreMSA is set in planCalcScore. Unset it or use PSim with events.");
+        this.learningRate = planCalcScoreConfigGroup.getLearningRate();
+    }
+
+    @Override
+    public void notifyBeforeMobsim(BeforeMobsimEvent event) {
+        startMobsim(event.getServices().getScoringFunctionFactory());
+    }
+
+    void startMobsim(ScoringFunctionFactory scoringFunctionFactory) {
+        this.scoringFunctionFactory = scoringFunctionFactory;
+        executedPlans.clear();
+    }
+
+    @Override
+    public PlanExecution startPlan(final Plan plan) {
+        final Double scoreBeforeMobsim = plan.getScore();
+        final ScoringFunction scoringFunction;
+        // scoring parameters are typically cached lazily, without synchronisation
+        synchronized (this) {
+            scoringFunction = scoringFunctionFactory.createNewScoringFunction(plan.getPerson());
+        }
+        return new PlanExecution() {
+            @Override
+            public void handleActivity(Activity activity) {
+                scoringFunction.handleActivity(activity);
+            }
+
+            @Override
+            public void handleLeg(Leg leg) {
+                scoringFunction.handleLeg(leg);
+            }
+
+            @Override
+            public void handleEvent(Event event) {
+                scoringFunction.handleEvent(event);
+            }
+
+            @Override
+            public void agentStuck(double time) {
+                scoringFunction.agentStuck(time);
+            }
+
+            @Override
+            public void finish() {
+                scoringFunction.finish();
+                executedPlans.put(plan, new PlanScore(scoreBeforeMobsim, scoringFunction.getScore()));
+            }
+        };
+    }
+
+    @Override
+    public void notifyScoring(ScoringEvent event) {
+        if (executedPlans.isEmpty())
+            return;
+        Logger.getLogger(getClass()).info("Assigning scores to " + executedPlans.size() + " plans executed by PSim.");
+        for (Map.Entry<Plan, PlanScore> entry : executedPlans.entrySet()) {
+            PlanScore planScore = entry.getValue();
+            if (planScore.scoreBeforeMobsim == null)
+                entry.getKey().setScore(planScore.executedScore);
+            else
+                entry.getKey().setScore(learningRate * planScore.executedScore + (1 - learningRate) * planScore.scoreBeforeMobsim);
+        }
+        executedPlans.clear();
+    }
+}
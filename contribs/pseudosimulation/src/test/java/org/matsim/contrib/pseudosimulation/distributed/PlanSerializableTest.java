@@ -0,0 +1,215 @@
+package org.matsim.contrib.pseudosimulation.distributed;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.contrib.pseudosimulation.distributed.io.CompactDataInput;
+import org.matsim.contrib.pseudosimulation.distributed.io.CompactDataOutput;
+import org.matsim.contrib.pseudosimulation.distributed.plans.PlanGenome;
+import org.matsim.contrib.pseudosimulation.distributed.scoring.PlanScoreComponent;
+import org.matsim.contrib.pseudosimulation.distributed.scoring.ScoreComponentType;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.GenericRouteImpl;
+import org.matsim.core.population.routes.LinkNetworkRouteImpl;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.vehicles.Vehicle;
+
+public class PlanSerializableTest {
+
+    @Test
+    public void testPlanRoundTrip() throws IOException {
+        Person person = PopulationUtils.getFactory().createPerson(Id.createPersonId("p"));
+        PlanGenome plan = new PlanGenome(person);
+        fillPlan(plan, true);
+        plan.setScore(12.5);
+        plan.setType("work");
+        plan.setGenome("RM");
+        plan.setpSimScore(11.);
+        plan.addScoreComponent(ScoreComponentType.Activity, 10., "home");
+        plan.addScoreComponent(ScoreComponentType.Leg, -2., TransportMode.car);
+        person.addPlan(plan);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CompactDataOutput out = new CompactDataOutput(bytes);
+        new PlanSerializable(plan).write(out);
+        out.flush();
+
+        PlanSerializable received = new PlanSerializable(input(bytes));
+        Assert.assertEquals("p", received.getPersonId());
+        PlanGenome receivedPlan = (PlanGenome)received.getPlan(person);
+        assertPlanEquals(plan, receivedPlan);
+        Assert.assertEquals("RM", receivedPlan.getGenome());
+        Assert.assertEquals(11., receivedPlan.getpSimScore(), 0.);
+        List<PlanScoreComponent> components = receivedPlan.getAltScoreComponents();
+        Assert.assertEquals(2, components.size());
+        Assert.assertEquals(ScoreComponentType.Leg, components.get(1).getType());
+        Assert.assertEquals(-2., components.get(1).getScore(), 0.);
+        Assert.assertEquals(TransportMode.car, components.get(1).getDescription());
+
+        // score updates of plans already transmitted
+        received.setScore(null);
+        Assert.assertNull(received.getPlan(person).getScore());
+        received.setScore(3.);
+        Assert.assertEquals(3., received.getPlan(person).getScore(), 0.);
+        Assert.assertEquals(3., ((PlanGenome)received.getPlan(person)).getpSimScore(), 0.);
+    }
+
+    @Test
+    public void testPersonsRoundTrip() throws IOException {
+        Person[] persons = new Person[3];
+        for (int i = 0; i < persons.length; i++) {
+            persons[i] = PopulationUtils.getFactory().createPerson(Id.createPersonId(i));
+            for (int j = 0; j <= i; j++) {
+                Plan plan = PopulationUtils.createPlan(persons[i]);
+                fillPlan(plan, j % 2 == 0);
+                plan.setScore(j == 1 ? null : Double.valueOf(i + j));
+                persons[i].addPlan(plan);
+            }
+        }
+        // the first plan added is selected unless another one is selected explicitly
+        persons[2].setSelectedPlan(persons[2].getPlans().get(1));
+
+        // one stream for all persons, so ids and types after the first person are sent as dictionary indices
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CompactDataOutput out = new CompactDataOutput(bytes);
+        int[] sizes = new int[persons.length];
+        int written = 0;
+        for (int i = 0; i < persons.length; i++) {
+            new PersonSerializable(persons[i]).write(out);
+            out.flush();
+            sizes[i] = bytes.size() - written;
+            written = bytes.size();
+        }
+        // the third person has three plans, the first one a single plan
+        Assert.assertTrue(sizes[2] < 3 * sizes[0]);
+
+        CompactDataInput in = input(bytes);
+        for (Person person : persons) {
+            Person received = new PersonSerializable(in).getPerson();
+            Assert.assertEquals(person.getId(), received.getId());
+            Assert.assertEquals(person.getPlans().size(), received.getPlans().size());
+            for (int j = 0; j < person.getPlans().size(); j++) {
+                assertPlanEquals(person.getPlans().get(j), received.getPlans().get(j));
+                Assert.assertSame(received, received.getPlans().get(j).getPerson());
+            }
+            int selectedIndex = person.getPlans().indexOf(person.getSelectedPlan());
+            Assert.assertEquals(selectedIndex, received.getPlans().indexOf(received.getSelectedPlan()));
+        }
+        Assert.assertEquals(-1, in.read());
+    }
+
+    // home (coord and link) - car (network route) - work (link and facility) - walk (generic route) - shop (coord
+    // only) - pt (generic route with description) - transit_walk (no route) - home
+    private static void fillPlan(Plan plan, boolean withVehicle) {
+        Activity home = PopulationUtils.createActivityFromCoordAndLinkId("home", new Coord(1, 2), Id.createLinkId("1"));
+        home.setEndTime(7 * 3600);
+        plan.addActivity(home);
+
+        Leg car = PopulationUtils.createLeg(TransportMode.car);
+        car.setDepartureTime(7 * 3600);
+        car.setTravelTime(600);
+        NetworkRoute networkRoute = new LinkNetworkRouteImpl(Id.createLinkId("1"), Id.createLinkId("4"));
+        networkRoute.setLinkIds(Id.createLinkId("1"), Arrays.asList(Id.createLinkId("2"), Id.createLinkId("3")),
+                Id.createLinkId("4"));
+        networkRoute.setDistance(3000);
+        networkRoute.setTravelTime(600);
+        networkRoute.setTravelCost(1.5);
+        networkRoute.setVehicleId(withVehicle ? Id.create("v", Vehicle.class) : null);
+        car.setRoute(networkRoute);
+        plan.addLeg(car);
+
+        Activity work = PopulationUtils.createActivityFromLinkId("work", Id.createLinkId("4"));
+        work.setFacilityId(Id.create("f", ActivityFacility.class));
+        work.setStartTime(7 * 3600 + 600);
+        work.setMaximumDuration(8 * 3600);
+        plan.addActivity(work);
+
+        Leg walk = PopulationUtils.createLeg(TransportMode.walk);
+        Route walkRoute = new GenericRouteImpl(Id.createLinkId("4"), Id.createLinkId("5"));
+        walkRoute.setDistance(200);
+        walkRoute.setTravelTime(150);
+        walk.setRoute(walkRoute);
+        plan.addLeg(walk);
+
+        Activity shop = PopulationUtils.createActivityFromCoord("shop", new Coord(3, 4));
+        shop.setEndTime(17 * 3600);
+        plan.addActivity(shop);
+
+        Leg pt = PopulationUtils.createLeg(TransportMode.pt);
+        Route ptRoute = new GenericRouteImpl(Id.createLinkId("5"), Id.createLinkId("1"));
+        ptRoute.setRouteDescription("PT1===5===line===route===1");
+        pt.setRoute(ptRoute);
+        plan.addLeg(pt);
+
+        plan.addLeg(PopulationUtils.createLeg(TransportMode.transit_walk));
+        plan.addActivity(PopulationUtils.createActivityFromCoordAndLinkId("home", new Coord(1, 2), Id.createLinkId("1")));
+    }
+
+    private static void assertPlanEquals(Plan expected, Plan actual) {
+        Assert.assertEquals(expected.getScore(), actual.getScore());
+        Assert.assertEquals(expected.getType(), actual.getType());
+        Assert.assertEquals(expected.getPlanElements().size(), actual.getPlanElements().size());
+        for (int i = 0; i < expected.getPlanElements().size(); i++) {
+            PlanElement e = expected.getPlanElements().get(i);
+            PlanElement a = actual.getPlanElements().get(i);
+            if (e instanceof Activity) {
+                Activity ea = (Activity)e;
+                Activity aa = (Activity)a;
+                Assert.assertEquals(ea.getType(), aa.getType());
+                Assert.assertEquals(ea.getCoord(), aa.getCoord());
+                Assert.assertEquals(ea.getLinkId(), aa.getLinkId());
+                Assert.assertEquals(ea.getFacilityId(), aa.getFacilityId());
+                Assert.assertEquals(ea.getStartTime(), aa.getStartTime(), 0.);
+                Assert.assertEquals(ea.getEndTime(), aa.getEndTime(), 0.);
+                Assert.assertEquals(ea.getMaximumDuration(), aa.getMaximumDuration(), 0.);
+            } else {
+                Leg el = (Leg)e;
+                Leg al = (Leg)a;
+                Assert.assertEquals(el.getMode(), al.getMode());
+                Assert.assertEquals(el.getDepartureTime(), al.getDepartureTime(), 0.);
+                Assert.assertEquals(el.getTravelTime(), al.getTravelTime(), 0.);
+                assertRouteEquals(el.getRoute(), al.getRoute());
+            }
+        }
+    }
+
+    private static void assertRouteEquals(Route expected, Route actual) {
+        if (expected == null) {
+            Assert.assertNull(actual);
+            return;
+        }
+        Assert.assertEquals(expected.getStartLinkId(), actual.getStartLinkId());
+        Assert.assertEquals(expected.getEndLinkId(), actual.getEndLinkId());
+        Assert.assertEquals(expected.getDistance(), actual.getDistance(), 0.);
+        Assert.assertEquals(expected.getTravelTime(), actual.getTravelTime(), 0.);
+        if (expected instanceof NetworkRoute) {
+            NetworkRoute en = (NetworkRoute)expected;
+            NetworkRoute an = (NetworkRoute)actual;
+            Assert.assertEquals(en.getLinkIds(), an.getLinkIds());
+            Assert.assertEquals(en.getVehicleId(), an.getVehicleId());
+            Assert.assertEquals(en.getTravelCost(), an.getTravelCost(), 0.);
+        } else {
+            Assert.assertEquals(expected.getRouteDescription(), actual.getRouteDescription());
+        }
+    }
+
+    private static CompactDataInput input(ByteArrayOutputStream bytes) {
+        return new CompactDataInput(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+}
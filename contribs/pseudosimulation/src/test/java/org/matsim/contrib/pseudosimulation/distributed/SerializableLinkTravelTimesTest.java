@@ -0,0 +1,113 @@
+package org.matsim.contrib.pseudosimulation.distributed;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.pseudosimulation.distributed.io.CompactDataInput;
+import org.matsim.contrib.pseudosimulation.distributed.io.CompactDataOutput;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+public class SerializableLinkTravelTimesTest {
+    private static final int BIN_SIZE = 900;
+    private static final double END_TIME = 24 * 3600;
+
+    private List<Link> links;
+
+    @Before
+    public void init() {
+        Network network = NetworkUtils.createNetwork();
+        Node a = NetworkUtils.createAndAddNode(network, Id.createNodeId("a"), new Coord(0, 0));
+        Node b = NetworkUtils.createAndAddNode(network, Id.createNodeId("b"), new Coord(100, 0));
+        for (int i = 0; i < 30; i++)
+            NetworkUtils.createAndAddLink(network, Id.createLinkId(i), a, b, 100 + i, 10, 1000, 1);
+        links = new ArrayList<>(network.getLinks().values());
+    }
+
+    @Test
+    public void testFullTableAndDeltas() throws IOException {
+        // every third link gets congested in the morning peak of the second iteration
+        SerializableLinkTravelTimes first = createTable(0, BIN_SIZE);
+        SerializableLinkTravelTimes second = createTable(1, BIN_SIZE);
+        SerializableLinkTravelTimes third = createTable(1, BIN_SIZE);// nothing changed
+        SerializableLinkTravelTimes otherBins = createTable(1, 2 * BIN_SIZE);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CompactDataOutput out = new CompactDataOutput(bytes);
+        int[] sizes = new int[4];
+        first.write(out, null);
+        out.flush();
+        sizes[0] = bytes.size();
+        second.write(out, first);
+        out.flush();
+        sizes[1] = bytes.size() - sizes[0];
+        third.write(out, second);
+        out.flush();
+        sizes[2] = bytes.size() - sizes[0] - sizes[1];
+        otherBins.write(out, third);// different layout, so written in full
+        out.flush();
+        sizes[3] = bytes.size() - sizes[0] - sizes[1] - sizes[2];
+
+        Assert.assertTrue(sizes[1] < sizes[0] / 5);
+        Assert.assertEquals(1 + links.size(), sizes[2]);// one (empty) changed-bin count per link
+        Assert.assertTrue(sizes[3] > sizes[0] / 3);
+
+        CompactDataInput in = new CompactDataInput(new ByteArrayInputStream(bytes.toByteArray()));
+        SerializableLinkTravelTimes firstReceived = SerializableLinkTravelTimes.read(in, null);
+        assertTravelTimesEqual(first, firstReceived, BIN_SIZE);
+
+        SerializableLinkTravelTimes secondReceived = SerializableLinkTravelTimes.read(in, firstReceived);
+        assertTravelTimesEqual(second, secondReceived, BIN_SIZE);
+        // the previous table is not changed
+        assertTravelTimesEqual(first, firstReceived, BIN_SIZE);
+        for (int i = 0; i < links.size(); i++) {
+            if (i % 3 == 0)
+                Assert.assertNotSame(firstReceived.getTimes()[i], secondReceived.getTimes()[i]);
+            else
+                Assert.assertSame(firstReceived.getTimes()[i], secondReceived.getTimes()[i]);
+        }
+
+        SerializableLinkTravelTimes thirdReceived = SerializableLinkTravelTimes.read(in, secondReceived);
+        assertTravelTimesEqual(third, thirdReceived, BIN_SIZE);
+        for (int i = 0; i < links.size(); i++)
+            Assert.assertSame(secondReceived.getTimes()[i], thirdReceived.getTimes()[i]);
+
+        SerializableLinkTravelTimes otherBinsReceived = SerializableLinkTravelTimes.read(in, thirdReceived);
+        assertTravelTimesEqual(otherBins, otherBinsReceived, 2 * BIN_SIZE);
+        Assert.assertEquals(-1, in.read());
+    }
+
+    private SerializableLinkTravelTimes createTable(final int iteration, int binSize) {
+        TravelTime travelTime = new TravelTime() {
+            @Override
+            public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
+                double freeSpeedTime = link.getLength() / link.getFreespeed();
+                boolean congested = iteration > 0 && links.indexOf(link) % 3 == 0 && time >= 7 * 3600
+                        && time < 9 * 3600;
+                return congested ? 3 * freeSpeedTime + time / 3600 : freeSpeedTime;
+            }
+        };
+        return new SerializableLinkTravelTimes(travelTime, binSize, END_TIME, links);
+    }
+
+    private void assertTravelTimesEqual(SerializableLinkTravelTimes expected, SerializableLinkTravelTimes actual,
+            int binSize) {
+        for (Link link : links)
+            for (double time = 0; time < END_TIME; time += binSize)
+                Assert.assertEquals(expected.getLinkTravelTime(link, time, null, null),
+                        actual.getLinkTravelTime(link, time, null, null), 0.);
+    }
+}
@@ -0,0 +1,94 @@
+package org.matsim.contrib.pseudosimulation.distributed.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompactDataStreamsTest {
+    private static final int[] VAR_INTS = { 0, 1, 127, 128, 300, 16383, 16384, Integer.MAX_VALUE, -1,
+            Integer.MIN_VALUE };
+
+    @Test
+    public void testVarInts() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CompactDataOutput out = new CompactDataOutput(bytes);
+        for (int value : VAR_INTS)
+            out.writeVarInt(value);
+        out.flush();
+        // 1 + 1 + 1 + 2 + 2 + 2 + 3 + 5 + 5 + 5 bytes
+        Assert.assertEquals(27, bytes.size());
+
+        CompactDataInput in = input(bytes);
+        for (int value : VAR_INTS)
+            Assert.assertEquals(value, in.readVarInt());
+        Assert.assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void testIdDictionary() throws IOException {
+        String[] ids = { "a", "b", null, "a", "a", "c", null, "b", "" };
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CompactDataOutput out = new CompactDataOutput(bytes);
+        int[] sizes = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            out.writeId(ids[i]);
+            out.flush();
+            sizes[i] = bytes.size();
+        }
+        // a repeated id is written as its index only
+        Assert.assertEquals(1, sizes[3] - sizes[2]);
+        Assert.assertEquals(1, sizes[4] - sizes[3]);
+        Assert.assertEquals(1, sizes[7] - sizes[6]);
+        // null is not put into the dictionary
+        Assert.assertEquals(1, sizes[2] - sizes[1]);
+
+        CompactDataInput in = input(bytes);
+        for (String id : ids)
+            Assert.assertEquals(id, in.readId());
+        Assert.assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void testNullableFieldsAndArrays() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CompactDataOutput out = new CompactDataOutput(bytes);
+        out.writeString(null);
+        out.writeString("route description");
+        out.writeString("");
+        out.writeNullableDouble(null);
+        out.writeNullableDouble(-12.5);
+        out.writeNullableDouble(Double.NaN);
+        out.writeDoubles(new double[0]);
+        out.writeDoubles(new double[] { 1, Double.NEGATIVE_INFINITY, 3.25 });
+        out.writeSerializedObject(new ArrayList<>(Arrays.asList("x", "y")));
+        out.writeInt(42);
+        out.flush();
+
+        CompactDataInput in = input(bytes);
+        Assert.assertNull(in.readString());
+        Assert.assertEquals("route description", in.readString());
+        Assert.assertEquals("", in.readString());
+        Assert.assertNull(in.readNullableDouble());
+        Assert.assertEquals(-12.5, in.readNullableDouble(), 0.);
+        Assert.assertTrue(Double.isNaN(in.readNullableDouble()));
+        Assert.assertEquals(0, in.readDoubles().length);
+        Assert.assertArrayEquals(new double[] { 1, Double.NEGATIVE_INFINITY, 3.25 }, in.readDoubles(), 0.);
+        try {
+            Assert.assertEquals(Arrays.asList("x", "y"), in.readSerializedObject());
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+        // the block is fully consumed
+        Assert.assertEquals(42, in.readInt());
+        Assert.assertEquals(-1, in.read());
+    }
+
+    private static CompactDataInput input(ByteArrayOutputStream bytes) {
+        return new CompactDataInput(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+}
@@ -0,0 +1,113 @@
+package org.matsim.contrib.pseudosimulation.distributed.io;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Master and slave side connected over loopback, with several connections per slave.
+ */
+public class ParallelConnectionsTest {
+    private static final int CONNECTIONS_PER_SLAVE = 3;
+
+    private static final ParallelConnections.RecordWriter<String> WRITER = new ParallelConnections.RecordWriter<String>() {
+        @Override
+        public void write(String record, CompactDataOutput out) throws IOException {
+            out.writeId(record);
+        }
+    };
+    private static final ParallelConnections.RecordReader<String> READER = new ParallelConnections.RecordReader<String>() {
+        @Override
+        public String read(CompactDataInput in) throws IOException {
+            return in.readId();
+        }
+    };
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private ParallelConnections master;
+    private ParallelConnections slave;
+
+    @Before
+    public void connect() throws Exception {
+        final ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        try {
+            Future<ParallelConnections> masterSide = executor.submit(new Callable<ParallelConnections>() {
+                @Override
+                public ParallelConnections call() throws IOException {
+                    ParallelConnections connections = new ParallelConnections(server.accept());
+                    connections.acceptDataConnections(CONNECTIONS_PER_SLAVE - 1);
+                    return connections;
+                }
+            });
+            String host = InetAddress.getLoopbackAddress().getHostAddress();
+            slave = new ParallelConnections(new Socket(host, server.getLocalPort()));
+            slave.connectDataConnections(host);
+            master = masterSide.get();
+        } finally {
+            server.close();
+        }
+    }
+
+    @After
+    public void close() throws IOException {
+        executor.shutdown();
+        if (master != null)
+            master.close();
+        if (slave != null)
+            slave.close();
+    }
+
+    @Test
+    public void testTransfersKeepOrder() throws Exception {
+        Assert.assertEquals(CONNECTIONS_PER_SLAVE, master.size());
+        Assert.assertEquals(CONNECTIONS_PER_SLAVE, slave.size());
+
+        // fewer records than connections, none, and a number not divisible by the number of connections
+        for (int count : new int[] { 2, 0, 1001 }) {
+            assertTransfer(master, slave, createRecords(count));
+            assertTransfer(slave, master, createRecords(count));
+        }
+
+        // records written with the dictionaries filled by the previous transfers
+        List<String> records = createRecords(500);
+        Collections.reverse(records);
+        assertTransfer(master, slave, records);
+    }
+
+    private List<String> createRecords(int count) {
+        List<String> records = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            records.add(i % 10 == 0 ? null : "person_" + (i % 77));
+        return records;
+    }
+
+    private void assertTransfer(final ParallelConnections from, ParallelConnections to, final List<String> records)
+            throws Exception {
+        // the receiver reads while the sender writes; a control message follows the records
+        Future<Void> sending = executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                from.send(records, WRITER);
+                from.getControlOutput().writeInt(records.size());
+                from.getControlOutput().flush();
+                return null;
+            }
+        });
+        Assert.assertEquals(records, to.receive(READER));
+        Assert.assertEquals(records.size(), to.getControlInput().readInt());
+        sending.get();
+    }
+}
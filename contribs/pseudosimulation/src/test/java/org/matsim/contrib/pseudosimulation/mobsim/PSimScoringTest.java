@@ -0,0 +1,282 @@
+package org.matsim.contrib.pseudosimulation.mobsim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.contrib.eventsBasedPTRouter.stopStopTimes.StopStopTime;
+import org.matsim.contrib.eventsBasedPTRouter.waitTimes.WaitTime;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.controler.events.ScoringEvent;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.LinkNetworkRouteImpl;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.scoring.EventsToScore;
+import org.matsim.core.scoring.ScoringFunctionFactory;
+import org.matsim.core.scoring.functions.CharyparNagelScoringFunctionFactory;
+import org.matsim.pt.PtConstants;
+import org.matsim.pt.routes.ExperimentalTransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Compares the scores of the event-free PSim ({@link PSimScoring}) with the scores computed from the events of PSim by
+ * the regular scoring.
+ */
+public class PSimScoringTest {
+    private static final double END_TIME = 20 * 3600;
+
+    private Scenario scenario;
+    private final Map<Id<TransitLine>, TransitLine> lines = new HashMap<>();
+    private final Map<Id<TransitStopFacility>, TransitStopFacility> stops = new HashMap<>();
+
+    @Before
+    public void init() {
+        Config config = ConfigUtils.createConfig();
+        config.qsim().setEndTime(END_TIME);
+        config.transit().setUseTransit(true);
+        PlanCalcScoreConfigGroup scoreConfig = config.planCalcScore();
+        scoreConfig.setLearningRate(0.5);
+        scoreConfig.setUtilityOfLineSwitch(-0.5);
+        scoreConfig.setMarginalUtlOfWaitingPt_utils_hr(-3);
+        scoreConfig.getOrCreateModeParams(TransportMode.car).setMonetaryDistanceRate(-0.0002);
+        scoreConfig.getOrCreateModeParams(TransportMode.pt).setConstant(-1);
+        scoreConfig.getOrCreateModeParams(TransportMode.walk).setMarginalUtilityOfDistance(-0.0001);
+        PlanCalcScoreConfigGroup.ActivityParams home = new PlanCalcScoreConfigGroup.ActivityParams("home");
+        home.setTypicalDuration(12 * 3600);
+        scoreConfig.addActivityParams(home);
+        PlanCalcScoreConfigGroup.ActivityParams work = new PlanCalcScoreConfigGroup.ActivityParams("work");
+        work.setTypicalDuration(8 * 3600);
+        scoreConfig.addActivityParams(work);
+        scenario = ScenarioUtils.createScenario(config);
+
+        // a ring of four links, 01 being the home and 34 the work link
+        Network network = scenario.getNetwork();
+        Node[] nodes = new Node[5];
+        for (int i = 0; i < nodes.length; i++)
+            nodes[i] = NetworkUtils.createAndAddNode(network, Id.createNodeId(i), new Coord(1000 * i, 0));
+        for (int i = 0; i < 4; i++)
+            NetworkUtils.createAndAddLink(network, Id.createLinkId(i + "" + (i + 1)), nodes[i], nodes[i + 1], 1000,
+                    i == 1 ? 2 : 10, 1000, 1);
+        NetworkUtils.createAndAddLink(network, Id.createLinkId("40"), nodes[4], nodes[0], 4000, 20, 1000, 1);
+
+        // line A from stop 1 to stop 2, line B from stop 2 to stop 3
+        TransitSchedule schedule = scenario.getTransitSchedule();
+        TransitScheduleFactory factory = schedule.getFactory();
+        for (int i = 1; i <= 3; i++) {
+            TransitStopFacility stop = factory.createTransitStopFacility(Id.create(i, TransitStopFacility.class),
+                    new Coord(1000 * i, 0), false);
+            stop.setLinkId(Id.createLinkId(i + "" + (i + 1)));
+            schedule.addStopFacility(stop);
+        }
+        stops.putAll(schedule.getFacilities());
+        for (String lineId : new String[] { "A", "B" }) {
+            int from = lineId.equals("A") ? 1 : 2;
+            List<TransitRouteStop> routeStops = Arrays.asList(
+                    factory.createTransitRouteStop(stops.get(Id.create(from, TransitStopFacility.class)), 0, 0),
+                    factory.createTransitRouteStop(stops.get(Id.create(from + 1, TransitStopFacility.class)), 300, 300));
+            TransitLine line = factory.createTransitLine(Id.create(lineId, TransitLine.class));
+            line.addRoute(factory.createTransitRoute(Id.create(lineId, TransitRoute.class),
+                    networkRoute(from + "" + (from + 1), (from + 1) + "" + (from + 2)), routeStops, TransportMode.pt));
+            schedule.addTransitLine(line);
+        }
+        lines.putAll(schedule.getTransitLines());
+
+        addPerson("car", 7 * 3600, 16 * 3600, null, false);
+        addPerson("carWithScore", 7 * 3600, 16 * 3600, 100., false);
+        addPerson("pt", 8 * 3600, 17 * 3600, null, true);
+        addPerson("ptWithScore", 8 * 3600 + 600, 17 * 3600, -20., true);
+        // stuck at work, on the way home, at home
+        addPerson("stuckInActivity", 7 * 3600, 21 * 3600, null, false);
+        addPerson("stuckOnLeg", 7 * 3600, 19.9 * 3600, 50., false);
+        addPerson("stuckAtHome", 21 * 3600, 22 * 3600, null, true);
+    }
+
+    @Test
+    public void testEventFreeScoresEqualEventBasedScores() {
+        Map<Id<Person>, Double> initialScores = new HashMap<>();
+        for (Person person : scenario.getPopulation().getPersons().values())
+            initialScores.put(person.getId(), person.getSelectedPlan().getScore());
+
+        ScoringFunctionFactory scoringFunctionFactory = new CharyparNagelScoringFunctionFactory(scenario);
+
+        // with events; the events manager is not thread-safe
+        scenario.getConfig().global().setNumberOfThreads(1);
+        EventsManager eventsManager = EventsUtils.createEventsManager();
+        EventsToScore eventsToScore = EventsToScore.createWithScoreUpdating(scenario, scoringFunctionFactory,
+                eventsManager);
+        eventsToScore.beginIteration(0);
+        eventsManager.initProcessing();
+        createPSim(eventsManager).run();
+        eventsManager.finishProcessing();
+        eventsToScore.finish();
+
+        Map<Id<Person>, Double> expectedScores = new HashMap<>();
+        for (Person person : scenario.getPopulation().getPersons().values()) {
+            expectedScores.put(person.getId(), person.getSelectedPlan().getScore());
+            person.getSelectedPlan().setScore(initialScores.get(person.getId()));
+        }
+
+        // event-free
+        scenario.getConfig().global().setNumberOfThreads(3);
+        EventsManager noEventsManager = EventsUtils.createEventsManager();
+        final int[] eventCount = { 0 };
+        noEventsManager.addHandler(new BasicEventHandler() {
+            @Override
+            public void handleEvent(Event event) {
+                eventCount[0]++;
+            }
+
+            @Override
+            public void reset(int iteration) {
+            }
+        });
+        PSimScoring pSimScoring = new PSimScoring(scenario.getConfig().planCalcScore());
+        pSimScoring.startMobsim(scoringFunctionFactory);
+        PSim pSim = createPSim(noEventsManager);
+        pSim.setPlanHandler(pSimScoring);
+        pSim.run();
+        pSimScoring.notifyScoring(new ScoringEvent(null, 0));
+        Assert.assertEquals(0, eventCount[0]);
+
+        for (Person person : scenario.getPopulation().getPersons().values()) {
+            double expectedScore = expectedScores.get(person.getId());
+            Assert.assertFalse(Double.isNaN(expectedScore));
+            Assert.assertEquals(person.getId().toString(), expectedScore, person.getSelectedPlan().getScore(), 1e-9);
+        }
+        // the stuck penalty is included
+        Assert.assertTrue(expectedScores.get(Id.createPersonId("stuckInActivity")) < -100);
+        Assert.assertTrue(expectedScores.get(Id.createPersonId("stuckAtHome")) < -100);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testScoreMsaIsRejected() {
+        scenario.getConfig().planCalcScore().setFractionOfIterationsToStartScoreMSA(0.8);
+        new PSimScoring(scenario.getConfig().planCalcScore());
+    }
+
+    private PSim createPSim(EventsManager eventsManager) {
+        List<Plan> plans = new ArrayList<>();
+        for (Person person : scenario.getPopulation().getPersons().values())
+            plans.add(person.getSelectedPlan());
+        TravelTime travelTime = new TravelTime() {
+            @Override
+            public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
+                return link.getLength() / link.getFreespeed();
+            }
+        };
+        WaitTime waitTime = new WaitTime() {
+            @Override
+            public double getRouteStopWaitTime(Id<TransitLine> lineId, Id<TransitRoute> routeId,
+                    Id<TransitStopFacility> stopId, double time) {
+                return lineId.toString().equals("A") ? 240 : 420;
+            }
+        };
+        StopStopTime stopStopTime = new StopStopTime() {
+            @Override
+            public double getStopStopTime(Id<TransitStopFacility> stopOId, Id<TransitStopFacility> stopDId,
+                    double time) {
+                return 300;
+            }
+
+            @Override
+            public double getStopStopTimeVariance(Id<TransitStopFacility> stopOId, Id<TransitStopFacility> stopDId,
+                    double time) {
+                return 0;
+            }
+        };
+        return new PSim(scenario, eventsManager, plans, travelTime, waitTime, stopStopTime, null);
+    }
+
+    // car: home - car - work - car - home; pt: home - transit_walk - (pt - ) pt - transit_walk - work - transit_walk - home
+    private void addPerson(String id, double homeEndTime, double workEndTime, Double score, boolean pt) {
+        Person person = PopulationUtils.getFactory().createPerson(Id.createPersonId(id));
+        Plan plan = PopulationUtils.createPlan(person);
+        Activity home = createActivity("home", 500, "01");
+        home.setEndTime(homeEndTime);
+        plan.addActivity(home);
+        if (pt) {
+            plan.addLeg(PopulationUtils.createLeg(TransportMode.transit_walk));
+            plan.addActivity(createActivity(PtConstants.TRANSIT_ACTIVITY_TYPE, 1000, "12"));
+            plan.addLeg(createPtLeg("A", 1, 2));
+            plan.addActivity(createActivity(PtConstants.TRANSIT_ACTIVITY_TYPE, 2000, "23"));
+            plan.addLeg(createPtLeg("B", 2, 3));
+            plan.addActivity(createActivity(PtConstants.TRANSIT_ACTIVITY_TYPE, 3000, "34"));
+            plan.addLeg(PopulationUtils.createLeg(TransportMode.transit_walk));
+        } else {
+            plan.addLeg(createCarLeg(networkRoute("01", "12", "23", "34"), 3000));
+        }
+        Activity work = createActivity("work", 3500, "34");
+        work.setEndTime(workEndTime);
+        plan.addActivity(work);
+        if (pt)
+            plan.addLeg(PopulationUtils.createLeg(TransportMode.transit_walk));
+        else
+            plan.addLeg(createCarLeg(networkRoute("34", "40", "01"), 5000));
+        plan.addActivity(createActivity("home", 500, "01"));
+        plan.setScore(score);
+        person.addPlan(plan);
+        scenario.getPopulation().addPerson(person);
+    }
+
+    private static Activity createActivity(String type, double x, String linkId) {
+        return PopulationUtils.createActivityFromCoordAndLinkId(type, new Coord(x, 0), Id.createLinkId(linkId));
+    }
+
+    // the distance as it is computed from the events: without the start link, with the end link
+    private static Leg createCarLeg(NetworkRoute route, double distance) {
+        Leg leg = PopulationUtils.createLeg(TransportMode.car);
+        route.setDistance(distance);
+        leg.setRoute(route);
+        return leg;
+    }
+
+    private Leg createPtLeg(String lineId, int fromStop, int toStop) {
+        TransitLine line = lines.get(Id.create(lineId, TransitLine.class));
+        Leg leg = PopulationUtils.createLeg(TransportMode.pt);
+        leg.setRoute(new ExperimentalTransitRoute(stops.get(Id.create(fromStop, TransitStopFacility.class)), line,
+                line.getRoutes().get(Id.create(lineId, TransitRoute.class)),
+                stops.get(Id.create(toStop, TransitStopFacility.class))));
+        return leg;
+    }
+
+    private static NetworkRoute networkRoute(String... linkIds) {
+        List<Id<Link>> inner = new ArrayList<>();
+        for (int i = 1; i < linkIds.length - 1; i++)
+            inner.add(Id.createLinkId(linkIds[i]));
+        NetworkRoute route = new LinkNetworkRouteImpl(Id.createLinkId(linkIds[0]),
+                Id.createLinkId(linkIds[linkIds.length - 1]));
+        route.setLinkIds(Id.createLinkId(linkIds[0]), inner, Id.createLinkId(linkIds[linkIds.length - 1]));
+        return route;
+    }
+}
@@ -23,6 +23,7 @@ import java.util.*;
 
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.contrib.dvrp.data.*;
+import org.matsim.contrib.dvrp.optimizer.VrpOptimizerWithBatchSubmission;
 import org.matsim.contrib.dvrp.schedule.Task;
 import org.matsim.contrib.taxi.data.TaxiRequest;
 import org.matsim.contrib.taxi.schedule.TaxiTask;
@@ -32,7 +33,7 @@ import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
 /**
  * @author michalm
  */
-public abstract class AbstractTaxiOptimizer implements TaxiOptimizer {
+public abstract class AbstractTaxiOptimizer implements TaxiOptimizer, VrpOptimizerWithBatchSubmission {
 	private final TaxiOptimizerContext optimContext;
 	private final Collection<TaxiRequest> unplannedRequests;
 
@@ -44,6 +45,9 @@ public abstract class AbstractTaxiOptimizer implements TaxiOptimizer {
 
 	private boolean requiresReoptimization = false;
 
+	// vehicles that have entered a new link since their timelines were last updated
+	private final Set<Vehicle> vehiclesWithOutdatedTimelines = new LinkedHashSet<>();
+
 	public AbstractTaxiOptimizer(TaxiOptimizerContext optimContext, AbstractTaxiOptimizerParams params,
 			Collection<TaxiRequest> unplannedRequests, boolean doUnscheduleAwaitingRequests,
 			boolean doUpdateTimelines) {
@@ -70,7 +74,12 @@ public abstract class AbstractTaxiOptimizer implements TaxiOptimizer {
 				for (Vehicle v : optimContext.fleet.getVehicles().values()) {
 					optimContext.scheduler.updateTimeline(v);
 				}
+			} else {
+				for (Vehicle v : vehiclesWithOutdatedTimelines) {
+					optimContext.scheduler.updateTimeline(v);
+				}
 			}
+			vehiclesWithOutdatedTimelines.clear();
 
 			scheduleUnplannedRequests();
 
@@ -103,6 +112,17 @@ public abstract class AbstractTaxiOptimizer implements TaxiOptimizer {
 		requiresReoptimization = true;
 	}
 
+	/**
+	 * Adds all requests to the unplanned ones at once and triggers a single reoptimisation. Subclasses that extend
+	 * {@link #requestSubmitted(Request)} (e.g. to register requests) must extend this method accordingly.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public void requestsSubmitted(Collection<? extends Request> requests) {
+		unplannedRequests.addAll((Collection<? extends TaxiRequest>)requests);
+		requiresReoptimization = true;
+	}
+
 	@Override
 	public void nextTask(Vehicle vehicle) {
 		optimContext.scheduler.updateBeforeNextTask(vehicle);
@@ -120,8 +140,8 @@ public abstract class AbstractTaxiOptimizer implements TaxiOptimizer {
 
 	@Override
 	public void vehicleEnteredNextLink(Vehicle vehicle, Link nextLink) {
-		// TODO do we really need this??? timeline is updated always before reoptimisation
-		optimContext.scheduler.updateTimeline(vehicle);// TODO comment this out...
+		// the timeline is updated lazily, only before reoptimisation (instead of on each link entry)
+		vehiclesWithOutdatedTimelines.add(vehicle);
 
 		// TODO we may here possibly decide whether or not to reoptimize
 		// if (delays/speedups encountered) {requiresReoptimization = true;}
@@ -28,8 +28,10 @@ import org.matsim.contrib.dvrp.trafficmonitoring.VrpTravelTimeModules;
 import org.matsim.contrib.taxi.optimizer.assignment.*;
 import org.matsim.contrib.taxi.optimizer.fifo.*;
 import org.matsim.contrib.taxi.optimizer.rules.*;
+import org.matsim.contrib.taxi.optimizer.zonal.*;
 import org.matsim.contrib.taxi.run.TaxiConfigGroup;
 import org.matsim.contrib.taxi.scheduler.*;
+import org.matsim.contrib.zone.skims.ZoneToZoneTravelMatrix;
 import org.matsim.core.mobsim.qsim.QSim;
 import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
 import org.matsim.core.router.util.*;
@@ -54,6 +56,9 @@ public class DefaultTaxiOptimizerProvider implements Provider<TaxiOptimizer> {
 	@Inject(optional = true)
 	private @Named(TAXI_OPTIMIZER) TravelDisutilityFactory travelDisutilityFactory;
 
+	@Inject(optional = true)
+	private ZoneToZoneTravelMatrix zonalTravelMatrix;// bound only for ZONAL with rebalancing
+
 	@Inject
 	public DefaultTaxiOptimizerProvider(TaxiConfigGroup taxiCfg, @Named(DvrpModule.DVRP_ROUTING) Network network,
 			Fleet fleet, @Named(VrpTravelTimeModules.DVRP_ESTIMATED) TravelTime travelTime, QSim qSim) {
@@ -91,7 +96,8 @@ public class DefaultTaxiOptimizerProvider implements Provider<TaxiOptimizer> {
 				return new RuleBasedTaxiOptimizer(optimContext, new RuleBasedTaxiOptimizerParams(optimizerConfig));
 
 			case ZONAL:
-				return new RuleBasedTaxiOptimizer(optimContext, new RuleBasedTaxiOptimizerParams(optimizerConfig));
+				return new ZonalTaxiOptimizer(optimContext, new ZonalTaxiOptimizerParams(optimizerConfig),
+						zonalTravelMatrix);
 
 			default:
 				throw new IllegalStateException();
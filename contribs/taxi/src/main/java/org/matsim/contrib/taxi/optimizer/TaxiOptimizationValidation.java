@@ -25,13 +25,10 @@ import org.matsim.contrib.taxi.data.TaxiRequest.TaxiRequestStatus;
 import org.matsim.contrib.taxi.data.TaxiRequests;
 import org.matsim.contrib.taxi.scheduler.TaxiScheduler;
 
-import com.google.common.collect.Iterables;
-
 public class TaxiOptimizationValidation {
 	public static void assertNoUnplannedRequestsWhenIdleVehicles(TaxiScheduler taxiScheduler, Fleet fleet,
 			Iterable<? extends Request> requests) {
-		int vehCount = Iterables
-				.size(Iterables.filter(fleet.getVehicles().values(), ScheduleInquiries.createIsIdle(taxiScheduler)));
+		int vehCount = ScheduleInquiries.countIdle(taxiScheduler, ScheduleInquiries.toVehicleArray(fleet));
 
 		if (vehCount == 0) {
 			return;// OK
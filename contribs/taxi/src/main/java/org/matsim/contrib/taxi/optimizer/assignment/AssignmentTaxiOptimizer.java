@@ -21,7 +21,7 @@ package org.matsim.contrib.taxi.optimizer.assignment;
 
 import java.util.*;
 
-import org.matsim.contrib.dvrp.data.Requests;
+import org.matsim.contrib.dvrp.data.*;
 import org.matsim.contrib.dvrp.schedule.ScheduleInquiries;
 import org.matsim.contrib.locationchoice.router.*;
 import org.matsim.contrib.taxi.data.TaxiRequest;
@@ -31,8 +31,6 @@ import org.matsim.contrib.taxi.optimizer.assignment.VehicleAssignmentProblem.Ass
 import org.matsim.core.router.*;
 import org.matsim.core.router.util.*;
 
-import com.google.common.collect.Iterables;
-
 /**
  * @author michalm
  */
@@ -43,6 +41,7 @@ public class AssignmentTaxiOptimizer extends AbstractTaxiOptimizer {
 	private final FastAStarEuclidean euclideanRouter;
 	private final VehicleAssignmentProblem<TaxiRequest> assignmentProblem;
 	private final TaxiToRequestAssignmentCostProvider assignmentCostProvider;
+	private final Vehicle[] vehicles;
 
 	public AssignmentTaxiOptimizer(TaxiOptimizerContext optimContext, AssignmentTaxiOptimizerParams params) {
 		super(optimContext, params, new TreeSet<TaxiRequest>(Requests.ABSOLUTE_COMPARATOR), true, true);
@@ -74,9 +73,11 @@ public class AssignmentTaxiOptimizer extends AbstractTaxiOptimizer {
 				optimContext.scheduler.getParams().AStarEuclideanOverdoFactor, fastRouterFactory);
 
 		assignmentProblem = new VehicleAssignmentProblem<>(optimContext.travelTime, getRouter(), getBackwardRouter(),
-				euclideanRouter, params.nearestRequestsLimit, params.nearestVehiclesLimit);
+				euclideanRouter, params.nearestRequestsLimit, params.nearestVehiclesLimit, params.sparseAssignment,
+				params.nullPathCost, params.auctionEpsilon);
 
 		assignmentCostProvider = new TaxiToRequestAssignmentCostProvider(params);
+		vehicles = ScheduleInquiries.toVehicleArray(optimContext.fleet);
 	}
 
 	@Override
@@ -102,8 +103,7 @@ public class AssignmentTaxiOptimizer extends AbstractTaxiOptimizer {
 	}
 
 	private VehicleData initVehicleData(AssignmentRequestData rData) {
-		int idleVehs = Iterables.size(Iterables.filter(getOptimContext().fleet.getVehicles().values(),
-				ScheduleInquiries.createIsIdle(getOptimContext().scheduler)));
+		int idleVehs = ScheduleInquiries.countIdle(getOptimContext().scheduler, vehicles);
 		double vehPlanningHorizon = idleVehs < rData.getUrgentReqCount() ? //
 				params.vehPlanningHorizonUndersupply : params.vehPlanningHorizonOversupply;
 		return new VehicleData(getOptimContext(), getOptimContext().fleet.getVehicles().values(), vehPlanningHorizon);
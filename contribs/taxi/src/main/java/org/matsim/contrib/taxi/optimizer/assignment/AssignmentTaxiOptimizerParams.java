@@ -34,6 +34,9 @@ public class AssignmentTaxiOptimizerParams extends AbstractTaxiOptimizerParams {
 	public static final String NEAREST_REQUESTS_LIMIT = "nearestRequestsLimit";
 	public static final String NEAREST_VEHICLES_LIMIT = "nearestVehiclesLimit";
 
+	public static final String SPARSE_ASSIGNMENT = "sparseAssignment";
+	public static final String AUCTION_EPSILON = "auctionEpsilon";
+
 	public final Mode mode;
 	public final double nullPathCost;
 
@@ -43,6 +46,10 @@ public class AssignmentTaxiOptimizerParams extends AbstractTaxiOptimizerParams {
 	public final int nearestRequestsLimit;
 	public final int nearestVehiclesLimit;
 
+	// consider only the kNN pairs and solve with the (warm-started) auction algorithm instead of the Hungarian one
+	public final boolean sparseAssignment;
+	public final double auctionEpsilon;
+
 	public AssignmentTaxiOptimizerParams(Configuration optimizerConfig) {
 		super(optimizerConfig);
 
@@ -57,5 +64,9 @@ public class AssignmentTaxiOptimizerParams extends AbstractTaxiOptimizerParams {
 
 		nearestRequestsLimit = optimizerConfig.getInt(NEAREST_REQUESTS_LIMIT);
 		nearestVehiclesLimit = optimizerConfig.getInt(NEAREST_VEHICLES_LIMIT);
+
+		sparseAssignment = optimizerConfig.getBoolean(SPARSE_ASSIGNMENT, false);
+		// in cost units (usually seconds); the total cost exceeds the optimum by at most auctionEpsilon per request
+		auctionEpsilon = optimizerConfig.getDouble(AUCTION_EPSILON, 1);
 	}
 }
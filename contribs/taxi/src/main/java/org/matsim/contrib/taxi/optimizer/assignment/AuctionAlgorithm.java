@@ -0,0 +1,300 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.assignment;
+
+import java.util.Arrays;
+
+/**
+ * Forward auction algorithm (Bertsekas) for the sparse assignment problem. Each person (row) may be assigned to one of
+ * its candidate objects (columns), given as arcs with costs, or remain unassigned at a person-specific cost. Each
+ * object is assigned to at most one person. The total cost of the returned assignment exceeds the optimum by at most
+ * {@code personCount * epsilon}.
+ * <p>
+ * The forward auction (persons bid for objects) is followed by a reverse auction, in which unassigned objects whose
+ * prices are too high lower them and bid for persons (see Bertsekas and Castanon, 1992, "A forward/reverse auction
+ * algorithm for asymmetric assignment problems").
+ * <p>
+ * The object prices (dual variables) can be carried over from the previous run. If the problem has changed only
+ * slightly, most persons get their best object with the first bid, and the epsilon-scaling phases are skipped.
+ */
+public class AuctionAlgorithm {
+	private static final double EPSILON_SCALING_FACTOR = 5;
+
+	private final int personCount;
+	private final int objectCount;
+
+	// arcs of person i are stored at [arcStarts[i], arcStarts[i + 1])
+	private final int[] arcStarts;
+	private final int[] arcObjects;
+	private final double[] arcBenefits;// benefit == -cost
+	private final double[] unassignedBenefits;
+
+	// the same arcs, grouped by objects
+	private final int[] arcPersons;
+	private final int[] objectArcStarts;
+	private final int[] objectArcs;
+
+	private final double epsilon;
+
+	private final double[] prices;
+	private final int[] arcByPerson;// -1 if unassigned
+	private final int[] personByObject;// -1 if unassigned
+
+	private final int[] queue;
+	private int queueHead;
+	private int queueSize;
+
+	/**
+	 * @param objectCount
+	 *            number of objects
+	 * @param arcStarts
+	 *            arcs of person i are at positions [arcStarts[i], arcStarts[i + 1]) in arcObjects and arcCosts
+	 * @param arcObjects
+	 *            object indices of the arcs
+	 * @param arcCosts
+	 *            costs of the arcs
+	 * @param unassignedCosts
+	 *            cost of leaving a person unassigned
+	 * @param epsilon
+	 *            the minimum bid increment; determines the accuracy of the solution
+	 */
+	public AuctionAlgorithm(int objectCount, int[] arcStarts, int[] arcObjects, double[] arcCosts,
+			double[] unassignedCosts, double epsilon) {
+		if (!(epsilon > 0)) {
+			throw new IllegalArgumentException("epsilon must be positive: " + epsilon);
+		}
+
+		this.personCount = unassignedCosts.length;
+		this.objectCount = objectCount;
+		this.arcStarts = arcStarts;
+		this.arcObjects = arcObjects;
+		this.epsilon = epsilon;
+
+		int arcCount = arcStarts[personCount];
+		arcBenefits = new double[arcCount];
+		for (int a = 0; a < arcCount; a++) {
+			arcBenefits[a] = -arcCosts[a];
+		}
+
+		unassignedBenefits = new double[personCount];
+		for (int i = 0; i < personCount; i++) {
+			unassignedBenefits[i] = -unassignedCosts[i];
+		}
+
+		arcPersons = new int[arcCount];
+		for (int i = 0; i < personCount; i++) {
+			Arrays.fill(arcPersons, arcStarts[i], arcStarts[i + 1], i);
+		}
+
+		objectArcStarts = new int[objectCount + 1];
+		for (int a = 0; a < arcCount; a++) {
+			objectArcStarts[arcObjects[a] + 1]++;
+		}
+		for (int j = 0; j < objectCount; j++) {
+			objectArcStarts[j + 1] += objectArcStarts[j];
+		}
+		objectArcs = new int[arcCount];
+		int[] fill = Arrays.copyOf(objectArcStarts, objectCount);
+		for (int a = 0; a < arcCount; a++) {
+			objectArcs[fill[arcObjects[a]]++] = a;
+		}
+
+		prices = new double[objectCount];
+		arcByPerson = new int[personCount];
+		personByObject = new int[objectCount];
+		queue = new int[personCount];
+	}
+
+	/**
+	 * @param initialPrices
+	 *            object prices from the previous run (warm start), or null (cold start)
+	 * @return object assigned to each person (-1 if unassigned)
+	 */
+	public int[] execute(double[] initialPrices) {
+		if (initialPrices != null) {
+			for (int j = 0; j < objectCount; j++) {
+				prices[j] = Math.max(initialPrices[j], 0);
+			}
+		} else {
+			Arrays.fill(prices, 0);
+			for (double eps = calcInitialEpsilon(); eps > epsilon; eps /= EPSILON_SCALING_FACTOR) {
+				runAuction(eps);
+			}
+		}
+
+		runAuction(epsilon);
+		runReverseAuction();
+
+		int[] objectByPerson = new int[personCount];
+		for (int i = 0; i < personCount; i++) {
+			objectByPerson[i] = arcByPerson[i] == -1 ? -1 : arcObjects[arcByPerson[i]];
+		}
+		return objectByPerson;
+	}
+
+	/**
+	 * @return object prices after {@link #execute(double[])}; to be used for warm-starting the next run
+	 */
+	public double[] getPrices() {
+		return prices;
+	}
+
+	private double calcInitialEpsilon() {
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		for (double b : arcBenefits) {
+			min = Math.min(min, b);
+			max = Math.max(max, b);
+		}
+		return max > min ? (max - min) / EPSILON_SCALING_FACTOR : 0;
+	}
+
+	private void runAuction(double eps) {
+		Arrays.fill(arcByPerson, -1);
+		Arrays.fill(personByObject, -1);
+		for (int i = 0; i < personCount; i++) {
+			enqueue(i);
+		}
+		bid(eps);
+	}
+
+	private void bid(double eps) {
+		while (queueSize > 0) {
+			int i = poll();
+
+			int bestArc = -1;
+			double bestValue = Double.NEGATIVE_INFINITY;
+			double secondValue = unassignedBenefits[i];
+			for (int a = arcStarts[i]; a < arcStarts[i + 1]; a++) {
+				double value = arcBenefits[a] - prices[arcObjects[a]];
+				if (value > bestValue) {
+					secondValue = Math.max(secondValue, bestValue);
+					bestValue = value;
+					bestArc = a;
+				} else if (value > secondValue) {
+					secondValue = value;
+				}
+			}
+
+			if (bestArc == -1 || bestValue <= unassignedBenefits[i]) {
+				continue;// remains unassigned
+			}
+
+			int j = arcObjects[bestArc];
+			prices[j] += bestValue - secondValue + eps;
+
+			int previousOwner = personByObject[j];
+			if (previousOwner != -1) {
+				arcByPerson[previousOwner] = -1;
+				enqueue(previousOwner);
+			}
+			personByObject[j] = i;
+			arcByPerson[i] = bestArc;
+		}
+	}
+
+	/**
+	 * After the forward auction, prices of unassigned objects may exceed lambda (e.g. after a warm start or a scaling
+	 * phase). Each such object either lowers its price to lambda or lowers it just enough to attract the person for
+	 * whom it is the best deal. This keeps epsilon-complementary slackness and ends when no unassigned object is priced
+	 * above lambda, which makes the assignment epsilon-optimal.
+	 */
+	private void runReverseAuction() {
+		double lambda = calcLambda();
+
+		int[] stack = new int[objectCount];
+		int stackSize = 0;
+		for (int j = 0; j < objectCount; j++) {
+			if (personByObject[j] == -1 && prices[j] > lambda) {
+				stack[stackSize++] = j;
+			}
+		}
+
+		while (stackSize > 0) {
+			int j = stack[--stackSize];
+
+			int bestArc = -1;
+			double bestValue = Double.NEGATIVE_INFINITY;
+			double secondValue = Double.NEGATIVE_INFINITY;
+			for (int k = objectArcStarts[j]; k < objectArcStarts[j + 1]; k++) {
+				int a = objectArcs[k];
+				double value = arcBenefits[a] - calcProfit(arcPersons[a]);
+				if (value > bestValue) {
+					secondValue = bestValue;
+					bestValue = value;
+					bestArc = a;
+				} else if (value > secondValue) {
+					secondValue = value;
+				}
+			}
+
+			if (bestArc == -1 || bestValue - epsilon <= lambda) {
+				prices[j] = lambda;
+				continue;// remains unassigned
+			}
+
+			prices[j] = Math.max(lambda, secondValue - epsilon);
+
+			int i = arcPersons[bestArc];
+			int previousArc = arcByPerson[i];
+			arcByPerson[i] = bestArc;
+			personByObject[j] = i;
+
+			if (previousArc != -1) {
+				int previousObject = arcObjects[previousArc];
+				personByObject[previousObject] = -1;
+				if (prices[previousObject] > lambda) {
+					stack[stackSize++] = previousObject;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return 0 if any person is unassigned, otherwise the lowest price of the assigned objects
+	 */
+	private double calcLambda() {
+		double lambda = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < personCount; i++) {
+			if (arcByPerson[i] == -1) {
+				return 0;
+			}
+			lambda = Math.min(lambda, prices[arcObjects[arcByPerson[i]]]);
+		}
+		return lambda == Double.POSITIVE_INFINITY ? 0 : lambda;
+	}
+
+	private double calcProfit(int i) {
+		int a = arcByPerson[i];
+		return a == -1 ? unassignedBenefits[i] : arcBenefits[a] - prices[arcObjects[a]];
+	}
+
+	private void enqueue(int i) {
+		queue[(queueHead + queueSize) % personCount] = i;
+		queueSize++;
+	}
+
+	private int poll() {
+		int i = queue[queueHead];
+		queueHead = (queueHead + 1) % personCount;
+		queueSize--;
+		return i;
+	}
+}
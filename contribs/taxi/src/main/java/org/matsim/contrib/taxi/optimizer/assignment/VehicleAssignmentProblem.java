@@ -22,7 +22,9 @@ package org.matsim.contrib.taxi.optimizer.assignment;
 import java.lang.reflect.Array;
 import java.util.*;
 
+import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.dvrp.data.Vehicle;
 import org.matsim.contrib.dvrp.path.*;
 import org.matsim.contrib.dvrp.path.OneToManyPathSearch.PathData;
 import org.matsim.contrib.locationchoice.router.BackwardMultiNodePathCalculator;
@@ -54,6 +56,13 @@ public class VehicleAssignmentProblem<D> {
 	private final StraightLineKnnFinder<VehicleData.Entry, DestEntry<D>> destinationFinder;
 	private final StraightLineKnnFinder<DestEntry<D>, VehicleData.Entry> vehicleFinder;
 
+	private final boolean sparse;
+	private final double unassignedDestinationPenalty;
+	private final double auctionEpsilon;
+
+	// vehicle prices from the last auction; used for warm-starting the next one
+	private Map<Id<Vehicle>, Double> vehiclePrices;
+
 	private AssignmentCost<D> assignmentCost;
 	private VehicleData vData;
 	private AssignmentDestinationData<D> dData;
@@ -67,8 +76,31 @@ public class VehicleAssignmentProblem<D> {
 	public VehicleAssignmentProblem(TravelTime travelTime, MultiNodePathCalculator router,
 			BackwardMultiNodePathCalculator backwardRouter, FastAStarEuclidean euclideanRouter,
 			int nearestDestinationLimit, int nearestVehicleLimit) {
+		this(travelTime, router, backwardRouter, euclideanRouter, nearestDestinationLimit, nearestVehicleLimit, false,
+				Double.NaN, Double.NaN);
+	}
+
+	/**
+	 * @param sparse
+	 *            if true, only the vehicle-destination pairs found by the kNN filtering are considered, and the
+	 *            assignment is found with {@link AuctionAlgorithm} (warm-started with the prices from the previous
+	 *            call); otherwise, all pairs are considered and the assignment is found with
+	 *            {@link HungarianAlgorithm}
+	 * @param unassignedDestinationPenalty
+	 *            (sparse only) leaving a destination unassigned costs as much as assigning its most expensive
+	 *            candidate vehicle plus this penalty
+	 * @param auctionEpsilon
+	 *            (sparse only) the total cost exceeds the optimum by at most auctionEpsilon per destination
+	 */
+	public VehicleAssignmentProblem(TravelTime travelTime, MultiNodePathCalculator router,
+			BackwardMultiNodePathCalculator backwardRouter, FastAStarEuclidean euclideanRouter,
+			int nearestDestinationLimit, int nearestVehicleLimit, boolean sparse, double unassignedDestinationPenalty,
+			double auctionEpsilon) {
 		this.travelTime = travelTime;
 		this.euclideanRouter = euclideanRouter;
+		this.sparse = sparse;
+		this.unassignedDestinationPenalty = unassignedDestinationPenalty;
+		this.auctionEpsilon = auctionEpsilon;
 
 		forwardPathSearch = OneToManyPathSearch.createForwardSearch(router);
 		backwardPathSearch = OneToManyPathSearch.createBackwardSearch(backwardRouter);
@@ -87,6 +119,10 @@ public class VehicleAssignmentProblem<D> {
 		this.dData = dData;
 		this.assignmentCost = assignmentCost;
 
+		if (sparse) {
+			return findSparseAssignments();
+		}
+
 		PathData[][] pathDataMatrix = createPathDataMatrix();
 		double[][] costMatrix = createCostMatrix(pathDataMatrix);
 		int[] assignments = new HungarianAlgorithm(costMatrix).execute();
@@ -164,6 +200,130 @@ public class VehicleAssignmentProblem<D> {
 		return costMatrix;
 	}
 
+	private static class Candidate {
+		private final VehicleData.Entry departure;
+		private final PathData pathData;
+
+		private Candidate(VehicleData.Entry departure, PathData pathData) {
+			this.departure = departure;
+			this.pathData = pathData;
+		}
+	}
+
+	private List<Dispatch<D>> findSparseAssignments() {
+		List<List<Candidate>> candidatesByDest = createCandidateLists();
+
+		// destinations are persons, vehicles are objects
+		int[] arcStarts = new int[dData.getSize() + 1];
+		for (int d = 0; d < dData.getSize(); d++) {
+			arcStarts[d + 1] = arcStarts[d] + candidatesByDest.get(d).size();
+		}
+		int[] arcVehicles = new int[arcStarts[dData.getSize()]];
+		double[] arcCosts = new double[arcVehicles.length];
+		double[] unassignedCosts = new double[dData.getSize()];
+
+		for (int d = 0; d < dData.getSize(); d++) {
+			DestEntry<D> dest = dData.getEntry(d);
+			double maxCost = 0;
+			int a = arcStarts[d];
+			for (Candidate c : candidatesByDest.get(d)) {
+				arcVehicles[a] = c.departure.idx;
+				arcCosts[a] = assignmentCost.calc(c.departure, dest, c.pathData);
+				maxCost = Math.max(maxCost, arcCosts[a]);
+				a++;
+			}
+			unassignedCosts[d] = maxCost + unassignedDestinationPenalty;
+		}
+
+		AuctionAlgorithm auction = new AuctionAlgorithm(vData.getSize(), arcStarts, arcVehicles, arcCosts,
+				unassignedCosts, auctionEpsilon);
+		int[] assignments = auction.execute(getInitialVehiclePrices());
+		storeVehiclePrices(auction.getPrices());
+
+		List<Dispatch<D>> dispatches = new ArrayList<>();
+		for (int d = 0; d < assignments.length; d++) {
+			int v = assignments[d];
+			if (v == -1) {
+				continue;
+			}
+
+			Candidate candidate = null;
+			for (Candidate c : candidatesByDest.get(d)) {
+				if (c.departure.idx == v) {
+					candidate = c;
+					break;
+				}
+			}
+
+			DestEntry<D> dest = dData.getEntry(d);
+			VrpPathWithTravelData vrpPath = VrpPaths.createPath(candidate.departure.link, dest.link,
+					candidate.departure.time, candidate.pathData.path, travelTime);
+			dispatches.add(new Dispatch<>(candidate.departure.vehicle, dest.destination, vrpPath));
+		}
+		return dispatches;
+	}
+
+	private List<List<Candidate>> createCandidateLists() {
+		List<List<Candidate>> candidatesByDest = new ArrayList<>(dData.getSize());
+		for (int d = 0; d < dData.getSize(); d++) {
+			candidatesByDest.add(new ArrayList<Candidate>());
+		}
+
+		if (dData.getSize() > vData.getSize()) {
+			for (int v = 0; v < vData.getSize(); v++) {
+				VehicleData.Entry departure = vData.getEntry(v);
+
+				List<DestEntry<D>> filteredDests = destinationFinder == null ? dData.getEntries()
+						: destinationFinder.findNearest(departure, dData.getEntries());
+				List<Link> toLinks = Lists.transform(filteredDests, destLinkProvider);
+				PathData[] paths = forwardPathSearch.calcPaths(departure.link, toLinks, departure.time);
+
+				for (int i = 0; i < filteredDests.size(); i++) {
+					if (paths[i] != null) {
+						candidatesByDest.get(filteredDests.get(i).idx).add(new Candidate(departure, paths[i]));
+					}
+				}
+			}
+		} else {
+			for (int d = 0; d < dData.getSize(); d++) {
+				DestEntry<D> dest = dData.getEntry(d);
+
+				List<VehicleData.Entry> filteredVehs = vehicleFinder == null ? vData.getEntries()
+						: vehicleFinder.findNearest(dest, vData.getEntries());
+				List<Link> toLinks = Lists.transform(filteredVehs, LinkProviders.VEHICLE_ENTRY_TO_LINK);
+				PathData[] paths = backwardPathSearch.calcPaths(dest.link, toLinks, dest.time);
+
+				for (int i = 0; i < filteredVehs.size(); i++) {
+					if (paths[i] != null) {
+						candidatesByDest.get(d).add(new Candidate(filteredVehs.get(i), paths[i]));
+					}
+				}
+			}
+		}
+
+		return candidatesByDest;
+	}
+
+	private double[] getInitialVehiclePrices() {
+		if (vehiclePrices == null) {
+			return null;// cold start
+		}
+
+		double[] prices = new double[vData.getSize()];
+		for (int v = 0; v < vData.getSize(); v++) {
+			Double price = vehiclePrices.get(vData.getEntry(v).vehicle.getId());
+			prices[v] = price == null ? 0 : price;
+		}
+		return prices;
+	}
+
+	private void storeVehiclePrices(double[] prices) {
+		vehiclePrices = new HashMap<>();
+		for (int v = 0; v < vData.getSize(); v++) {
+			vehiclePrices.put(vData.getEntry(v).vehicle.getId(), prices[v]);
+		}
+	}
+
 	private List<Dispatch<D>> createDispatches(int[] assignments, PathData[][] pathDataMatrix, TravelTime travelTime) {
 		List<Dispatch<D>> dispatches = new ArrayList<>(Math.min(vData.getSize(), dData.getSize()));
 		for (int v = 0; v < assignments.length; v++) {
@@ -0,0 +1,72 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.rules;
+
+import java.util.*;
+
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.dvrp.data.Vehicle;
+import org.matsim.contrib.dvrp.schedule.*;
+import org.matsim.contrib.taxi.schedule.TaxiStayTask;
+import org.matsim.contrib.zone.SpatialGridRegistry;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.*;
+
+public class IdleTaxiGridRegistry {
+	private final SpatialGridRegistry<Vehicle> vehicles;
+	private final Predicate<Vehicle> isIdle;
+
+	public IdleTaxiGridRegistry(Network network, double cellSize, ScheduleInquiry scheduleInquiry) {
+		vehicles = new SpatialGridRegistry<>(network, cellSize);
+		isIdle = ScheduleInquiries.createIsIdle(scheduleInquiry);
+	}
+
+	public void addVehicle(Vehicle vehicle) {
+		TaxiStayTask stayTask = (TaxiStayTask)vehicle.getSchedule().getCurrentTask();
+		vehicles.add(vehicle, stayTask.getLink().getToNode().getCoord());
+	}
+
+	public void removeVehicle(Vehicle vehicle) {
+		vehicles.remove(vehicle);
+	}
+
+	/**
+	 * @return (at most) {@code count} idle vehicles nearest to the node (straight-line distance)
+	 */
+	public List<Vehicle> findNearestVehicles(Node node, int count) {
+		if (count >= vehicles.size()) {
+			return getVehicles();
+		}
+
+		return Lists.newArrayList(
+				Iterables.limit(Iterables.filter(vehicles.iterateByDistance(node.getCoord()), isIdle), count));
+	}
+
+	public List<Vehicle> getVehicles() {
+		List<Vehicle> vehs = new ArrayList<>();
+		Iterables.addAll(vehs, Iterables.filter(vehicles.getItems(), isIdle));
+		return vehs;
+	}
+
+	public int getVehicleCount() {
+		return vehicles.size();
+	}
+}
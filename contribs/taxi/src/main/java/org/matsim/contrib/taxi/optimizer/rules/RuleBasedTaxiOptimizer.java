@@ -29,7 +29,6 @@ import org.matsim.contrib.taxi.data.TaxiRequest;
 import org.matsim.contrib.taxi.optimizer.*;
 import org.matsim.contrib.taxi.schedule.*;
 import org.matsim.contrib.taxi.schedule.TaxiTask.TaxiTaskType;
-import org.matsim.contrib.zone.*;
 
 /**
  * @author michalm
@@ -37,17 +36,12 @@ import org.matsim.contrib.zone.*;
 public class RuleBasedTaxiOptimizer extends AbstractTaxiOptimizer {
 	private final BestDispatchFinder dispatchFinder;
 
-	private final IdleTaxiZonalRegistry idleTaxiRegistry;
-	private final UnplannedRequestZonalRegistry unplannedRequestRegistry;
+	private final IdleTaxiGridRegistry idleTaxiRegistry;
+	private final UnplannedRequestGridRegistry unplannedRequestRegistry;
 
 	private final RuleBasedTaxiOptimizerParams params;
 
 	public RuleBasedTaxiOptimizer(TaxiOptimizerContext optimContext, RuleBasedTaxiOptimizerParams params) {
-		this(optimContext, params, new SquareGridSystem(optimContext.network, params.cellSize));
-	}
-
-	public RuleBasedTaxiOptimizer(TaxiOptimizerContext optimContext, RuleBasedTaxiOptimizerParams params,
-			ZonalSystem zonalSystem) {
 		super(optimContext, params, new TreeSet<TaxiRequest>(Requests.ABSOLUTE_COMPARATOR), false, false);
 
 		this.params = params;
@@ -58,8 +52,8 @@ public class RuleBasedTaxiOptimizer extends AbstractTaxiOptimizer {
 		}
 
 		dispatchFinder = new BestDispatchFinder(optimContext);
-		idleTaxiRegistry = new IdleTaxiZonalRegistry(zonalSystem, optimContext.scheduler);
-		unplannedRequestRegistry = new UnplannedRequestZonalRegistry(zonalSystem);
+		idleTaxiRegistry = new IdleTaxiGridRegistry(optimContext.network, params.cellSize, optimContext.scheduler);
+		unplannedRequestRegistry = new UnplannedRequestGridRegistry(optimContext.network, params.cellSize);
 	}
 
 	@Override
@@ -102,8 +96,8 @@ public class RuleBasedTaxiOptimizer extends AbstractTaxiOptimizer {
 		while (reqIter.hasNext() && idleCount > 0) {
 			TaxiRequest req = reqIter.next();
 
-			List<Vehicle> selectedVehs = idleCount > params.nearestVehiclesLimit // we do not want to visit more than a
-																					// quarter of zones
+			List<Vehicle> selectedVehs = idleCount > params.nearestVehiclesLimit // we do not want to route to all
+																					// idle vehicles
 					? idleTaxiRegistry.findNearestVehicles(req.getFromLink().getFromNode(), params.nearestVehiclesLimit)
 					: idleTaxiRegistry.getVehicles();
 
@@ -154,6 +148,13 @@ public class RuleBasedTaxiOptimizer extends AbstractTaxiOptimizer {
 		unplannedRequestRegistry.addRequest((TaxiRequest)request);
 	}
 
+	@SuppressWarnings("unchecked")
+	@Override
+	public void requestsSubmitted(Collection<? extends Request> requests) {
+		super.requestsSubmitted(requests);
+		unplannedRequestRegistry.addRequests((Collection<? extends TaxiRequest>)requests);
+	}
+
 	@Override
 	public void nextTask(Vehicle vehicle) {
 		super.nextTask(vehicle);
@@ -189,7 +190,7 @@ public class RuleBasedTaxiOptimizer extends AbstractTaxiOptimizer {
 		return dispatchFinder;
 	}
 
-	protected IdleTaxiZonalRegistry getIdleTaxiRegistry() {
+	protected IdleTaxiGridRegistry getIdleTaxiRegistry() {
 		return idleTaxiRegistry;
 	}
 }
@@ -0,0 +1,62 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.rules;
+
+import java.util.*;
+
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.taxi.data.TaxiRequest;
+import org.matsim.contrib.zone.SpatialGridRegistry;
+
+public class UnplannedRequestGridRegistry {
+	private final SpatialGridRegistry<TaxiRequest> requests;
+
+	public UnplannedRequestGridRegistry(Network network, double cellSize) {
+		requests = new SpatialGridRegistry<>(network, cellSize);
+	}
+
+	// after submitted
+	public void addRequest(TaxiRequest request) {
+		requests.add(request, request.getFromLink().getFromNode().getCoord());
+	}
+
+	// after submitted in a batch
+	public void addRequests(Collection<? extends TaxiRequest> requests) {
+		for (TaxiRequest r : requests) {
+			addRequest(r);
+		}
+	}
+
+	// after scheduled
+	public void removeRequest(TaxiRequest request) {
+		requests.remove(request);
+	}
+
+	/**
+	 * @return (at most) {@code count} requests nearest to the node (straight-line distance)
+	 */
+	public List<TaxiRequest> findNearestRequests(Node node, int count) {
+		return requests.findNearest(node.getCoord(), count);
+	}
+
+	public int getRequestCount() {
+		return requests.size();
+	}
+}
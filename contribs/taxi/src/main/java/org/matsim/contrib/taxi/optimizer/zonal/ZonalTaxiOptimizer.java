@@ -21,17 +21,29 @@ package org.matsim.contrib.taxi.optimizer.zonal;
 
 import java.util.*;
 
-import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.*;
 import org.matsim.api.core.v01.network.Link;
-import org.matsim.contrib.dvrp.data.Vehicle;
+import org.matsim.contrib.dvrp.data.*;
+import org.matsim.contrib.dvrp.optimizer.rebalancing.ZonalRebalancer;
+import org.matsim.contrib.dvrp.optimizer.rebalancing.ZonalRebalancer.*;
 import org.matsim.contrib.dvrp.schedule.StayTask;
 import org.matsim.contrib.taxi.data.TaxiRequest;
 import org.matsim.contrib.taxi.optimizer.*;
 import org.matsim.contrib.taxi.optimizer.rules.RuleBasedTaxiOptimizer;
+import org.matsim.contrib.util.distance.DistanceUtils;
 import org.matsim.contrib.zone.*;
+import org.matsim.contrib.zone.skims.ZoneToZoneTravelMatrix;
 import org.matsim.contrib.zone.util.*;
-
-public class ZonalTaxiOptimizer extends RuleBasedTaxiOptimizer {
+import org.matsim.core.mobsim.framework.events.*;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
+
+/**
+ * If {@link ZonalTaxiOptimizerParams#rebalancingInterval} is positive, idle taxis are periodically moved between zones
+ * according to the recent demand (see {@link ZonalRebalancer}). Each relocated taxi goes to the link nearest to the
+ * centroid of its new zone. The relocation cost is the zone-to-zone travel time taken from a
+ * {@link ZoneToZoneTravelMatrix} shared by all iterations (see {@link ZonalTaxiTravelMatrixProvider}).
+ */
+public class ZonalTaxiOptimizer extends RuleBasedTaxiOptimizer implements MobsimBeforeCleanupListener {
 	private static final Comparator<Vehicle> LONGEST_WAITING_FIRST = new Comparator<Vehicle>() {
 		public int compare(Vehicle v1, Vehicle v2) {
 			double beginTime1 = v1.getSchedule().getCurrentTask().getBeginTime();
@@ -44,17 +56,140 @@ public class ZonalTaxiOptimizer extends RuleBasedTaxiOptimizer {
 	private Map<Id<Zone>, PriorityQueue<Vehicle>> zoneToIdleVehicleQueue;
 	private final Map<Id<Link>, Zone> linkToZone;
 
-	public ZonalTaxiOptimizer(TaxiOptimizerContext optimContext, ZonalTaxiOptimizerParams params) {
+	private final ZonalRebalancer rebalancer;// null if no rebalancing
+	private final Map<Id<Zone>, Integer> zoneIndices = new HashMap<>();
+	private final List<Zone> zoneList;
+	private final Link[] zoneCentralLinks;
+
+	/**
+	 * @param travelMatrix
+	 *            zone-to-zone travel times used as relocation costs; may be null if rebalancing is off
+	 */
+	public ZonalTaxiOptimizer(TaxiOptimizerContext optimContext, ZonalTaxiOptimizerParams params,
+			final ZoneToZoneTravelMatrix travelMatrix) {
 		super(optimContext, params);
 
 		zones = Zones.readZones(params.zonesXmlFile, params.zonesShpFile);
 		System.err.println("No conversion of SRS is done");
 
-		this.linkToZone = NetworkWithZonesUtils.createLinkToZoneMap(optimContext.network,
-				new ZoneFinderImpl(zones, params.expansionDistance));
+		ZoneFinder zoneFinder = new ZoneFinderImpl(zones, params.expansionDistance);
+		this.linkToZone = NetworkWithZonesUtils.createLinkToZoneMap(optimContext.network, zoneFinder);
 
 		// FIXME zonal system used in RuleBasedTaxiOptim (for registers) should be equivalent to
 		// the zones used in ZonalTaxiOptim (for dispatching)
+
+		zoneList = new ArrayList<>(zones.values());
+		for (Zone z : zoneList) {
+			zoneIndices.put(z.getId(), zoneIndices.size());
+		}
+		zoneCentralLinks = findCentralLinks(optimContext);
+
+		if (params.rebalancingInterval > 0) {
+			if (travelMatrix == null) {
+				throw new IllegalArgumentException("Rebalancing requires a zone-to-zone travel matrix");
+			}
+			rebalancer = new ZonalRebalancer(zoneList.size(), params.rebalancingInterval,
+					new RelocationCostCalculator() {
+						@Override
+						public double calcCost(int fromZone, int toZone, double time) {
+							return travelMatrix.getTravelTime(zoneList.get(fromZone), zoneList.get(toZone), time);
+						}
+					});
+		} else {
+			rebalancer = null;
+		}
+	}
+
+	private Link[] findCentralLinks(TaxiOptimizerContext optimContext) {
+		Link[] centralLinks = new Link[zoneList.size()];
+		double[] distances = new double[zoneList.size()];
+		for (Link link : optimContext.network.getLinks().values()) {
+			Zone zone = linkToZone.get(link.getId());
+			if (zone != null) {
+				int idx = zoneIndices.get(zone.getId());
+				double distance = DistanceUtils.calculateSquaredDistance(link.getCoord(), zone.getCoord());
+				if (centralLinks[idx] == null || distance < distances[idx]) {
+					centralLinks[idx] = link;
+					distances[idx] = distance;
+				}
+			}
+		}
+		return centralLinks;
+	}
+
+	@Override
+	public void requestSubmitted(Request request) {
+		super.requestSubmitted(request);
+
+		if (rebalancer != null) {
+			registerDemand((TaxiRequest)request);
+		}
+	}
+
+	@Override
+	public void requestsSubmitted(Collection<? extends Request> requests) {
+		super.requestsSubmitted(requests);
+
+		if (rebalancer != null) {
+			for (Request r : requests) {
+				registerDemand((TaxiRequest)r);
+			}
+		}
+	}
+
+	private void registerDemand(TaxiRequest req) {
+		rebalancer.requestSubmitted(getZoneIdx(req.getFromLink()), getZoneIdx(req.getToLink()),
+				getOptimContext().timer.getTimeOfDay());
+	}
+
+	private int getZoneIdx(Link link) {
+		Zone zone = linkToZone.get(link.getId());
+		return zone == null ? -1 : zoneIndices.get(zone.getId());
+	}
+
+	@Override
+	public void notifyMobsimBeforeSimStep(@SuppressWarnings("rawtypes") MobsimBeforeSimStepEvent e) {
+		super.notifyMobsimBeforeSimStep(e);
+
+		if (rebalancer != null) {
+			// requests are served first, only the remaining idle vehicles are relocated
+			if (rebalancer.hasPendingRelocations()) {
+				initIdleVehiclesInZones();
+				relocateIdleVehicles(rebalancer.getRelocations());
+			}
+
+			if (rebalancer.isRebalancingTime(e.getSimulationTime())) {
+				initIdleVehiclesInZones();
+				rebalancer.startRebalancing(e.getSimulationTime(), countIdleVehiclesInZones());
+			}
+		}
+	}
+
+	@Override
+	public void notifyMobsimBeforeCleanup(@SuppressWarnings("rawtypes") MobsimBeforeCleanupEvent e) {
+		if (rebalancer != null) {
+			rebalancer.shutdown();
+		}
+	}
+
+	private int[] countIdleVehiclesInZones() {
+		int[] counts = new int[zoneList.size()];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = zoneToIdleVehicleQueue.get(zoneList.get(i).getId()).size();
+		}
+		return counts;
+	}
+
+	private void relocateIdleVehicles(List<Relocation> relocations) {
+		for (Relocation r : relocations) {
+			Link toLink = zoneCentralLinks[r.toZone];
+			PriorityQueue<Vehicle> idleVehsInZone = zoneToIdleVehicleQueue.get(zoneList.get(r.fromZone).getId());
+
+			// some vehicles have been dispatched since the rebalancing started
+			for (int i = 0; i < r.vehicleCount && !idleVehsInZone.isEmpty(); i++) {
+				getOptimContext().scheduler.relocateEmptyVehicle(idleVehsInZone.poll(), toLink);
+			}
+		}
 	}
 
 	@Override
@@ -26,16 +26,21 @@ public class ZonalTaxiOptimizerParams extends RuleBasedTaxiOptimizerParams {
 	public static final String ZONES_XML_FILE = "zonesXmlFile";
 	public static final String ZONES_SHP_FILE = "zonesShpFile";
 	public static final String EXPANSION_DISTANCE = "expansionDistance";
+	public static final String REBALANCING_INTERVAL = "rebalancingInterval";
 
 	public final String zonesXmlFile;
 	public final String zonesShpFile;
 	public final double expansionDistance;
 
+	// idle vehicles are moved between zones every rebalancingInterval seconds (0 - no rebalancing)
+	public final int rebalancingInterval;
+
 	public ZonalTaxiOptimizerParams(Configuration optimizerConfig) {
 		super(optimizerConfig);
 
 		zonesXmlFile = optimizerConfig.getString(ZONES_XML_FILE);
 		zonesShpFile = optimizerConfig.getString(ZONES_SHP_FILE);
 		expansionDistance = optimizerConfig.getDouble(EXPANSION_DISTANCE);
+		rebalancingInterval = optimizerConfig.getInt(REBALANCING_INTERVAL, 0);
 	}
 }
@@ -0,0 +1,76 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.zonal;
+
+import java.util.Map;
+
+import org.apache.commons.configuration.*;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.contrib.dvrp.run.DvrpModule;
+import org.matsim.contrib.dvrp.trafficmonitoring.VrpTravelTimeModules;
+import org.matsim.contrib.taxi.optimizer.DefaultTaxiOptimizerProvider;
+import org.matsim.contrib.taxi.optimizer.DefaultTaxiOptimizerProvider.OptimizerType;
+import org.matsim.contrib.taxi.run.TaxiConfigGroup;
+import org.matsim.contrib.zone.*;
+import org.matsim.contrib.zone.util.*;
+import org.matsim.contrib.zone.skims.ZoneToZoneTravelMatrix;
+import org.matsim.core.router.util.TravelTime;
+
+import com.google.inject.*;
+import com.google.inject.name.Named;
+
+/**
+ * Creates the {@link ZoneToZoneTravelMatrix} used by {@link ZonalTaxiOptimizer} for rebalancing. The matrix is meant to
+ * be bound as a singleton and registered as a controler listener, so it is computed once per run and then only
+ * updated after each iteration, instead of being recomputed by each QSim.
+ */
+public class ZonalTaxiTravelMatrixProvider implements Provider<ZoneToZoneTravelMatrix> {
+	private static final int TRAVEL_MATRIX_TIME_BIN_SIZE = 3600;
+	private static final int TRAVEL_MATRIX_MAX_TIME = 30 * 3600;
+
+	public static boolean isRebalancingEnabled(TaxiConfigGroup taxiCfg) {
+		Configuration optimizerConfig = new MapConfiguration(taxiCfg.getOptimizerConfigGroup().getParams());
+		return OptimizerType.valueOf(optimizerConfig.getString(DefaultTaxiOptimizerProvider.TYPE)) == OptimizerType.ZONAL
+				&& optimizerConfig.getInt(ZonalTaxiOptimizerParams.REBALANCING_INTERVAL, 0) > 0;
+	}
+
+	private final TaxiConfigGroup taxiCfg;
+	private final Network network;
+	private final TravelTime travelTime;
+
+	@Inject
+	public ZonalTaxiTravelMatrixProvider(TaxiConfigGroup taxiCfg, @Named(DvrpModule.DVRP_ROUTING) Network network,
+			@Named(VrpTravelTimeModules.DVRP_ESTIMATED) TravelTime travelTime) {
+		this.taxiCfg = taxiCfg;
+		this.network = network;
+		this.travelTime = travelTime;
+	}
+
+	@Override
+	public ZoneToZoneTravelMatrix get() {
+		ZonalTaxiOptimizerParams params = new ZonalTaxiOptimizerParams(
+				new MapConfiguration(taxiCfg.getOptimizerConfigGroup().getParams()));
+		Map<Id<Zone>, Zone> zones = Zones.readZones(params.zonesXmlFile, params.zonesShpFile);
+		ZoneFinder zoneFinder = new ZoneFinderImpl(zones, params.expansionDistance);
+		return new ZoneToZoneTravelMatrix(network, new ZonalSystemImpl(zones, zoneFinder, network), travelTime,
+				TRAVEL_MATRIX_TIME_BIN_SIZE, TRAVEL_MATRIX_MAX_TIME, Runtime.getRuntime().availableProcessors(), null);
+	}
+}
@@ -27,8 +27,10 @@ import org.matsim.contrib.dvrp.passenger.PassengerRequestCreator;
 import org.matsim.contrib.dvrp.run.DvrpModule;
 import org.matsim.contrib.dvrp.vrpagent.VrpAgentLogic.DynActionCreator;
 import org.matsim.contrib.taxi.optimizer.*;
+import org.matsim.contrib.taxi.optimizer.zonal.ZonalTaxiTravelMatrixProvider;
 import org.matsim.contrib.taxi.passenger.TaxiRequestCreator;
 import org.matsim.contrib.taxi.vrpagent.TaxiActionCreator;
+import org.matsim.contrib.zone.skims.ZoneToZoneTravelMatrix;
 import org.matsim.core.config.Config;
 
 import com.google.inject.*;
@@ -44,10 +46,24 @@ public class TaxiModule extends DvrpModule {
 		this(DefaultTaxiOptimizerProvider.class);
 	}
 
+	@Inject
+	private TaxiConfigGroup taxiCfg;
+
 	public TaxiModule(Class<? extends Provider<? extends TaxiOptimizer>> providerClass) {
 		super(createModuleForQSimPlugin(providerClass), TaxiOptimizer.class);
 	}
 
+	@Override
+	public void install() {
+		super.install();
+
+		if (ZonalTaxiTravelMatrixProvider.isRebalancingEnabled(taxiCfg)) {
+			// one matrix per run, updated after each iteration
+			bind(ZoneToZoneTravelMatrix.class).toProvider(ZonalTaxiTravelMatrixProvider.class).in(Singleton.class);
+			addControlerListenerBinding().to(ZoneToZoneTravelMatrix.class);
+		}
+	}
+
 	@Provides
 	@Singleton
 	private Fleet provideVehicles(@Named(DvrpModule.DVRP_ROUTING) Network network, Config config,
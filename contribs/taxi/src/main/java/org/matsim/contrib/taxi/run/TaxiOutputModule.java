@@ -39,6 +39,8 @@ public class TaxiOutputModule extends AbstractModule {
 
 		if (taxiCfg.getTimeProfiles()) {
 			addMobsimListenerBinding().toProvider(TaxiStatusTimeProfileCollectorProvider.class);
+			bind(TaxiTimeBinStats.class).asEagerSingleton();
+			addControlerListenerBinding().to(TaxiTimeBinStats.class);
 			// add more time profiles if necessary
 		}
 	}
@@ -258,6 +258,25 @@ public class TaxiScheduler implements TaxiScheduleInquiry {
 		}
 	}
 
+	/**
+	 * Sends an idle vehicle (see {@link #isIdle(Vehicle)}) to toLink, where it waits for further requests.
+	 */
+	public void relocateEmptyVehicle(Vehicle vehicle, Link toLink) {
+		Schedule schedule = vehicle.getSchedule();
+		TaxiStayTask stayTask = (TaxiStayTask)schedule.getCurrentTask();
+		if (stayTask.getTaskIdx() != schedule.getTaskCount() - 1) {
+			throw new IllegalStateException("The current STAY task is not last. Not possible without prebooking");
+		}
+
+		if (stayTask.getLink() == toLink) {
+			return;// already there
+		}
+
+		VrpPathWithTravelData vrpPath = calcPath(stayTask.getLink(), toLink, timer.getTimeOfDay());
+		scheduleDrive(schedule, stayTask, vrpPath);
+		appendStayTask(vehicle);
+	}
+
 	/**
 	 * If diversion is enabled, this method must be called after scheduling in order to make sure that no vehicle is
 	 * moving aimlessly.
@@ -0,0 +1,74 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.util.stats;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.contrib.dvrp.util.StreamingFleetStats;
+import org.matsim.contrib.taxi.run.TaxiModule;
+import org.matsim.contrib.taxi.vrpagent.TaxiActionCreator;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.events.AfterMobsimEvent;
+import org.matsim.core.controler.listener.AfterMobsimListener;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.network.io.MatsimNetworkReader;
+
+import com.google.inject.Inject;
+
+/**
+ * Taxi fleet statistics in 15-minute time bins, computed from events in a single pass (see
+ * {@link StreamingFleetStats}). Unlike {@link TaxiStatsCalculator}, does not need the vehicle schedules, so it can be
+ * also run offline, with the network and events files as input.
+ */
+public class TaxiTimeBinStats extends StreamingFleetStats implements AfterMobsimListener {
+	private static final int MAX_OCCUPANCY = 4;
+	private static final int TIME_BIN_SIZE = 900;
+
+	private final OutputDirectoryHierarchy controlerIO;
+
+	@Inject
+	public TaxiTimeBinStats(Network network, EventsManager events, OutputDirectoryHierarchy controlerIO) {
+		this(network, controlerIO);
+		events.addHandler(this);
+	}
+
+	private TaxiTimeBinStats(Network network, OutputDirectoryHierarchy controlerIO) {
+		super(network, TaxiModule.TAXI_MODE, TaxiActionCreator.STAY_ACTIVITY_TYPE, MAX_OCCUPANCY, TIME_BIN_SIZE);
+		this.controlerIO = controlerIO;
+	}
+
+	@Override
+	public void notifyAfterMobsim(AfterMobsimEvent event) {
+		write(controlerIO.getIterationFilename(event.getIteration(), "taxi_time_bin_stats.txt"));
+	}
+
+	/**
+	 * @param args
+	 *            networkFile eventsFile outputFile
+	 */
+	public static void main(String[] args) {
+		Network network = NetworkUtils.createNetwork();
+		new MatsimNetworkReader(network).readFile(args[0]);
+
+		TaxiTimeBinStats stats = new TaxiTimeBinStats(network, null);
+		stats.readEventsFile(args[1]);
+		stats.write(args[2]);
+	}
+}
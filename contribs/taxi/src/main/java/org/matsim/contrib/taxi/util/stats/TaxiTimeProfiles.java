@@ -29,15 +29,13 @@ import org.matsim.contrib.taxi.schedule.TaxiTask.TaxiTaskType;
 import org.matsim.contrib.taxi.util.stats.TimeProfileCollector.ProfileCalculator;
 import org.matsim.contrib.util.LongEnumAdder;
 
-import com.google.common.collect.Iterables;
-
 public class TaxiTimeProfiles {
 	public static ProfileCalculator createIdleVehicleCounter(final Fleet fleet, final ScheduleInquiry scheduleInquiry) {
+		final Vehicle[] vehicles = ScheduleInquiries.toVehicleArray(fleet);
 		return new TimeProfiles.SingleValueProfileCalculator("Idle") {
 			@Override
 			public Integer calcValue() {
-				return Iterables.size(Iterables.filter(fleet.getVehicles().values(),
-						ScheduleInquiries.createIsIdle(scheduleInquiry)));
+				return ScheduleInquiries.countIdle(scheduleInquiry, vehicles);
 			}
 		};
 	}
@@ -50,5 +50,8 @@ public class AssignmentTaxiOptimizerIT {
 		params.put(AssignmentTaxiOptimizerParams.NEAREST_VEHICLES_LIMIT, 10 + "");
 		params.put(AbstractTaxiOptimizerParams.REOPTIMIZATION_TIME_STEP, 10 + "");
 		runBenchmark(variants, params, benchmark);
+
+		params.put(AssignmentTaxiOptimizerParams.SPARSE_ASSIGNMENT, true + "");
+		runBenchmark(variants, params, benchmark);
 	}
 }
@@ -0,0 +1,118 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.assignment;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AuctionAlgorithmTest {
+	private static final double EPSILON = 0.01;
+
+	@Test
+	public void testSmallProblem() {
+		// 2 persons, 3 objects; person 0 prefers object 0, but person 1 can only take object 0
+		int[] arcStarts = { 0, 3, 4 };
+		int[] arcObjects = { 0, 1, 2, 0 };
+		double[] arcCosts = { 1, 2, 5, 1 };
+		double[] unassignedCosts = { 100, 100 };
+
+		int[] assignments = new AuctionAlgorithm(3, arcStarts, arcObjects, arcCosts, unassignedCosts, EPSILON)
+				.execute(null);
+		assertArrayEquals(new int[] { 1, 0 }, assignments);
+	}
+
+	@Test
+	public void testUnassignedPerson() {
+		// both persons want object 0; leaving person 1 unassigned is cheaper than moving person 0 to object 1
+		int[] arcStarts = { 0, 2, 3 };
+		int[] arcObjects = { 0, 1, 0 };
+		double[] arcCosts = { 1, 50, 2 };
+		double[] unassignedCosts = { 100, 10 };
+
+		int[] assignments = new AuctionAlgorithm(2, arcStarts, arcObjects, arcCosts, unassignedCosts, EPSILON)
+				.execute(null);
+		assertArrayEquals(new int[] { 0, -1 }, assignments);
+	}
+
+	@Test
+	public void testCompareWithHungarianAlgorithm() {
+		Random random = new Random(1234);
+		for (int run = 0; run < 50; run++) {
+			int persons = 1 + random.nextInt(30);
+			int objects = persons + random.nextInt(30);
+			double[][] costMatrix = createCostMatrix(random, persons, objects);
+
+			double hungarianCost = calcCost(costMatrix, new HungarianAlgorithm(costMatrix).execute());
+
+			AuctionAlgorithm auction = createDenseAuction(costMatrix);
+			double auctionCost = calcCost(costMatrix, auction.execute(null));
+			assertEquals(hungarianCost, auctionCost, persons * EPSILON);
+
+			// warm start with the prices of a slightly different problem
+			double[] prices = auction.getPrices();
+			costMatrix[random.nextInt(persons)][random.nextInt(objects)] = random.nextInt(1000);
+			costMatrix[random.nextInt(persons)][random.nextInt(objects)] = random.nextInt(1000);
+
+			hungarianCost = calcCost(costMatrix, new HungarianAlgorithm(costMatrix).execute());
+			auctionCost = calcCost(costMatrix, createDenseAuction(costMatrix).execute(prices));
+			assertEquals(hungarianCost, auctionCost, persons * EPSILON);
+		}
+	}
+
+	private static double[][] createCostMatrix(Random random, int persons, int objects) {
+		double[][] costMatrix = new double[persons][objects];
+		for (int i = 0; i < persons; i++) {
+			for (int j = 0; j < objects; j++) {
+				costMatrix[i][j] = random.nextInt(1000);
+			}
+		}
+		return costMatrix;
+	}
+
+	private static AuctionAlgorithm createDenseAuction(double[][] costMatrix) {
+		int persons = costMatrix.length;
+		int objects = costMatrix[0].length;
+		int[] arcStarts = new int[persons + 1];
+		int[] arcObjects = new int[persons * objects];
+		double[] arcCosts = new double[persons * objects];
+		double[] unassignedCosts = new double[persons];
+		for (int i = 0; i < persons; i++) {
+			arcStarts[i + 1] = arcStarts[i] + objects;
+			for (int j = 0; j < objects; j++) {
+				arcObjects[i * objects + j] = j;
+				arcCosts[i * objects + j] = costMatrix[i][j];
+			}
+			unassignedCosts[i] = 1e6;// all persons must be assigned
+		}
+		return new AuctionAlgorithm(objects, arcStarts, arcObjects, arcCosts, unassignedCosts, EPSILON);
+	}
+
+	private static double calcCost(double[][] costMatrix, int[] assignments) {
+		double cost = 0;
+		for (int i = 0; i < assignments.length; i++) {
+			assertTrue(assignments[i] >= 0);
+			cost += costMatrix[i][assignments[i]];
+		}
+		return cost;
+	}
+}
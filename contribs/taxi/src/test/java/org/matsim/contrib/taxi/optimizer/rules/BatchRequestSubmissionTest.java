@@ -0,0 +1,152 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.rules;
+
+import java.util.*;
+
+import org.apache.commons.configuration.MapConfiguration;
+import org.junit.*;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.dvrp.data.*;
+import org.matsim.contrib.dvrp.router.TimeAsTravelDisutility;
+import org.matsim.contrib.dvrp.schedule.Task;
+import org.matsim.contrib.taxi.data.TaxiRequest;
+import org.matsim.contrib.taxi.optimizer.TaxiOptimizerContext;
+import org.matsim.contrib.taxi.optimizer.rules.RuleBasedTaxiOptimizer.Goal;
+import org.matsim.contrib.taxi.run.TaxiConfigGroup;
+import org.matsim.contrib.taxi.schedule.TaxiPickupTask;
+import org.matsim.contrib.taxi.scheduler.*;
+import org.matsim.core.mobsim.framework.MobsimTimer;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.util.*;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+
+/**
+ * Prebooked requests submitted in one batch must be registered in the same way as the ones submitted one by one, so
+ * that the vehicle-initiated scheduling (which looks up the nearest requests in the registry) makes the same
+ * assignments.
+ */
+public class BatchRequestSubmissionTest {
+	private static final int VEHICLE_COUNT = 3;
+	private static final int REQUEST_COUNT = 10;
+
+	private Network network;
+	private List<Link> links;
+
+	@Before
+	public void init() {
+		network = NetworkUtils.createNetwork();
+		int size = 5;
+		Node[][] grid = new Node[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				grid[x][y] = NetworkUtils.createAndAddNode(network, Id.createNodeId(x + "_" + y),
+						new Coord(x * 500, y * 500));
+			}
+		}
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (x + 1 < size) {
+					addLinks(grid[x][y], grid[x + 1][y]);
+				}
+				if (y + 1 < size) {
+					addLinks(grid[x][y], grid[x][y + 1]);
+				}
+			}
+		}
+		links = new ArrayList<>(network.getLinks().values());
+	}
+
+	private void addLinks(Node a, Node b) {
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(a.getId() + "-" + b.getId()), a, b, 500, 10, 1000, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(b.getId() + "-" + a.getId()), b, a, 500, 10, 1000, 1);
+	}
+
+	@Test
+	public void testBatchSubmissionEqualsSingleSubmissions() {
+		Map<Id<Vehicle>, Id<Request>> singleAssignments = prebookAndSchedule(false);
+		Map<Id<Vehicle>, Id<Request>> batchAssignments = prebookAndSchedule(true);
+
+		Assert.assertEquals(VEHICLE_COUNT, singleAssignments.size());
+		Assert.assertEquals(singleAssignments, batchAssignments);
+	}
+
+	private Map<Id<Vehicle>, Id<Request>> prebookAndSchedule(boolean batch) {
+		Random random = new Random(7);
+		FleetImpl fleet = new FleetImpl();
+		for (int v = 0; v < VEHICLE_COUNT; v++) {
+			fleet.addVehicle(new VehicleImpl(Id.create(v, Vehicle.class), randomLink(random), 1, 0, 30 * 3600));
+		}
+
+		MobsimTimer timer = new MobsimTimer();
+		timer.setTime(0);
+		TravelTime travelTime = new FreeSpeedTravelTime();
+		TravelDisutility travelDisutility = new TimeAsTravelDisutility(travelTime);
+		TaxiScheduler scheduler = new TaxiScheduler(new TaxiConfigGroup(), network, fleet, timer,
+				new TaxiSchedulerParams(true, false, 120, 60, 1), travelTime, travelDisutility);
+		TaxiOptimizerContext optimContext = new TaxiOptimizerContext(fleet, network, timer, travelTime,
+				travelDisutility, scheduler);
+
+		// vehicle-initiated scheduling among the 2 nearest requests, looked up in the request registry
+		Map<String, Object> params = new HashMap<>();
+		params.put(RuleBasedTaxiOptimizerParams.GOAL, Goal.MIN_PICKUP_TIME.name());
+		params.put(RuleBasedTaxiOptimizerParams.NEAREST_REQUESTS_LIMIT, 2);
+		params.put(RuleBasedTaxiOptimizerParams.NEAREST_VEHICLES_LIMIT, 2);
+		params.put(RuleBasedTaxiOptimizerParams.CELL_SIZE, 1000);
+		RuleBasedTaxiOptimizer optimizer = new RuleBasedTaxiOptimizer(optimContext,
+				new RuleBasedTaxiOptimizerParams(new MapConfiguration(params)));
+
+		for (Vehicle vehicle : fleet.getVehicles().values()) {
+			optimizer.nextTask(vehicle);// starts the schedule (and registers the idle vehicle)
+		}
+
+		List<TaxiRequest> requests = new ArrayList<>();
+		for (int r = 0; r < REQUEST_COUNT; r++) {
+			requests.add(new TaxiRequest(Id.create(r, Request.class), null, randomLink(random), randomLink(random),
+					600 + r * 60, 0));
+		}
+
+		if (batch) {
+			optimizer.requestsSubmitted(requests);
+		} else {
+			for (TaxiRequest request : requests) {
+				optimizer.requestSubmitted(request);
+			}
+		}
+		optimizer.notifyMobsimBeforeSimStep(new MobsimBeforeSimStepEvent<>(null, 0));
+
+		Map<Id<Vehicle>, Id<Request>> assignments = new HashMap<>();
+		for (Vehicle vehicle : fleet.getVehicles().values()) {
+			for (Task task : vehicle.getSchedule().getTasks()) {
+				if (task instanceof TaxiPickupTask) {
+					assignments.put(vehicle.getId(), ((TaxiPickupTask)task).getRequest().getId());
+				}
+			}
+		}
+		Assert.assertEquals(assignments.size(), new HashSet<>(assignments.values()).size());
+		return assignments;
+	}
+
+	private Link randomLink(Random random) {
+		return links.get(random.nextInt(links.size()));
+	}
+}
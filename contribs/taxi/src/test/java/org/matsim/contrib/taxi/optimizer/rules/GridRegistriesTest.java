@@ -0,0 +1,229 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.rules;
+
+import java.util.*;
+
+import org.junit.*;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.dvrp.data.*;
+import org.matsim.contrib.dvrp.schedule.ScheduleInquiry;
+import org.matsim.contrib.taxi.data.TaxiRequest;
+import org.matsim.contrib.taxi.schedule.TaxiStayTask;
+import org.matsim.contrib.util.distance.DistanceUtils;
+import org.matsim.contrib.zone.*;
+import org.matsim.core.network.NetworkUtils;
+
+/**
+ * Compares {@link IdleTaxiGridRegistry} and {@link UnplannedRequestGridRegistry} with the brute-force k nearest items
+ * and with the candidates selected by the zonal registries they replaced (all items from the zones nearest to the
+ * node, added zone by zone until at least k items are collected).
+ */
+public class GridRegistriesTest {
+	private static final double CELL_SIZE = 500;
+
+	private final Random random = new Random(42);
+	private Network network;
+	private List<Node> nodes;
+	private ZonalSystem zonalSystem;
+	private Map<Id<Zone>, List<Zone>> zonesSortedByDistance;
+
+	@Before
+	public void init() {
+		network = NetworkUtils.createNetwork();
+		for (int i = 0; i < 400; i++) {
+			NetworkUtils.createAndAddNode(network, Id.createNodeId(i),
+					new Coord(random.nextDouble() * 5000, random.nextDouble() * 4000));
+		}
+		nodes = new ArrayList<>(network.getNodes().values());
+		for (int i = 0; i < nodes.size(); i++) {
+			// links are needed by vehicles and requests only
+			Node from = nodes.get(i);
+			Node to = nodes.get((i + 1) % nodes.size());
+			NetworkUtils.createAndAddLink(network, Id.createLinkId(i), from, to, 100, 10, 1000, 1);
+		}
+
+		zonalSystem = new SquareGridSystem(network, CELL_SIZE);
+		zonesSortedByDistance = ZonalSystems.initZonesByDistance(zonalSystem.getZones());
+	}
+
+	@Test
+	public void testNearestRequests() {
+		UnplannedRequestGridRegistry registry = new UnplannedRequestGridRegistry(network, CELL_SIZE);
+		List<TaxiRequest> requests = new ArrayList<>();
+		for (int i = 0; i < 150; i++) {
+			Link link = randomLink();
+			TaxiRequest request = new TaxiRequest(Id.create(i, Request.class), null, link, 0, 0);
+			requests.add(request);
+			registry.addRequest(request);
+		}
+
+		// scheduled requests are removed
+		for (Iterator<TaxiRequest> iter = requests.iterator(); iter.hasNext();) {
+			TaxiRequest request = iter.next();
+			if (random.nextInt(3) == 0) {
+				registry.removeRequest(request);
+				iter.remove();
+			}
+		}
+		Assert.assertEquals(requests.size(), registry.getRequestCount());
+
+		Map<TaxiRequest, Coord> coords = new IdentityHashMap<>();
+		for (TaxiRequest r : requests) {
+			coords.put(r, r.getFromLink().getFromNode().getCoord());
+		}
+
+		for (int k : new int[] { 1, 5, 20, requests.size(), requests.size() + 10 }) {
+			for (int t = 0; t < 50; t++) {
+				Node node = randomNode();
+				List<TaxiRequest> nearest = registry.findNearestRequests(node, k);
+				assertNearest(node, k, coords, nearest);
+			}
+		}
+	}
+
+	@Test
+	public void testNearestIdleVehicles() {
+		final Set<Vehicle> busyVehicles = new HashSet<>();
+		ScheduleInquiry scheduleInquiry = new ScheduleInquiry() {
+			@Override
+			public boolean isIdle(Vehicle vehicle) {
+				return !busyVehicles.contains(vehicle);
+			}
+		};
+		IdleTaxiGridRegistry registry = new IdleTaxiGridRegistry(network, CELL_SIZE, scheduleInquiry);
+
+		List<Vehicle> vehicles = new ArrayList<>();
+		for (int i = 0; i < 150; i++) {
+			Link link = randomLink();
+			Vehicle vehicle = new VehicleImpl(Id.create(i, Vehicle.class), link, 4, 0, 24 * 3600);
+			vehicle.getSchedule().addTask(new TaxiStayTask(0, 24 * 3600, link));
+			vehicle.getSchedule().nextTask();
+			vehicles.add(vehicle);
+			registry.addVehicle(vehicle);
+		}
+
+		for (Iterator<Vehicle> iter = vehicles.iterator(); iter.hasNext();) {
+			Vehicle vehicle = iter.next();
+			int r = random.nextInt(4);
+			if (r == 0) {// dispatched
+				registry.removeVehicle(vehicle);
+				iter.remove();
+			} else if (r == 1) {// still registered, but no longer idle (filtered out on lookup)
+				busyVehicles.add(vehicle);
+			}
+		}
+		Assert.assertEquals(vehicles.size(), registry.getVehicleCount());
+
+		Map<Vehicle, Coord> coords = new IdentityHashMap<>();
+		for (Vehicle v : vehicles) {
+			if (!busyVehicles.contains(v)) {
+				coords.put(v, ((TaxiStayTask)v.getSchedule().getCurrentTask()).getLink().getToNode().getCoord());
+			}
+		}
+		Assert.assertEquals(coords.size(), registry.getVehicles().size());
+
+		for (int k : new int[] { 1, 5, 20, coords.size(), vehicles.size() + 10 }) {
+			for (int t = 0; t < 50; t++) {
+				Node node = randomNode();
+				List<Vehicle> nearest = registry.findNearestVehicles(node, k);
+				assertNearest(node, k, coords, nearest);
+			}
+		}
+	}
+
+	private <T> void assertNearest(Node node, int k, Map<T, Coord> coords, List<T> nearest) {
+		List<T> bruteForce = sortByDistance(node, coords, coords.keySet());
+		List<T> zonalCandidates = sortByDistance(node, coords, findZonalCandidates(node, k, coords));
+
+		if (k >= coords.size()) {
+			// both the old and the new registries return all (idle) items
+			Assert.assertEquals(new HashSet<>(bruteForce), new HashSet<>(nearest));
+			Assert.assertEquals(new HashSet<>(bruteForce), new HashSet<>(zonalCandidates));
+			return;
+		}
+
+		// exactly the k nearest ones, in the order of distance (items at the same location may come in any order)
+		Assert.assertEquals(k, nearest.size());
+		Assert.assertEquals(k, new HashSet<>(nearest).size());
+		for (int i = 0; i < k; i++) {
+			Assert.assertTrue(coords.containsKey(nearest.get(i)));
+			Assert.assertEquals(distance(node, coords.get(bruteForce.get(i))), distance(node, coords.get(nearest.get(i))),
+					1e-9);
+		}
+
+		// the old zonal selection always contains at least k items, none of them closer than the exact ones
+		Assert.assertTrue(zonalCandidates.size() >= k);
+		for (int i = 0; i < k; i++) {
+			Assert.assertTrue(distance(node, coords.get(nearest.get(i))) <= distance(node,
+					coords.get(zonalCandidates.get(i))));
+		}
+	}
+
+	// the selection made by the removed IdleTaxiZonalRegistry/UnplannedRequestZonalRegistry
+	private <T> List<T> findZonalCandidates(Node node, int minCount, Map<T, Coord> coords) {
+		Map<Id<Zone>, List<T>> itemsInZones = new HashMap<>();
+		for (Map.Entry<T, Coord> e : coords.entrySet()) {
+			Id<Zone> zoneId = zonalSystem.getZone(NetworkUtils.getNearestNode(network, e.getValue())).getId();
+			List<T> items = itemsInZones.get(zoneId);
+			if (items == null) {
+				items = new ArrayList<>();
+				itemsInZones.put(zoneId, items);
+			}
+			items.add(e.getKey());
+		}
+
+		List<T> candidates = new ArrayList<>();
+		for (Zone z : zonesSortedByDistance.get(zonalSystem.getZone(node).getId())) {
+			List<T> items = itemsInZones.get(z.getId());
+			if (items != null) {
+				candidates.addAll(items);
+			}
+			if (candidates.size() >= minCount) {
+				break;
+			}
+		}
+		return candidates;
+	}
+
+	private <T> List<T> sortByDistance(final Node node, final Map<T, Coord> coords, Collection<T> items) {
+		List<T> sorted = new ArrayList<>(items);
+		Collections.sort(sorted, new Comparator<T>() {
+			@Override
+			public int compare(T o1, T o2) {
+				return Double.compare(distance(node, coords.get(o1)), distance(node, coords.get(o2)));
+			}
+		});
+		return sorted;
+	}
+
+	private static double distance(Node node, Coord coord) {
+		return DistanceUtils.calculateDistance(node.getCoord(), coord);
+	}
+
+	private Node randomNode() {
+		return nodes.get(random.nextInt(nodes.size()));
+	}
+
+	private Link randomLink() {
+		return network.getLinks().get(Id.createLinkId(random.nextInt(nodes.size())));
+	}
+}
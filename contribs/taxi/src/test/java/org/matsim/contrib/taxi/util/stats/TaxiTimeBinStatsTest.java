@@ -0,0 +1,99 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.util.stats;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.events.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.dvrp.vrpagent.VrpAgentLogic;
+import org.matsim.contrib.taxi.run.TaxiModule;
+import org.matsim.contrib.taxi.vrpagent.TaxiActionCreator;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.OutputDirectoryHierarchy.OverwriteFileSetting;
+import org.matsim.core.controler.events.AfterMobsimEvent;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class TaxiTimeBinStatsTest {
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testStatsWrittenAfterMobsim() throws IOException {
+		Network network = NetworkUtils.createNetwork();
+		Node a = NetworkUtils.createAndAddNode(network, Id.createNodeId("a"), new Coord(0, 0));
+		Node b = NetworkUtils.createAndAddNode(network, Id.createNodeId("b"), new Coord(1000, 0));
+		Link link = NetworkUtils.createAndAddLink(network, Id.createLinkId("ab"), a, b, 1000, 10, 1000, 1);
+
+		EventsManager events = EventsUtils.createEventsManager();
+		OutputDirectoryHierarchy controlerIO = new OutputDirectoryHierarchy(utils.getOutputDirectory(),
+				OverwriteFileSetting.overwriteExistingFiles);
+		controlerIO.createIterationDirectory(0);
+		TaxiTimeBinStats stats = new TaxiTimeBinStats(network, events, controlerIO);
+
+		Id<Person> driver = Id.createPersonId("taxi_1");
+		Id<Person> passenger = Id.createPersonId("p1");
+		Id<Vehicle> vehicle = Id.createVehicleId("taxi_1");
+		events.processEvent(new ActivityEndEvent(0, driver, link.getId(), null,
+				VrpAgentLogic.BEFORE_SCHEDULE_ACTIVITY_TYPE));
+		events.processEvent(new ActivityStartEvent(0, driver, link.getId(), null, TaxiActionCreator.STAY_ACTIVITY_TYPE));
+		events.processEvent(new PersonDepartureEvent(100, passenger, link.getId(), TaxiModule.TAXI_MODE));
+		events.processEvent(new ActivityEndEvent(300, driver, link.getId(), null, TaxiActionCreator.STAY_ACTIVITY_TYPE));
+		events.processEvent(new PersonEntersVehicleEvent(400, passenger, vehicle));
+		events.processEvent(new LinkEnterEvent(500, vehicle, link.getId()));
+		events.processEvent(new PersonLeavesVehicleEvent(1000, passenger, vehicle));
+		events.processEvent(new ActivityStartEvent(1000, driver, link.getId(), null,
+				VrpAgentLogic.AFTER_SCHEDULE_ACTIVITY_TYPE));
+
+		stats.notifyAfterMobsim(new AfterMobsimEvent(null, 0));
+
+		List<String[]> lines = new ArrayList<>();
+		try (BufferedReader reader = IOUtils
+				.getBufferedReader(controlerIO.getIterationFilename(0, "taxi_time_bin_stats.txt"))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line.split("\t", -1));
+			}
+		}
+
+		// 15-min bins, occupancy up to 4 passengers
+		assertEquals(3, lines.size());
+		assertEquals(15, lines.get(0).length);
+		assertEquals("4_pax", lines.get(0)[6]);
+
+		// idle 0-300, empty 300-400, occupied 400-900; wait time 300 s
+		assertArrayEquals(new String[] { "0", "0.33", "0.11", "0.56", "0.00", "0.00", "0.00", "0", "1000", "1000",
+				"1", "300.0", "300", "300", "300" }, lines.get(1));
+		// occupied 900-1000
+		assertArrayEquals(new String[] { "900", "0.00", "0.00", "0.11", "0.00", "0.00", "0.00", "0", "0", "0", "0",
+				"", "", "", "" }, lines.get(2));
+	}
+}
@@ -53,6 +53,18 @@ public class CalcLinkStats {
 			this.volumes = linksVolumes.clone();
 			this.ttimes = linksTTimes.clone();
 		}
+
+		LinkData deepCopy() {
+			double[][] volumesCopy = new double[this.volumes.length][];
+			for (int i = 0; i < this.volumes.length; i++) {
+				volumesCopy[i] = this.volumes[i].clone();
+			}
+			double[][] ttimesCopy = new double[this.ttimes.length][];
+			for (int i = 0; i < this.ttimes.length; i++) {
+				ttimesCopy[i] = this.ttimes[i].clone();
+			}
+			return new LinkData(volumesCopy, ttimesCopy);
+		}
 	}
 
 	private double volScaleFactor = 1.0;
@@ -86,6 +98,25 @@ public class CalcLinkStats {
 		this.volScaleFactor = vol_scale_factor;
 	}
 
+	private CalcLinkStats(final CalcLinkStats other) {
+		this.network = other.network;
+		this.nofHours = other.nofHours;
+		this.volScaleFactor = other.volScaleFactor;
+		this.count = other.count;
+		this.linkData = new TreeMap<>();
+		for (Map.Entry<Id<Link>, LinkData> e : other.linkData.entrySet()) {
+			this.linkData.put(e.getKey(), e.getValue().deepCopy());
+		}
+	}
+
+	/**
+	 * @return a deep copy of the data collected so far, e.g. to write it in the background while
+	 * new data is already collected.
+	 */
+	public CalcLinkStats createSnapshot() {
+		return new CalcLinkStats(this);
+	}
+
 	public void addData(final VolumesAnalyzer analyzer, final TravelTime ttimes) {
 		this.count++;
 		// TODO verify ttimes has hourly timeBin-Settings
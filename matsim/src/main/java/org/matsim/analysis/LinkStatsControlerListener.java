@@ -22,6 +22,7 @@ package org.matsim.analysis;
 import org.matsim.api.core.v01.TransportMode;
 import org.matsim.core.config.groups.ControlerConfigGroup;
 import org.matsim.core.config.groups.LinkStatsConfigGroup;
+import org.matsim.core.controler.AsyncOutputService;
 import org.matsim.core.controler.Controler;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
 import org.matsim.core.controler.events.IterationEndsEvent;
@@ -45,6 +46,7 @@ final class LinkStatsControlerListener implements IterationEndsListener, Iterati
 	@Inject private VolumesAnalyzer volumes;
 	@Inject private OutputDirectoryHierarchy controlerIO;
 	@Inject private Map<String, TravelTime> travelTime;
+	@com.google.inject.Inject(optional = true) private AsyncOutputService outputService = null;
     private int iterationsUsed = 0;
 	private boolean doReset = false;
 
@@ -58,7 +60,19 @@ final class LinkStatsControlerListener implements IterationEndsListener, Iterati
 		}
 
 		if (createLinkStatsInIteration(iteration)) {
-			linkStats.writeFile(this.controlerIO.getIterationFilename(iteration, Controler.FILENAME_LINKSTATS));
+			final String filename = this.controlerIO.getIterationFilename(iteration, Controler.FILENAME_LINKSTATS);
+			if (this.outputService != null && this.outputService.isAsynchronous()) {
+				// the data is reset in the next iteration, so writing in the background needs a copy
+				final CalcLinkStats snapshot = linkStats.createSnapshot();
+				this.outputService.submit("linkstats of iteration " + iteration, new Runnable() {
+					@Override
+					public void run() {
+						snapshot.writeFile(filename);
+					}
+				});
+			} else {
+				linkStats.writeFile(filename);
+			}
 			this.doReset = true;
 		}
 	}
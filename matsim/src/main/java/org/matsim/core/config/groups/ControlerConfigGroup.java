@@ -53,10 +53,12 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	/*package*/ static final String EVENTS_FILE_FORMAT = "eventsFileFormat";
 	private static final String SNAPSHOT_FORMAT = "snapshotFormat";
 	private static final String WRITE_EVENTS_INTERVAL = "writeEventsInterval";
+	private static final String WRITE_EVENTS_ASYNCHRONOUSLY = "writeEventsAsynchronously";
 	private static final String WRITE_PLANS_INTERVAL = "writePlansInterval";
 	private static final String OVERWRITE_FILE = "overwriteFiles";
 	private static final String CREATE_GRAPHS = "createGraphs";
 	private static final String DUMP_DATA_AT_END = "dumpDataAtEnd";
+	private static final String OUTPUT_WRITING_THREADS = "outputWritingThreads";
 
 	/*package*/ static final String MOBSIM = "mobsim";
 	public enum MobsimType {qsim, JDEQSim}
@@ -76,12 +78,14 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	private Set<EventsFileFormat> eventsFileFormats = Collections.unmodifiableSet(EnumSet.of(EventsFileFormat.xml));
 
 	private int writeEventsInterval=10;
+	private boolean writeEventsAsynchronously = false;
 	private int writePlansInterval=10;
 	private Set<String> snapshotFormat = Collections.emptySet();
 	private String mobsim = MobsimType.qsim.toString();
 	private int writeSnapshotsInterval = 1;
 	private boolean createGraphs = true;
 	private boolean dumpDataAtEnd = true;
+	private int outputWritingThreads = 0;
 	private OverwriteFileSetting overwriteFileSetting = OverwriteFileSetting.failIfDirectoryExists;
 
 	public ControlerConfigGroup() {
@@ -98,6 +102,8 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 				"Multiple values can be specified separated by commas (',').");
 		map.put(WRITE_EVENTS_INTERVAL, "iterationNumber % writeEventsInterval == 0 defines in which iterations events are written " +
 				"to a file. `0' disables events writing completely.");
+		map.put(WRITE_EVENTS_ASYNCHRONOUSLY, "Default=false. If enabled, events files are encoded into reusable buffers and written " +
+				"(and compressed) on a separate thread, so writing events does not slow down the events handling.");
 		map.put(WRITE_PLANS_INTERVAL, "iterationNumber % writePlansInterval == 0 defines (hopefully) in which iterations plans are " +
 				"written to a file. `0' disables plans writing completely.  Some plans in early iterations are always written");
 		map.put(LINKTOLINK_ROUTING_ENABLED, "Default=false. If enabled, the router takes travel times needed for turning moves into account."
@@ -117,10 +123,12 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 				"Depending on the chosen mobsim, you'll have to add additional config modules to configure the corresponding mobsim." + IOUtils.NATIVE_NEWLINE + "\t\t" +
 				"For 'qsim', add a module 'qsim' to the config.");
 		
-		map.put(SNAPSHOT_FORMAT, "Comma-separated list of visualizer output file formats. `transims', `googleearth', and `otfvis'.");
+		map.put(SNAPSHOT_FORMAT, "Comma-separated list of visualizer output file formats. `transims', `binary', `googleearth', and `otfvis'.");
 		map.put(WRITE_SNAPSHOTS_INTERVAL, "iterationNumber % " + WRITE_SNAPSHOTS_INTERVAL + " == 0 defines in which iterations snapshots are written " +
 				"to a file. `0' disables snapshots writing completely");
 		map.put(DUMP_DATA_AT_END, "true if at the end of a run, plans, network, config etc should be dumped to a file");
+		map.put(OUTPUT_WRITING_THREADS, "Default=0. Number of threads used to write plans, link stats, counts comparisons and the final output " +
+				"in the background while the next iteration proceeds. `0' writes everything synchronously.");
 		return map;
 	}
 
@@ -265,6 +273,16 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 		this.writeEventsInterval = writeEventsInterval;
 	}
 
+	@StringGetter( WRITE_EVENTS_ASYNCHRONOUSLY )
+	public boolean isWriteEventsAsynchronously() {
+		return this.writeEventsAsynchronously;
+	}
+
+	@StringSetter( WRITE_EVENTS_ASYNCHRONOUSLY )
+	public void setWriteEventsAsynchronously(final boolean writeEventsAsynchronously) {
+		this.writeEventsAsynchronously = writeEventsAsynchronously;
+	}
+
 	@StringGetter( MOBSIM )
 	public String getMobsim() {
 		return this.mobsim;
@@ -339,6 +357,15 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	public void setDumpDataAtEnd(boolean dumpDataAtEnd) {
 		this.dumpDataAtEnd = dumpDataAtEnd;
 	}
+	@StringGetter(OUTPUT_WRITING_THREADS)
+	public int getOutputWritingThreads() {
+		return this.outputWritingThreads;
+	}
+
+	@StringSetter(OUTPUT_WRITING_THREADS)
+	public void setOutputWritingThreads(final int outputWritingThreads) {
+		this.outputWritingThreads = outputWritingThreads;
+	}
 	// ---
 	int writePlansUntilIteration = 1 ;
 	public int getWritePlansUntilIteration() {
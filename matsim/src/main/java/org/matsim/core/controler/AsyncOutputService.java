@@ -0,0 +1,251 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * AsyncOutputService.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.controler;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.controler.events.ShutdownEvent;
+import org.matsim.core.controler.listener.ShutdownListener;
+
+/**
+ * Runs output writers (plans dumps, link stats, counts comparisons, ...) on background threads, so the
+ * next iteration does not have to wait until large files are written.
+ * <p></p>
+ * Writers submitted to this service must only work on data that is not modified by the following
+ * iterations, i.e. on an immutable snapshot of the data to write, or they have to be waited for (see
+ * {@link #awaitCompletion(Future)}) before the data is modified again. All outstanding writes are waited
+ * for at shutdown, before any other shutdown listener is called, and failures of a writer are re-thrown
+ * at the latest then.
+ * <p></p>
+ * If {@link ControlerConfigGroup#getOutputWritingThreads()} is 0 (the default), submitted writers are
+ * executed directly on the calling thread.
+ */
+@Singleton
+public final class AsyncOutputService implements ShutdownListener {
+
+	private final static Logger log = Logger.getLogger(AsyncOutputService.class);
+
+	private final static Future<?> DONE = createDoneFuture();
+
+	private final ExecutorService executor;
+	private final List<PendingWrite> pendingWrites = new ArrayList<>();
+
+	@Inject
+	AsyncOutputService(final ControlerConfigGroup config) {
+		this(config.getOutputWritingThreads());
+	}
+
+	public AsyncOutputService(final int numberOfThreads) {
+		if (numberOfThreads > 0) {
+			this.executor = Executors.newFixedThreadPool(numberOfThreads, new WriterThreadFactory());
+		} else {
+			this.executor = null;
+		}
+	}
+
+	/**
+	 * @return true if submitted writers are executed on background threads, i.e. if they need a copy of the data
+	 */
+	public boolean isAsynchronous() {
+		return this.executor != null && !this.executor.isShutdown();
+	}
+
+	/**
+	 * Schedules the writer for execution. The writer must not access data that is modified afterwards.
+	 *
+	 * @param description short description of what is written, used for logging
+	 * @param writer the writer doing the actual work
+	 * @return the handle to wait for this writer with {@link #awaitCompletion(Future)}
+	 */
+	public Future<?> submit(final String description, final Runnable writer) {
+		if (!isAsynchronous()) {
+			writer.run();
+			return DONE;
+		}
+		synchronized (this.pendingWrites) {
+			removeFinishedWrites();
+			Future<?> future = this.executor.submit(writer);
+			this.pendingWrites.add(new PendingWrite(description, future));
+			return future;
+		}
+	}
+
+	/**
+	 * @return the number of writers that have been submitted but are not yet finished
+	 */
+	public int getNumberOfPendingWrites() {
+		synchronized (this.pendingWrites) {
+			removeFinishedWrites();
+			return this.pendingWrites.size();
+		}
+	}
+
+	/**
+	 * Blocks until all writers submitted so far are finished.
+	 *
+	 * @throws RuntimeException if any of the writers failed
+	 */
+	public void awaitCompletion() {
+		List<PendingWrite> writes;
+		synchronized (this.pendingWrites) {
+			writes = new ArrayList<>(this.pendingWrites);
+			this.pendingWrites.clear();
+		}
+		if (!writes.isEmpty()) {
+			log.info("waiting for " + writes.size() + " output writers to finish...");
+		}
+		RuntimeException failure = null;
+		for (PendingWrite write : writes) {
+			RuntimeException writeFailure = await(write);
+			if (failure == null) {
+				failure = writeFailure;
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Blocks until the given writer is finished.
+	 *
+	 * @param write the handle returned by {@link #submit(String, Runnable)}
+	 * @throws RuntimeException if the writer failed
+	 */
+	public void awaitCompletion(final Future<?> write) {
+		PendingWrite pendingWrite = null;
+		synchronized (this.pendingWrites) {
+			for (Iterator<PendingWrite> iter = this.pendingWrites.iterator(); iter.hasNext(); ) {
+				PendingWrite candidate = iter.next();
+				if (candidate.future == write) {
+					pendingWrite = candidate;
+					iter.remove();
+					break;
+				}
+			}
+		}
+		if (pendingWrite != null) {
+			RuntimeException failure = await(pendingWrite);
+			if (failure != null) {
+				throw failure;
+			}
+		}
+	}
+
+	/**
+	 * @return the failure of the writer, or null if it finished normally
+	 */
+	private static RuntimeException await(final PendingWrite write) {
+		try {
+			write.future.get();
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("interrupted while waiting for output writer: " + write.description, e);
+		} catch (ExecutionException e) {
+			log.error("output writer failed: " + write.description, e.getCause());
+			return new RuntimeException("output writer failed: " + write.description, e.getCause());
+		}
+	}
+
+	/**
+	 * Waits for all outstanding writers and stops the background threads. Writers submitted after
+	 * this call are executed directly on the calling thread.
+	 */
+	public void close() {
+		try {
+			awaitCompletion();
+		} finally {
+			if (this.executor != null) {
+				this.executor.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Registered as the first core shutdown listener to be called, so all other shutdown listeners find the
+	 * output of the iterations completely written.
+	 */
+	@Override
+	public void notifyShutdown(final ShutdownEvent event) {
+		awaitCompletion();
+	}
+
+	private void removeFinishedWrites() {
+		for (Iterator<PendingWrite> iter = this.pendingWrites.iterator(); iter.hasNext(); ) {
+			PendingWrite write = iter.next();
+			if (write.future.isDone()) {
+				try {
+					write.future.get();
+					iter.remove();
+				} catch (InterruptedException | ExecutionException e) {
+					// keep it, so the failure is reported in awaitCompletion()
+				}
+			}
+		}
+	}
+
+	private static Future<?> createDoneFuture() {
+		FutureTask<Void> done = new FutureTask<>(new Runnable() {
+			@Override
+			public void run() {
+			}
+		}, null);
+		done.run();
+		return done;
+	}
+
+	private static final class PendingWrite {
+		final String description;
+		final Future<?> future;
+
+		PendingWrite(final String description, final Future<?> future) {
+			this.description = description;
+			this.future = future;
+		}
+	}
+
+	private static final class WriterThreadFactory implements ThreadFactory {
+		private final AtomicInteger counter = new AtomicInteger(0);
+
+		@Override
+		public Thread newThread(final Runnable r) {
+			Thread thread = new Thread(r, "OutputWriter-" + this.counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
@@ -53,9 +53,10 @@ class NewControler extends AbstractController implements ControlerI {
 	private final Collection<Provider<MobsimListener>> mobsimListeners;
 	private final ControlerConfigGroup controlerConfigGroup;
 	private final OutputDirectoryHierarchy outputDirectoryHierarchy;
+	private final AsyncOutputService outputService;
 
 	@Inject
-	NewControler(Config config, ControlerListenerManagerImpl controlerListenerManager, MatsimServices matsimServices, IterationStopWatch stopWatch, PrepareForSim prepareForSim, EventsHandling eventsHandling, PlansDumping plansDumping, PlansReplanning plansReplanning, Provider<Mobsim> mobsimProvider, PlansScoring plansScoring, TerminationCriterion terminationCriterion, DumpDataAtEnd dumpDataAtEnd, Set<ControlerListener> controlerListenersDeclaredByModules, Collection<Provider<MobsimListener>> mobsimListeners, ControlerConfigGroup controlerConfigGroup, OutputDirectoryHierarchy outputDirectoryHierarchy) {
+	NewControler(Config config, ControlerListenerManagerImpl controlerListenerManager, MatsimServices matsimServices, IterationStopWatch stopWatch, PrepareForSim prepareForSim, EventsHandling eventsHandling, PlansDumping plansDumping, PlansReplanning plansReplanning, Provider<Mobsim> mobsimProvider, PlansScoring plansScoring, TerminationCriterion terminationCriterion, DumpDataAtEnd dumpDataAtEnd, Set<ControlerListener> controlerListenersDeclaredByModules, Collection<Provider<MobsimListener>> mobsimListeners, ControlerConfigGroup controlerConfigGroup, OutputDirectoryHierarchy outputDirectoryHierarchy, AsyncOutputService outputService) {
 		super(controlerListenerManager, stopWatch, matsimServices);
 		this.config = config;
 		this.config.addConfigConsistencyChecker(new ConfigConsistencyCheckerImpl());
@@ -71,12 +72,25 @@ class NewControler extends AbstractController implements ControlerI {
 		this.mobsimListeners = mobsimListeners;
 		this.controlerConfigGroup = controlerConfigGroup;
 		this.outputDirectoryHierarchy = outputDirectoryHierarchy;
+		this.outputService = outputService;
 	}
 
 	@Override
 	public final void run() {
 		super.setupOutputDirectory(outputDirectoryHierarchy);
-		super.run(this.config);
+		try {
+			super.run(this.config);
+		} catch (RuntimeException | Error e) {
+			// a failing writer must not hide the original failure
+			try {
+				this.outputService.close();
+			} catch (RuntimeException closeFailure) {
+				e.addSuppressed(closeFailure);
+			}
+			throw e;
+		}
+		// in case some listener submitted output after the core listeners were shut down
+		this.outputService.close();
 	}
 
 	@Override
@@ -96,6 +110,8 @@ class NewControler extends AbstractController implements ControlerI {
 		this.addCoreControlerListener(this.plansScoring);
 		this.addCoreControlerListener(this.plansReplanning);
 		this.addCoreControlerListener(this.plansDumping);
+		this.addCoreControlerListener(this.outputService);
+		// only a shutdown listener; waits for the output of the iterations before all the other shutdown listeners are called
 		this.addCoreControlerListener(this.eventsHandling);
 		// must be last being added (=first being executed)
 
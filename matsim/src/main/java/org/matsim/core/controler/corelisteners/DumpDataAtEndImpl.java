@@ -31,6 +31,7 @@ import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigWriter;
 import org.matsim.core.config.groups.ControlerConfigGroup;
 import org.matsim.core.config.groups.VspExperimentalConfigGroup;
+import org.matsim.core.controler.AsyncOutputService;
 import org.matsim.core.controler.Controler;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
 import org.matsim.core.controler.events.ShutdownEvent;
@@ -108,6 +109,9 @@ final class DumpDataAtEndImpl implements DumpDataAtEnd, ShutdownListener {
 	@Inject
 	private OutputDirectoryHierarchy controlerIO;
 
+	@Inject(optional = true)
+	private AsyncOutputService outputService = null;
+
 	@Inject
 	private Map<Class<?>,AttributeConverter<?>> attributeConverters = Collections.emptyMap();
 
@@ -116,21 +120,57 @@ final class DumpDataAtEndImpl implements DumpDataAtEnd, ShutdownListener {
 		if ( event.isUnexpected() ) {
 			return ;
 		}
-		dumpPlans();
-		dumpNetwork();
+		// nothing is modified anymore after the last iteration, so the files can be written in parallel without copying the data
+		submit("output plans", new Runnable() {
+			@Override public void run() { dumpPlans(); }
+		});
+		submit("output network", new Runnable() {
+			@Override public void run() { dumpNetwork(); }
+		});
 		dumpConfig();
-		dumpFacilities();
-		dumpNetworkChangeEvents();
-
-		dumpTransitSchedule();
-		dumpTransitVehicles();
-		dumpVehicles();
-		dumpHouseholds();
-		dumpLanes();
-		dumpCounts();
+		submit("output facilities", new Runnable() {
+			@Override public void run() { dumpFacilities(); }
+		});
+		submit("output network change events", new Runnable() {
+			@Override public void run() { dumpNetworkChangeEvents(); }
+		});
+
+		submit("output transit schedule", new Runnable() {
+			@Override public void run() { dumpTransitSchedule(); }
+		});
+		submit("output vehicles", new Runnable() {
+			@Override public void run() {
+				dumpTransitVehicles();
+				dumpVehicles();
+			}
+		});
+		submit("output households", new Runnable() {
+			@Override public void run() { dumpHouseholds(); }
+		});
+		submit("output lanes", new Runnable() {
+			@Override public void run() { dumpLanes(); }
+		});
+		submit("output counts", new Runnable() {
+			@Override public void run() { dumpCounts(); }
+		});
 
 		if (!event.isUnexpected() && vspConfig.isWritingOutputEvents()) {
-			dumpOutputEvents();
+			submit("output events", new Runnable() {
+				@Override public void run() { dumpOutputEvents(); }
+			});
+		}
+
+		// the shutdown listeners called after this one may read the output files
+		if (outputService != null) {
+			outputService.awaitCompletion();
+		}
+	}
+
+	private void submit(final String description, final Runnable dumper) {
+		if (outputService != null) {
+			outputService.submit(description, dumper);
+		} else {
+			dumper.run();
 		}
 	}
 
@@ -36,6 +36,7 @@ import org.matsim.core.controler.events.ShutdownEvent;
 import org.matsim.core.controler.listener.BeforeMobsimListener;
 import org.matsim.core.controler.listener.IterationEndsListener;
 import org.matsim.core.controler.listener.ShutdownListener;
+import org.matsim.core.events.algorithms.AsyncEventWriterXML;
 import org.matsim.core.events.algorithms.EventWriter;
 import org.matsim.core.events.algorithms.EventWriterXML;
 
@@ -59,6 +60,8 @@ final class EventsHandlingImpl implements EventsHandling, BeforeMobsimListener,
 
 	private int writeMoreUntilIteration;
 
+	private boolean writeEventsAsynchronously;
+
 	@Inject
 	EventsHandlingImpl(
 			final EventsManager eventsManager,
@@ -69,6 +72,7 @@ final class EventsHandlingImpl implements EventsHandling, BeforeMobsimListener,
 		this.eventsFileFormats = config.getEventsFileFormats();
 		this.controlerIO = controlerIO;
 		this.writeMoreUntilIteration = config.getWriteEventsUntilIteration() ;
+		this.writeEventsAsynchronously = config.isWriteEventsAsynchronously();
 	}
 
 	@Override
@@ -81,8 +85,12 @@ final class EventsHandlingImpl implements EventsHandling, BeforeMobsimListener,
 			for (EventsFileFormat format : eventsFileFormats) {
 				switch (format) {
 				case xml:
-					this.eventWriters.add(new EventWriterXML(controlerIO.getIterationFilename(event.getIteration(), 
-							Controler.FILENAME_EVENTS_XML)));
+					String filename = controlerIO.getIterationFilename(event.getIteration(), Controler.FILENAME_EVENTS_XML);
+					if (this.writeEventsAsynchronously) {
+						this.eventWriters.add(new AsyncEventWriterXML(filename));
+					} else {
+						this.eventWriters.add(new EventWriterXML(filename));
+					}
 					break;
 				default:
 					log.warn("Unknown events file format specified: " + format.toString() + ".");
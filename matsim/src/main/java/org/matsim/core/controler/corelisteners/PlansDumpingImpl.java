@@ -20,6 +20,8 @@
 
 package org.matsim.core.controler.corelisteners;
 
+import java.util.concurrent.Future;
+
 import org.apache.log4j.Logger;
 import org.matsim.analysis.IterationStopWatch;
 import org.matsim.api.core.v01.network.Network;
@@ -27,8 +29,11 @@ import org.matsim.api.core.v01.population.Population;
 import org.matsim.api.core.v01.population.PopulationWriter;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.controler.AsyncOutputService;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.events.AfterMobsimEvent;
 import org.matsim.core.controler.events.BeforeMobsimEvent;
+import org.matsim.core.controler.listener.AfterMobsimListener;
 import org.matsim.core.controler.listener.BeforeMobsimListener;
 
 import com.google.inject.Inject;
@@ -42,11 +47,15 @@ import org.matsim.core.utils.geometry.transformations.TransformationFactory;
  * ({@link ControlerConfigGroup#getWritePlansInterval()} as well as in the first
  * iteration, just in case someone might check that the replanning worked
  * correctly in the first iteration.
+ * <p></p>
+ * With background output writing, the plans are written while the mobsim runs (which does not modify
+ * them, agents copy their plan before changing it), and waited for after the mobsim, before scoring
+ * and replanning modify them again.
  *
  * @author mrieser
  */
 @Singleton
-final class PlansDumpingImpl implements PlansDumping, BeforeMobsimListener {
+final class PlansDumpingImpl implements PlansDumping, BeforeMobsimListener, AfterMobsimListener {
 
 	static final private Logger log = Logger.getLogger(PlansDumpingImpl.class);
 
@@ -55,10 +64,13 @@ final class PlansDumpingImpl implements PlansDumping, BeforeMobsimListener {
 	@Inject private Population population;
 	@Inject private IterationStopWatch stopwatch;
 	@Inject private OutputDirectoryHierarchy controlerIO;
+	@Inject(optional = true) private AsyncOutputService outputService = null;
 	private int writePlansInterval ;
 
 	private int writeMoreUntilIteration;
 
+	private Future<?> pendingDump = null;
+
 	@Inject
 	PlansDumpingImpl(ControlerConfigGroup config) {
 		this.writePlansInterval = config.getWritePlansInterval();
@@ -75,9 +87,12 @@ final class PlansDumpingImpl implements PlansDumping, BeforeMobsimListener {
 			log.info("dumping plans...");
 			final String inputCRS = config.plans().getInputCRS();
 			final String internalCRS = config.global().getCoordinateSystem();
+			final String filename = controlerIO.getIterationFilename(event.getIteration(), "plans.xml.gz");
+			final boolean writeInBackground = outputService != null && outputService.isAsynchronous();
 
+			final PopulationWriter writer;
 			if ( inputCRS == null ) {
-				new PopulationWriter(population, network).write(controlerIO.getIterationFilename(event.getIteration(), "plans.xml.gz"));
+				writer = new PopulationWriter(population, network);
 			}
 			else {
 				log.info( "re-projecting population from "+internalCRS+" back to "+inputCRS+" for export" );
@@ -87,11 +102,32 @@ final class PlansDumpingImpl implements PlansDumping, BeforeMobsimListener {
 								internalCRS,
 								inputCRS );
 
-				new PopulationWriter(transformation, population, network).write(controlerIO.getIterationFilename(event.getIteration(), "plans.xml.gz"));
+				writer = new PopulationWriter(transformation, population, network);
+			}
+			final Runnable dump = new Runnable() {
+				@Override
+				public void run() {
+					writer.write(filename);
+					log.info("finished plans dump.");
+				}
+			};
+			if (writeInBackground) {
+				pendingDump = outputService.submit("plans of iteration " + event.getIteration(), dump);
+			} else {
+				dump.run();
 			}
-			log.info("finished plans dump.");
 			stopwatch.endOperation("dump all plans");
 		}
 	}
 
+	@Override
+	public void notifyAfterMobsim(final AfterMobsimEvent event) {
+		if (pendingDump != null) {
+			stopwatch.beginOperation("wait for plans dump");
+			outputService.awaitCompletion(pendingDump);
+			pendingDump = null;
+			stopwatch.endOperation("wait for plans dump");
+		}
+	}
+
 }
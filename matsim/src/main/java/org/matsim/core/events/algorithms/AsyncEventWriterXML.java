@@ -0,0 +1,491 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * AsyncEventWriterXML.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.algorithms;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.PersonMoneyEvent;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Writes events in the same xml format as {@link EventWriterXML}, but moves the actual writing
+ * (and gzip compression, if the filename ends with ".gz") to a dedicated I/O thread.
+ * <p></p>
+ * Events are encoded directly as UTF-8 into a small, fixed pool of reusable byte buffers. The
+ * frequent core event types (link enter/leave, activity start/end, departure, arrival etc.) are
+ * written straight from their fields, without creating the attribute map of {@link Event#getAttributes()};
+ * all other events go through their attribute map. Once a buffer is full, it is handed over to the I/O thread and the next free buffer is taken from the pool.
+ * If no buffer is free, the calling thread blocks until the I/O thread has caught up (back-pressure),
+ * so memory consumption stays bounded even if the disk is slower than the mobsim.
+ * <p></p>
+ * The produced files are byte-identical to the ones written by {@link EventWriterXML}.
+ */
+public final class AsyncEventWriterXML implements EventWriter, BasicEventHandler {
+
+	public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+	public static final int DEFAULT_BUFFER_COUNT = 2;
+
+	private static final byte[] HEADER = ascii("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<events version=\"1.0\">\n");
+	private static final byte[] FOOTER = ascii("</events>");
+	private static final byte[] EVENT_START = ascii("\t<event ");
+	private static final byte[] EVENT_END = ascii(" />\n");
+	private static final byte[] ATTR_START = ascii("=\"");
+	private static final byte[] ATTR_END = ascii("\" ");
+	private static final byte[] NULL = ascii("null");
+	private static final byte[] LT = ascii("&lt;");
+	private static final byte[] GT = ascii("&gt;");
+	private static final byte[] QUOT = ascii("&quot;");
+	private static final byte[] AMP = ascii("&amp;");
+
+	private static final byte[] TIME = attributeStart(Event.ATTRIBUTE_TIME);
+	private static final byte[] TYPE = attributeStart(Event.ATTRIBUTE_TYPE);
+	private static final byte[] PERSON = attributeStart(ActivityEndEvent.ATTRIBUTE_PERSON);
+	private static final byte[] VEHICLE = attributeStart(LinkEnterEvent.ATTRIBUTE_VEHICLE);
+	private static final byte[] LINK = attributeStart(LinkEnterEvent.ATTRIBUTE_LINK);
+	private static final byte[] FACILITY = attributeStart(ActivityEndEvent.ATTRIBUTE_FACILITY);
+	private static final byte[] ACT_TYPE = attributeStart(ActivityEndEvent.ATTRIBUTE_ACTTYPE);
+	private static final byte[] LEG_MODE = attributeStart(PersonDepartureEvent.ATTRIBUTE_LEGMODE);
+	private static final byte[] NETWORK_MODE = attributeStart(VehicleEntersTrafficEvent.ATTRIBUTE_NETWORKMODE);
+	private static final byte[] POSITION = attributeStart(VehicleEntersTrafficEvent.ATTRIBUTE_POSITION);
+	private static final byte[] AMOUNT = attributeStart(PersonMoneyEvent.ATTRIBUTE_AMOUNT);
+
+	/** the longest byte sequence a single char can produce, i.e. "&quot;" */
+	private static final int MAX_BYTES_PER_CHAR = 6;
+
+	/** the largest value for which {@link Double#toString(double)} does not use the scientific notation */
+	private static final double MAX_PLAIN_DOUBLE = 1e7;
+
+	private static final Chunk POISON_PILL = new Chunk(0);
+
+	private final BlockingQueue<Chunk> freeChunks;
+	private final BlockingQueue<Chunk> fullChunks;
+	private final Thread ioThread;
+	private final IOWorker ioWorker;
+
+	private final byte[] digits = new byte[20];
+	private Chunk current;
+	private boolean closed = false;
+
+	public AsyncEventWriterXML(final String outfilename) {
+		this(outfilename, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFER_COUNT);
+	}
+
+	/**
+	 * @param outfilename the file to write to, gzip-compressed if it ends with ".gz"
+	 * @param bufferSize the size of a single buffer in bytes
+	 * @param bufferCount the number of buffers, must be at least 2 so encoding and writing can overlap
+	 */
+	public AsyncEventWriterXML(final String outfilename, final int bufferSize, final int bufferCount) {
+		if (bufferCount < 2) {
+			throw new IllegalArgumentException("At least 2 buffers are required, got " + bufferCount);
+		}
+		if (bufferSize < 64) {
+			throw new IllegalArgumentException("Buffer size must be at least 64 bytes, got " + bufferSize);
+		}
+		this.freeChunks = new ArrayBlockingQueue<>(bufferCount);
+		this.fullChunks = new ArrayBlockingQueue<>(bufferCount + 1);
+		for (int i = 1; i < bufferCount; i++) {
+			this.freeChunks.add(new Chunk(bufferSize));
+		}
+		this.current = new Chunk(bufferSize);
+
+		this.ioWorker = new IOWorker(IOUtils.getOutputStream(outfilename), this.fullChunks, this.freeChunks);
+		this.ioThread = new Thread(this.ioWorker, "AsyncEventWriterXML");
+		this.ioThread.setDaemon(true);
+		this.ioThread.start();
+
+		write(HEADER);
+	}
+
+	@Override
+	public void closeFile() {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		write(FOOTER);
+		handOver(this.current);
+		this.current = null;
+		try {
+			this.fullChunks.put(POISON_PILL);
+			this.ioThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		checkIOException();
+	}
+
+	@Override
+	public void reset(final int iter) {
+	}
+
+	@Override
+	public void handleEvent(final Event event) {
+		checkIOException();
+		write(EVENT_START);
+		if (!writeFields(event)) {
+			Map<String, String> attr = event.getAttributes();
+			for (Map.Entry<String, String> entry : attr.entrySet()) {
+				writeUnencoded(entry.getKey());
+				write(ATTR_START);
+				writeEncoded(entry.getValue());
+				write(ATTR_END);
+			}
+		}
+		write(EVENT_END);
+	}
+
+	/**
+	 * Writes the attributes of the frequent core event types directly from their fields, in the same order
+	 * (and with the same optional attributes) as their {@link Event#getAttributes()}. Only the exact classes
+	 * are handled, as subclasses may override <code>getAttributes()</code>.
+	 *
+	 * @return false if the event has to be written from its attribute map
+	 */
+	private boolean writeFields(final Event event) {
+		Class<? extends Event> type = event.getClass();
+		if (type == LinkEnterEvent.class) {
+			LinkEnterEvent e = (LinkEnterEvent) event;
+			writeTimeAndType(e);
+			writeAttribute(VEHICLE, e.getVehicleId());
+			writeAttribute(LINK, e.getLinkId());
+		} else if (type == LinkLeaveEvent.class) {
+			LinkLeaveEvent e = (LinkLeaveEvent) event;
+			writeTimeAndType(e);
+			writeAttribute(VEHICLE, e.getVehicleId());
+			writeAttribute(LINK, e.getLinkId());
+		} else if (type == ActivityStartEvent.class) {
+			ActivityStartEvent e = (ActivityStartEvent) event;
+			writeTimeAndType(e);
+			writeActivityAttributes(e.getPersonId(), e.getLinkId(), e.getFacilityId(), e.getActType());
+		} else if (type == ActivityEndEvent.class) {
+			ActivityEndEvent e = (ActivityEndEvent) event;
+			writeTimeAndType(e);
+			writeActivityAttributes(e.getPersonId(), e.getLinkId(), e.getFacilityId(), e.getActType());
+		} else if (type == PersonDepartureEvent.class) {
+			PersonDepartureEvent e = (PersonDepartureEvent) event;
+			writeTimeAndType(e);
+			writeLegAttributes(e.getPersonId(), e.getLinkId(), e.getLegMode());
+		} else if (type == PersonArrivalEvent.class) {
+			PersonArrivalEvent e = (PersonArrivalEvent) event;
+			writeTimeAndType(e);
+			writeLegAttributes(e.getPersonId(), e.getLinkId(), e.getLegMode());
+		} else if (type == PersonEntersVehicleEvent.class) {
+			PersonEntersVehicleEvent e = (PersonEntersVehicleEvent) event;
+			writeTimeAndType(e);
+			writeAttribute(PERSON, e.getPersonId());
+			writeAttribute(VEHICLE, e.getVehicleId());
+		} else if (type == PersonLeavesVehicleEvent.class) {
+			PersonLeavesVehicleEvent e = (PersonLeavesVehicleEvent) event;
+			writeTimeAndType(e);
+			writeAttribute(PERSON, e.getPersonId());
+			writeAttribute(VEHICLE, e.getVehicleId());
+		} else if (type == VehicleEntersTrafficEvent.class) {
+			VehicleEntersTrafficEvent e = (VehicleEntersTrafficEvent) event;
+			writeTimeAndType(e);
+			writeTrafficAttributes(e.getPersonId(), e.getLinkId(), e.getVehicleId(), e.getNetworkMode(), e.getRelativePositionOnLink());
+		} else if (type == VehicleLeavesTrafficEvent.class) {
+			VehicleLeavesTrafficEvent e = (VehicleLeavesTrafficEvent) event;
+			writeTimeAndType(e);
+			writeTrafficAttributes(e.getPersonId(), e.getLinkId(), e.getVehicleId(), e.getNetworkMode(), e.getRelativePositionOnLink());
+		} else if (type == PersonStuckEvent.class) {
+			PersonStuckEvent e = (PersonStuckEvent) event;
+			writeTimeAndType(e);
+			if (e.getLinkId() != null) {
+				writeAttribute(LINK, e.getLinkId());
+			}
+			if (e.getLegMode() != null) {
+				writeAttribute(LEG_MODE, e.getLegMode());
+			}
+			writeAttribute(PERSON, e.getPersonId());
+		} else if (type == PersonMoneyEvent.class) {
+			PersonMoneyEvent e = (PersonMoneyEvent) event;
+			writeTimeAndType(e);
+			writeAttribute(AMOUNT, e.getAmount());
+			writeAttribute(PERSON, e.getPersonId());
+		} else {
+			return false;
+		}
+		return true;
+	}
+
+	private void writeTimeAndType(final Event event) {
+		writeAttribute(TIME, event.getTime());
+		writeAttribute(TYPE, event.getEventType());
+	}
+
+	private void writeActivityAttributes(final Id<?> personId, final Id<?> linkId, final Id<?> facilityId, final String actType) {
+		writeAttribute(PERSON, personId);
+		if (linkId != null) {
+			writeAttribute(LINK, linkId);
+		}
+		if (facilityId != null) {
+			writeAttribute(FACILITY, facilityId);
+		}
+		writeAttribute(ACT_TYPE, actType);
+	}
+
+	private void writeLegAttributes(final Id<?> personId, final Id<?> linkId, final String legMode) {
+		writeAttribute(PERSON, personId);
+		writeAttribute(LINK, linkId);
+		if (legMode != null) {
+			writeAttribute(LEG_MODE, legMode);
+		}
+	}
+
+	private void writeTrafficAttributes(final Id<?> driverId, final Id<?> linkId, final Id<?> vehicleId, final String networkMode, final double position) {
+		writeAttribute(PERSON, driverId);
+		writeAttribute(LINK, linkId);
+		if (vehicleId != null) {
+			writeAttribute(VEHICLE, vehicleId);
+		}
+		if (networkMode != null) {
+			writeAttribute(NETWORK_MODE, networkMode);
+		}
+		writeAttribute(POSITION, position);
+	}
+
+	private void writeAttribute(final byte[] start, final Id<?> id) {
+		// Id.toString() returns the String the id was created from, i.e. nothing is allocated here
+		writeAttribute(start, id == null ? null : id.toString());
+	}
+
+	private void writeAttribute(final byte[] start, final String value) {
+		write(start);
+		writeEncoded(value);
+		write(ATTR_END);
+	}
+
+	private void writeAttribute(final byte[] start, final double value) {
+		write(start);
+		writeDouble(value);
+		write(ATTR_END);
+	}
+
+	/**
+	 * Produces the same characters as {@link Double#toString(double)}. Integral values (the usual case for
+	 * event times and relative positions) are formatted into a reusable digit buffer; only other values are
+	 * formatted with <code>Double.toString</code>.
+	 */
+	private void writeDouble(final double value) {
+		double abs = Math.abs(value);
+		if (abs < MAX_PLAIN_DOUBLE && abs == Math.rint(abs)) {
+			long number = (long) abs;
+			int pos = this.digits.length;
+			this.digits[--pos] = '0';
+			this.digits[--pos] = '.';
+			do {
+				this.digits[--pos] = (byte) ('0' + (number % 10));
+				number /= 10;
+			} while (number > 0);
+			if (Double.doubleToRawLongBits(value) < 0) {
+				this.digits[--pos] = '-';
+			}
+			int len = this.digits.length - pos;
+			ensureCapacity(len);
+			System.arraycopy(this.digits, pos, this.current.data, this.current.length, len);
+			this.current.length += len;
+		} else {
+			writeUnencoded(Double.toString(value));
+		}
+	}
+
+	private void writeUnencoded(final String str) {
+		int len = str.length();
+		for (int i = 0; i < len; i++) {
+			i += writeChar(str.charAt(i), str, i);
+		}
+	}
+
+	private void writeEncoded(final String str) {
+		if (str == null) {
+			write(NULL);
+			return;
+		}
+		int len = str.length();
+		for (int i = 0; i < len; i++) {
+			char ch = str.charAt(i);
+			if (ch == '<') {
+				write(LT);
+			} else if (ch == '>') {
+				write(GT);
+			} else if (ch == '\"') {
+				write(QUOT);
+			} else if (ch == '&') {
+				write(AMP);
+			} else {
+				i += writeChar(ch, str, i);
+			}
+		}
+	}
+
+	/**
+	 * Encodes a single char as UTF-8.
+	 *
+	 * @return the number of additionally consumed chars (1 for a surrogate pair, 0 otherwise)
+	 */
+	private int writeChar(final char ch, final String str, final int index) {
+		ensureCapacity(MAX_BYTES_PER_CHAR);
+		byte[] data = this.current.data;
+		int pos = this.current.length;
+		int consumed = 0;
+		if (ch < 0x80) {
+			data[pos++] = (byte) ch;
+		} else if (ch < 0x800) {
+			data[pos++] = (byte) (0xc0 | (ch >> 6));
+			data[pos++] = (byte) (0x80 | (ch & 0x3f));
+		} else if (Character.isHighSurrogate(ch) && index + 1 < str.length() && Character.isLowSurrogate(str.charAt(index + 1))) {
+			int cp = Character.toCodePoint(ch, str.charAt(index + 1));
+			data[pos++] = (byte) (0xf0 | (cp >> 18));
+			data[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+			data[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+			data[pos++] = (byte) (0x80 | (cp & 0x3f));
+			consumed = 1;
+		} else if (Character.isSurrogate(ch)) {
+			// unpaired surrogate, same replacement as the default UTF-8 encoder
+			data[pos++] = '?';
+		} else {
+			data[pos++] = (byte) (0xe0 | (ch >> 12));
+			data[pos++] = (byte) (0x80 | ((ch >> 6) & 0x3f));
+			data[pos++] = (byte) (0x80 | (ch & 0x3f));
+		}
+		this.current.length = pos;
+		return consumed;
+	}
+
+	private void write(final byte[] bytes) {
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, this.current.data, this.current.length, bytes.length);
+		this.current.length += bytes.length;
+	}
+
+	private void ensureCapacity(final int bytes) {
+		if (this.current.length + bytes > this.current.data.length) {
+			handOver(this.current);
+			try {
+				this.current = this.freeChunks.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+			checkIOException();
+		}
+	}
+
+	private void handOver(final Chunk chunk) {
+		try {
+			this.fullChunks.put(chunk);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void checkIOException() {
+		IOException e = this.ioWorker.exception;
+		if (e != null) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static byte[] ascii(final String str) {
+		return str.getBytes(IOUtils.CHARSET_UTF8);
+	}
+
+	private static byte[] attributeStart(final String name) {
+		return ascii(name + "=\"");
+	}
+
+	private static final class Chunk {
+		final byte[] data;
+		int length = 0;
+
+		Chunk(final int size) {
+			this.data = new byte[size];
+		}
+	}
+
+	private static final class IOWorker implements Runnable {
+		private final OutputStream out;
+		private final BlockingQueue<Chunk> fullChunks;
+		private final BlockingQueue<Chunk> freeChunks;
+		volatile IOException exception = null;
+
+		IOWorker(final OutputStream out, final BlockingQueue<Chunk> fullChunks, final BlockingQueue<Chunk> freeChunks) {
+			this.out = out;
+			this.fullChunks = fullChunks;
+			this.freeChunks = freeChunks;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					Chunk chunk = this.fullChunks.take();
+					if (chunk == POISON_PILL) {
+						break;
+					}
+					if (this.exception == null) {
+						try {
+							this.out.write(chunk.data, 0, chunk.length);
+						} catch (IOException e) {
+							this.exception = e;
+						}
+					}
+					// always recycle the chunk, otherwise the producer would block forever after an error
+					chunk.length = 0;
+					this.freeChunks.offer(chunk);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				try {
+					this.out.close();
+				} catch (IOException e) {
+					if (this.exception == null) {
+						this.exception = e;
+					}
+				}
+			}
+		}
+	}
+
+}
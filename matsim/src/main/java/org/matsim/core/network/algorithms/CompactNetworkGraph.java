@@ -0,0 +1,265 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactNetworkGraph.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.network.algorithms;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+
+/**
+ * A read-only view of a {@link Network} in compressed sparse row format. Nodes and links are numbered
+ * consecutively, and the out- and in-links of all nodes are stored in a few int arrays, so graph algorithms
+ * can run on large networks without any maps or per-node objects.
+ * <p></p>
+ * The view is a snapshot: changes to the network after creating the view are not reflected.
+ *
+ * @see ParallelNetworkCleaner
+ * @see ParallelNetworkSimplifier
+ */
+public final class CompactNetworkGraph {
+
+	private final Node[] nodes;
+	private final Link[] links;
+	private final int[] linkFromNode;
+	private final int[] linkToNode;
+	private final int[] outOffsets;
+	private final int[] outLinks;
+	private final int[] inOffsets;
+	private final int[] inLinks;
+
+	public CompactNetworkGraph(final Network network) {
+		this.nodes = network.getNodes().values().toArray(new Node[network.getNodes().size()]);
+		this.links = network.getLinks().values().toArray(new Link[network.getLinks().size()]);
+
+		Map<Node, Integer> nodeIndices = new IdentityHashMap<>(this.nodes.length);
+		for (int i = 0; i < this.nodes.length; i++) {
+			nodeIndices.put(this.nodes[i], i);
+		}
+
+		int numberOfLinks = this.links.length;
+		this.linkFromNode = new int[numberOfLinks];
+		this.linkToNode = new int[numberOfLinks];
+		this.outOffsets = new int[this.nodes.length + 1];
+		this.inOffsets = new int[this.nodes.length + 1];
+		for (int l = 0; l < numberOfLinks; l++) {
+			int from = nodeIndices.get(this.links[l].getFromNode());
+			int to = nodeIndices.get(this.links[l].getToNode());
+			this.linkFromNode[l] = from;
+			this.linkToNode[l] = to;
+			this.outOffsets[from + 1]++;
+			this.inOffsets[to + 1]++;
+		}
+		for (int n = 0; n < this.nodes.length; n++) {
+			this.outOffsets[n + 1] += this.outOffsets[n];
+			this.inOffsets[n + 1] += this.inOffsets[n];
+		}
+
+		// counting sort of the links by from- and to-node
+		this.outLinks = new int[numberOfLinks];
+		this.inLinks = new int[numberOfLinks];
+		int[] outPos = Arrays.copyOf(this.outOffsets, this.nodes.length);
+		int[] inPos = Arrays.copyOf(this.inOffsets, this.nodes.length);
+		for (int l = 0; l < numberOfLinks; l++) {
+			this.outLinks[outPos[this.linkFromNode[l]]++] = l;
+			this.inLinks[inPos[this.linkToNode[l]]++] = l;
+		}
+	}
+
+	public int getNumberOfNodes() {
+		return this.nodes.length;
+	}
+
+	public int getNumberOfLinks() {
+		return this.links.length;
+	}
+
+	public Node getNode(final int node) {
+		return this.nodes[node];
+	}
+
+	public Link getLink(final int link) {
+		return this.links[link];
+	}
+
+	public int getFromNode(final int link) {
+		return this.linkFromNode[link];
+	}
+
+	public int getToNode(final int link) {
+		return this.linkToNode[link];
+	}
+
+	public int getOutDegree(final int node) {
+		return this.outOffsets[node + 1] - this.outOffsets[node];
+	}
+
+	public int getInDegree(final int node) {
+		return this.inOffsets[node + 1] - this.inOffsets[node];
+	}
+
+	/**
+	 * @return the index of the i-th out-link of the node, <code>0 &lt;= i &lt; getOutDegree(node)</code>
+	 */
+	public int getOutLink(final int node, final int i) {
+		return this.outLinks[this.outOffsets[node] + i];
+	}
+
+	/**
+	 * @return the index of the i-th in-link of the node, <code>0 &lt;= i &lt; getInDegree(node)</code>
+	 */
+	public int getInLink(final int node, final int i) {
+		return this.inLinks[this.inOffsets[node] + i];
+	}
+
+	/**
+	 * @param modes the modes to look for
+	 * @return for every link, whether it allows at least one of the given modes
+	 */
+	public boolean[] getLinksAllowingAnyMode(final Set<String> modes) {
+		boolean[] allowed = new boolean[this.links.length];
+		for (int l = 0; l < this.links.length; l++) {
+			for (String mode : this.links[l].getAllowedModes()) {
+				if (modes.contains(mode)) {
+					allowed[l] = true;
+					break;
+				}
+			}
+		}
+		return allowed;
+	}
+
+	/**
+	 * Computes the strongly connected components using an iterative variant of Tarjan's algorithm,
+	 * so even very long paths do not overflow the call stack.
+	 *
+	 * @param usableLinks only links set to <code>true</code> are used, or all links if <code>null</code>
+	 * @return the component number of every node, numbered from 0
+	 */
+	public int[] calcStronglyConnectedComponents(final boolean[] usableLinks) {
+		int numberOfNodes = this.nodes.length;
+		int[] index = new int[numberOfNodes];
+		Arrays.fill(index, -1);
+		int[] lowLink = new int[numberOfNodes];
+		int[] component = new int[numberOfNodes];
+		boolean[] onStack = new boolean[numberOfNodes];
+		int[] stack = new int[numberOfNodes];
+		int[] callStack = new int[numberOfNodes];
+		int[] nextOutLink = new int[numberOfNodes];
+		int stackSize = 0;
+		int callStackSize = 0;
+		int counter = 0;
+		int numberOfComponents = 0;
+
+		for (int start = 0; start < numberOfNodes; start++) {
+			if (index[start] != -1) {
+				continue;
+			}
+			index[start] = lowLink[start] = counter++;
+			stack[stackSize++] = start;
+			onStack[start] = true;
+			nextOutLink[start] = this.outOffsets[start];
+			callStack[callStackSize++] = start;
+
+			while (callStackSize > 0) {
+				int v = callStack[callStackSize - 1];
+				if (nextOutLink[v] < this.outOffsets[v + 1]) {
+					int l = this.outLinks[nextOutLink[v]++];
+					if (usableLinks != null && !usableLinks[l]) {
+						continue;
+					}
+					int w = this.linkToNode[l];
+					if (index[w] == -1) {
+						// "recursive" call for w
+						index[w] = lowLink[w] = counter++;
+						stack[stackSize++] = w;
+						onStack[w] = true;
+						nextOutLink[w] = this.outOffsets[w];
+						callStack[callStackSize++] = w;
+					} else if (onStack[w]) {
+						lowLink[v] = Math.min(lowLink[v], index[w]);
+					}
+				} else {
+					// all out-links of v are handled, return to the caller
+					callStackSize--;
+					if (lowLink[v] == index[v]) {
+						int w;
+						do {
+							w = stack[--stackSize];
+							onStack[w] = false;
+							component[w] = numberOfComponents;
+						} while (w != v);
+						numberOfComponents++;
+					}
+					if (callStackSize > 0) {
+						int caller = callStack[callStackSize - 1];
+						lowLink[caller] = Math.min(lowLink[caller], lowLink[v]);
+					}
+				}
+			}
+		}
+		return component;
+	}
+
+	/**
+	 * @return the number of the component containing the most nodes
+	 */
+	public static int getBiggestComponentByNodes(final int[] components) {
+		int[] sizes = new int[components.length + 1];
+		for (int c : components) {
+			sizes[c]++;
+		}
+		return indexOfMax(sizes);
+	}
+
+	/**
+	 * @param usableLinks only links set to <code>true</code> are counted, or all links if <code>null</code>
+	 * @return the number of the component containing the most links, i.e. links having both nodes in the component
+	 */
+	public int getBiggestComponentByLinks(final int[] components, final boolean[] usableLinks) {
+		int[] sizes = new int[components.length + 1];
+		for (int l = 0; l < this.links.length; l++) {
+			if (usableLinks != null && !usableLinks[l]) {
+				continue;
+			}
+			int c = components[this.linkFromNode[l]];
+			if (c == components[this.linkToNode[l]]) {
+				sizes[c]++;
+			}
+		}
+		return indexOfMax(sizes);
+	}
+
+	private static int indexOfMax(final int[] values) {
+		int best = 0;
+		for (int i = 1; i < values.length; i++) {
+			if (values[i] > values[best]) {
+				best = i;
+			}
+		}
+		return best;
+	}
+
+}
@@ -0,0 +1,188 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelNetworkCleaner.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.network.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.api.internal.NetworkRunnable;
+
+/**
+ * Cleans large networks based on a {@link CompactNetworkGraph} and the strongly connected components
+ * computed on it, instead of repeated traversals over the network's maps.
+ * <ul>
+ * <li>{@link #run(Network)} does the same as {@link NetworkCleaner}: only the biggest strongly
+ * connected component (by number of nodes) is kept.</li>
+ * <li>{@link #run(Network, Set)} cleans the network for each of the given modes individually, i.e. the
+ * sub-network of every mode is strongly connected afterwards. Links not being part of the biggest
+ * component of a mode lose that mode, links without any allowed mode are removed. The modes are handled
+ * in parallel.</li>
+ * </ul>
+ * Nodes that lose all their links are removed from the network.
+ */
+public final class ParallelNetworkCleaner implements NetworkRunnable {
+
+	private static final Logger log = Logger.getLogger(ParallelNetworkCleaner.class);
+
+	private int numberOfThreads = 1;
+
+	private final Set<Id<Link>> removedLinks = new HashSet<>();
+	private final Set<Id<Link>> modifiedLinks = new HashSet<>();
+
+	/**
+	 * @param numberOfThreads the maximum number of modes handled at the same time. Each thread needs a few
+	 * int arrays of the size of the network.
+	 */
+	public void setNumberOfThreads(final int numberOfThreads) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("numberOfThreads must be at least 1, got " + numberOfThreads);
+		}
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	@Override
+	public void run(final Network network) {
+		log.info("running " + this.getClass().getName() + " algorithm...");
+		CompactNetworkGraph graph = new CompactNetworkGraph(network);
+		int[] components = graph.calcStronglyConnectedComponents(null);
+		int biggest = CompactNetworkGraph.getBiggestComponentByNodes(components);
+
+		int clusterSize = 0;
+		for (int n = 0; n < graph.getNumberOfNodes(); n++) {
+			if (components[n] == biggest) {
+				clusterSize++;
+			}
+		}
+		log.info("    The biggest cluster consists of " + clusterSize + " nodes.");
+
+		for (int l = 0; l < graph.getNumberOfLinks(); l++) {
+			if (components[graph.getFromNode(l)] != biggest || components[graph.getToNode(l)] != biggest) {
+				this.removedLinks.add(graph.getLink(l).getId());
+			}
+		}
+		for (int n = 0; n < graph.getNumberOfNodes(); n++) {
+			if (components[n] != biggest) {
+				network.removeNode(graph.getNode(n).getId()); // removes the attached links as well
+			}
+		}
+		log.info("  resulting network contains " + network.getNodes().size() + " nodes and " +
+				network.getLinks().size() + " links.");
+		log.info("done.");
+	}
+
+	/**
+	 * Makes the sub-network of each of the given modes strongly connected.
+	 */
+	public void run(final Network network, final Set<String> modes) {
+		log.info("running " + this.getClass().getName() + " algorithm for modes " + Arrays.toString(modes.toArray()) + "...");
+		final CompactNetworkGraph graph = new CompactNetworkGraph(network);
+
+		List<Callable<boolean[]>> tasks = new ArrayList<>();
+		final List<String> modeList = new ArrayList<>(modes);
+		for (final String mode : modeList) {
+			tasks.add(new Callable<boolean[]>() {
+				@Override
+				public boolean[] call() {
+					return findLinksOutsideBiggestComponent(graph, mode);
+				}
+			});
+		}
+		List<boolean[]> outside = ParallelTaskRunner.run(tasks, this.numberOfThreads);
+
+		// write back the results
+		for (int l = 0; l < graph.getNumberOfLinks(); l++) {
+			Link link = graph.getLink(l);
+			Set<String> reducedModes = null;
+			for (int m = 0; m < modeList.size(); m++) {
+				if (outside.get(m)[l]) {
+					if (reducedModes == null) {
+						reducedModes = new HashSet<>(link.getAllowedModes());
+					}
+					reducedModes.remove(modeList.get(m));
+				}
+			}
+			if (reducedModes == null) {
+				continue;
+			}
+			if (reducedModes.isEmpty()) {
+				network.removeLink(link.getId());
+				this.removedLinks.add(link.getId());
+				this.modifiedLinks.remove(link.getId());
+			} else {
+				link.setAllowedModes(reducedModes);
+				this.modifiedLinks.add(link.getId());
+			}
+		}
+		for (int n = 0; n < graph.getNumberOfNodes(); n++) {
+			Node node = graph.getNode(n);
+			if ((graph.getInDegree(n) + graph.getOutDegree(n)) > 0 && node.getInLinks().isEmpty() && node.getOutLinks().isEmpty()) {
+				network.removeNode(node.getId());
+			}
+		}
+		log.info("  resulting network contains " + network.getNodes().size() + " nodes and " +
+				network.getLinks().size() + " links.");
+		log.info("done.");
+	}
+
+	/**
+	 * @return the ids of all links removed from the network
+	 */
+	public Set<Id<Link>> getRemovedLinkIds() {
+		return this.removedLinks;
+	}
+
+	/**
+	 * @return the ids of all links that lost some, but not all of their modes
+	 */
+	public Set<Id<Link>> getModifiedLinkIds() {
+		return this.modifiedLinks;
+	}
+
+	private static boolean[] findLinksOutsideBiggestComponent(final CompactNetworkGraph graph, final String mode) {
+		boolean[] usable = graph.getLinksAllowingAnyMode(Collections.singleton(mode));
+		int[] components = graph.calcStronglyConnectedComponents(usable);
+		int biggest = graph.getBiggestComponentByLinks(components, usable);
+		boolean[] outside = new boolean[graph.getNumberOfLinks()];
+		int clusterSize = 0;
+		for (int l = 0; l < graph.getNumberOfLinks(); l++) {
+			if (usable[l]) {
+				if (components[graph.getFromNode(l)] == biggest && components[graph.getToNode(l)] == biggest) {
+					clusterSize++;
+				} else {
+					outside[l] = true;
+				}
+			}
+		}
+		log.info("    The biggest cluster for mode " + mode + " consists of " + clusterSize + " links.");
+		return outside;
+	}
+
+}
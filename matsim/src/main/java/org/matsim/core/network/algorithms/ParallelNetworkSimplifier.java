@@ -0,0 +1,221 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelNetworkSimplifier.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.network.algorithms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.api.internal.NetworkRunnable;
+import org.matsim.core.network.NetworkUtils;
+
+/**
+ * Merges chains of links over nodes of degree two, i.e. nodes of the types
+ * {@link NetworkCalcTopoType#PASS1WAY} and {@link NetworkCalcTopoType#PASS2WAY}, into single links.
+ * Only links with the same attributes (allowed modes, freespeed, capacity and number of lanes) are
+ * merged, like {@link NetworkSimplifier} does by default, but without a length threshold.
+ * <p></p>
+ * Instead of merging pairs of links one after the other, the chains are determined on a
+ * {@link CompactNetworkGraph} in parallel, and every chain is then replaced by one link whose id is
+ * the ids of the merged links, separated by "-"; the same holds for the orig ids, using the link id
+ * for links without orig id. Closed rings consisting of degree-two nodes only are not modified, and
+ * neither are chains that end at their start node, since they would be merged into a loop link.
+ */
+public final class ParallelNetworkSimplifier implements NetworkRunnable {
+
+	private static final Logger log = Logger.getLogger(ParallelNetworkSimplifier.class);
+
+	private static final int BLOCKS_PER_THREAD = 4;
+
+	private int numberOfThreads = 1;
+
+	public void setNumberOfThreads(final int numberOfThreads) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("numberOfThreads must be at least 1, got " + numberOfThreads);
+		}
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	@Override
+	public void run(final Network network) {
+		log.info("running " + this.getClass().getName() + " algorithm...");
+		final CompactNetworkGraph graph = new CompactNetworkGraph(network);
+		final int numberOfLinks = graph.getNumberOfLinks();
+		final int numberOfBlocks = Math.max(1, Math.min(numberOfLinks, this.numberOfThreads * BLOCKS_PER_THREAD));
+		final int blockSize = (numberOfLinks + numberOfBlocks - 1) / Math.max(1, numberOfBlocks);
+
+		// find the link every link can be merged with; the blocks write disjoint parts of the array
+		final int[] successor = new int[numberOfLinks];
+		List<Callable<Object>> successorTasks = new ArrayList<>();
+		for (int b = 0; b < numberOfBlocks; b++) {
+			final int from = b * blockSize;
+			final int to = Math.min(numberOfLinks, from + blockSize);
+			successorTasks.add(new Callable<Object>() {
+				@Override
+				public Object call() {
+					for (int l = from; l < to; l++) {
+						successor[l] = findSuccessor(graph, l);
+					}
+					return null;
+				}
+			});
+		}
+		ParallelTaskRunner.run(successorTasks, this.numberOfThreads);
+
+		final boolean[] hasPredecessor = new boolean[numberOfLinks];
+		for (int l = 0; l < numberOfLinks; l++) {
+			if (successor[l] >= 0) {
+				hasPredecessor[successor[l]] = true;
+			}
+		}
+
+		// every chain starts at a link without predecessor
+		List<Callable<List<int[]>>> chainTasks = new ArrayList<>();
+		for (int b = 0; b < numberOfBlocks; b++) {
+			final int from = b * blockSize;
+			final int to = Math.min(numberOfLinks, from + blockSize);
+			chainTasks.add(new Callable<List<int[]>>() {
+				@Override
+				public List<int[]> call() {
+					List<int[]> chains = new ArrayList<>();
+					for (int l = from; l < to; l++) {
+						if (!hasPredecessor[l] && successor[l] >= 0) {
+							chains.add(collectChain(l, successor));
+						}
+					}
+					return chains;
+				}
+			});
+		}
+
+		int mergedChains = 0;
+		for (List<int[]> chains : ParallelTaskRunner.run(chainTasks, this.numberOfThreads)) {
+			for (int[] chain : chains) {
+				if (mergeChain(network, graph, chain)) {
+					mergedChains++;
+				}
+			}
+		}
+		for (int n = 0; n < graph.getNumberOfNodes(); n++) {
+			Node node = graph.getNode(n);
+			if ((graph.getInDegree(n) + graph.getOutDegree(n)) > 0 && node.getInLinks().isEmpty() && node.getOutLinks().isEmpty()) {
+				network.removeNode(node.getId());
+			}
+		}
+		log.info("  merged " + mergedChains + " chains of links.");
+		log.info("  resulting network contains " + network.getNodes().size() + " nodes and " +
+				network.getLinks().size() + " links.");
+		log.info("done.");
+	}
+
+	/**
+	 * @return the index of the link the given link can be merged with at its to-node, or -1
+	 */
+	private static int findSuccessor(final CompactNetworkGraph graph, final int link) {
+		int node = graph.getToNode(link);
+		if (!isDegreeTwoNode(graph, node)) {
+			return -1;
+		}
+		int previousNode = graph.getFromNode(link);
+		for (int i = 0; i < graph.getOutDegree(node); i++) {
+			int outLink = graph.getOutLink(node, i);
+			if (graph.getToNode(outLink) != previousNode) {
+				return haveSameAttributes(graph.getLink(link), graph.getLink(outLink)) ? outLink : -1;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isDegreeTwoNode(final CompactNetworkGraph graph, final int node) {
+		int inDegree = graph.getInDegree(node);
+		int outDegree = graph.getOutDegree(node);
+		if (inDegree == 1 && outDegree == 1) {
+			return graph.getFromNode(graph.getInLink(node, 0)) != graph.getToNode(graph.getOutLink(node, 0));
+		}
+		if (inDegree == 2 && outDegree == 2) {
+			int neighbour1 = graph.getFromNode(graph.getInLink(node, 0));
+			int neighbour2 = graph.getFromNode(graph.getInLink(node, 1));
+			int out1 = graph.getToNode(graph.getOutLink(node, 0));
+			int out2 = graph.getToNode(graph.getOutLink(node, 1));
+			return neighbour1 != neighbour2 && neighbour1 != node && neighbour2 != node
+					&& ((out1 == neighbour1 && out2 == neighbour2) || (out1 == neighbour2 && out2 == neighbour1));
+		}
+		return false;
+	}
+
+	private static boolean haveSameAttributes(final Link linkA, final Link linkB) {
+		return linkA.getAllowedModes().equals(linkB.getAllowedModes())
+				&& linkA.getFreespeed() == linkB.getFreespeed()
+				&& linkA.getCapacity() == linkB.getCapacity()
+				&& linkA.getNumberOfLanes() == linkB.getNumberOfLanes();
+	}
+
+	private static int[] collectChain(final int firstLink, final int[] successor) {
+		int length = 1;
+		for (int l = successor[firstLink]; l >= 0; l = successor[l]) {
+			length++;
+		}
+		int[] chain = new int[length];
+		int i = 0;
+		for (int l = firstLink; l >= 0; l = successor[l]) {
+			chain[i++] = l;
+		}
+		return chain;
+	}
+
+	/**
+	 * @return <code>false</code> if the chain ends at its start node and was thus not merged
+	 */
+	private static boolean mergeChain(final Network network, final CompactNetworkGraph graph, final int[] chain) {
+		Link first = graph.getLink(chain[0]);
+		Link last = graph.getLink(chain[chain.length - 1]);
+		if (first.getFromNode() == last.getToNode()) {
+			return false;
+		}
+		StringBuilder id = new StringBuilder();
+		StringBuilder origId = new StringBuilder();
+		double length = 0.0;
+		for (int i = 0; i < chain.length; i++) {
+			Link link = graph.getLink(chain[i]);
+			if (i > 0) {
+				id.append('-');
+				origId.append('-');
+			}
+			id.append(link.getId().toString());
+			String linkOrigId = NetworkUtils.getOrigId(link);
+			origId.append(linkOrigId == null ? link.getId().toString() : linkOrigId);
+			length += link.getLength();
+		}
+		for (int l : chain) {
+			network.removeLink(graph.getLink(l).getId());
+		}
+		Link newLink = NetworkUtils.createAndAddLink(network, Id.createLinkId(id.toString()), first.getFromNode(), last.getToNode(),
+				length, first.getFreespeed(), first.getCapacity(), first.getNumberOfLanes(), origId.toString(), null);
+		newLink.setAllowedModes(first.getAllowedModes());
+		return true;
+	}
+
+}
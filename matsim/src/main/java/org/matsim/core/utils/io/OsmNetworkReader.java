@@ -22,6 +22,7 @@ package org.matsim.core.utils.io;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -31,6 +32,10 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.Stack;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Coord;
@@ -89,7 +94,6 @@ public class OsmNetworkReader implements MatsimSomeReader {
     private final static String TAG_ACCESS = "access";
 	private final static String[] ALL_TAGS = new String[] {TAG_LANES, TAG_HIGHWAY, TAG_MAXSPEED, TAG_JUNCTION, TAG_ONEWAY, TAG_ACCESS, TAG_LANES_FORWARD, TAG_LANES_BACKWARD};
 
-	private final Map<Long, OsmNode> nodes = new HashMap<Long, OsmNode>();
 	private final Map<Long, OsmWay> ways = new HashMap<Long, OsmWay>();
 	private final Set<String> unknownHighways = new HashSet<String>();
 	private final Set<String> unknownMaxspeedTags = new HashSet<String>();
@@ -102,6 +106,7 @@ public class OsmNetworkReader implements MatsimSomeReader {
 	private boolean scaleMaxSpeed = false;
 
 	private boolean slowButLowMemory = false;
+	private int numberOfThreads = 1;
 	
 	/*package*/ final List<OsmFilter> hierarchyLayers = new ArrayList<OsmFilter>();
 
@@ -190,34 +195,42 @@ public class OsmNetworkReader implements MatsimSomeReader {
 			log.warn("No hierarchy layer specified. Will convert every highway specified by setHighwayDefaults.");
 		}
 
-		OsmXmlParser parser = null;
-		if (this.slowButLowMemory) {
-			log.info("parsing osm file first time: identifying nodes used by ways");
-			parser = new OsmXmlParser(this.nodes, this.ways, this.transform);
-			parser.enableOptimization(1);
-			if (stream != null) {
-				parser.parse(new InputSource(stream));
+		OsmNodeStore nodes = new OsmNodeStore();
+		OsmXmlParser parser = new OsmXmlParser(nodes, this.ways);
+		if (this.slowButLowMemory && stream == null) {
+			if (this.hierarchyLayers.isEmpty()) {
+				log.info("parsing osm file first time: loading ways and identifying nodes used by them");
 			} else {
-				parser.readFile(osmFilename);
+				log.info("parsing osm file first time: identifying nodes used by ways");
 			}
-			log.info("parsing osm file second time: loading required nodes and ways");
-			parser.enableOptimization(2);
-			if (stream != null) {
-				parser.parse(new InputSource(stream));
+			parser.enableOptimization(1);
+			parser.readFile(osmFilename);
+			nodes.setIds(this.hierarchyLayers.isEmpty() ? collectReferencedNodeIds() : parser.getWayNodeIds());
+			if (this.hierarchyLayers.isEmpty()) {
+				log.info("parsing osm file second time: loading coordinates of the " + nodes.size() + " required nodes");
 			} else {
-				parser.readFile(osmFilename);
+				log.info("parsing osm file second time: loading coordinates of the " + nodes.size() + " required nodes and the ways in the hierarchy layers");
 			}
+			parser.enableOptimization(2);
+			parser.readFile(osmFilename);
+			nodes.removeMissing();
 			log.info("done loading data");
 		} else {
-			parser = new OsmXmlParser(this.nodes, this.ways, this.transform);
+			if (this.slowButLowMemory) {
+				log.warn("Memory optimization requires to read the data twice, which is not possible with a stream. Reading it once.");
+			}
 			if (stream != null) {
 				parser.parse(new InputSource(stream));
 			} else {
 				parser.readFile(osmFilename);
 			}
+			nodes.sortById();
+			nodes.retain(collectReferencedNodeIds());
 			log.info("done loading data");
 		}
-		convert();
+		log.info("transforming the coordinates of " + nodes.size() + " nodes using " + this.numberOfThreads + " thread(s)");
+		nodes.transform(this.transform, this.numberOfThreads);
+		convert(nodes, parser.hasUnfilteredWays());
 		log.info("= conversion statistics: ==========================");
 		log.info("osm: # nodes read:       " + parser.nodeCounter.getCounter());
 		log.info("osm: # ways read:        " + parser.wayCounter.getCounter());
@@ -311,17 +324,66 @@ public class OsmNetworkReader implements MatsimSomeReader {
 	}
 
 	/**
-	 * By default, this converter caches a lot of data internally to speed up the network generation.
-	 * This can lead to OutOfMemoryExceptions when converting huge osm files. By enabling this
-	 * memory optimization, the converter tries to reduce its memory usage, but will run slower.
+	 * By default, this converter reads the osm data once and keeps the coordinates of all nodes until the ways
+	 * are read. This can lead to OutOfMemoryExceptions when converting huge osm files. By enabling this
+	 * memory optimization, the converter reads the file twice: first the ways, to identify the nodes used by
+	 * them, and then the coordinates of only those nodes. If hierarchy layers are set, the first pass only
+	 * collects the ids of the nodes, and the ways are read in the second pass, so that only the ways in the
+	 * hierarchy layers are kept. This only works when reading from a file, not from a stream.
 	 *
 	 * @param memoryEnabled
 	 */
 	public void setMemoryOptimization(final boolean memoryEnabled) {
 		this.slowButLowMemory = memoryEnabled;
 	}
-	
-	private void convert() {
+
+	/**
+	 * Sets the number of threads used to transform the coordinates of the nodes. If more than one thread is
+	 * used, the coordinate transformation given in the constructor must be thread-safe.
+	 *
+	 * Defaults to <code>1</code>.
+	 *
+	 * @param numberOfThreads
+	 */
+	public void setNumberOfThreads(final int numberOfThreads) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("numberOfThreads must be at least 1, got " + numberOfThreads);
+		}
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	/**
+	 * @return the sorted, distinct ids of all nodes referenced by the loaded ways
+	 */
+	private long[] collectReferencedNodeIds() {
+		int count = 0;
+		for (OsmWay way : this.ways.values()) {
+			count += way.nodes.length;
+		}
+		long[] ids = new long[count];
+		int i = 0;
+		for (OsmWay way : this.ways.values()) {
+			System.arraycopy(way.nodes, 0, ids, i, way.nodes.length);
+			i += way.nodes.length;
+		}
+		return sortDistinct(ids, count);
+	}
+
+	private static long[] sortDistinct(final long[] ids, final int count) {
+		Arrays.sort(ids, 0, count);
+		int distinct = 0;
+		for (int j = 0; j < count; j++) {
+			if (distinct == 0 || ids[j] != ids[distinct - 1]) {
+				ids[distinct++] = ids[j];
+			}
+		}
+		return Arrays.copyOf(ids, distinct);
+	}
+
+	/**
+	 * @param filterByLayers <code>true</code> if the ways were not yet filtered by the hierarchy layers while parsing
+	 */
+	private void convert(final OsmNodeStore nodes, final boolean filterByLayers) {
 		if (this.network instanceof Network) {
 			((Network) this.network).setCapacityPeriod(3600);
 		}
@@ -330,17 +392,38 @@ public class OsmNetworkReader implements MatsimSomeReader {
 		// yy I _think_ this is what it does.  kai, may'16
 		Iterator<Entry<Long, OsmWay>> it = this.ways.entrySet().iterator();
 		while (it.hasNext()) {
-			Entry<Long, OsmWay> entry = it.next();
-			for (Long nodeId : entry.getValue().nodes) {
-				if (this.nodes.get(nodeId) == null) {
-					it.remove();
+			OsmWay way = it.next().getValue();
+			int[] nodeIndices = new int[way.nodes.length];
+			for (int i = 0; i < way.nodes.length; i++) {
+				nodeIndices[i] = nodes.indexOf(way.nodes[i]);
+				if (nodeIndices[i] < 0) {
+					nodeIndices = null;
 					break;
 				}
 			}
+			if (nodeIndices == null) {
+				it.remove();
+			} else {
+				way.nodeIndices = nodeIndices;
+				way.nodes = null;
+			}
 		}
 		log.info("... done removing ways that have at least one node that was not read previously.");
 
+		if (filterByLayers) {
+			log.info("Remove ways that have no node in any hierarchy layer ...");
+			it = this.ways.entrySet().iterator();
+			while (it.hasNext()) {
+				if (!isInHierarchyLayer(it.next().getValue(), nodes)) {
+					it.remove();
+				}
+			}
+			log.info("... done removing ways that have no node in any hierarchy layer.");
+		}
+
 		log.info("Mark OSM nodes that shoud be kept ...");
+		int[] nodeWays = new int[nodes.size()];
+		boolean[] nodeUsed = new boolean[nodes.size()];
 		for (OsmWay way : this.ways.values()) {
 			String highway = way.tags.get(TAG_HIGHWAY);
 			if ((highway != null) && (this.highwayDefaults.containsKey(highway))) {
@@ -348,19 +431,18 @@ public class OsmNetworkReader implements MatsimSomeReader {
 				way.hierarchy = this.highwayDefaults.get(highway).hierarchy;
 
 				// first and last are counted twice, so they are kept in all cases
-				this.nodes.get(way.nodes.get(0)).ways++;
-				this.nodes.get(way.nodes.get(way.nodes.size()-1)).ways++;
+				nodeWays[way.nodeIndices[0]]++;
+				nodeWays[way.nodeIndices[way.nodeIndices.length-1]]++;
 
-				for (Long nodeId : way.nodes) {
-					OsmNode node = this.nodes.get(nodeId);
+				for (int node : way.nodeIndices) {
 					if (this.hierarchyLayers.isEmpty()) {
-						node.used = true;
-						node.ways++;
+						nodeUsed[node] = true;
+						nodeWays[node]++;
 					} else {
 						for (OsmFilter osmFilter : this.hierarchyLayers) {
-							if(osmFilter.coordInFilter(node.coord, way.hierarchy)){
-								node.used = true;
-								node.ways++;
+							if(osmFilter.coordInFilter(nodes.getCoord(node), way.hierarchy)){
+								nodeUsed[node] = true;
+								nodeWays[node]++;
 								break;
 							}
 						}
@@ -373,9 +455,9 @@ public class OsmNetworkReader implements MatsimSomeReader {
 		if (!this.keepPaths) {
 
 			log.info("Mark nodes as unused where only one way leads through ...") ;
-			for (OsmNode node : this.nodes.values()) {
-				if (node.ways == 1) {
-					node.used = false;
+			for (int node = 0; node < nodeWays.length; node++) {
+				if (nodeWays[node] == 1) {
+					nodeUsed[node] = false;
 				}
 			}
 			log.info("... done marking nodes as unused where only one way leads through.") ;
@@ -385,11 +467,11 @@ public class OsmNetworkReader implements MatsimSomeReader {
 				String highway = way.tags.get(TAG_HIGHWAY);
 				if ((highway != null) && (this.highwayDefaults.containsKey(highway))) {
 					int prevRealNodeIndex = 0;
-					OsmNode prevRealNode = this.nodes.get(way.nodes.get(prevRealNodeIndex));
+					int prevRealNode = way.nodeIndices[prevRealNodeIndex];
 
-					for (int i = 1; i < way.nodes.size(); i++) {
-						OsmNode node = this.nodes.get(way.nodes.get(i));
-						if (node.used) {
+					for (int i = 1; i < way.nodeIndices.length; i++) {
+						int node = way.nodeIndices[i];
+						if (nodeUsed[node]) {
 							if (prevRealNode == node) {
 								/* We detected a loop between two "real" nodes.
 								 * Set some nodes between the start/end-loop-node to "used" again.
@@ -400,8 +482,7 @@ public class OsmNetworkReader implements MatsimSomeReader {
 								double nextNodeToKeep = prevRealNodeIndex + increment;
 								for (double j = nextNodeToKeep; j < i; j += increment) {
 									int index = (int) Math.floor(j);
-									OsmNode intermediaryNode = this.nodes.get(way.nodes.get(index));
-									intermediaryNode.used = true;
+									nodeUsed[way.nodeIndices[index]] = true;
 								}
 							}
 							prevRealNodeIndex = i;
@@ -415,9 +496,9 @@ public class OsmNetworkReader implements MatsimSomeReader {
 		}
 
 		log.info("Create the required nodes ...") ;
-		for (OsmNode node : this.nodes.values()) {
-			if (node.used) {
-				Node nn = this.network.getFactory().createNode(Id.create(node.id, Node.class), node.coord);
+		for (int node = 0; node < nodeUsed.length; node++) {
+			if (nodeUsed[node]) {
+				Node nn = this.network.getFactory().createNode(Id.create(nodes.getId(node), Node.class), nodes.getCoord(node));
 				this.network.addNode(nn);
 			}
 		}
@@ -428,26 +509,26 @@ public class OsmNetworkReader implements MatsimSomeReader {
 		for (OsmWay way : this.ways.values()) {
 			String highway = way.tags.get(TAG_HIGHWAY);
 			if (highway != null) {
-				OsmNode fromNode = this.nodes.get(way.nodes.get(0));
+				int fromNode = way.nodeIndices[0];
 				double length = 0.0;
-				OsmNode lastToNode = fromNode;
-				if (fromNode.used) {
-					for (int i = 1, n = way.nodes.size(); i < n; i++) {
-						OsmNode toNode = this.nodes.get(way.nodes.get(i));
+				int lastToNode = fromNode;
+				if (nodeUsed[fromNode]) {
+					for (int i = 1, n = way.nodeIndices.length; i < n; i++) {
+						int toNode = way.nodeIndices[i];
 						if (toNode != lastToNode) {
-							length += CoordUtils.calcEuclideanDistance(lastToNode.coord, toNode.coord);
-							if (toNode.used) {
+							length += CoordUtils.calcEuclideanDistance(nodes.getCoord(lastToNode), nodes.getCoord(toNode));
+							if (nodeUsed[toNode]) {
 
 								if(this.hierarchyLayers.isEmpty()) {
-									createLink(this.network, way, fromNode, toNode, length);
+									createLink(this.network, way, nodes.getId(fromNode), nodes.getId(toNode), length);
 								} else {
 									for (OsmFilter osmFilter : this.hierarchyLayers) {
-										if(osmFilter.coordInFilter(fromNode.coord, way.hierarchy)){
-											createLink(this.network, way, fromNode, toNode, length);
+										if(osmFilter.coordInFilter(nodes.getCoord(fromNode), way.hierarchy)){
+											createLink(this.network, way, nodes.getId(fromNode), nodes.getId(toNode), length);
 											break;
 										}
-										if(osmFilter.coordInFilter(toNode.coord, way.hierarchy)){
-											createLink(this.network, way, fromNode, toNode, length);
+										if(osmFilter.coordInFilter(nodes.getCoord(toNode), way.hierarchy)){
+											createLink(this.network, way, nodes.getId(fromNode), nodes.getId(toNode), length);
 											break;
 										}
 									}
@@ -465,11 +546,40 @@ public class OsmNetworkReader implements MatsimSomeReader {
 		log.info("... done creating the links.");
 
 		// free up memory
-		this.nodes.clear();
 		this.ways.clear();
 	}
 
-	private void createLink(final Network network, final OsmWay way, final OsmNode fromNode, final OsmNode toNode, 
+	/**
+	 * Checks the untransformed coordinates in the node store while parsing, nodes which are not
+	 * (yet) known are ignored.
+	 */
+	private boolean isInHierarchyLayer(final long[] wayNodes, final int count, final int hierarchy, final OsmNodeStore nodes) {
+		for (int i = 0; i < count; i++) {
+			int index = nodes.indexOf(wayNodes[i]);
+			if (index >= 0 && nodes.hasCoord(index)) {
+				Coord coord = this.transform.transform(nodes.getCoord(index));
+				for (OsmFilter osmFilter : this.hierarchyLayers) {
+					if (osmFilter.coordInFilter(coord, hierarchy)) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	private boolean isInHierarchyLayer(final OsmWay way, final OsmNodeStore nodes) {
+		for (OsmFilter osmFilter : this.hierarchyLayers) {
+			for (int node : way.nodeIndices) {
+				if (osmFilter.coordInFilter(nodes.getCoord(node), way.hierarchy)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private void createLink(final Network network, final OsmWay way, final long fromNodeId, final long toNodeId,
 			final double length) {
 		String highway = way.tags.get(TAG_HIGHWAY);
 
@@ -598,8 +708,8 @@ public class OsmNetworkReader implements MatsimSomeReader {
 		}
 
 		// only create link, if both nodes were found, node could be null, since nodes outside a layer were dropped
-		Id<Node> fromId = Id.create(fromNode.id, Node.class);
-		Id<Node> toId = Id.create(toNode.id, Node.class);
+		Id<Node> fromId = Id.create(fromNodeId, Node.class);
+		Id<Node> toId = Id.create(toNodeId, Node.class);
 		if(network.getNodes().get(fromId) != null && network.getNodes().get(toId) != null){
 			String origId = Long.toString(way.id);
 
@@ -676,21 +786,233 @@ public class OsmNetworkReader implements MatsimSomeReader {
 		}
 	}
 
-	private static class OsmNode {
-		public final long id;
-		public boolean used = false;
-		public int ways = 0;
-		public Coord coord;
+	/**
+	 * Stores the coordinates of osm nodes in primitive arrays, sorted by the node ids once
+	 * all nodes are added, instead of one object per node in a map.
+	 */
+	private static class OsmNodeStore {
+		private long[] ids = new long[1024];
+		private double[] xs = new double[1024];
+		private double[] ys = new double[1024];
+		private int size = 0;
+		private boolean sorted = true;
 
-		public OsmNode(final long id, final Coord coord) {
-			this.id = id;
-			this.coord = coord;
+		/**
+		 * Appends a node, only to be used before {@link #sortById()}.
+		 */
+		public void add(final long id, final double x, final double y) {
+			if (this.size == this.ids.length) {
+				int capacity = this.ids.length * 2;
+				this.ids = Arrays.copyOf(this.ids, capacity);
+				this.xs = Arrays.copyOf(this.xs, capacity);
+				this.ys = Arrays.copyOf(this.ys, capacity);
+			}
+			if (this.size > 0 && this.ids[this.size - 1] > id) {
+				this.sorted = false;
+			}
+			this.ids[this.size] = id;
+			this.xs[this.size] = x;
+			this.ys[this.size] = y;
+			this.size++;
+		}
+
+		/**
+		 * Replaces the content of the store by the given sorted, distinct ids without coordinates.
+		 */
+		public void setIds(final long[] sortedIds) {
+			this.ids = sortedIds;
+			this.size = sortedIds.length;
+			this.xs = new double[this.size];
+			this.ys = new double[this.size];
+			Arrays.fill(this.xs, Double.NaN);
+			Arrays.fill(this.ys, Double.NaN);
+			this.sorted = true;
+		}
+
+		/**
+		 * Sets the coordinates of the node with the given id, if it is part of the store.
+		 *
+		 * @return <code>true</code> if the node is part of the store
+		 */
+		public boolean setCoord(final long id, final double x, final double y) {
+			int index = indexOf(id);
+			if (index < 0) {
+				return false;
+			}
+			this.xs[index] = x;
+			this.ys[index] = y;
+			return true;
+		}
+
+		public void sortById() {
+			if (!this.sorted) {
+				sort(0, this.size - 1);
+				this.sorted = true;
+			}
+		}
+
+		/**
+		 * Removes all nodes whose id is not contained in the given sorted ids.
+		 */
+		public void retain(final long[] sortedIds) {
+			int kept = 0;
+			int j = 0;
+			for (int i = 0; i < this.size; i++) {
+				while (j < sortedIds.length && sortedIds[j] < this.ids[i]) {
+					j++;
+				}
+				if (j < sortedIds.length && sortedIds[j] == this.ids[i]) {
+					move(i, kept++);
+				}
+			}
+			trim(kept);
+		}
+
+		/**
+		 * Removes all nodes whose coordinates were never set.
+		 */
+		public void removeMissing() {
+			int kept = 0;
+			for (int i = 0; i < this.size; i++) {
+				if (!Double.isNaN(this.xs[i])) {
+					move(i, kept++);
+				}
+			}
+			trim(kept);
+		}
+
+		public void transform(final CoordinateTransformation transformation, final int numberOfThreads) {
+			int numberOfBlocks = Math.max(1, Math.min(numberOfThreads, this.size));
+			if (numberOfBlocks == 1) {
+				transform(transformation, 0, this.size);
+				return;
+			}
+			int blockSize = (this.size + numberOfBlocks - 1) / numberOfBlocks;
+			ExecutorService executor = Executors.newFixedThreadPool(numberOfBlocks);
+			try {
+				List<Future<?>> futures = new ArrayList<Future<?>>();
+				for (int b = 0; b < numberOfBlocks; b++) {
+					final int from = b * blockSize;
+					final int to = Math.min(this.size, from + blockSize);
+					futures.add(executor.submit(new Runnable() {
+						@Override
+						public void run() {
+							transform(transformation, from, to);
+						}
+					}));
+				}
+				for (Future<?> future : futures) {
+					future.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			} finally {
+				executor.shutdown();
+			}
+		}
+
+		private void transform(final CoordinateTransformation transformation, final int from, final int to) {
+			for (int i = from; i < to; i++) {
+				Coord c = transformation.transform(new Coord(this.xs[i], this.ys[i]));
+				this.xs[i] = c.getX();
+				this.ys[i] = c.getY();
+			}
+		}
+
+		/**
+		 * @return the index of the node with the given id, or a negative value if it is not part of the store
+		 */
+		public int indexOf(final long id) {
+			int index = Arrays.binarySearch(this.ids, 0, this.size, id);
+			return index < 0 ? -1 : index;
+		}
+
+		public int size() {
+			return this.size;
+		}
+
+		public long getId(final int index) {
+			return this.ids[index];
+		}
+
+		public Coord getCoord(final int index) {
+			return new Coord(this.xs[index], this.ys[index]);
+		}
+
+		public boolean hasCoord(final int index) {
+			return !Double.isNaN(this.xs[index]);
+		}
+
+		/**
+		 * @return <code>true</code> if {@link #indexOf(long)} can be used, i.e. all nodes were added in order of their ids
+		 */
+		public boolean isSorted() {
+			return this.sorted;
+		}
+
+		private void move(final int from, final int to) {
+			this.ids[to] = this.ids[from];
+			this.xs[to] = this.xs[from];
+			this.ys[to] = this.ys[from];
+		}
+
+		private void trim(final int newSize) {
+			this.size = newSize;
+			this.ids = Arrays.copyOf(this.ids, newSize);
+			this.xs = Arrays.copyOf(this.xs, newSize);
+			this.ys = Arrays.copyOf(this.ys, newSize);
+		}
+
+		private void sort(int lo, int hi) {
+			while (lo < hi) {
+				long pivot = this.ids[(lo + hi) >>> 1];
+				int i = lo;
+				int j = hi;
+				while (i <= j) {
+					while (this.ids[i] < pivot) {
+						i++;
+					}
+					while (this.ids[j] > pivot) {
+						j--;
+					}
+					if (i <= j) {
+						swap(i, j);
+						i++;
+						j--;
+					}
+				}
+				// recurse into the smaller part only, to keep the stack small
+				if (j - lo < hi - i) {
+					sort(lo, j);
+					lo = i;
+				} else {
+					sort(i, hi);
+					hi = j;
+				}
+			}
+		}
+
+		private void swap(final int a, final int b) {
+			long id = this.ids[a];
+			this.ids[a] = this.ids[b];
+			this.ids[b] = id;
+			double x = this.xs[a];
+			this.xs[a] = this.xs[b];
+			this.xs[b] = x;
+			double y = this.ys[a];
+			this.ys[a] = this.ys[b];
+			this.ys[b] = y;
 		}
 	}
 
 	private static class OsmWay {
 		public final long id;
-		public final List<Long> nodes = new ArrayList<Long>(4);
+		/** the ids of the nodes, replaced by {@link #nodeIndices} before the conversion */
+		public long[] nodes;
+		public int[] nodeIndices;
 		public final Map<String, String> tags = new HashMap<String, String>(4);
 		public int hierarchy = -1;
 
@@ -721,62 +1043,97 @@ public class OsmNetworkReader implements MatsimSomeReader {
 	private class OsmXmlParser extends MatsimXmlParser {
 
 		private OsmWay currentWay = null;
-		private final Map<Long, OsmNode> nodes;
+		private long[] currentWayNodes = new long[64];
+		private int currentWayNodeCount = 0;
+		private final OsmNodeStore nodes;
 		private final Map<Long, OsmWay> ways;
 		/*package*/ final Counter nodeCounter = new Counter("node ");
 		/*package*/ final Counter wayCounter = new Counter("way ");
-		private final CoordinateTransformation transform;
 		private boolean loadNodes = true;
 		private boolean loadWays = true;
 		private boolean mergeNodes = false;
-		private boolean collectNodes = false;
+		private boolean collectWayNodes = false;
+		private long[] wayNodeIds = null;
+		private int wayNodeIdCount = 0;
+		private boolean unfilteredWays = false;
 
-		public OsmXmlParser(final Map<Long, OsmNode> nodes, final Map<Long, OsmWay> ways, final CoordinateTransformation transform) {
+		public OsmXmlParser(final OsmNodeStore nodes, final Map<Long, OsmWay> ways) {
 			super();
 			this.nodes = nodes;
 			this.ways = ways;
-			this.transform = transform;
 			this.setValidating(false);
 		}
 
+		/**
+		 * @param step <code>1</code> to only load the ways, <code>2</code> to only load the coordinates
+		 * of nodes already contained in the node store. If hierarchy layers are set, step <code>1</code>
+		 * only collects the ids of the nodes used by ways and step <code>2</code> loads the ways as well,
+		 * so that only ways in the hierarchy layers are kept in memory.
+		 */
 		public void enableOptimization(final int step) {
+			boolean filterByLayers = !OsmNetworkReader.this.hierarchyLayers.isEmpty();
 			this.loadNodes = false;
 			this.loadWays = false;
-			this.collectNodes = false;
 			this.mergeNodes = false;
+			this.collectWayNodes = false;
 			if (step == 1) {
-				this.collectNodes = true;
+				if (filterByLayers) {
+					this.collectWayNodes = true;
+					this.wayNodeIds = new long[1024];
+					this.wayNodeIdCount = 0;
+				} else {
+					this.loadWays = true;
+				}
 			} else if (step == 2) {
 				this.mergeNodes = true;
-				this.loadWays = true;
+				this.loadWays = filterByLayers;
 			}
 		}
 
+		/**
+		 * @return the sorted, distinct ids of the nodes used by ways, collected in step <code>1</code>
+		 */
+		public long[] getWayNodeIds() {
+			long[] ids = sortDistinct(this.wayNodeIds, this.wayNodeIdCount);
+			this.wayNodeIds = null;
+			return ids;
+		}
+
+		/**
+		 * @return <code>true</code> if ways were loaded without checking the hierarchy layers, because the
+		 * coordinates of their nodes were not known at that time
+		 */
+		public boolean hasUnfilteredWays() {
+			return this.unfilteredWays;
+		}
+
 		@Override
 		public void startTag(final String name, final Attributes atts, final Stack<String> context) {
 			if ("node".equals(name)) {
 				if (this.loadNodes) {
-					Long id = Long.valueOf(atts.getValue("id"));
+					long id = Long.parseLong(atts.getValue("id"));
 					double lat = Double.parseDouble(atts.getValue("lat"));
 					double lon = Double.parseDouble(atts.getValue("lon"));
-					this.nodes.put(id, new OsmNode(id, this.transform.transform(new Coord(lon, lat))));
+					this.nodes.add(id, lon, lat);
 					this.nodeCounter.incCounter();
 				} else if (this.mergeNodes) {
-					OsmNode node = this.nodes.get(Long.valueOf(atts.getValue("id")));
-					if (node != null) {
-						double lat = Double.parseDouble(atts.getValue("lat"));
-						double lon = Double.parseDouble(atts.getValue("lon"));
-						Coord c = this.transform.transform(new Coord(lon, lat));
-//						node.coord.setXY(c.getX(), c.getY());
-						node.coord = c ;
+					double lat = Double.parseDouble(atts.getValue("lat"));
+					double lon = Double.parseDouble(atts.getValue("lon"));
+					if (this.nodes.setCoord(Long.parseLong(atts.getValue("id")), lon, lat)) {
 						this.nodeCounter.incCounter();
 					}
 				}
 			} else if ("way".equals(name)) {
-				this.currentWay = new OsmWay(Long.parseLong(atts.getValue("id")));
+				if (this.loadWays || this.collectWayNodes) {
+					this.currentWay = new OsmWay(Long.parseLong(atts.getValue("id")));
+					this.currentWayNodeCount = 0;
+				}
 			} else if ("nd".equals(name)) {
 				if (this.currentWay != null) {
-					this.currentWay.nodes.add(Long.parseLong(atts.getValue("ref")));
+					if (this.currentWayNodeCount == this.currentWayNodes.length) {
+						this.currentWayNodes = Arrays.copyOf(this.currentWayNodes, this.currentWayNodes.length * 2);
+					}
+					this.currentWayNodes[this.currentWayNodeCount++] = Long.parseLong(atts.getValue("ref"));
 				}
 			} else if ("tag".equals(name)) {
 				if (this.currentWay != null) {
@@ -793,48 +1150,43 @@ public class OsmNetworkReader implements MatsimSomeReader {
 
 		@Override
 		public void endTag(final String name, final String content, final Stack<String> context) {
-			if ("way".equals(name)) {
-				if (!this.currentWay.nodes.isEmpty()) {
-					boolean used = false;
-					OsmHighwayDefaults osmHighwayDefaults = OsmNetworkReader.this.highwayDefaults.get(this.currentWay.tags.get(TAG_HIGHWAY));
-					if (osmHighwayDefaults != null) {
-						int hierarchy = osmHighwayDefaults.hierarchy;
-						this.currentWay.hierarchy = hierarchy;
-						if (OsmNetworkReader.this.hierarchyLayers.isEmpty()) {
-							used = true;
-						}
-						if (this.collectNodes) {
-							used = true;
-						} else {
-							for (OsmFilter osmFilter : OsmNetworkReader.this.hierarchyLayers) {
-								for (Long nodeId : this.currentWay.nodes) {
-									OsmNode node = this.nodes.get(nodeId);
-									if(node != null && osmFilter.coordInFilter(node.coord, this.currentWay.hierarchy)){
-										used = true;
-										break;
-									}
-								}
-								if (used) {
-									break;
-								}
-							}
-						}
-					}
-					if (used) {
-						if (this.collectNodes) {
-							for (long id : this.currentWay.nodes) {
-								this.nodes.put(id, new OsmNode(id, new Coord(0, 0)));
-							}
-						} else if (this.loadWays) {
-							this.ways.put(this.currentWay.id, this.currentWay);
-							this.wayCounter.incCounter();
+			if ("way".equals(name) && this.currentWay != null) {
+				OsmHighwayDefaults osmHighwayDefaults = OsmNetworkReader.this.highwayDefaults.get(this.currentWay.tags.get(TAG_HIGHWAY));
+				if (this.currentWayNodeCount > 0 && osmHighwayDefaults != null) {
+					if (this.collectWayNodes) {
+						if (this.wayNodeIdCount + this.currentWayNodeCount > this.wayNodeIds.length) {
+							this.wayNodeIds = Arrays.copyOf(this.wayNodeIds,
+									Math.max(this.wayNodeIds.length * 2, this.wayNodeIdCount + this.currentWayNodeCount));
 						}
+						System.arraycopy(this.currentWayNodes, 0, this.wayNodeIds, this.wayNodeIdCount, this.currentWayNodeCount);
+						this.wayNodeIdCount += this.currentWayNodeCount;
+					} else if (keepWay(osmHighwayDefaults.hierarchy)) {
+						this.currentWay.hierarchy = osmHighwayDefaults.hierarchy;
+						this.currentWay.nodes = Arrays.copyOf(this.currentWayNodes, this.currentWayNodeCount);
+						this.ways.put(this.currentWay.id, this.currentWay);
+						this.wayCounter.incCounter();
 					}
 				}
 				this.currentWay = null;
 			}
 		}
 
+		/**
+		 * Checks the hierarchy layers as soon as a way is read, so that ways outside of them are not kept
+		 * in memory. In osm files nodes precede ways, so their coordinates are known at this point, unless
+		 * the nodes were not sorted by id; then the check is left to the conversion.
+		 */
+		private boolean keepWay(final int hierarchy) {
+			if (OsmNetworkReader.this.hierarchyLayers.isEmpty()) {
+				return true;
+			}
+			if (!this.nodes.isSorted()) {
+				this.unfilteredWays = true;
+				return true;
+			}
+			return isInHierarchyLayer(this.currentWayNodes, this.currentWayNodeCount, hierarchy, this.nodes);
+		}
+
 	}
 
 	private static class StringCache {
@@ -28,6 +28,7 @@ import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.config.groups.ControlerConfigGroup;
 import org.matsim.core.config.groups.CountsConfigGroup;
 import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.controler.AsyncOutputService;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
 import org.matsim.core.controler.events.IterationEndsEvent;
 import org.matsim.core.controler.events.StartupEvent;
@@ -46,6 +47,7 @@ import org.matsim.counts.algorithms.graphs.CountsSimRealPerHourGraphCreator;
 
 import javax.inject.Inject;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
@@ -72,6 +74,9 @@ class CountsControlerListener implements StartupListener, IterationEndsListener
     @com.google.inject.Inject(optional=true)
     private Counts<Link> counts = null;
 
+    @com.google.inject.Inject(optional=true)
+    private AsyncOutputService outputService = null;
+
     private final Map<Id<Link>, double[]> linkStats = new HashMap<>();
     private int iterationsUsed = 0;
 
@@ -127,43 +132,19 @@ class CountsControlerListener implements StartupListener, IterationEndsListener
                 cca.setCountsScaleFactor(this.config.getCountsScaleFactor());
                 cca.run();
 
-                if (this.config.getOutputFormat().contains("html") ||
-                        this.config.getOutputFormat().contains("all")) {
-                    CountsHtmlAndGraphsWriter cgw = new CountsHtmlAndGraphsWriter(controlerIO.getIterationPath(event.getIteration()), cca.getComparison(), event.getIteration());
-                    cgw.addGraphsCreator(new CountsSimRealPerHourGraphCreator("sim and real volumes"));
-                    cgw.addGraphsCreator(new CountsErrorGraphCreator("errors"));
-                    cgw.addGraphsCreator(new CountsLoadCurveGraphCreator("link volumes"));
-                    cgw.addGraphsCreator(new CountsSimReal24GraphCreator("average working day sim and count volumes"));
-                    cgw.createHtmlAndGraphs();
-                }
-                if (this.config.getOutputFormat().contains("kml") ||
-                        this.config.getOutputFormat().contains("all")) {
-                    String filename = controlerIO.getIterationFilename(event.getIteration(), "countscompare.kmz");
-                    CountSimComparisonKMLWriter kmlWriter = new CountSimComparisonKMLWriter(
-                            cca.getComparison(), network, TransformationFactory.getCoordinateTransformation(globalConfigGroup.getCoordinateSystem(), TransformationFactory.WGS84));
-                    kmlWriter.setIterationNumber(event.getIteration());
-                    kmlWriter.writeFile(filename);
-                }
-                if (this.config.getOutputFormat().contains("txt") ||
-                        this.config.getOutputFormat().contains("all")) {
-                    String filename = controlerIO.getIterationFilename(event.getIteration(), "countscompare.txt");
-                    CountSimComparisonTableWriter ctw = new CountSimComparisonTableWriter(cca.getComparison(), Locale.ENGLISH);
-                    ctw.writeFile(filename);
-                }
-                if (this.config.getOutputFormat().contains("xml") ||
-                        this.config.getOutputFormat().contains("all")) {
-                    String filename = controlerIO.getIterationFilename(event.getIteration(), "simulatedCounts.xml.gz");
-                    Counts<Link> simCounts = new Counts<>();
-                    simCounts.setDescription("sim values from iteration " + event.getIteration()); simCounts.setName("sim values from iteration " + event.getIteration()); simCounts.setYear(event.getIteration());
-                    for (CountSimComparison countSimComparison : cca.getComparison()) {
-						if (simCounts.getCount(countSimComparison.getId()) == null) {
-							simCounts.createAndAddCount(countSimComparison.getId(), counts.getCount(countSimComparison.getId()).getCsLabel());
-							simCounts.getCount(countSimComparison.getId()).setCoord(counts.getCount(countSimComparison.getId()).getCoord());
-						}
-						simCounts.getCount(countSimComparison.getId()).createVolume(countSimComparison.getHour(), countSimComparison.getSimulationValue());
-					}
-                    CountsWriter countsWriter = new CountsWriter(TransformationFactory.getCoordinateTransformation(globalConfigGroup.getCoordinateSystem(), TransformationFactory.WGS84), simCounts);
-                    countsWriter.write(filename);
+                // the comparison does not depend on the collected volumes anymore, so it can be written in the background
+                final List<CountSimComparison> comparison = cca.getComparison();
+                final int iteration = event.getIteration();
+                Runnable writer = new Runnable() {
+                    @Override
+                    public void run() {
+                        writeComparison(comparison, iteration);
+                    }
+                };
+                if (this.outputService != null) {
+                    this.outputService.submit("counts comparison of iteration " + iteration, writer);
+                } else {
+                    writer.run();
                 }
                 reset();
                 iterationStopwatch.endOperation(OPERATION_COMPARECOUNTS);
@@ -171,6 +152,47 @@ class CountsControlerListener implements StartupListener, IterationEndsListener
         }
 	}
 
+	private void writeComparison(final List<CountSimComparison> comparison, final int iteration) {
+		if (this.config.getOutputFormat().contains("html") ||
+				this.config.getOutputFormat().contains("all")) {
+			CountsHtmlAndGraphsWriter cgw = new CountsHtmlAndGraphsWriter(controlerIO.getIterationPath(iteration), comparison, iteration);
+			cgw.addGraphsCreator(new CountsSimRealPerHourGraphCreator("sim and real volumes"));
+			cgw.addGraphsCreator(new CountsErrorGraphCreator("errors"));
+			cgw.addGraphsCreator(new CountsLoadCurveGraphCreator("link volumes"));
+			cgw.addGraphsCreator(new CountsSimReal24GraphCreator("average working day sim and count volumes"));
+			cgw.createHtmlAndGraphs();
+		}
+		if (this.config.getOutputFormat().contains("kml") ||
+				this.config.getOutputFormat().contains("all")) {
+			String filename = controlerIO.getIterationFilename(iteration, "countscompare.kmz");
+			CountSimComparisonKMLWriter kmlWriter = new CountSimComparisonKMLWriter(
+					comparison, network, TransformationFactory.getCoordinateTransformation(globalConfigGroup.getCoordinateSystem(), TransformationFactory.WGS84));
+			kmlWriter.setIterationNumber(iteration);
+			kmlWriter.writeFile(filename);
+		}
+		if (this.config.getOutputFormat().contains("txt") ||
+				this.config.getOutputFormat().contains("all")) {
+			String filename = controlerIO.getIterationFilename(iteration, "countscompare.txt");
+			CountSimComparisonTableWriter ctw = new CountSimComparisonTableWriter(comparison, Locale.ENGLISH);
+			ctw.writeFile(filename);
+		}
+		if (this.config.getOutputFormat().contains("xml") ||
+				this.config.getOutputFormat().contains("all")) {
+			String filename = controlerIO.getIterationFilename(iteration, "simulatedCounts.xml.gz");
+			Counts<Link> simCounts = new Counts<>();
+			simCounts.setDescription("sim values from iteration " + iteration); simCounts.setName("sim values from iteration " + iteration); simCounts.setYear(iteration);
+			for (CountSimComparison countSimComparison : comparison) {
+				if (simCounts.getCount(countSimComparison.getId()) == null) {
+					simCounts.createAndAddCount(countSimComparison.getId(), counts.getCount(countSimComparison.getId()).getCsLabel());
+					simCounts.getCount(countSimComparison.getId()).setCoord(counts.getCount(countSimComparison.getId()).getCoord());
+				}
+				simCounts.getCount(countSimComparison.getId()).createVolume(countSimComparison.getHour(), countSimComparison.getSimulationValue());
+			}
+			CountsWriter countsWriter = new CountsWriter(TransformationFactory.getCoordinateTransformation(globalConfigGroup.getCoordinateSystem(), TransformationFactory.WGS84), simCounts);
+			countsWriter.write(filename);
+		}
+	}
+
 	/*package*/ boolean useVolumesOfIteration(final int iteration, final int firstIteration) {
 		int iterationMod = iteration % this.config.getWriteCountsInterval();
 		int effectiveIteration = iteration - firstIteration;
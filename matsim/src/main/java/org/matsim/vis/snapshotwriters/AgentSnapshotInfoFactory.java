@@ -47,7 +47,7 @@ public class AgentSnapshotInfoFactory {
 	 */
 	@SuppressWarnings("static-method")
 	public AgentSnapshotInfo createAgentSnapshotInfo(Id<Person> agentId, double easting, double northing, double elevation, double azimuth) {
-		PositionInfo info = new PositionInfo() ;
+		PositionInfo info = AgentSnapshotInfoPool.obtainPositionInfo() ;
 		info.setId( agentId ) ;
 		info.setEasting( easting ) ;
 		info.setNorthing( northing ) ;
@@ -66,7 +66,7 @@ public class AgentSnapshotInfoFactory {
 	 * </ul>
 	 */
 	public AgentSnapshotInfo createAgentSnapshotInfo(Id<Person> agentId, Link link, double distanceOnLink, int lane) {
-		PositionInfo info = new PositionInfo() ;
+		PositionInfo info = AgentSnapshotInfoPool.obtainPositionInfo() ;
 		info.setId(agentId) ;
 		double lanePosition = this.linkWidthCalculator.calculateLanePosition(lane);
 		calculateAndSetPosition(info, link.getFromNode().getCoord(), link.getToNode().getCoord(), distanceOnLink, link.getLength(), lanePosition );
@@ -79,7 +79,7 @@ public class AgentSnapshotInfoFactory {
 	 */
 	public AgentSnapshotInfo createAgentSnapshotInfo(Id<Person> agentId, Coord startCoord, Coord endCoord, double distanceOnLink, 
 			Integer lane, double curveLength) {
-		PositionInfo info = new PositionInfo() ;
+		PositionInfo info = AgentSnapshotInfoPool.obtainPositionInfo() ;
 		info.setId(agentId) ;
 		double lanePosition = this.linkWidthCalculator.calculateLanePosition(lane);
 		Gbl.assertNotNull( startCoord );
@@ -149,7 +149,7 @@ public class AgentSnapshotInfoFactory {
 	 *
 	 * @author mrieser, knagel
 	 */
-	 private static class PositionInfo implements AgentSnapshotInfo {
+	/* package-private */ static class PositionInfo implements AgentSnapshotInfo {
 
 		private Id<Person> agentId = null;
 		private double easting = Double.NaN;
@@ -162,6 +162,20 @@ public class AgentSnapshotInfoFactory {
 
 		/* package-private */ PositionInfo() { }
 
+		/**
+		 * Brings the object back into the state of a newly created one, so it can be reused by {@link AgentSnapshotInfoPool}.
+		 */
+		/* package-private */ final void reset() {
+			this.agentId = null;
+			this.easting = Double.NaN;
+			this.northing = Double.NaN;
+			this.azimuth = Double.NaN;
+			this.colorValue = 0;
+			this.agentState = null;
+			this.linkId = null;
+			this.user = 0;
+		}
+
 		@Override
 		public final Id<Person> getId() {
 			return this.agentId;
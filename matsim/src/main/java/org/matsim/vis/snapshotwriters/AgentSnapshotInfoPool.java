@@ -0,0 +1,95 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * AgentSnapshotInfoPool.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.vis.snapshotwriters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.matsim.vis.snapshotwriters.AgentSnapshotInfoFactory.PositionInfo;
+
+/**
+ * Keeps the {@link AgentSnapshotInfo} objects created by {@link AgentSnapshotInfoFactory} for reuse, so that
+ * generating a snapshot every second does not create millions of short-lived objects.
+ * <p></p>
+ * A pool is {@link #activate() activated} for the current thread only. While it is active, all infos created
+ * by any {@link AgentSnapshotInfoFactory} on that thread are taken from the pool. After the snapshot is written,
+ * {@link #releaseAll()} makes all of them available again, so they must not be used anymore afterwards.
+ * Without an active pool, the factory creates new objects as before.
+ * <p></p>
+ * A single pool must not be active on several threads at the same time.
+ */
+public final class AgentSnapshotInfoPool {
+
+	private static final ThreadLocal<AgentSnapshotInfoPool> activePool = new ThreadLocal<>();
+
+	private final List<PositionInfo> infos = new ArrayList<>();
+	private int used = 0;
+
+	/**
+	 * Lets all {@link AgentSnapshotInfoFactory factories} on the current thread take their infos from this pool.
+	 */
+	public void activate() {
+		activePool.set(this);
+	}
+
+	/**
+	 * Lets all {@link AgentSnapshotInfoFactory factories} on the current thread create new infos again.
+	 */
+	public static void deactivate() {
+		activePool.remove();
+	}
+
+	/**
+	 * Makes all infos handed out so far available for reuse.
+	 */
+	public void releaseAll() {
+		this.used = 0;
+	}
+
+	/**
+	 * @return the number of info objects created by this pool so far
+	 */
+	public int getPoolSize() {
+		return this.infos.size();
+	}
+
+	/* package-private */ static PositionInfo obtainPositionInfo() {
+		AgentSnapshotInfoPool pool = activePool.get();
+		if (pool == null) {
+			return new PositionInfo();
+		}
+		return pool.next();
+	}
+
+	private PositionInfo next() {
+		PositionInfo info;
+		if (this.used < this.infos.size()) {
+			info = this.infos.get(this.used);
+			info.reset();
+		} else {
+			info = new PositionInfo();
+			this.infos.add(info);
+		}
+		this.used++;
+		return info;
+	}
+
+}
@@ -0,0 +1,123 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinarySnapshotReader.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.vis.snapshotwriters;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Reads a file written by {@link BinarySnapshotWriter} and passes all snapshots to another
+ * {@link SnapshotWriter}, e.g. to convert the file into another format.
+ * <p></p>
+ * Positions are restored with a precision of one centimeter, the color value with a precision of 1/255.
+ */
+public class BinarySnapshotReader {
+
+	private static final AgentSnapshotInfo.AgentState[] STATES = AgentSnapshotInfo.AgentState.values();
+
+	private final SnapshotWriter writer;
+	private final AgentSnapshotInfoFactory snapshotInfoFactory = new AgentSnapshotInfoFactory(new SnapshotLinkWidthCalculator());
+
+	public BinarySnapshotReader(final SnapshotWriter writer) {
+		this.writer = writer;
+	}
+
+	/**
+	 * Reads all snapshots and calls {@link SnapshotWriter#finish()} at the end.
+	 */
+	public void readFile(final String filename) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(IOUtils.getInputStream(filename)))) {
+			if (in.readInt() != BinarySnapshotWriter.MAGIC) {
+				throw new IllegalArgumentException(filename + " is not a binary snapshot file.");
+			}
+			int version = in.readInt();
+			if (version != BinarySnapshotWriter.VERSION) {
+				throw new IllegalArgumentException("Unsupported version " + version + " of binary snapshot file " + filename);
+			}
+
+			List<Id<Person>> agentIds = new ArrayList<>();
+			long[] lastEasting = new long[1024];
+			long[] lastNorthing = new long[1024];
+
+			byte marker;
+			while ((marker = in.readByte()) == BinarySnapshotWriter.SNAPSHOT) {
+				double time = in.readDouble();
+				long count = readVarLong(in);
+				this.writer.beginSnapshot(time);
+				for (long i = 0; i < count; i++) {
+					int index = (int) readVarLong(in);
+					if (index == agentIds.size()) {
+						byte[] id = new byte[(int) readVarLong(in)];
+						in.readFully(id);
+						agentIds.add(Id.create(new String(id, IOUtils.CHARSET_UTF8), Person.class));
+						if (index == lastEasting.length) {
+							lastEasting = Arrays.copyOf(lastEasting, index * 2);
+							lastNorthing = Arrays.copyOf(lastNorthing, index * 2);
+						}
+					}
+					int state = in.readByte();
+					int color = in.readByte() & 0xff;
+					lastEasting[index] += unZigZag(readVarLong(in));
+					lastNorthing[index] += unZigZag(readVarLong(in));
+
+					AgentSnapshotInfo info = this.snapshotInfoFactory.createAgentSnapshotInfo(agentIds.get(index),
+							lastEasting[index] / BinarySnapshotWriter.PRECISION, lastNorthing[index] / BinarySnapshotWriter.PRECISION, 0.0, 0.0);
+					info.setAgentState(state < 0 ? null : STATES[state]);
+					info.setColorValueBetweenZeroAndOne(color / 255.0);
+					this.writer.addAgent(info);
+				}
+				this.writer.endSnapshot();
+			}
+			if (marker != BinarySnapshotWriter.END) {
+				throw new IllegalArgumentException("Unexpected data in binary snapshot file " + filename);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.writer.finish();
+	}
+
+	private static long unZigZag(final long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static long readVarLong(final DataInputStream in) throws IOException {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.readByte();
+			value |= (long) (b & 0x7f) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+}
@@ -0,0 +1,179 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinarySnapshotWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.vis.snapshotwriters;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Writes the current position of vehicles into a compact binary file. It is much smaller and
+ * much faster to write than the file written by {@link TransimsSnapshotWriter}, which matters
+ * if snapshots are written every few seconds, but it is lossy: positions are rounded to
+ * centimeters and the color value is quantized to one byte, i.e. to steps of 1/255.
+ * <p></p>
+ * Every agent id is written only once, the first time the agent shows up, and gets a
+ * consecutive index. Positions are stored in centimeters as the difference to the last position
+ * of the same agent, using a variable-length encoding, so agents that hardly moved need only a
+ * few bytes. Use {@link BinarySnapshotReader} to read the file.
+ * <p></p>
+ * File layout (all numbers big-endian, "varint" is an unsigned LEB128 number, deltas are zig-zag encoded):
+ * <pre>
+ * int magic, int version
+ * per snapshot: byte 1, double time, varint numberOfAgents, per agent:
+ *     varint index [, if the index is new: varint length, UTF-8 id]
+ *     byte agentState, byte colorValue (0..255), varint deltaEasting, varint deltaNorthing
+ * byte 0 (end of file)
+ * </pre>
+ */
+public class BinarySnapshotWriter implements SnapshotWriter {
+
+	/* package-private */ static final int MAGIC = 0x4d534e50; // "MSNP"
+	/* package-private */ static final int VERSION = 1;
+	/* package-private */ static final byte SNAPSHOT = 1;
+	/* package-private */ static final byte END = 0;
+	/** number of stored units per meter */
+	/* package-private */ static final double PRECISION = 100.0;
+
+	private final DataOutputStream out;
+	private final Map<Id<Person>, Integer> agentIndices = new HashMap<>();
+	private long[] lastEasting = new long[1024];
+	private long[] lastNorthing = new long[1024];
+
+	/** the data of the current snapshot, written at once when the number of agents is known */
+	private byte[] buffer = new byte[64 * 1024];
+	private int length = 0;
+	private int agentCount = 0;
+	private double currentTime = -1;
+
+	public BinarySnapshotWriter(String filename) {
+		this.out = new DataOutputStream(new BufferedOutputStream(IOUtils.getOutputStream(filename)));
+		try {
+			this.out.writeInt(MAGIC);
+			this.out.writeInt(VERSION);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void beginSnapshot(double time) {
+		this.currentTime = time;
+		this.length = 0;
+		this.agentCount = 0;
+	}
+
+	@Override
+	public void addAgent(AgentSnapshotInfo position) {
+
+		//drop all parking vehicles
+		if (position.getAgentState() == AgentSnapshotInfo.AgentState.PERSON_AT_ACTIVITY) return;
+
+		Integer index = this.agentIndices.get(position.getId());
+		if (index == null) {
+			index = this.agentIndices.size();
+			this.agentIndices.put(position.getId(), index);
+			if (index == this.lastEasting.length) {
+				this.lastEasting = Arrays.copyOf(this.lastEasting, index * 2);
+				this.lastNorthing = Arrays.copyOf(this.lastNorthing, index * 2);
+			}
+			writeVarLong(index);
+			byte[] id = position.getId().toString().getBytes(IOUtils.CHARSET_UTF8);
+			writeVarLong(id.length);
+			ensureCapacity(id.length);
+			System.arraycopy(id, 0, this.buffer, this.length, id.length);
+			this.length += id.length;
+		} else {
+			writeVarLong(index);
+		}
+
+		ensureCapacity(2);
+		AgentSnapshotInfo.AgentState state = position.getAgentState();
+		this.buffer[this.length++] = (byte) (state == null ? -1 : state.ordinal());
+		double color = Math.max(0.0, Math.min(1.0, position.getColorValueBetweenZeroAndOne()));
+		this.buffer[this.length++] = (byte) Math.round(color * 255);
+
+		long easting = Math.round(position.getEasting() * PRECISION);
+		long northing = Math.round(position.getNorthing() * PRECISION);
+		writeVarLong(zigZag(easting - this.lastEasting[index]));
+		writeVarLong(zigZag(northing - this.lastNorthing[index]));
+		this.lastEasting[index] = easting;
+		this.lastNorthing[index] = northing;
+
+		this.agentCount++;
+	}
+
+	@Override
+	public void endSnapshot() {
+		try {
+			this.out.writeByte(SNAPSHOT);
+			this.out.writeDouble(this.currentTime);
+			int countStart = this.length;
+			writeVarLong(this.agentCount);
+			// the count is written in front of the agents, so take it from the end of the buffer
+			this.out.write(this.buffer, countStart, this.length - countStart);
+			this.out.write(this.buffer, 0, countStart);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.length = 0;
+		this.agentCount = 0;
+		this.currentTime = -1;
+	}
+
+	@Override
+	public void finish() {
+		try {
+			this.out.writeByte(END);
+			this.out.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/* package-private */ static long zigZag(final long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private void writeVarLong(long value) {
+		ensureCapacity(10);
+		while ((value & ~0x7fL) != 0) {
+			this.buffer[this.length++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		this.buffer[this.length++] = (byte) value;
+	}
+
+	private void ensureCapacity(final int bytes) {
+		if (this.length + bytes > this.buffer.length) {
+			this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.length + bytes));
+		}
+	}
+
+}
@@ -46,7 +46,8 @@ public interface SnapshotWriter {
 		public void endSnapshot();
 
 		/**
-		 * Adds an agent to the current snapshot.
+		 * Adds an agent to the current snapshot. The position object may be reused for other agents
+		 * after the snapshot ended, so it must not be stored beyond <code>endSnapshot()</code>.
 		 *
 		 * @param position The position, id, and speed of the agent.
 		 */
@@ -34,7 +34,21 @@ import org.matsim.core.mobsim.qsim.interfaces.Netsim;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
+/**
+ * Collects the positions of all agents every snapshot period and passes them to the registered
+ * {@link SnapshotWriter}s.
+ * <p></p>
+ * The links are split into as many partitions as the QSim uses threads, and the positions of the
+ * partitions are collected in parallel. The position objects are taken from an {@link AgentSnapshotInfoPool}
+ * per partition and reused in the next snapshot, so writers must not keep references to them.
+ */
 public class SnapshotWriterManager implements MobsimBeforeCleanupListener, MobsimAfterSimStepListener, MobsimInitializedListener {
 	
 	private final List<SnapshotWriter> snapshotWriters = new ArrayList<SnapshotWriter>();
@@ -44,8 +58,15 @@ public class SnapshotWriterManager implements MobsimBeforeCleanupListener, Mobsi
 
 	final private int snapshotPeriod;
 
+	final private int numberOfThreads;
+
+	private List<SnapshotPartition> partitions = null;
+
+	private ExecutorService executor = null;
+
 	public SnapshotWriterManager(Config config) {
 		snapshotPeriod = findSnapshotPeriod(config);
+		numberOfThreads = config.qsim() != null ? Math.max(1, config.qsim().getNumberOfThreads()) : 1;
 	}
 
 	// yuck
@@ -76,6 +97,11 @@ public class SnapshotWriterManager implements MobsimBeforeCleanupListener, Mobsi
 	}
 
 	private void closeSnapshotWriters() {
+		if (this.executor != null) {
+			this.executor.shutdown();
+			this.executor = null;
+		}
+		this.partitions = null;
 		for (SnapshotWriter writer : this.snapshotWriters) {
 			writer.finish();
 		}
@@ -92,26 +118,102 @@ public class SnapshotWriterManager implements MobsimBeforeCleanupListener, Mobsi
 	
 	private void doSnapshot(final double time, VisMobsim visMobsim) {
 		if (!this.snapshotWriters.isEmpty()) {
-			Collection<AgentSnapshotInfo> positions = new ArrayList<AgentSnapshotInfo>();
-			for (VisLink link : visMobsim.getVisNetwork().getVisLinks().values()) {
-				link.getVisData().addAgentSnapshotInfo(positions);
+			if (this.partitions == null) {
+				initPartitions(visMobsim);
 			}
+			collectPositions();
 			
 			// We do not put non-network agents in movies.
 			// Otherwise, we would add snapshots from visMobsim.getNonNetworkAgentSnapshots() here.
 			
 			for (SnapshotWriter writer : this.snapshotWriters) {
 				writer.beginSnapshot(time);
-				for (AgentSnapshotInfo position : positions) {
-					writer.addAgent(position);
+				for (SnapshotPartition partition : this.partitions) {
+					for (AgentSnapshotInfo position : partition.positions) {
+						writer.addAgent(position);
+					}
 				}
 				writer.endSnapshot();
 			}
 		}
 	}
 
+	/**
+	 * Splits the links into consecutive blocks, so the concatenated positions of all partitions are in the
+	 * same order as if they were collected by a single thread.
+	 */
+	private void initPartitions(VisMobsim visMobsim) {
+		Collection<? extends VisLink> links = visMobsim.getVisNetwork().getVisLinks().values();
+		int numberOfPartitions = Math.max(1, Math.min(this.numberOfThreads, links.size()));
+		int linksPerPartition = (links.size() + numberOfPartitions - 1) / numberOfPartitions;
+		this.partitions = new ArrayList<>(numberOfPartitions);
+		SnapshotPartition partition = null;
+		for (VisLink link : links) {
+			if (partition == null || partition.links.size() == linksPerPartition) {
+				partition = new SnapshotPartition();
+				this.partitions.add(partition);
+			}
+			partition.links.add(link);
+		}
+		if (this.partitions.size() > 1) {
+			this.executor = Executors.newFixedThreadPool(this.partitions.size(), new SnapshotThreadFactory());
+		}
+	}
+
+	private void collectPositions() {
+		if (this.executor == null) {
+			for (SnapshotPartition partition : this.partitions) {
+				partition.call();
+			}
+			return;
+		}
+		try {
+			for (Future<Object> future : this.executor.invokeAll(this.partitions)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Exception while collecting agent positions for snapshot", e.getCause());
+		}
+	}
+
 	public final void addSnapshotWriter(SnapshotWriter snapshotWriter) {
 		this.snapshotWriters.add(snapshotWriter);
 	}
 
+	private static final class SnapshotPartition implements Callable<Object> {
+		private final List<VisLink> links = new ArrayList<>();
+		private final List<AgentSnapshotInfo> positions = new ArrayList<>();
+		private final AgentSnapshotInfoPool pool = new AgentSnapshotInfoPool();
+
+		@Override
+		public Object call() {
+			// the positions of the last snapshot are written by now, so their objects can be reused
+			this.positions.clear();
+			this.pool.releaseAll();
+			this.pool.activate();
+			try {
+				for (VisLink link : this.links) {
+					link.getVisData().addAgentSnapshotInfo(this.positions);
+				}
+			} finally {
+				AgentSnapshotInfoPool.deactivate();
+			}
+			return null;
+		}
+	}
+
+	private static final class SnapshotThreadFactory implements ThreadFactory {
+		private int count = 0;
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "SnapshotWriterManager-" + this.count++);
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
 }
@@ -0,0 +1,138 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.controler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AsyncOutputServiceTest {
+
+	@Test
+	public void testSynchronous() {
+		AsyncOutputService service = new AsyncOutputService(0);
+		Assert.assertFalse(service.isAsynchronous());
+		final AtomicInteger counter = new AtomicInteger(0);
+		service.submit("test", new Runnable() {
+			@Override
+			public void run() {
+				counter.incrementAndGet();
+			}
+		});
+		Assert.assertEquals("writer must be executed directly.", 1, counter.get());
+		Assert.assertEquals(0, service.getNumberOfPendingWrites());
+		service.close();
+	}
+
+	@Test
+	public void testAsynchronous() throws InterruptedException {
+		AsyncOutputService service = new AsyncOutputService(2);
+		Assert.assertTrue(service.isAsynchronous());
+		final CountDownLatch latch = new CountDownLatch(1);
+		final AtomicInteger counter = new AtomicInteger(0);
+		for (int i = 0; i < 5; i++) {
+			service.submit("test" + i, new Runnable() {
+				@Override
+				public void run() {
+					try {
+						latch.await();
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+					counter.incrementAndGet();
+				}
+			});
+		}
+		Assert.assertEquals("writers must not block the caller.", 0, counter.get());
+		Assert.assertEquals(5, service.getNumberOfPendingWrites());
+		latch.countDown();
+		service.awaitCompletion();
+		Assert.assertEquals(5, counter.get());
+		Assert.assertEquals(0, service.getNumberOfPendingWrites());
+
+		service.close();
+		Assert.assertFalse("after closing, writers are executed directly.", service.isAsynchronous());
+	}
+
+	@Test
+	public void testFailureIsReported() {
+		AsyncOutputService service = new AsyncOutputService(1);
+		service.submit("failing writer", new Runnable() {
+			@Override
+			public void run() {
+				throw new IllegalStateException("expected");
+			}
+		});
+		try {
+			service.awaitCompletion();
+			Assert.fail("expected RuntimeException.");
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		service.close();
+	}
+
+	@Test
+	public void testAwaitSingleWrite() {
+		AsyncOutputService service = new AsyncOutputService(2);
+		final CountDownLatch latch = new CountDownLatch(1);
+		final AtomicInteger counter = new AtomicInteger(0);
+		service.submit("blocked", new Runnable() {
+			@Override
+			public void run() {
+				try {
+					latch.await();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		Future<?> write = service.submit("test", new Runnable() {
+			@Override
+			public void run() {
+				counter.incrementAndGet();
+			}
+		});
+		service.awaitCompletion(write);
+		Assert.assertEquals(1, counter.get());
+		Assert.assertEquals("the other writer must still be pending.", 1, service.getNumberOfPendingWrites());
+
+		Future<?> failing = service.submit("failing writer", new Runnable() {
+			@Override
+			public void run() {
+				throw new IllegalStateException("expected");
+			}
+		});
+		try {
+			service.awaitCompletion(failing);
+			Assert.fail("expected RuntimeException.");
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+
+		latch.countDown();
+		service.close();
+		Assert.assertEquals(0, service.getNumberOfPendingWrites());
+	}
+
+}
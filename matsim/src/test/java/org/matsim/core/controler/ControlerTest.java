@@ -25,7 +25,9 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -68,8 +70,11 @@ import org.matsim.core.scoring.ScoringFunction;
 import org.matsim.core.scoring.ScoringFunctionFactory;
 import org.matsim.core.scoring.SumScoringFunction;
 import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
 import org.matsim.examples.ExamplesUtils;
 import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vis.snapshotwriters.BinarySnapshotReader;
+import org.matsim.vis.snapshotwriters.TransimsSnapshotWriter;
 
 import com.google.inject.Provider;
 
@@ -915,6 +920,44 @@ public class ControlerTest {
 		assertTrue(new File(controler.getControlerIO().getIterationFilename(2, "T.veh.gz")).exists());
 	}
 
+	@Test
+	public void testBinarySnapshotWriterOnQSim() {
+		final Config config = utils.loadConfig(IOUtils.newUrl(ExamplesUtils.getTestScenarioURL("equil"), "config_plans1.xml"));
+		config.controler().setLastIteration(0);
+		config.controler().setWriteEventsInterval(0);
+		config.controler().setWritePlansInterval(0);
+		config.controler().setMobsim("qsim");
+		config.controler().setSnapshotFormat(Arrays.asList("transims", "binary"));
+		config.qsim().setSnapshotPeriod(600);
+		config.qsim().setSnapshotStyle( SnapshotStyle.equiDist ) ;
+		config.qsim().setNumberOfThreads(2);
+
+		final Controler controler = new Controler(config);
+		controler.getConfig().controler().setCreateGraphs(false);
+		controler.getConfig().controler().setDumpDataAtEnd(false);
+		controler.run();
+
+		String binaryFile = controler.getControlerIO().getIterationFilename(0, "snapshots.bin.gz");
+		assertTrue(new File(binaryFile).exists());
+
+		// converting the binary file must result in the same number of lines as the transims file
+		String convertedFile = utils.getOutputDirectory() + "converted.veh.gz";
+		new BinarySnapshotReader(new TransimsSnapshotWriter(convertedFile)).readFile(binaryFile);
+		assertEquals(countLines(controler.getControlerIO().getIterationFilename(0, "T.veh.gz")), countLines(convertedFile));
+	}
+
+	private static int countLines(final String filename) {
+		int count = 0;
+		try (BufferedReader reader = IOUtils.getBufferedReader(filename)) {
+			while (reader.readLine() != null) {
+				count++;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return count;
+	}
+
 	/**
 	 * This might sound (or be) silly, but we had this problem in zurich when using a mix of old code and Guice-based code:
 	 * old code wrapped into Guice modules eventually called Controler.setScoringFunctionFactory(),
@@ -21,12 +21,22 @@ package org.matsim.core.controler.corelisteners;
 
 import org.junit.Rule;
 import org.junit.Test;
+import org.matsim.api.core.v01.Scenario;
 import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.controler.Controler;
+import org.matsim.core.controler.events.ShutdownEvent;
+import org.matsim.core.controler.listener.ShutdownListener;
+import org.matsim.core.population.io.PopulationReader;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
 import org.matsim.testcases.MatsimTestUtils;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -108,4 +118,46 @@ public class PlansDumpingIT {
 		assertTrue(new File(c.getControlerIO().getIterationFilename(9, "plans.xml.gz")).exists());
 		assertTrue(new File(c.getControlerIO().getIterationFilename(10, "plans.xml.gz")).exists());
 	}
+
+	/**
+	 * Plans written in the background must be the same as the ones written directly, and the output plans
+	 * must be complete before the (non-core) shutdown listeners are called.
+	 */
+	@Test
+	public void testPlansDump_InBackground() throws IOException {
+		Controler sync = runWithOutputWritingThreads(0, this.util.getOutputDirectory() + "sync/");
+		Controler async = runWithOutputWritingThreads(2, this.util.getOutputDirectory() + "async/");
+
+		for (int i = 0; i <= 3; i++) {
+			try (InputStream syncIn = IOUtils.getInputStream(sync.getControlerIO().getIterationFilename(i, "plans.xml.gz"));
+					InputStream asyncIn = IOUtils.getInputStream(async.getControlerIO().getIterationFilename(i, "plans.xml.gz"))) {
+				assertTrue("different plans in iteration " + i, IOUtils.isEqual(syncIn, asyncIn));
+			}
+		}
+	}
+
+	private Controler runWithOutputWritingThreads(int threads, String outputDirectory) {
+		Config config = this.util.loadConfig("test/scenarios/equil/config_plans1.xml");
+		config.controler().setOutputDirectory(outputDirectory);
+		config.controler().setLastIteration(3);
+		config.controler().setWritePlansInterval(1);
+		config.controler().setOutputWritingThreads(threads);
+		config.controler().setWriteEventsInterval(0);
+		config.controler().setCreateGraphs(false);
+		final Controler c = new Controler(config);
+
+		final int[] personsInOutputPlans = { -1 };
+		c.addControlerListener(new ShutdownListener() {
+			@Override
+			public void notifyShutdown(ShutdownEvent event) {
+				Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+				new PopulationReader(scenario).readFile(c.getControlerIO().getOutputFilename("output_plans.xml.gz"));
+				personsInOutputPlans[0] = scenario.getPopulation().getPersons().size();
+			}
+		});
+		c.run();
+
+		assertEquals(c.getScenario().getPopulation().getPersons().size(), personsInOutputPlans[0]);
+		return c;
+	}
 }
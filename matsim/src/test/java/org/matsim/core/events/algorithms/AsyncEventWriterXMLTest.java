@@ -0,0 +1,177 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.algorithms;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.GenericEvent;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.PersonMoneyEvent;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.testcases.utils.EventsCollector;
+import org.matsim.vehicles.Vehicle;
+
+public class AsyncEventWriterXMLTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	/**
+	 * Uses very small buffers so that events are split across many buffers, and makes sure the
+	 * result is exactly the same as the one from the synchronous writer.
+	 */
+	@Test
+	public void testSameOutputAsEventWriterXML() throws IOException {
+		String syncFile = this.utils.getOutputDirectory() + "syncEvents.xml.gz";
+		String asyncFile = this.utils.getOutputDirectory() + "asyncEvents.xml.gz";
+
+		List<Event> events = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			events.add(new LinkEnterEvent(i * 1.5, Id.create("veh" + i, Vehicle.class), Id.create("link" + (i % 7), Link.class)));
+			events.add(new LinkLeaveEvent(i * 2.0 + 1e7, Id.create("v<" + i, Vehicle.class), Id.create("l\u00e4nk&\u20ac" + i, Link.class)));
+		}
+		GenericEvent generic = new GenericEvent("TEST", 3600.0);
+		generic.getAttributes().put(Event.ATTRIBUTE_TIME, "3601.0");
+		generic.getAttributes().put("dummy", null);
+		events.add(generic);
+		events.add(new GenericEvent("TEST", -0.0));
+
+		assertSameOutput(events, syncFile, asyncFile);
+	}
+
+	/**
+	 * The frequent event types are written from their fields, so check them with missing optional
+	 * attributes and with times and values that do not take the integral fast path.
+	 */
+	@Test
+	public void testSameOutputForAllEventTypes() throws IOException {
+		String syncFile = this.utils.getOutputDirectory() + "syncEvents.xml";
+		String asyncFile = this.utils.getOutputDirectory() + "asyncEvents.xml";
+
+		Id<Person> person = Id.create("p&1", Person.class);
+		Id<Link> link = Id.create("l1", Link.class);
+		Id<Vehicle> vehicle = Id.create("v1", Vehicle.class);
+		Id<ActivityFacility> facility = Id.create("f1", ActivityFacility.class);
+		double[] times = { 0.0, -0.0, 7.0, 21600.25, 9999999.0, 1e7, 123456789.5, Double.NaN, Double.POSITIVE_INFINITY, -3.0 };
+
+		List<Event> events = new ArrayList<>();
+		for (double time : times) {
+			events.add(new LinkEnterEvent(time, vehicle, link));
+			events.add(new LinkLeaveEvent(time, vehicle, link));
+			events.add(new ActivityStartEvent(time, person, link, facility, "h\u00f6me"));
+			events.add(new ActivityStartEvent(time, person, null, null, "work"));
+			events.add(new ActivityEndEvent(time, person, link, facility, "home"));
+			events.add(new ActivityEndEvent(time, person, null, null, "<w>"));
+			events.add(new PersonDepartureEvent(time, person, link, "car"));
+			events.add(new PersonDepartureEvent(time, person, null, null));
+			events.add(new PersonArrivalEvent(time, person, link, "pt"));
+			events.add(new PersonArrivalEvent(time, person, null, null));
+			events.add(new PersonEntersVehicleEvent(time, person, vehicle));
+			events.add(new PersonLeavesVehicleEvent(time, person, vehicle));
+			events.add(new VehicleEntersTrafficEvent(time, person, link, vehicle, "car", 1.0));
+			events.add(new VehicleEntersTrafficEvent(time, person, null, null, null, 0.35));
+			events.add(new VehicleLeavesTrafficEvent(time, person, link, vehicle, "car", 1.0));
+			events.add(new VehicleLeavesTrafficEvent(time, person, null, null, null, -0.0));
+			events.add(new PersonStuckEvent(time, person, link, "car"));
+			events.add(new PersonStuckEvent(time, person, null, null));
+			events.add(new PersonMoneyEvent(time, person, -12.0));
+			events.add(new PersonMoneyEvent(time, person, 0.1));
+		}
+		// subclasses may have other attributes and must not be written from the fields of the base class
+		events.add(new LinkEnterEvent(1.0, vehicle, link) {
+			@Override
+			public Map<String, String> getAttributes() {
+				Map<String, String> attr = super.getAttributes();
+				attr.put("extra", "x");
+				return attr;
+			}
+		});
+
+		assertSameOutput(events, syncFile, asyncFile);
+	}
+
+	private static void assertSameOutput(List<Event> events, String syncFile, String asyncFile) throws IOException {
+		EventWriterXML syncWriter = new EventWriterXML(syncFile);
+		AsyncEventWriterXML asyncWriter = new AsyncEventWriterXML(asyncFile, 64, 3);
+		for (Event e : events) {
+			syncWriter.handleEvent(e);
+			asyncWriter.handleEvent(e);
+		}
+		syncWriter.closeFile();
+		asyncWriter.closeFile();
+
+		try (InputStream syncIn = IOUtils.getInputStream(syncFile); InputStream asyncIn = IOUtils.getInputStream(asyncFile)) {
+			Assert.assertTrue("files are not equal.", IOUtils.isEqual(syncIn, asyncIn));
+		}
+	}
+
+	@Test
+	public void testSpecialCharacters() {
+		String filename = this.utils.getOutputDirectory() + "testEvents.xml";
+		AsyncEventWriterXML writer = new AsyncEventWriterXML(filename);
+
+		writer.handleEvent(new LinkLeaveEvent(3600.0, Id.create("vehicle>3", Vehicle.class), Id.create("link<2", Link.class)));
+		writer.handleEvent(new LinkLeaveEvent(3601.0, Id.create("vehicle\"4", Vehicle.class), Id.create("link'3", Link.class)));
+		writer.closeFile();
+		Assert.assertTrue(new File(filename).exists());
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		new MatsimEventsReader(events).readFile(filename);
+
+		Assert.assertEquals("there must be 2 events.", 2, collector.getEvents().size());
+		LinkLeaveEvent event1 = (LinkLeaveEvent) collector.getEvents().get(0);
+		LinkLeaveEvent event2 = (LinkLeaveEvent) collector.getEvents().get(1);
+
+		Assert.assertEquals("link<2", event1.getLinkId().toString());
+		Assert.assertEquals("vehicle>3", event1.getVehicleId().toString());
+		Assert.assertEquals(3600.0, event1.getTime(), 0.0);
+
+		Assert.assertEquals("link'3", event2.getLinkId().toString());
+		Assert.assertEquals("vehicle\"4", event2.getVehicleId().toString());
+	}
+}
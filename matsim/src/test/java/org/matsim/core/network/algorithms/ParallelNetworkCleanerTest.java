@@ -0,0 +1,167 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.network.algorithms;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.utils.collections.CollectionUtils;
+
+public class ParallelNetworkCleanerTest {
+
+	/**
+	 * Compares the result with the one of {@link NetworkCleaner} on random networks with many small clusters.
+	 */
+	@Test
+	public void testRun_sameAsNetworkCleaner() {
+		for (int seed = 0; seed < 10; seed++) {
+			Network network1 = createRandomNetwork(seed, 500, 900);
+			Network network2 = createRandomNetwork(seed, 500, 900);
+
+			new NetworkCleaner().run(network1);
+			new ParallelNetworkCleaner().run(network2);
+
+			Assert.assertTrue("network must not be empty", network1.getLinks().size() > 0);
+			Assert.assertEquals(new TreeSet<>(network1.getNodes().keySet()), new TreeSet<>(network2.getNodes().keySet()));
+			Assert.assertEquals(new TreeSet<>(network1.getLinks().keySet()), new TreeSet<>(network2.getLinks().keySet()));
+		}
+	}
+
+	/**
+	 * Makes sure long paths do not overflow the stack.
+	 */
+	@Test
+	public void testRun_longRing() {
+		Network network = NetworkUtils.createNetwork();
+		int size = 200000;
+		Node first = NetworkUtils.createAndAddNode(network, Id.createNodeId(0), new Coord(0, 0));
+		Node previous = first;
+		for (int i = 1; i < size; i++) {
+			Node node = NetworkUtils.createAndAddNode(network, Id.createNodeId(i), new Coord(i, 0));
+			NetworkUtils.createAndAddLink(network, Id.createLinkId(i), previous, node, 10.0, 10.0, 1000.0, 1);
+			previous = node;
+		}
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(0), previous, first, 10.0, 10.0, 1000.0, 1);
+		Node dangling = NetworkUtils.createAndAddNode(network, Id.createNodeId("dangling"), new Coord(0, 1));
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("dangling"), first, dangling, 10.0, 10.0, 1000.0, 1);
+
+		ParallelNetworkCleaner cleaner = new ParallelNetworkCleaner();
+		cleaner.run(network);
+		Assert.assertEquals(size, network.getNodes().size());
+		Assert.assertEquals(size, network.getLinks().size());
+		Assert.assertEquals(Collections.singleton(Id.createLinkId("dangling")), cleaner.getRemovedLinkIds());
+	}
+
+	/**
+	 * <pre>
+	 *   (1)--1-->(2)--2-->(3)
+	 *    ^ &lt;--4-- | &lt;--3--
+	 *    |        |
+	 *    6        5
+	 *    |        v
+	 *   (4)      (5)
+	 * </pre>
+	 * Links 1 to 4 allow car and bike, link 5 only bike and link 6 only car.
+	 * Thus link 5 is a dead end for bike, and link 6 a source for car.
+	 */
+	@Test
+	public void testRun_perMode() {
+		Network network = NetworkUtils.createNetwork();
+		Node n1 = NetworkUtils.createAndAddNode(network, Id.createNodeId(1), new Coord(0, 100));
+		Node n2 = NetworkUtils.createAndAddNode(network, Id.createNodeId(2), new Coord(100, 100));
+		Node n3 = NetworkUtils.createAndAddNode(network, Id.createNodeId(3), new Coord(200, 100));
+		Node n4 = NetworkUtils.createAndAddNode(network, Id.createNodeId(4), new Coord(0, 0));
+		Node n5 = NetworkUtils.createAndAddNode(network, Id.createNodeId(5), new Coord(100, 0));
+		Set<String> carBike = CollectionUtils.stringToSet(TransportMode.car + "," + TransportMode.bike);
+		createLink(network, "1", n1, n2, carBike);
+		createLink(network, "2", n2, n3, carBike);
+		createLink(network, "3", n3, n2, carBike);
+		createLink(network, "4", n2, n1, carBike);
+		createLink(network, "5", n2, n5, Collections.singleton(TransportMode.bike));
+		createLink(network, "6", n4, n1, Collections.singleton(TransportMode.car));
+
+		ParallelNetworkCleaner cleaner = new ParallelNetworkCleaner();
+		cleaner.setNumberOfThreads(2);
+		cleaner.run(network, carBike);
+
+		Assert.assertEquals(4, network.getLinks().size());
+		Assert.assertEquals(3, network.getNodes().size());
+		Assert.assertNull(network.getNodes().get(Id.createNodeId(4)));
+		Assert.assertNull(network.getNodes().get(Id.createNodeId(5)));
+		Assert.assertEquals(carBike, network.getLinks().get(Id.createLinkId(1)).getAllowedModes());
+
+		Set<Id<Link>> expectedRemoved = new HashSet<>();
+		expectedRemoved.add(Id.createLinkId(5));
+		expectedRemoved.add(Id.createLinkId(6));
+		Assert.assertEquals(expectedRemoved, cleaner.getRemovedLinkIds());
+		Assert.assertTrue(cleaner.getModifiedLinkIds().isEmpty());
+	}
+
+	@Test
+	public void testRun_perMode_modifiesLinks() {
+		Network network = NetworkUtils.createNetwork();
+		Node n1 = NetworkUtils.createAndAddNode(network, Id.createNodeId(1), new Coord(0, 0));
+		Node n2 = NetworkUtils.createAndAddNode(network, Id.createNodeId(2), new Coord(100, 0));
+		Set<String> carBike = CollectionUtils.stringToSet(TransportMode.car + "," + TransportMode.bike);
+		createLink(network, "1", n1, n2, carBike);
+		createLink(network, "2", n2, n1, Collections.singleton(TransportMode.car));
+
+		ParallelNetworkCleaner cleaner = new ParallelNetworkCleaner();
+		cleaner.run(network, carBike);
+
+		Assert.assertEquals(2, network.getLinks().size());
+		Assert.assertEquals(Collections.singleton(TransportMode.car), network.getLinks().get(Id.createLinkId(1)).getAllowedModes());
+		Assert.assertEquals(Collections.singleton(Id.createLinkId(1)), cleaner.getModifiedLinkIds());
+		Assert.assertTrue(cleaner.getRemovedLinkIds().isEmpty());
+	}
+
+	private static void createLink(final Network network, final String id, final Node from, final Node to, final Set<String> modes) {
+		Link link = NetworkUtils.createAndAddLink(network, Id.createLinkId(id), from, to, 100.0, 10.0, 1000.0, 1);
+		link.setAllowedModes(modes);
+	}
+
+	private static Network createRandomNetwork(final long seed, final int numberOfNodes, final int numberOfLinks) {
+		Random random = new Random(seed);
+		Network network = NetworkUtils.createNetwork();
+		Node[] nodes = new Node[numberOfNodes];
+		for (int i = 0; i < numberOfNodes; i++) {
+			nodes[i] = NetworkUtils.createAndAddNode(network, Id.createNodeId(i), new Coord(random.nextDouble() * 1000, random.nextDouble() * 1000));
+		}
+		for (int i = 0; i < numberOfLinks; i++) {
+			Node from = nodes[random.nextInt(numberOfNodes)];
+			Node to = nodes[random.nextInt(numberOfNodes)];
+			NetworkUtils.createAndAddLink(network, Id.createLinkId(i), from, to, 100.0, 10.0, 1000.0, 1);
+		}
+		return network;
+	}
+
+}
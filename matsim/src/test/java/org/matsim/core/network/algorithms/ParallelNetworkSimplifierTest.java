@@ -0,0 +1,160 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.network.algorithms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.utils.geometry.CoordUtils;
+
+public class ParallelNetworkSimplifierTest {
+
+	@Test
+	public void testRun() {
+		Network network = buildNetwork();
+
+		ParallelNetworkSimplifier simplifier = new ParallelNetworkSimplifier();
+		simplifier.setNumberOfThreads(2);
+		simplifier.run(network);
+
+		assertEquals("Wrong number of links", 3, network.getLinks().size());
+		assertEquals("Wrong number of nodes", 4, network.getNodes().size());
+		Link link = network.getLinks().get(Id.createLinkId("AB-BC"));
+		assertNotNull("Expected link not found.", link);
+		assertEquals(20.0, link.getLength(), 1e-10);
+		assertEquals(Id.createNodeId("A"), link.getFromNode().getId());
+		assertEquals(Id.createNodeId("C"), link.getToNode().getId());
+		assertNotNull("Expected link not found.", network.getLinks().get(Id.createLinkId("CD")));
+		assertNotNull("Expected link not found.", network.getLinks().get(Id.createLinkId("DE-EF-FG")));
+	}
+
+	@Test
+	public void testRun_twoWay() {
+		Network network = buildNetwork();
+		Node a = network.getNodes().get(Id.createNodeId("A"));
+		Node b = network.getNodes().get(Id.createNodeId("B"));
+		Node c = network.getNodes().get(Id.createNodeId("C"));
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("CB"), c, b, 10.0, 60.0/3.6, 1000.0, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("BA"), b, a, 10.0, 60.0/3.6, 1000.0, 1);
+
+		new ParallelNetworkSimplifier().run(network);
+
+		assertEquals("Wrong number of links", 4, network.getLinks().size());
+		assertNotNull("Expected link not found.", network.getLinks().get(Id.createLinkId("AB-BC")));
+		assertNotNull("Expected link not found.", network.getLinks().get(Id.createLinkId("CB-BA")));
+		assertNotNull("Expected link not found.", network.getLinks().get(Id.createLinkId("DE-EF-FG")));
+	}
+
+	/**
+	 * A ring of degree-two nodes has no start, so it must not be modified.
+	 */
+	@Test
+	public void testRun_ring() {
+		Network network = NetworkUtils.createNetwork();
+		Node a = NetworkUtils.createAndAddNode(network, Id.createNodeId("A"), CoordUtils.createCoord(0.0,  0.0));
+		Node b = NetworkUtils.createAndAddNode(network, Id.createNodeId("B"), CoordUtils.createCoord(10.0,  0.0));
+		Node c = NetworkUtils.createAndAddNode(network, Id.createNodeId("C"), CoordUtils.createCoord(10.0,  10.0));
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("AB"), a, b, 10.0, 60.0/3.6, 1000.0, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("BC"), b, c, 10.0, 60.0/3.6, 1000.0, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("CA"), c, a, 10.0, 60.0/3.6, 1000.0, 1);
+
+		new ParallelNetworkSimplifier().run(network);
+		assertEquals("Wrong number of links", 3, network.getLinks().size());
+		assertEquals("Wrong number of nodes", 3, network.getNodes().size());
+	}
+
+	/**
+	 * The chain B-C-D starts and ends at A, merging it would create a loop link at A.
+	 *
+	 *     B--->C
+	 *     ^    |
+	 *     |    v
+	 * E-->A<---D
+	 */
+	@Test
+	public void testRun_chainEndingAtItsStart() {
+		Network network = NetworkUtils.createNetwork();
+		Node a = NetworkUtils.createAndAddNode(network, Id.createNodeId("A"), CoordUtils.createCoord(0.0,  0.0));
+		Node b = NetworkUtils.createAndAddNode(network, Id.createNodeId("B"), CoordUtils.createCoord(0.0,  10.0));
+		Node c = NetworkUtils.createAndAddNode(network, Id.createNodeId("C"), CoordUtils.createCoord(10.0,  10.0));
+		Node d = NetworkUtils.createAndAddNode(network, Id.createNodeId("D"), CoordUtils.createCoord(10.0,  0.0));
+		Node e = NetworkUtils.createAndAddNode(network, Id.createNodeId("E"), CoordUtils.createCoord(-10.0,  0.0));
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("AB"), a, b, 10.0, 60.0/3.6, 1000.0, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("BC"), b, c, 10.0, 60.0/3.6, 1000.0, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("CD"), c, d, 10.0, 60.0/3.6, 1000.0, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("DA"), d, a, 10.0, 60.0/3.6, 1000.0, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("EA"), e, a, 10.0, 60.0/3.6, 1000.0, 1);
+
+		new ParallelNetworkSimplifier().run(network);
+		assertEquals("Wrong number of links", 5, network.getLinks().size());
+		assertEquals("Wrong number of nodes", 5, network.getNodes().size());
+		for (Link link : network.getLinks().values()) {
+			assertNotEquals("Loop link created.", link.getFromNode(), link.getToNode());
+		}
+	}
+
+	@Test
+	public void testRun_origIds() {
+		Network network = buildNetwork();
+		NetworkUtils.setOrigId(network.getLinks().get(Id.createLinkId("DE")), "osm1");
+		NetworkUtils.setOrigId(network.getLinks().get(Id.createLinkId("FG")), "osm3");
+
+		new ParallelNetworkSimplifier().run(network);
+
+		assertEquals("AB-BC", NetworkUtils.getOrigId(network.getLinks().get(Id.createLinkId("AB-BC"))));
+		assertEquals("osm1-EF-osm3", NetworkUtils.getOrigId(network.getLinks().get(Id.createLinkId("DE-EF-FG"))));
+	}
+
+	/**
+	 * Builds a test network like the following diagram.
+	 *
+	 * A--->B--->C===>D--->E--->F--->G
+	 *
+	 * with each link having length 10m. Links AB, BC, DE, EF and FG have one
+	 * lane each, while CD has two lanes. All free-flow speeds are 60km/h.
+	 */
+	private static Network buildNetwork(){
+		Network network = NetworkUtils.createNetwork();
+		Node a = NetworkUtils.createAndAddNode(network, Id.createNodeId("A"), CoordUtils.createCoord(0.0,  0.0));
+		Node b = NetworkUtils.createAndAddNode(network, Id.createNodeId("B"), CoordUtils.createCoord(10.0,  0.0));
+		Node c = NetworkUtils.createAndAddNode(network, Id.createNodeId("C"), CoordUtils.createCoord(20.0,  0.0));
+		Node d = NetworkUtils.createAndAddNode(network, Id.createNodeId("D"), CoordUtils.createCoord(30.0,  0.0));
+		Node e = NetworkUtils.createAndAddNode(network, Id.createNodeId("E"), CoordUtils.createCoord(40.0,  0.0));
+		Node f = NetworkUtils.createAndAddNode(network, Id.createNodeId("F"), CoordUtils.createCoord(50.0,  0.0));
+		Node g = NetworkUtils.createAndAddNode(network, Id.createNodeId("G"), CoordUtils.createCoord(60.0,  0.0));
+
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("AB"), a, b, 10.0, 60.0/3.6, 1000.0, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("BC"), b, c, 10.0, 60.0/3.6, 1000.0, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("CD"), c, d, 10.0, 60.0/3.6, 1000.0, 2);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("DE"), d, e, 10.0, 60.0/3.6, 1000.0, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("EF"), e, f, 10.0, 60.0/3.6, 1000.0, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("FG"), f, g, 10.0, 60.0/3.6, 1000.0, 1);
+
+		return network;
+	}
+
+}
@@ -29,6 +29,7 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.network.algorithms.NetworkCleaner;
 import org.matsim.core.scenario.ScenarioUtils;
@@ -106,6 +107,129 @@ public class OsmNetworkReaderTest {
 		Assert.assertEquals("number of links is wrong.", 3168, net.getLinks().size());
 	}
 
+	@Test
+	public void testConversion_memoryOptimizedWithMultipleThreads() {
+		String filename = this.utils.getClassInputDirectory() + "adliswil.osm.gz";
+		CoordinateTransformation ct = TransformationFactory.getCoordinateTransformation(TransformationFactory.WGS84, TransformationFactory.CH1903_LV03);
+
+		Network expected = ScenarioUtils.createScenario(ConfigUtils.createConfig()).getNetwork();
+		new OsmNetworkReader(expected, ct).parse(filename);
+
+		Network net = ScenarioUtils.createScenario(ConfigUtils.createConfig()).getNetwork();
+		OsmNetworkReader reader = new OsmNetworkReader(net, ct);
+		reader.setMemoryOptimization(true);
+		reader.setNumberOfThreads(4);
+		reader.parse(filename);
+
+		Assert.assertEquals("number of nodes is wrong.", expected.getNodes().size(), net.getNodes().size());
+		Assert.assertEquals("number of links is wrong.", expected.getLinks().size(), net.getLinks().size());
+		for (Node node : expected.getNodes().values()) {
+			Node node2 = net.getNodes().get(node.getId());
+			Assert.assertNotNull("missing node " + node.getId(), node2);
+			Assert.assertEquals(node.getCoord().getX(), node2.getCoord().getX(), 1e-9);
+			Assert.assertEquals(node.getCoord().getY(), node2.getCoord().getY(), 1e-9);
+		}
+	}
+
+	@Test
+	public void testConversion_hierarchyLayers() {
+		String filename = this.utils.getClassInputDirectory() + "adliswil.osm.gz";
+		CoordinateTransformation ct = TransformationFactory.getCoordinateTransformation(TransformationFactory.WGS84, TransformationFactory.CH1903_LV03);
+
+		Network all = ScenarioUtils.createScenario(ConfigUtils.createConfig()).getNetwork();
+		new OsmNetworkReader(all, ct).parse(filename);
+
+		Network expected = ScenarioUtils.createScenario(ConfigUtils.createConfig()).getNetwork();
+		OsmNetworkReader reader = new OsmNetworkReader(expected, ct);
+		reader.setHierarchyLayer(47.32, 8.51, 47.30, 8.53, 6);
+		reader.parse(filename);
+
+		Assert.assertTrue("no links converted.", expected.getLinks().size() > 0);
+		Assert.assertTrue("links outside of the hierarchy layer converted.", expected.getLinks().size() < all.getLinks().size());
+
+		Network net = ScenarioUtils.createScenario(ConfigUtils.createConfig()).getNetwork();
+		reader = new OsmNetworkReader(net, ct);
+		reader.setHierarchyLayer(47.32, 8.51, 47.30, 8.53, 6);
+		reader.setMemoryOptimization(true);
+		reader.parse(filename);
+
+		Assert.assertEquals("number of nodes is wrong.", expected.getNodes().size(), net.getNodes().size());
+		Assert.assertEquals("number of links is wrong.", expected.getLinks().size(), net.getLinks().size());
+		for (Link link : expected.getLinks().values()) {
+			Assert.assertNotNull("missing link " + link.getId(), net.getLinks().get(link.getId()));
+		}
+	}
+
+	@Test
+	public void testConversion_hierarchyLayersWithUnsortedNodes() {
+		Scenario sc = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network net = sc.getNetwork();
+		CoordinateTransformation ct = new IdentityTransformation();
+
+		OsmNetworkReader reader = new OsmNetworkReader(net, ct);
+		reader.setHighwayDefaults(1, "motorway", 1, 50.0/3.6, 1.0, 2000.0);
+		reader.setHierarchyLayer(30.0, 50.0, 0.0, 100.0, 1);
+
+		String str = "<?xml version='1.0' encoding='UTF-8'?>\n" +
+				"<osm version=\"0.6\" generator=\"Osmosis 0.36\">\n" +
+				"  <node id=\"30\" lat=\"20.0\" lon=\"95.0\"/>\n" +
+				"  <node id=\"2\" lat=\"15.0\" lon=\"90.0\"/>\n" +
+				"  <node id=\"100\" lat=\"10.0\" lon=\"60.0\"/>\n" +
+				"  <node id=\"4\" lat=\"25.0\" lon=\"150.0\"/>\n" +
+				"  <node id=\"5\" lat=\"25.0\" lon=\"160.0\"/>\n" +
+				"  <way id=\"1\">\n" +
+				"    <nd ref=\"100\"/>\n" +
+				"    <nd ref=\"2\"/>\n" +
+				"    <nd ref=\"30\"/>\n" +
+				"    <tag k=\"highway\" v=\"motorway\"/>\n" +
+				"  </way>\n" +
+				"  <way id=\"2\">\n" +
+				"    <nd ref=\"4\"/>\n" +
+				"    <nd ref=\"5\"/>\n" +
+				"    <tag k=\"highway\" v=\"motorway\"/>\n" +
+				"  </way>\n" +
+				"</osm>";
+		reader.parse(new ByteArrayInputStream(str.getBytes()));
+
+		Assert.assertNotNull(net.getNodes().get(Id.create("100", Node.class)));
+		Assert.assertNotNull(net.getNodes().get(Id.create("30", Node.class)));
+		Assert.assertNull(net.getNodes().get(Id.create("4", Node.class)));
+		Assert.assertNull(net.getNodes().get(Id.create("5", Node.class)));
+	}
+
+	@Test
+	public void testConversion_unsortedNodes() {
+		Scenario sc = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network net = sc.getNetwork();
+		CoordinateTransformation ct = new IdentityTransformation();
+
+		OsmNetworkReader reader = new OsmNetworkReader(net, ct);
+		reader.setKeepPaths(true);
+		reader.setHighwayDefaults(1, "motorway", 1, 50.0/3.6, 1.0, 2000.0);
+
+		String str = "<?xml version='1.0' encoding='UTF-8'?>\n" +
+				"<osm version=\"0.6\" generator=\"Osmosis 0.36\">\n" +
+				"  <node id=\"30\" lat=\"20.0\" lon=\"120.0\"/>\n" +
+				"  <node id=\"2\" lat=\"15.0\" lon=\"90.0\"/>\n" +
+				"  <node id=\"100\" lat=\"10.0\" lon=\"60.0\"/>\n" +
+				"  <node id=\"4\" lat=\"25.0\" lon=\"90.0\"/>\n" +
+				"  <way id=\"1\" version=\"6\" timestamp=\"2010-10-14T12:34:56Z\" uid=\"9876\" user=\"MATSim\" changeset=\"123456789\">\n" +
+				"    <nd ref=\"100\"/>\n" +
+				"    <nd ref=\"2\"/>\n" +
+				"    <nd ref=\"30\"/>\n" +
+				"    <tag k=\"highway\" v=\"motorway\"/>\n" +
+				"  </way>\n" +
+				"</osm>";
+		reader.parse(new ByteArrayInputStream(str.getBytes()));
+
+		Assert.assertEquals("number of nodes is wrong.", 3, net.getNodes().size());
+		Assert.assertEquals("number of links is wrong.", 4, net.getLinks().size());
+		Node node = net.getNodes().get(Id.create("100", Node.class));
+		Assert.assertEquals(60.0, node.getCoord().getX(), 1e-9);
+		Assert.assertEquals(10.0, node.getCoord().getY(), 1e-9);
+		Assert.assertNull(net.getNodes().get(Id.create("4", Node.class)));
+	}
+
 	@Test
 	public void testConversionWithSettings() {
 		String filename = this.utils.getClassInputDirectory() + "adliswil.osm.gz";
@@ -0,0 +1,132 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.vis.snapshotwriters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vis.snapshotwriters.AgentSnapshotInfo.AgentState;
+
+public class BinarySnapshotWriterTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testWriteAndRead() {
+		String filename = this.utils.getOutputDirectory() + "snapshots.bin.gz";
+		AgentSnapshotInfoFactory factory = new AgentSnapshotInfoFactory(new SnapshotLinkWidthCalculator());
+
+		BinarySnapshotWriter writer = new BinarySnapshotWriter(filename);
+		for (int time = 0; time < 3; time++) {
+			writer.beginSnapshot(time * 10.0);
+			for (int i = 0; i < 2000; i++) {
+				AgentSnapshotInfo info = factory.createAgentSnapshotInfo(Id.create("a\u00e4" + i, Person.class),
+						4000000.0 + i * 0.5 + time * 13.37, -20.25 * i - time, 0.0, 0.0);
+				info.setAgentState(i % 2 == 0 ? AgentState.PERSON_DRIVING_CAR : AgentState.TRANSIT_DRIVER);
+				info.setColorValueBetweenZeroAndOne(i / 2000.0);
+				writer.addAgent(info);
+			}
+			AgentSnapshotInfo parked = factory.createAgentSnapshotInfo(Id.create("parked", Person.class), 1.0, 1.0, 0.0, 0.0);
+			parked.setAgentState(AgentState.PERSON_AT_ACTIVITY);
+			writer.addAgent(parked);
+			writer.endSnapshot();
+		}
+		writer.finish();
+
+		CollectingSnapshotWriter collector = new CollectingSnapshotWriter();
+		new BinarySnapshotReader(collector).readFile(filename);
+
+		Assert.assertTrue(collector.finished);
+		Assert.assertEquals(3, collector.times.size());
+		Assert.assertEquals(20.0, collector.times.get(2), 0.0);
+		Assert.assertEquals("agents at activities must not be written.", 3 * 2000, collector.infos.size());
+		for (int time = 0; time < 3; time++) {
+			for (int i = 0; i < 2000; i++) {
+				String[] info = collector.infos.get(time * 2000 + i);
+				Assert.assertEquals("a\u00e4" + i, info[0]);
+				Assert.assertEquals(4000000.0 + i * 0.5 + time * 13.37, Double.parseDouble(info[1]), 0.005);
+				Assert.assertEquals(-20.25 * i - time, Double.parseDouble(info[2]), 0.005);
+				Assert.assertEquals(i % 2 == 0 ? AgentState.PERSON_DRIVING_CAR.name() : AgentState.TRANSIT_DRIVER.name(), info[3]);
+				Assert.assertEquals(i / 2000.0, Double.parseDouble(info[4]), 0.5 / 255);
+			}
+		}
+	}
+
+	@Test
+	public void testPooledInfosAreReused() {
+		AgentSnapshotInfoFactory factory = new AgentSnapshotInfoFactory(new SnapshotLinkWidthCalculator());
+		AgentSnapshotInfoPool pool = new AgentSnapshotInfoPool();
+		pool.activate();
+		try {
+			AgentSnapshotInfo info1 = factory.createAgentSnapshotInfo(Id.create("1", Person.class), 1.0, 2.0, 0.0, 0.0);
+			info1.setAgentState(AgentState.PERSON_DRIVING_CAR);
+			factory.createAgentSnapshotInfo(Id.create("2", Person.class), 3.0, 4.0, 0.0, 0.0);
+			Assert.assertEquals(2, pool.getPoolSize());
+
+			pool.releaseAll();
+			AgentSnapshotInfo info3 = factory.createAgentSnapshotInfo(Id.create("3", Person.class), 5.0, 6.0, 0.0, 0.0);
+			Assert.assertSame(info1, info3);
+			Assert.assertEquals("3", info3.getId().toString());
+			Assert.assertNull("state must be reset.", info3.getAgentState());
+			Assert.assertEquals(2, pool.getPoolSize());
+		} finally {
+			AgentSnapshotInfoPool.deactivate();
+		}
+
+		AgentSnapshotInfo info4 = factory.createAgentSnapshotInfo(Id.create("4", Person.class), 5.0, 6.0, 0.0, 0.0);
+		AgentSnapshotInfo info5 = factory.createAgentSnapshotInfo(Id.create("5", Person.class), 5.0, 6.0, 0.0, 0.0);
+		Assert.assertNotSame("without an active pool, new objects must be created.", info4, info5);
+		Assert.assertEquals(2, pool.getPoolSize());
+	}
+
+	private static class CollectingSnapshotWriter implements SnapshotWriter {
+		final List<Double> times = new ArrayList<>();
+		final List<String[]> infos = new ArrayList<>();
+		boolean finished = false;
+
+		@Override
+		public void beginSnapshot(double time) {
+			this.times.add(time);
+		}
+
+		@Override
+		public void endSnapshot() {
+		}
+
+		@Override
+		public void addAgent(AgentSnapshotInfo position) {
+			this.infos.add(new String[] { position.getId().toString(), Double.toString(position.getEasting()),
+					Double.toString(position.getNorthing()), position.getAgentState().name(),
+					Double.toString(position.getColorValueBetweenZeroAndOne()) });
+		}
+
+		@Override
+		public void finish() {
+			this.finished = true;
+		}
+	}
+
+}
@@ -102,45 +102,37 @@ public class TollTimeDistanceTravelDisutility implements TravelDisutility {
 		double linkExpectedNoiseToll = 0.;
 		double timeIntervalEndTime = ((int) (time / this.noiseContext.getNoiseParams().getTimeBinSizeNoiseComputation()) + 1) * this.noiseContext.getNoiseParams().getTimeBinSizeNoiseComputation();
 		
-		if (this.noiseContext.getTimeInterval2linkId2noiseLinks().get(timeIntervalEndTime) == null ||
-				this.noiseContext.getTimeInterval2linkId2noiseLinks().get(timeIntervalEndTime).get(linkId) == null) {
-			// expected toll on that link should be zero
-			
-		} else {
-			
-			boolean isHGV = false;
-			for (String hgvPrefix : this.noiseContext.getNoiseParams().getHgvIdPrefixesArray()) {
-				if (personId.toString().startsWith(hgvPrefix)) {
-					isHGV = true;
-					break;
-				}
+		boolean isHGV = false;
+		for (String hgvPrefix : this.noiseContext.getNoiseParams().getHgvIdPrefixesArray()) {
+			if (personId.toString().startsWith(hgvPrefix)) {
+				isHGV = true;
+				break;
 			}
-			
-			if (isHGV) {
-						
-				if (this.noiseContext.getNoiseParams().getNoiseAllocationApproach() == NoiseAllocationApproach.AverageCost) {	
-					linkExpectedNoiseToll = this.noiseContext.getTimeInterval2linkId2noiseLinks().get(timeIntervalEndTime).get(linkId).getAverageDamageCostPerHgv();
-					
-				} else if (this.noiseContext.getNoiseParams().getNoiseAllocationApproach() == NoiseAllocationApproach.MarginalCost) {
-					linkExpectedNoiseToll = this.noiseContext.getTimeInterval2linkId2noiseLinks().get(timeIntervalEndTime).get(linkId).getMarginalDamageCostPerHgv();
+		}
+		
+		if (isHGV) {
 					
-				} else {
-					throw new RuntimeException("Unknown noise allocation approach. Aborting...");
-				}
+			if (this.noiseContext.getNoiseParams().getNoiseAllocationApproach() == NoiseAllocationApproach.AverageCost) {	
+				linkExpectedNoiseToll = this.noiseContext.getLinkDamageCosts().getAverageDamageCostPerHgv(linkId, timeIntervalEndTime);
+				
+			} else if (this.noiseContext.getNoiseParams().getNoiseAllocationApproach() == NoiseAllocationApproach.MarginalCost) {
+				linkExpectedNoiseToll = this.noiseContext.getLinkDamageCosts().getMarginalDamageCostPerHgv(linkId, timeIntervalEndTime);
 				
 			} else {
+				throw new RuntimeException("Unknown noise allocation approach. Aborting...");
+			}
+			
+		} else {
+			
+			if (this.noiseContext.getNoiseParams().getNoiseAllocationApproach() == NoiseAllocationApproach.AverageCost) {	
+				linkExpectedNoiseToll = this.noiseContext.getLinkDamageCosts().getAverageDamageCostPerCar(linkId, timeIntervalEndTime);
 				
-				if (this.noiseContext.getNoiseParams().getNoiseAllocationApproach() == NoiseAllocationApproach.AverageCost) {	
-					linkExpectedNoiseToll = this.noiseContext.getTimeInterval2linkId2noiseLinks().get(timeIntervalEndTime).get(linkId).getAverageDamageCostPerCar();
-					
-				} else if (this.noiseContext.getNoiseParams().getNoiseAllocationApproach() == NoiseAllocationApproach.MarginalCost) {
-					linkExpectedNoiseToll = this.noiseContext.getTimeInterval2linkId2noiseLinks().get(timeIntervalEndTime).get(linkId).getMarginalDamageCostPerCar();
-					
-				} else {
-					throw new RuntimeException("Unknown noise allocation approach. Aborting...");
-				}
+			} else if (this.noiseContext.getNoiseParams().getNoiseAllocationApproach() == NoiseAllocationApproach.MarginalCost) {
+				linkExpectedNoiseToll = this.noiseContext.getLinkDamageCosts().getMarginalDamageCostPerCar(linkId, timeIntervalEndTime);
+				
+			} else {
+				throw new RuntimeException("Unknown noise allocation approach. Aborting...");
 			}
-
 		}
 						
 		double expectedLinkNoiseTollDistuility = this.noiseContext.getNoiseParams().getNoiseTollFactor() * this.marginalUtilityOfMoney * linkExpectedNoiseToll;			
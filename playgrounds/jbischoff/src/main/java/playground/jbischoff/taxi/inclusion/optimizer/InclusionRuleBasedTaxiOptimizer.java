@@ -27,7 +27,7 @@ import org.matsim.contrib.dvrp.schedule.*;
 import org.matsim.contrib.dvrp.schedule.Schedule.ScheduleStatus;
 import org.matsim.contrib.taxi.data.TaxiRequest;
 import org.matsim.contrib.taxi.optimizer.*;
-import org.matsim.contrib.taxi.optimizer.rules.UnplannedRequestZonalRegistry;
+import org.matsim.contrib.taxi.optimizer.rules.UnplannedRequestGridRegistry;
 import org.matsim.contrib.taxi.schedule.*;
 import org.matsim.contrib.taxi.schedule.TaxiTask.TaxiTaskType;
 import org.matsim.contrib.zone.*;
@@ -39,7 +39,7 @@ public class InclusionRuleBasedTaxiOptimizer
     protected final BestDispatchFinder dispatchFinder;
 
     protected final InclusionIdleTaxiZonalRegistry idleTaxiRegistry;
-    private final UnplannedRequestZonalRegistry unplannedRequestRegistry;
+    private final UnplannedRequestGridRegistry unplannedRequestRegistry;
 
     private final InclusionRuleBasedTaxiOptimizerParams params;
 
@@ -64,7 +64,7 @@ public class InclusionRuleBasedTaxiOptimizer
 
         dispatchFinder = new BestDispatchFinder(optimContext);
         idleTaxiRegistry = new InclusionIdleTaxiZonalRegistry(zonalSystem, optimContext.scheduler,params.INCLUSION_TAXI_PREFIX);
-        unplannedRequestRegistry = new UnplannedRequestZonalRegistry(zonalSystem);
+        unplannedRequestRegistry = new UnplannedRequestGridRegistry(optimContext.network, params.cellSize);
     }
 
 
@@ -116,6 +116,15 @@ public class InclusionRuleBasedTaxiOptimizer
     }
 
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public void requestsSubmitted(Collection<? extends Request> requests)
+    {
+        super.requestsSubmitted(requests);
+        unplannedRequestRegistry.addRequests((Collection<? extends TaxiRequest>)requests);
+    }
+
+
     @Override
     public void nextTask(Vehicle vehicle)
     {